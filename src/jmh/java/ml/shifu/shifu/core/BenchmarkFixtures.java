@@ -0,0 +1,289 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import ml.shifu.shifu.container.obj.ColumnConfig;
+import ml.shifu.shifu.container.obj.ColumnConfig.ColumnFlag;
+import ml.shifu.shifu.container.obj.ColumnType;
+import ml.shifu.shifu.container.obj.ModelConfig;
+import ml.shifu.shifu.container.obj.ModelNormalizeConf.NormType;
+import ml.shifu.shifu.core.dtrain.DTrainUtils;
+import ml.shifu.shifu.core.dtrain.dataset.BasicFloatNetwork;
+import ml.shifu.shifu.core.dtrain.nn.BinaryNNSerializer;
+import ml.shifu.shifu.core.dtrain.nn.IndependentNNModel;
+import ml.shifu.shifu.core.dtrain.wdl.BinaryWDLSerializer;
+import ml.shifu.shifu.core.dtrain.wdl.IndependentWDLModel;
+import ml.shifu.shifu.core.dtrain.wdl.WideAndDeep;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.encog.ml.BasicML;
+
+/**
+ * Synthetic {@link ModelConfig}, {@link ColumnConfig} and model fixtures shared by scoring benchmarks, nothing is read
+ * from or written to model set folders.
+ *
+ * <p>
+ * Column 0 is the binary target, other columns are all final selected: odd columns are categorical with
+ * {@link #CATEGORY_SIZE} categories and even columns are numerical in [0, 1) with {@link #BIN_SIZE} bins. Stats,
+ * woes and pos rates are generated with fixed seed so the same width always gives the same fixture.
+ */
+public final class BenchmarkFixtures {
+
+    public static final int CATEGORY_SIZE = 20;
+
+    public static final int BIN_SIZE = 10;
+
+    /**
+     * Rate of missing values in raw rows.
+     */
+    private static final double MISSING_RATE = 0.05d;
+
+    private BenchmarkFixtures() {
+    }
+
+    public static ModelConfig newModelConfig(String algorithm, NormType normType) {
+        ModelConfig modelConfig = new ModelConfig();
+        modelConfig.getBasic().setName("benchmark");
+        modelConfig.getDataSet().setPosTags(Arrays.asList("1"));
+        modelConfig.getDataSet().setNegTags(Arrays.asList("0"));
+        modelConfig.getNormalize().setNormType(normType);
+        modelConfig.getTrain().setAlgorithm(algorithm);
+        return modelConfig;
+    }
+
+    /**
+     * @param width
+     *            number of input columns, target column is not included
+     * @param seed
+     *            random seed of stats
+     * @return column configs with target column at first
+     */
+    public static List<ColumnConfig> newColumnConfigs(int width, long seed) {
+        Random random = new Random(seed);
+        List<ColumnConfig> columnConfigList = new ArrayList<ColumnConfig>(width + 1);
+        ColumnConfig target = new ColumnConfig();
+        target.setColumnNum(0);
+        target.setColumnName("target");
+        target.setColumnType(ColumnType.N);
+        target.setColumnFlag(ColumnFlag.Target);
+        columnConfigList.add(target);
+
+        for(int i = 1; i <= width; i++) {
+            ColumnConfig config = new ColumnConfig();
+            config.setColumnNum(i);
+            config.setColumnName("col" + i);
+            config.setFinalSelect(true);
+            int binSize;
+            if(isCategorical(i)) {
+                config.setColumnType(ColumnType.C);
+                List<String> categories = new ArrayList<String>(CATEGORY_SIZE);
+                for(int j = 0; j < CATEGORY_SIZE; j++) {
+                    categories.add("c" + j);
+                }
+                config.setBinCategory(categories);
+                binSize = CATEGORY_SIZE;
+            } else {
+                config.setColumnType(ColumnType.N);
+                List<Double> boundaries = new ArrayList<Double>(BIN_SIZE);
+                boundaries.add(Double.NEGATIVE_INFINITY);
+                for(int j = 1; j < BIN_SIZE; j++) {
+                    boundaries.add(j / (double) BIN_SIZE);
+                }
+                config.setBinBoundary(boundaries);
+                binSize = BIN_SIZE;
+            }
+            setBinStats(config, binSize + 1, random);
+            config.setMin(0d);
+            config.setMax(1d);
+            config.setMean(isCategorical(i) ? 0.2d : 0.5d);
+            config.setStdDev(isCategorical(i) ? 0.1d : 0.29d);
+            config.setMissingCnt(0L);
+            config.setTotalCount(100000L);
+            columnConfigList.add(config);
+        }
+        return columnConfigList;
+    }
+
+    /**
+     * Bin counts, pos rates and woes of all bins including the last missing bin.
+     */
+    private static void setBinStats(ColumnConfig config, int bins, Random random) {
+        List<Integer> countPos = new ArrayList<Integer>(bins);
+        List<Integer> countNeg = new ArrayList<Integer>(bins);
+        List<Double> weightedPos = new ArrayList<Double>(bins);
+        List<Double> weightedNeg = new ArrayList<Double>(bins);
+        List<Double> posRates = new ArrayList<Double>(bins);
+        List<Double> woes = new ArrayList<Double>(bins);
+        List<Double> weightedWoes = new ArrayList<Double>(bins);
+        for(int i = 0; i < bins; i++) {
+            int pos = 100 + random.nextInt(1000);
+            int neg = 1000 + random.nextInt(5000);
+            countPos.add(pos);
+            countNeg.add(neg);
+            weightedPos.add(pos * 1.5d);
+            weightedNeg.add(neg * 1.5d);
+            posRates.add(pos / (double) (pos + neg));
+            double woe = Math.log((pos + 1d) / (neg + 1d)) + 1.5d;
+            woes.add(woe);
+            weightedWoes.add(woe);
+        }
+        config.setBinCountPos(countPos);
+        config.setBinCountNeg(countNeg);
+        config.setBinWeightedPos(weightedPos);
+        config.setBinWeightedNeg(weightedNeg);
+        config.setBinPosCaseRate(posRates);
+        config.getColumnBinning().setBinCountWoe(woes);
+        config.getColumnBinning().setBinWeightedWoe(weightedWoes);
+    }
+
+    /**
+     * @param columnConfigList
+     *            column configs
+     * @param rowNum
+     *            number of rows
+     * @param seed
+     *            random seed of values
+     * @return raw rows of (columnName, value), missing values are empty strings
+     */
+    public static List<Map<String, String>> newRawRows(List<ColumnConfig> columnConfigList, int rowNum, long seed) {
+        Random random = new Random(seed);
+        List<Map<String, String>> rows = new ArrayList<Map<String, String>>(rowNum);
+        for(int i = 0; i < rowNum; i++) {
+            Map<String, String> row = new HashMap<String, String>(columnConfigList.size() * 2);
+            for(ColumnConfig config: columnConfigList) {
+                String value;
+                if(config.isTarget()) {
+                    value = random.nextBoolean() ? "1" : "0";
+                } else if(random.nextDouble() < MISSING_RATE) {
+                    value = "";
+                } else if(config.isCategorical()) {
+                    value = "c" + random.nextInt(CATEGORY_SIZE);
+                } else {
+                    value = Double.toString(random.nextDouble());
+                }
+                row.put(config.getColumnName(), value);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Copy raw rows to (columnName, value) maps accepted by independent models.
+     */
+    public static List<Map<String, Object>> toObjectRows(List<Map<String, String>> rawRows) {
+        List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(rawRows.size());
+        for(Map<String, String> rawRow: rawRows) {
+            rows.add(new HashMap<String, Object>(rawRow));
+        }
+        return rows;
+    }
+
+    /**
+     * @param columnConfigList
+     *            column configs
+     * @param normType
+     *            norm type which decides input size
+     * @param hiddenNodes
+     *            nodes of each hidden layer, all are tanh layers
+     * @return random initialized network with one sigmoid output
+     */
+    public static BasicFloatNetwork newNetwork(List<ColumnConfig> columnConfigList, NormType normType,
+            List<Integer> hiddenNodes) {
+        int[] inputOutputIndex = DTrainUtils.getInputOutputCandidateCounts(normType, columnConfigList);
+        int inputs = inputOutputIndex[0] == 0 ? inputOutputIndex[2] : inputOutputIndex[0];
+        List<String> actFuncs = new ArrayList<String>(hiddenNodes.size());
+        for(int i = 0; i < hiddenNodes.size(); i++) {
+            actFuncs.add("tanh");
+        }
+        return (BasicFloatNetwork) DTrainUtils.generateNetwork(inputs, 1, hiddenNodes.size(), actFuncs, hiddenNodes,
+                true, 0d, DTrainUtils.WGT_INIT_DEFAULT, false, null);
+    }
+
+    /**
+     * Round trip networks through {@link BinaryNNSerializer} to get the model loaded in scoring.
+     */
+    public static IndependentNNModel newIndependentNNModel(ModelConfig modelConfig,
+            List<ColumnConfig> columnConfigList, List<BasicML> networks) throws IOException {
+        File file = newTempFile("nn");
+        BinaryNNSerializer.save(modelConfig, columnConfigList, networks, getLocalFs(), new Path(file.getPath()));
+        InputStream input = new FileInputStream(file);
+        try {
+            return IndependentNNModel.loadFromStream(input);
+        } finally {
+            IOUtils.closeStream(input);
+        }
+    }
+
+    /**
+     * Build wide and deep graph like WDL workers on all final selected columns: numerical columns are dense inputs
+     * and categorical columns are both embed and wide inputs, then round trip it through {@link BinaryWDLSerializer}.
+     */
+    public static IndependentWDLModel newIndependentWDLModel(ModelConfig modelConfig,
+            List<ColumnConfig> columnConfigList, List<Integer> hiddenNodes, int embedOutputs) throws IOException {
+        List<Integer> numericalIds = DTrainUtils.getNumericalIds(columnConfigList, true);
+        List<Integer> categoricalIds = DTrainUtils.getCategoricalIds(columnConfigList, true);
+        List<Integer> embedOutputList = new ArrayList<Integer>(categoricalIds.size());
+        for(int i = 0; i < categoricalIds.size(); i++) {
+            embedOutputList.add(embedOutputs);
+        }
+        List<String> actFuncs = new ArrayList<String>(hiddenNodes.size());
+        for(int i = 0; i < hiddenNodes.size(); i++) {
+            actFuncs.add("relu");
+        }
+        WideAndDeep wnd = new WideAndDeep(DTrainUtils.getIdBinCategorySizeMap(columnConfigList), numericalIds.size(),
+                numericalIds, categoricalIds, embedOutputList, categoricalIds, hiddenNodes, actFuncs, 0f);
+        wnd.initWeights();
+
+        File file = newTempFile("wdl");
+        BinaryWDLSerializer.save(modelConfig, columnConfigList, wnd, getLocalFs(), new Path(file.getPath()));
+        InputStream input = new FileInputStream(file);
+        try {
+            return IndependentWDLModel.loadFromStream(input);
+        } finally {
+            IOUtils.closeStream(input);
+        }
+    }
+
+    private static boolean isCategorical(int columnNum) {
+        return columnNum % 2 == 1;
+    }
+
+    private static FileSystem getLocalFs() throws IOException {
+        return FileSystem.getLocal(new Configuration());
+    }
+
+    private static File newTempFile(String suffix) throws IOException {
+        File file = File.createTempFile("benchmark", "." + suffix);
+        file.deleteOnExit();
+        return file;
+    }
+
+}
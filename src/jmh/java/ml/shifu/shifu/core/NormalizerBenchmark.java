@@ -0,0 +1,126 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import ml.shifu.shifu.container.obj.ColumnConfig;
+import ml.shifu.shifu.container.obj.ModelNormalizeConf.NormType;
+import ml.shifu.shifu.udf.NormalizeUDF.CategoryMissingNormType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Normalize one raw row of all input columns per operation by {@link Normalizer}, boxed list API against primitive
+ * array API, for each {@link NormType}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class NormalizerBenchmark {
+
+    private static final int ROWS = 1024;
+
+    private static final Double CUTOFF = 6d;
+
+    @Param({ "ZSCALE", "WOE", "WEIGHT_WOE", "HYBRID", "WOE_ZSCALE", "ONEHOT", "DISCRETE_ZSCALE", "ASIS_PR",
+            "ZSCALE_INDEX" })
+    public NormType normType;
+
+    @Param({ "50", "500" })
+    public int width;
+
+    private ColumnConfig[] columnConfigs;
+
+    private List<Map<String, Integer>> cateIndexMaps;
+
+    private String[][] rows;
+
+    private double[] output;
+
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        List<ColumnConfig> columnConfigList = BenchmarkFixtures.newColumnConfigs(this.width, 17L);
+        List<ColumnConfig> inputs = new ArrayList<ColumnConfig>();
+        this.cateIndexMaps = new ArrayList<Map<String, Integer>>();
+        int outputSize = 0;
+        for(ColumnConfig config: columnConfigList) {
+            if(config.isTarget()) {
+                continue;
+            }
+            inputs.add(config);
+            Map<String, Integer> cateIndexMap = null;
+            if(config.isCategorical()) {
+                cateIndexMap = new HashMap<String, Integer>();
+                for(int i = 0; i < config.getBinCategory().size(); i++) {
+                    cateIndexMap.put(config.getBinCategory().get(i), i);
+                }
+            }
+            this.cateIndexMaps.add(cateIndexMap);
+            outputSize += Normalizer.getNormalizedSize(config, this.normType);
+        }
+        this.columnConfigs = inputs.toArray(new ColumnConfig[inputs.size()]);
+        this.output = new double[outputSize];
+
+        List<Map<String, String>> rawRows = BenchmarkFixtures.newRawRows(columnConfigList, ROWS, 31L);
+        this.rows = new String[ROWS][this.columnConfigs.length];
+        for(int i = 0; i < ROWS; i++) {
+            for(int j = 0; j < this.columnConfigs.length; j++) {
+                this.rows[i][j] = rawRows.get(i).get(this.columnConfigs[j].getColumnName());
+            }
+        }
+    }
+
+    @Benchmark
+    public void boxed(Blackhole blackhole) {
+        String[] row = nextRow();
+        for(int i = 0; i < this.columnConfigs.length; i++) {
+            blackhole.consume(Normalizer.fullNormalize(this.columnConfigs[i], row[i], CUTOFF, this.normType,
+                    CategoryMissingNormType.POSRATE, this.cateIndexMaps.get(i)));
+        }
+    }
+
+    @Benchmark
+    public double[] primitive() {
+        String[] row = nextRow();
+        int offset = 0;
+        for(int i = 0; i < this.columnConfigs.length; i++) {
+            offset += Normalizer.normalize(this.columnConfigs[i], row[i], CUTOFF, this.normType,
+                    CategoryMissingNormType.POSRATE, this.cateIndexMaps.get(i), this.output, offset);
+        }
+        return this.output;
+    }
+
+    private String[] nextRow() {
+        this.cursor = (this.cursor + 1) & (ROWS - 1);
+        return this.rows[this.cursor];
+    }
+
+}
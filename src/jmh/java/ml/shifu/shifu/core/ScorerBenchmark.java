@@ -0,0 +1,90 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import ml.shifu.shifu.container.ScoreObject;
+import ml.shifu.shifu.container.obj.ColumnConfig;
+import ml.shifu.shifu.container.obj.ModelConfig;
+import ml.shifu.shifu.container.obj.ModelNormalizeConf.NormType;
+import ml.shifu.shifu.core.dtrain.nn.NNConstants;
+
+import org.encog.ml.BasicML;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Score raw rows by {@link Scorer} with a bag of neural networks, in single thread and multiple threads mode.
+ * Normalization of raw row is included in each operation like eval.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ScorerBenchmark {
+
+    private static final int ROWS = 1024;
+
+    @Param({ "false", "true" })
+    public boolean multiThread;
+
+    @Param({ "1", "5" })
+    public int modelNum;
+
+    @Param({ "50", "500" })
+    public int width;
+
+    private Scorer scorer;
+
+    private List<Map<String, String>> rows;
+
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        ModelConfig modelConfig = BenchmarkFixtures.newModelConfig(NNConstants.NN_ALG_NAME, NormType.ZSCALE);
+        List<ColumnConfig> columnConfigList = BenchmarkFixtures.newColumnConfigs(this.width, 17L);
+        List<BasicML> models = new ArrayList<BasicML>(this.modelNum);
+        for(int i = 0; i < this.modelNum; i++) {
+            models.add(BenchmarkFixtures.newNetwork(columnConfigList, NormType.ZSCALE, Arrays.asList(50, 20)));
+        }
+        this.scorer = new Scorer(models, columnConfigList, NNConstants.NN_ALG_NAME, modelConfig, this.multiThread);
+        this.rows = BenchmarkFixtures.newRawRows(columnConfigList, ROWS, 31L);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.scorer.close();
+    }
+
+    @Benchmark
+    public ScoreObject score() {
+        this.cursor = (this.cursor + 1) & (ROWS - 1);
+        return this.scorer.score(this.rows.get(this.cursor));
+    }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.dt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compare linked {@link Node} scoring with compiled scoring of {@link IndependentTreeModel} on synthetic GBT models,
+ * with model input array and with raw data map which includes input binding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IndependentTreeModelBenchmark {
+
+    private static final int ROWS = 1024;
+
+    private static final int CATEGORY_SIZE = 20;
+
+    @Param({ "100", "1000" })
+    public int treeNum;
+
+    @Param({ "6" })
+    public int depth;
+
+    @Param({ "50", "200" })
+    public int columns;
+
+    private IndependentTreeModel linkedModel;
+
+    private IndependentTreeModel compiledModel;
+
+    private double[][] rows;
+
+    private List<Map<String, Object>> dataMaps;
+
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        this.linkedModel = SyntheticTreeModels.newGBTModel(this.columns, this.treeNum, this.depth, 17L);
+        this.compiledModel = SyntheticTreeModels.newGBTModel(this.columns, this.treeNum, this.depth, 17L);
+        this.compiledModel.setCompiledMode(true);
+        this.rows = SyntheticTreeModels.newRows(this.columns, ROWS, 31L);
+        this.dataMaps = SyntheticTreeModels.newDataMaps(this.rows);
+    }
+
+    @Benchmark
+    public double[] linked() {
+        return this.linkedModel.compute(nextRow());
+    }
+
+    @Benchmark
+    public double[] compiled() {
+        return this.compiledModel.compute(nextRow());
+    }
+
+    @Benchmark
+    public double[] linkedMap() {
+        return this.linkedModel.compute(nextDataMap());
+    }
+
+    @Benchmark
+    public double[] compiledMap() {
+        return this.compiledModel.compute(nextDataMap());
+    }
+
+    private double[] nextRow() {
+        this.cursor = (this.cursor + 1) & (ROWS - 1);
+        return this.rows[this.cursor];
+    }
+
+    private Map<String, Object> nextDataMap() {
+        this.cursor = (this.cursor + 1) & (ROWS - 1);
+        return this.dataMaps.get(this.cursor);
+    }
+
+    /**
+     * Synthetic tree models: odd columns are categorical with {@link #CATEGORY_SIZE} categories and even columns are
+     * numerical in [0, 1).
+     */
+    static class SyntheticTreeModels {
+
+        static IndependentTreeModel newGBTModel(int columns, int treeNum, int depth, long seed) {
+            Random random = new Random(seed);
+            Map<Integer, Double> means = new HashMap<Integer, Double>();
+            Map<Integer, String> names = new HashMap<Integer, String>();
+            Map<Integer, List<String>> categories = new HashMap<Integer, List<String>>();
+            Map<Integer, Map<String, Integer>> categoryIndexes = new HashMap<Integer, Map<String, Integer>>();
+            Map<Integer, Integer> columnMapping = new HashMap<Integer, Integer>();
+            for(int i = 0; i < columns; i++) {
+                names.put(i, "col" + i);
+                columnMapping.put(i, i);
+                if(isCategorical(i)) {
+                    List<String> values = new ArrayList<String>();
+                    Map<String, Integer> indexes = new HashMap<String, Integer>();
+                    for(int j = 0; j < CATEGORY_SIZE; j++) {
+                        values.add("c" + j);
+                        indexes.put("c" + j, j);
+                    }
+                    categories.put(i, values);
+                    categoryIndexes.put(i, indexes);
+                } else {
+                    means.put(i, 0.5d);
+                }
+            }
+
+            List<TreeNode> bag = new ArrayList<TreeNode>(treeNum);
+            List<Double> weights = new ArrayList<Double>(treeNum);
+            for(int i = 0; i < treeNum; i++) {
+                double learningRate = i == 0 ? 1d : 0.05d;
+                bag.add(new TreeNode(i, newNode(Node.ROOT_INDEX, columns, depth, random), learningRate));
+                weights.add(learningRate);
+            }
+            List<List<TreeNode>> trees = new ArrayList<List<TreeNode>>();
+            trees.add(bag);
+            List<List<Double>> bagWeights = new ArrayList<List<Double>>();
+            bagWeights.add(weights);
+            return new IndependentTreeModel(means, names, categories, categoryIndexes, columnMapping, false, trees,
+                    bagWeights, true, false, false, "squared", "GBT", columns, 4);
+        }
+
+        static double[][] newRows(int columns, int rowNum, long seed) {
+            Random random = new Random(seed);
+            double[][] rows = new double[rowNum][columns];
+            for(int i = 0; i < rowNum; i++) {
+                for(int j = 0; j < columns; j++) {
+                    rows[i][j] = isCategorical(j) ? random.nextInt(CATEGORY_SIZE + 1) : random.nextDouble();
+                }
+            }
+            return rows;
+        }
+
+        /**
+         * Raw data maps of the same rows, categorical value is category string and missing bin is null, numerical
+         * value is string like raw input.
+         */
+        static List<Map<String, Object>> newDataMaps(double[][] rows) {
+            List<Map<String, Object>> dataMaps = new ArrayList<Map<String, Object>>(rows.length);
+            for(double[] row: rows) {
+                Map<String, Object> dataMap = new HashMap<String, Object>(row.length * 2);
+                for(int j = 0; j < row.length; j++) {
+                    if(!isCategorical(j)) {
+                        dataMap.put("col" + j, Double.toString(row[j]));
+                    } else if(row[j] < CATEGORY_SIZE) {
+                        dataMap.put("col" + j, "c" + (int) row[j]);
+                    }
+                }
+                dataMaps.add(dataMap);
+            }
+            return dataMaps;
+        }
+
+        private static boolean isCategorical(int column) {
+            return column % 2 == 1;
+        }
+
+        private static Node newNode(int id, int columns, int depth, Random random) {
+            if(Node.indexToLevel(id) > depth) {
+                return new Node(id, new Predict(random.nextDouble()), 0d, true);
+            }
+            int column = random.nextInt(columns);
+            Node node = new Node(id);
+            if(isCategorical(column)) {
+                Set<Short> lefts = new HashSet<Short>();
+                for(short i = 0; i <= CATEGORY_SIZE; i++) {
+                    if(random.nextBoolean()) {
+                        lefts.add(i);
+                    }
+                }
+                node.setSplit(new Split(column, Split.CATEGORICAL, 0d, random.nextBoolean(), lefts));
+            } else {
+                node.setSplit(new Split(column, Split.CONTINUOUS, random.nextDouble(), true, null));
+            }
+            node.setLeft(newNode(Node.leftIndex(id), columns, depth, random));
+            node.setRight(newNode(Node.rightIndex(id), columns, depth, random));
+            return node;
+        }
+    }
+
+}
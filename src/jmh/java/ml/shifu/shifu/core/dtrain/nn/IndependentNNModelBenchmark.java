@@ -0,0 +1,100 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.nn;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ml.shifu.shifu.container.obj.ColumnConfig;
+import ml.shifu.shifu.container.obj.ModelConfig;
+import ml.shifu.shifu.container.obj.ModelNormalizeConf.NormType;
+import ml.shifu.shifu.core.BenchmarkFixtures;
+
+import org.encog.ml.BasicML;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Score {@link IndependentNNModel} with normalized array input and raw map input, map input includes normalization.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IndependentNNModelBenchmark {
+
+    private static final int ROWS = 1024;
+
+    @Param({ "1", "5" })
+    public int modelNum;
+
+    @Param({ "50", "500" })
+    public int width;
+
+    private IndependentNNModel model;
+
+    private double[][] rows;
+
+    private List<Map<String, Object>> dataMaps;
+
+    private int cursor;
+
+    @Setup
+    public void setup() throws IOException {
+        ModelConfig modelConfig = BenchmarkFixtures.newModelConfig(NNConstants.NN_ALG_NAME, NormType.ZSCALE);
+        List<ColumnConfig> columnConfigList = BenchmarkFixtures.newColumnConfigs(this.width, 17L);
+        List<BasicML> networks = new ArrayList<BasicML>(this.modelNum);
+        for(int i = 0; i < this.modelNum; i++) {
+            networks.add(BenchmarkFixtures.newNetwork(columnConfigList, NormType.ZSCALE, Arrays.asList(50, 20)));
+        }
+        this.model = BenchmarkFixtures.newIndependentNNModel(modelConfig, columnConfigList, networks);
+
+        Random random = new Random(31L);
+        this.rows = new double[ROWS][this.width];
+        for(int i = 0; i < ROWS; i++) {
+            for(int j = 0; j < this.width; j++) {
+                this.rows[i][j] = random.nextGaussian();
+            }
+        }
+        this.dataMaps = BenchmarkFixtures.toObjectRows(BenchmarkFixtures.newRawRows(columnConfigList, ROWS, 31L));
+    }
+
+    @Benchmark
+    public double[] computeArray() {
+        return this.model.compute(this.rows[nextCursor()]);
+    }
+
+    @Benchmark
+    public double[] computeMap() {
+        return this.model.compute(this.dataMaps.get(nextCursor()));
+    }
+
+    private int nextCursor() {
+        this.cursor = (this.cursor + 1) & (ROWS - 1);
+        return this.cursor;
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.wdl;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import ml.shifu.shifu.container.obj.ColumnConfig;
+import ml.shifu.shifu.container.obj.ModelConfig;
+import ml.shifu.shifu.container.obj.ModelNormalizeConf.NormType;
+import ml.shifu.shifu.core.BenchmarkFixtures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Score {@link IndependentWDLModel} with raw map input, numerical columns are dense inputs and categorical columns are
+ * both embed and wide inputs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IndependentWDLModelBenchmark {
+
+    private static final int ROWS = 1024;
+
+    private static final int EMBED_OUTPUTS = 8;
+
+    @Param({ "50", "500" })
+    public int width;
+
+    @Param({ "50" })
+    public int hiddenNodes;
+
+    private IndependentWDLModel model;
+
+    private List<Map<String, Object>> dataMaps;
+
+    private int cursor;
+
+    @Setup
+    public void setup() throws IOException {
+        ModelConfig modelConfig = BenchmarkFixtures.newModelConfig("WDL", NormType.ZSCALE_INDEX);
+        List<ColumnConfig> columnConfigList = BenchmarkFixtures.newColumnConfigs(this.width, 17L);
+        this.model = BenchmarkFixtures.newIndependentWDLModel(modelConfig, columnConfigList,
+                Arrays.asList(this.hiddenNodes), EMBED_OUTPUTS);
+        this.dataMaps = BenchmarkFixtures.toObjectRows(BenchmarkFixtures.newRawRows(columnConfigList, ROWS, 31L));
+    }
+
+    @Benchmark
+    public float[] computeMap() {
+        this.cursor = (this.cursor + 1) & (ROWS - 1);
+        return this.model.compute(this.dataMaps.get(this.cursor));
+    }
+
+}
@@ -27,6 +27,7 @@ import ml.shifu.shifu.core.DataSampler;
 import ml.shifu.shifu.core.Normalizer;
 import ml.shifu.shifu.message.NormPartRawDataMessage;
 import ml.shifu.shifu.message.NormResultDataMessage;
+import ml.shifu.shifu.udf.NormalizeUDF.CategoryMissingNormType;
 import ml.shifu.shifu.util.CommonUtils;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -50,6 +51,11 @@ public class DataNormalizeWorker extends AbstractWorkerActor {
     private static Logger log = LoggerFactory.getLogger(DataNormalizeWorker.class);
     private Expression weightExpr;
 
+    /**
+     * Reused buffer of normalized values of one column.
+     */
+    private double[] normValues = new double[1];
+
     public DataNormalizeWorker(ModelConfig modelConfig, List<ColumnConfig> columnConfigList, ActorRef parentActorRef,
             ActorRef nextActorRef) {
         super(modelConfig, columnConfigList, parentActorRef, nextActorRef);
@@ -139,7 +145,15 @@ public class DataNormalizeWorker extends AbstractWorkerActor {
                 retDouList.add(null);
             } else {
                 String val = (rfs[i] == null) ? "" : rfs[i];
-                retDouList.addAll(Normalizer.normalize(config, val, cutoff, modelConfig.getNormalizeType()));
+                int normSize = Normalizer.getNormalizedSize(config, modelConfig.getNormalizeType());
+                if(this.normValues.length < normSize) {
+                    this.normValues = new double[normSize];
+                }
+                Normalizer.normalize(config, val, cutoff, modelConfig.getNormalizeType(),
+                        CategoryMissingNormType.POSRATE, this.normValues, 0);
+                for(int j = 0; j < normSize; j++) {
+                    retDouList.add(this.normValues[j]);
+                }
             }
         }
 
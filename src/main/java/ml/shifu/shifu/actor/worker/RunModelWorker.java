@@ -87,10 +87,11 @@ public class RunModelWorker extends AbstractWorkerActor {
             List<String> evalDataList = msg.getEvalDataList();
 
             List<CaseScoreResult> scoreDataList = new ArrayList<CaseScoreResult>(evalDataList.size());
-            for(String evalData: evalDataList) {
-                CaseScoreResult scoreData = calculateModelScore(evalData);
+            List<CaseScoreResult> scoreResults = calculateModelScores(evalDataList);
+            for(int i = 0; i < evalDataList.size(); i++) {
+                CaseScoreResult scoreData = scoreResults.get(i);
                 if(scoreData != null) {
-                    scoreData.setInputData(evalData);
+                    scoreData.setInputData(evalDataList.get(i));
                     scoreDataList.add(scoreData);
                 }
             }
@@ -104,14 +105,14 @@ public class RunModelWorker extends AbstractWorkerActor {
     }
 
     /**
-     * Call model runner to compute result score
+     * Call model runner to compute result scores of all records in one batch
      * 
-     * @param evalData
+     * @param evalDataList
      *            - data to run model
-     * @return - the score result
+     * @return - the score results in the same order of data
      */
-    private CaseScoreResult calculateModelScore(String evalData) {
-        return modelRunner.compute(evalData);
+    private List<CaseScoreResult> calculateModelScores(List<String> evalDataList) {
+        return modelRunner.compute(evalDataList);
     }
 
 }
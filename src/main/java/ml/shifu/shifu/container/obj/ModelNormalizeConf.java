@@ -91,6 +91,13 @@ public class ModelNormalizeConf {
      */
     private Boolean isParquet = Boolean.FALSE;
 
+    /**
+     * If norm output is binary columnar format, float rows in compressed blocks are read directly in training without
+     * parsing text. Binary format is supported by NN, LR and WDL (with index norm types) algorithms, tree models are
+     * trained on cleaned data which is still text.
+     */
+    private Boolean isBinary = Boolean.FALSE;
+
     public Double getStdDevCutOff() {
         return stdDevCutOff;
     }
@@ -147,6 +154,23 @@ public class ModelNormalizeConf {
         this.isParquet = isParquet;
     }
 
+    /**
+     * @return the isBinary
+     */
+    @JsonIgnore
+    public Boolean getIsBinary() {
+        return isBinary;
+    }
+
+    /**
+     * @param isBinary
+     *            the isBinary to set
+     */
+    @JsonProperty
+    public void setIsBinary(Boolean isBinary) {
+        this.isBinary = isBinary;
+    }
+
     @Override
     public ModelNormalizeConf clone() {
         ModelNormalizeConf other = new ModelNormalizeConf();
@@ -155,6 +179,7 @@ public class ModelNormalizeConf {
         other.setSampleNegOnly(sampleNegOnly);
         other.setStdDevCutOff(stdDevCutOff);
         other.setIsParquet(isParquet);
+        other.setIsBinary(isBinary);
         // other.setCorrelation(correlation);
         return other;
     }
@@ -142,6 +142,19 @@ public class ModelTrainConf {
      */
     private Integer workerThreadCount = 4;
 
+    /**
+     * How many threads in master, this will enable multiple threading stats merging and split finding in tree model
+     * master.
+     */
+    private Integer masterThreadCount = 4;
+
+    /**
+     * Only works in NN, max iterations a worker gradient can lag behind master weights. If set to k &gt; 0, master goes
+     * on without waiting for straggler workers and still applies their latest gradients which are at most k iterations
+     * stale (bounded staleness). 0 means fully synchronous training.
+     */
+    private Integer staleness = 0;
+
     /**
      * If enabled by a value in (1 - 20], cross validation will be enabled. Jobs will be started to train according to
      * k-fold training data. Final average validation error will be printed in console.
@@ -383,6 +396,36 @@ public class ModelTrainConf {
         this.workerThreadCount = workerThreadCount;
     }
 
+    /**
+     * @return the masterThreadCount
+     */
+    public Integer getMasterThreadCount() {
+        return masterThreadCount;
+    }
+
+    /**
+     * @param masterThreadCount
+     *            the masterThreadCount to set
+     */
+    public void setMasterThreadCount(Integer masterThreadCount) {
+        this.masterThreadCount = masterThreadCount;
+    }
+
+    /**
+     * @return the staleness
+     */
+    public Integer getStaleness() {
+        return staleness;
+    }
+
+    /**
+     * @param staleness
+     *            the staleness to set
+     */
+    public void setStaleness(Integer staleness) {
+        this.staleness = staleness;
+    }
+
     /**
      * @return the baggingSampleSeed
      */
@@ -525,6 +568,8 @@ public class ModelTrainConf {
         other.setUpSampleWeight(upSampleWeight);
         other.setValidSetRate(validSetRate);
         other.setWorkerThreadCount(workerThreadCount);
+        other.setMasterThreadCount(masterThreadCount);
+        other.setStaleness(staleness);
         return other;
     }
 
@@ -0,0 +1,726 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ml.shifu.shifu.column.NSColumn;
+import ml.shifu.shifu.util.DoubleParser;
+
+import org.apache.commons.jexl2.MapContext;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.data.Tuple;
+
+/**
+ * {@link CompiledFilter} is the filter expression of {@link DataPurifier} compiled against data headers.
+ *
+ * <p>
+ * Only columns whose names occur in the expression are bound: fields of them are cut from the record lazily without
+ * splitting the whole line, and only they are set into the Jexl context. Expressions built from comparisons (==, !=,
+ * <, <=, >, >= and eq, ne, lt, le, gt, ge) between a column and a string, integer or null literal or another column,
+ * combined by &&, ||, and, or and !(...), are also compiled into a predicate which is tested without Jexl.
+ *
+ * <p>
+ * Predicate follows Jexl arithmetic: string compare for string literals and long or double compare for number
+ * literals. If a field can not be compared the same way as Jexl, like 'abc' or '1.5' against integer literal, the
+ * predicate gives null and the record is evaluated by Jexl, so result and error handling are kept as before.
+ */
+final class CompiledFilter {
+
+    /**
+     * Jexl reserved words which can not be column variables.
+     */
+    private static final Set<String> KEYWORDS = new HashSet<String>(Arrays.asList("and", "or", "not", "eq", "ne",
+            "lt", "le", "gt", "ge", "null", "true", "false", "empty", "size", "new", "var", "if", "else", "for",
+            "foreach", "while", "function", "return", "div", "mod", "in"));
+
+    private static final int EQ = 0, NE = 1, LT = 2, LE = 3, GT = 4, GE = 5;
+
+    /**
+     * Max digits of integer field or literal which can not overflow long.
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private final int headerSize;
+
+    /**
+     * Bound field indexes in ascending order.
+     */
+    private final int[] fieldIndexes;
+
+    /**
+     * Context variable names of bound fields, the full column name.
+     */
+    private final String[] names;
+
+    /**
+     * Context variable names of bound fields by simple column name, null if simple names are not bound.
+     */
+    private final String[] simpleNames;
+
+    /**
+     * Predicate of expression, null if expression is not of supported shapes.
+     */
+    private final Predicate predicate;
+
+    /**
+     * Values of bound fields of current record, reused for each record.
+     */
+    private final String[] values;
+
+    /**
+     * Compile filter expression.
+     *
+     * @param expression
+     *            the filter expression
+     * @param headers
+     *            headers of data
+     * @param isSimpleNameBound
+     *            if column is also bound by simple name in context, true for raw records and false for tuples
+     */
+    CompiledFilter(String expression, String[] headers, boolean isSimpleNameBound) {
+        this.headerSize = headers.length;
+
+        List<Integer> indexes = new ArrayList<Integer>();
+        for(int i = 0; i < headers.length; i++) {
+            String simpleName = new NSColumn(headers[i]).getSimpleName();
+            if(occursIn(expression, headers[i]) || (isSimpleNameBound && occursIn(expression, simpleName))) {
+                indexes.add(i);
+            }
+        }
+        this.fieldIndexes = new int[indexes.size()];
+        this.names = new String[indexes.size()];
+        this.simpleNames = isSimpleNameBound ? new String[indexes.size()] : null;
+        for(int i = 0; i < this.fieldIndexes.length; i++) {
+            this.fieldIndexes[i] = indexes.get(i);
+            this.names[i] = headers[this.fieldIndexes[i]];
+            if(isSimpleNameBound) {
+                this.simpleNames[i] = new NSColumn(this.names[i]).getSimpleName();
+            }
+        }
+        this.values = new String[this.fieldIndexes.length];
+        this.predicate = new Parser(expression).parse();
+    }
+
+    /**
+     * Check if name occurs in expression as a whole word, names in string literals are also taken, which only binds
+     * some more columns.
+     */
+    private static boolean occursIn(String expression, String name) {
+        if(name == null || name.isEmpty()) {
+            return false;
+        }
+        int from = 0;
+        int index;
+        while((index = expression.indexOf(name, from)) >= 0) {
+            int end = index + name.length();
+            if((index == 0 || !isIdentifierPart(expression.charAt(index - 1)))
+                    && (end == expression.length() || !isIdentifierPart(expression.charAt(end)))) {
+                return true;
+            }
+            from = index + 1;
+        }
+        return false;
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    /**
+     * Cut bound fields from raw record.
+     *
+     * @param record
+     *            the raw record
+     * @param delimiter
+     *            the data delimiter
+     * @return values of bound fields, null if field size is not the same as headers
+     */
+    String[] bind(String record, String delimiter) {
+        int field = 0;
+        int next = 0;
+        int start = 0;
+        while(true) {
+            int end = record.indexOf(delimiter, start);
+            if(next < this.fieldIndexes.length && this.fieldIndexes[next] == field) {
+                this.values[next++] = record.substring(start, end < 0 ? record.length() : end);
+            }
+            if(end < 0) {
+                break;
+            }
+            field += 1;
+            if(field >= this.headerSize) {
+                return null;
+            }
+            start = end + delimiter.length();
+        }
+        return field + 1 == this.headerSize ? this.values : null;
+    }
+
+    /**
+     * Get bound fields from tuple, null field is kept as null.
+     *
+     * @param input
+     *            the input tuple
+     * @return values of bound fields, null if tuple size is not the same as headers
+     * @throws ExecException
+     *             any exception in reading tuple
+     */
+    String[] bind(Tuple input) throws ExecException {
+        if(input == null || input.size() != this.headerSize) {
+            return null;
+        }
+        for(int i = 0; i < this.fieldIndexes.length; i++) {
+            Object value = input.get(this.fieldIndexes[i]);
+            this.values[i] = (value == null ? null : value.toString());
+        }
+        return this.values;
+    }
+
+    /**
+     * Test values by compiled predicate.
+     *
+     * @param values
+     *            values of bound fields
+     * @return filter result, or null if it must be evaluated by Jexl
+     */
+    Boolean test(String[] values) {
+        return this.predicate == null ? null : this.predicate.test(values);
+    }
+
+    /**
+     * Set bound fields into Jexl context, in the same order as setting all columns so that later columns of the same
+     * name still override former ones.
+     */
+    void setContext(MapContext context, String[] values) {
+        for(int i = 0; i < values.length; i++) {
+            context.set(this.names[i], values[i]);
+            if(this.simpleNames != null) {
+                context.set(this.simpleNames[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * @return slot of variable in bound values, -1 if variable is not bound
+     */
+    private int slotOf(String variable) {
+        int slot = -1;
+        for(int i = 0; i < this.names.length; i++) {
+            if(variable.equals(this.names[i]) || (this.simpleNames != null && variable.equals(this.simpleNames[i]))) {
+                slot = i;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Check if value is valid for {@link Long#parseLong(String)} without overflow, to avoid exceptions of invalid
+     * values in parsing.
+     */
+    private static boolean isLong(String value) {
+        int start = (value.length() > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) ? 1 : 0;
+        int digits = value.length() - start;
+        if(digits == 0 || digits > MAX_LONG_DIGITS) {
+            return false;
+        }
+        for(int i = start; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(int op, int compare) {
+        switch(op) {
+            case EQ:
+                return compare == 0;
+            case NE:
+                return compare != 0;
+            case LT:
+                return compare < 0;
+            case LE:
+                return compare <= 0;
+            case GT:
+                return compare > 0;
+            default:
+                return compare >= 0;
+        }
+    }
+
+    /**
+     * Predicate of bound values, test gives null if the record must be evaluated by Jexl.
+     */
+    private static abstract class Predicate {
+        abstract Boolean test(String[] values);
+    }
+
+    private static class And extends Predicate {
+        private final Predicate left;
+        private final Predicate right;
+
+        And(Predicate left, Predicate right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Boolean test(String[] values) {
+            Boolean result = this.left.test(values);
+            if(result == null || !result) {
+                return result;
+            }
+            return this.right.test(values);
+        }
+    }
+
+    private static class Or extends Predicate {
+        private final Predicate left;
+        private final Predicate right;
+
+        Or(Predicate left, Predicate right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Boolean test(String[] values) {
+            Boolean result = this.left.test(values);
+            if(result == null || result) {
+                return result;
+            }
+            return this.right.test(values);
+        }
+    }
+
+    private static class Not extends Predicate {
+        private final Predicate predicate;
+
+        Not(Predicate predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        Boolean test(String[] values) {
+            Boolean result = this.predicate.test(values);
+            return result == null ? null : !result;
+        }
+    }
+
+    /**
+     * Compare field with null literal, only == and != are compiled.
+     */
+    private static class NullCompare extends Predicate {
+        private final int slot;
+        private final int op;
+
+        NullCompare(int slot, int op) {
+            this.slot = slot;
+            this.op = op;
+        }
+
+        @Override
+        Boolean test(String[] values) {
+            return (values[this.slot] == null) == (this.op == EQ);
+        }
+    }
+
+    private static class StringCompare extends Predicate {
+        private final int slot;
+        private final int op;
+        private final String literal;
+
+        StringCompare(int slot, int op, String literal) {
+            this.slot = slot;
+            this.op = op;
+            this.literal = literal;
+        }
+
+        @Override
+        Boolean test(String[] values) {
+            String value = values[this.slot];
+            return value == null ? null : matches(this.op, value.compareTo(this.literal));
+        }
+    }
+
+    private static class FieldCompare extends Predicate {
+        private final int slot;
+        private final int op;
+        private final int otherSlot;
+
+        FieldCompare(int slot, int op, int otherSlot) {
+            this.slot = slot;
+            this.op = op;
+            this.otherSlot = otherSlot;
+        }
+
+        @Override
+        Boolean test(String[] values) {
+            String value = values[this.slot];
+            String other = values[this.otherSlot];
+            return (value == null || other == null) ? null : matches(this.op, value.compareTo(other));
+        }
+    }
+
+    /**
+     * Compare field with integer literal, Jexl compares both as long.
+     */
+    private static class LongCompare extends Predicate {
+        private final int slot;
+        private final int op;
+        private final long literal;
+
+        LongCompare(int slot, int op, long literal) {
+            this.slot = slot;
+            this.op = op;
+            this.literal = literal;
+        }
+
+        @Override
+        Boolean test(String[] values) {
+            String value = values[this.slot];
+            if(value == null || !isLong(value)) {
+                return null;
+            }
+            long lhs = Long.parseLong(value);
+            return matches(this.op, lhs < this.literal ? -1 : (lhs > this.literal ? 1 : 0));
+        }
+    }
+
+    /**
+     * Compare field with real literal, Jexl compares both as double. Only literals exact in both float and double are
+     * compiled, so it doesn't matter if Jexl takes literal as float or double.
+     */
+    private static class DoubleCompare extends Predicate {
+        private final int slot;
+        private final int op;
+        private final double literal;
+
+        DoubleCompare(int slot, int op, double literal) {
+            this.slot = slot;
+            this.op = op;
+            this.literal = literal;
+        }
+
+        @Override
+        Boolean test(String[] values) {
+            String value = values[this.slot];
+            double lhs = DoubleParser.parse(value, Double.NaN);
+            if(Double.isNaN(lhs)) {
+                return null;
+            }
+            return matches(this.op, lhs < this.literal ? -1 : (lhs > this.literal ? 1 : 0));
+        }
+    }
+
+    /**
+     * Thrown by {@link Parser} if expression is not of supported shapes.
+     */
+    private static class UnsupportedShapeException extends RuntimeException {
+        private static final long serialVersionUID = 6146325470376592134L;
+    }
+
+    /**
+     * Recursive descent parser of supported shapes:
+     *
+     * <pre>
+     * or         := and (('||' | 'or') and)*
+     * and        := unary (('&amp;&amp;' | 'and') unary)*
+     * unary      := ('!' | 'not') '(' or ')' | '(' or ')' | comparison
+     * comparison := operand op operand
+     * operand    := column | string | integer | real | null
+     * </pre>
+     *
+     * '!' is only compiled before parenthesis as it binds tighter than comparisons in Jexl.
+     */
+    private class Parser {
+        private final String expression;
+        private int pos;
+
+        /**
+         * Current token: identifier or keyword, operator, string, number, or null at end.
+         */
+        private String token;
+        private boolean isString;
+
+        Parser(String expression) {
+            this.expression = expression;
+        }
+
+        Predicate parse() {
+            try {
+                next();
+                Predicate predicate = parseOr();
+                if(this.token != null) {
+                    throw new UnsupportedShapeException();
+                }
+                return predicate;
+            } catch (UnsupportedShapeException e) {
+                return null;
+            }
+        }
+
+        private Predicate parseOr() {
+            Predicate predicate = parseAnd();
+            while(isToken("||") || isToken("or")) {
+                next();
+                predicate = new Or(predicate, parseAnd());
+            }
+            return predicate;
+        }
+
+        private Predicate parseAnd() {
+            Predicate predicate = parseUnary();
+            while(isToken("&&") || isToken("and")) {
+                next();
+                predicate = new And(predicate, parseUnary());
+            }
+            return predicate;
+        }
+
+        private Predicate parseUnary() {
+            if(isToken("!") || isToken("not")) {
+                next();
+                if(!isToken("(")) {
+                    throw new UnsupportedShapeException();
+                }
+                return new Not(parseUnary());
+            }
+            if(isToken("(")) {
+                next();
+                Predicate predicate = parseOr();
+                expect(")");
+                return predicate;
+            }
+            return parseComparison();
+        }
+
+        private Predicate parseComparison() {
+            Operand left = parseOperand();
+            int op = toOp(this.token);
+            next();
+            Operand right = parseOperand();
+            if(left.slot < 0) {
+                // literal op column is column reversed-op literal
+                Operand swap = left;
+                left = right;
+                right = swap;
+                op = reverse(op);
+            }
+            if(left.slot < 0) {
+                throw new UnsupportedShapeException();
+            }
+            if(right.slot >= 0) {
+                return new FieldCompare(left.slot, op, right.slot);
+            }
+            if(right.isNull) {
+                if(op != EQ && op != NE) {
+                    throw new UnsupportedShapeException();
+                }
+                return new NullCompare(left.slot, op);
+            }
+            if(right.string != null) {
+                return new StringCompare(left.slot, op, right.string);
+            }
+            if(right.isInteger) {
+                return new LongCompare(left.slot, op, right.integer);
+            }
+            return new DoubleCompare(left.slot, op, right.number);
+        }
+
+        private Operand parseOperand() {
+            if(this.token == null) {
+                throw new UnsupportedShapeException();
+            }
+            Operand operand = new Operand();
+            if(this.isString) {
+                operand.string = this.token;
+            } else if("null".equals(this.token)) {
+                operand.isNull = true;
+            } else if("-".equals(this.token)) {
+                next();
+                if(this.token == null || this.isString || !Character.isDigit(this.token.charAt(0))) {
+                    throw new UnsupportedShapeException();
+                }
+                parseNumber("-" + this.token, operand);
+            } else if(Character.isDigit(this.token.charAt(0))) {
+                parseNumber(this.token, operand);
+            } else if(isIdentifierStart(this.token.charAt(0)) && !KEYWORDS.contains(this.token)) {
+                operand.slot = slotOf(this.token);
+                if(operand.slot < 0) {
+                    // unbound variable is null or error in strict mode
+                    throw new UnsupportedShapeException();
+                }
+            } else {
+                throw new UnsupportedShapeException();
+            }
+            next();
+            return operand;
+        }
+
+        /**
+         * Integer literal of at most 18 digits without leading zero, or real literal like '0.5' with the same value
+         * in float and double.
+         */
+        private void parseNumber(String number, Operand operand) {
+            int dot = number.indexOf('.');
+            String digits = (dot < 0 ? number : number.substring(0, dot)).replace("-", "");
+            if(digits.length() > 1 && digits.charAt(0) == '0') {
+                // octal literal
+                throw new UnsupportedShapeException();
+            }
+            if(dot < 0) {
+                if(!isLong(number)) {
+                    throw new UnsupportedShapeException();
+                }
+                operand.isInteger = true;
+                operand.integer = Long.parseLong(number);
+                return;
+            }
+            if(dot == number.length() - 1 || number.indexOf('.', dot + 1) >= 0) {
+                throw new UnsupportedShapeException();
+            }
+            double value = Double.parseDouble(number);
+            if(Float.parseFloat(number) != value) {
+                throw new UnsupportedShapeException();
+            }
+            operand.number = value;
+        }
+
+        private int toOp(String token) {
+            if(token == null || this.isString) {
+                throw new UnsupportedShapeException();
+            }
+            if("==".equals(token) || "eq".equals(token)) {
+                return EQ;
+            } else if("!=".equals(token) || "ne".equals(token)) {
+                return NE;
+            } else if("<".equals(token) || "lt".equals(token)) {
+                return LT;
+            } else if("<=".equals(token) || "le".equals(token)) {
+                return LE;
+            } else if(">".equals(token) || "gt".equals(token)) {
+                return GT;
+            } else if(">=".equals(token) || "ge".equals(token)) {
+                return GE;
+            }
+            throw new UnsupportedShapeException();
+        }
+
+        private int reverse(int op) {
+            switch(op) {
+                case LT:
+                    return GT;
+                case LE:
+                    return GE;
+                case GT:
+                    return LT;
+                case GE:
+                    return LE;
+                default:
+                    return op;
+            }
+        }
+
+        private boolean isToken(String expected) {
+            return this.token != null && !this.isString && this.token.equals(expected);
+        }
+
+        private void expect(String expected) {
+            if(!isToken(expected)) {
+                throw new UnsupportedShapeException();
+            }
+            next();
+        }
+
+        private boolean isIdentifierStart(char c) {
+            return Character.isLetter(c) || c == '_' || c == '$';
+        }
+
+        /**
+         * Read next token, unsupported characters like '.', '[', '+' or escapes in string fail the parsing.
+         */
+        private void next() {
+            String expr = this.expression;
+            while(this.pos < expr.length() && Character.isWhitespace(expr.charAt(this.pos))) {
+                this.pos++;
+            }
+            this.isString = false;
+            if(this.pos >= expr.length()) {
+                this.token = null;
+                return;
+            }
+            int start = this.pos;
+            char c = expr.charAt(this.pos);
+            if(c == '\'' || c == '"') {
+                int end = expr.indexOf(c, start + 1);
+                if(end < 0 || expr.indexOf('\\', start + 1) >= 0 && expr.indexOf('\\', start + 1) < end) {
+                    throw new UnsupportedShapeException();
+                }
+                this.token = expr.substring(start + 1, end);
+                this.isString = true;
+                this.pos = end + 1;
+            } else if(isIdentifierStart(c)) {
+                while(this.pos < expr.length() && isIdentifierPart(expr.charAt(this.pos))) {
+                    this.pos++;
+                }
+                this.token = expr.substring(start, this.pos);
+            } else if(Character.isDigit(c)) {
+                while(this.pos < expr.length()
+                        && (Character.isDigit(expr.charAt(this.pos)) || expr.charAt(this.pos) == '.')) {
+                    this.pos++;
+                }
+                if(this.pos < expr.length() && isIdentifierPart(expr.charAt(this.pos))) {
+                    // typed literal like '1L' or '1.5d'
+                    throw new UnsupportedShapeException();
+                }
+                this.token = expr.substring(start, this.pos);
+            } else if(expr.startsWith("==", start) || expr.startsWith("!=", start) || expr.startsWith("<=", start)
+                    || expr.startsWith(">=", start) || expr.startsWith("&&", start)
+                    || expr.startsWith("||", start)) {
+                this.pos += 2;
+                this.token = expr.substring(start, this.pos);
+                if(this.pos < expr.length() && "=~".indexOf(expr.charAt(this.pos)) >= 0) {
+                    throw new UnsupportedShapeException();
+                }
+            } else if("<>!()-".indexOf(c) >= 0) {
+                this.pos += 1;
+                this.token = String.valueOf(c);
+                if(this.pos < expr.length() && (c == '!' && expr.charAt(this.pos) == '~')) {
+                    throw new UnsupportedShapeException();
+                }
+            } else {
+                throw new UnsupportedShapeException();
+            }
+        }
+    }
+
+    private static class Operand {
+        private int slot = -1;
+        private boolean isNull;
+        private String string;
+        private boolean isInteger;
+        private long integer;
+        private double number;
+    }
+
+}
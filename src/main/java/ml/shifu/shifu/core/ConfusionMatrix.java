@@ -51,6 +51,7 @@ import ml.shifu.shifu.core.dtrain.CommonConstants;
 import ml.shifu.shifu.core.dtrain.nn.NNConstants;
 import ml.shifu.shifu.core.eval.AreaUnderCurve;
 import ml.shifu.shifu.core.eval.GainChart;
+import ml.shifu.shifu.core.eval.ScoreHistogram;
 import ml.shifu.shifu.exception.ShifuErrorCode;
 import ml.shifu.shifu.exception.ShifuException;
 import ml.shifu.shifu.fs.PathFinder;
@@ -469,24 +470,191 @@ public class ConfusionMatrix {
         PerformanceResult result = buildPerfResult(FPRList, catchRateList, gainList, modelScoreList, FPRWeightList,
                 catchRateWeightList, gainWeightList);
 
+        outputPerformance(result, evalPerformancePath, isPrint, isGenerateChart, hasWeight);
+
+        if(cnt == 0) {
+            LOG.error("No score read, the EvalScore did not genernate or is null file");
+            throw new ShifuException(ShifuErrorCode.ERROR_EVALSCORE);
+        }
+        return result;
+    }
+
+    /**
+     * Compute performance from merged score histogram of all scoring mappers, which is the same as
+     * {@link #bufferedComputeConfusionMatrixAndPerformance} except that buckets in descending score order are consumed
+     * instead of sorted score records. No global sort of eval scores is needed and cost is only related to number of
+     * non-empty buckets.
+     * 
+     * @param histogram
+     *            merged score histogram
+     * @param pigPosTags
+     *            positive count
+     * @param pigNegTags
+     *            negative count
+     * @param pigPosWeightTags
+     *            weighted positive count
+     * @param pigNegWeightTags
+     *            weighted negative count
+     * @param maxPScore
+     *            max raw score
+     * @param minPScore
+     *            min raw score
+     * @param evalPerformancePath
+     *            performance output path
+     * @param isPrint
+     *            if print performance in log
+     * @param isGenerateChart
+     *            if generate charts
+     * @param isUseMaxMinScore
+     *            if use max and min raw score as score range
+     * @return the performance result
+     * @throws IOException
+     *             any io exception
+     */
+    public PerformanceResult computeConfusionMatrixAndPerformance(ScoreHistogram histogram, long pigPosTags,
+            long pigNegTags, double pigPosWeightTags, double pigNegWeightTags, double maxPScore, double minPScore,
+            String evalPerformancePath, boolean isPrint, boolean isGenerateChart, boolean isUseMaxMinScore)
+            throws IOException {
+        double maxScore = 1d * scoreScale, minScore = 0d;
+        if(!isGBTNeedConvertScore() && isUseMaxMinScore) {
+            maxScore = maxPScore;
+            minScore = minPScore;
+        }
+        LOG.info("{} Transformed (scale included) max score is {}, transformed min score is {}",
+                evalConfig.getGbtScoreConvertStrategy(), maxScore, minScore);
+
+        int numBucket = evalConfig.getPerformanceBucketNum();
+        boolean hasWeight = StringUtils.isNotBlank(evalConfig.getDataSet().getWeightColumnName());
+
+        List<PerformanceObject> FPRList = new ArrayList<PerformanceObject>(numBucket + 1);
+        List<PerformanceObject> catchRateList = new ArrayList<PerformanceObject>(numBucket + 1);
+        List<PerformanceObject> gainList = new ArrayList<PerformanceObject>(numBucket + 1);
+        List<PerformanceObject> modelScoreList = new ArrayList<PerformanceObject>(numBucket + 1);
+        List<PerformanceObject> FPRWeightList = new ArrayList<PerformanceObject>(numBucket + 1);
+        List<PerformanceObject> catchRateWeightList = new ArrayList<PerformanceObject>(numBucket + 1);
+        List<PerformanceObject> gainWeightList = new ArrayList<PerformanceObject>(numBucket + 1);
+
+        double binScore = (maxScore - minScore) * 1d / numBucket, binCapacity = 1.0 / numBucket, scoreBinCount = 0,
+                scoreBinWeigthedCount = 0;
+        int fpBin = 1, tpBin = 1, gainBin = 1, fpWeightBin = 1, tpWeightBin = 1, gainWeightBin = 1, modelScoreBin = 1;
+        long validRecordCnt = 0;
+
+        ConfusionMatrixObject cmo = buildInitalCmo(pigPosTags, pigNegTags, pigPosWeightTags, pigNegWeightTags,
+                maxScore);
+        PerformanceObject po = buildFirstPO(cmo);
+
+        FPRList.add(po);
+        catchRateList.add(po);
+        gainList.add(po);
+        FPRWeightList.add(po);
+        catchRateWeightList.add(po);
+        gainWeightList.add(po);
+        modelScoreList.add(po);
+
+        boolean isGBTScoreHalfCutoffStreategy = isGBTScoreHalfCutoffStreategy();
+        boolean isGBTScoreMaxMinScaleStreategy = isGBTScoreMaxMinScaleStreategy();
+
+        List<ScoreHistogram.Bucket> buckets = histogram.getDescendingBuckets();
+        LOG.info("Compute performance from {} score buckets in eval {}.", buckets.size(), evalConfig.getName());
+        for(ScoreHistogram.Bucket bucket: buckets) {
+            long count = bucket.getPosCount() + bucket.getNegCount();
+            double weight = bucket.getPosWeight() + bucket.getNegWeight();
+            scoreBinCount += count;
+            scoreBinWeigthedCount += weight;
+            validRecordCnt += count;
+
+            cmo = new ConfusionMatrixObject(cmo);
+            cmo.setTp(cmo.getTp() + bucket.getPosCount());
+            cmo.setFn(cmo.getFn() - bucket.getPosCount());
+            cmo.setWeightedTp(cmo.getWeightedTp() + bucket.getPosWeight());
+            cmo.setWeightedFn(cmo.getWeightedFn() - bucket.getPosWeight());
+            cmo.setFp(cmo.getFp() + bucket.getNegCount());
+            cmo.setTn(cmo.getTn() - bucket.getNegCount());
+            cmo.setWeightedFp(cmo.getWeightedFp() + bucket.getNegWeight());
+            cmo.setWeightedTn(cmo.getWeightedTn() - bucket.getNegWeight());
+
+            double score = bucket.getScore();
+            if(isGBTScoreHalfCutoffStreategy) {
+                if(score < 0d) {
+                    score = 0d;
+                }
+                score = ((score - 0) * scoreScale) / (maxPScore - 0);
+            } else if(isGBTScoreMaxMinScaleStreategy) {
+                score = ((score - minPScore) * scoreScale) / (maxPScore - minPScore);
+            }
+            cmo.setScore(Double.parseDouble(SCORE_FORMAT.format(score)));
+
+            // one bucket may cross several bins, each crossed bin has its own performance object, bins are bounded
+            // by numBucket in case of NaN or infinite rates
+            po = PerformanceEvaluator.setPerformanceObject(cmo);
+            while(fpBin <= numBucket && po.fpr >= fpBin * binCapacity) {
+                FPRList.add(newBinPO(cmo, fpBin++));
+            }
+            while(tpBin <= numBucket && po.recall >= tpBin * binCapacity) {
+                catchRateList.add(newBinPO(cmo, tpBin++));
+            }
+            while(gainBin <= numBucket
+                    && (double) validRecordCnt / (pigPosTags + pigNegTags) >= gainBin * binCapacity) {
+                gainList.add(newBinPO(cmo, gainBin++));
+            }
+            while(fpWeightBin <= numBucket && po.weightedFpr >= fpWeightBin * binCapacity) {
+                FPRWeightList.add(newBinPO(cmo, fpWeightBin++));
+            }
+            while(tpWeightBin <= numBucket && po.weightedRecall >= tpWeightBin * binCapacity) {
+                catchRateWeightList.add(newBinPO(cmo, tpWeightBin++));
+            }
+            while(gainWeightBin <= numBucket && (cmo.getWeightedTp() + cmo.getWeightedFp())
+                    / cmo.getWeightedTotal() >= gainWeightBin * binCapacity) {
+                gainWeightList.add(newBinPO(cmo, gainWeightBin++));
+            }
+            while(modelScoreBin <= numBucket && (maxScore - (modelScoreBin * binScore)) >= score) {
+                PerformanceObject scorePo = newBinPO(cmo, modelScoreBin++);
+                scorePo.scoreCount = scoreBinCount;
+                scorePo.scoreWgtCount = scoreBinWeigthedCount;
+                scoreBinCount = scoreBinWeigthedCount = 0;
+                modelScoreList.add(scorePo);
+            }
+        }
+        LOG.info("Totally {} records in score histogram of eval {}.", validRecordCnt, evalConfig.getName());
+
+        PerformanceResult result = buildPerfResult(FPRList, catchRateList, gainList, modelScoreList, FPRWeightList,
+                catchRateWeightList, gainWeightList);
+
+        outputPerformance(result, evalPerformancePath, isPrint, isGenerateChart, hasWeight);
+
+        if(validRecordCnt == 0) {
+            LOG.error("No score read, the score histogram did not genernate or is empty");
+            throw new ShifuException(ShifuErrorCode.ERROR_EVALSCORE);
+        }
+        return result;
+    }
+
+    private PerformanceObject newBinPO(ConfusionMatrixObject cmo, int binNum) {
+        PerformanceObject po = PerformanceEvaluator.setPerformanceObject(cmo);
+        po.binNum = binNum;
+        return po;
+    }
+
+    private void outputPerformance(PerformanceResult result, String evalPerformancePath, boolean isPrint,
+            boolean isGenerateChart, boolean hasWeight) throws IOException {
         synchronized(this.lock) {
             if(isPrint) {
-                PerformanceEvaluator.logResult(FPRList, "Bucketing False Positive Rate");
+                PerformanceEvaluator.logResult(result.roc, "Bucketing False Positive Rate");
 
                 if(hasWeight) {
-                    PerformanceEvaluator.logResult(FPRWeightList, "Bucketing Weighted False Positive Rate");
+                    PerformanceEvaluator.logResult(result.weightedRoc, "Bucketing Weighted False Positive Rate");
                 }
 
-                PerformanceEvaluator.logResult(catchRateList, "Bucketing Catch Rate");
+                PerformanceEvaluator.logResult(result.pr, "Bucketing Catch Rate");
 
                 if(hasWeight) {
-                    PerformanceEvaluator.logResult(catchRateWeightList, "Bucketing Weighted Catch Rate");
+                    PerformanceEvaluator.logResult(result.weightedPr, "Bucketing Weighted Catch Rate");
                 }
 
-                PerformanceEvaluator.logResult(gainList, "Bucketing Action Rate");
+                PerformanceEvaluator.logResult(result.gains, "Bucketing Action Rate");
 
                 if(hasWeight) {
-                    PerformanceEvaluator.logResult(gainWeightList, "Bucketing Weighted Action Rate");
+                    PerformanceEvaluator.logResult(result.weightedGains, "Bucketing Weighted Action Rate");
                 }
 
                 PerformanceEvaluator.logAucResult(result, hasWeight);
@@ -498,12 +666,6 @@ public class ConfusionMatrix {
                 generateChartAndJsonPerfFiles(hasWeight, result);
             }
         }
-
-        if(cnt == 0) {
-            LOG.error("No score read, the EvalScore did not genernate or is null file");
-            throw new ShifuException(ShifuErrorCode.ERROR_EVALSCORE);
-        }
-        return result;
     }
 
     private void writePerResult2File(String evalPerformancePath, PerformanceResult result) {
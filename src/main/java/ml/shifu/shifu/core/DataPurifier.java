@@ -15,7 +15,6 @@
  */
 package ml.shifu.shifu.core;
 
-import ml.shifu.shifu.column.NSColumn;
 import ml.shifu.shifu.container.obj.EvalConfig;
 import ml.shifu.shifu.container.obj.ModelConfig;
 import ml.shifu.shifu.util.CommonUtils;
@@ -44,6 +43,16 @@ public class DataPurifier {
     private ShifuMapContext jc = new ShifuMapContext();
     private JexlEngine jexl;
 
+    /**
+     * Filter expression compiled against headers for raw records, compiled at first record.
+     */
+    private CompiledFilter recordFilter;
+
+    /**
+     * Filter expression compiled against headers for tuples, simple column names are not bound for tuples.
+     */
+    private CompiledFilter tupleFilter;
+
     public DataPurifier(ModelConfig modelConfig, boolean isForValidationDataSet) throws IOException {
         String filterExpression = (isForValidationDataSet ?
                 modelConfig.getDataSet().getValidationFilterExpressions() : modelConfig.getFilterExpressions());
@@ -105,21 +114,26 @@ public class DataPurifier {
             return true;
         }
 
-        String[] fields = CommonUtils.split(record, dataDelimiter);
-        if(fields == null || fields.length != headers.length) {
+        if(this.recordFilter == null) {
+            this.recordFilter = new CompiledFilter(dataFilterExpr.getExpression(), headers, true);
+        }
+
+        // only fields used in expression are cut from record
+        String[] values = this.recordFilter.bind(record, dataDelimiter);
+        if(values == null) {
             // illegal format data, just skip
             return false;
         }
 
-        jc.clear();
-
-        for(int i = 0; i < fields.length; i++) {
-            NSColumn nsColumn = new NSColumn(headers[i]);
-            jc.set(headers[i], (fields[i] == null ? "" : fields[i]));
-            jc.set(nsColumn.getSimpleName(), (fields[i] == null ? "" : fields[i]));
+        Boolean result = this.recordFilter.test(values);
+        if(result != null) {
+            return result;
         }
 
-        Boolean result = Boolean.FALSE;
+        jc.clear();
+        this.recordFilter.setContext(jc, values);
+
+        result = Boolean.FALSE;
         Object retObj = null;
 
         try {
@@ -147,18 +161,25 @@ public class DataPurifier {
             return true;
         }
 
-        if(input == null || input.size() != headers.length) {
+        if(this.tupleFilter == null) {
+            this.tupleFilter = new CompiledFilter(dataFilterExpr.getExpression(), headers, false);
+        }
+
+        String[] values = this.tupleFilter.bind(input);
+        if(values == null) {
             // illegal format data, just skip
             return false;
         }
 
-        jc.clear();
-
-        for(int i = 0; i < input.size(); i++) {
-            jc.set(headers[i], ((input.get(i) == null) ? null : input.get(i).toString()));
+        Boolean result = this.tupleFilter.test(values);
+        if(result != null) {
+            return result;
         }
 
-        Boolean result = Boolean.FALSE;
+        jc.clear();
+        this.tupleFilter.setContext(jc, values);
+
+        result = Boolean.FALSE;
         Object retObj = null;
         try {
             retObj = dataFilterExpr.evaluate(jc);
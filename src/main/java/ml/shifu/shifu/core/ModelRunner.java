@@ -173,21 +173,78 @@ public class ModelRunner {
         if(MapUtils.isEmpty(rawDataNsMap)) {
             return null;
         }
+        return computeScores(rawDataNsMap, null, null);
+    }
+
+    /**
+     * Run model to compute score for record fields bound to schema. Fields are scored by index without building raw
+     * data map per record, see {@link Scorer#score(ScoreSchema, CharSequence[])}. Scores are the same as
+     * {@link #computeNsData(Map)} on raw data map of the same record.
+     * 
+     * @param schema
+     *            - the schema bound to header of fields, usually bound once per task by
+     *            {@link ScoreSchema#bind(String[], int)}
+     * @param fields
+     *            - the record fields, null field is taken as empty value
+     * @return CaseScoreResult - model score, null if size of fields is not the same as schema
+     */
+    public CaseScoreResult compute(ScoreSchema schema, CharSequence[] fields) {
+        if(fields == null || fields.length != schema.getFieldCount()) {
+            log.error("Invalid input, the fields size is = " + (fields == null ? null : fields.length)
+                    + ", header length = " + schema.getFieldCount());
+            return null;
+        }
+        if(!isFieldScoringSupported()) {
+            return computeNsData(schema.toNsDataMap(fields));
+        }
+        return computeScores(null, schema, fields);
+    }
+
+    /**
+     * Run main models to compute primitive scores for record fields bound to schema, sub models are not computed.
+     * 
+     * @param schema
+     *            - the schema bound to header of fields
+     * @param fields
+     *            - the record fields
+     * @return scores of models, null if no score
+     */
+    public double[] score(ScoreSchema schema, CharSequence[] fields) {
+        return this.scorer.score(schema, fields);
+    }
 
+    private boolean isFieldScoringSupported() {
+        if(this.scorer != null && !this.scorer.isFieldScoringSupported()) {
+            return false;
+        }
+        if(MapUtils.isNotEmpty(this.subScorers)) {
+            for(Scorer subScorer: this.subScorers.values()) {
+                if(!subScorer.isFieldScoringSupported()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Score raw data map if schema is null, else score fields bound to schema.
+     */
+    private ScoreObject score(Scorer scorer, Map<NSColumn, String> rawDataNsMap, ScoreSchema schema,
+            CharSequence[] fields) {
+        return schema == null ? scorer.scoreNsData(rawDataNsMap) : scorer.scoreFields(schema, fields);
+    }
+
+    private CaseScoreResult computeScores(final Map<NSColumn, String> rawDataNsMap, final ScoreSchema schema,
+            final CharSequence[] fields) {
         CaseScoreResult scoreResult = new CaseScoreResult();
 
         if(this.scorer != null) {
-            ScoreObject so = scorer.scoreNsData(rawDataNsMap);
+            ScoreObject so = score(this.scorer, rawDataNsMap, schema, fields);
             if(so == null) {
                 return null;
             }
-
-            scoreResult.setScores(so.getScores());
-            scoreResult.setMaxScore(so.getMaxScore());
-            scoreResult.setMinScore(so.getMinScore());
-            scoreResult.setAvgScore(so.getMeanScore());
-            scoreResult.setMedianScore(so.getMedianScore());
-            scoreResult.setHiddenLayerScores(so.getHiddenLayerScores());
+            setScores(scoreResult, so);
         }
 
         if(MapUtils.isNotEmpty(this.subScorers)) {
@@ -216,7 +273,7 @@ public class ModelRunner {
                     public Pair<String, ScoreObject> call() {
                         String modelName = entry.getKey();
                         Scorer subScorer = entry.getValue();
-                        ScoreObject so = subScorer.scoreNsData(rawDataNsMap);
+                        ScoreObject so = score(subScorer, rawDataNsMap, schema, fields);
                         if(so != null) {
                             return Pair.of(modelName, so);
                         }else {
@@ -253,6 +310,76 @@ public class ModelRunner {
         return scoreResult;
     }
 
+    private void setScores(CaseScoreResult scoreResult, ScoreObject so) {
+        scoreResult.setScores(so.getScores());
+        scoreResult.setMaxScore(so.getMaxScore());
+        scoreResult.setMinScore(so.getMinScore());
+        scoreResult.setAvgScore(so.getMeanScore());
+        scoreResult.setMedianScore(so.getMedianScore());
+        scoreResult.setHiddenLayerScores(so.getHiddenLayerScores());
+    }
+
+    /**
+     * Run model to compute scores for a batch of input data. Records are scored together by
+     * {@link Scorer#scoreNsData(List)} which is faster than calling {@link #compute(String)} one by one on large data
+     * set.
+     * 
+     * @param inputDataList
+     *            - list of the whole original input data as String
+     * @return CaseScoreResult list in the same order of input, element is null if input is invalid or no score
+     */
+    public List<CaseScoreResult> compute(List<String> inputDataList) {
+        if(dataDelimiter == null || header == null) {
+            throw new UnsupportedOperationException(
+                    "The dataDelimiter and header are null, please use right constructor!");
+        }
+
+        List<CaseScoreResult> scoreResults = new ArrayList<CaseScoreResult>(inputDataList.size());
+        List<Map<NSColumn, String>> rawDataNsMaps = new ArrayList<Map<NSColumn, String>>(inputDataList.size());
+        List<Integer> validIndexes = new ArrayList<Integer>(inputDataList.size());
+        for(int i = 0; i < inputDataList.size(); i++) {
+            scoreResults.add(null);
+            Map<String, String> rawDataMap = CommonUtils.convertDataIntoMap(inputDataList.get(i), dataDelimiter,
+                    header);
+            if(MapUtils.isNotEmpty(rawDataMap)) {
+                rawDataNsMaps.add(NormalUtils.convertRawMapToNsDataMap(rawDataMap));
+                validIndexes.add(i);
+            }
+        }
+
+        if(rawDataNsMaps.isEmpty()) {
+            return scoreResults;
+        }
+
+        List<ScoreObject> scoreObjects = (this.scorer == null ? null : this.scorer.scoreNsData(rawDataNsMaps));
+        for(int i = 0; i < validIndexes.size(); i++) {
+            CaseScoreResult scoreResult = new CaseScoreResult();
+            if(scoreObjects != null) {
+                ScoreObject so = scoreObjects.get(i);
+                if(so == null) {
+                    continue;
+                }
+                setScores(scoreResult, so);
+            }
+            scoreResults.set(validIndexes.get(i), scoreResult);
+        }
+
+        if(MapUtils.isNotEmpty(this.subScorers)) {
+            for(Map.Entry<String, Scorer> entry: this.subScorers.entrySet()) {
+                List<ScoreObject> subScoreObjects = entry.getValue().scoreNsData(rawDataNsMaps);
+                for(int i = 0; i < validIndexes.size(); i++) {
+                    CaseScoreResult scoreResult = scoreResults.get(validIndexes.get(i));
+                    ScoreObject so = subScoreObjects.get(i);
+                    if(scoreResult != null && so != null) {
+                        scoreResult.addSubModelScore(entry.getKey(), so);
+                    }
+                }
+            }
+        }
+
+        return scoreResults;
+    }
+
     /**
      * add @ModelSpec as sub-model. Create scorer for sub-model
      * 
@@ -23,6 +23,7 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -232,40 +233,7 @@ public class Normalizer {
      */
     public static List<Double> normalize(ColumnConfig config, Object raw, Double cutoff,
             ModelNormalizeConf.NormType type, CategoryMissingNormType categoryMissingNormType) {
-        switch(type) {
-            case ASIS_WOE:
-                return asIsNormalize(config, raw, true);
-            case ASIS_PR:
-                return asIsNormalize(config, raw, false);
-            case WOE:
-                return woeNormalize(config, raw, false);
-            case WEIGHT_WOE:
-                return woeNormalize(config, raw, true);
-            case HYBRID:
-                return hybridNormalize(config, raw, cutoff, false);
-            case WEIGHT_HYBRID:
-                return hybridNormalize(config, raw, cutoff, true);
-            case WOE_ZSCORE:
-            case WOE_ZSCALE:
-                return woeZScoreNormalize(config, raw, cutoff, false);
-            case WEIGHT_WOE_ZSCORE:
-            case WEIGHT_WOE_ZSCALE:
-                return woeZScoreNormalize(config, raw, cutoff, true);
-            case ONEHOT:
-                return OneHotNormalize(config, raw);
-            case ZSCALE_ONEHOT:
-                return zscaleOneHotNormalize(config, raw, cutoff, categoryMissingNormType);
-            case DISCRETE_ZSCORE:
-            case DISCRETE_ZSCALE:
-                return discreteZScoreNormalize(config, raw, cutoff, categoryMissingNormType);
-            case OLD_ZSCALE:
-            case OLD_ZSCORE:
-                return zScoreNormalize(config, raw, cutoff, categoryMissingNormType, true);
-            case ZSCALE:
-            case ZSCORE:
-            default:
-                return zScoreNormalize(config, raw, cutoff, categoryMissingNormType, false);
-        }
+        return toList(config, raw, cutoff, nonIndexNormType(type), categoryMissingNormType, null);
     }
 
     /**
@@ -287,6 +255,161 @@ public class Normalizer {
     public static List<Double> fullNormalize(ColumnConfig config, Object raw, Double cutoff,
             ModelNormalizeConf.NormType type, CategoryMissingNormType categoryMissingNormType,
             Map<String, Integer> cateIndexMap) {
+        return toList(config, raw, cutoff, type, categoryMissingNormType, cateIndexMap);
+    }
+
+    private static List<Double> toList(ColumnConfig config, Object raw, Double cutoff,
+            ModelNormalizeConf.NormType type, CategoryMissingNormType categoryMissingNormType,
+            Map<String, Integer> cateIndexMap) {
+        double[] values = new double[getNormalizedSize(config, type)];
+        normalize(config, raw, cutoff, type, categoryMissingNormType, cateIndexMap, values, 0);
+        List<Double> normVals = new ArrayList<Double>(values.length);
+        for(double value: values) {
+            normVals.add(value);
+        }
+        return normVals;
+    }
+
+    /**
+     * Get the number of normalized values of one column, which is the bin size plus one for missing bin in one-hot
+     * norm types, otherwise one.
+     * 
+     * @param config
+     *            ColumnConfig info
+     * @param type
+     *            normalization type of ModelNormalizeConf.NormType
+     * @return number of normalized values
+     */
+    public static int getNormalizedSize(ColumnConfig config, ModelNormalizeConf.NormType type) {
+        if(isOneHotNorm(config, type)) {
+            return (config.isNumerical() ? config.getBinBoundary().size() : config.getBinCategory().size()) + 1;
+        }
+        return 1;
+    }
+
+    /**
+     * Primitive version of {@link #fullNormalize(ColumnConfig, Object, Double, ModelNormalizeConf.NormType,
+     * CategoryMissingNormType, Map)}, normalized values are written into output array from offset without boxing.
+     * 
+     * @param config
+     *            ColumnConfig to normalize data
+     * @param raw
+     *            raw input data
+     * @param cutoff
+     *            standard deviation cut off
+     * @param type
+     *            normalization type of ModelNormalizeConf.NormType
+     * @param categoryMissingNormType
+     *            missing categorical value norm type
+     * @param cateIndexMap
+     *            map from category to index, only used in index norm types
+     * @param output
+     *            the output array, size from offset should be at least {@link #getNormalizedSize}
+     * @param offset
+     *            the offset of output array
+     * @return number of normalized values written
+     */
+    public static int normalize(ColumnConfig config, Object raw, Double cutoff, ModelNormalizeConf.NormType type,
+            CategoryMissingNormType categoryMissingNormType, Map<String, Integer> cateIndexMap, double[] output,
+            int offset) {
+        if(isOneHotNorm(config, type)) {
+            int size = getNormalizedSize(config, type);
+            Arrays.fill(output, offset, offset + size, 0d);
+            output[offset + oneHotIndex(config, raw, size)] = 1d;
+            return size;
+        }
+        output[offset] = normalizeValue(config, raw, cutoff, type, categoryMissingNormType, cateIndexMap);
+        return 1;
+    }
+
+    /**
+     * Float version of {@link #normalize(ColumnConfig, Object, Double, ModelNormalizeConf.NormType,
+     * CategoryMissingNormType, Map, double[], int)}.
+     * 
+     * @param config
+     *            ColumnConfig to normalize data
+     * @param raw
+     *            raw input data
+     * @param cutoff
+     *            standard deviation cut off
+     * @param type
+     *            normalization type of ModelNormalizeConf.NormType
+     * @param categoryMissingNormType
+     *            missing categorical value norm type
+     * @param cateIndexMap
+     *            map from category to index, only used in index norm types
+     * @param output
+     *            the output array, size from offset should be at least {@link #getNormalizedSize}
+     * @param offset
+     *            the offset of output array
+     * @return number of normalized values written
+     */
+    public static int normalize(ColumnConfig config, Object raw, Double cutoff, ModelNormalizeConf.NormType type,
+            CategoryMissingNormType categoryMissingNormType, Map<String, Integer> cateIndexMap, float[] output,
+            int offset) {
+        if(isOneHotNorm(config, type)) {
+            int size = getNormalizedSize(config, type);
+            Arrays.fill(output, offset, offset + size, 0f);
+            output[offset + oneHotIndex(config, raw, size)] = 1f;
+            return size;
+        }
+        output[offset] = (float) normalizeValue(config, raw, cutoff, type, categoryMissingNormType, cateIndexMap);
+        return 1;
+    }
+
+    /**
+     * Primitive version of {@link #normalize(ColumnConfig, Object, Double, ModelNormalizeConf.NormType,
+     * CategoryMissingNormType)}, index norm types are not supported and ZSCALE is used instead.
+     * 
+     * @param config
+     *            ColumnConfig to normalize data
+     * @param raw
+     *            raw input data
+     * @param cutoff
+     *            standard deviation cut off
+     * @param type
+     *            normalization type of ModelNormalizeConf.NormType
+     * @param categoryMissingNormType
+     *            missing categorical value norm type
+     * @param output
+     *            the output array, size from offset should be at least {@link #getNormalizedSize}
+     * @param offset
+     *            the offset of output array
+     * @return number of normalized values written
+     */
+    public static int normalize(ColumnConfig config, Object raw, Double cutoff, ModelNormalizeConf.NormType type,
+            CategoryMissingNormType categoryMissingNormType, double[] output, int offset) {
+        return normalize(config, raw, cutoff, nonIndexNormType(type), categoryMissingNormType, null, output, offset);
+    }
+
+    private static ModelNormalizeConf.NormType nonIndexNormType(ModelNormalizeConf.NormType type) {
+        // index norm types are only supported with category index map, ZSCALE is used by default
+        return isIndexNormType(type) ? ModelNormalizeConf.NormType.ZSCALE : type;
+    }
+
+    private static boolean isOneHotNorm(ColumnConfig config, ModelNormalizeConf.NormType type) {
+        return type == ModelNormalizeConf.NormType.ONEHOT
+                || (type == ModelNormalizeConf.NormType.ZSCALE_ONEHOT && !config.isNumerical());
+    }
+
+    private static boolean isIndexNormType(ModelNormalizeConf.NormType type) {
+        return type == ModelNormalizeConf.NormType.ZSCORE_INDEX || type == ModelNormalizeConf.NormType.ZSCALE_INDEX
+                || type == ModelNormalizeConf.NormType.WOE_INDEX
+                || type == ModelNormalizeConf.NormType.WOE_ZSCALE_INDEX;
+    }
+
+    private static int oneHotIndex(ColumnConfig config, Object raw, int size) {
+        int binNum = BinUtils.getBinNum(config, raw);
+        // last one is for missing or invalid value
+        return binNum < 0 ? size - 1 : binNum;
+    }
+
+    /**
+     * Normalized value of norm types with only one output value.
+     */
+    private static double normalizeValue(ColumnConfig config, Object raw, Double cutoff,
+            ModelNormalizeConf.NormType type, CategoryMissingNormType categoryMissingNormType,
+            Map<String, Integer> cateIndexMap) {
         switch(type) {
             case ZSCORE_INDEX:
             case ZSCALE_INDEX:
@@ -295,27 +418,46 @@ public class Normalizer {
                 if(config.isNumerical()) {
                     return woeNormalize(config, raw, false);
                 } else if(config.isCategorical()) {
-                    Integer index = cateIndexMap.get(raw == null ? "" : raw.toString());
-                    if(index == null || index == -1) {
-                        // last index for null category
-                        index = config.getBinCategory().size();
-                    }
-                    return Arrays.asList((double) index);
+                    return cateIndexNorm(config, raw, cateIndexMap);
                 }
+                return zScoreNormalize(config, raw, cutoff, categoryMissingNormType, false);
             case WOE_ZSCALE_INDEX:
                 if(config.isNumerical()) {
                     return woeZScoreNormalize(config, raw, cutoff, false);
                 } else if(config.isCategorical()) {
-                    Integer index = cateIndexMap.get(raw == null ? "" : raw.toString());
-                    if(index == null || index == -1) {
-                        // last index for null category
-                        index = config.getBinCategory().size();
-                    }
-                    return Arrays.asList((double) index);
+                    return cateIndexNorm(config, raw, cateIndexMap);
                 }
+                return zScoreNormalize(config, raw, cutoff, categoryMissingNormType, false);
+            case ASIS_WOE:
+                return asIsNormalize(config, raw, true);
+            case ASIS_PR:
+                return asIsNormalize(config, raw, false);
+            case WOE:
+                return woeNormalize(config, raw, false);
+            case WEIGHT_WOE:
+                return woeNormalize(config, raw, true);
+            case HYBRID:
+                return hybridNormalize(config, raw, cutoff, false);
+            case WEIGHT_HYBRID:
+                return hybridNormalize(config, raw, cutoff, true);
+            case WOE_ZSCORE:
+            case WOE_ZSCALE:
+                return woeZScoreNormalize(config, raw, cutoff, false);
+            case WEIGHT_WOE_ZSCORE:
+            case WEIGHT_WOE_ZSCALE:
+                return woeZScoreNormalize(config, raw, cutoff, true);
+            case DISCRETE_ZSCORE:
+            case DISCRETE_ZSCALE:
+                return discreteZScoreNormalize(config, raw, cutoff, categoryMissingNormType);
+            case OLD_ZSCALE:
+            case OLD_ZSCORE:
+                return zScoreNormalize(config, raw, cutoff, categoryMissingNormType, true);
+            case ZSCALE_ONEHOT:
+                // only numerical column here, categorical column is one-hot encoded
+            case ZSCALE:
+            case ZSCORE:
             default:
-                // others use old normalize API to reuse code
-                return normalize(config, raw, cutoff, type, categoryMissingNormType);
+                return zScoreNormalize(config, raw, cutoff, categoryMissingNormType, false);
         }
     }
 
@@ -328,80 +470,51 @@ public class Normalizer {
      *            input column value
      * @param cutoff
      *            standard deviation cut off
-     * @param categoryMissingNormType
-     *            missing categorical value norm type
+     * @param cateIndexMap
+     *            map from category to index
      * @return normalized value for ZScore method.
      */
-    private static List<Double> numZScoreAndCateIndexNorm(ColumnConfig config, Object raw, Double cutoff,
+    private static double numZScoreAndCateIndexNorm(ColumnConfig config, Object raw, Double cutoff,
             Map<String, Integer> cateIndexMap) {
         if(config.isNumerical()) {
             double stdDevCutOff = checkCutOff(cutoff);
             double value = parseRawValue(config, raw, null);
-            return Arrays.asList(computeZScore(value, config.getMean(), config.getStdDev(), stdDevCutOff));
+            return computeZScoreValue(value, config.getMean(), config.getStdDev(), stdDevCutOff);
         } else if(config.isCategorical()) {
-            Integer index = cateIndexMap.get(raw == null ? "" : raw.toString());
-            if(index == null || index == -1) {
-                // last index for null category
-                index = config.getBinCategory().size();
-            }
-            return Arrays.asList(((double) index));
+            return cateIndexNorm(config, raw, cateIndexMap);
         } else {
             throw new IllegalArgumentException("Not supported norm column type.");
         }
     }
 
-    private static List<Double> asIsNormalize(ColumnConfig config, Object raw, boolean toUseWoe) {
+    private static double cateIndexNorm(ColumnConfig config, Object raw, Map<String, Integer> cateIndexMap) {
+        Integer index = cateIndexMap.get(raw == null ? "" : raw.toString());
+        if(index == null || index == -1) {
+            // last index for null category
+            index = config.getBinCategory().size();
+        }
+        return index;
+    }
+
+    private static double asIsNormalize(ColumnConfig config, Object raw, boolean toUseWoe) {
         if(config.isNumerical()) {
-            Double values[] = new Double[1];
             if(raw instanceof Double) {
-                values[0] = (Double) raw;
+                return (Double) raw;
             } else if(raw instanceof Integer) {
-                values[0] = ((Integer) raw).doubleValue();
+                return ((Integer) raw).doubleValue();
             } else {
                 try {
-                    values[0] = Double.parseDouble(raw.toString());
+                    return Double.parseDouble(raw.toString());
                 } catch (Exception e) {
                     log.warn("Illegal numerical value - {}, use mean instead.", raw);
-                    values[0] = config.getMean();
+                    return config.getMean();
                 }
             }
-
-            return Arrays.asList(values);
         } else {
             // categorical variables
             List<Double> normVals = (toUseWoe ? config.getBinCountWoe() : config.getBinPosRate());
             int binIndex = BinUtils.getBinNum(config, raw);
-            return ((binIndex == -1) ? Arrays.asList(new Double[] { normVals.get(normVals.size() - 1) })
-                    : Arrays.asList(new Double[] { normVals.get(binIndex) }));
-        }
-    }
-
-    private static List<Double> OneHotNormalize(ColumnConfig config, Object raw) {
-        Double[] normData = (config.isNumerical() ? new Double[config.getBinBoundary().size() + 1]
-                : new Double[config.getBinCategory().size() + 1]);
-        Arrays.fill(normData, 0.0d);
-        int binNum = BinUtils.getBinNum(config, raw);
-        if(binNum < 0) {
-            binNum = normData.length - 1;
-        }
-        normData[binNum] = 1.0d;
-        return Arrays.asList(normData);
-    }
-
-    private static List<Double> zscaleOneHotNormalize(ColumnConfig config, Object raw, Double cutoff,
-            CategoryMissingNormType categoryMissingNormType) {
-        if(config.isNumerical()) {
-            return zScoreNormalize(config, raw, cutoff, categoryMissingNormType, false);
-        } else {
-            Double[] normData = new Double[config.getBinCategory().size() + 1];
-            Arrays.fill(normData, 0.0d);
-
-            int binNum = BinUtils.getBinNum(config, raw);
-            if(binNum < 0) {
-                binNum = config.getBinCategory().size();
-            }
-            normData[binNum] = 1.0d;
-            return Arrays.asList(normData);
+            return (binIndex == -1) ? normVals.get(normVals.size() - 1) : normVals.get(binIndex);
         }
     }
 
@@ -441,14 +554,14 @@ public class Normalizer {
      *            missing categorical value norm type
      * @return normalized value for ZScore method.
      */
-    private static List<Double> zScoreNormalize(ColumnConfig config, Object raw, Double cutoff,
+    private static double zScoreNormalize(ColumnConfig config, Object raw, Double cutoff,
             CategoryMissingNormType categoryMissingNormType, boolean isOld) {
         double stdDevCutOff = checkCutOff(cutoff);
         double value = parseRawValue(config, raw, categoryMissingNormType);
         if(isOld && config.isCategorical()) {
-            return Arrays.asList(value);
+            return value;
         }
-        return Arrays.asList(computeZScore(value, config.getMean(), config.getStdDev(), stdDevCutOff));
+        return computeZScoreValue(value, config.getMean(), config.getStdDev(), stdDevCutOff);
     }
 
     /**
@@ -465,7 +578,7 @@ public class Normalizer {
      *            missing categorical value norm type
      * @return normalized value for ZScore method.
      */
-    private static List<Double> discreteZScoreNormalize(ColumnConfig config, Object raw, Double cutoff,
+    private static double discreteZScoreNormalize(ColumnConfig config, Object raw, Double cutoff,
             CategoryMissingNormType categoryMissingNormType) {
         double stdDevCutOff = checkCutOff(cutoff);
         double value = 0;
@@ -486,7 +599,7 @@ public class Normalizer {
                 }
             }
         }
-        return Arrays.asList(computeZScore(value, config.getMean(), config.getStdDev(), stdDevCutOff));
+        return computeZScoreValue(value, config.getMean(), config.getStdDev(), stdDevCutOff);
     }
 
     /**
@@ -501,9 +614,13 @@ public class Normalizer {
      * @return normalized value for ZScore method.
      */
     private static List<Double> zScoreNormalize(ColumnConfig config, Object raw, Double cutoff) {
+        return Arrays.asList(zScoreNormalizeValue(config, raw, cutoff));
+    }
+
+    private static double zScoreNormalizeValue(ColumnConfig config, Object raw, Double cutoff) {
         double stdDevCutOff = checkCutOff(cutoff);
         double value = parseRawValue(config, raw, CategoryMissingNormType.POSRATE);
-        return Arrays.asList(computeZScore(value, config.getMean(), config.getStdDev(), stdDevCutOff));
+        return computeZScoreValue(value, config.getMean(), config.getStdDev(), stdDevCutOff);
     }
 
     /**
@@ -616,7 +733,7 @@ public class Normalizer {
      * @return normalized value for Woe method. For missing value, we return the value in last bin. Since the last
      *         bin refers to the missing value bin.
      */
-    private static List<Double> woeNormalize(ColumnConfig config, Object raw, boolean isWeightedNorm) {
+    private static double woeNormalize(ColumnConfig config, Object raw, boolean isWeightedNorm) {
         List<Double> woeBins = isWeightedNorm ? config.getBinWeightedWoe() : config.getBinCountWoe();
         int binIndex = 0;
         if(config.isHybrid()) {
@@ -641,9 +758,9 @@ public class Normalizer {
         }
         if(binIndex == -1) {
             // The last bin in woeBins is the miss value bin.
-            return Arrays.asList(new Double[] { woeBins.get(woeBins.size() - 1) });
+            return woeBins.get(woeBins.size() - 1);
         } else {
-            return Arrays.asList(new Double[] { woeBins.get(binIndex) });
+            return woeBins.get(binIndex);
         }
     }
 
@@ -661,13 +778,13 @@ public class Normalizer {
      *            if use weighted woe
      * @return normalized value for woe zscore method.
      */
-    private static List<Double> woeZScoreNormalize(ColumnConfig config, Object raw, Double cutoff,
+    private static double woeZScoreNormalize(ColumnConfig config, Object raw, Double cutoff,
             boolean isWeightedNorm) {
         double stdDevCutOff = checkCutOff(cutoff);
-        double woe = woeNormalize(config, raw, isWeightedNorm).get(0);
+        double woe = woeNormalize(config, raw, isWeightedNorm);
         // TODO cache such computing to avoid computing each time
         double[] meanAndStdDev = calculateWoeMeanAndStdDev(config, isWeightedNorm);
-        return Arrays.asList(computeZScore(woe, meanAndStdDev[0], meanAndStdDev[1], stdDevCutOff));
+        return computeZScoreValue(woe, meanAndStdDev[0], meanAndStdDev[1], stdDevCutOff);
     }
 
     /**
@@ -684,12 +801,12 @@ public class Normalizer {
      *            if use weighted woe
      * @return normalized value for hybrid method.
      */
-    private static List<Double> hybridNormalize(ColumnConfig config, Object raw, Double cutoff,
+    private static double hybridNormalize(ColumnConfig config, Object raw, Double cutoff,
             boolean isWeightedNorm) {
-        List<Double> normValue;
+        double normValue;
         if(config.isNumerical()) {
             // For numerical data, use zscore.
-            normValue = zScoreNormalize(config, raw, cutoff);
+            normValue = zScoreNormalizeValue(config, raw, cutoff);
         } else {
             // For categorical data, use woe.
             normValue = woeNormalize(config, raw, isWeightedNorm);
@@ -767,6 +884,23 @@ public class Normalizer {
      * @return zscore
      */
     public static Double[] computeZScore(double var, double mean, double stdDev, double stdDevCutOff) {
+        return new Double[] { computeZScoreValue(var, mean, stdDev, stdDevCutOff) };
+    }
+
+    /**
+     * Primitive version of {@link #computeZScore(double, double, double, double)} without array allocation.
+     * 
+     * @param var
+     *            raw var
+     * @param mean
+     *            mean value
+     * @param stdDev
+     *            standard deviation
+     * @param stdDevCutOff
+     *            standard deviation cutoff
+     * @return zscore
+     */
+    public static double computeZScoreValue(double var, double mean, double stdDev, double stdDevCutOff) {
         double maxCutOff = mean + stdDevCutOff * stdDev;
         if(var > maxCutOff) {
             var = maxCutOff;
@@ -778,9 +912,9 @@ public class Normalizer {
         }
 
         if(stdDev > 0.00001) {
-            return new Double[] { (var - mean) / stdDev };
+            return (var - mean) / stdDev;
         } else {
-            return new Double[] { 0.0 };
+            return 0.0;
         }
     }
 
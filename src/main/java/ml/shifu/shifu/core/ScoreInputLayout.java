@@ -0,0 +1,214 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ml.shifu.shifu.column.NSColumn;
+import ml.shifu.shifu.container.obj.ColumnConfig;
+import ml.shifu.shifu.container.obj.ModelConfig;
+import ml.shifu.shifu.container.obj.ModelNormalizeConf.NormType;
+import ml.shifu.shifu.udf.NormalizeUDF.CategoryMissingNormType;
+import ml.shifu.shifu.util.CommonUtils;
+import ml.shifu.shifu.util.DoubleParser;
+import ml.shifu.shifu.util.NormalUtils;
+
+import org.apache.commons.collections.CollectionUtils;
+
+/**
+ * {@link ScoreInputLayout} is the model input layout of one feature set bound to a {@link ScoreSchema}. Selected
+ * columns, their field indexes, normalized sizes and missing values are resolved once, then
+ * {@link #assemble(CharSequence[], double[])} writes normalized record fields into a reused input array.
+ *
+ * <p>
+ * Column selection and values are the same as
+ * {@link NormalUtils#assembleNsDataPair(Map, boolean, ModelConfig, List, Map, double, String, Set)}.
+ */
+final class ScoreInputLayout {
+
+    private final ColumnConfig[] configs;
+
+    /**
+     * Field index of each slot, -1 if column is not in header.
+     */
+    private final int[] fieldIndexes;
+
+    /**
+     * Category to bin index map of each slot for categorical column in tree model, null for normalized slot.
+     */
+    private final List<Map<String, Integer>> treeCategoryIndexes;
+
+    /**
+     * Whether numerical slot is raw value of tree model or normalized value.
+     */
+    private final boolean isTreeValue;
+
+    private final NormType normType;
+
+    /**
+     * Boxed once as normalizer takes Double cut off.
+     */
+    private final Double cutoff;
+
+    private final int inputSize;
+
+    /**
+     * First final selected column not in header, records cannot be scored with such schema.
+     */
+    private final NSColumn missingColumn;
+
+    private ScoreInputLayout(ColumnConfig[] configs, int[] fieldIndexes,
+            List<Map<String, Integer>> treeCategoryIndexes, boolean isTreeValue, NormType normType, Double cutoff,
+            int inputSize, NSColumn missingColumn) {
+        this.configs = configs;
+        this.fieldIndexes = fieldIndexes;
+        this.treeCategoryIndexes = treeCategoryIndexes;
+        this.isTreeValue = isTreeValue;
+        this.normType = normType;
+        this.cutoff = cutoff;
+        this.inputSize = inputSize;
+        this.missingColumn = missingColumn;
+    }
+
+    /**
+     * Build layout of input columns.
+     *
+     * @param schema
+     *            the score schema
+     * @param binCategoryMap
+     *            column num to category index map of categorical columns
+     * @param noVarSel
+     *            if no variable selected, good candidates are taken as inputs
+     * @param modelConfig
+     *            the model config
+     * @param columnConfigList
+     *            column config list to select inputs
+     * @param cutoff
+     *            standard deviation cut off
+     * @param alg
+     *            algorithm of scorer
+     * @param featureSet
+     *            feature set of NN model, null or empty to select by final select flags
+     * @return the layout
+     */
+    static ScoreInputLayout build(ScoreSchema schema, Map<Integer, Map<String, Integer>> binCategoryMap,
+            boolean noVarSel, ModelConfig modelConfig, List<ColumnConfig> columnConfigList, double cutoff,
+            String alg, Set<Integer> featureSet) {
+        boolean hasFeatureSet = CollectionUtils.isNotEmpty(featureSet);
+        boolean hasCandidates = CommonUtils.hasCandidateColumns(columnConfigList);
+        boolean isTreeAlg = CommonUtils.isTreeModel(alg);
+        boolean isTreeValue = CommonUtils.isTreeModel(modelConfig.getAlgorithm());
+        NormType normType = modelConfig.getNormalizeType();
+
+        List<ColumnConfig> configs = new ArrayList<ColumnConfig>();
+        List<Integer> fieldIndexes = new ArrayList<Integer>();
+        List<Map<String, Integer>> treeCategoryIndexes = new ArrayList<Map<String, Integer>>();
+        NSColumn missingColumn = null;
+        int inputSize = 0;
+        for(ColumnConfig config: columnConfigList) {
+            if(config == null) {
+                continue;
+            }
+            NSColumn key = new NSColumn(config.getColumnName());
+            int fieldIndex = schema.indexOf(key);
+            if(config.isFinalSelect() && fieldIndex < 0 && missingColumn == null) {
+                missingColumn = key;
+            }
+            if(config.isTarget() || !isInput(config, hasFeatureSet, featureSet, noVarSel, hasCandidates)) {
+                continue;
+            }
+
+            configs.add(config);
+            fieldIndexes.add(fieldIndex);
+            if(isTreeAlg && config.isCategorical()) {
+                treeCategoryIndexes.add(binCategoryMap.get(config.getColumnNum()));
+                inputSize += 1;
+            } else {
+                treeCategoryIndexes.add(null);
+                inputSize += (isTreeValue ? 1 : Normalizer.getNormalizedSize(config, normType));
+            }
+        }
+
+        int[] indexes = new int[fieldIndexes.size()];
+        for(int i = 0; i < indexes.length; i++) {
+            indexes[i] = fieldIndexes.get(i);
+        }
+        return new ScoreInputLayout(configs.toArray(new ColumnConfig[configs.size()]), indexes, treeCategoryIndexes,
+                isTreeValue, normType, cutoff, inputSize, missingColumn);
+    }
+
+    private static boolean isInput(ColumnConfig config, boolean hasFeatureSet, Set<Integer> featureSet,
+            boolean noVarSel, boolean hasCandidates) {
+        if(hasFeatureSet) {
+            return featureSet.contains(config.getColumnNum());
+        }
+        if(noVarSel) {
+            return !config.isMeta() && CommonUtils.isGoodCandidate(config, hasCandidates);
+        }
+        return !config.isMeta() && config.isFinalSelect();
+    }
+
+    /**
+     * Write normalized inputs of record.
+     *
+     * @param fields
+     *            record fields bound to schema of this layout
+     * @param input
+     *            input array of size {@link #getInputSize()}
+     * @throws IllegalStateException
+     *             if final selected column is not in schema
+     */
+    void assemble(CharSequence[] fields, double[] input) {
+        if(this.missingColumn != null) {
+            throw new IllegalStateException(String.format("Variable Missing in Test Data: %s", this.missingColumn));
+        }
+        int offset = 0;
+        for(int i = 0; i < this.configs.length; i++) {
+            ColumnConfig config = this.configs[i];
+            CharSequence field = this.fieldIndexes[i] < 0 ? null : fields[this.fieldIndexes[i]];
+            Map<String, Integer> categoryIndexes = this.treeCategoryIndexes.get(i);
+            if(categoryIndexes != null) {
+                Integer index = categoryIndexes.get(field == null ? "" : field.toString());
+                // not in binCategories, -1 as missing value
+                input[offset++] = (index == null ? -1d : index);
+                continue;
+            }
+
+            int size = 1;
+            if(this.isTreeValue) {
+                input[offset] = DoubleParser.parse(field, Normalizer.defaultMissingValue(config));
+            } else {
+                size = Normalizer.normalize(config, field == null ? null : field.toString(), this.cutoff,
+                        this.normType, CategoryMissingNormType.POSRATE, input, offset);
+            }
+            for(int j = offset; j < offset + size; j++) {
+                if(Double.isInfinite(input[j]) || Double.isNaN(input[j])) {
+                    // treat Infinite or NaN as missing value
+                    input[j] = NormalUtils.defaultMissingValue(config);
+                }
+            }
+            offset += size;
+        }
+    }
+
+    int getInputSize() {
+        return this.inputSize;
+    }
+
+}
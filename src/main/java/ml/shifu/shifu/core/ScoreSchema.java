@@ -0,0 +1,141 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ml.shifu.shifu.column.NSColumn;
+
+/**
+ * {@link ScoreSchema} binds header of scoring data to field indexes once, then records are scored by field arrays in
+ * {@link ModelRunner#compute(ScoreSchema, CharSequence[])} and {@link Scorer#score(ScoreSchema, CharSequence[])}
+ * without building (column name, value) maps per record.
+ *
+ * <p>
+ * Column names are resolved the same as raw {@link NSColumn} data maps built by
+ * {@link ml.shifu.shifu.util.CommonUtils#convertDataIntoNsMap}: full name first and then simple name, segment
+ * expansion columns 'name_1', 'name_2' ... are bound to field of 'name'.
+ *
+ * <p>
+ * Schema is immutable and can be shared by multiple scoring threads.
+ */
+public final class ScoreSchema {
+
+    private final String[] header;
+
+    private final int segFilterSize;
+
+    private final Map<NSColumn, Integer> fieldIndexes;
+
+    private ScoreSchema(String[] header, int segFilterSize, Map<NSColumn, Integer> fieldIndexes) {
+        this.header = header;
+        this.segFilterSize = segFilterSize;
+        this.fieldIndexes = fieldIndexes;
+    }
+
+    /**
+     * Bind header to field indexes.
+     *
+     * @param header
+     *            column names of fields in each record
+     * @param segFilterSize
+     *            number of segment expansions, 0 if no segment expansion
+     * @return the schema
+     */
+    public static ScoreSchema bind(String[] header, int segFilterSize) {
+        Map<NSColumn, Integer> fieldIndexes = new HashMap<NSColumn, Integer>(header.length * (segFilterSize + 1));
+        // the same put order as raw data map, later equal name overrides former one
+        for(int i = 0; i < header.length; i++) {
+            fieldIndexes.put(new NSColumn(header[i]), i);
+        }
+        for(int i = 0; i < segFilterSize; i++) {
+            for(int j = 0; j < header.length; j++) {
+                fieldIndexes.put(new NSColumn(header[j] + "_" + (i + 1)), j);
+            }
+        }
+        return new ScoreSchema(header, segFilterSize, fieldIndexes);
+    }
+
+    /**
+     * @param column
+     *            the column
+     * @return field index of column, -1 if column is not in header
+     */
+    public int indexOf(NSColumn column) {
+        Integer index = this.fieldIndexes.get(column);
+        if(index == null) {
+            index = this.fieldIndexes.get(new NSColumn(column.getSimpleName()));
+        }
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @param columnName
+     *            the column name, with or without name space
+     * @return field index of column, -1 if column is not in header
+     */
+    public int indexOf(String columnName) {
+        return indexOf(new NSColumn(columnName));
+    }
+
+    /**
+     * Get field value of column.
+     *
+     * @param fields
+     *            the record fields
+     * @param columnName
+     *            the column name
+     * @return field value as String, empty for null field, null if column is not in header
+     */
+    public String get(CharSequence[] fields, String columnName) {
+        int index = indexOf(columnName);
+        if(index < 0) {
+            return null;
+        }
+        return fields[index] == null ? "" : fields[index].toString();
+    }
+
+    /**
+     * Build raw data map of record, used by scorers not supporting field scoring.
+     *
+     * @param fields
+     *            the record fields
+     * @return (NSColumn, value) raw data map
+     */
+    public Map<NSColumn, String> toNsDataMap(CharSequence[] fields) {
+        Map<NSColumn, String> rawDataNsMap = new HashMap<NSColumn, String>(this.fieldIndexes.size());
+        for(int i = 0; i < this.header.length; i++) {
+            rawDataNsMap.put(new NSColumn(this.header[i]), fields[i] == null ? "" : fields[i].toString());
+        }
+        for(int i = 0; i < this.segFilterSize; i++) {
+            for(int j = 0; j < this.header.length; j++) {
+                rawDataNsMap.put(new NSColumn(this.header[j] + "_" + (i + 1)),
+                        fields[j] == null ? "" : fields[j].toString());
+            }
+        }
+        return rawDataNsMap;
+    }
+
+    public String[] getHeader() {
+        return this.header;
+    }
+
+    public int getFieldCount() {
+        return this.header.length;
+    }
+
+}
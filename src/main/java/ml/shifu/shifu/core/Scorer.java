@@ -16,6 +16,7 @@
 package ml.shifu.shifu.core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -28,6 +29,7 @@ import java.util.concurrent.Callable;
 import ml.shifu.shifu.util.NormalUtils;
 import org.apache.commons.collections.CollectionUtils;
 import org.encog.ml.BasicML;
+import org.encog.ml.MLRegression;
 import org.encog.ml.data.MLData;
 import org.encog.ml.data.MLDataPair;
 import org.encog.ml.data.basic.BasicMLData;
@@ -42,6 +44,7 @@ import ml.shifu.shifu.container.obj.ColumnConfig;
 import ml.shifu.shifu.container.obj.ModelConfig;
 import ml.shifu.shifu.core.dtrain.DTrainUtils;
 import ml.shifu.shifu.core.dtrain.dataset.BasicFloatNetwork;
+import ml.shifu.shifu.core.dtrain.dt.IndependentTreeModel;
 import ml.shifu.shifu.core.dtrain.nn.NNConstants;
 import ml.shifu.shifu.executor.ExecutorManager;
 import ml.shifu.shifu.util.CommonUtils;
@@ -91,6 +94,12 @@ public class Scorer {
      */
     private ExecutorManager<MLData> executorManager;
 
+    /**
+     * Binding of the last schema scored by {@link #score(ScoreSchema, CharSequence[])}, rebuilt if another schema is
+     * used.
+     */
+    private volatile SchemaBinding schemaBinding;
+
     public Scorer(List<BasicML> models, List<ColumnConfig> columnConfigList, String algorithm,
             ModelConfig modelConfig) {
         this(models, columnConfigList, algorithm, modelConfig, 4.0d);
@@ -400,10 +409,6 @@ public class Scorer {
             }
         }
 
-        List<Double> scores = new ArrayList<Double>();
-        List<Integer> rfTreeSizeList = new ArrayList<Integer>();
-        SortedMap<String, Double> hiddenOutputs = null;
-
         if(CollectionUtils.isNotEmpty(modelResults) || CollectionUtils.isNotEmpty(tasks)) {
             int modelSize = modelResults.size() > 0 ? modelResults.size() : tasks.size();
             if(modelSize != this.models.size()) {
@@ -416,7 +421,24 @@ public class Scorer {
             } else {
                 // not multi-thread, modelResults is directly being populated in callable.call
             }
+        }
+
+        return toScoreObject(modelResults);
+    }
 
+    /**
+     * Convert model outputs to {@link ScoreObject}.
+     * 
+     * @param modelResults
+     *            output of each model in {@link #models}, empty if no model outputs
+     * @return ScoreObject - model score
+     */
+    private ScoreObject toScoreObject(List<MLData> modelResults) {
+        List<Double> scores = new ArrayList<Double>();
+        List<Integer> rfTreeSizeList = new ArrayList<Integer>();
+        SortedMap<String, Double> hiddenOutputs = null;
+
+        if(CollectionUtils.isNotEmpty(modelResults)) {
             if(this.outputHiddenLayerIndex != 0) {
                 hiddenOutputs = new TreeMap<String, Double>(new Comparator<String>() {
 
@@ -505,6 +527,402 @@ public class Scorer {
         return new ScoreObject(scores, tag, rfTreeSizeList, hiddenOutputs);
     }
 
+    /**
+     * Run models against a batch of raw NSColumn data maps. If all models are tree models or neural network models,
+     * normalized inputs of all records are assembled first and then each model scores all records by its batch compute
+     * API; else records are scored one by one by {@link #scoreNsData(Map)}. Scores are the same as scoring records one
+     * by one.
+     * 
+     * @param rawNsDataMaps
+     *            - raw NSColumn Data maps
+     * @return ScoreObject list in the same order of input, element is null if no score for such record
+     */
+    public List<ScoreObject> scoreNsData(List<Map<NSColumn, String>> rawNsDataMaps) {
+        List<ScoreObject> scoreObjects = new ArrayList<ScoreObject>(rawNsDataMaps.size());
+        if(!isBatchScoringSupported()) {
+            for(Map<NSColumn, String> rawNsDataMap: rawNsDataMaps) {
+                scoreObjects.add(scoreNsData(rawNsDataMap));
+            }
+            return scoreObjects;
+        }
+
+        // normalized inputs by feature set, models with the same feature set share inputs
+        Map<String, double[][]> cachedInputs = new HashMap<String, double[][]>();
+        final int[] outputCounts = new int[this.models.size()];
+        List<Callable<MLData>> tasks = new ArrayList<Callable<MLData>>(this.models.size());
+        for(int i = 0; i < this.models.size(); i++) {
+            BasicML model = this.models.get(i);
+            if(model instanceof TreeModel) {
+                final IndependentTreeModel tm = ((TreeModel) model).getIndependentTreeModel();
+                final double[][] inputs = assembleBatchInputs(cachedInputs, rawNsDataMaps, null);
+                if(inputs.length > 0 && tm.getInputNode() != inputs[0].length) {
+                    throw new RuntimeException("GBDT and input size mismatch: tm input Size = " + tm.getInputNode()
+                            + "; data input Size = " + inputs[0].length);
+                }
+                outputCounts[i] = tm.getOutputCount();
+                final double[] outputs = new double[inputs.length * outputCounts[i]];
+                tasks.add(new Callable<MLData>() {
+                    @Override
+                    public MLData call() {
+                        tm.compute(inputs, outputs);
+                        return new BasicMLData(outputs);
+                    }
+                });
+            } else {
+                final BasicFloatNetwork network = (model instanceof BasicFloatNetwork) ? (BasicFloatNetwork) model
+                        : ((NNModel) model).getIndependentNNModel().getBasicNetworks().get(0);
+                final double[][] inputs = assembleBatchInputs(cachedInputs, rawNsDataMaps, network.getFeatureSet());
+                outputCounts[i] = network.getOutputCount();
+                final double[] outputs = new double[inputs.length * outputCounts[i]];
+                tasks.add(new Callable<MLData>() {
+                    @Override
+                    public MLData call() {
+                        network.compute(inputs, outputs);
+                        return new BasicMLData(outputs);
+                    }
+                });
+            }
+        }
+
+        List<MLData> batchResults = new ArrayList<MLData>(tasks.size());
+        if(this.multiThread) {
+            batchResults = this.executorManager.submitTasksAndWaitResults(tasks);
+        } else {
+            for(Callable<MLData> task: tasks) {
+                try {
+                    batchResults.add(task.call());
+                } catch (Exception e) {
+                    throw new RuntimeException("error in model evaluation", e);
+                }
+            }
+        }
+
+        for(int i = 0; i < rawNsDataMaps.size(); i++) {
+            List<MLData> modelResults = new ArrayList<MLData>(this.models.size());
+            for(int j = 0; j < this.models.size(); j++) {
+                double[] outputs = batchResults.get(j).getData();
+                modelResults.add(new BasicMLData(Arrays.copyOfRange(outputs, i * outputCounts[j], (i + 1)
+                        * outputCounts[j])));
+            }
+            scoreObjects.add(toScoreObject(modelResults));
+        }
+        return scoreObjects;
+    }
+
+    /**
+     * Batch scoring is only for tree models and neural network models without hidden layer outputs.
+     */
+    private boolean isBatchScoringSupported() {
+        if(this.outputHiddenLayerIndex != 0 || CollectionUtils.isEmpty(this.models)) {
+            return false;
+        }
+        for(BasicML model: this.models) {
+            if(!(model instanceof TreeModel || model instanceof BasicFloatNetwork || model instanceof NNModel)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private double[][] assembleBatchInputs(Map<String, double[][]> cachedInputs,
+            List<Map<NSColumn, String>> rawNsDataMaps, Set<Integer> featureSet) {
+        String cacheKey = featureSetToString(featureSet);
+        double[][] inputs = cachedInputs.get(cacheKey);
+        if(inputs == null) {
+            inputs = new double[rawNsDataMaps.size()][];
+            for(int i = 0; i < inputs.length; i++) {
+                inputs[i] = NormalUtils.assembleNsDataPair(binCategoryMap, noVarSelect, modelConfig,
+                        selectedColumnConfigList, rawNsDataMaps.get(i), cutoff, alg, featureSet).getInputArray();
+            }
+            cachedInputs.put(cacheKey, inputs);
+        }
+        return inputs;
+    }
+
+    /**
+     * Field scoring is supported for all models but not in hidden layer outputs mode.
+     * 
+     * @return if {@link #score(ScoreSchema, CharSequence[])} can be called
+     */
+    public boolean isFieldScoringSupported() {
+        return this.outputHiddenLayerIndex == 0;
+    }
+
+    /**
+     * Run models against record fields bound to schema. Input columns of each model are bound to field indexes once
+     * per schema, inputs are normalized into per thread buffers and models are computed on primitive arrays, no raw
+     * data map or boxed normalized values are created per record. Scores are the same as
+     * {@link #scoreNsData(Map)} on raw data map of the same record.
+     * 
+     * @param schema
+     *            the schema bound to header of fields
+     * @param fields
+     *            record fields, String or other char sequence
+     * @return scores in the same order as {@link ScoreObject#getScores()}, null if model and input size mismatch
+     * @throws UnsupportedOperationException
+     *             if field scoring is not supported, see {@link #isFieldScoringSupported()}
+     */
+    public double[] score(ScoreSchema schema, CharSequence[] fields) {
+        return getSchemaBinding(schema).score(fields);
+    }
+
+    /**
+     * {@link ScoreObject} version of {@link #score(ScoreSchema, CharSequence[])}.
+     * 
+     * @param schema
+     *            the schema bound to header of fields
+     * @param fields
+     *            record fields, String or other char sequence
+     * @return ScoreObject - model score, null if model and input size mismatch
+     */
+    public ScoreObject scoreFields(ScoreSchema schema, CharSequence[] fields) {
+        SchemaBinding binding = getSchemaBinding(schema);
+        double[] scores = binding.score(fields);
+        if(scores == null) {
+            return null;
+        }
+        List<Double> scoreList = new ArrayList<Double>(scores.length);
+        for(double score: scores) {
+            scoreList.add(score);
+        }
+        if(scores.length == 0 && System.currentTimeMillis() % 100 == 0) {
+            log.warn("No Scores Calculated...");
+        }
+        return new ScoreObject(scoreList, Constants.DEFAULT_IDEAL_VALUE, binding.rfTreeSizes, null);
+    }
+
+    private SchemaBinding getSchemaBinding(ScoreSchema schema) {
+        if(!isFieldScoringSupported()) {
+            throw new UnsupportedOperationException("Field scoring is not supported with hidden layer outputs.");
+        }
+        SchemaBinding binding = this.schemaBinding;
+        if(binding == null || binding.schema != schema) {
+            binding = new SchemaBinding(schema);
+            this.schemaBinding = binding;
+        }
+        return binding;
+    }
+
+    /**
+     * Number of scores of model output, the same as {@link #toScoreObject(List)} without hidden layer outputs.
+     */
+    private int getScoreCount(BasicML model, double[] outputs) {
+        if(model instanceof BasicNetwork || model instanceof NNModel) {
+            if(modelConfig.isRegression() || (modelConfig.isClassification() && modelConfig.getTrain().isOneVsAll())) {
+                return 1;
+            }
+            return outputs.length;
+        } else if(model instanceof TreeModel) {
+            return (modelConfig.isClassification() && !modelConfig.getTrain().isOneVsAll()) ? outputs.length : 1;
+        }
+        return 1;
+    }
+
+    /**
+     * Write scores of model output, tree classification scores are not scaled as {@link #toScoreObject(List)}.
+     */
+    private int writeScores(BasicML model, double[] outputs, double[] scores, int offset) {
+        int count = getScoreCount(model, outputs);
+        boolean isRawScore = model instanceof TreeModel && modelConfig.isClassification()
+                && !modelConfig.getTrain().isOneVsAll();
+        for(int i = 0; i < count; i++) {
+            scores[offset + i] = isRawScore ? outputs[i] : outputs[i] * this.scale;
+        }
+        return count;
+    }
+
+    /**
+     * Input layouts and per thread buffers of models bound to one {@link ScoreSchema}.
+     */
+    private final class SchemaBinding {
+
+        private final ScoreSchema schema;
+
+        /**
+         * Distinct input layouts, models with the same inputs share one layout.
+         */
+        private final ScoreInputLayout[] layouts;
+
+        /**
+         * Layout index of each model.
+         */
+        private final int[] modelLayouts;
+
+        /**
+         * Network of each NN model, null for other models.
+         */
+        private final BasicFloatNetwork[] networks;
+
+        /**
+         * False if SVM or LR model input size mismatches its layout, no score in such case.
+         */
+        private final boolean isValid;
+
+        private final List<Integer> rfTreeSizes = new ArrayList<Integer>();
+
+        private final ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>() {
+            @Override
+            protected Buffers initialValue() {
+                return new Buffers(SchemaBinding.this.layouts, SchemaBinding.this.networks);
+            }
+        };
+
+        SchemaBinding(ScoreSchema schema) {
+            this.schema = schema;
+            this.modelLayouts = new int[models.size()];
+            this.networks = new BasicFloatNetwork[models.size()];
+            Map<String, Integer> layoutIndexes = new HashMap<String, Integer>();
+            List<ScoreInputLayout> layoutList = new ArrayList<ScoreInputLayout>();
+            boolean isValid = true;
+            for(int i = 0; i < models.size(); i++) {
+                BasicML model = models.get(i);
+                List<ColumnConfig> configs = selectedColumnConfigList;
+                Set<Integer> featureSet = null;
+                String layoutKey;
+                if(model instanceof BasicFloatNetwork || model instanceof NNModel) {
+                    this.networks[i] = (model instanceof BasicFloatNetwork) ? (BasicFloatNetwork) model
+                            : ((NNModel) model).getIndependentNNModel().getBasicNetworks().get(0);
+                    featureSet = this.networks[i].getFeatureSet();
+                    layoutKey = featureSetToString(featureSet);
+                } else if(model instanceof BasicNetwork) {
+                    configs = columnConfigList;
+                    layoutKey = "ALL";
+                } else if(model instanceof SVM || model instanceof LR || model instanceof TreeModel
+                        || model instanceof GenericModel) {
+                    layoutKey = featureSetToString(null);
+                } else {
+                    throw new RuntimeException("unsupport models");
+                }
+
+                Integer layoutIndex = layoutIndexes.get(layoutKey);
+                if(layoutIndex == null) {
+                    layoutIndex = layoutList.size();
+                    layoutList.add(ScoreInputLayout.build(schema, binCategoryMap, noVarSelect, modelConfig, configs,
+                            cutoff, alg, featureSet));
+                    layoutIndexes.put(layoutKey, layoutIndex);
+                }
+                this.modelLayouts[i] = layoutIndex;
+
+                int inputSize = layoutList.get(layoutIndex).getInputSize();
+                if(model instanceof SVM && ((SVM) model).getInputCount() != inputSize) {
+                    log.error("SVM and input size mismatch: SVM Size = " + ((SVM) model).getInputCount()
+                            + "; Input Size = " + inputSize);
+                    isValid = false;
+                } else if(model instanceof LR && ((LR) model).getInputCount() != inputSize) {
+                    log.error("LR and input size mismatch: LR Size = " + ((LR) model).getInputCount()
+                            + "; Input Size = " + inputSize);
+                    isValid = false;
+                } else if(model instanceof TreeModel) {
+                    TreeModel tm = (TreeModel) model;
+                    if(tm.getInputCount() != inputSize) {
+                        throw new RuntimeException("GBDT and input size mismatch: tm input Size = "
+                                + tm.getInputCount() + "; data input Size = " + inputSize);
+                    }
+                    // regression for RF
+                    if(!tm.isClassfication() && !tm.isGBDT()) {
+                        this.rfTreeSizes.add(tm.getTrees().size());
+                    }
+                }
+            }
+            this.layouts = layoutList.toArray(new ScoreInputLayout[layoutList.size()]);
+            this.isValid = isValid;
+        }
+
+        double[] score(CharSequence[] fields) {
+            if(!this.isValid) {
+                return null;
+            }
+            final Buffers buffers = this.buffers.get();
+            for(int i = 0; i < this.layouts.length; i++) {
+                this.layouts[i].assemble(fields, buffers.inputs[i]);
+            }
+
+            final double[][] outputs = new double[models.size()][];
+            if(multiThread) {
+                List<Callable<MLData>> tasks = new ArrayList<Callable<MLData>>(models.size());
+                for(int i = 0; i < models.size(); i++) {
+                    final int index = i;
+                    tasks.add(new Callable<MLData>() {
+                        @Override
+                        public MLData call() {
+                            outputs[index] = compute(index, buffers);
+                            return null;
+                        }
+                    });
+                }
+                executorManager.submitTasksAndWaitResults(tasks);
+            } else {
+                for(int i = 0; i < models.size(); i++) {
+                    outputs[i] = compute(i, buffers);
+                }
+            }
+
+            int scoreCount = 0;
+            for(int i = 0; i < models.size(); i++) {
+                if(outputs[i] == null) {
+                    log.error("Get model results size doesn't match with models size.");
+                    return null;
+                }
+                scoreCount += getScoreCount(models.get(i), outputs[i]);
+            }
+            double[] scores = new double[scoreCount];
+            int offset = 0;
+            for(int i = 0; i < models.size(); i++) {
+                offset += writeScores(models.get(i), outputs[i], scores, offset);
+            }
+            return scores;
+        }
+
+        private double[] compute(int index, Buffers buffers) {
+            int layout = this.modelLayouts[index];
+            BasicML model = models.get(index);
+            if(this.networks[index] != null) {
+                // single row batch computing is thread safe on shared network
+                this.networks[index].compute(buffers.rows[layout], buffers.outputs[index]);
+                return buffers.outputs[index];
+            } else if(model instanceof TreeModel) {
+                return ((TreeModel) model).getIndependentTreeModel().compute(buffers.inputs[layout]);
+            }
+            return ((MLRegression) model).compute(new BasicMLData(buffers.inputs[layout])).getData();
+        }
+    }
+
+    /**
+     * Reused arrays of one scoring thread.
+     */
+    private static final class Buffers {
+
+        /**
+         * Input array of each layout.
+         */
+        private final double[][] inputs;
+
+        /**
+         * Input array of each layout wrapped as one row batch.
+         */
+        private final double[][][] rows;
+
+        /**
+         * Output array of each NN model, null for other models.
+         */
+        private final double[][] outputs;
+
+        Buffers(ScoreInputLayout[] layouts, BasicFloatNetwork[] networks) {
+            this.inputs = new double[layouts.length][];
+            this.rows = new double[layouts.length][][];
+            for(int i = 0; i < layouts.length; i++) {
+                this.inputs[i] = new double[layouts[i].getInputSize()];
+                this.rows[i] = new double[][] { this.inputs[i] };
+            }
+            this.outputs = new double[networks.length][];
+            for(int i = 0; i < networks.length; i++) {
+                if(networks[i] != null) {
+                    this.outputs[i] = new double[networks[i].getOutputCount()];
+                }
+            }
+        }
+    }
+
     private double toScore(Double d) {
         return d * scale;
     }
@@ -117,6 +117,12 @@ public class TensorflowTrainer {
         this.modelConfig = modelConfig;
         this.ccList = ccList;
         this.pathFinder = new PathFinder(modelConfig);
+        if(modelConfig.getNormalize().getIsBinary()) {
+            // input data is read as delimited text in tensorflow python scripts
+            throw new IllegalArgumentException(
+                    "Binary norm output is not supported by Tensorflow training, please change isBinary to false and "
+                            + "re-run norm.");
+        }
 
         for(int i = 0; i < ccList.size(); i++) {
             ColumnConfig cc = ccList.get(i);
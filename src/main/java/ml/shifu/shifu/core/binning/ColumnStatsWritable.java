@@ -0,0 +1,794 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.binning;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.io.Writable;
+
+/**
+ * {@link ColumnStatsWritable} is the final statistics of one column computed in {@link UpdateBinningInfoReducer}.
+ *
+ * <p>
+ * Besides the text stats line, reducer writes such records into a binary side file so that stats can be loaded into
+ * ColumnConfig without parsing and Base64 decoding of text lines. Values are the same as text stats line except that
+ * doubles are kept in full precision.
+ */
+public class ColumnStatsWritable implements Writable {
+
+    /**
+     * Column num, may be over column config size for segment expansion columns.
+     */
+    private int columnNum;
+
+    private String columnType;
+
+    /**
+     * Bin boundaries for numerical and hybrid column, null for categorical column.
+     */
+    private List<Double> binBoundaries;
+
+    /**
+     * Bin categories for categorical and hybrid column, null for numerical column.
+     */
+    private List<String> binCategories;
+
+    private long[] binCountNeg;
+
+    private long[] binCountPos;
+
+    private double[] binPosRate;
+
+    private double[] binWeightNeg;
+
+    private double[] binWeightPos;
+
+    /**
+     * If ks, iv and woe metrics are computed, only computed in regression.
+     */
+    private boolean hasMetrics;
+
+    private double ks;
+
+    private double iv;
+
+    private double woe;
+
+    private double weightedKs;
+
+    private double weightedIv;
+
+    private double weightedWoe;
+
+    private List<Double> binCountWoe;
+
+    private List<Double> binWeightedWoe;
+
+    private double max;
+
+    private double min;
+
+    private double mean;
+
+    private double stdDev;
+
+    private double median;
+
+    private double p25th;
+
+    private double p75th;
+
+    private double skewness;
+
+    private double kurtosis;
+
+    private long missingCount;
+
+    private long count;
+
+    private long totalCount;
+
+    private long invalidCount;
+
+    private long validNumCount;
+
+    private long cardinality;
+
+    /**
+     * Frequent items joined by ',', the same as sample values in text line before Base64 encoding.
+     */
+    private String frequentItems;
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(this.columnNum);
+        out.writeUTF(this.columnType);
+        writeDoubleList(out, this.binBoundaries);
+        if(this.binCategories == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(this.binCategories.size());
+            for(String category: this.binCategories) {
+                writeString(out, category);
+            }
+        }
+        writeLongArray(out, this.binCountNeg);
+        writeLongArray(out, this.binCountPos);
+        writeDoubleArray(out, this.binPosRate);
+        writeDoubleArray(out, this.binWeightNeg);
+        writeDoubleArray(out, this.binWeightPos);
+
+        out.writeBoolean(this.hasMetrics);
+        out.writeDouble(this.ks);
+        out.writeDouble(this.iv);
+        out.writeDouble(this.woe);
+        out.writeDouble(this.weightedKs);
+        out.writeDouble(this.weightedIv);
+        out.writeDouble(this.weightedWoe);
+        writeDoubleList(out, this.binCountWoe);
+        writeDoubleList(out, this.binWeightedWoe);
+
+        out.writeDouble(this.max);
+        out.writeDouble(this.min);
+        out.writeDouble(this.mean);
+        out.writeDouble(this.stdDev);
+        out.writeDouble(this.median);
+        out.writeDouble(this.p25th);
+        out.writeDouble(this.p75th);
+        out.writeDouble(this.skewness);
+        out.writeDouble(this.kurtosis);
+
+        out.writeLong(this.missingCount);
+        out.writeLong(this.count);
+        out.writeLong(this.totalCount);
+        out.writeLong(this.invalidCount);
+        out.writeLong(this.validNumCount);
+        out.writeLong(this.cardinality);
+        writeString(out, this.frequentItems);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        this.columnNum = in.readInt();
+        this.columnType = in.readUTF();
+        this.binBoundaries = readDoubleList(in);
+        int size = in.readInt();
+        if(size < 0) {
+            this.binCategories = null;
+        } else {
+            this.binCategories = new ArrayList<String>(size);
+            for(int i = 0; i < size; i++) {
+                this.binCategories.add(readString(in));
+            }
+        }
+        this.binCountNeg = readLongArray(in);
+        this.binCountPos = readLongArray(in);
+        this.binPosRate = readDoubleArray(in);
+        this.binWeightNeg = readDoubleArray(in);
+        this.binWeightPos = readDoubleArray(in);
+
+        this.hasMetrics = in.readBoolean();
+        this.ks = in.readDouble();
+        this.iv = in.readDouble();
+        this.woe = in.readDouble();
+        this.weightedKs = in.readDouble();
+        this.weightedIv = in.readDouble();
+        this.weightedWoe = in.readDouble();
+        this.binCountWoe = readDoubleList(in);
+        this.binWeightedWoe = readDoubleList(in);
+
+        this.max = in.readDouble();
+        this.min = in.readDouble();
+        this.mean = in.readDouble();
+        this.stdDev = in.readDouble();
+        this.median = in.readDouble();
+        this.p25th = in.readDouble();
+        this.p75th = in.readDouble();
+        this.skewness = in.readDouble();
+        this.kurtosis = in.readDouble();
+
+        this.missingCount = in.readLong();
+        this.count = in.readLong();
+        this.totalCount = in.readLong();
+        this.invalidCount = in.readLong();
+        this.validNumCount = in.readLong();
+        this.cardinality = in.readLong();
+        this.frequentItems = readString(in);
+    }
+
+    /**
+     * Category and frequent item strings may be over 64k which is the limit of {@link DataOutput#writeUTF(String)}.
+     */
+    private static void writeString(DataOutput out, String str) throws IOException {
+        byte[] bytes = str.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void writeDoubleList(DataOutput out, List<Double> list) throws IOException {
+        if(list == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(list.size());
+        for(Double d: list) {
+            out.writeDouble(d);
+        }
+    }
+
+    private static List<Double> readDoubleList(DataInput in) throws IOException {
+        int size = in.readInt();
+        if(size < 0) {
+            return null;
+        }
+        List<Double> list = new ArrayList<Double>(size);
+        for(int i = 0; i < size; i++) {
+            list.add(in.readDouble());
+        }
+        return list;
+    }
+
+    private static void writeLongArray(DataOutput out, long[] array) throws IOException {
+        out.writeInt(array.length);
+        for(long l: array) {
+            out.writeLong(l);
+        }
+    }
+
+    private static long[] readLongArray(DataInput in) throws IOException {
+        long[] array = new long[in.readInt()];
+        for(int i = 0; i < array.length; i++) {
+            array[i] = in.readLong();
+        }
+        return array;
+    }
+
+    private static void writeDoubleArray(DataOutput out, double[] array) throws IOException {
+        out.writeInt(array.length);
+        for(double d: array) {
+            out.writeDouble(d);
+        }
+    }
+
+    private static double[] readDoubleArray(DataInput in) throws IOException {
+        double[] array = new double[in.readInt()];
+        for(int i = 0; i < array.length; i++) {
+            array[i] = in.readDouble();
+        }
+        return array;
+    }
+
+    /**
+     * @return the columnNum
+     */
+    public int getColumnNum() {
+        return columnNum;
+    }
+
+    /**
+     * @param columnNum
+     *            the columnNum to set
+     */
+    public void setColumnNum(int columnNum) {
+        this.columnNum = columnNum;
+    }
+
+    /**
+     * @return the columnType
+     */
+    public String getColumnType() {
+        return columnType;
+    }
+
+    /**
+     * @param columnType
+     *            the columnType to set
+     */
+    public void setColumnType(String columnType) {
+        this.columnType = columnType;
+    }
+
+    /**
+     * @return the binBoundaries
+     */
+    public List<Double> getBinBoundaries() {
+        return binBoundaries;
+    }
+
+    /**
+     * @param binBoundaries
+     *            the binBoundaries to set
+     */
+    public void setBinBoundaries(List<Double> binBoundaries) {
+        this.binBoundaries = binBoundaries;
+    }
+
+    /**
+     * @return the binCategories
+     */
+    public List<String> getBinCategories() {
+        return binCategories;
+    }
+
+    /**
+     * @param binCategories
+     *            the binCategories to set
+     */
+    public void setBinCategories(List<String> binCategories) {
+        this.binCategories = binCategories;
+    }
+
+    /**
+     * @return the binCountNeg
+     */
+    public long[] getBinCountNeg() {
+        return binCountNeg;
+    }
+
+    /**
+     * @param binCountNeg
+     *            the binCountNeg to set
+     */
+    public void setBinCountNeg(long[] binCountNeg) {
+        this.binCountNeg = binCountNeg;
+    }
+
+    /**
+     * @return the binCountPos
+     */
+    public long[] getBinCountPos() {
+        return binCountPos;
+    }
+
+    /**
+     * @param binCountPos
+     *            the binCountPos to set
+     */
+    public void setBinCountPos(long[] binCountPos) {
+        this.binCountPos = binCountPos;
+    }
+
+    /**
+     * @return the binPosRate
+     */
+    public double[] getBinPosRate() {
+        return binPosRate;
+    }
+
+    /**
+     * @param binPosRate
+     *            the binPosRate to set
+     */
+    public void setBinPosRate(double[] binPosRate) {
+        this.binPosRate = binPosRate;
+    }
+
+    /**
+     * @return the binWeightNeg
+     */
+    public double[] getBinWeightNeg() {
+        return binWeightNeg;
+    }
+
+    /**
+     * @param binWeightNeg
+     *            the binWeightNeg to set
+     */
+    public void setBinWeightNeg(double[] binWeightNeg) {
+        this.binWeightNeg = binWeightNeg;
+    }
+
+    /**
+     * @return the binWeightPos
+     */
+    public double[] getBinWeightPos() {
+        return binWeightPos;
+    }
+
+    /**
+     * @param binWeightPos
+     *            the binWeightPos to set
+     */
+    public void setBinWeightPos(double[] binWeightPos) {
+        this.binWeightPos = binWeightPos;
+    }
+
+    /**
+     * @return the hasMetrics
+     */
+    public boolean isHasMetrics() {
+        return hasMetrics;
+    }
+
+    /**
+     * @param hasMetrics
+     *            the hasMetrics to set
+     */
+    public void setHasMetrics(boolean hasMetrics) {
+        this.hasMetrics = hasMetrics;
+    }
+
+    /**
+     * @return the ks
+     */
+    public double getKs() {
+        return ks;
+    }
+
+    /**
+     * @param ks
+     *            the ks to set
+     */
+    public void setKs(double ks) {
+        this.ks = ks;
+    }
+
+    /**
+     * @return the iv
+     */
+    public double getIv() {
+        return iv;
+    }
+
+    /**
+     * @param iv
+     *            the iv to set
+     */
+    public void setIv(double iv) {
+        this.iv = iv;
+    }
+
+    /**
+     * @return the woe
+     */
+    public double getWoe() {
+        return woe;
+    }
+
+    /**
+     * @param woe
+     *            the woe to set
+     */
+    public void setWoe(double woe) {
+        this.woe = woe;
+    }
+
+    /**
+     * @return the weightedKs
+     */
+    public double getWeightedKs() {
+        return weightedKs;
+    }
+
+    /**
+     * @param weightedKs
+     *            the weightedKs to set
+     */
+    public void setWeightedKs(double weightedKs) {
+        this.weightedKs = weightedKs;
+    }
+
+    /**
+     * @return the weightedIv
+     */
+    public double getWeightedIv() {
+        return weightedIv;
+    }
+
+    /**
+     * @param weightedIv
+     *            the weightedIv to set
+     */
+    public void setWeightedIv(double weightedIv) {
+        this.weightedIv = weightedIv;
+    }
+
+    /**
+     * @return the weightedWoe
+     */
+    public double getWeightedWoe() {
+        return weightedWoe;
+    }
+
+    /**
+     * @param weightedWoe
+     *            the weightedWoe to set
+     */
+    public void setWeightedWoe(double weightedWoe) {
+        this.weightedWoe = weightedWoe;
+    }
+
+    /**
+     * @return the binCountWoe
+     */
+    public List<Double> getBinCountWoe() {
+        return binCountWoe;
+    }
+
+    /**
+     * @param binCountWoe
+     *            the binCountWoe to set
+     */
+    public void setBinCountWoe(List<Double> binCountWoe) {
+        this.binCountWoe = binCountWoe;
+    }
+
+    /**
+     * @return the binWeightedWoe
+     */
+    public List<Double> getBinWeightedWoe() {
+        return binWeightedWoe;
+    }
+
+    /**
+     * @param binWeightedWoe
+     *            the binWeightedWoe to set
+     */
+    public void setBinWeightedWoe(List<Double> binWeightedWoe) {
+        this.binWeightedWoe = binWeightedWoe;
+    }
+
+    /**
+     * @return the max
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * @param max
+     *            the max to set
+     */
+    public void setMax(double max) {
+        this.max = max;
+    }
+
+    /**
+     * @return the min
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * @param min
+     *            the min to set
+     */
+    public void setMin(double min) {
+        this.min = min;
+    }
+
+    /**
+     * @return the mean
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * @param mean
+     *            the mean to set
+     */
+    public void setMean(double mean) {
+        this.mean = mean;
+    }
+
+    /**
+     * @return the stdDev
+     */
+    public double getStdDev() {
+        return stdDev;
+    }
+
+    /**
+     * @param stdDev
+     *            the stdDev to set
+     */
+    public void setStdDev(double stdDev) {
+        this.stdDev = stdDev;
+    }
+
+    /**
+     * @return the median
+     */
+    public double getMedian() {
+        return median;
+    }
+
+    /**
+     * @param median
+     *            the median to set
+     */
+    public void setMedian(double median) {
+        this.median = median;
+    }
+
+    /**
+     * @return the p25th
+     */
+    public double getP25th() {
+        return p25th;
+    }
+
+    /**
+     * @param p25th
+     *            the p25th to set
+     */
+    public void setP25th(double p25th) {
+        this.p25th = p25th;
+    }
+
+    /**
+     * @return the p75th
+     */
+    public double getP75th() {
+        return p75th;
+    }
+
+    /**
+     * @param p75th
+     *            the p75th to set
+     */
+    public void setP75th(double p75th) {
+        this.p75th = p75th;
+    }
+
+    /**
+     * @return the skewness
+     */
+    public double getSkewness() {
+        return skewness;
+    }
+
+    /**
+     * @param skewness
+     *            the skewness to set
+     */
+    public void setSkewness(double skewness) {
+        this.skewness = skewness;
+    }
+
+    /**
+     * @return the kurtosis
+     */
+    public double getKurtosis() {
+        return kurtosis;
+    }
+
+    /**
+     * @param kurtosis
+     *            the kurtosis to set
+     */
+    public void setKurtosis(double kurtosis) {
+        this.kurtosis = kurtosis;
+    }
+
+    /**
+     * @return the missingCount
+     */
+    public long getMissingCount() {
+        return missingCount;
+    }
+
+    /**
+     * @param missingCount
+     *            the missingCount to set
+     */
+    public void setMissingCount(long missingCount) {
+        this.missingCount = missingCount;
+    }
+
+    /**
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @param count
+     *            the count to set
+     */
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    /**
+     * @return the totalCount
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @param totalCount
+     *            the totalCount to set
+     */
+    public void setTotalCount(long totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    /**
+     * @return the invalidCount
+     */
+    public long getInvalidCount() {
+        return invalidCount;
+    }
+
+    /**
+     * @param invalidCount
+     *            the invalidCount to set
+     */
+    public void setInvalidCount(long invalidCount) {
+        this.invalidCount = invalidCount;
+    }
+
+    /**
+     * @return the validNumCount
+     */
+    public long getValidNumCount() {
+        return validNumCount;
+    }
+
+    /**
+     * @param validNumCount
+     *            the validNumCount to set
+     */
+    public void setValidNumCount(long validNumCount) {
+        this.validNumCount = validNumCount;
+    }
+
+    /**
+     * @return the cardinality
+     */
+    public long getCardinality() {
+        return cardinality;
+    }
+
+    /**
+     * @param cardinality
+     *            the cardinality to set
+     */
+    public void setCardinality(long cardinality) {
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * @return the frequentItems
+     */
+    public String getFrequentItems() {
+        return frequentItems;
+    }
+
+    /**
+     * @param frequentItems
+     *            the frequentItems to set
+     */
+    public void setFrequentItems(String frequentItems) {
+        this.frequentItems = frequentItems;
+    }
+
+}
@@ -49,6 +49,7 @@ import ml.shifu.shifu.core.autotype.CountAndFrequentItemsWritable;
 import ml.shifu.shifu.util.BinUtils;
 import ml.shifu.shifu.util.CommonUtils;
 import ml.shifu.shifu.util.Constants;
+import ml.shifu.shifu.util.DelimitedRecord;
 import ml.shifu.shifu.util.MapReduceUtils;
 
 /**
@@ -73,9 +74,9 @@ public class UpdateBinningInfoMapper extends Mapper<LongWritable, Text, IntWrita
     private final static Logger LOG = LoggerFactory.getLogger(UpdateBinningInfoMapper.class);
 
     /**
-     * Default splitter used to split input record. Use one instance to prevent more news in Splitter.on.
+     * Reusable view of input record, field Strings are only created once per column and record.
      */
-    private String dataSetDelimiter;
+    private DelimitedRecord record;
 
     /**
      * Model Config read from HDFS
@@ -168,7 +169,7 @@ public class UpdateBinningInfoMapper extends Mapper<LongWritable, Text, IntWrita
     protected void setup(Context context) throws IOException, InterruptedException {
         loadConfigFiles(context);
 
-        this.dataSetDelimiter = this.modelConfig.getDataSetDelimiter();
+        this.record = new DelimitedRecord(this.modelConfig.getDataSetDelimiter());
 
         this.dataPurifier = new DataPurifier(this.modelConfig, false);
 
@@ -360,14 +361,14 @@ public class UpdateBinningInfoMapper extends Mapper<LongWritable, Text, IntWrita
             return;
         }
 
-        String[] units = CommonUtils.split(valueStr, this.dataSetDelimiter);
-        // tagColumnNum should be in units array, if not IndexOutofBoundException
-        if(units.length != this.columnConfigList.size()) {
+        DelimitedRecord record = this.record.reset(value);
+        // tagColumnNum should be in record, if not IndexOutofBoundException
+        if(record.size() != this.columnConfigList.size()) {
             LOG.error("Data column length doesn't match with ColumnConfig size. Just skip.");
             return;
         }
 
-        String tag = CommonUtils.trimTag(units[this.tagColumnNum]);
+        String tag = CommonUtils.trimTag(record.getString(this.tagColumnNum));
 
         if(modelConfig.isRegression()) {
             if(tag == null || (!posTags.contains(tag) && !negTags.contains(tag))) {
@@ -383,7 +384,8 @@ public class UpdateBinningInfoMapper extends Mapper<LongWritable, Text, IntWrita
 
         Double weight = 1.0;
         try {
-            weight = (this.weightedColumnNum == -1 ? 1.0d : Double.valueOf(units[this.weightedColumnNum]));
+            weight = (this.weightedColumnNum == -1 ? 1.0d
+                    : Double.valueOf(record.getString(this.weightedColumnNum)));
             if(weight < 0) {
                 weightExceptions += 1;
                 context.getCounter(Constants.SHIFU_GROUP_COUNTER, "WEIGHT_EXCEPTION").increment(1L);
@@ -410,21 +412,23 @@ public class UpdateBinningInfoMapper extends Mapper<LongWritable, Text, IntWrita
             }
         }
 
-        // valid data process
-        for(int i = 0; i < units.length; i++) {
-            populateStats(units, tag, weight, i, i);
+        // valid data process, field String is created once and shared by all expressions
+        int size = record.size();
+        for(int i = 0; i < size; i++) {
+            String unit = record.getString(i);
+            populateStats(unit, tag, weight, i, i);
             if(this.isForExpressions) {
                 for(int j = 0; j < this.expressionDataPurifiers.size(); j++) {
                     Boolean filter = filterResults.get(j);
                     if(filter != null && filter) {
-                        populateStats(units, tag, weight, i, (j + 1) * units.length + i);
+                        populateStats(unit, tag, weight, i, (j + 1) * size + i);
                     }
                 }
             }
         }
     }
 
-    private void populateStats(String[] units, String tag, Double weight, int columnIndex, int newCCIndex) {
+    private void populateStats(String unit, String tag, Double weight, int columnIndex, int newCCIndex) {
         ColumnConfig columnConfig = this.columnConfigList.get(columnIndex);
 
         CountAndFrequentItems countAndFrequentItems = this.variableCountMap.get(newCCIndex);
@@ -432,7 +436,7 @@ public class UpdateBinningInfoMapper extends Mapper<LongWritable, Text, IntWrita
             countAndFrequentItems = new CountAndFrequentItems();
             this.variableCountMap.put(newCCIndex, countAndFrequentItems);
         }
-        countAndFrequentItems.offer(this.missingOrInvalidValues, units[columnIndex]);
+        countAndFrequentItems.offer(this.missingOrInvalidValues, unit);
 
         boolean isMissingValue = false;
         boolean isInvalidValue = false;
@@ -444,11 +448,10 @@ public class UpdateBinningInfoMapper extends Mapper<LongWritable, Text, IntWrita
         binningInfoWritable.setTotalCount(binningInfoWritable.getTotalCount() + 1L);
         if(columnConfig.isHybrid()) {
             int binNum = 0;
-            if(units[columnIndex] == null || missingOrInvalidValues.contains(units[columnIndex].toLowerCase())) {
+            if(unit == null || missingOrInvalidValues.contains(unit.toLowerCase())) {
                 isMissingValue = true;
             }
-            String str = units[columnIndex];
-            double douVal = BinUtils.parseNumber(str);
+            double douVal = BinUtils.parseNumber(unit);
 
             Double hybridThreshold = columnConfig.getHybridThreshold();
             if(hybridThreshold == null) {
@@ -463,7 +466,7 @@ public class UpdateBinningInfoMapper extends Mapper<LongWritable, Text, IntWrita
                 binNum = binningInfoWritable.getBinCategories().size() + binningInfoWritable.getBinBoundaries().size();
             } else if(isCategory) {
                 // get categorical bin number in category list
-                binNum = quickLocateCategoricalBin(this.categoricalBinMap.get(newCCIndex), str);
+                binNum = quickLocateCategoricalBin(this.categoricalBinMap.get(newCCIndex), unit);
                 if(binNum < 0) {
                     isInvalidValue = true;
                 }
@@ -507,11 +510,10 @@ public class UpdateBinningInfoMapper extends Mapper<LongWritable, Text, IntWrita
             int lastBinIndex = binningInfoWritable.getBinCategories().size();
 
             int binNum = 0;
-            if(units[columnIndex] == null || missingOrInvalidValues.contains(units[columnIndex].toLowerCase())) {
+            if(unit == null || missingOrInvalidValues.contains(unit.toLowerCase())) {
                 isMissingValue = true;
             } else {
-                String str = units[columnIndex];
-                binNum = quickLocateCategoricalBin(this.categoricalBinMap.get(newCCIndex), str);
+                binNum = quickLocateCategoricalBin(this.categoricalBinMap.get(newCCIndex), unit);
                 if(binNum < 0) {
                     isInvalidValue = true;
                 }
@@ -538,12 +540,11 @@ public class UpdateBinningInfoMapper extends Mapper<LongWritable, Text, IntWrita
         } else if(columnConfig.isNumerical()) {
             int lastBinIndex = binningInfoWritable.getBinBoundaries().size();
             double douVal = 0.0;
-            if(units[columnIndex] == null || units[columnIndex].length() == 0
-                    || missingOrInvalidValues.contains(units[columnIndex].toLowerCase())) {
+            if(unit == null || unit.length() == 0 || missingOrInvalidValues.contains(unit.toLowerCase())) {
                 isMissingValue = true;
             } else {
                 try {
-                    douVal = Double.parseDouble(units[columnIndex].trim());
+                    douVal = Double.parseDouble(unit.trim());
                 } catch (Exception e) {
                     isInvalidValue = true;
                 }
@@ -567,7 +568,7 @@ public class UpdateBinningInfoMapper extends Mapper<LongWritable, Text, IntWrita
                 }
             } else {
                 // For invalid or missing values, no need update sum, squaredSum, max, min ...
-                int binNum = getBinNum(binningInfoWritable.getBinBoundaries(), units[columnIndex]);
+                int binNum = getBinNum(binningInfoWritable.getBinBoundaries(), douVal);
                 if(binNum == -1) {
                     throw new RuntimeException("binNum should not be -1 to this step.");
                 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.binning;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+import ml.shifu.shifu.util.Constants;
+import ml.shifu.shifu.util.MapReduceUtils;
+
+/**
+ * {@link UpdateBinningInfoPartitioner} assigns columns to reducers by estimated finalization cost instead of hash of
+ * column num, to avoid one reducer with many large categorical columns becoming the tail of stats job.
+ *
+ * <p>
+ * Cost of one column is its bin size plus a fixed per-column cost. Bin sizes are read from the binning info file
+ * shipped to each task, the same file read by {@link UpdateBinningInfoMapper}, and columns are assigned greedily from
+ * the largest cost to the reducer with least total cost. Assignment is deterministic so that all mappers send the
+ * same column to the same reducer. Columns not in binning info file fall back to hash partition.
+ */
+public class UpdateBinningInfoPartitioner extends Partitioner<IntWritable, BinningInfoWritable>
+        implements Configurable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UpdateBinningInfoPartitioner.class);
+
+    /**
+     * Fixed cost of each column like frequent items and cardinality merging, in unit of one bin.
+     */
+    static final long COLUMN_BASE_COST = 16L;
+
+    private Configuration conf;
+
+    /**
+     * Column num to reducer index, built at first call of {@link #getPartition(IntWritable, BinningInfoWritable, int)}
+     */
+    private Map<Integer, Integer> partitions;
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+    }
+
+    @Override
+    public Configuration getConf() {
+        return this.conf;
+    }
+
+    @Override
+    public int getPartition(IntWritable key, BinningInfoWritable value, int numPartitions) {
+        if(this.partitions == null) {
+            this.partitions = assign(loadColumnCosts(), numPartitions);
+        }
+        Integer partition = this.partitions.get(key.get());
+        if(partition == null) {
+            return (key.hashCode() & Integer.MAX_VALUE) % numPartitions;
+        }
+        return partition;
+    }
+
+    private Map<Integer, Long> loadColumnCosts() {
+        Map<Integer, Long> costs = new HashMap<Integer, Long>();
+        File file = new File(Constants.BINNING_INFO_FILE_NAME);
+        if(!file.exists()) {
+            LOG.warn("Binning info file {} is not found, columns are partitioned by hash.", file);
+            return costs;
+        }
+        Splitter splitter = MapReduceUtils.generateShifuOutputSplitter(
+                this.conf == null ? null : this.conf.get(Constants.SHIFU_OUTPUT_DATA_DELIMITER));
+        Splitter binSplitter = Splitter.on(Constants.BIN_BOUNDRY_DELIMITER);
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charset.forName("UTF-8")));
+            String line;
+            while((line = reader.readLine()) != null && line.length() != 0) {
+                List<String> cols = Lists.newArrayList(splitter.split(line));
+                if(cols.size() < 2) {
+                    continue;
+                }
+                long binSize = Iterables.size(binSplitter.split(cols.get(1)));
+                costs.put(Integer.parseInt(cols.get(0).trim()), binSize + COLUMN_BASE_COST);
+            }
+        } catch (IOException e) {
+            LOG.warn("Error in loading binning info file, columns are partitioned by hash.", e);
+            costs.clear();
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+        return costs;
+    }
+
+    /**
+     * Assign columns to partitions by longest processing time first: columns are sorted by cost descending and each
+     * is assigned to the partition with least total cost.
+     *
+     * @param costs
+     *            column num to cost
+     * @param numPartitions
+     *            number of partitions
+     * @return column num to partition index
+     */
+    static Map<Integer, Integer> assign(final Map<Integer, Long> costs, int numPartitions) {
+        List<Integer> columns = new ArrayList<Integer>(costs.keySet());
+        Collections.sort(columns, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                int result = costs.get(o2).compareTo(costs.get(o1));
+                return result != 0 ? result : o1.compareTo(o2);
+            }
+        });
+
+        // {total cost, partition index}, ties broken by partition index to be deterministic
+        PriorityQueue<long[]> loads = new PriorityQueue<long[]>(Math.max(1, numPartitions), new Comparator<long[]>() {
+            @Override
+            public int compare(long[] o1, long[] o2) {
+                int result = Long.compare(o1[0], o2[0]);
+                return result != 0 ? result : Long.compare(o1[1], o2[1]);
+            }
+        });
+        for(int i = 0; i < numPartitions; i++) {
+            loads.add(new long[] { 0L, i });
+        }
+
+        Map<Integer, Integer> partitions = new HashMap<Integer, Integer>(columns.size() * 2);
+        for(Integer column: columns) {
+            long[] load = loads.poll();
+            partitions.put(column, (int) load[1]);
+            load[0] += costs.get(column);
+            loads.add(load);
+        }
+        return partitions;
+    }
+
+}
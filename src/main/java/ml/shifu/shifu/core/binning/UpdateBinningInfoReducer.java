@@ -15,9 +15,18 @@
  */
 package ml.shifu.shifu.core.binning;
 
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import ml.shifu.shifu.container.obj.ColumnConfig;
 import ml.shifu.shifu.container.obj.ModelConfig;
@@ -27,17 +36,21 @@ import ml.shifu.shifu.core.ColumnStatsCalculator.ColumnMetrics;
 import ml.shifu.shifu.core.autotype.CountAndFrequentItemsWritable;
 import ml.shifu.shifu.core.binning.obj.AbstractBinInfo;
 import ml.shifu.shifu.core.binning.obj.CategoricalBinInfo;
+import ml.shifu.shifu.core.dtrain.CommonConstants;
 import ml.shifu.shifu.udf.CalculateStatsUDF;
 import ml.shifu.shifu.util.Base64Utils;
 import ml.shifu.shifu.util.CommonUtils;
 import ml.shifu.shifu.util.Constants;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,8 +64,11 @@ import com.clearspring.analytics.stream.cardinality.HyperLogLogPlus;
  * The same format with previous output to make sure consistent with output processing functions.
  * 
  * <p>
- * Only one reducer to make sure all info can be collected together. One reducer is not bottleneck as some times we only
- * have thousands of variables.
+ * Columns are assigned to reducers by {@link UpdateBinningInfoPartitioner}. In each reducer, {@link #reduce} only
+ * merges mapper statistics of one column, final statistics like WOE, KS, IV and percentiles are computed in a thread
+ * pool and written in column order. Besides text output, final statistics are also written as
+ * {@link ColumnStatsWritable} records into a hidden binary side file in the same output folder, which is loaded by
+ * {@link #readBinaryStats(DataInputStream)} without parsing text lines.
  */
 public class UpdateBinningInfoReducer extends Reducer<IntWritable, BinningInfoWritable, NullWritable, Text> {
 
@@ -60,6 +76,13 @@ public class UpdateBinningInfoReducer extends Reducer<IntWritable, BinningInfoWr
 
     private static final double EPS = 1e-6;
 
+    /**
+     * File name prefix of binary stats side file, starts with '.' to be skipped by text stats readers.
+     */
+    public static final String BINARY_STATS_PREFIX = ".stats-r-";
+
+    private static final int BINARY_STATS_VERSION = 1;
+
     /**
      * Column Config list read from HDFS
      */
@@ -71,14 +94,14 @@ public class UpdateBinningInfoReducer extends Reducer<IntWritable, BinningInfoWr
     private Text outputValue;
 
     /**
-     * To concat output string
+     * To format double value, DecimalFormat is not thread safe.
      */
-    private StringBuilder sb = new StringBuilder(2000);
-
-    /**
-     * To format double value.
-     */
-    private DecimalFormat df = new DecimalFormat("##.######");
+    private static final ThreadLocal<DecimalFormat> DF = new ThreadLocal<DecimalFormat>() {
+        @Override
+        protected DecimalFormat initialValue() {
+            return new DecimalFormat("##.######");
+        }
+    };
 
     private boolean statsExcludeMissingValue;
 
@@ -89,6 +112,26 @@ public class UpdateBinningInfoReducer extends Reducer<IntWritable, BinningInfoWr
      */
     private ModelConfig modelConfig;
 
+    /**
+     * Thread pool to compute final statistics, null if only one thread.
+     */
+    private ExecutorService threadPool;
+
+    /**
+     * Final statistics in computing, in the same order of reduce keys.
+     */
+    private Deque<Future<ColumnStats>> pendingStats = new ArrayDeque<Future<ColumnStats>>();
+
+    /**
+     * Max pending columns to bound memory of merged statistics.
+     */
+    private int maxPendingStats;
+
+    /**
+     * Output stream of binary stats side file.
+     */
+    private DataOutputStream binaryOutput;
+
     /**
      * Load all configurations for modelConfig and columnConfigList from source type.
      */
@@ -119,113 +162,176 @@ public class UpdateBinningInfoReducer extends Reducer<IntWritable, BinningInfoWr
                 true);
 
         this.outputValue = new Text();
+
+        int threads = context.getConfiguration().getInt(CommonConstants.SHIFU_UPDATEBINNING_REDUCER_THREADS,
+                Math.min(4, Runtime.getRuntime().availableProcessors()));
+        if(threads > 1) {
+            this.threadPool = Executors.newFixedThreadPool(threads);
+        }
+        this.maxPendingStats = Math.max(1, threads) * 4;
+        LOG.info("Final statistics are computed in {} threads.", Math.max(1, threads));
+
+        Path binaryPath = new Path(FileOutputFormat.getWorkOutputPath(context), String.format("%s%05d",
+                BINARY_STATS_PREFIX, context.getTaskAttemptID().getTaskID().getId()));
+        this.binaryOutput = new DataOutputStream(new BufferedOutputStream(
+                binaryPath.getFileSystem(context.getConfiguration()).create(binaryPath, true)));
+        this.binaryOutput.writeInt(BINARY_STATS_VERSION);
     }
 
     @Override
     protected void reduce(IntWritable key, Iterable<BinningInfoWritable> values, Context context)
             throws IOException, InterruptedException {
-        long start = System.currentTimeMillis();
-        double sum = 0d;
-        double squaredSum = 0d;
-        double tripleSum = 0d;
-        double quarticSum = 0d;
-        double p25th = 0d;
-        double median = 0d;
-        double p75th = 0d;
-
-        long count = 0L, missingCount = 0L;
-        double min = Double.MAX_VALUE, max = Double.MIN_VALUE;
-        List<Double> binBoundaryList = null;
-        List<String> binCategories = null;
-        long[] binCountPos = null;
-        long[] binCountNeg = null;
-        double[] binWeightPos = null;
-        double[] binWeightNeg = null;
-        long[] binCountTotal = null;
-
         int columnConfigIndex = key.get() >= this.columnConfigList.size() ? key.get() % this.columnConfigList.size()
                 : key.get();
 
-        ColumnConfig columnConfig = this.columnConfigList.get(columnConfigIndex);
+        final ColumnConfig columnConfig = this.columnConfigList.get(columnConfigIndex);
+        final MergedBinningInfo info = mergeBinningInfo(key.get(), columnConfig, values);
 
-        HyperLogLogPlus hyperLogLogPlus = null;
-        Set<String> fis = new HashSet<String>();
-        long totalCount = 0, invalidCount = 0, validNumCount = 0;
-        int binSize = 0;
+        if(this.threadPool == null) {
+            writeStats(computeStats(info, columnConfig), context);
+            return;
+        }
+
+        this.pendingStats.add(this.threadPool.submit(new Callable<ColumnStats>() {
+            @Override
+            public ColumnStats call() {
+                return computeStats(info, columnConfig);
+            }
+        }));
+        while(this.pendingStats.size() > this.maxPendingStats) {
+            writeStats(waitStats(this.pendingStats.poll()), context);
+        }
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        try {
+            while(!this.pendingStats.isEmpty()) {
+                writeStats(waitStats(this.pendingStats.poll()), context);
+            }
+            // end flag of binary stats to check if file is complete
+            this.binaryOutput.writeBoolean(false);
+        } finally {
+            if(this.threadPool != null) {
+                this.threadPool.shutdownNow();
+            }
+            IOUtils.closeQuietly(this.binaryOutput);
+        }
+    }
+
+    private ColumnStats waitStats(Future<ColumnStats> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Error in computing column statistics.", e.getCause());
+        }
+    }
+
+    private void writeStats(ColumnStats stats, Context context) throws IOException, InterruptedException {
+        if(stats == null) {
+            return;
+        }
+        this.outputValue.set(stats.line);
+        context.write(NullWritable.get(), this.outputValue);
+        this.binaryOutput.writeBoolean(true);
+        stats.stats.write(this.binaryOutput);
+    }
+
+    /**
+     * Merge statistics from all mappers of one column.
+     */
+    private MergedBinningInfo mergeBinningInfo(int columnNum, ColumnConfig columnConfig,
+            Iterable<BinningInfoWritable> values) {
+        MergedBinningInfo merged = new MergedBinningInfo(columnNum);
         for(BinningInfoWritable info: values) {
             if(info.isEmpty()) {
                 // mapper has no stats, skip it
                 continue;
             }
             CountAndFrequentItemsWritable cfiw = info.getCfiw();
-            totalCount += cfiw.getCount();
-            invalidCount += cfiw.getInvalidCount();
-            validNumCount += cfiw.getValidNumCount();
-            fis.addAll(cfiw.getFrequetItems());
-            if(hyperLogLogPlus == null) {
-                hyperLogLogPlus = HyperLogLogPlus.Builder.build(cfiw.getHyperBytes());
+            merged.totalCount += cfiw.getCount();
+            merged.invalidCount += cfiw.getInvalidCount();
+            merged.validNumCount += cfiw.getValidNumCount();
+            merged.fis.addAll(cfiw.getFrequetItems());
+            if(merged.hyperLogLogPlus == null) {
+                merged.hyperLogLogPlus = HyperLogLogPlus.Builder.build(cfiw.getHyperBytes());
             } else {
                 try {
-                    hyperLogLogPlus = (HyperLogLogPlus) hyperLogLogPlus
+                    merged.hyperLogLogPlus = (HyperLogLogPlus) merged.hyperLogLogPlus
                             .merge(HyperLogLogPlus.Builder.build(cfiw.getHyperBytes()));
                 } catch (CardinalityMergeException e) {
                     throw new RuntimeException(e);
                 }
             }
 
-            if(columnConfig.isHybrid() && binBoundaryList == null && binCategories == null) {
-                binBoundaryList = info.getBinBoundaries();
-                binCategories = info.getBinCategories();
-                binSize = binBoundaryList.size() + binCategories.size();
-                binCountPos = new long[binSize + 1];
-                binCountNeg = new long[binSize + 1];
-                binWeightPos = new double[binSize + 1];
-                binWeightNeg = new double[binSize + 1];
-                binCountTotal = new long[binSize + 1];
-            } else if(columnConfig.isNumerical() && binBoundaryList == null) {
-                binBoundaryList = info.getBinBoundaries();
-                binSize = binBoundaryList.size();
-                binCountPos = new long[binSize + 1];
-                binCountNeg = new long[binSize + 1];
-                binWeightPos = new double[binSize + 1];
-                binWeightNeg = new double[binSize + 1];
-                binCountTotal = new long[binSize + 1];
-            } else if(columnConfig.isCategorical() && binCategories == null) {
-                binCategories = info.getBinCategories();
-                binSize = binCategories.size();
-                binCountPos = new long[binSize + 1];
-                binCountNeg = new long[binSize + 1];
-                binWeightPos = new double[binSize + 1];
-                binWeightNeg = new double[binSize + 1];
-                binCountTotal = new long[binSize + 1];
+            if(columnConfig.isHybrid() && merged.binBoundaryList == null && merged.binCategories == null) {
+                merged.binBoundaryList = info.getBinBoundaries();
+                merged.binCategories = info.getBinCategories();
+                merged.initBins(merged.binBoundaryList.size() + merged.binCategories.size());
+            } else if(columnConfig.isNumerical() && merged.binBoundaryList == null) {
+                merged.binBoundaryList = info.getBinBoundaries();
+                merged.initBins(merged.binBoundaryList.size());
+            } else if(columnConfig.isCategorical() && merged.binCategories == null) {
+                merged.binCategories = info.getBinCategories();
+                merged.initBins(merged.binCategories.size());
             }
 
-            count += info.getTotalCount();
-            missingCount += info.getMissingCount();
+            merged.count += info.getTotalCount();
+            merged.missingCount += info.getMissingCount();
             // for numeric, such sums are OK, for categorical, such values are all 0, should be updated by using
             // binCountPos and binCountNeg
-            sum += info.getSum();
-            squaredSum += info.getSquaredSum();
-            tripleSum += info.getTripleSum();
-            quarticSum += info.getQuarticSum();
-            if(Double.compare(max, info.getMax()) < 0) {
-                max = info.getMax();
+            merged.sum += info.getSum();
+            merged.squaredSum += info.getSquaredSum();
+            merged.tripleSum += info.getTripleSum();
+            merged.quarticSum += info.getQuarticSum();
+            if(Double.compare(merged.max, info.getMax()) < 0) {
+                merged.max = info.getMax();
             }
 
-            if(Double.compare(min, info.getMin()) > 0) {
-                min = info.getMin();
+            if(Double.compare(merged.min, info.getMin()) > 0) {
+                merged.min = info.getMin();
             }
 
-            for(int i = 0; i < (binSize + 1); i++) {
-                binCountPos[i] += info.getBinCountPos()[i];
-                binCountNeg[i] += info.getBinCountNeg()[i];
-                binWeightPos[i] += info.getBinWeightPos()[i];
-                binWeightNeg[i] += info.getBinWeightNeg()[i];
+            for(int i = 0; i < (merged.binSize + 1); i++) {
+                merged.binCountPos[i] += info.getBinCountPos()[i];
+                merged.binCountNeg[i] += info.getBinCountNeg()[i];
+                merged.binWeightPos[i] += info.getBinWeightPos()[i];
+                merged.binWeightNeg[i] += info.getBinWeightNeg()[i];
 
-                binCountTotal[i] += info.getBinCountPos()[i];
-                binCountTotal[i] += info.getBinCountNeg()[i];
+                merged.binCountTotal[i] += info.getBinCountPos()[i];
+                merged.binCountTotal[i] += info.getBinCountNeg()[i];
             }
         }
+        return merged;
+    }
+
+    /**
+     * Compute final statistics of one column, this method may be called in multiple threads.
+     * 
+     * @return final statistics, or null if column is invalid
+     */
+    private ColumnStats computeStats(MergedBinningInfo merged, ColumnConfig columnConfig) {
+        long start = System.currentTimeMillis();
+        int columnNum = merged.columnNum;
+        double sum = merged.sum;
+        double squaredSum = merged.squaredSum;
+        double tripleSum = merged.tripleSum;
+        double quarticSum = merged.quarticSum;
+        double p25th = 0d;
+        double median = 0d;
+        double p75th = 0d;
+
+        long count = merged.count, missingCount = merged.missingCount;
+        double min = merged.min, max = merged.max;
+        List<Double> binBoundaryList = merged.binBoundaryList;
+        List<String> binCategories = merged.binCategories;
+        long[] binCountPos = merged.binCountPos;
+        long[] binCountNeg = merged.binCountNeg;
+        double[] binWeightPos = merged.binWeightPos;
+        double[] binWeightNeg = merged.binWeightNeg;
+        long[] binCountTotal = merged.binCountTotal;
+        int binSize = merged.binSize;
+
         if(columnConfig.isNumerical()) {
             long p25Count = count / 4;
             long medianCount = p25Count * 2;
@@ -289,25 +395,23 @@ public class UpdateBinningInfoReducer extends Reducer<IntWritable, BinningInfoWr
             // for multiple classfication, use rate of categories to compute a value
             binPosRate = computeRateForMultiClassfication(binCountPos);
         }
-        String binBounString = null;
 
+        ColumnStatsWritable stats = new ColumnStatsWritable();
         if(columnConfig.isHybrid()) {
             if(binCategories.size() > this.maxCateSize) {
-                LOG.warn("Column {} {} with invalid bin category size.", key.get(), columnConfig.getColumnName(),
+                LOG.warn("Column {} {} with invalid bin category size.", columnNum, columnConfig.getColumnName(),
                         binCategories.size());
-                return;
+                return null;
             }
-            binBounString = binBoundaryList.toString();
-            binBounString += Constants.HYBRID_BIN_STR_DILIMETER + Base64Utils.base64Encode(
-                    "[" + StringUtils.join(binCategories, CalculateStatsUDF.CATEGORY_VAL_SEPARATOR) + "]");
+            stats.setBinBoundaries(binBoundaryList);
+            stats.setBinCategories(binCategories);
         } else if(columnConfig.isCategorical()) {
             if(binCategories.size() > this.maxCateSize) {
-                LOG.warn("Column {} {} with invalid bin category size.", key.get(), columnConfig.getColumnName(),
+                LOG.warn("Column {} {} with invalid bin category size.", columnNum, columnConfig.getColumnName(),
                         binCategories.size());
-                return;
+                return null;
             }
-            binBounString = Base64Utils.base64Encode(
-                    "[" + StringUtils.join(binCategories, CalculateStatsUDF.CATEGORY_VAL_SEPARATOR) + "]");
+            stats.setBinCategories(binCategories);
             // recompute such value for categorical variables
             min = Double.MAX_VALUE;
             max = Double.MIN_VALUE;
@@ -332,11 +436,11 @@ public class UpdateBinningInfoReducer extends Reducer<IntWritable, BinningInfoWr
             }
         } else {
             if(binBoundaryList.size() == 0) {
-                LOG.warn("Column {} {} with invalid bin boundary size.", key.get(), columnConfig.getColumnName(),
+                LOG.warn("Column {} {} with invalid bin boundary size.", columnNum, columnConfig.getColumnName(),
                         binBoundaryList.size());
-                return;
+                return null;
             }
-            binBounString = binBoundaryList.toString();
+            stats.setBinBoundaries(binBoundaryList);
         }
 
         ColumnMetrics columnCountMetrics = null;
@@ -357,79 +461,208 @@ public class UpdateBinningInfoReducer extends Reducer<IntWritable, BinningInfoWr
         double kurtosis = ColumnStatsCalculator.computeKurtosis(realCount, mean, aStdDev, sum, squaredSum, tripleSum,
                 quarticSum);
 
-        sb.append(key.get())
+        stats.setColumnNum(columnNum);
+        stats.setColumnType(columnConfig.getColumnType().toString());
+        stats.setBinCountNeg(binCountNeg);
+        stats.setBinCountPos(binCountPos);
+        stats.setBinPosRate(binPosRate);
+        stats.setBinWeightNeg(binWeightNeg);
+        stats.setBinWeightPos(binWeightPos);
+        stats.setHasMetrics(columnCountMetrics != null);
+        if(columnCountMetrics != null) {
+            stats.setKs(columnCountMetrics.getKs());
+            stats.setIv(columnCountMetrics.getIv());
+            stats.setWoe(columnCountMetrics.getWoe());
+            stats.setBinCountWoe(columnCountMetrics.getBinningWoe());
+            stats.setWeightedKs(columnWeightMetrics.getKs());
+            stats.setWeightedIv(columnWeightMetrics.getIv());
+            stats.setWeightedWoe(columnWeightMetrics.getWoe());
+            stats.setBinWeightedWoe(columnWeightMetrics.getBinningWoe());
+        } else {
+            List<Double> zeroWoes = new ArrayList<Double>(Collections.nCopies(binSize + 1, 0d));
+            stats.setBinCountWoe(zeroWoes);
+            stats.setBinWeightedWoe(zeroWoes);
+        }
+        stats.setMax(max);
+        stats.setMin(min);
+        stats.setMean(mean);
+        stats.setStdDev(stdDev);
+        stats.setMedian(median);
+        stats.setP25th(p25th);
+        stats.setP75th(p75th);
+        stats.setSkewness(skewness);
+        stats.setKurtosis(kurtosis);
+        stats.setMissingCount(missingCount);
+        stats.setCount(count);
+        stats.setTotalCount(merged.totalCount);
+        stats.setInvalidCount(merged.invalidCount);
+        stats.setValidNumCount(merged.validNumCount);
+        stats.setCardinality(merged.hyperLogLogPlus.cardinality());
+        stats.setFrequentItems(limitedFrequentItems(merged.fis));
+
+        String line = toStatsLine(stats);
+        LOG.debug("Time:{}", (System.currentTimeMillis() - start));
+        return new ColumnStats(stats, line);
+    }
+
+    /**
+     * Text stats line of one column, fields are separated by {@link Constants#DEFAULT_DELIMITER}.
+     */
+    private static String toStatsLine(ColumnStatsWritable stats) {
+        DecimalFormat df = DF.get();
+        String binBounString = null;
+        if(stats.getBinBoundaries() != null && stats.getBinCategories() != null) {
+            binBounString = stats.getBinBoundaries().toString() + Constants.HYBRID_BIN_STR_DILIMETER
+                    + encodeCategories(stats.getBinCategories());
+        } else if(stats.getBinCategories() != null) {
+            binBounString = encodeCategories(stats.getBinCategories());
+        } else {
+            binBounString = stats.getBinBoundaries().toString();
+        }
+        boolean hasMetrics = stats.isHasMetrics();
+        long count = stats.getCount();
+
+        StringBuilder sb = new StringBuilder(2000);
+        sb.append(stats.getColumnNum())
                 // column id
                 .append(Constants.DEFAULT_DELIMITER).append(binBounString)
                 // column bins
-                .append(Constants.DEFAULT_DELIMITER).append(Arrays.toString(binCountNeg))
+                .append(Constants.DEFAULT_DELIMITER).append(Arrays.toString(stats.getBinCountNeg()))
                 // bin count negative
-                .append(Constants.DEFAULT_DELIMITER).append(Arrays.toString(binCountPos))
+                .append(Constants.DEFAULT_DELIMITER).append(Arrays.toString(stats.getBinCountPos()))
                 // bin count positive
                 .append(Constants.DEFAULT_DELIMITER).append(Arrays.toString(new double[0]))
                 // deprecated
-                .append(Constants.DEFAULT_DELIMITER).append(Arrays.toString(binPosRate))
+                .append(Constants.DEFAULT_DELIMITER).append(Arrays.toString(stats.getBinPosRate()))
                 // bin positive rate
-                .append(Constants.DEFAULT_DELIMITER)
-                .append(columnCountMetrics == null ? "" : df.format(columnCountMetrics.getKs()))
+                .append(Constants.DEFAULT_DELIMITER).append(hasMetrics ? df.format(stats.getKs()) : "")
                 // KS
-                .append(Constants.DEFAULT_DELIMITER)
-                .append(columnCountMetrics == null ? "" : df.format(columnCountMetrics.getIv()))
+                .append(Constants.DEFAULT_DELIMITER).append(hasMetrics ? df.format(stats.getIv()) : "")
                 // IV
-                .append(Constants.DEFAULT_DELIMITER).append(df.format(max))
+                .append(Constants.DEFAULT_DELIMITER).append(df.format(stats.getMax()))
                 // max
-                .append(Constants.DEFAULT_DELIMITER).append(df.format(min))
+                .append(Constants.DEFAULT_DELIMITER).append(df.format(stats.getMin()))
                 // min
-                .append(Constants.DEFAULT_DELIMITER).append(df.format(mean))
+                .append(Constants.DEFAULT_DELIMITER).append(df.format(stats.getMean()))
                 // mean
-                .append(Constants.DEFAULT_DELIMITER).append(df.format(stdDev))
+                .append(Constants.DEFAULT_DELIMITER).append(df.format(stats.getStdDev()))
                 // standard deviation
-                .append(Constants.DEFAULT_DELIMITER).append(columnConfig.getColumnType().toString())
+                .append(Constants.DEFAULT_DELIMITER).append(stats.getColumnType())
                 // column type
-                .append(Constants.DEFAULT_DELIMITER).append(median)
+                .append(Constants.DEFAULT_DELIMITER).append(stats.getMedian())
                 // median value ?
-                .append(Constants.DEFAULT_DELIMITER).append(missingCount)
+                .append(Constants.DEFAULT_DELIMITER).append(stats.getMissingCount())
                 // missing count
                 .append(Constants.DEFAULT_DELIMITER).append(count)
                 // count
-                .append(Constants.DEFAULT_DELIMITER).append(missingCount * 1.0d / count)
+                .append(Constants.DEFAULT_DELIMITER).append(stats.getMissingCount() * 1.0d / count)
                 // missing ratio
-                .append(Constants.DEFAULT_DELIMITER).append(Arrays.toString(binWeightNeg))
+                .append(Constants.DEFAULT_DELIMITER).append(Arrays.toString(stats.getBinWeightNeg()))
                 // bin weighted negative
-                .append(Constants.DEFAULT_DELIMITER).append(Arrays.toString(binWeightPos))
+                .append(Constants.DEFAULT_DELIMITER).append(Arrays.toString(stats.getBinWeightPos()))
                 // bin weighted positive
-                .append(Constants.DEFAULT_DELIMITER)
-                .append(columnCountMetrics == null ? "" : columnCountMetrics.getWoe())
+                .append(Constants.DEFAULT_DELIMITER).append(hasMetrics ? String.valueOf(stats.getWoe()) : "")
                 // WOE
-                .append(Constants.DEFAULT_DELIMITER)
-                .append(columnWeightMetrics == null ? "" : columnWeightMetrics.getWoe())
+                .append(Constants.DEFAULT_DELIMITER).append(hasMetrics ? String.valueOf(stats.getWeightedWoe()) : "")
                 // weighted WOE
-                .append(Constants.DEFAULT_DELIMITER)
-                .append(columnWeightMetrics == null ? "" : columnWeightMetrics.getKs())
+                .append(Constants.DEFAULT_DELIMITER).append(hasMetrics ? String.valueOf(stats.getWeightedKs()) : "")
                 // weighted KS
-                .append(Constants.DEFAULT_DELIMITER)
-                .append(columnWeightMetrics == null ? "" : columnWeightMetrics.getIv())
+                .append(Constants.DEFAULT_DELIMITER).append(hasMetrics ? String.valueOf(stats.getWeightedIv()) : "")
                 // weighted IV
-                .append(Constants.DEFAULT_DELIMITER)
-                .append(columnCountMetrics == null ? Arrays.toString(new double[binSize + 1])
-                        : columnCountMetrics.getBinningWoe().toString())
+                .append(Constants.DEFAULT_DELIMITER).append(stats.getBinCountWoe().toString())
                 // bin WOE
-                .append(Constants.DEFAULT_DELIMITER)
-                .append(columnWeightMetrics == null ? Arrays.toString(new double[binSize + 1])
-                        : columnWeightMetrics.getBinningWoe().toString()) // bin weighted WOE
-                .append(Constants.DEFAULT_DELIMITER).append(skewness) // skewness
-                .append(Constants.DEFAULT_DELIMITER).append(kurtosis) // kurtosis
-                .append(Constants.DEFAULT_DELIMITER).append(totalCount) // total count
-                .append(Constants.DEFAULT_DELIMITER).append(invalidCount) // invalid count
-                .append(Constants.DEFAULT_DELIMITER).append(validNumCount) // valid num count
-                .append(Constants.DEFAULT_DELIMITER).append(hyperLogLogPlus.cardinality()) // cardinality
-                .append(Constants.DEFAULT_DELIMITER).append(Base64Utils.base64Encode(limitedFrequentItems(fis))) // frequent items
-                .append(Constants.DEFAULT_DELIMITER).append(p25th) // the 25 percentile value
-                .append(Constants.DEFAULT_DELIMITER).append(p75th);
-
-        outputValue.set(sb.toString());
-        context.write(NullWritable.get(), outputValue);
-        sb.delete(0, sb.length());
-        LOG.debug("Time:{}", (System.currentTimeMillis() - start));
+                .append(Constants.DEFAULT_DELIMITER).append(stats.getBinWeightedWoe().toString()) // bin weighted WOE
+                .append(Constants.DEFAULT_DELIMITER).append(stats.getSkewness()) // skewness
+                .append(Constants.DEFAULT_DELIMITER).append(stats.getKurtosis()) // kurtosis
+                .append(Constants.DEFAULT_DELIMITER).append(stats.getTotalCount()) // total count
+                .append(Constants.DEFAULT_DELIMITER).append(stats.getInvalidCount()) // invalid count
+                .append(Constants.DEFAULT_DELIMITER).append(stats.getValidNumCount()) // valid num count
+                .append(Constants.DEFAULT_DELIMITER).append(stats.getCardinality()) // cardinality
+                .append(Constants.DEFAULT_DELIMITER).append(Base64Utils.base64Encode(stats.getFrequentItems())) // frequent items
+                .append(Constants.DEFAULT_DELIMITER).append(stats.getP25th()) // the 25 percentile value
+                .append(Constants.DEFAULT_DELIMITER).append(stats.getP75th());
+        return sb.toString();
+    }
+
+    private static String encodeCategories(List<String> binCategories) {
+        return Base64Utils
+                .base64Encode("[" + StringUtils.join(binCategories, CalculateStatsUDF.CATEGORY_VAL_SEPARATOR) + "]");
+    }
+
+    /**
+     * Read all column statistics from one binary stats side file.
+     * 
+     * @param input
+     *            the input stream of binary stats file, not closed in this method
+     * @return column statistics, or null if file is not complete or in unknown version
+     * @throws IOException
+     *             any io exception
+     */
+    public static List<ColumnStatsWritable> readBinaryStats(DataInputStream input) throws IOException {
+        if(input.readInt() != BINARY_STATS_VERSION) {
+            return null;
+        }
+        List<ColumnStatsWritable> statsList = new ArrayList<ColumnStatsWritable>();
+        try {
+            while(input.readBoolean()) {
+                ColumnStatsWritable stats = new ColumnStatsWritable();
+                stats.readFields(input);
+                statsList.add(stats);
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+        return statsList;
+    }
+
+    /**
+     * Merged statistics of one column from all mappers.
+     */
+    private static class MergedBinningInfo {
+        final int columnNum;
+        double sum = 0d;
+        double squaredSum = 0d;
+        double tripleSum = 0d;
+        double quarticSum = 0d;
+        long count = 0L, missingCount = 0L;
+        double min = Double.MAX_VALUE, max = Double.MIN_VALUE;
+        List<Double> binBoundaryList = null;
+        List<String> binCategories = null;
+        long[] binCountPos = null;
+        long[] binCountNeg = null;
+        double[] binWeightPos = null;
+        double[] binWeightNeg = null;
+        long[] binCountTotal = null;
+        HyperLogLogPlus hyperLogLogPlus = null;
+        Set<String> fis = new HashSet<String>();
+        long totalCount = 0, invalidCount = 0, validNumCount = 0;
+        int binSize = 0;
+
+        MergedBinningInfo(int columnNum) {
+            this.columnNum = columnNum;
+        }
+
+        void initBins(int binSize) {
+            this.binSize = binSize;
+            this.binCountPos = new long[binSize + 1];
+            this.binCountNeg = new long[binSize + 1];
+            this.binWeightPos = new double[binSize + 1];
+            this.binWeightNeg = new double[binSize + 1];
+            this.binCountTotal = new long[binSize + 1];
+        }
+    }
+
+    /**
+     * Final statistics of one column with its text line.
+     */
+    private static class ColumnStats {
+        final ColumnStatsWritable stats;
+        final String line;
+
+        ColumnStats(ColumnStatsWritable stats, String line) {
+            this.stats = stats;
+            this.line = line;
+        }
     }
 
     private static String limitedFrequentItems(Set<String> fis) {
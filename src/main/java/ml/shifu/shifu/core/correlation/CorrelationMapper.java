@@ -23,7 +23,6 @@ import java.util.Map;
 import java.util.Set;
 
 import ml.shifu.guagua.util.MemoryUtils;
-import ml.shifu.guagua.util.NumberFormatUtils;
 import ml.shifu.shifu.container.obj.ColumnConfig;
 import ml.shifu.shifu.container.obj.ColumnConfig.ColumnFlag;
 import ml.shifu.shifu.container.obj.ModelConfig;
@@ -31,6 +30,7 @@ import ml.shifu.shifu.container.obj.RawSourceData.SourceType;
 import ml.shifu.shifu.core.DataPurifier;
 import ml.shifu.shifu.util.CommonUtils;
 import ml.shifu.shifu.util.Constants;
+import ml.shifu.shifu.util.DelimitedRecord;
 
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
@@ -52,9 +52,9 @@ public class CorrelationMapper extends Mapper<LongWritable, Text, IntWritable, C
     private final static Logger LOG = LoggerFactory.getLogger(CorrelationMapper.class);
 
     /**
-     * Default splitter used to split input record. Use one instance to prevent more news in Splitter.on.
+     * Reusable record view to index fields of input record without creating String for each field.
      */
-    private String dataSetDelimiter;
+    private DelimitedRecord record;
 
     /**
      * Model Config read from HDFS, be static to shared in multiple mappers
@@ -117,7 +117,7 @@ public class CorrelationMapper extends Mapper<LongWritable, Text, IntWritable, C
     protected void setup(Context context) throws IOException, InterruptedException {
         loadConfigFiles(context);
 
-        this.dataSetDelimiter = modelConfig.getDataSetDelimiter();
+        this.record = new DelimitedRecord(modelConfig.getDataSetDelimiter());
 
         this.dataPurifier = new DataPurifier(modelConfig, false);
 
@@ -176,7 +176,7 @@ public class CorrelationMapper extends Mapper<LongWritable, Text, IntWritable, C
 
         context.getCounter(Constants.SHIFU_GROUP_COUNTER, "CORRELATION_CNT").increment(1L);
 
-        dValues = getDoubleArrayByRawArray(CommonUtils.split(valueStr, this.dataSetDelimiter));
+        dValues = getDoubleArrayByRecord(this.record.reset(value));
 
         count += 1L;
         if(count % 2000L == 0) {
@@ -253,7 +253,7 @@ public class CorrelationMapper extends Mapper<LongWritable, Text, IntWritable, C
         }
     }
 
-    private double[] getDoubleArrayByRawArray(String[] units) {
+    private double[] getDoubleArrayByRecord(DelimitedRecord record) {
         double[] dValues = new double[columnConfigList.size()];
         for(int i = 0; i < columnConfigList.size(); i++) {
             ColumnConfig columnConfig = columnConfigList.get(i);
@@ -261,19 +261,21 @@ public class CorrelationMapper extends Mapper<LongWritable, Text, IntWritable, C
                 // only meta columns not in correlation
                 dValues[i] = 0d;
             } else if(columnConfig.getColumnFlag() == ColumnFlag.Target) {
-                if(this.tagSet.contains(units[i])) {
+                String tag = record.getString(i);
+                if(this.tagSet.contains(tag)) {
                     if(modelConfig.isRegression()) {
-                        if(this.posTagSet.contains(units[i])) {
+                        if(this.posTagSet.contains(tag)) {
                             dValues[i] = 1d;
                         }
-                        if(this.negTagSet.contains(units[i])) {
+                        if(this.negTagSet.contains(tag)) {
                             dValues[i] = 0d;
                         }
                     } else {
                         int index = -1;
+                        String firstValue = record.getString(0);
                         for(int j = 0; j < tags.size(); j++) {
                             Set<String> tagSet = tags.get(j);
-                            if(tagSet.contains(units[0])) {
+                            if(tagSet.contains(firstValue)) {
                                 index = j;
                                 break;
                             }
@@ -286,13 +288,8 @@ public class CorrelationMapper extends Mapper<LongWritable, Text, IntWritable, C
                 }
             } else {
                 if(columnConfig.isNumerical()) {
-                    // if missing it is set to MIN_VALUE, then try to skip rows with invalid value
-                    if(units[i] == null || units[i].length() == 0) {
-                        // some null values, set it to min value to avoid parsing String to improve performance
-                        dValues[i] = Double.MIN_VALUE;
-                    } else {
-                        dValues[i] = NumberFormatUtils.getDouble(units[i], Double.MIN_VALUE);
-                    }
+                    // if missing it is set to MIN_VALUE, then try to skip rows with invalid value, parsed from bytes
+                    dValues[i] = record.getDouble(i, Double.MIN_VALUE);
                 }
                 if(columnConfig.isCategorical()) {
                     if(columnConfig.getBinCategory() == null) {
@@ -304,10 +301,7 @@ public class CorrelationMapper extends Mapper<LongWritable, Text, IntWritable, C
                         dValues[i] = 0d;
                         continue;
                     }
-                    Integer index = null;
-                    if(units[i] != null) {
-                        index = this.categoricalIndexMap.get(columnConfig.getColumnNum()).get(units[i]);
-                    }
+                    Integer index = this.categoricalIndexMap.get(columnConfig.getColumnNum()).get(record.getString(i));
                     if(index == null || index == -1) {
                         dValues[i] = columnConfig.getBinPosRate().get(columnConfig.getBinPosRate().size() - 1);
                     } else {
@@ -30,7 +30,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ml.shifu.guagua.util.MemoryUtils;
-import ml.shifu.guagua.util.NumberFormatUtils;
 import ml.shifu.shifu.container.obj.ColumnConfig;
 import ml.shifu.shifu.container.obj.ColumnConfig.ColumnFlag;
 import ml.shifu.shifu.container.obj.ModelConfig;
@@ -38,6 +37,7 @@ import ml.shifu.shifu.container.obj.RawSourceData.SourceType;
 import ml.shifu.shifu.core.DataPurifier;
 import ml.shifu.shifu.util.CommonUtils;
 import ml.shifu.shifu.util.Constants;
+import ml.shifu.shifu.util.DelimitedRecord;
 
 /**
  * {@link FastCorrelationMapper} is used to compute {@link CorrelationWritable} per column per mapper.
@@ -52,9 +52,9 @@ public class FastCorrelationMapper extends Mapper<LongWritable, Text, IntWritabl
     private final static Logger LOG = LoggerFactory.getLogger(FastCorrelationMapper.class);
 
     /**
-     * Default splitter used to split input record. Use one instance to prevent more news in Splitter.on.
+     * Reusable record view to index fields of input record without creating String for each field.
      */
-    private String dataSetDelimiter;
+    private DelimitedRecord record;
 
     /**
      * Model Config read from HDFS, be static to shared in multiple mappers
@@ -127,7 +127,7 @@ public class FastCorrelationMapper extends Mapper<LongWritable, Text, IntWritabl
     protected void setup(Context context) throws IOException, InterruptedException {
         loadConfigFiles(context);
 
-        this.dataSetDelimiter = modelConfig.getDataSetDelimiter();
+        this.record = new DelimitedRecord(modelConfig.getDataSetDelimiter());
 
         this.dataPurifier = new DataPurifier(modelConfig, false);
 
@@ -189,7 +189,7 @@ public class FastCorrelationMapper extends Mapper<LongWritable, Text, IntWritabl
 
         context.getCounter(Constants.SHIFU_GROUP_COUNTER, "CORRELATION_CNT").increment(1L);
 
-        dValues = getDoubleArrayByRawArray(CommonUtils.split(valueStr, this.dataSetDelimiter));
+        dValues = getDoubleArrayByRecord(this.record.reset(value));
 
         count += 1L;
         if(count % 2000L == 0) {
@@ -277,7 +277,7 @@ public class FastCorrelationMapper extends Mapper<LongWritable, Text, IntWritabl
                 Thread.currentThread().getName());
     }
 
-    private double[] getDoubleArrayByRawArray(String[] units) {
+    private double[] getDoubleArrayByRecord(DelimitedRecord record) {
         double[] dValues = new double[columnConfigList.size()];
         for(int i = 0; i < columnConfigList.size(); i++) {
             ColumnConfig columnConfig = columnConfigList.get(i);
@@ -285,19 +285,21 @@ public class FastCorrelationMapper extends Mapper<LongWritable, Text, IntWritabl
                 // only meta columns not in correlation
                 dValues[i] = 0d;
             } else if(columnConfig.getColumnFlag() == ColumnFlag.Target) {
-                if(this.tagSet.contains(units[i])) {
+                String tag = record.getString(i);
+                if(this.tagSet.contains(tag)) {
                     if(modelConfig.isRegression()) {
-                        if(this.posTagSet.contains(units[i])) {
+                        if(this.posTagSet.contains(tag)) {
                             dValues[i] = 1d;
                         }
-                        if(this.negTagSet.contains(units[i])) {
+                        if(this.negTagSet.contains(tag)) {
                             dValues[i] = 0d;
                         }
                     } else {
                         int index = -1;
+                        String firstValue = record.getString(0);
                         for(int j = 0; j < tags.size(); j++) {
                             Set<String> tagSet = tags.get(j);
-                            if(tagSet.contains(units[0])) {
+                            if(tagSet.contains(firstValue)) {
                                 index = j;
                                 break;
                             }
@@ -310,13 +312,8 @@ public class FastCorrelationMapper extends Mapper<LongWritable, Text, IntWritabl
                 }
             } else {
                 if(columnConfig.isNumerical()) {
-                    // if missing it is set to MIN_VALUE, then try to skip rows with invalid value
-                    if(units[i] == null || units[i].length() == 0) {
-                        // some null values, set it to min value to avoid parsing String to improve performance
-                        dValues[i] = Double.MIN_VALUE;
-                    } else {
-                        dValues[i] = NumberFormatUtils.getDouble(units[i], Double.MIN_VALUE);
-                    }
+                    // if missing it is set to MIN_VALUE, then try to skip rows with invalid value, parsed from bytes
+                    dValues[i] = record.getDouble(i, Double.MIN_VALUE);
                 }
                 if(columnConfig.isCategorical()) {
                     if(columnConfig.getBinCategory() == null) {
@@ -328,10 +325,7 @@ public class FastCorrelationMapper extends Mapper<LongWritable, Text, IntWritabl
                         dValues[i] = 0d;
                         continue;
                     }
-                    Integer index = null;
-                    if(units[i] != null) {
-                        index = this.categoricalIndexMap.get(columnConfig.getColumnNum()).get(units[i]);
-                    }
+                    Integer index = this.categoricalIndexMap.get(columnConfig.getColumnNum()).get(record.getString(i));
                     if(index == null || index == -1) {
                         dValues[i] = columnConfig.getBinPosRate().get(columnConfig.getBinPosRate().size() - 1);
                     } else {
@@ -44,6 +44,12 @@ public interface CommonConstants {
 
     public static final String SHIFU_DRY_DTRAIN = "shifu.dry.dtrain";
 
+    /**
+     * If 'true' workers measure serialized size of each result for training profile, off by default as it serializes
+     * each result one more time.
+     */
+    public static final String SHIFU_PROFILE_RESULT_BYTES = "shifu.profile.result.bytes";
+
     public static final String SHIFU_TRAINER_ID = "shifu.trainer.id";
 
     public static final String SHIFU_DTRAIN_PROGRESS_FILE = "shifu.progress.file";
@@ -63,6 +69,8 @@ public interface CommonConstants {
 
     public static final String SHIFU_UPDATEBINNING_REDUCER = "shifu.updatebinning.reducer";
 
+    public static final String SHIFU_UPDATEBINNING_REDUCER_THREADS = "shifu.updatebinning.reducer.threads";
+
     public static final String SHIFU_NN_FEATURE_SUBSET = "shifu.nn.feature.subset";
 
     public static final String SHIFU_TREE_CHECKPOINT_INTERVAL = "shifu.tree.checkpoint.interval";
@@ -106,6 +114,13 @@ public interface CommonConstants {
     
     public static final String NUM_EMBED_OUTPUTS = "NumEmbedOuputs";
 
+    public static final String WDL_FULL_WEIGHTS_INTERVAL = "WDLFullWeightsInterval";
+
+    /**
+     * Local top features voted by each worker for each node in tree models, voting takes one more iteration per split.
+     */
+    public static final String DT_VOTING_TOP_K = "VotingTopK";
+
     /* --------------   Train Param Constants  ---------------------- */
     public static final String REGULARIZED_CONSTANT = "RegularizedConstant";
 
@@ -0,0 +1,238 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import ml.shifu.guagua.io.Bytable;
+
+import org.apache.commons.io.output.NullOutputStream;
+
+/**
+ * {@link IterationProfile} is the phase profile of one training iteration. Workers fill worker phases into their
+ * results, master merges profiles of all worker results, fills master phases and sends the profile back in master
+ * result, where {@link IterationProfileOutput} collects it into the training timeline.
+ *
+ * <p>
+ * Times are in nanoseconds and sizes are in bytes. For each phase both max and sum over merged workers are kept: max
+ * is from the slowest worker which decides the iteration time and sum / {@link #getWorkers()} is the average.
+ */
+public class IterationProfile implements Bytable {
+
+    /**
+     * Profiled phases of one iteration.
+     */
+    public static enum Phase {
+        /**
+         * Worker computing gradients or node stats over training records, including scanning them.
+         */
+        WORKER_COMPUTE,
+        /**
+         * Worker scanning validation records for validation error.
+         */
+        WORKER_SCAN,
+        /**
+         * Worker waiting from sending last result to getting current master result.
+         */
+        WORKER_WAIT,
+        /**
+         * Serialized size of worker result, only measured if {@link CommonConstants#SHIFU_PROFILE_RESULT_BYTES} is
+         * enabled, else 0.
+         */
+        RESULT_BYTES,
+        /**
+         * Master merging all worker results.
+         */
+        MASTER_MERGE,
+        /**
+         * Master updating model by merged results.
+         */
+        MASTER_COMPUTE,
+        /**
+         * Master waiting from sending last master result to getting all worker results.
+         */
+        MASTER_WAIT;
+
+        public boolean isTime() {
+            return this != RESULT_BYTES;
+        }
+
+        public boolean isMaster() {
+            return this == MASTER_MERGE || this == MASTER_COMPUTE || this == MASTER_WAIT;
+        }
+    }
+
+    private static final int PHASES = Phase.values().length;
+
+    private long[] maxValues = new long[PHASES];
+
+    private long[] sumValues = new long[PHASES];
+
+    /**
+     * Number of worker profiles merged, 1 for profile of one worker result.
+     */
+    private int workers;
+
+    public IterationProfile() {
+    }
+
+    /**
+     * @param workers
+     *            1 in worker, 0 in master before merging worker profiles
+     */
+    public IterationProfile(int workers) {
+        this.workers = workers;
+    }
+
+    public void set(Phase phase, long value) {
+        this.maxValues[phase.ordinal()] = value;
+        this.sumValues[phase.ordinal()] = value;
+    }
+
+    /**
+     * Add value to phase before merging, for phase measured multiple times in one iteration.
+     */
+    public void add(Phase phase, long value) {
+        this.maxValues[phase.ordinal()] += value;
+        this.sumValues[phase.ordinal()] += value;
+    }
+
+    /**
+     * Set phase time from start to now.
+     *
+     * @param phase
+     *            the time phase
+     * @param startNanos
+     *            start time by {@link System#nanoTime()}
+     * @return now by {@link System#nanoTime()} which can be start of next phase
+     */
+    public long elapsed(Phase phase, long startNanos) {
+        long now = System.nanoTime();
+        set(phase, now - startNanos);
+        return now;
+    }
+
+    /**
+     * Merge worker profile, null profile from old worker result is ignored.
+     *
+     * @param that
+     *            the other profile
+     * @return this profile
+     */
+    public IterationProfile merge(IterationProfile that) {
+        if(that == null) {
+            return this;
+        }
+        for(int i = 0; i < PHASES; i++) {
+            this.maxValues[i] = Math.max(this.maxValues[i], that.maxValues[i]);
+            this.sumValues[i] += that.sumValues[i];
+        }
+        this.workers += that.workers;
+        return this;
+    }
+
+    public long getMax(Phase phase) {
+        return this.maxValues[phase.ordinal()];
+    }
+
+    public long getSum(Phase phase) {
+        return this.sumValues[phase.ordinal()];
+    }
+
+    /**
+     * @return average over merged workers for worker phases, master phases are measured once
+     */
+    public long getAverage(Phase phase) {
+        return (this.workers <= 1 || phase.isMaster()) ? getSum(phase) : getSum(phase) / this.workers;
+    }
+
+    public int getWorkers() {
+        return this.workers;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(this.workers);
+        out.writeInt(PHASES);
+        for(int i = 0; i < PHASES; i++) {
+            out.writeLong(this.maxValues[i]);
+            out.writeLong(this.sumValues[i]);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        this.workers = in.readInt();
+        int phases = in.readInt();
+        this.maxValues = new long[PHASES];
+        this.sumValues = new long[PHASES];
+        for(int i = 0; i < phases; i++) {
+            long max = in.readLong();
+            long sum = in.readLong();
+            // phases appended in newer version are ignored
+            if(i < PHASES) {
+                this.maxValues[i] = max;
+                this.sumValues[i] = sum;
+            }
+        }
+    }
+
+    /**
+     * Write optional profile, null is written as a false flag.
+     */
+    public static void write(DataOutput out, IterationProfile profile) throws IOException {
+        if(profile == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            profile.write(out);
+        }
+    }
+
+    /**
+     * Read optional profile written by {@link #write(DataOutput, IterationProfile)}.
+     */
+    public static IterationProfile read(DataInput in) throws IOException {
+        if(!in.readBoolean()) {
+            return null;
+        }
+        IterationProfile profile = new IterationProfile();
+        profile.readFields(in);
+        return profile;
+    }
+
+    /**
+     * Result is serialized one more time to get its size, so it is only called if
+     * {@link CommonConstants#SHIFU_PROFILE_RESULT_BYTES} is enabled.
+     *
+     * @param bytable
+     *            the result to be sent
+     * @return serialized size in bytes
+     */
+    public static long sizeOf(Bytable bytable) {
+        DataOutputStream out = new DataOutputStream(new NullOutputStream());
+        try {
+            bytable.write(out);
+        } catch (IOException e) {
+            return 0L;
+        }
+        return out.size();
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import ml.shifu.guagua.io.Bytable;
+import ml.shifu.guagua.master.BasicMasterInterceptor;
+import ml.shifu.guagua.master.MasterContext;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link IterationProfileOutput} collects {@link IterationProfile} of each master result into an
+ * {@link IterationProfiler} and writes the timeline file into tmp models folder after training, profile counters are
+ * also logged in master.
+ *
+ * <p>
+ * It can be added to master interceptors of any algorithm whose master result is {@link IterationProfiled}.
+ */
+public class IterationProfileOutput<MASTER_RESULT extends Bytable, WORKER_RESULT extends Bytable>
+        extends BasicMasterInterceptor<MASTER_RESULT, WORKER_RESULT> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IterationProfileOutput.class);
+
+    private final IterationProfiler profiler = new IterationProfiler();
+
+    @Override
+    public void postIteration(MasterContext<MASTER_RESULT, WORKER_RESULT> context) {
+        MASTER_RESULT result = context.getMasterResult();
+        if(result instanceof IterationProfiled) {
+            this.profiler.add(context.getCurrentIteration(), ((IterationProfiled) result).getProfile());
+        }
+    }
+
+    @Override
+    public void postApplication(MasterContext<MASTER_RESULT, WORKER_RESULT> context) {
+        if(this.profiler.getIterations() == 0) {
+            return;
+        }
+        for(Entry<String, Long> entry: this.profiler.getCounters().entrySet()) {
+            LOG.info("{}.{}={}", IterationProfiler.COUNTER_GROUP, entry.getKey(), entry.getValue());
+        }
+        LOG.info("Bottleneck phase of training is {}.", this.profiler.getBottleneck());
+
+        boolean isDry = Boolean.TRUE.toString()
+                .equals(context.getProps().getProperty(CommonConstants.SHIFU_DRY_DTRAIN));
+        String tmpModelsFolder = context.getProps().getProperty(CommonConstants.SHIFU_TMP_MODELS_FOLDER);
+        if(isDry || tmpModelsFolder == null) {
+            return;
+        }
+        Path path = getProfilePath(tmpModelsFolder,
+                context.getProps().getProperty(CommonConstants.SHIFU_TRAINER_ID, "0"));
+        try {
+            this.profiler.write(path.getFileSystem(new Configuration()), path);
+            LOG.info("Training profile timeline is written to {}.", path);
+        } catch (IOException e) {
+            LOG.warn("Error in writing training profile timeline to " + path, e);
+        }
+    }
+
+    /**
+     * @param tmpModelsFolder
+     *            the tmp models folder
+     * @param trainerId
+     *            trainer id of bagging job
+     * @return path of timeline file of the trainer
+     */
+    public static Path getProfilePath(String tmpModelsFolder, String trainerId) {
+        return new Path(tmpModelsFolder, "model" + trainerId + IterationProfiler.PROFILE_FILE_SUFFIX);
+    }
+
+    /**
+     * Read counters of trainer from timeline file, used by client to show them after training.
+     */
+    public static Map<String, Long> readCounters(Configuration conf, String tmpModelsFolder, String trainerId)
+            throws IOException {
+        Path path = getProfilePath(tmpModelsFolder, trainerId);
+        return IterationProfiler.readCounters(path.getFileSystem(conf), path);
+    }
+
+}
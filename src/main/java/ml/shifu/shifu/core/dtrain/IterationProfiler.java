@@ -0,0 +1,223 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import ml.shifu.shifu.core.dtrain.IterationProfile.Phase;
+import ml.shifu.shifu.util.Constants;
+import ml.shifu.shifu.util.JSONUtils;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+
+/**
+ * {@link IterationProfiler} collects {@link IterationProfile}s of all iterations in one training job into a timeline,
+ * per phase histograms and counters.
+ *
+ * <p>
+ * Counters are in group {@link #COUNTER_GROUP}: for each time phase, total and max of iteration in milliseconds; for
+ * result size, total and max of iteration in bytes. Worker phases use the slowest worker of each iteration. Timeline
+ * file is a JSON object with 'counters', 'bottleneck', 'histograms' and 'iterations', histograms are log2 buckets of
+ * milliseconds for time phases and of KB for result size.
+ */
+public class IterationProfiler {
+
+    public static final String COUNTER_GROUP = "ShifuTrainProfile";
+
+    /**
+     * Suffix of timeline file, it is written to tmp models folder with the same name of model.
+     */
+    public static final String PROFILE_FILE_SUFFIX = ".profile.json";
+
+    private static final int BUCKETS = 32;
+
+    private final List<Map<String, Object>> timeline = new ArrayList<Map<String, Object>>();
+
+    private final long[][] histograms = new long[Phase.values().length][BUCKETS];
+
+    private final long[] totals = new long[Phase.values().length];
+
+    private final long[] maxs = new long[Phase.values().length];
+
+    private int iterations;
+
+    /**
+     * @param iteration
+     *            the iteration of profile
+     * @param profile
+     *            profile from master result, null is ignored
+     */
+    public void add(int iteration, IterationProfile profile) {
+        if(profile == null) {
+            return;
+        }
+        Map<String, Object> record = new LinkedHashMap<String, Object>();
+        record.put("iteration", iteration);
+        record.put("workers", profile.getWorkers());
+        for(Phase phase: Phase.values()) {
+            long max = toUnit(phase, profile.getMax(phase));
+            Map<String, Object> values = new LinkedHashMap<String, Object>();
+            values.put("max", max);
+            values.put("avg", toUnit(phase, profile.getAverage(phase)));
+            record.put(phase.name(), values);
+
+            this.totals[phase.ordinal()] += max;
+            this.maxs[phase.ordinal()] = Math.max(this.maxs[phase.ordinal()], max);
+            this.histograms[phase.ordinal()][bucket(phase.isTime() ? max : max / 1024)] += 1;
+        }
+        this.timeline.add(record);
+        this.iterations += 1;
+    }
+
+    private static long toUnit(Phase phase, long value) {
+        return phase.isTime() ? TimeUnit.NANOSECONDS.toMillis(value) : value;
+    }
+
+    /**
+     * Bucket 0 is for 0, bucket i is for [2^(i-1), 2^i).
+     */
+    private static int bucket(long value) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0L, value)));
+    }
+
+    public int getIterations() {
+        return this.iterations;
+    }
+
+    /**
+     * @return counters in {@link #COUNTER_GROUP}
+     */
+    public Map<String, Long> getCounters() {
+        Map<String, Long> counters = new LinkedHashMap<String, Long>();
+        counters.put("ITERATIONS", (long) this.iterations);
+        for(Phase phase: Phase.values()) {
+            String unit = phase.isTime() ? "_MS" : "";
+            counters.put(phase.name() + unit, this.totals[phase.ordinal()]);
+            counters.put(phase.name() + "_MAX" + unit, this.maxs[phase.ordinal()]);
+        }
+        return counters;
+    }
+
+    /**
+     * @return the compute or merge phase with max total time, wait phases are excluded as they are caused by others
+     */
+    public Phase getBottleneck() {
+        Phase bottleneck = Phase.WORKER_COMPUTE;
+        for(Phase phase: Phase.values()) {
+            if(phase.isTime() && phase != Phase.WORKER_WAIT && phase != Phase.MASTER_WAIT
+                    && this.totals[phase.ordinal()] > this.totals[bottleneck.ordinal()]) {
+                bottleneck = phase;
+            }
+        }
+        return bottleneck;
+    }
+
+    private Map<String, Object> getHistograms() {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        for(Phase phase: Phase.values()) {
+            long[] histogram = this.histograms[phase.ordinal()];
+            int last = BUCKETS - 1;
+            while(last > 0 && histogram[last] == 0L) {
+                last--;
+            }
+            List<Long> upperBounds = new ArrayList<Long>(last + 1);
+            List<Long> counts = new ArrayList<Long>(last + 1);
+            for(int i = 0; i <= last; i++) {
+                upperBounds.add(1L << i);
+                counts.add(histogram[i]);
+            }
+            Map<String, Object> values = new LinkedHashMap<String, Object>();
+            values.put("unit", phase.isTime() ? "ms" : "KB");
+            values.put("upperBounds", upperBounds);
+            values.put("counts", counts);
+            result.put(phase.name(), values);
+        }
+        return result;
+    }
+
+    /**
+     * Write timeline JSON file, existing file is overwritten.
+     *
+     * @param fs
+     *            the file system
+     * @param path
+     *            the timeline file path
+     * @throws IOException
+     *             any exception in writing file
+     */
+    public void write(FileSystem fs, Path path) throws IOException {
+        Map<String, Object> profile = new LinkedHashMap<String, Object>();
+        profile.put("counterGroup", COUNTER_GROUP);
+        profile.put("counters", getCounters());
+        profile.put("bottleneck", getBottleneck().name());
+        profile.put("histograms", getHistograms());
+        profile.put("iterations", this.timeline);
+
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(fs.create(path, true), Constants.DEFAULT_CHARSET);
+            JSONUtils.writeValue(writer, profile);
+        } finally {
+            IOUtils.closeStream(writer);
+        }
+    }
+
+    /**
+     * Read counters from timeline file written by {@link #write(FileSystem, Path)}.
+     *
+     * @param fs
+     *            the file system
+     * @param path
+     *            the timeline file path
+     * @return counters in {@link #COUNTER_GROUP}, or empty map if file not exists
+     * @throws IOException
+     *             any exception in reading file
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Long> readCounters(FileSystem fs, Path path) throws IOException {
+        Map<String, Long> counters = new LinkedHashMap<String, Long>();
+        if(!fs.exists(path)) {
+            return counters;
+        }
+        InputStream input = null;
+        try {
+            input = fs.open(path);
+            Map<String, Object> profile = JSONUtils.readValue(input, Map.class);
+            Map<String, Object> values = (Map<String, Object>) profile.get("counters");
+            if(values != null) {
+                for(Entry<String, Object> entry: values.entrySet()) {
+                    counters.put(entry.getKey(), ((Number) entry.getValue()).longValue());
+                }
+            }
+            counters.put("BOTTLENECK_" + profile.get("bottleneck"), 1L);
+        } finally {
+            IOUtils.closeStream(input);
+        }
+        return counters;
+    }
+
+}
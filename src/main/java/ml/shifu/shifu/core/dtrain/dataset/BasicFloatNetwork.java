@@ -20,8 +20,10 @@ import java.util.Set;
 
 import ml.shifu.shifu.util.ClassUtils;
 
+import org.encog.engine.network.activation.ActivationFunction;
 import org.encog.ml.data.MLData;
 import org.encog.neural.NeuralNetworkError;
+import org.encog.neural.flat.FlatNetwork;
 import org.encog.neural.networks.BasicNetwork;
 
 /**
@@ -33,6 +35,12 @@ public class BasicFloatNetwork extends BasicNetwork {
 
     private Set<Integer> featureSet;
 
+    /**
+     * Rows computed together in {@link #compute(double[][], double[])}, layer outputs of such rows are small enough to
+     * stay in cache while each weight row is applied to all of them.
+     */
+    private static final int BATCH_BLOCK_SIZE = 64;
+
     public BasicFloatNetwork() {
         Field field = ClassUtils.getDeclaredFieldIncludeSuper("structure", getClass());
         field.setAccessible(true);
@@ -86,4 +94,96 @@ public class BasicFloatNetwork extends BasicNetwork {
         return results;
     }
 
+    /**
+     * Batch version of {@link #compute(MLData)}. Rows are computed block by block, in each layer one weight row is
+     * applied to all rows of the block before moving to next weight row (matrix-matrix instead of matrix-vector
+     * computing). Per each row, the order of sum is the same as {@link FlatNetwork#compute(double[], double[])}, so
+     * outputs are the same as computing rows one by one.
+     * 
+     * <p>
+     * Layer output buffers are allocated per call, so this method can be called by multiple threads.
+     * 
+     * @param inputs
+     *            input rows, each row should have {@link #getInputCount()} values
+     * @param outputs
+     *            row-major output array, outputs of row i are in [i * outputCount, (i + 1) * outputCount)
+     */
+    public void compute(double[][] inputs, double[] outputs) {
+        super.getStructure().requireFlat();
+        final FlatNetwork flat = super.getStructure().getFlat();
+        final int outputCount = flat.getOutputCount();
+        if(hasContext(flat)) {
+            // recurrent network, rows cannot be computed independently
+            double[] output = new double[outputCount];
+            for(int i = 0; i < inputs.length; i++) {
+                flat.compute(inputs[i], output);
+                System.arraycopy(output, 0, outputs, i * outputCount, outputCount);
+            }
+            return;
+        }
+
+        // layer output template includes bias neuron values, bias values are not changed in computing
+        final double[] template = flat.getLayerOutput();
+        final int sourceIndex = template.length - flat.getLayerCounts()[flat.getLayerCounts().length - 1];
+        final double[][] layerOutputs = new double[Math.min(BATCH_BLOCK_SIZE, inputs.length)][];
+        for(int i = 0; i < layerOutputs.length; i++) {
+            layerOutputs[i] = template.clone();
+        }
+
+        for(int start = 0; start < inputs.length; start += BATCH_BLOCK_SIZE) {
+            int size = Math.min(BATCH_BLOCK_SIZE, inputs.length - start);
+            for(int i = 0; i < size; i++) {
+                System.arraycopy(inputs[start + i], 0, layerOutputs[i], sourceIndex, flat.getInputCount());
+            }
+
+            for(int layer = flat.getLayerIndex().length - 1; layer > 0; layer--) {
+                computeLayer(flat, layer, layerOutputs, size);
+            }
+
+            for(int i = 0; i < size; i++) {
+                System.arraycopy(layerOutputs[i], 0, outputs, (start + i) * outputCount, outputCount);
+            }
+        }
+    }
+
+    private static boolean hasContext(FlatNetwork flat) {
+        for(int size: flat.getContextTargetSize()) {
+            if(size > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void computeLayer(FlatNetwork flat, int currentLayer, double[][] layerOutputs, int size) {
+        final int inputIndex = flat.getLayerIndex()[currentLayer];
+        final int outputIndex = flat.getLayerIndex()[currentLayer - 1];
+        final int inputSize = flat.getLayerCounts()[currentLayer];
+        final int outputSize = flat.getLayerFeedCounts()[currentLayer - 1];
+        final double[] weights = flat.getWeights();
+
+        int index = flat.getWeightIndex()[currentLayer - 1];
+
+        final int limitX = outputIndex + outputSize;
+        final int limitY = inputIndex + inputSize;
+
+        for(int x = outputIndex; x < limitX; x++) {
+            for(int i = 0; i < size; i++) {
+                final double[] layerOutput = layerOutputs[i];
+                int weightIndex = index;
+                double sum = 0;
+                for(int y = inputIndex; y < limitY; y++) {
+                    sum += weights[weightIndex++] * layerOutput[y];
+                }
+                layerOutput[x] = sum;
+            }
+            index += inputSize;
+        }
+
+        final ActivationFunction activation = flat.getActivationFunctions()[currentLayer - 1];
+        for(int i = 0; i < size; i++) {
+            activation.activationFunction(layerOutputs[i], outputIndex, outputSize);
+        }
+    }
+
 }
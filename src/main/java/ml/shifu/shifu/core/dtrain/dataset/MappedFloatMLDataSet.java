@@ -0,0 +1,336 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.dataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * {@link FloatMLDataSet} backed by memory-mapped file segments.
+ *
+ * <p>
+ * Each record is stored as a fixed-stride float row: input values, ideal values and significance. Rows are appended
+ * into a local file in loading, after {@link #endLoad()}, the file is mapped read-only in segments of whole rows, each
+ * segment is less than 2G bytes. Data is kept in page cache out of java heap, so that much larger data than heap can
+ * be held and accessed with nearly the same speed of in-memory data set if OS memory is enough.
+ *
+ * <p>
+ * {@link #getRecord(long, FloatMLDataPair)} is only an offset computation with absolute reads from mapped buffer,
+ * there is no shared position or lock, so multiple threads like {@link ml.shifu.shifu.core.dtrain.nn.SubGradient} can
+ * read records concurrently.
+ *
+ * <p>
+ * Example:
+ *
+ * <pre>
+ * MappedFloatMLDataSet dataSet = new MappedFloatMLDataSet(new File("a.bin"));
+ * dataSet.beginLoad(10, 1);
+ * dataSet.add(pair);
+ * dataSet.endLoad();
+ * ...
+ * dataSet.close();
+ * </pre>
+ */
+public class MappedFloatMLDataSet implements FloatMLDataSet {
+
+    /**
+     * Error message for ADD.
+     */
+    public static final String ERROR_ADD = "Add can only be used after calling beginLoad.";
+
+    /**
+     * Bytes of write buffer in loading.
+     */
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * The file being used.
+     */
+    private final File file;
+
+    /**
+     * Max bytes of one mapped segment.
+     */
+    private final long maxSegmentBytes;
+
+    /**
+     * Input variable count
+     */
+    private int inputCount;
+
+    /**
+     * Output target count.
+     */
+    private int idealCount;
+
+    /**
+     * Floats of one record: input, ideal and significance.
+     */
+    private int stride;
+
+    /**
+     * How many records in one mapped segment.
+     */
+    private int segmentRecords;
+
+    /**
+     * Record count.
+     */
+    private long recordCount = 0L;
+
+    /**
+     * File to write records in loading, null if not loading.
+     */
+    private RandomAccessFile raf;
+
+    /**
+     * Write buffer in loading.
+     */
+    private ByteBuffer writeBuffer;
+
+    /**
+     * Mapped segments after loading.
+     */
+    private FloatBuffer[] segments;
+
+    /**
+     * Construct the dataset using the specified file.
+     *
+     * @param file
+     *            the file to store records
+     */
+    public MappedFloatMLDataSet(File file) {
+        this(file, Integer.MAX_VALUE);
+    }
+
+    MappedFloatMLDataSet(File file, long maxSegmentBytes) {
+        this.file = file;
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    /**
+     * Begin loading, after calling this method the add methods may be called.
+     *
+     * @param inputSize
+     *            input variable size
+     * @param idealSize
+     *            output target size
+     */
+    public final void beginLoad(final int inputSize, final int idealSize) {
+        this.inputCount = inputSize;
+        this.idealCount = idealSize;
+        this.stride = inputSize + idealSize + 1;
+        this.segmentRecords = (int) Math.max(1L, this.maxSegmentBytes / (this.stride * 4L));
+        this.recordCount = 0L;
+        try {
+            this.raf = new RandomAccessFile(this.file, "rw");
+            this.raf.setLength(0L);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.writeBuffer = ByteBuffer.allocateDirect(Math.max(WRITE_BUFFER_SIZE, this.stride * 4))
+                .order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * This method should be called once all the data has been loaded. The file will be mapped for reading.
+     */
+    public final void endLoad() {
+        if(this.raf == null) {
+            throw new RuntimeException("Must call beginLoad, before endLoad.");
+        }
+        try {
+            flushWriteBuffer();
+            FileChannel channel = this.raf.getChannel();
+            int segmentSize = (int) ((this.recordCount + this.segmentRecords - 1) / this.segmentRecords);
+            this.segments = new FloatBuffer[segmentSize];
+            long segmentBytes = this.segmentRecords * this.stride * 4L;
+            for(int i = 0; i < segmentSize; i++) {
+                long position = i * segmentBytes;
+                long size = Math.min(segmentBytes, channel.size() - position);
+                // mapping is still valid after channel is closed
+                this.segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, size)
+                        .order(ByteOrder.nativeOrder()).asFloatBuffer();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            IOUtils.closeQuietly(this.raf);
+            this.raf = null;
+            this.writeBuffer = null;
+        }
+    }
+
+    private void flushWriteBuffer() throws IOException {
+        this.writeBuffer.flip();
+        FileChannel channel = this.raf.getChannel();
+        while(this.writeBuffer.hasRemaining()) {
+            channel.write(this.writeBuffer);
+        }
+        this.writeBuffer.clear();
+    }
+
+    private void append(float[] input, float[] ideal, float significance) {
+        if(this.raf == null) {
+            throw new RuntimeException(ERROR_ADD);
+        }
+        try {
+            if(this.writeBuffer.remaining() < this.stride * 4) {
+                flushWriteBuffer();
+            }
+            for(int i = 0; i < this.inputCount; i++) {
+                this.writeBuffer.putFloat(input[i]);
+            }
+            for(int i = 0; i < this.idealCount; i++) {
+                this.writeBuffer.putFloat(ideal == null ? 0f : ideal[i]);
+            }
+            this.writeBuffer.putFloat(significance);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.recordCount += 1L;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see ml.shifu.shifu.core.dtrain.dataset.FloatMLDataSet#getRecord(long,
+     * ml.shifu.shifu.core.dtrain.dataset.FloatMLDataPair)
+     */
+    @Override
+    public final void getRecord(long index, FloatMLDataPair pair) {
+        FloatBuffer segment = this.segments[(int) (index / this.segmentRecords)];
+        int offset = (int) (index % this.segmentRecords) * this.stride;
+
+        float[] input = pair.getInputArray();
+        for(int i = 0; i < this.inputCount; i++) {
+            input[i] = segment.get(offset++);
+        }
+        float[] ideal = pair.getIdealArray();
+        if(ideal != null) {
+            for(int i = 0; i < this.idealCount; i++) {
+                ideal[i] = segment.get(offset++);
+            }
+        } else {
+            offset += this.idealCount;
+        }
+        pair.setSignificance(segment.get(offset));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Iterable#iterator()
+     */
+    @Override
+    public Iterator<FloatMLDataPair> iterator() {
+        return new Iterator<FloatMLDataPair>() {
+
+            private long current = 0L;
+
+            @Override
+            public boolean hasNext() {
+                return this.current < MappedFloatMLDataSet.this.recordCount;
+            }
+
+            @Override
+            public FloatMLDataPair next() {
+                if(!hasNext()) {
+                    return null;
+                }
+                FloatMLDataPair pair = BasicFloatMLDataPair.createPair(MappedFloatMLDataSet.this.inputCount,
+                        MappedFloatMLDataSet.this.idealCount);
+                getRecord(this.current++, pair);
+                return pair;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public int getIdealSize() {
+        return this.idealCount;
+    }
+
+    @Override
+    public int getInputSize() {
+        return this.inputCount;
+    }
+
+    @Override
+    public boolean isSupervised() {
+        return this.idealCount > 0;
+    }
+
+    @Override
+    public long getRecordCount() {
+        return this.recordCount;
+    }
+
+    /**
+     * Mapped segments can be read concurrently, so no additional instance is needed.
+     */
+    @Override
+    public FloatMLDataSet openAdditional() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void add(FloatMLData data) {
+        append(data.getData(), null, 1f);
+    }
+
+    @Override
+    public void add(FloatMLData inputData, FloatMLData idealData) {
+        append(inputData.getData(), idealData.getData(), 1f);
+    }
+
+    @Override
+    public void add(FloatMLDataPair inputData) {
+        append(inputData.getInputArray(), inputData.getIdealArray(), inputData.getSignificance());
+    }
+
+    /**
+     * Close data set, mapped segments are released by GC.
+     */
+    @Override
+    public void close() {
+        IOUtils.closeQuietly(this.raf);
+        this.raf = null;
+        this.writeBuffer = null;
+        this.segments = null;
+    }
+
+    /**
+     * @return the file used
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+}
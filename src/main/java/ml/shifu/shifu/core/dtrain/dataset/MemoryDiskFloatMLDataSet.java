@@ -21,7 +21,7 @@ import java.util.Iterator;
 import ml.shifu.shifu.util.SizeEstimator;
 
 /**
- * A hybrid data set combining {@link BasicFloatMLDataSet} and {@link BufferedFloatMLDataSet} together.
+ * A hybrid data set combining {@link BasicFloatMLDataSet} and {@link MappedFloatMLDataSet} together.
  * 
  * <p>
  * With this data set, element is added firstly in memory, if over {@link #maxByteSize} then element will be added into
@@ -32,7 +32,7 @@ import ml.shifu.shifu.util.SizeEstimator;
  * memory, memory and disk will be leveraged together to accelerate computing.
  * 
  * <p>
- * Example almost same as {@link BufferedFloatMLDataSet}:
+ * Example almost same as {@link MappedFloatMLDataSet}:
  * 
  * <pre>
  * MemoryDiskMLDataSet dataSet = new MemoryDiskFloatMLDataSet(400, "a.txt");
@@ -69,7 +69,8 @@ public class MemoryDiskFloatMLDataSet implements FloatMLDataSet {
     private FloatMLDataSet memoryDataSet;
 
     /**
-     * Disk data set which type is {@link BufferedFloatMLDataSet}
+     * Disk data set which type is {@link MappedFloatMLDataSet}, records in it are read from memory-mapped file
+     * without lock, so it can be read by multiple threads.
      */
     private FloatMLDataSet diskDataSet;
 
@@ -161,7 +162,7 @@ public class MemoryDiskFloatMLDataSet implements FloatMLDataSet {
         this.inputCount = inputSize;
         this.outputCount = idealSize;
         if(this.diskDataSet != null) {
-            ((BufferedFloatMLDataSet) this.diskDataSet).beginLoad(this.inputCount, this.outputCount);
+            ((MappedFloatMLDataSet) this.diskDataSet).beginLoad(this.inputCount, this.outputCount);
         }
     }
 
@@ -171,7 +172,7 @@ public class MemoryDiskFloatMLDataSet implements FloatMLDataSet {
      */
     public final void endLoad() {
         if(this.diskDataSet != null) {
-            ((BufferedFloatMLDataSet) this.diskDataSet).endLoad();
+            ((MappedFloatMLDataSet) this.diskDataSet).endLoad();
         }
     }
 
@@ -320,8 +321,8 @@ public class MemoryDiskFloatMLDataSet implements FloatMLDataSet {
             this.memoryDataSet.add(data);
         } else {
             if(this.diskDataSet == null) {
-                this.diskDataSet = new BufferedFloatMLDataSet(new File(this.fileName));
-                ((BufferedFloatMLDataSet) this.diskDataSet).beginLoad(this.inputCount, this.outputCount);
+                this.diskDataSet = new MappedFloatMLDataSet(new File(this.fileName));
+                ((MappedFloatMLDataSet) this.diskDataSet).beginLoad(this.inputCount, this.outputCount);
             }
             this.byteSize += currentSize;
             this.diskCount += 1l;
@@ -343,8 +344,8 @@ public class MemoryDiskFloatMLDataSet implements FloatMLDataSet {
             this.memoryDataSet.add(inputData, idealData);
         } else {
             if(this.diskDataSet == null) {
-                this.diskDataSet = new BufferedFloatMLDataSet(new File(this.fileName));
-                ((BufferedFloatMLDataSet) this.diskDataSet).beginLoad(this.inputCount, this.outputCount);
+                this.diskDataSet = new MappedFloatMLDataSet(new File(this.fileName));
+                ((MappedFloatMLDataSet) this.diskDataSet).beginLoad(this.inputCount, this.outputCount);
             }
             this.byteSize += currentSize;
             this.diskCount += 1l;
@@ -366,8 +367,8 @@ public class MemoryDiskFloatMLDataSet implements FloatMLDataSet {
             this.memoryDataSet.add(inputData);
         } else {
             if(this.diskDataSet == null) {
-                this.diskDataSet = new BufferedFloatMLDataSet(new File(this.fileName));
-                ((BufferedFloatMLDataSet) this.diskDataSet).beginLoad(this.inputCount, this.outputCount);
+                this.diskDataSet = new MappedFloatMLDataSet(new File(this.fileName));
+                ((MappedFloatMLDataSet) this.diskDataSet).beginLoad(this.inputCount, this.outputCount);
             }
             this.byteSize += currentSize;
             this.diskCount += 1l;
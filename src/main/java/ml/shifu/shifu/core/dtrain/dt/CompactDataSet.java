@@ -0,0 +1,354 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.dt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ml.shifu.shifu.container.obj.ColumnConfig;
+import ml.shifu.shifu.core.dtrain.dt.DTWorker.Data;
+
+/**
+ * {@link CompactDataSet} packs records into large primitive blocks instead of keeping one {@link Data} object with its
+ * own input and weight arrays per record.
+ *
+ * <p>
+ * Each block holds up to {@link #BLOCK_ROWS} records:
+ * <ul>
+ * <li>bin indexes of all records in one array, one byte per bin index if all features have no more than 256 bins,
+ * otherwise one short. Inputs of one record are adjacent as record traversal and histogram update read all inputs of
+ * one record together.</li>
+ * <li>label, output, predict and significance in four parallel float arrays.</li>
+ * <li>subsample weights in one float array with fixed width per record.</li>
+ * </ul>
+ *
+ * <p>
+ * Object headers, references and array headers of each record are all removed, and with byte bin indexes, input memory
+ * is half of short array. Row count is limited by the same memory limit used by {@link DTDataSet#newRowDataSet(long)},
+ * records over the limit are ignored.
+ */
+final class CompactDataSet extends DTDataSet {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompactDataSet.class);
+
+    private static final int BLOCK_SHIFT = 16;
+
+    /**
+     * Max records in one block.
+     */
+    static final int BLOCK_ROWS = 1 << BLOCK_SHIFT;
+
+    private static final int BLOCK_MASK = BLOCK_ROWS - 1;
+
+    /**
+     * Max bin index can be stored as unsigned byte.
+     */
+    private static final int MAX_BYTE_BIN_INDEX = 0xFF;
+
+    private final int inputCount;
+
+    private final boolean isByteInput;
+
+    /**
+     * Subsample weights width of each record, weights of tree i is stored in i % weightWidth.
+     */
+    private final int weightWidth;
+
+    /**
+     * Max records in data set according to memory limit.
+     */
+    private final int maxRows;
+
+    private final List<Block> blocks = new ArrayList<Block>();
+
+    private int size;
+
+    private boolean isReadOnly;
+
+    private boolean isLimitLogged;
+
+    /**
+     * Constructor of compact data set.
+     *
+     * @param maxByteSize
+     *            max bytes of memory used by data set
+     * @param inputCount
+     *            number of inputs of each record
+     * @param isByteInput
+     *            if bin index is stored as byte, see {@link #isByteInput(List)}
+     * @param weightWidth
+     *            subsample weights size of each record
+     */
+    CompactDataSet(long maxByteSize, int inputCount, boolean isByteInput, int weightWidth) {
+        this.inputCount = inputCount;
+        this.isByteInput = isByteInput;
+        this.weightWidth = weightWidth;
+        long rowBytes = (long) inputCount * (isByteInput ? 1 : 2) + 4L * (4 + weightWidth);
+        this.maxRows = (int) Math.min(Integer.MAX_VALUE, Math.max(0L, maxByteSize) / rowBytes);
+        LOG.info("Compact data set with {} inputs in {} and {} weights, {} bytes per record, max records is {}.",
+                inputCount, isByteInput ? "byte" : "short", weightWidth, rowBytes, this.maxRows);
+    }
+
+    /**
+     * Check if all bin indexes of input columns can be stored as unsigned byte. Numerical bin index is in [0,
+     * binBoundary.size()), categorical bin index is in [0, binCategory.size()] with the last one for missing or invalid
+     * category.
+     *
+     * <p>
+     * All non meta and non target columns are checked, which covers all columns may be loaded as inputs.
+     *
+     * @param columnConfigList
+     *            the column config list
+     * @return true if all bin indexes are no more than 255
+     */
+    static boolean isByteInput(List<ColumnConfig> columnConfigList) {
+        for(ColumnConfig columnConfig: columnConfigList) {
+            if(columnConfig.isMeta() || columnConfig.isTarget()) {
+                continue;
+            }
+            int maxBinIndex = 0;
+            if(columnConfig.isNumerical() && columnConfig.getBinBoundary() != null) {
+                maxBinIndex = columnConfig.getBinBoundary().size() - 1;
+            } else if(columnConfig.isCategorical() && columnConfig.getBinCategory() != null) {
+                maxBinIndex = columnConfig.getBinCategory().size();
+            }
+            if(maxBinIndex > MAX_BYTE_BIN_INDEX) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records of one block, all arrays are allocated at once.
+     */
+    private static final class Block {
+
+        final byte[] byteInputs;
+        final short[] shortInputs;
+        final float[] labels;
+        final float[] outputs;
+        final float[] predicts;
+        final float[] significances;
+        final float[] weights;
+
+        Block(int rows, int inputCount, boolean isByteInput, int weightWidth) {
+            this.byteInputs = isByteInput ? new byte[rows * inputCount] : null;
+            this.shortInputs = isByteInput ? null : new short[rows * inputCount];
+            this.labels = new float[rows];
+            this.outputs = new float[rows];
+            this.predicts = new float[rows];
+            this.significances = new float[rows];
+            this.weights = new float[rows * weightWidth];
+        }
+    }
+
+    @Override
+    void append(Data data) {
+        if(this.isReadOnly) {
+            throw new IllegalStateException("Data set is in reading state, cannot append data.");
+        }
+        if(this.size >= this.maxRows) {
+            if(!this.isLimitLogged) {
+                LOG.warn("Memory limit of compact data set is reached with {} records, later records are ignored.",
+                        this.size);
+                this.isLimitLogged = true;
+            }
+            return;
+        }
+
+        int blockIndex = this.size >>> BLOCK_SHIFT;
+        if(blockIndex == this.blocks.size()) {
+            int rows = Math.min(BLOCK_ROWS, this.maxRows - this.size);
+            this.blocks.add(new Block(rows, this.inputCount, this.isByteInput, this.weightWidth));
+        }
+        Block block = this.blocks.get(blockIndex);
+        int row = this.size & BLOCK_MASK;
+
+        short[] inputs = data.inputs;
+        int inputOffset = row * this.inputCount;
+        if(this.isByteInput) {
+            for(int i = 0; i < this.inputCount; i++) {
+                short input = inputs[i];
+                if(input < 0 || input > MAX_BYTE_BIN_INDEX) {
+                    throw new IllegalArgumentException("Bin index " + input + " of input " + i
+                            + " cannot be stored in byte, data is " + data);
+                }
+                block.byteInputs[inputOffset + i] = (byte) input;
+            }
+        } else {
+            System.arraycopy(inputs, 0, block.shortInputs, inputOffset, this.inputCount);
+        }
+
+        block.labels[row] = data.label;
+        block.outputs[row] = data.output;
+        block.predicts[row] = data.predict;
+        block.significances[row] = data.significance;
+        // tree i uses weights[i % length], fill with the same rule to keep weights for any tree index unchanged
+        float[] weights = data.subsampleWeights;
+        int weightOffset = row * this.weightWidth;
+        for(int i = 0; i < this.weightWidth; i++) {
+            block.weights[weightOffset + i] = weights[i % weights.length];
+        }
+        this.size += 1;
+    }
+
+    @Override
+    int size() {
+        return this.size;
+    }
+
+    @Override
+    Data get(int index, Data reuse) {
+        if(index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        Row row;
+        if(reuse instanceof Row && ((Row) reuse).getDataSet() == this) {
+            row = (Row) reuse;
+        } else {
+            row = new Row();
+        }
+        row.moveTo(index);
+        return row;
+    }
+
+    @Override
+    void switchState() {
+        this.isReadOnly = true;
+    }
+
+    @Override
+    public Iterator<Data> iterator() {
+        return new Iterator<Data>() {
+            private int index = 0;
+            private Data current;
+
+            @Override
+            public boolean hasNext() {
+                return this.index < CompactDataSet.this.size;
+            }
+
+            @Override
+            public Data next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                this.current = get(this.index++, this.current);
+                return this.current;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * View of one record in blocks, all reads and writes go to block arrays.
+     */
+    private final class Row extends Data {
+
+        private static final long serialVersionUID = -3458513398325046466L;
+
+        private transient Block block;
+
+        private int row;
+
+        private int inputOffset;
+
+        CompactDataSet getDataSet() {
+            return CompactDataSet.this;
+        }
+
+        void moveTo(int index) {
+            this.block = CompactDataSet.this.blocks.get(index >>> BLOCK_SHIFT);
+            this.row = index & BLOCK_MASK;
+            this.inputOffset = this.row * CompactDataSet.this.inputCount;
+        }
+
+        @Override
+        short getInput(int index) {
+            if(CompactDataSet.this.isByteInput) {
+                return (short) (this.block.byteInputs[this.inputOffset + index] & 0xFF);
+            }
+            return this.block.shortInputs[this.inputOffset + index];
+        }
+
+        @Override
+        float getLabel() {
+            return this.block.labels[this.row];
+        }
+
+        @Override
+        float getOutput() {
+            return this.block.outputs[this.row];
+        }
+
+        @Override
+        void setOutput(float output) {
+            this.block.outputs[this.row] = output;
+        }
+
+        @Override
+        float getPredict() {
+            return this.block.predicts[this.row];
+        }
+
+        @Override
+        void setPredict(float predict) {
+            this.block.predicts[this.row] = predict;
+        }
+
+        @Override
+        float getSignificance() {
+            return this.block.significances[this.row];
+        }
+
+        @Override
+        float getSubsampleWeight(int treeId) {
+            int width = CompactDataSet.this.weightWidth;
+            return this.block.weights[this.row * width + treeId % width];
+        }
+
+        @Override
+        void setSubsampleWeight(int treeId, float weight) {
+            int width = CompactDataSet.this.weightWidth;
+            this.block.weights[this.row * width + treeId % width] = weight;
+        }
+
+        @Override
+        public String toString() {
+            short[] inputs = new short[CompactDataSet.this.inputCount];
+            for(int i = 0; i < inputs.length; i++) {
+                inputs[i] = getInput(i);
+            }
+            int width = CompactDataSet.this.weightWidth;
+            return "Data [inputs=" + Arrays.toString(inputs) + ", label=" + getLabel() + ", output=" + getOutput()
+                    + ", predict=" + getPredict() + ", significance=" + getSignificance() + ", subsampleWeights="
+                    + Arrays.toString(Arrays.copyOfRange(this.block.weights, this.row * width, (this.row + 1) * width))
+                    + "]";
+        }
+    }
+
+}
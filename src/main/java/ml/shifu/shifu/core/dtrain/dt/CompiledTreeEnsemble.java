@@ -0,0 +1,329 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.dt;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link CompiledTreeEnsemble} is a flattened copy of all trees in {@link IndependentTreeModel}. All nodes of all trees
+ * are packed into parallel primitive arrays (node i of the ensemble is described by {@link #featureIndexes}[i],
+ * {@link #thresholds}[i], {@link #leftChildren}[i] ...), categorical splits are stored as bitmaps in one shared
+ * {@link #categoryMasks} array.
+ *
+ * <p>
+ * Compared with walking linked {@link Node} and {@link Split} objects and checking categories in a {@code Set<Short>},
+ * {@link #predict(int, double[])} is iterative, doesn't box any value and doesn't allocate any object. The traversal
+ * logic is the same as {@code IndependentTreeModel#predictNode} so scores are exactly the same.
+ *
+ * <p>
+ * Instance is immutable after construction and can be shared by multiple scoring threads.
+ */
+final class CompiledTreeEnsemble {
+
+    /**
+     * Feature index of node in input data array, {@link #LEAF} for leaf node.
+     */
+    private final int[] featureIndexes;
+
+    /**
+     * Threshold of continuous split, value less than threshold goes to left child.
+     */
+    private final double[] thresholds;
+
+    /**
+     * Node index of left child in packed arrays.
+     */
+    private final int[] leftChildren;
+
+    /**
+     * Node index of right child in packed arrays.
+     */
+    private final int[] rightChildren;
+
+    /**
+     * Category size (not including missing category) of categorical split.
+     */
+    private final int[] categorySizes;
+
+    /**
+     * Offset of category bitmap in {@link #categoryMasks}, -1 for continuous split.
+     */
+    private final int[] maskOffsets;
+
+    /**
+     * Bitmaps of categories going to left child, bit i is set if category index i goes to left.
+     */
+    private final long[] categoryMasks;
+
+    /**
+     * Predict value of leaf node, class value for classification and regression score for regression.
+     */
+    private final double[] leafValues;
+
+    /**
+     * Root node index of each tree.
+     */
+    private final int[] treeRoots;
+
+    /**
+     * Weight (learning rate for GBT) of each tree.
+     */
+    private final double[] treeWeights;
+
+    /**
+     * Start tree index of each bag, bag i includes trees in [bagOffsets[i], bagOffsets[i+1]).
+     */
+    private final int[] bagOffsets;
+
+    private static final int LEAF = -1;
+
+    /**
+     * Constructor to flatten tree model. Column index and categorical size are resolved by the given model to keep
+     * consistent with its optimize mode.
+     *
+     * @param model
+     *            the tree model
+     * @param trees
+     *            bagging trees of the model
+     * @param weights
+     *            bagging tree weights of the model
+     * @param isClassification
+     *            if use class value as leaf value
+     */
+    CompiledTreeEnsemble(IndependentTreeModel model, List<List<TreeNode>> trees, List<List<Double>> weights,
+            boolean isClassification) {
+        int treeSize = 0, nodeSize = 0, maskSize = 0;
+        for(List<TreeNode> bag: trees) {
+            for(TreeNode treeNode: bag) {
+                treeSize += 1;
+                NodeCounter counter = new NodeCounter();
+                count(model, treeNode.getNode(), counter);
+                nodeSize += counter.nodes;
+                maskSize += counter.maskWords;
+            }
+        }
+
+        this.featureIndexes = new int[nodeSize];
+        this.thresholds = new double[nodeSize];
+        this.leftChildren = new int[nodeSize];
+        this.rightChildren = new int[nodeSize];
+        this.categorySizes = new int[nodeSize];
+        this.maskOffsets = new int[nodeSize];
+        this.categoryMasks = new long[maskSize];
+        this.leafValues = new double[nodeSize];
+        this.treeRoots = new int[treeSize];
+        this.treeWeights = new double[treeSize];
+        this.bagOffsets = new int[trees.size() + 1];
+
+        int[] cursors = new int[2]; // next node index, next mask index
+        int treeIndex = 0;
+        for(int i = 0; i < trees.size(); i++) {
+            this.bagOffsets[i] = treeIndex;
+            List<TreeNode> bag = trees.get(i);
+            List<Double> bagWeights = weights.get(i);
+            for(int j = 0; j < bag.size(); j++) {
+                this.treeRoots[treeIndex] = flatten(model, bag.get(j).getNode(), isClassification, cursors);
+                this.treeWeights[treeIndex] = bagWeights.get(j);
+                treeIndex += 1;
+            }
+        }
+        this.bagOffsets[trees.size()] = treeIndex;
+    }
+
+    private static class NodeCounter {
+        int nodes;
+        int maskWords;
+    }
+
+    private static boolean isLeaf(Node node) {
+        return node.getSplit() == null || node.isRealLeaf();
+    }
+
+    private static void count(IndependentTreeModel model, Node node, NodeCounter counter) {
+        counter.nodes += 1;
+        if(isLeaf(node)) {
+            return;
+        }
+        Split split = node.getSplit();
+        if(split.getFeatureType() == Split.CATEGORICAL) {
+            counter.maskWords += maskWords(model.getCategoricalSize(split.getColumnNum()));
+        }
+        count(model, node.getLeft(), counter);
+        count(model, node.getRight(), counter);
+    }
+
+    /**
+     * Bitmap words needed for category index in [0, categorySize], the last one is missing category.
+     */
+    private static int maskWords(int categorySize) {
+        return (categorySize >>> 6) + 1;
+    }
+
+    /**
+     * Flatten node in pre-order, return index of current node. Explicit stack is not used as tree depth is limited in
+     * training.
+     */
+    private int flatten(IndependentTreeModel model, Node node, boolean isClassification, int[] cursors) {
+        int index = cursors[0]++;
+        if(isLeaf(node)) {
+            this.featureIndexes[index] = LEAF;
+            this.maskOffsets[index] = -1;
+            this.leafValues[index] = isClassification ? node.getPredict().getClassValue() : node.getPredict()
+                    .getPredict();
+            return index;
+        }
+
+        Split split = node.getSplit();
+        this.featureIndexes[index] = model.getColumnIndex(split.getColumnNum());
+        if(split.getFeatureType() == Split.CATEGORICAL) {
+            int categorySize = model.getCategoricalSize(split.getColumnNum());
+            int offset = cursors[1];
+            int words = maskWords(categorySize);
+            cursors[1] += words;
+            this.categorySizes[index] = categorySize;
+            this.maskOffsets[index] = offset;
+            fillLeftMask(split, categorySize, offset, words);
+        } else {
+            this.thresholds[index] = split.getThreshold();
+            this.maskOffsets[index] = -1;
+        }
+
+        this.leftChildren[index] = flatten(model, node.getLeft(), isClassification, cursors);
+        this.rightChildren[index] = flatten(model, node.getRight(), isClassification, cursors);
+        return index;
+    }
+
+    /**
+     * Split stores left categories if isLeft, else right categories. Bitmap here always stores left categories, for
+     * right categories, it is complement in [0, categorySize] since category index is always in such range.
+     */
+    private void fillLeftMask(Split split, int categorySize, int offset, int words) {
+        Set<Short> categories = split.getLeftOrRightCategories();
+        if(categories != null) {
+            for(Short category: categories) {
+                int value = category.intValue();
+                if(value >= 0 && value <= categorySize) {
+                    this.categoryMasks[offset + (value >>> 6)] |= (1L << value);
+                }
+            }
+        }
+        if(!split.isLeft()) {
+            for(int i = offset; i < offset + words; i++) {
+                this.categoryMasks[i] = ~this.categoryMasks[i];
+            }
+        }
+    }
+
+    /**
+     * Predict leaf value of one tree.
+     *
+     * @param tree
+     *            tree index in all bags
+     * @param data
+     *            input data, numeric value is real value and categorical value is index of category
+     * @return leaf value, class value for classification or predict score for regression
+     */
+    double predict(int tree, double[] data) {
+        int node = this.treeRoots[tree];
+        int featureIndex;
+        while((featureIndex = this.featureIndexes[node]) != LEAF) {
+            double value = data[featureIndex];
+            int maskOffset = this.maskOffsets[node];
+            if(maskOffset < 0) {
+                node = value < this.thresholds[node] ? this.leftChildren[node] : this.rightChildren[node];
+            } else {
+                int categorySize = this.categorySizes[node];
+                int indexValue;
+                if(Double.compare(value, 0d) < 0 || Double.compare(value, categorySize) >= 0) {
+                    indexValue = categorySize;
+                } else {
+                    // + 0.1d is kept the same as IndependentTreeModel#predictNode
+                    indexValue = (short) (value + 0.1d);
+                }
+                long word = this.categoryMasks[maskOffset + (indexValue >>> 6)];
+                node = (word & (1L << indexValue)) != 0L ? this.leftChildren[node] : this.rightChildren[node];
+            }
+        }
+        return this.leafValues[node];
+    }
+
+    /**
+     * @return total number of trees in all bags
+     */
+    int getTreeSize() {
+        return this.treeRoots.length;
+    }
+
+    /**
+     * @return number of bags
+     */
+    int getBagSize() {
+        return this.bagOffsets.length - 1;
+    }
+
+    /**
+     * @return first tree index of the bag
+     */
+    int getBagStart(int bag) {
+        return this.bagOffsets[bag];
+    }
+
+    /**
+     * @return end tree index (exclusive) of the bag
+     */
+    int getBagEnd(int bag) {
+        return this.bagOffsets[bag + 1];
+    }
+
+    /**
+     * @return weight of the tree
+     */
+    double getTreeWeight(int tree) {
+        return this.treeWeights[tree];
+    }
+
+    /**
+     * Write packed arrays into flat model, {@link MappedTreeModel} reads them in the same order.
+     *
+     * @param out
+     *            the flat model output
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    void write(FlatDTSerializer.FlatOutput out) throws IOException {
+        out.writeInts(this.featureIndexes);
+        out.writeDoubles(this.thresholds);
+        out.writeInts(this.leftChildren);
+        out.writeInts(this.rightChildren);
+        out.writeInts(this.categorySizes);
+        out.writeInts(this.maskOffsets);
+        out.writeLongs(this.categoryMasks);
+        out.writeDoubles(this.leafValues);
+        out.writeInts(this.treeRoots);
+        out.writeDoubles(this.treeWeights);
+        out.writeInts(this.bagOffsets);
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledTreeEnsemble [trees=" + this.treeRoots.length + ", nodes=" + this.featureIndexes.length
+                + ", bags=" + Arrays.toString(this.bagOffsets) + "]";
+    }
+
+}
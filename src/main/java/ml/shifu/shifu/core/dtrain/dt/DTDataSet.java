@@ -0,0 +1,131 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.dt;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import ml.shifu.guagua.util.MemoryLimitedList;
+import ml.shifu.shifu.core.dtrain.dt.DTWorker.Data;
+
+/**
+ * {@link DTDataSet} is in-memory training or validation data set of {@link DTWorker}. Data set is only appended in
+ * data loading phase, after {@link #switchState()}, records are read by index or iterated in each iteration and GBDT
+ * predict, output and subsample weights are updated in place.
+ *
+ * <p>
+ * Two implementations are provided:
+ * <ul>
+ * <li>{@link RowDataSet}: each record is one {@link Data} instance kept in {@link MemoryLimitedList}.</li>
+ * <li>{@link CompactDataSet}: records are packed into large primitive blocks, {@link Data} returned is a view of the
+ * record in blocks.</li>
+ * </ul>
+ *
+ * <p>
+ * Callers should never keep {@link Data} instance returned by {@link #get(int, Data)} or {@link #iterator()} across
+ * records, it may be a reused view.
+ */
+abstract class DTDataSet implements Iterable<Data> {
+
+    /**
+     * Append one record, record will be ignored if memory limit is reached.
+     *
+     * @param data
+     *            the record to be appended
+     */
+    abstract void append(Data data);
+
+    /**
+     * @return number of records in data set
+     */
+    abstract int size();
+
+    /**
+     * Get record by index.
+     *
+     * @param index
+     *            the record index
+     * @param reuse
+     *            view returned by last call of this method in current thread, can be null
+     * @return the record, it may be the reuse instance positioned to such index
+     */
+    abstract Data get(int index, Data reuse);
+
+    /**
+     * Get record by index, a new view is created in compact data set.
+     *
+     * @param index
+     *            the record index
+     * @return the record
+     */
+    Data get(int index) {
+        return get(index, null);
+    }
+
+    /**
+     * Switch from appending state to reading state.
+     */
+    abstract void switchState();
+
+    /**
+     * Create data set based on {@link MemoryLimitedList}.
+     *
+     * @param maxByteSize
+     *            max bytes of memory used by data set
+     * @return the row data set
+     */
+    static DTDataSet newRowDataSet(long maxByteSize) {
+        return new RowDataSet(new MemoryLimitedList<Data>(maxByteSize, new ArrayList<Data>()));
+    }
+
+    /**
+     * Data set of {@link Data} objects, which is the same as before compact data set introduced.
+     */
+    static final class RowDataSet extends DTDataSet {
+
+        private final MemoryLimitedList<Data> list;
+
+        RowDataSet(MemoryLimitedList<Data> list) {
+            this.list = list;
+        }
+
+        @Override
+        void append(Data data) {
+            this.list.append(data);
+        }
+
+        @Override
+        int size() {
+            return this.list.size();
+        }
+
+        @Override
+        Data get(int index, Data reuse) {
+            return this.list.get(index);
+        }
+
+        @Override
+        void switchState() {
+            this.list.switchState();
+        }
+
+        @Override
+        public Iterator<Data> iterator() {
+            return this.list.iterator();
+        }
+    }
+
+}
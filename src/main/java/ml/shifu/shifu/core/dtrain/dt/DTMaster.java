@@ -17,6 +17,7 @@ package ml.shifu.shifu.core.dtrain.dt;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -27,11 +28,18 @@ import java.util.PriorityQueue;
 import java.util.Properties;
 import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
 
 import ml.shifu.guagua.GuaguaConstants;
 import ml.shifu.guagua.GuaguaRuntimeException;
 import ml.shifu.guagua.master.AbstractMasterComputable;
+import ml.shifu.guagua.master.MasterCompletionCallBack;
 import ml.shifu.guagua.master.MasterComputable;
 import ml.shifu.guagua.master.MasterContext;
 import ml.shifu.guagua.util.NumberFormatUtils;
@@ -43,6 +51,8 @@ import ml.shifu.shifu.core.TreeModel;
 import ml.shifu.shifu.core.dtrain.CommonConstants;
 import ml.shifu.shifu.core.dtrain.DTrainUtils;
 import ml.shifu.shifu.core.dtrain.FeatureSubsetStrategy;
+import ml.shifu.shifu.core.dtrain.IterationProfile;
+import ml.shifu.shifu.core.dtrain.IterationProfile.Phase;
 import ml.shifu.shifu.core.dtrain.dt.DTWorkerParams.NodeStats;
 import ml.shifu.shifu.core.dtrain.gs.GridSearch;
 import ml.shifu.shifu.fs.ShifuFileUtils;
@@ -270,9 +280,47 @@ public class DTMaster extends AbstractMasterComputable<DTMasterParams, DTWorkerP
      */
     private Queue<TreeNode> toDoQueue;
 
+    /**
+     * Min length of one shard in node stats merging.
+     */
+    private static final long MIN_MERGE_SHARD_LENGTH = 4096L;
+
+    /**
+     * Max features computed in one {@link SplitTask} without forking.
+     */
+    private static final int SPLIT_TASK_FEATURES = 8;
+
+    /**
+     * Thread count of {@link #threadPool}, set by ModelConfig#train#masterThreadCount.
+     */
+    private int masterThreadCount = 1;
+
+    /**
+     * Pool to merge node stats and compute impurity, threads in fork-join pool are daemon threads.
+     */
+    private ForkJoinPool threadPool;
+
+    /**
+     * Local top features voted by each worker for each node, voting is disabled if not positive. Candidate features of
+     * one node are the top 2 * {@link #votingTopK} features by votes of all workers.
+     */
+    private int votingTopK = 0;
+
+    /**
+     * Errors and counts sent by workers in voting round: train error, validation error, weighted train count and
+     * weighted validation count, used in next iteration when node stats of candidate features are received.
+     */
+    private double[] votingErrors;
+
+    /**
+     * Time by {@link System#nanoTime()} when last master result is built, start of master wait phase.
+     */
+    private long lastResultNanos;
+
     @Override
     public DTMasterParams doCompute(MasterContext<DTMasterParams, DTWorkerParams> context) {
         if(context.isFirstIteration()) {
+            this.lastResultNanos = System.nanoTime();
             return buildInitialMasterParams();
         }
 
@@ -291,8 +339,16 @@ public class DTMaster extends AbstractMasterComputable<DTMasterParams, DTWorkerP
             return tmpMasterParams;
         }
 
+        IterationProfile profile = new IterationProfile(0);
+        long phaseStart = System.nanoTime();
+        if(this.lastResultNanos > 0L) {
+            profile.set(Phase.MASTER_WAIT, phaseStart - this.lastResultNanos);
+        }
+
         boolean isFirst = false;
         Map<Integer, NodeStats> nodeStatsMap = null;
+        List<Map<Integer, NodeStats>> otherNodeStatsMaps = new ArrayList<Map<Integer, NodeStats>>();
+        List<Map<Integer, int[]>> votedFeaturesMaps = new ArrayList<Map<Integer, int[]>>();
         double trainError = 0d, validationError = 0d;
         double weightedTrainCount = 0d, weightedValidationCount = 0d;
         for(DTWorkerParams params: context.getWorkerResults()) {
@@ -300,38 +356,50 @@ public class DTMaster extends AbstractMasterComputable<DTMasterParams, DTWorkerP
                 isFirst = true;
                 nodeStatsMap = params.getNodeStatsMap();
             } else {
-                Map<Integer, NodeStats> currNodeStatsmap = params.getNodeStatsMap();
-                for(Entry<Integer, NodeStats> entry: nodeStatsMap.entrySet()) {
-                    NodeStats resultNodeStats = entry.getValue();
-                    mergeNodeStats(resultNodeStats, currNodeStatsmap.get(entry.getKey()));
-                }
-                // set to null after merging, release memory at the earliest stage
+                otherNodeStatsMaps.add(params.getNodeStatsMap());
+                // set to null, stats maps are only referenced in merging and released after that
                 params.setNodeStatsMap(null);
             }
+            if(params.getVotedFeaturesMap() != null) {
+                votedFeaturesMaps.add(params.getVotedFeaturesMap());
+            }
             trainError += params.getTrainError();
             validationError += params.getValidationError();
             weightedTrainCount += params.getTrainCount();
             weightedValidationCount += params.getValidationCount();
+            profile.merge(params.getProfile());
         }
+
+        if(!votedFeaturesMaps.isEmpty()) {
+            // voting round, errors are kept until node stats of candidate features are received
+            this.votingErrors = new double[] { trainError, validationError, weightedTrainCount,
+                    weightedValidationCount };
+            DTMasterParams votingParams = buildVotingMasterParams(context.getMasterResult(), votedFeaturesMaps);
+            profile.elapsed(Phase.MASTER_MERGE, phaseStart);
+            votingParams.setProfile(profile);
+            this.lastResultNanos = System.nanoTime();
+            return votingParams;
+        }
+        if(this.votingErrors != null) {
+            trainError = this.votingErrors[0];
+            validationError = this.votingErrors[1];
+            weightedTrainCount = this.votingErrors[2];
+            weightedValidationCount = this.votingErrors[3];
+            this.votingErrors = null;
+        }
+
+        mergeNodeStats(this.threadPool, this.masterThreadCount, nodeStatsMap, otherNodeStatsMaps);
+        otherNodeStatsMaps = null;
+        phaseStart = profile.elapsed(Phase.MASTER_MERGE, phaseStart);
+
+        Map<Integer, GainInfo> maxGainInfos = computeMaxGainInfos(this.threadPool, this.impurity,
+                this.columnConfigList, nodeStatsMap);
         for(Entry<Integer, NodeStats> entry: nodeStatsMap.entrySet()) {
             NodeStats nodeStats = entry.getValue();
             int treeId = nodeStats.getTreeId();
             Node doneNode = Node.getNode(trees.get(treeId).getNode(), nodeStats.getNodeId());
             // doneNode, NodeStats
-            Map<Integer, double[]> statistics = nodeStats.getFeatureStatistics();
-
-            List<GainInfo> gainList = new ArrayList<GainInfo>();
-            for(Entry<Integer, double[]> gainEntry: statistics.entrySet()) {
-                int columnNum = gainEntry.getKey();
-                ColumnConfig config = this.columnConfigList.get(columnNum);
-                double[] statsArray = gainEntry.getValue();
-                GainInfo gainInfo = this.impurity.computeImpurity(statsArray, config);
-                if(gainInfo != null) {
-                    gainList.add(gainInfo);
-                }
-            }
-
-            GainInfo maxGainInfo = GainInfo.getGainInfoByMaxGain(gainList);
+            GainInfo maxGainInfo = maxGainInfos.get(entry.getKey());
             if(maxGainInfo == null) {
                 // null gain info, set to leaf and continue next stats
                 doneNode.setLeaf(true);
@@ -533,6 +601,9 @@ public class DTMaster extends AbstractMasterComputable<DTMasterParams, DTWorkerP
 
         LOG.debug("weightedTrainCount {}, weightedValidationCount {}, trainError {}, validationError {}",
                 weightedTrainCount, weightedValidationCount, trainError, validationError);
+        profile.elapsed(Phase.MASTER_COMPUTE, phaseStart);
+        masterParams.setProfile(profile);
+        this.lastResultNanos = System.nanoTime();
         return masterParams;
     }
 
@@ -707,6 +778,227 @@ public class DTMaster extends AbstractMasterComputable<DTMasterParams, DTWorkerP
         }
     }
 
+    /**
+     * Select candidate features of each node by votes of all workers: top 2 * {@link #votingTopK} features by vote
+     * count, ties broken by column number. Trees and todo nodes of last iteration are sent again and no tree is
+     * updated, no checkpoint is needed in such iteration. A node without any vote has no candidate and is set to leaf
+     * in next iteration.
+     * 
+     * @param lastMasterParams
+     *            master result of last iteration, which is in voting
+     * @param votedFeaturesMaps
+     *            voted features of workers
+     * @return master params with candidate features
+     */
+    private DTMasterParams buildVotingMasterParams(DTMasterParams lastMasterParams,
+            List<Map<Integer, int[]>> votedFeaturesMaps) {
+        Map<Integer, Map<Integer, Integer>> votes = new HashMap<Integer, Map<Integer, Integer>>();
+        for(Map<Integer, int[]> votedFeaturesMap: votedFeaturesMaps) {
+            for(Entry<Integer, int[]> entry: votedFeaturesMap.entrySet()) {
+                Map<Integer, Integer> nodeVotes = votes.get(entry.getKey());
+                if(nodeVotes == null) {
+                    nodeVotes = new HashMap<Integer, Integer>();
+                    votes.put(entry.getKey(), nodeVotes);
+                }
+                for(int columnNum: entry.getValue()) {
+                    Integer count = nodeVotes.get(columnNum);
+                    nodeVotes.put(columnNum, count == null ? 1 : count + 1);
+                }
+            }
+        }
+
+        Map<Integer, int[]> candidateFeatures = new HashMap<Integer, int[]>(votes.size(), 1f);
+        for(Entry<Integer, Map<Integer, Integer>> entry: votes.entrySet()) {
+            final Map<Integer, Integer> nodeVotes = entry.getValue();
+            List<Integer> columnNums = new ArrayList<Integer>(nodeVotes.keySet());
+            Collections.sort(columnNums, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    int result = nodeVotes.get(o2).compareTo(nodeVotes.get(o1));
+                    return result != 0 ? result : o1.compareTo(o2);
+                }
+            });
+            int[] candidates = new int[Math.min(columnNums.size(), 2 * this.votingTopK)];
+            for(int i = 0; i < candidates.length; i++) {
+                candidates[i] = columnNums.get(i);
+            }
+            candidateFeatures.put(entry.getKey(), candidates);
+        }
+
+        DTMasterParams masterParams = new DTMasterParams();
+        if(lastMasterParams != null && lastMasterParams.getTrees() != null
+                && lastMasterParams.getTodoNodes() != null) {
+            masterParams.setTrees(lastMasterParams.getTrees());
+            masterParams.setTodoNodes(lastMasterParams.getTodoNodes());
+            for(Integer key: lastMasterParams.getTodoNodes().keySet()) {
+                if(!candidateFeatures.containsKey(key)) {
+                    candidateFeatures.put(key, new int[0]);
+                }
+            }
+        } else {
+            masterParams.setTrees(new ArrayList<TreeNode>());
+        }
+        masterParams.setCandidateFeatures(candidateFeatures);
+        LOG.info("Candidate features of {} nodes are selected by votes of {} workers.", candidateFeatures.size(),
+                votedFeaturesMaps.size());
+        return masterParams;
+    }
+
+    /**
+     * Merge node stats of all other workers into node stats of the first worker. Stats buffer of each node is cut into
+     * shards of whole features, shards are merged in thread pool in parallel as they are disjoint.
+     * 
+     * @param threadPool
+     *            the thread pool to merge shards
+     * @param threadCount
+     *            thread count of thread pool, used to decide shard length
+     * @param nodeStatsMap
+     *            node stats of the first worker, merged result is in it
+     * @param otherNodeStatsMaps
+     *            node stats of other workers
+     */
+    static void mergeNodeStats(ForkJoinPool threadPool, int threadCount, Map<Integer, NodeStats> nodeStatsMap,
+            final List<Map<Integer, NodeStats>> otherNodeStatsMaps) {
+        if(otherNodeStatsMaps.isEmpty()) {
+            return;
+        }
+        long totalLength = 0L;
+        for(NodeStats nodeStats: nodeStatsMap.values()) {
+            totalLength += nodeStats.getStatistics().length;
+        }
+        long shardLength = Math.max(MIN_MERGE_SHARD_LENGTH, totalLength / (threadCount * 4L));
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for(Entry<Integer, NodeStats> entry: nodeStatsMap.entrySet()) {
+            final Integer nodeKey = entry.getKey();
+            final NodeStats resultNodeStats = entry.getValue();
+            int from = 0;
+            for(int i = 0; i < resultNodeStats.getFeatureSize(); i++) {
+                int to = resultNodeStats.getOffset(i) + resultNodeStats.getLength(i);
+                if(to - from < shardLength && i < resultNodeStats.getFeatureSize() - 1) {
+                    continue;
+                }
+                final int start = from, end = to;
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for(Map<Integer, NodeStats> otherNodeStatsMap: otherNodeStatsMaps) {
+                            resultNodeStats.merge(otherNodeStatsMap.get(nodeKey), start, end);
+                        }
+                        return null;
+                    }
+                });
+                from = to;
+            }
+        }
+
+        try {
+            for(Future<Void> future: threadPool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GuaguaRuntimeException(e);
+        }
+    }
+
+    /**
+     * Compute best split of each node in thread pool. Features of each node are recursively halved into
+     * {@link SplitTask}s.
+     * 
+     * @param threadPool
+     *            the fork-join pool to run split tasks
+     * @param impurity
+     *            the impurity to compute gain of each feature
+     * @param columnConfigList
+     *            the column config list
+     * @param nodeStatsMap
+     *            merged node stats
+     * @return node key to gain info with max gain, value is null if no valid split
+     */
+    static Map<Integer, GainInfo> computeMaxGainInfos(ForkJoinPool threadPool, Impurity impurity,
+            List<ColumnConfig> columnConfigList, Map<Integer, NodeStats> nodeStatsMap) {
+        Map<Integer, ForkJoinTask<GainInfo>> splitTasks = new HashMap<Integer, ForkJoinTask<GainInfo>>(
+                nodeStatsMap.size(), 1f);
+        for(Entry<Integer, NodeStats> entry: nodeStatsMap.entrySet()) {
+            NodeStats nodeStats = entry.getValue();
+            splitTasks.put(entry.getKey(), threadPool.submit(
+                    new SplitTask(impurity, columnConfigList, nodeStats, 0, nodeStats.getFeatureSize())));
+        }
+
+        Map<Integer, GainInfo> maxGainInfos = new HashMap<Integer, GainInfo>(nodeStatsMap.size(), 1f);
+        try {
+            for(Entry<Integer, ForkJoinTask<GainInfo>> entry: splitTasks.entrySet()) {
+                maxGainInfos.put(entry.getKey(), entry.getValue().get());
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GuaguaRuntimeException(e);
+        }
+        return maxGainInfos;
+    }
+
+    /**
+     * Fork-join task to find gain info with max gain in features [from, to) of one node. The same as
+     * {@link GainInfo#getGainInfoByMaxGain(List)}, the first feature wins if gains are equal.
+     */
+    private static class SplitTask extends RecursiveTask<GainInfo> {
+
+        private static final long serialVersionUID = -2434498637451541470L;
+
+        private final Impurity impurity;
+
+        private final List<ColumnConfig> columnConfigList;
+
+        private final NodeStats nodeStats;
+
+        private final int from;
+
+        private final int to;
+
+        SplitTask(Impurity impurity, List<ColumnConfig> columnConfigList, NodeStats nodeStats, int from, int to) {
+            this.impurity = impurity;
+            this.columnConfigList = columnConfigList;
+            this.nodeStats = nodeStats;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected GainInfo compute() {
+            if(this.to - this.from <= SPLIT_TASK_FEATURES) {
+                List<GainInfo> gainList = new ArrayList<GainInfo>(this.to - this.from);
+                for(int i = this.from; i < this.to; i++) {
+                    int columnNum = this.nodeStats.getFeatures()[i];
+                    ColumnConfig config = this.columnConfigList.get(columnNum);
+                    GainInfo gainInfo = this.impurity.computeImpurity(this.nodeStats.getFeatureStatistics(i), config);
+                    if(gainInfo != null) {
+                        gainList.add(gainInfo);
+                    }
+                }
+                return GainInfo.getGainInfoByMaxGain(gainList);
+            }
+
+            int middle = (this.from + this.to) >>> 1;
+            SplitTask left = new SplitTask(this.impurity, this.columnConfigList, this.nodeStats, this.from, middle);
+            left.fork();
+            GainInfo rightGainInfo = new SplitTask(this.impurity, this.columnConfigList, this.nodeStats, middle,
+                    this.to).compute();
+            GainInfo leftGainInfo = left.join();
+            if(leftGainInfo == null) {
+                return rightGainInfo;
+            }
+            if(rightGainInfo == null) {
+                return leftGainInfo;
+            }
+            return rightGainInfo.getGain() > leftGainInfo.getGain() ? rightGainInfo : leftGainInfo;
+        }
+    }
+
     private void populateGainInfoToNode(int treeId, Node doneNode, GainInfo maxGainInfo) {
         doneNode.setPredict(maxGainInfo.getPredict());
         doneNode.setSplit(maxGainInfo.getSplit());
@@ -746,16 +1038,6 @@ public class DTMaster extends AbstractMasterComputable<DTMasterParams, DTWorkerP
         return statsMem;
     }
 
-    private void mergeNodeStats(NodeStats resultNodeStats, NodeStats nodeStats) {
-        Map<Integer, double[]> featureStatistics = resultNodeStats.getFeatureStatistics();
-        for(Entry<Integer, double[]> entry: nodeStats.getFeatureStatistics().entrySet()) {
-            double[] statistics = featureStatistics.get(entry.getKey());
-            for(int i = 0; i < statistics.length; i++) {
-                statistics[i] += entry.getValue()[i];
-            }
-        }
-    }
-
     private DTMasterParams buildInitialMasterParams() {
         Map<Integer, TreeNode> todoNodes = new HashMap<Integer, TreeNode>(treeNum, 1.0f);
         int nodeIndexInGroup = 0;
@@ -909,6 +1191,18 @@ public class DTMaster extends AbstractMasterComputable<DTMasterParams, DTWorkerP
             throw new RuntimeException(e);
         }
 
+        Integer masterThreadCount = this.modelConfig.getTrain().getMasterThreadCount();
+        this.masterThreadCount = (masterThreadCount == null || masterThreadCount <= 0) ? 1 : masterThreadCount;
+        this.threadPool = new ForkJoinPool(this.masterThreadCount);
+        LOG.info("Master thread count is {}.", this.masterThreadCount);
+        // threads are daemon threads, while pool is still shut down to release threads once training is done
+        context.addCompletionCallBack(new MasterCompletionCallBack<DTMasterParams, DTWorkerParams>() {
+            @Override
+            public void callback(MasterContext<DTMasterParams, DTWorkerParams> context) {
+                DTMaster.this.threadPool.shutdownNow();
+            }
+        });
+
         // worker number is used to estimate nodes per iteration for stats
         this.workerNumber = NumberFormatUtils.getInt(props.getProperty(GuaguaConstants.GUAGUA_WORKER_NUMBER), true);
 
@@ -982,6 +1276,12 @@ public class DTMaster extends AbstractMasterComputable<DTMasterParams, DTWorkerP
         }
 
         // maxBatchSplitSize means each time split # of batch nodes
+        Object votingTopKObj = validParams.get(CommonConstants.DT_VOTING_TOP_K);
+        if(votingTopKObj != null) {
+            this.votingTopK = Integer.valueOf(votingTopKObj.toString());
+            LOG.info("Voting is enabled with local top {} features of each worker.", this.votingTopK);
+        }
+
         Object maxBatchSplitSizeObj = validParams.get("MaxBatchSplitSize");
         if(maxBatchSplitSizeObj != null) {
             this.maxBatchSplitSize = Integer.valueOf(maxBatchSplitSizeObj.toString());
@@ -24,6 +24,8 @@ import java.util.List;
 import java.util.Map;
 
 import ml.shifu.guagua.io.HaltBytable;
+import ml.shifu.shifu.core.dtrain.IterationProfile;
+import ml.shifu.shifu.core.dtrain.IterationProfiled;
 
 /**
  * Master parameters transferred from master to all workers in all iterations.
@@ -39,9 +41,13 @@ import ml.shifu.guagua.io.HaltBytable;
  * {@link #tmpTrees} is transient and only for GBDT, in {@link DTOutput}, {@link #tmpTrees} is used to save model to
  * HDFS while not sent to workers.
  * 
+ * <p>
+ * In voting mode, {@link #candidateFeatures} is set in the iteration after workers vote, and workers send stats of such
+ * candidate features of last todo nodes without scanning data again.
+ * 
  * @author Zhang David (pengzhang@paypal.com)
  */
-public class DTMasterParams extends HaltBytable {
+public class DTMasterParams extends HaltBytable implements IterationProfiled {
 
     /**
      * All updated trees.
@@ -99,6 +105,16 @@ public class DTMasterParams extends HaltBytable {
      */
     private List<TreeNode> tmpTrees;
 
+    /**
+     * nodeIndexInGroup => candidate feature column numbers selected by votes of workers, null if not in voting round.
+     */
+    private Map<Integer, int[]> candidateFeatures;
+
+    /**
+     * Phase profile of current iteration, merged from worker profiles and filled with master phases.
+     */
+    private IterationProfile profile;
+
     public DTMasterParams() {
     }
 
@@ -170,6 +186,20 @@ public class DTMasterParams extends HaltBytable {
         }
         out.writeBoolean(isContinuousRunningStart);
         out.writeBoolean(isFirstTree);
+
+        if(candidateFeatures == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(candidateFeatures.size());
+            for(Map.Entry<Integer, int[]> entry: candidateFeatures.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                for(int columnNum: entry.getValue()) {
+                    out.writeInt(columnNum);
+                }
+            }
+        }
+        IterationProfile.write(out, this.profile);
     }
 
     @Override
@@ -200,6 +230,22 @@ public class DTMasterParams extends HaltBytable {
         }
         this.isContinuousRunningStart = in.readBoolean();
         this.isFirstTree = in.readBoolean();
+
+        int candidateSize = in.readInt();
+        if(candidateSize >= 0) {
+            this.candidateFeatures = new HashMap<Integer, int[]>(candidateSize, 1f);
+            for(int i = 0; i < candidateSize; i++) {
+                int key = in.readInt();
+                int[] columnNums = new int[in.readInt()];
+                for(int j = 0; j < columnNums.length; j++) {
+                    columnNums[j] = in.readInt();
+                }
+                this.candidateFeatures.put(key, columnNums);
+            }
+        } else {
+            this.candidateFeatures = null;
+        }
+        this.profile = IterationProfile.read(in);
     }
 
     /**
@@ -337,4 +383,29 @@ public class DTMasterParams extends HaltBytable {
         this.isFirstTree = isFirstTree;
     }
 
+    /**
+     * @return the candidateFeatures
+     */
+    public Map<Integer, int[]> getCandidateFeatures() {
+        return candidateFeatures;
+    }
+
+    /**
+     * @param candidateFeatures
+     *            the candidateFeatures to set
+     */
+    public void setCandidateFeatures(Map<Integer, int[]> candidateFeatures) {
+        this.candidateFeatures = candidateFeatures;
+    }
+
+    @Override
+    public IterationProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public void setProfile(IterationProfile profile) {
+        this.profile = profile;
+    }
+
 }
@@ -134,6 +134,10 @@ public class DTOutput extends BasicMasterInterceptor<DTMasterParams, DTWorkerPar
 
     @Override
     public void postIteration(final MasterContext<DTMasterParams, DTWorkerParams> context) {
+        if(context.getMasterResult().getCandidateFeatures() != null) {
+            // voting round, no tree is updated in such iteration
+            return;
+        }
         long start = System.currentTimeMillis();
         // save tmp to hdfs according to raw trainer logic
         final int tmpModelFactor = DTrainUtils.tmpModelFactor(context.getTotalIteration());
@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,13 +31,12 @@ import java.util.Properties;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import ml.shifu.guagua.ComputableMonitor;
@@ -44,8 +45,6 @@ import ml.shifu.guagua.hadoop.io.GuaguaLineRecordReader;
 import ml.shifu.guagua.hadoop.io.GuaguaWritableAdapter;
 import ml.shifu.guagua.io.Bytable;
 import ml.shifu.guagua.io.GuaguaFileSplit;
-import ml.shifu.guagua.util.MemoryLimitedList;
-import ml.shifu.guagua.util.NumberFormatUtils;
 import ml.shifu.guagua.worker.AbstractWorkerComputable;
 import ml.shifu.guagua.worker.WorkerContext;
 import ml.shifu.guagua.worker.WorkerContext.WorkerCompletionCallBack;
@@ -56,6 +55,8 @@ import ml.shifu.shifu.container.obj.RawSourceData.SourceType;
 import ml.shifu.shifu.core.TreeModel;
 import ml.shifu.shifu.core.dtrain.CommonConstants;
 import ml.shifu.shifu.core.dtrain.DTrainUtils;
+import ml.shifu.shifu.core.dtrain.IterationProfile;
+import ml.shifu.shifu.core.dtrain.IterationProfile.Phase;
 import ml.shifu.shifu.core.dtrain.dt.DTWorkerParams.NodeStats;
 import ml.shifu.shifu.core.dtrain.gs.GridSearch;
 import ml.shifu.shifu.fs.ShifuFileUtils;
@@ -71,8 +72,6 @@ import org.apache.hadoop.io.Text;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Splitter;
-
 /**
  * {@link DTWorker} is to collection node statistics for node with sub-sampling features from master {@link DTMaster}.
  * 
@@ -108,6 +107,16 @@ public class DTWorker extends
 
     protected static final Logger LOG = LoggerFactory.getLogger(DTWorker.class);
 
+    /**
+     * Relative tolerance to clean float errors in histogram subtraction.
+     */
+    private static final double SUBTRACTION_EPSILON = 1e-10d;
+
+    /**
+     * Train param to store training and validation data in {@link CompactDataSet}, false by default.
+     */
+    private static final String DT_COMPACT_DATA = "CompactData";
+
     /**
      * Model configuration loaded from configuration file.
      */
@@ -184,12 +193,12 @@ public class DTWorker extends
     /**
      * Training data set with only in memory because for GBDT data will be changed in later iterations.
      */
-    private volatile MemoryLimitedList<Data> trainingData;
+    private volatile DTDataSet trainingData;
 
     /**
      * Validation data set with only in memory because for GBDT data will be changed in later iterations.
      */
-    private volatile MemoryLimitedList<Data> validationData;
+    private volatile DTDataSet validationData;
 
     /**
      * PoissonDistribution which is used for up sampling positive records.
@@ -214,9 +223,9 @@ public class DTWorker extends
     private Map<Integer, Random> validationRandomMap = new HashMap<Integer, Random>();
 
     /**
-     * A splitter to split data with specified delimiter.
+     * Reusable record view to index fields with specified delimiter.
      */
-    private Splitter splitter;
+    private DelimitedRecord record;
 
     /**
      * Index map in which column index and data input array index for fast location.
@@ -327,6 +336,38 @@ public class DTWorker extends
      */
     private Random dropOutRandom = new Random(System.currentTimeMillis() + 5000L);
 
+    /**
+     * Node id of each training record in GBDT tree {@link #cachedNodeTreeId} by last iteration. Trees are only grown on
+     * leaves, records can continue from such node instead of walking from ROOT each iteration.
+     */
+    private int[] trainNodeIds;
+
+    /**
+     * GBDT tree id of node ids in {@link #trainNodeIds}.
+     */
+    private int cachedNodeTreeId = -1;
+
+    /**
+     * Node stats (nodeId, stats) of todo nodes in last iteration of current GBDT tree, they are parent stats of todo
+     * nodes in current iteration for histogram subtraction.
+     * 
+     * <p>
+     * Such copies are kept besides stats sent to master, which almost doubles node stats memory in worker. Stats of
+     * nodes whose children can never be todo nodes (children at {@link #maxDepth} in level-wise tree growth) are not
+     * cached, and all are released once a new tree is started.
+     */
+    private Map<Integer, NodeStats> lastNodeStats;
+
+    /**
+     * Max depth of a tree, the same as 'MaxDepth' in DTMaster, only used to bound {@link #lastNodeStats}.
+     */
+    private int maxDepth = 10;
+
+    /**
+     * If leaf-wise tree growth ('MaxLeaves' > 0) is enabled, depth is not a limit of todo nodes.
+     */
+    private boolean isLeafWise = false;
+
     /**
      * Random object to sample negative records
      */
@@ -334,6 +375,33 @@ public class DTWorker extends
 
     private boolean hasCandidates;
 
+    /**
+     * If training and validation data are packed in {@link CompactDataSet} instead of one {@link Data} per record.
+     */
+    private boolean isCompactData = false;
+
+    /**
+     * Number of local top features voted for each node, voting is disabled if not positive. In voting mode, worker
+     * only sends votes at first and then stats of candidate features selected by master, to save message size and
+     * merging cost of master when there are many features.
+     */
+    private int votingTopK = 0;
+
+    /**
+     * Node stats computed in voting round, kept to send stats of candidate features in next iteration.
+     */
+    private Map<Integer, NodeStats> votingNodeStats;
+
+    /**
+     * Time by {@link System#nanoTime()} when last result is built, start of worker wait phase in next iteration.
+     */
+    private long lastResultNanos;
+
+    /**
+     * If serialized size of result is measured for training profile.
+     */
+    private boolean isProfileResultBytes;
+
     @Override
     public void initRecordReader(GuaguaFileSplit fileSplit) throws IOException {
         super.setRecordReader(new GuaguaLineRecordReader(fileSplit));
@@ -348,6 +416,8 @@ public class DTWorker extends
     @Override
     public void init(WorkerContext<DTMasterParams, DTWorkerParams> context) {
         Properties props = context.getProps();
+        this.isProfileResultBytes = Boolean.TRUE.toString()
+                .equalsIgnoreCase(props.getProperty(CommonConstants.SHIFU_PROFILE_RESULT_BYTES));
         try {
             SourceType sourceType = SourceType
                     .valueOf(props.getProperty(CommonConstants.MODELSET_SOURCE_TYPE, SourceType.HDFS.toString()));
@@ -377,9 +447,9 @@ public class DTWorker extends
         
         this.hasCandidates = CommonUtils.hasCandidateColumns(columnConfigList);
 
-        // create Splitter
+        // create record view
         String delimiter = context.getProps().getProperty(Constants.SHIFU_OUTPUT_DATA_DELIMITER);
-        this.splitter = MapReduceUtils.generateShifuOutputSplitter(delimiter);
+        this.record = MapReduceUtils.generateShifuOutputRecord(delimiter);
 
         Integer kCrossValidation = this.modelConfig.getTrain().getNumKFold();
         if(kCrossValidation != null && kCrossValidation > 0) {
@@ -429,27 +499,6 @@ public class DTWorker extends
         double memoryFraction = Double.valueOf(context.getProps().getProperty("guagua.data.memoryFraction", "0.6"));
         LOG.info("Max heap memory: {}, fraction: {}", Runtime.getRuntime().maxMemory(), memoryFraction);
 
-        double validationRate = this.modelConfig.getValidSetRate();
-        if(StringUtils.isNotBlank(modelConfig.getValidationDataSetRawPath())) {
-            // fixed 0.6 and 0.4 of max memory for trainingData and validationData
-            this.trainingData = new MemoryLimitedList<Data>(
-                    (long) (Runtime.getRuntime().maxMemory() * memoryFraction * 0.6), new ArrayList<Data>());
-            this.validationData = new MemoryLimitedList<Data>(
-                    (long) (Runtime.getRuntime().maxMemory() * memoryFraction * 0.4), new ArrayList<Data>());
-        } else {
-            if(Double.compare(validationRate, 0d) != 0) {
-                this.trainingData = new MemoryLimitedList<Data>(
-                        (long) (Runtime.getRuntime().maxMemory() * memoryFraction * (1 - validationRate)),
-                        new ArrayList<Data>());
-                this.validationData = new MemoryLimitedList<Data>(
-                        (long) (Runtime.getRuntime().maxMemory() * memoryFraction * validationRate),
-                        new ArrayList<Data>());
-            } else {
-                this.trainingData = new MemoryLimitedList<Data>(
-                        (long) (Runtime.getRuntime().maxMemory() * memoryFraction), new ArrayList<Data>());
-            }
-        }
-
         int[] inputOutputIndex = DTrainUtils.getNumericAndCategoricalInputAndOutputCounts(this.columnConfigList);
         // numerical + categorical = # of all input
         this.inputCount = inputOutputIndex[0] + inputOutputIndex[1];
@@ -509,6 +558,36 @@ public class DTWorker extends
 
         this.isStratifiedSampling = this.modelConfig.getTrain().getStratifiedSample();
 
+        Object maxDepthObj = validParams.get("MaxDepth");
+        if(maxDepthObj != null) {
+            this.maxDepth = Integer.valueOf(maxDepthObj.toString());
+        }
+        Object maxLeavesObj = validParams.get("MaxLeaves");
+        this.isLeafWise = maxLeavesObj != null && Integer.valueOf(maxLeavesObj.toString()) > 0;
+
+        Object votingTopKObj = validParams.get(CommonConstants.DT_VOTING_TOP_K);
+        if(votingTopKObj != null) {
+            this.votingTopK = Integer.valueOf(votingTopKObj.toString());
+        }
+
+        // data sets are created after tree num and GBDT sampling params are read, which decide subsample weights size
+        Object compactObj = validParams.get(DT_COMPACT_DATA);
+        this.isCompactData = compactObj != null && Boolean.TRUE.toString().equalsIgnoreCase(compactObj.toString());
+        double validationRate = this.modelConfig.getValidSetRate();
+        double maxBytes = Runtime.getRuntime().maxMemory() * memoryFraction;
+        if(StringUtils.isNotBlank(modelConfig.getValidationDataSetRawPath())) {
+            // fixed 0.6 and 0.4 of max memory for trainingData and validationData
+            this.trainingData = newDataSet((long) (maxBytes * 0.6), true);
+            this.validationData = newDataSet((long) (maxBytes * 0.4), false);
+        } else {
+            if(Double.compare(validationRate, 0d) != 0) {
+                this.trainingData = newDataSet((long) (maxBytes * (1 - validationRate)), true);
+                this.validationData = newDataSet((long) (maxBytes * validationRate), false);
+            } else {
+                this.trainingData = newDataSet((long) maxBytes, true);
+            }
+        }
+
         this.checkpointOutput = new Path(context.getProps()
                 .getProperty(CommonConstants.SHIFU_DT_MASTER_CHECKPOINT_FOLDER, "tmp/cp_" + context.getAppId()));
 
@@ -561,6 +640,10 @@ public class DTWorker extends
         }
 
         DTMasterParams lastMasterResult = context.getLastMasterResult();
+        if(lastMasterResult.getCandidateFeatures() != null) {
+            return projectVotingNodeStats(lastMasterResult.getCandidateFeatures(), lastMasterResult.getTodoNodes());
+        }
+
         final List<TreeNode> trees = lastMasterResult.getTrees();
         final Map<Integer, TreeNode> todoNodes = lastMasterResult.getTodoNodes();
         if(todoNodes == null) {
@@ -568,8 +651,10 @@ public class DTWorker extends
         }
 
         LOG.info("Start to work: todoNodes size is {}", todoNodes.size());
-
-        Map<Integer, NodeStats> statistics = initTodoNodeStats(todoNodes);
+        IterationProfile profile = new IterationProfile(1);
+        if(this.lastResultNanos > 0L) {
+            profile.set(Phase.WORKER_WAIT, System.nanoTime() - this.lastResultNanos);
+        }
 
         double trainError = 0d, validationError = 0d;
         double weightedTrainCount = 0d, weightedValidationCount = 0d;
@@ -589,16 +674,18 @@ public class DTWorker extends
                     Node predictNode = predictNodeIndex(treeNode.getNode(), data, true);
                     if(predictNode.getPredict() != null) {
                         // only update when not in first node, for treeNode, no predict statistics at that time
-                        float weight = data.subsampleWeights[treeNode.getTreeId()];
+                        float weight = data.getSubsampleWeight(treeNode.getTreeId());
                         if(Float.compare(weight, 0f) == 0) {
                             // oob data, no need to do weighting
-                            validationError += data.significance
-                                    * loss.computeError((float) (predictNode.getPredict().getPredict()), data.label);
-                            weightedValidationCount += data.significance;
+                            validationError += data.getSignificance()
+                                    * loss.computeError((float) (predictNode.getPredict().getPredict()),
+                                            data.getLabel());
+                            weightedValidationCount += data.getSignificance();
                         } else {
-                            trainError += weight * data.significance
-                                    * loss.computeError((float) (predictNode.getPredict().getPredict()), data.label);
-                            weightedTrainCount += weight * data.significance;
+                            trainError += weight * data.getSignificance()
+                                    * loss.computeError((float) (predictNode.getPredict().getPredict()),
+                                            data.getLabel());
+                            weightedTrainCount += weight * data.getSignificance();
                         }
                     }
                 }
@@ -606,16 +693,16 @@ public class DTWorker extends
 
             if(this.isGBDT) {
                 if(this.isContinuousEnabled && lastMasterResult.isContinuousRunningStart()) {
-                    recoverGBTData(context, data.output, data.predict, data, false);
-                    trainError += data.significance * loss.computeError(data.predict, data.label);
-                    weightedTrainCount += data.significance;
+                    recoverGBTData(context, data.getOutput(), data.getPredict(), data, false);
+                    trainError += data.getSignificance() * loss.computeError(data.getPredict(), data.getLabel());
+                    weightedTrainCount += data.getSignificance();
                 } else {
                     if(isNeedRecoverGBDTPredict) {
                         if(this.recoverTrees == null) {
                             this.recoverTrees = recoverCurrentTrees();
                         }
                         // recover gbdt data for fail over
-                        recoverGBTData(context, data.output, data.predict, data, true);
+                        recoverGBTData(context, data.getOutput(), data.getPredict(), data, true);
                     }
                     int currTreeIndex = trees.size() - 1;
 
@@ -628,21 +715,21 @@ public class DTWorker extends
                                 // first tree logic, master must set it to first tree even second tree with ROOT is
                                 // sending
                                 if(context.getLastMasterResult().isFirstTree()) {
-                                    data.predict = (float) predict;
+                                    data.setPredict((float) predict);
                                 } else {
                                     // random drop
                                     boolean drop = (this.dropOutRate > 0.0
                                             && dropOutRandom.nextDouble() < this.dropOutRate);
                                     if(!drop) {
-                                        data.predict += (float) (this.learningRate * predict);
+                                        data.setPredict(data.getPredict() + (float) (this.learningRate * predict));
                                     }
                                 }
-                                data.output = -1f * loss.computeGradient(data.predict, data.label);
+                                data.setOutput(-1f * loss.computeGradient(data.getPredict(), data.getLabel()));
                             }
                             // if not sampling with replacement in gbdt, renew bagging sample rate in next tree
                             if(!this.gbdtSampleWithReplacement) {
                                 Random random = null;
-                                int classValue = (int) (data.label + 0.01f);
+                                int classValue = (int) (data.getLabel() + 0.01f);
                                 if(this.isStratifiedSampling) {
                                     random = baggingRandomMap.get(classValue);
                                     if(random == null) {
@@ -661,9 +748,9 @@ public class DTWorker extends
                                     }
                                 }
                                 if(random.nextDouble() <= modelConfig.getTrain().getBaggingSampleRate()) {
-                                    data.subsampleWeights[currTreeIndex % data.subsampleWeights.length] = 1f;
+                                    data.setSubsampleWeight(currTreeIndex, 1f);
                                 } else {
-                                    data.subsampleWeights[currTreeIndex % data.subsampleWeights.length] = 0f;
+                                    data.setSubsampleWeight(currTreeIndex, 0f);
                                 }
                             }
                         }
@@ -673,17 +760,19 @@ public class DTWorker extends
                         Node currTree = trees.get(currTreeIndex).getNode();
                         Node predictNode = predictNodeIndex(currTree, data, true);
                         if(predictNode.getPredict() != null) {
-                            trainError += data.significance
-                                    * loss.computeError((float) (predictNode.getPredict().getPredict()), data.label);
-                            weightedTrainCount += data.significance;
+                            trainError += data.getSignificance()
+                                    * loss.computeError((float) (predictNode.getPredict().getPredict()),
+                                            data.getLabel());
+                            weightedTrainCount += data.getSignificance();
                         }
                     } else {
-                        trainError += data.significance * loss.computeError(data.predict, data.label);
-                        weightedTrainCount += data.significance;
+                        trainError += data.getSignificance() * loss.computeError(data.getPredict(), data.getLabel());
+                        weightedTrainCount += data.getSignificance();
                     }
                 }
             }
         }
+        profile.add(Phase.WORKER_COMPUTE, System.nanoTime() - start);
         LOG.debug("Compute train error time is {}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
 
         if(validationData != null) {
@@ -697,25 +786,27 @@ public class DTWorker extends
                         Node predictNode = predictNodeIndex(treeNode.getNode(), data, true);
                         if(predictNode.getPredict() != null) {
                             // only update when not in first node, for treeNode, no predict statistics at that time
-                            validationError += data.significance
-                                    * loss.computeError((float) (predictNode.getPredict().getPredict()), data.label);
-                            weightedValidationCount += data.significance;
+                            validationError += data.getSignificance()
+                                    * loss.computeError((float) (predictNode.getPredict().getPredict()),
+                                            data.getLabel());
+                            weightedValidationCount += data.getSignificance();
                         }
                     }
                 }
 
                 if(this.isGBDT) {
                     if(this.isContinuousEnabled && lastMasterResult.isContinuousRunningStart()) {
-                        recoverGBTData(context, data.output, data.predict, data, false);
-                        validationError += data.significance * loss.computeError(data.predict, data.label);
-                        weightedValidationCount += data.significance;
+                        recoverGBTData(context, data.getOutput(), data.getPredict(), data, false);
+                        validationError += data.getSignificance()
+                                * loss.computeError(data.getPredict(), data.getLabel());
+                        weightedValidationCount += data.getSignificance();
                     } else {
                         if(isNeedRecoverGBDTPredict) {
                             if(this.recoverTrees == null) {
                                 this.recoverTrees = recoverCurrentTrees();
                             }
                             // recover gbdt data for fail over
-                            recoverGBTData(context, data.output, data.predict, data, true);
+                            recoverGBTData(context, data.getOutput(), data.getPredict(), data, true);
                         }
                         int currTreeIndex = trees.size() - 1;
                         if(lastMasterResult.isSwitchToNextTree()) {
@@ -725,34 +816,40 @@ public class DTWorker extends
                                 if(predictNode.getPredict() != null) {
                                     double predict = predictNode.getPredict().getPredict();
                                     if(context.getLastMasterResult().isFirstTree()) {
-                                        data.predict = (float) predict;
+                                        data.setPredict((float) predict);
                                     } else {
-                                        data.predict += (float) (this.learningRate * predict);
+                                        data.setPredict(data.getPredict() + (float) (this.learningRate * predict));
                                     }
-                                    data.output = -1f * loss.computeGradient(data.predict, data.label);
+                                    data.setOutput(-1f * loss.computeGradient(data.getPredict(), data.getLabel()));
                                 }
                             }
                         }
                         if(context.getLastMasterResult().isFirstTree() && !lastMasterResult.isSwitchToNextTree()) {
                             Node predictNode = predictNodeIndex(trees.get(currTreeIndex).getNode(), data, true);
                             if(predictNode.getPredict() != null) {
-                                validationError += data.significance * loss
-                                        .computeError((float) (predictNode.getPredict().getPredict()), data.label);
-                                weightedValidationCount += data.significance;
+                                validationError += data.getSignificance() * loss
+                                        .computeError((float) (predictNode.getPredict().getPredict()), data.getLabel());
+                                weightedValidationCount += data.getSignificance();
                             }
                         } else {
-                            validationError += data.significance * loss.computeError(data.predict, data.label);
-                            weightedValidationCount += data.significance;
+                            validationError += data.getSignificance()
+                                * loss.computeError(data.getPredict(), data.getLabel());
+                            weightedValidationCount += data.getSignificance();
                         }
                     }
                 }
             }
+            profile.set(Phase.WORKER_SCAN, System.nanoTime() - start);
             LOG.debug("Compute val error time is {}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
         }
 
         if(this.isGBDT) {
             // reset trees to null to save memory
             this.recoverTrees = null;
+            if(this.isNeedRecoverGBDTPredict || lastMasterResult.isContinuousRunningStart()) {
+                // outputs are recovered, cached node ids and parent stats cannot be trusted
+                this.cachedNodeTreeId = -1;
+            }
             if(this.isNeedRecoverGBDTPredict) {
                 // no need recover again
                 this.isNeedRecoverGBDTPredict = false;
@@ -760,172 +857,540 @@ public class DTWorker extends
         }
 
         start = System.nanoTime();
-        CompletionService<Map<Integer, NodeStats>> completionService = new ExecutorCompletionService<Map<Integer, NodeStats>>(
-                this.threadPool);
+        Map<Integer, NodeStats> statistics;
+        if(this.isGBDT) {
+            statistics = computeGBTNodeStats(trees.get(trees.size() - 1), todoNodes);
+        } else {
+            statistics = computeRFNodeStats(trees, todoNodes);
+        }
+        profile.add(Phase.WORKER_COMPUTE, System.nanoTime() - start);
+        LOG.debug("Compute stats time is {}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
 
-        int realThreadCount = 0;
-        LOG.debug("while todo size {}", todoNodes.size());
+        LOG.info(
+                "worker count is {}, error is {}, and stats size is {}. weightedTrainCount {}, weightedValidationCount {}, trainError {}, validationError {}",
+                count, trainError, statistics.size(), weightedTrainCount, weightedValidationCount, trainError,
+                validationError);
+        DTWorkerParams params;
+        if(this.votingTopK > 0) {
+            this.votingNodeStats = statistics;
+            params = new DTWorkerParams(weightedTrainCount, weightedValidationCount, trainError, validationError,
+                    null);
+            params.setVotedFeaturesMap(voteTopFeatures(statistics));
+        } else {
+            params = new DTWorkerParams(weightedTrainCount, weightedValidationCount, trainError, validationError,
+                    statistics);
+        }
+        if(this.isProfileResultBytes) {
+            profile.set(Phase.RESULT_BYTES, IterationProfile.sizeOf(params));
+        }
+        params.setProfile(profile);
+        this.lastResultNanos = System.nanoTime();
+        return params;
+    }
 
-        int realRecords = this.trainingData.size();
-        int realThreads = this.workerThreadCount > realRecords ? realRecords : this.workerThreadCount;
+    /**
+     * Vote local top {@link #votingTopK} features of each node by gain computed on local stats. Features without
+     * positive gain are not voted.
+     * 
+     * @param statistics
+     *            local node stats of todo nodes
+     * @return node key to voted column numbers
+     */
+    private Map<Integer, int[]> voteTopFeatures(Map<Integer, NodeStats> statistics) {
+        final int[] keys = new int[statistics.size()];
+        List<Callable<int[]>> tasks = new ArrayList<Callable<int[]>>(statistics.size());
+        int slot = 0;
+        for(Entry<Integer, NodeStats> entry: statistics.entrySet()) {
+            keys[slot++] = entry.getKey();
+            final NodeStats nodeStats = entry.getValue();
+            tasks.add(new Callable<int[]>() {
+                @Override
+                public int[] call() {
+                    final int[] features = nodeStats.getFeatures();
+                    final double[] gains = new double[features.length];
+                    List<Integer> voted = new ArrayList<Integer>();
+                    for(int i = 0; i < features.length; i++) {
+                        GainInfo gainInfo = DTWorker.this.impurity.computeImpurity(nodeStats.getFeatureStatistics(i),
+                                DTWorker.this.columnConfigList.get(features[i]));
+                        if(gainInfo != null && gainInfo.getGain() > 0d) {
+                            gains[i] = gainInfo.getGain();
+                            voted.add(i);
+                        }
+                    }
+                    // gain descending and then feature index ascending to be deterministic
+                    Collections.sort(voted, new Comparator<Integer>() {
+                        @Override
+                        public int compare(Integer o1, Integer o2) {
+                            int result = Double.compare(gains[o2], gains[o1]);
+                            return result != 0 ? result : o1.compareTo(o2);
+                        }
+                    });
+                    int[] columnNums = new int[Math.min(voted.size(), DTWorker.this.votingTopK)];
+                    for(int i = 0; i < columnNums.length; i++) {
+                        columnNums[i] = features[voted.get(i)];
+                    }
+                    return columnNums;
+                }
+            });
+        }
 
-        int[] trainLows = new int[realThreads];
-        int[] trainHighs = new int[realThreads];
+        List<int[]> results = invokeAll(tasks);
+        Map<Integer, int[]> votedFeaturesMap = new HashMap<Integer, int[]>(keys.length, 1f);
+        for(int i = 0; i < keys.length; i++) {
+            votedFeaturesMap.put(keys[i], results.get(i));
+        }
+        return votedFeaturesMap;
+    }
 
-        int stepCount = realRecords / realThreads;
-        if(realRecords % realThreads != 0) {
-            // move step count to append last gap to avoid last thread worse 2*stepCount-1
-            stepCount += (realRecords % realThreads) / stepCount;
+    /**
+     * Send stats of candidate features from node stats kept in voting round, no data is scanned. Errors are already
+     * sent in voting round, so they are zero here.
+     * 
+     * @param candidateFeatures
+     *            node key to candidate column numbers selected by master
+     * @param todoNodes
+     *            todo nodes of voting round, only used if node stats are lost in worker fail over
+     * @return worker params with stats of candidate features
+     */
+    private DTWorkerParams projectVotingNodeStats(Map<Integer, int[]> candidateFeatures,
+            Map<Integer, TreeNode> todoNodes) {
+        if(this.votingNodeStats == null) {
+            // worker is recovered after voting round, send empty stats of candidates and only stats of this worker are
+            // missing in current split
+            LOG.warn("Node stats of voting round are not found, empty stats are sent.");
         }
-        for(int i = 0; i < realThreads; i++) {
-            trainLows[i] = i * stepCount;
-            if(i != realThreads - 1) {
-                trainHighs[i] = trainLows[i] + stepCount - 1;
-            } else {
-                trainHighs[i] = realRecords - 1;
-            }
+        Map<Integer, NodeStats> statistics = new HashMap<Integer, NodeStats>(candidateFeatures.size(), 1f);
+        for(Entry<Integer, int[]> entry: candidateFeatures.entrySet()) {
+            NodeStats nodeStats = this.votingNodeStats == null ? newNodeStats(todoNodes.get(entry.getKey()))
+                    : this.votingNodeStats.get(entry.getKey());
+            statistics.put(entry.getKey(), nodeStats.project(entry.getValue()));
         }
+        // release stats of voting round
+        this.votingNodeStats = null;
+        LOG.info("Send stats of candidate features for {} nodes.", statistics.size());
+        return new DTWorkerParams(0d, 0d, 0d, 0d, statistics);
+    }
 
-        for(int i = 0; i < realThreads; i++) {
-            final Map<Integer, TreeNode> localTodoNodes = new HashMap<Integer, TreeNode>(todoNodes);
-            final Map<Integer, NodeStats> localStatistics = initTodoNodeStats(todoNodes);
+    /**
+     * Compute node stats of todo nodes for RF. All trees are walked from ROOT for each record as todo nodes can be in
+     * any tree.
+     */
+    private Map<Integer, NodeStats> computeRFNodeStats(final List<TreeNode> trees,
+            final Map<Integer, TreeNode> todoNodes) {
+        final int todoSize = todoNodes.size();
+        final int[] todoKeys = new int[todoSize];
+        final NodeStats[] templates = new NodeStats[todoSize];
+        final int[][] inputIndexes = new int[todoSize][];
+        int slot = 0;
+        for(Entry<Integer, TreeNode> entry: todoNodes.entrySet()) {
+            todoKeys[slot] = entry.getKey();
+            templates[slot] = newNodeStats(entry.getValue());
+            inputIndexes[slot] = getInputIndexes(templates[slot].getFeatures());
+            slot += 1;
+        }
+        LOG.debug("while todo size {}", todoSize);
 
+        int[][] ranges = getThreadRanges(this.trainingData.size());
+        int[] trainLows = ranges[0];
+        int[] trainHighs = ranges[1];
+        List<Callable<NodeStats[]>> tasks = new ArrayList<Callable<NodeStats[]>>(trainLows.length);
+        for(int i = 0; todoSize > 0 && i < trainLows.length; i++) {
             final int startIndex = trainLows[i];
             final int endIndex = trainHighs[i];
-            LOG.info("Thread {} todo size {} stats size {} start index {} end index {}", i, localTodoNodes.size(),
-                    localStatistics.size(), startIndex, endIndex);
-
-            if(localTodoNodes.size() == 0) {
-                continue;
-            }
-            realThreadCount += 1;
-            completionService.submit(new Callable<Map<Integer, NodeStats>>() {
+            LOG.info("Thread {} todo size {} start index {} end index {}", i, todoSize, startIndex, endIndex);
+            tasks.add(new Callable<NodeStats[]>() {
                 @Override
-                public Map<Integer, NodeStats> call() throws Exception {
+                public NodeStats[] call() throws Exception {
                     long start = System.nanoTime();
-                    List<Integer> nodeIndexes = new ArrayList<Integer>(trees.size());
+                    NodeStats[] localStats = newLocalNodeStats(templates, null);
+                    int[] nodeIndexes = new int[trees.size()];
+                    Data data = null;
                     for(int j = startIndex; j <= endIndex; j++) {
-                        Data data = DTWorker.this.trainingData.get(j);
-                        nodeIndexes.clear();
-                        if(DTWorker.this.isRF) {
-                            for(TreeNode treeNode: trees) {
-                                if(treeNode.getNode().getId() == Node.INVALID_INDEX) {
-                                    nodeIndexes.add(Node.INVALID_INDEX);
-                                } else {
-                                    Node predictNode = predictNodeIndex(treeNode.getNode(), data, false);
-                                    nodeIndexes.add(predictNode.getId());
-                                }
+                        data = DTWorker.this.trainingData.get(j, data);
+                        for(int t = 0; t < nodeIndexes.length; t++) {
+                            Node root = trees.get(t).getNode();
+                            if(root.getId() == Node.INVALID_INDEX) {
+                                nodeIndexes[t] = Node.INVALID_INDEX;
+                            } else {
+                                nodeIndexes[t] = predictNodeIndex(root, data, false).getId();
                             }
                         }
 
-                        if(DTWorker.this.isGBDT) {
-                            int currTreeIndex = trees.size() - 1;
-                            Node predictNode = predictNodeIndex(trees.get(currTreeIndex).getNode(), data, false);
-                            // update node index
-                            nodeIndexes.add(predictNode.getId());
-                        }
-                        for(Map.Entry<Integer, TreeNode> entry: localTodoNodes.entrySet()) {
+                        for(int k = 0; k < todoSize; k++) {
                             // only do statistics on effective data
-                            Node todoNode = entry.getValue().getNode();
-                            int treeId = entry.getValue().getTreeId();
-                            int currPredictIndex = 0;
-                            if(DTWorker.this.isRF) {
-                                currPredictIndex = nodeIndexes.get(entry.getValue().getTreeId());
-                            }
-                            if(DTWorker.this.isGBDT) {
-                                currPredictIndex = nodeIndexes.get(0);
+                            NodeStats nodeStats = localStats[k];
+                            int treeId = nodeStats.getTreeId();
+                            if(nodeStats.getNodeId() != nodeIndexes[treeId]) {
+                                continue;
                             }
-
-                            if(todoNode.getId() == currPredictIndex) {
-                                List<Integer> features = entry.getValue().getFeatures();
-                                if(features.isEmpty()) {
-                                    features = getAllValidFeatures();
-                                }
-                                for(Integer columnNum: features) {
-                                    double[] featuerStatistic = localStatistics.get(entry.getKey())
-                                            .getFeatureStatistics().get(columnNum);
-                                    float weight = data.subsampleWeights[treeId % data.subsampleWeights.length];
-                                    if(Float.compare(weight, 0f) != 0) {
-                                        // only compute weight is not 0
-                                        short binIndex = data.inputs[DTWorker.this.inputIndexMap.get(columnNum)];
-                                        DTWorker.this.impurity.featureUpdate(featuerStatistic, binIndex, data.output,
-                                                data.significance, weight);
-                                    }
-                                }
+                            float weight = data.getSubsampleWeight(treeId);
+                            if(Float.compare(weight, 0f) != 0) {
+                                // only compute weight is not 0
+                                updateNodeStats(nodeStats, inputIndexes[k], data, weight);
                             }
                         }
                     }
                     LOG.debug("Thread computing stats time is {}ms in thread {}",
                             TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), Thread.currentThread().getName());
-                    return localStatistics;
+                    return localStats;
                 }
             });
         }
 
-        int rCnt = 0;
-        while(rCnt < realThreadCount) {
-            try {
-                Map<Integer, NodeStats> currNodeStatsmap = completionService.take().get();
-                if(rCnt == 0) {
-                    statistics = currNodeStatsmap;
-                } else {
-                    for(Entry<Integer, NodeStats> entry: statistics.entrySet()) {
-                        NodeStats resultNodeStats = entry.getValue();
-                        mergeNodeStats(resultNodeStats, currNodeStatsmap.get(entry.getKey()));
+        NodeStats[] todoStats = tasks.isEmpty() ? templates : reduceNodeStats(invokeAll(tasks));
+        Map<Integer, NodeStats> statistics = new HashMap<Integer, NodeStats>(todoSize, 1f);
+        for(int k = 0; k < todoSize; k++) {
+            statistics.put(todoKeys[k], todoStats[k]);
+        }
+        return statistics;
+    }
+
+    /**
+     * Compute node stats of todo nodes for GBDT. Only the last tree is in building and all todo nodes are in it.
+     * 
+     * <p>
+     * Two passes over training data are run in the thread pool:
+     * <ol>
+     * <li>Each record walks from its cached node in {@link #trainNodeIds} (only new splits since last iteration) to
+     * current leaf, and records in each todo node are counted.</li>
+     * <li>Feature histograms are built only for records in todo nodes which need scanning.</li>
+     * </ol>
+     * 
+     * <p>
+     * If both children of a node are todo nodes and stats of their parent are cached in {@link #lastNodeStats}, only
+     * the child with fewer records is scanned, histograms of its sibling are derived by subtracting from parent
+     * histograms.
+     */
+    private Map<Integer, NodeStats> computeGBTNodeStats(final TreeNode currTree, Map<Integer, TreeNode> todoNodes) {
+        int records = this.trainingData.size();
+        final Node root = currTree.getNode();
+        final int treeId = currTree.getTreeId();
+        if(this.trainNodeIds == null || this.trainNodeIds.length != records || this.cachedNodeTreeId != treeId) {
+            // new tree, all records start from ROOT again, and parent stats of old tree are useless
+            if(this.trainNodeIds == null || this.trainNodeIds.length != records) {
+                this.trainNodeIds = new int[records];
+            }
+            Arrays.fill(this.trainNodeIds, Node.ROOT_INDEX);
+            this.lastNodeStats = null;
+            this.cachedNodeTreeId = treeId;
+        }
+
+        // todo nodes sorted by node id for binary search in per record loop
+        final int todoSize = todoNodes.size();
+        final int[] todoNodeIds = new int[todoSize];
+        Map<Integer, Integer> todoKeyById = new HashMap<Integer, Integer>(todoSize, 1f);
+        for(Entry<Integer, TreeNode> entry: todoNodes.entrySet()) {
+            todoKeyById.put(entry.getValue().getNode().getId(), entry.getKey());
+        }
+        int index = 0;
+        for(Integer nodeId: todoKeyById.keySet()) {
+            todoNodeIds[index++] = nodeId;
+        }
+        Arrays.sort(todoNodeIds);
+        final int[] todoKeys = new int[todoSize];
+        final NodeStats[] templates = new NodeStats[todoSize];
+        final int[][] inputIndexes = new int[todoSize][];
+        for(int i = 0; i < todoSize; i++) {
+            todoKeys[i] = todoKeyById.get(todoNodeIds[i]);
+            templates[i] = newNodeStats(todoNodes.get(todoKeys[i]));
+            inputIndexes[i] = getInputIndexes(templates[i].getFeatures());
+        }
+
+        int[][] ranges = getThreadRanges(records);
+        final int[] lows = ranges[0];
+        final int[] highs = ranges[1];
+
+        // pass 1: move records to current leaves and count records in todo nodes
+        List<Callable<long[]>> countTasks = new ArrayList<Callable<long[]>>(lows.length);
+        for(int i = 0; i < lows.length; i++) {
+            final int startIndex = lows[i];
+            final int endIndex = highs[i];
+            countTasks.add(new Callable<long[]>() {
+                @Override
+                public long[] call() throws Exception {
+                    long[] counts = new long[todoSize];
+                    int[] nodeIds = DTWorker.this.trainNodeIds;
+                    Data data = null;
+                    for(int j = startIndex; j <= endIndex; j++) {
+                        data = DTWorker.this.trainingData.get(j, data);
+                        Node startNode = findNode(root, nodeIds[j]);
+                        if(startNode == null) {
+                            // tree is not grown from the cached node, walk from ROOT
+                            startNode = root;
+                        }
+                        int nodeId = predictNodeIndex(startNode, data, false).getId();
+                        nodeIds[j] = nodeId;
+                        int slot = Arrays.binarySearch(todoNodeIds, nodeId);
+                        if(slot >= 0
+                                && Float.compare(data.getSubsampleWeight(treeId), 0f) != 0) {
+                            counts[slot] += 1L;
+                        }
                     }
+                    return counts;
                 }
-            } catch (ExecutionException e) {
-                throw new RuntimeException(e);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+            });
+        }
+        long[] todoCounts = new long[todoSize];
+        for(long[] counts: invokeAll(countTasks)) {
+            for(int i = 0; i < todoSize; i++) {
+                todoCounts[i] += counts[i];
             }
-            rCnt += 1;
         }
-        LOG.debug("Compute stats time is {}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
 
-        LOG.info(
-                "worker count is {}, error is {}, and stats size is {}. weightedTrainCount {}, weightedValidationCount {}, trainError {}, validationError {}",
-                count, trainError, statistics.size(), weightedTrainCount, weightedValidationCount, trainError,
-                validationError);
-        return new DTWorkerParams(weightedTrainCount, weightedValidationCount, trainError, validationError, statistics);
+        // plan sibling subtraction: derivedFrom[i] is the slot of scanned sibling, -1 if slot i is scanned
+        final int[] derivedFrom = new int[todoSize];
+        Arrays.fill(derivedFrom, -1);
+        for(int i = 0; i < todoSize; i++) {
+            int nodeId = todoNodeIds[i];
+            if(nodeId == Node.ROOT_INDEX || derivedFrom[i] >= 0 || this.lastNodeStats == null) {
+                continue;
+            }
+            int sibling = Arrays.binarySearch(todoNodeIds, nodeId ^ 1);
+            NodeStats parentStats = this.lastNodeStats.get(Node.parentIndex(nodeId));
+            if(sibling < 0 || derivedFrom[sibling] >= 0 || parentStats == null
+                    || !containsAllFeatures(parentStats, templates[i].getFeatures())
+                    || !containsAllFeatures(parentStats, templates[sibling].getFeatures())) {
+                continue;
+            }
+            // scan the one with fewer records, the larger one is derived
+            if(todoCounts[i] <= todoCounts[sibling]) {
+                derivedFrom[sibling] = i;
+            } else {
+                derivedFrom[i] = sibling;
+            }
+        }
+
+        // pass 2: build histograms only for records in todo nodes to be scanned
+        List<Callable<NodeStats[]>> statsTasks = new ArrayList<Callable<NodeStats[]>>(lows.length);
+        for(int i = 0; i < lows.length; i++) {
+            final int startIndex = lows[i];
+            final int endIndex = highs[i];
+            statsTasks.add(new Callable<NodeStats[]>() {
+                @Override
+                public NodeStats[] call() throws Exception {
+                    long start = System.nanoTime();
+                    NodeStats[] localStats = newLocalNodeStats(templates, derivedFrom);
+                    int[] nodeIds = DTWorker.this.trainNodeIds;
+                    Data data = null;
+                    for(int j = startIndex; j <= endIndex; j++) {
+                        int slot = Arrays.binarySearch(todoNodeIds, nodeIds[j]);
+                        if(slot < 0 || derivedFrom[slot] >= 0) {
+                            continue;
+                        }
+                        data = DTWorker.this.trainingData.get(j, data);
+                        float weight = data.getSubsampleWeight(treeId);
+                        if(Float.compare(weight, 0f) != 0) {
+                            // only compute weight is not 0
+                            updateNodeStats(localStats[slot], inputIndexes[slot], data, weight);
+                        }
+                    }
+                    LOG.debug("Thread computing stats time is {}ms in thread {}",
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), Thread.currentThread().getName());
+                    return localStats;
+                }
+            });
+        }
+        NodeStats[] todoStats = statsTasks.isEmpty() ? newLocalNodeStats(templates, derivedFrom)
+                : reduceNodeStats(invokeAll(statsTasks));
+
+        Map<Integer, NodeStats> statistics = new HashMap<Integer, NodeStats>(todoSize, 1f);
+        Map<Integer, NodeStats> currNodeStats = new HashMap<Integer, NodeStats>(todoSize, 1f);
+        int derivedCount = 0;
+        for(int k = 0; k < todoSize; k++) {
+            if(derivedFrom[k] >= 0) {
+                derivedCount += 1;
+                todoStats[k] = templates[k];
+                subtractNodeStats(todoStats[k], this.lastNodeStats.get(Node.parentIndex(todoNodeIds[k])),
+                        todoStats[derivedFrom[k]]);
+            }
+            statistics.put(todoKeys[k], todoStats[k]);
+            if(this.isLeafWise || Node.indexToLevel(todoNodeIds[k]) + 1 < this.maxDepth) {
+                // keep a copy as parent stats of next iteration, returned stats may be changed after sending to master
+                currNodeStats.put(todoNodeIds[k], todoStats[k].copy());
+            }
+        }
+        this.lastNodeStats = currNodeStats;
+        LOG.info("Todo node size {}, {} nodes are derived by histogram subtraction.", todoSize, derivedCount);
+        return statistics;
     }
 
-    private void mergeNodeStats(NodeStats resultNodeStats, NodeStats nodeStats) {
-        Map<Integer, double[]> featureStatistics = resultNodeStats.getFeatureStatistics();
-        for(Entry<Integer, double[]> entry: nodeStats.getFeatureStatistics().entrySet()) {
-            double[] statistics = featureStatistics.get(entry.getKey());
-            for(int i = 0; i < statistics.length; i++) {
-                statistics[i] += entry.getValue()[i];
+    /**
+     * Find node by node id in the tree, node id is the path from ROOT: bit 0 for left and bit 1 for right.
+     * 
+     * @return the node, or null if node is not in current tree
+     */
+    static Node findNode(Node root, int nodeId) {
+        Node node = root;
+        for(int shift = 30 - Integer.numberOfLeadingZeros(nodeId); shift >= 0 && node != null; shift--) {
+            node = ((nodeId >>> shift) & 1) == 0 ? node.getLeft() : node.getRight();
+        }
+        return node;
+    }
+
+    private static boolean containsAllFeatures(NodeStats nodeStats, int[] features) {
+        if(Arrays.equals(nodeStats.getFeatures(), features)) {
+            return true;
+        }
+        for(int columnNum: features) {
+            if(nodeStats.indexOf(columnNum) < 0) {
+                return false;
             }
         }
+        return true;
     }
 
-    private Map<Integer, NodeStats> initTodoNodeStats(Map<Integer, TreeNode> todoNodes) {
-        Map<Integer, NodeStats> statistics = new HashMap<Integer, NodeStats>(todoNodes.size(), 1f);
-        for(Map.Entry<Integer, TreeNode> entry: todoNodes.entrySet()) {
-            List<Integer> features = entry.getValue().getFeatures();
-            if(features.isEmpty()) {
-                features = getAllValidFeatures();
+    /**
+     * Derive stats of one child by parent stats minus sibling stats. Float errors of sums are cleaned to 0 to make
+     * empty bins still be empty, impurity uses count == 0 as empty check.
+     */
+    static void subtractNodeStats(NodeStats result, NodeStats parent, NodeStats sibling) {
+        double[] resultStats = result.getStatistics();
+        double[] parentStats = parent.getStatistics();
+        double[] siblingStats = sibling.getStatistics();
+        int[] features = result.getFeatures();
+        boolean isSameLayout = Arrays.equals(parent.getFeatures(), features)
+                && Arrays.equals(sibling.getFeatures(), features);
+        for(int i = 0; i < features.length; i++) {
+            int parentOffset = isSameLayout ? result.getOffset(i) : parent.getOffset(parent.indexOf(features[i]));
+            int siblingOffset = isSameLayout ? result.getOffset(i) : sibling.getOffset(sibling.indexOf(features[i]));
+            int offset = result.getOffset(i);
+            for(int j = 0; j < result.getLength(i); j++) {
+                double parentValue = parentStats[parentOffset + j];
+                double value = parentValue - siblingStats[siblingOffset + j];
+                resultStats[offset + j] = Math.abs(value) <= SUBTRACTION_EPSILON * Math.abs(parentValue) ? 0d : value;
             }
-            Map<Integer, double[]> featureStatistics = new HashMap<Integer, double[]>(features.size(), 1f);
-            for(Integer columnNum: features) {
-                ColumnConfig columnConfig = this.columnConfigList.get(columnNum);
-                if(columnConfig.isNumerical()) {
-                    // TODO, how to process null bin
-                    int featureStatsSize = columnConfig.getBinBoundary().size() * this.impurity.getStatsSize();
-                    featureStatistics.put(columnNum, new double[featureStatsSize]);
-                } else if(columnConfig.isCategorical()) {
-                    // the last one is for invalid value category like ?, *, ...
-                    int featureStatsSize = (columnConfig.getBinCategory().size() + 1) * this.impurity.getStatsSize();
-                    featureStatistics.put(columnNum, new double[featureStatsSize]);
-                }
+        }
+    }
+
+    private void updateNodeStats(NodeStats nodeStats, int[] inputIndexes, Data data, float weight) {
+        double[] statistics = nodeStats.getStatistics();
+        float output = data.getOutput();
+        float significance = data.getSignificance();
+        for(int i = 0; i < inputIndexes.length; i++) {
+            this.impurity.featureUpdate(statistics, nodeStats.getOffset(i), data.getInput(inputIndexes[i]), output,
+                    significance, weight);
+        }
+    }
+
+    /**
+     * Per thread node stats with the same layout of templates, node stats derived by subtraction is skipped.
+     */
+    private static NodeStats[] newLocalNodeStats(NodeStats[] templates, int[] derivedFrom) {
+        NodeStats[] localStats = new NodeStats[templates.length];
+        for(int k = 0; k < templates.length; k++) {
+            if(derivedFrom == null || derivedFrom[k] < 0) {
+                localStats[k] = templates[k].emptyCopy();
             }
-            NodeStats nodeStats = new NodeStats(entry.getValue().getTreeId(), entry.getValue().getNode().getId(),
-                    featureStatistics);
+        }
+        return localStats;
+    }
 
-            statistics.put(entry.getKey(), nodeStats);
+    /**
+     * Merge per thread node stats in a parallel tree-reduce: in each round, pairs of results are merged in thread
+     * pool, the number of results is halved until only one left.
+     * 
+     * @return merged node stats, the first element in results
+     */
+    private NodeStats[] reduceNodeStats(final List<NodeStats[]> results) {
+        for(int step = 1; step < results.size(); step <<= 1) {
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for(int i = 0; i + step < results.size(); i += step << 1) {
+                final NodeStats[] target = results.get(i);
+                final NodeStats[] source = results.get(i + step);
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for(int k = 0; k < target.length; k++) {
+                            if(target[k] != null) {
+                                target[k].merge(source[k]);
+                            }
+                        }
+                        return null;
+                    }
+                });
+            }
+            invokeAll(tasks);
         }
-        return statistics;
+        return results.get(0);
+    }
+
+    private int[] getInputIndexes(int[] features) {
+        int[] inputIndexes = new int[features.length];
+        for(int f = 0; f < features.length; f++) {
+            inputIndexes[f] = this.inputIndexMap.get(features[f]);
+        }
+        return inputIndexes;
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<T>(tasks.size());
+        try {
+            for(Future<T> future: this.threadPool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GuaguaRuntimeException(e);
+        }
+        return results;
+    }
+
+    /**
+     * Split records into ranges for worker threads, last range includes all left records.
+     * 
+     * @return low indexes and high indexes (inclusive) of ranges
+     */
+    private int[][] getThreadRanges(int realRecords) {
+        int realThreads = this.workerThreadCount > realRecords ? realRecords : this.workerThreadCount;
+
+        int[] trainLows = new int[realThreads];
+        int[] trainHighs = new int[realThreads];
+
+        int stepCount = realRecords / realThreads;
+        if(realRecords % realThreads != 0) {
+            // move step count to append last gap to avoid last thread worse 2*stepCount-1
+            stepCount += (realRecords % realThreads) / stepCount;
+        }
+        for(int i = 0; i < realThreads; i++) {
+            trainLows[i] = i * stepCount;
+            if(i != realThreads - 1) {
+                trainHighs[i] = trainLows[i] + stepCount - 1;
+            } else {
+                trainHighs[i] = realRecords - 1;
+            }
+        }
+        return new int[][] { trainLows, trainHighs };
+    }
+
+    /**
+     * Create empty node stats of todo node, all sub-sampling features are in one flat stats buffer.
+     */
+    private NodeStats newNodeStats(TreeNode todoNode) {
+        List<Integer> features = todoNode.getFeatures();
+        if(features.isEmpty()) {
+            features = getAllValidFeatures();
+        }
+        int size = 0;
+        int[] columnNums = new int[features.size()];
+        int[] statsSizes = new int[features.size()];
+        for(Integer columnNum: features) {
+            ColumnConfig columnConfig = this.columnConfigList.get(columnNum);
+            if(columnConfig.isNumerical()) {
+                // TODO, how to process null bin
+                statsSizes[size] = columnConfig.getBinBoundary().size() * this.impurity.getStatsSize();
+            } else if(columnConfig.isCategorical()) {
+                // the last one is for invalid value category like ?, *, ...
+                statsSizes[size] = (columnConfig.getBinCategory().size() + 1) * this.impurity.getStatsSize();
+            } else {
+                continue;
+            }
+            columnNums[size] = columnNum;
+            size += 1;
+        }
+        return new NodeStats(todoNode.getTreeId(), todoNode.getNode().getId(), Arrays.copyOf(columnNums, size),
+                Arrays.copyOf(statsSizes, size));
     }
 
     @Override
@@ -1052,7 +1517,7 @@ public class DTWorker extends
         }
         short value = 0;
         if(columnConfig.isNumerical()) {
-            short binIndex = data.inputs[inputIndex];
+            short binIndex = data.getInput(inputIndex);
             value = binIndex;
             double valueToBinLowestValue = columnConfig.getBinBoundary().get(binIndex);
             if(valueToBinLowestValue < split.getThreshold()) {
@@ -1063,9 +1528,9 @@ public class DTWorker extends
         } else if(columnConfig.isCategorical()) {
             short indexValue = (short) (columnConfig.getBinCategory().size());
             value = indexValue;
-            if(data.inputs[inputIndex] >= 0
-                    && data.inputs[inputIndex] < (short) (columnConfig.getBinCategory().size())) {
-                indexValue = data.inputs[inputIndex];
+            if(data.getInput(inputIndex) >= 0
+                    && data.getInput(inputIndex) < (short) (columnConfig.getBinCategory().size())) {
+                indexValue = data.getInput(inputIndex);
             } else {
                 // for invalid category, set to last one
                 indexValue = (short) (columnConfig.getBinCategory().size());
@@ -1109,11 +1574,12 @@ public class DTWorker extends
         short[] inputs = new short[this.inputCount];
         float ideal = 0f;
         float significance = 1f;
-        // use guava Splitter to iterate only once
+        // index fields over bytes of text once, Strings are only created for categorical values
         // use NNConstants.NN_DEFAULT_COLUMN_SEPARATOR to replace getModelConfig().getDataSetDelimiter(), super follows
         // the function in akka mode.
-        int index = 0, inputIndex = 0;
-        for(String input: this.splitter.split(currentValue.getWritable().toString())) {
+        this.record.reset(currentValue.getWritable());
+        int inputIndex = 0;
+        for(int index = 0; index < this.record.size(); index++) {
             if(index == this.columnConfigList.size()) {
                 // do we need to check if not weighted directly set to 1f; if such logic non-weight at first, then
                 // weight, how to process???
@@ -1121,8 +1587,8 @@ public class DTWorker extends
                     significance = 1f;
                     break;
                 }
-                // check here to avoid bad performance in failed NumberFormatUtils.getFloat(input, 1f)
-                significance = input.length() == 0 ? 1f : NumberFormatUtils.getFloat(input, 1f);
+                // check here to avoid parsing empty weight
+                significance = this.record.isEmpty(index) ? 1f : this.record.getFloat(index, 1f);
                 // if invalid weight, set it to 1f and warning in log
                 if(Float.compare(significance, 0f) < 0) {
                     LOG.warn("The {} record in current worker weight {} is less than 0f, it is invalid, set it to 1.",
@@ -1134,14 +1600,14 @@ public class DTWorker extends
             } else {
                 ColumnConfig columnConfig = this.columnConfigList.get(index);
                 if(columnConfig != null && columnConfig.isTarget()) {
-                    ideal = getFloatValue(input);
+                    ideal = getFloatValue(index);
                 } else {
                     if(!isAfterVarSelect) {
                         // no variable selected, good candidate but not meta and not target chose
                         if(!columnConfig.isMeta() && !columnConfig.isTarget()
                                 && CommonUtils.isGoodCandidate(columnConfig, this.hasCandidates)) {
                             if(columnConfig.isNumerical()) {
-                                float floatValue = getFloatValue(input);
+                                float floatValue = getFloatValue(index);
                                 // cast is safe as we limit max bin to Short.MAX_VALUE
                                 short binIndex = (short) getBinIndex(floatValue, columnConfig.getBinBoundary());
                                 inputs[inputIndex] = binIndex;
@@ -1150,12 +1616,12 @@ public class DTWorker extends
                                 }
                             } else if(columnConfig.isCategorical()) {
                                 short shortValue = (short) (columnConfig.getBinCategory().size());
-                                if(input.length() == 0) {
+                                if(this.record.isEmpty(index)) {
                                     // empty
                                     shortValue = (short) (columnConfig.getBinCategory().size());
                                 } else {
                                     Integer categoricalIndex = this.columnCategoryIndexMapping
-                                            .get(columnConfig.getColumnNum()).get(input);
+                                            .get(columnConfig.getColumnNum()).get(this.record.getString(index));
                                     if(categoricalIndex == null) {
                                         shortValue = -1; // invalid category, set to -1 for last index
                                     } else {
@@ -1172,7 +1638,7 @@ public class DTWorker extends
                                     this.inputIndexMap.put(columnConfig.getColumnNum(), inputIndex);
                                 }
                             }
-                            hashcode = hashcode * 31 + input.hashCode();
+                            hashcode = hashcode * 31 + this.record.hashCode(index);
                             inputIndex += 1;
                         }
                     } else {
@@ -1180,7 +1646,7 @@ public class DTWorker extends
                         if(columnConfig != null && !columnConfig.isMeta() && !columnConfig.isTarget()
                                 && columnConfig.isFinalSelect()) {
                             if(columnConfig.isNumerical()) {
-                                float floatValue = getFloatValue(input);
+                                float floatValue = getFloatValue(index);
                                 // cast is safe as we limit max bin to Short.MAX_VALUE
                                 short binIndex = (short) getBinIndex(floatValue, columnConfig.getBinBoundary());
                                 inputs[inputIndex] = binIndex;
@@ -1190,12 +1656,12 @@ public class DTWorker extends
                             } else if(columnConfig.isCategorical()) {
                                 // cast is safe as we limit max bin to Short.MAX_VALUE
                                 short shortValue = (short) (columnConfig.getBinCategory().size());
-                                if(input.length() == 0) {
+                                if(this.record.isEmpty(index)) {
                                     // empty
                                     shortValue = (short) (columnConfig.getBinCategory().size());
                                 } else {
                                     Integer categoricalIndex = this.columnCategoryIndexMapping
-                                            .get(columnConfig.getColumnNum()).get(input);
+                                            .get(columnConfig.getColumnNum()).get(this.record.getString(index));
                                     if(categoricalIndex == null) {
                                         shortValue = -1; // invalid category, set to -1 for last index
                                     } else {
@@ -1212,13 +1678,12 @@ public class DTWorker extends
                                     this.inputIndexMap.put(columnConfig.getColumnNum(), inputIndex);
                                 }
                             }
-                            hashcode = hashcode * 31 + input.hashCode();
+                            hashcode = hashcode * 31 + this.record.hashCode(index);
                             inputIndex += 1;
                         }
                     }
                 }
             }
-            index += 1;
         }
 
         // output delimiter in norm can be set by user now and if user set a special one later changed, this exception
@@ -1282,10 +1747,9 @@ public class DTWorker extends
 
         // do bagging sampling only for training data
         if(isInTraining) {
-            data.subsampleWeights = sampleWeights(data.label);
             // for training data, compute real selected training data according to baggingSampleRate
             // if gbdt, only the 1st sampling value is used, if rf, use the 1st to denote some information, no need all
-            if(isPositive(data.label)) {
+            if(isPositive(data.getLabel())) {
                 this.positiveSelectedTrainCount += data.subsampleWeights[0] * 1L;
             } else {
                 this.negativeSelectedTrainCount += data.subsampleWeights[0] * 1L;
@@ -1296,9 +1760,9 @@ public class DTWorker extends
         }
     }
 
-    private float getFloatValue(String input) {
-        // check here to avoid bad performance in failed NumberFormatUtils.getFloat(input, 0f)
-        float floatValue = input.length() == 0 ? 0f : NumberFormatUtils.getFloat(input, 0f);
+    private float getFloatValue(int index) {
+        // empty value is 0f, parsed from bytes without creating String
+        float floatValue = this.record.getFloat(index, 0f);
         // no idea about why NaN in input data, we should process it as missing value TODO , according to norm type
         floatValue = (Float.isNaN(floatValue) || Double.isNaN(floatValue)) ? 0f : floatValue;
         return floatValue;
@@ -1324,15 +1788,15 @@ public class DTWorker extends
             int k = this.modelConfig.getTrain().getNumKFold();
             if(hashcode % k == this.trainerId) {
                 this.validationData.append(data);
-                if(isPositive(data.label)) {
+                if(isPositive(data.getLabel())) {
                     this.positiveValidationCount += 1L;
                 } else {
                     this.negativeValidationCount += 1L;
                 }
                 return false;
             } else {
-                this.trainingData.append(data);
-                if(isPositive(data.label)) {
+                appendTrainingData(data);
+                if(isPositive(data.getLabel())) {
                     this.positiveTrainCount += 1L;
                 } else {
                     this.negativeTrainCount += 1L;
@@ -1344,15 +1808,15 @@ public class DTWorker extends
         if(this.isManualValidation) {
             if(isValidation) {
                 this.validationData.append(data);
-                if(isPositive(data.label)) {
+                if(isPositive(data.getLabel())) {
                     this.positiveValidationCount += 1L;
                 } else {
                     this.negativeValidationCount += 1L;
                 }
                 return false;
             } else {
-                this.trainingData.append(data);
-                if(isPositive(data.label)) {
+                appendTrainingData(data);
+                if(isPositive(data.getLabel())) {
                     this.positiveTrainCount += 1L;
                 } else {
                     this.negativeTrainCount += 1L;
@@ -1361,7 +1825,7 @@ public class DTWorker extends
             }
         } else {
             if(Double.compare(this.modelConfig.getValidSetRate(), 0d) != 0) {
-                int classValue = (int) (data.label + 0.01f);
+                int classValue = (int) (data.getLabel() + 0.01f);
                 Random random = null;
                 if(this.isStratifiedSampling) {
                     // each class use one random instance
@@ -1389,15 +1853,15 @@ public class DTWorker extends
                             + Double.valueOf(this.modelConfig.getValidSetRate() * 100).intValue();
                     if(isInRange(hashcode, startHashCode, endHashCode)) {
                         this.validationData.append(data);
-                        if(isPositive(data.label)) {
+                        if(isPositive(data.getLabel())) {
                             this.positiveValidationCount += 1L;
                         } else {
                             this.negativeValidationCount += 1L;
                         }
                         return false;
                     } else {
-                        this.trainingData.append(data);
-                        if(isPositive(data.label)) {
+                        appendTrainingData(data);
+                        if(isPositive(data.getLabel())) {
                             this.positiveTrainCount += 1L;
                         } else {
                             this.negativeTrainCount += 1L;
@@ -1407,8 +1871,8 @@ public class DTWorker extends
                 } else {
                     // not fixed initial input, if random value >= validRate, training, otherwise validation.
                     if(random.nextDouble() >= this.modelConfig.getValidSetRate()) {
-                        this.trainingData.append(data);
-                        if(isPositive(data.label)) {
+                        appendTrainingData(data);
+                        if(isPositive(data.getLabel())) {
                             this.positiveTrainCount += 1L;
                         } else {
                             this.negativeTrainCount += 1L;
@@ -1416,7 +1880,7 @@ public class DTWorker extends
                         return true;
                     } else {
                         this.validationData.append(data);
-                        if(isPositive(data.label)) {
+                        if(isPositive(data.getLabel())) {
                             this.positiveValidationCount += 1L;
                         } else {
                             this.negativeValidationCount += 1L;
@@ -1425,8 +1889,8 @@ public class DTWorker extends
                     }
                 }
             } else {
-                this.trainingData.append(data);
-                if(isPositive(data.label)) {
+                appendTrainingData(data);
+                if(isPositive(data.getLabel())) {
                     this.positiveTrainCount += 1L;
                 } else {
                     this.negativeTrainCount += 1L;
@@ -1471,7 +1935,7 @@ public class DTWorker extends
                 if(i == 0) {
                     double oldPredict = predictNodeIndex(currTree.getNode(), data, false).getPredict().getPredict();
                     predict = (float) oldPredict;
-                    output = -1f * loss.computeGradient(predict, data.label);
+                    output = -1f * loss.computeGradient(predict, data.getLabel());
                 } else {
                     // random drop
                     if(this.dropOutRate > 0.0 && dropOutRandom.nextDouble() < this.dropOutRate) {
@@ -1479,11 +1943,11 @@ public class DTWorker extends
                     }
                     double oldPredict = predictNodeIndex(currTree.getNode(), data, false).getPredict().getPredict();
                     predict += (float) (this.learningRate * oldPredict);
-                    output = -1f * loss.computeGradient(predict, data.label);
+                    output = -1f * loss.computeGradient(predict, data.getLabel());
                 }
             }
-            data.output = output;
-            data.predict = predict;
+            data.setOutput(output);
+            data.setPredict(predict);
         }
     }
 
@@ -1512,6 +1976,31 @@ public class DTWorker extends
         return trees;
     }
 
+    /**
+     * Create data set according to {@link #isCompactData}. Subsample weights size of compact training data set is the
+     * same as {@link #sampleWeights(float)}, validation data is never sampled and only keeps default weight.
+     */
+    private DTDataSet newDataSet(long maxByteSize, boolean isTraining) {
+        if(!this.isCompactData) {
+            return DTDataSet.newRowDataSet(maxByteSize);
+        }
+        int weightWidth = 1;
+        if(isTraining && !(this.treeNum == 1 || (this.isGBDT && !this.gbdtSampleWithReplacement))) {
+            weightWidth = this.treeNum;
+        }
+        return new CompactDataSet(maxByteSize, this.inputCount,
+                CompactDataSet.isByteInput(this.columnConfigList), weightWidth);
+    }
+
+    /**
+     * Bagging sampling is only for training data, subsample weights are set before appending as compact data set
+     * copies all fields of data in appending.
+     */
+    private void appendTrainingData(Data data) {
+        data.subsampleWeights = sampleWeights(data.getLabel());
+        this.trainingData.append(data);
+    }
+
     private float[] sampleWeights(float label) {
         float[] sampleWeights = null;
         // sample negative or kFoldCV, sample rate is 1d
@@ -1627,6 +2116,47 @@ public class DTWorker extends
             this.subsampleWeights = subsampleWeights;
         }
 
+        /*
+         * Accessors are used in training instead of fields, records in CompactDataSet override them to read and write
+         * packed blocks.
+         */
+
+        short getInput(int index) {
+            return this.inputs[index];
+        }
+
+        float getLabel() {
+            return this.label;
+        }
+
+        float getOutput() {
+            return this.output;
+        }
+
+        void setOutput(float output) {
+            this.output = output;
+        }
+
+        float getPredict() {
+            return this.predict;
+        }
+
+        void setPredict(float predict) {
+            this.predict = predict;
+        }
+
+        float getSignificance() {
+            return this.significance;
+        }
+
+        float getSubsampleWeight(int treeId) {
+            return this.subsampleWeights[treeId % this.subsampleWeights.length];
+        }
+
+        void setSubsampleWeight(int treeId, float weight) {
+            this.subsampleWeights[treeId % this.subsampleWeights.length] = weight;
+        }
+
         @Override
         public void write(DataOutput out) throws IOException {
             out.writeInt(inputs.length);
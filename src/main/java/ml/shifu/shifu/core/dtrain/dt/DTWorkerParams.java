@@ -20,13 +20,14 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import ml.shifu.guagua.io.Bytable;
 import ml.shifu.guagua.io.Combinable;
 import ml.shifu.guagua.io.HaltBytable;
+import ml.shifu.shifu.core.dtrain.IterationProfile;
+import ml.shifu.shifu.core.dtrain.IterationProfiled;
 
 /**
  * Worker result return to master.
@@ -37,11 +38,15 @@ import ml.shifu.guagua.io.HaltBytable;
  * <p>
  * {@link #nodeStatsMap} includes node statistics for each node, key is node group index id from master.
  * 
+ * <p>
+ * In voting mode, the first round only includes {@link #votedFeaturesMap} with local top-k features of each node, and
+ * the second round only includes {@link #nodeStatsMap} of candidate features selected by master.
+ * 
  * @author Zhang David (pengzhang@paypal.com)
  * 
  * @see NodeStats
  */
-public class DTWorkerParams extends HaltBytable implements Combinable<DTWorkerParams> {
+public class DTWorkerParams extends HaltBytable implements Combinable<DTWorkerParams>, IterationProfiled {
 
     /**
      * # of weighted training records per such worker.
@@ -68,6 +73,17 @@ public class DTWorkerParams extends HaltBytable implements Combinable<DTWorkerPa
      */
     private Map<Integer, NodeStats> nodeStatsMap;
 
+    /**
+     * Local top-k feature column numbers of each node in voting round, key is node group index id from master. Arrays
+     * of workers are concatenated in combining, each column number is one vote.
+     */
+    private Map<Integer, int[]> votedFeaturesMap;
+
+    /**
+     * Phase profile of worker in current iteration.
+     */
+    private IterationProfile profile;
+
     public DTWorkerParams() {
     }
 
@@ -96,6 +112,20 @@ public class DTWorkerParams extends HaltBytable implements Combinable<DTWorkerPa
                 entry.getValue().write(out);
             }
         }
+        if(votedFeaturesMap == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            out.writeInt(votedFeaturesMap.size());
+            for(Entry<Integer, int[]> entry: votedFeaturesMap.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                for(int columnNum: entry.getValue()) {
+                    out.writeInt(columnNum);
+                }
+            }
+        }
+        IterationProfile.write(out, this.profile);
     }
 
     @Override
@@ -114,6 +144,19 @@ public class DTWorkerParams extends HaltBytable implements Combinable<DTWorkerPa
                 this.nodeStatsMap.put(key, stats);
             }
         }
+        if(in.readBoolean()) {
+            int len = in.readInt();
+            this.votedFeaturesMap = new HashMap<Integer, int[]>(len, 1f);
+            for(int i = 0; i < len; i++) {
+                int key = in.readInt();
+                int[] columnNums = new int[in.readInt()];
+                for(int j = 0; j < columnNums.length; j++) {
+                    columnNums[j] = in.readInt();
+                }
+                this.votedFeaturesMap.put(key, columnNums);
+            }
+        }
+        this.profile = IterationProfile.read(in);
     }
 
     /**
@@ -131,6 +174,31 @@ public class DTWorkerParams extends HaltBytable implements Combinable<DTWorkerPa
         this.nodeStatsMap = nodeStatsMap;
     }
 
+    /**
+     * @return the votedFeaturesMap
+     */
+    public Map<Integer, int[]> getVotedFeaturesMap() {
+        return votedFeaturesMap;
+    }
+
+    /**
+     * @param votedFeaturesMap
+     *            the votedFeaturesMap to set
+     */
+    public void setVotedFeaturesMap(Map<Integer, int[]> votedFeaturesMap) {
+        this.votedFeaturesMap = votedFeaturesMap;
+    }
+
+    @Override
+    public IterationProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public void setProfile(IterationProfile profile) {
+        this.profile = profile;
+    }
+
     /**
      * @return the squareError
      */
@@ -153,7 +221,12 @@ public class DTWorkerParams extends HaltBytable implements Combinable<DTWorkerPa
     }
 
     /**
-     * Node statistics with {@link #featureStatistics} including all statistics for all sub-sampling features.
+     * Node statistics with {@link #statistics} including all statistics for all sub-sampling features.
+     * 
+     * <p>
+     * Stats of all features are stored in one flat buffer, stats of feature {@code features[i]} are in
+     * [{@code offsets[i]}, {@code offsets[i + 1]}) of {@link #statistics}. Compared with one array per feature in a map,
+     * one buffer per node is much less objects for wide data set, and can be merged and serialized in one loop.
      * 
      * @author Zhang David (pengzhang@paypal.com)
      */
@@ -170,31 +243,105 @@ public class DTWorkerParams extends HaltBytable implements Combinable<DTWorkerPa
         private int treeId;
 
         /**
-         * Feature statistics for sub-sampling features.
+         * Column numbers of sub-sampling features.
          */
-        private Map<Integer, double[]> featureStatistics;
+        private int[] features;
+
+        /**
+         * Start index of each feature in {@link #statistics}, the last one is length of {@link #statistics}.
+         */
+        private int[] offsets;
+
+        /**
+         * Flat feature statistics buffer for sub-sampling features.
+         */
+        private double[] statistics;
 
         public NodeStats() {
         }
 
-        public NodeStats(int treeId, int nodeId, Map<Integer, double[]> featureStatistics) {
+        /**
+         * Constructor with an empty stats buffer.
+         * 
+         * @param treeId
+         *            the tree id
+         * @param nodeId
+         *            the node id
+         * @param features
+         *            column numbers of features
+         * @param featureStatsSizes
+         *            stats size of each feature
+         */
+        public NodeStats(int treeId, int nodeId, int[] features, int[] featureStatsSizes) {
+            this.treeId = treeId;
+            this.nodeId = nodeId;
+            this.features = features;
+            this.offsets = new int[features.length + 1];
+            for(int i = 0; i < features.length; i++) {
+                this.offsets[i + 1] = this.offsets[i] + featureStatsSizes[i];
+            }
+            this.statistics = new double[this.offsets[features.length]];
+        }
+
+        private NodeStats(int treeId, int nodeId, int[] features, int[] offsets, double[] statistics) {
             this.treeId = treeId;
             this.nodeId = nodeId;
-            this.featureStatistics = featureStatistics;
+            this.features = features;
+            this.offsets = offsets;
+            this.statistics = statistics;
         }
 
         /**
-         * @return the treeId
+         * @return a new instance with the same layout and a copy of stats buffer
          */
-        public int getTreeId() {
-            return treeId;
+        public NodeStats copy() {
+            return new NodeStats(this.treeId, this.nodeId, this.features, this.offsets, this.statistics.clone());
+        }
+
+        /**
+         * @return a new instance with the same layout and an empty stats buffer
+         */
+        public NodeStats emptyCopy() {
+            return new NodeStats(this.treeId, this.nodeId, this.features, this.offsets,
+                    new double[this.statistics.length]);
+        }
+
+        /**
+         * Add stats of the other node stats with the same layout into this one.
+         * 
+         * @param that
+         *            the node stats to be merged
+         */
+        public void merge(NodeStats that) {
+            merge(that, 0, this.statistics.length);
         }
 
         /**
-         * @return the featureStatistics
+         * Add stats in [from, to) of the flat stats buffer of the other node stats with the same layout into this one.
+         * Disjoint ranges of the same node stats can be merged in different threads.
+         * 
+         * @param that
+         *            the node stats to be merged
+         * @param from
+         *            start index in {@link #getStatistics()}, inclusive
+         * @param to
+         *            end index in {@link #getStatistics()}, exclusive
          */
-        public Map<Integer, double[]> getFeatureStatistics() {
-            return featureStatistics;
+        public void merge(NodeStats that, int from, int to) {
+            assert this.nodeId == that.nodeId;
+            assert this.treeId == that.treeId;
+            assert this.statistics.length == that.statistics.length;
+            double[] thatStatistics = that.statistics;
+            for(int i = from; i < to; i++) {
+                this.statistics[i] += thatStatistics[i];
+            }
+        }
+
+        /**
+         * @return the treeId
+         */
+        public int getTreeId() {
+            return treeId;
         }
 
         /**
@@ -206,23 +353,103 @@ public class DTWorkerParams extends HaltBytable implements Combinable<DTWorkerPa
         }
 
         /**
-         * @param featureStatistics
-         *            the featureStatistics to set
+         * @return number of features
+         */
+        public int getFeatureSize() {
+            return this.features.length;
+        }
+
+        /**
+         * @return the column numbers of features
+         */
+        public int[] getFeatures() {
+            return features;
+        }
+
+        /**
+         * @param index
+         *            feature index in {@link #getFeatures()}
+         * @return start index of such feature stats in {@link #getStatistics()}
+         */
+        public int getOffset(int index) {
+            return this.offsets[index];
+        }
+
+        /**
+         * @param index
+         *            feature index in {@link #getFeatures()}
+         * @return stats length of such feature
+         */
+        public int getLength(int index) {
+            return this.offsets[index + 1] - this.offsets[index];
+        }
+
+        /**
+         * @param columnNum
+         *            the column number
+         * @return feature index in {@link #getFeatures()}, -1 if not found
+         */
+        public int indexOf(int columnNum) {
+            for(int i = 0; i < this.features.length; i++) {
+                if(this.features[i] == columnNum) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return the flat stats buffer of all features
+         */
+        public double[] getStatistics() {
+            return statistics;
+        }
+
+        /**
+         * Copy stats of some features into a new node stats. Features are in the order of given column numbers, so node
+         * stats projected by the same column numbers have the same layout.
+         * 
+         * @param columnNums
+         *            column numbers of features to be kept, should be in {@link #getFeatures()}
+         * @return a new node stats with stats of such features
+         */
+        public NodeStats project(int[] columnNums) {
+            int[] projectedOffsets = new int[columnNums.length + 1];
+            int[] indexes = new int[columnNums.length];
+            for(int i = 0; i < columnNums.length; i++) {
+                indexes[i] = indexOf(columnNums[i]);
+                if(indexes[i] < 0) {
+                    throw new IllegalArgumentException("Feature " + columnNums[i] + " is not in node stats.");
+                }
+                projectedOffsets[i + 1] = projectedOffsets[i] + getLength(indexes[i]);
+            }
+            double[] projectedStatistics = new double[projectedOffsets[columnNums.length]];
+            for(int i = 0; i < columnNums.length; i++) {
+                System.arraycopy(this.statistics, this.offsets[indexes[i]], projectedStatistics, projectedOffsets[i],
+                        projectedOffsets[i + 1] - projectedOffsets[i]);
+            }
+            return new NodeStats(this.treeId, this.nodeId, columnNums.clone(), projectedOffsets, projectedStatistics);
+        }
+
+        /**
+         * @param index
+         *            feature index in {@link #getFeatures()}
+         * @return a copy of stats of such feature
          */
-        public void setFeatureStatistics(Map<Integer, double[]> featureStatistics) {
-            this.featureStatistics = featureStatistics;
+        public double[] getFeatureStatistics(int index) {
+            return Arrays.copyOfRange(this.statistics, this.offsets[index], this.offsets[index + 1]);
         }
 
         @Override
         public void write(DataOutput out) throws IOException {
             out.writeInt(nodeId);
             out.writeInt(treeId);
-            out.writeInt(this.featureStatistics.size());
-            for(Entry<Integer, double[]> entry: this.featureStatistics.entrySet()) {
-                out.writeInt(entry.getKey());
-                out.writeInt(entry.getValue().length);
-                for(int i = 0; i < entry.getValue().length; i++) {
-                    out.writeDouble(entry.getValue()[i]);
+            out.writeInt(this.features.length);
+            for(int i = 0; i < this.features.length; i++) {
+                out.writeInt(this.features[i]);
+                out.writeInt(this.offsets[i + 1] - this.offsets[i]);
+                for(int j = this.offsets[i]; j < this.offsets[i + 1]; j++) {
+                    out.writeDouble(this.statistics[j]);
                 }
             }
         }
@@ -232,16 +459,23 @@ public class DTWorkerParams extends HaltBytable implements Combinable<DTWorkerPa
             this.nodeId = in.readInt();
             this.treeId = in.readInt();
             int len = in.readInt();
-            this.featureStatistics = new HashMap<Integer, double[]>(len, 1f);
+            this.features = new int[len];
+            this.offsets = new int[len + 1];
+            // buffer is grown in reading as stats sizes are only known feature by feature
+            double[] values = new double[16];
             for(int i = 0; i < len; i++) {
-                int key = in.readInt();
+                this.features[i] = in.readInt();
                 int vLen = in.readInt();
-                double[] values = new double[vLen];
-                for(int j = 0; j < vLen; j++) {
+                int end = this.offsets[i] + vLen;
+                if(end > values.length) {
+                    values = Arrays.copyOf(values, Math.max(end, values.length * 2));
+                }
+                for(int j = this.offsets[i]; j < end; j++) {
                     values[j] = in.readDouble();
                 }
-                this.featureStatistics.put(key, values);
+                this.offsets[i + 1] = end;
             }
+            this.statistics = values.length == this.offsets[len] ? values : Arrays.copyOf(values, this.offsets[len]);
         }
 
         /**
@@ -266,28 +500,19 @@ public class DTWorkerParams extends HaltBytable implements Combinable<DTWorkerPa
          */
         @Override
         public String toString() {
-            return "NodeStats [nodeId=" + nodeId + ", treeId=" + treeId + ", featureStatistics="
-                    + toString(featureStatistics) + "]";
-        }
-
-        private String toString(Map<Integer, double[]> featureStatistics) {
-            Iterator<Map.Entry<Integer, double[]>> i = featureStatistics.entrySet().iterator();
-            if(!i.hasNext())
-                return "{}";
-
             StringBuilder sb = new StringBuilder();
             sb.append('{');
-            for(;;) {
-                Map.Entry<Integer, double[]> e = i.next();
-                Integer key = e.getKey();
-                double[] value = e.getValue();
-                sb.append(key);
+            for(int i = 0; i < this.features.length; i++) {
+                if(i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(this.features[i]);
                 sb.append('=');
-                sb.append(Arrays.toString(value));
-                if(!i.hasNext())
-                    return sb.append('}').toString();
-                sb.append(", ");
+                sb.append(Arrays.toString(getFeatureStatistics(i)));
             }
+            sb.append('}');
+            return "NodeStats [nodeId=" + nodeId + ", treeId=" + treeId + ", featureStatistics=" + sb.toString()
+                    + "]";
         }
     }
 
@@ -302,21 +527,22 @@ public class DTWorkerParams extends HaltBytable implements Combinable<DTWorkerPa
 
         if(this.nodeStatsMap != null && that.nodeStatsMap != null) {
             for(Entry<Integer, NodeStats> entry: this.nodeStatsMap.entrySet()) {
-                NodeStats nodeStats = entry.getValue();
-                NodeStats thatNodeStats = that.nodeStatsMap.get(entry.getKey());
-                assert nodeStats.nodeId == thatNodeStats.nodeId;
-                assert nodeStats.treeId == thatNodeStats.treeId;
-
-                for(Entry<Integer, double[]> featureStatsEntry: nodeStats.getFeatureStatistics().entrySet()) {
-                    double[] thisFeatureStats = featureStatsEntry.getValue();
-                    double[] thatFeatureStats = thatNodeStats.featureStatistics.get(featureStatsEntry.getKey());
-                    for(int i = 0; i < thisFeatureStats.length; i++) {
-                        thisFeatureStats[i] += thatFeatureStats[i];
-                    }
+                entry.getValue().merge(that.nodeStatsMap.get(entry.getKey()));
+            }
+        }
+
+        if(this.votedFeaturesMap != null && that.votedFeaturesMap != null) {
+            for(Entry<Integer, int[]> entry: this.votedFeaturesMap.entrySet()) {
+                int[] thatColumnNums = that.votedFeaturesMap.get(entry.getKey());
+                if(thatColumnNums != null && thatColumnNums.length > 0) {
+                    int[] columnNums = Arrays.copyOf(entry.getValue(), entry.getValue().length + thatColumnNums.length);
+                    System.arraycopy(thatColumnNums, 0, columnNums, entry.getValue().length, thatColumnNums.length);
+                    entry.setValue(columnNums);
                 }
             }
         }
 
+        this.profile = (this.profile == null ? that.profile : this.profile.merge(that.profile));
         return this;
     }
 
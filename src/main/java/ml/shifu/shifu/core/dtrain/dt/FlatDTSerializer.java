@@ -0,0 +1,154 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.dt;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Flat tree model serializer. Different with gzip stream format of {@link BinaryDTSerializer}, flat format is
+ * uncompressed and laid out to be memory mapped and scored in place by {@link MappedTreeModel}, nothing needs to be
+ * decoded except small header and input column names.
+ *
+ * <p>
+ * All values are in big endian. Primitive array is its int length followed by elements starting from an 8-byte aligned
+ * offset. String is its int length followed by UTF-16 chars. Layout in order:
+ * <ol>
+ * <li>header: magic, {@link #FLAT_FORMAT_VERSION}, tree format version, algorithm, loss, gbt score convert strategy,
+ * is classification, is gbdt, input node count;</li>
+ * <li>input binding, see {@link TreeInputBinder}: input size, column names, slot indexes, slot category table ids,
+ * slot missing values, category table bases, masks and missing indexes, table slot keys and values, category key
+ * offsets and key chars;</li>
+ * <li>trees, see {@link CompiledTreeEnsemble}: node feature indexes, thresholds, left and right children, category
+ * sizes, mask offsets, category masks, leaf values, tree roots, tree weights and bag offsets.</li>
+ * </ol>
+ *
+ * <p>
+ * Flat model is converted from a loaded {@link IndependentTreeModel}, so scores are the same as the model in compiled
+ * mode. Whole file is mapped in one buffer, so file size is limited to 2GB.
+ */
+public class FlatDTSerializer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FlatDTSerializer.class);
+
+    /**
+     * Magic number at file beginning, 'SHTF'.
+     */
+    public static final int FLAT_MAGIC = 0x53485446;
+
+    public static final int FLAT_FORMAT_VERSION = 1;
+
+    /**
+     * Suffix of flat model file written alongside binary model file.
+     */
+    public static final String FLAT_MODEL_SUFFIX = ".flat";
+
+    public static void save(IndependentTreeModel model, FileSystem fs, Path output) throws IOException {
+        LOG.info("Writing flat tree model to {}.", output);
+        save(model, fs.create(output));
+    }
+
+    public static void save(IndependentTreeModel model, OutputStream output) throws IOException {
+        FlatOutput out = new FlatOutput(new DataOutputStream(new BufferedOutputStream(output)));
+        try {
+            out.writeInt(FLAT_MAGIC);
+            out.writeInt(FLAT_FORMAT_VERSION);
+            out.writeInt(IndependentTreeModel.getVersion());
+            out.writeString(model.getAlgorithm());
+            out.writeString(model.getLossStr());
+            out.writeString(model.getGbtScoreConvertStrategy());
+            out.writeBoolean(model.isClassification());
+            out.writeBoolean(model.isGBDT());
+            out.writeInt(model.getInputNode());
+
+            TreeInputBinder.build(model).write(out);
+            new CompiledTreeEnsemble(model, model.getTrees(), model.getWeights(), model.isClassification())
+                    .write(out);
+        } finally {
+            IOUtils.closeStream(out.out);
+        }
+    }
+
+    /**
+     * Output of flat format, arrays are aligned to 8 bytes from the beginning of output.
+     */
+    static final class FlatOutput {
+
+        private final DataOutputStream out;
+
+        FlatOutput(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void writeInt(int value) throws IOException {
+            this.out.writeInt(value);
+        }
+
+        void writeBoolean(boolean value) throws IOException {
+            this.out.writeInt(value ? 1 : 0);
+        }
+
+        void writeString(String value) throws IOException {
+            String str = (value == null ? "" : value);
+            this.out.writeInt(str.length());
+            this.out.writeChars(str);
+        }
+
+        void writeInts(int[] values) throws IOException {
+            beginArray(values.length);
+            for(int value: values) {
+                this.out.writeInt(value);
+            }
+        }
+
+        void writeLongs(long[] values) throws IOException {
+            beginArray(values.length);
+            for(long value: values) {
+                this.out.writeLong(value);
+            }
+        }
+
+        void writeDoubles(double[] values) throws IOException {
+            beginArray(values.length);
+            for(double value: values) {
+                this.out.writeDouble(value);
+            }
+        }
+
+        void writeChars(char[] values) throws IOException {
+            beginArray(values.length);
+            for(char value: values) {
+                this.out.writeChar(value);
+            }
+        }
+
+        private void beginArray(int length) throws IOException {
+            this.out.writeInt(length);
+            while(this.out.size() % 8 != 0) {
+                this.out.writeByte(0);
+            }
+        }
+    }
+
+}
@@ -78,7 +78,28 @@ public abstract class Impurity {
      * @param weight
      *            the weight
      */
-    public abstract void featureUpdate(double[] featuerStatistic, int binIndex, float label, float significance,
+    public void featureUpdate(double[] featuerStatistic, int binIndex, float label, float significance,
+            float weight) {
+        featureUpdate(featuerStatistic, 0, binIndex, label, significance, weight);
+    }
+
+    /**
+     * Update bin stats value per feature, feature stats starts from {@code offset} in a flat stats buffer.
+     * 
+     * @param statistics
+     *            the stats buffer
+     * @param offset
+     *            the start index of feature stats in buffer
+     * @param binIndex
+     *            the bin index
+     * @param label
+     *            the label
+     * @param significance
+     *            the significance
+     * @param weight
+     *            the weight
+     */
+    public abstract void featureUpdate(double[] statistics, int offset, int binIndex, float label, float significance,
             float weight);
 
     /**
@@ -235,10 +256,12 @@ class Variance extends Impurity {
     }
 
     @Override
-    public void featureUpdate(double[] featuerStatistic, int binIndex, float label, float significance, float weight) {
-        featuerStatistic[binIndex * super.statsSize] += (significance * weight);
-        featuerStatistic[binIndex * super.statsSize + 1] += (label * significance * weight);
-        featuerStatistic[binIndex * super.statsSize + 2] += (label * label * significance * weight);
+    public void featureUpdate(double[] statistics, int offset, int binIndex, float label, float significance,
+            float weight) {
+        int index = offset + binIndex * super.statsSize;
+        statistics[index] += (significance * weight);
+        statistics[index + 1] += (label * significance * weight);
+        statistics[index + 2] += (label * label * significance * weight);
     }
 
 }
@@ -534,9 +557,10 @@ class Entropy extends Impurity {
     }
 
     @Override
-    public void featureUpdate(double[] featuerStatistic, int binIndex, float label, float significance, float weight) {
+    public void featureUpdate(double[] statistics, int offset, int binIndex, float label, float significance,
+            float weight) {
         // label + 0.1f to avoid 0.99999f is converted to 0
-        featuerStatistic[binIndex * super.statsSize + (int) (label + 0.000001f)] += (significance * weight);
+        statistics[offset + binIndex * super.statsSize + (int) (label + 0.000001f)] += (significance * weight);
     }
 
     private double log2(double x) {
@@ -716,9 +740,10 @@ class Gini extends Impurity {
     }
 
     @Override
-    public void featureUpdate(double[] featuerStatistic, int binIndex, float label, float significance, float weight) {
+    public void featureUpdate(double[] statistics, int offset, int binIndex, float label, float significance,
+            float weight) {
         // label + 0.1f to avoid 0.99999f is converted to 0
-        featuerStatistic[binIndex * super.statsSize + (int) (label + 0.000001f)] += (significance * weight);
+        statistics[offset + binIndex * super.statsSize + (int) (label + 0.000001f)] += (significance * weight);
     }
 
 }
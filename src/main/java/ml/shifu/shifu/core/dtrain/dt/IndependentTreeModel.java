@@ -167,6 +167,23 @@ public class IndependentTreeModel {
     @SuppressWarnings("unused")
     private boolean isGBTRawScore;
 
+    /**
+     * If compiled mode is enabled, all trees are flattened into {@link #compiledTrees} and scored by iterating packed
+     * primitive arrays instead of linked {@link Node} objects.
+     */
+    private boolean isCompiledMode = false;
+
+    /**
+     * Flattened trees for compiled mode, null if compiled mode is not enabled.
+     */
+    private CompiledTreeEnsemble compiledTrees;
+
+    /**
+     * Pre-compiled conversion from raw data map to input array, built lazily from column mappings and reset once any
+     * mapping is changed.
+     */
+    private TreeInputBinder inputBinder;
+
     public IndependentTreeModel(Map<Integer, Double> numericalMeanMapping, Map<Integer, String> numNameMapping,
             Map<Integer, List<String>> categoricalColumnNameNames,
             Map<Integer, Map<String, Integer>> columnCategoryIndexMapping, Map<Integer, Integer> columnNumIndexMapping,
@@ -350,6 +367,10 @@ public class IndependentTreeModel {
      *         if regression of GBT, return array with only one element which is score of the GBT model
      */
     public double[] compute(double[] data) {
+        if(this.compiledTrees != null) {
+            return (this.isClassification ? computeCompiledClassificationScore(data)
+                    : computeCompiledRegressionScore(data));
+        }
         return (this.isClassification ? computeClassificationScore(data) : computeRegressionScore(data));
     }
 
@@ -444,6 +465,153 @@ public class IndependentTreeModel {
 
     }
 
+    /**
+     * Batch version of {@link #compute(double[])}. Rows are scored tree by tree (tree-outer and row-inner) to keep one
+     * tree in cache for all rows, scores are accumulated in the same order as {@link #compute(double[])} per each row so
+     * results are the same as calling {@link #compute(double[])} row by row.
+     * 
+     * @param rows
+     *            data rows, each includes only effective column data, numeric value is real value, categorical feature
+     *            value is index of binCategoryList.
+     * @param outputs
+     *            row-major output array with size at least rows.length * {@link #getOutputCount()}, outputs of row i
+     *            are in [i * outputCount, (i + 1) * outputCount)
+     */
+    public void compute(double[][] rows, double[] outputs) {
+        if(this.isClassification) {
+            computeClassificationScores(rows, outputs);
+        } else {
+            computeRegressionScores(rows, outputs);
+        }
+    }
+
+    /**
+     * @return output size per record of {@link #compute(double[])}, # of all trees for classification and 1 for
+     *         regression
+     */
+    public int getOutputCount() {
+        if(!this.isClassification) {
+            return 1;
+        }
+        int treeSize = 0;
+        for(List<TreeNode> list: this.trees) {
+            treeSize += list.size();
+        }
+        return treeSize;
+    }
+
+    private void computeClassificationScores(double[][] rows, double[] outputs) {
+        CompiledTreeEnsemble compiled = this.compiledTrees;
+        int outputCount = getOutputCount();
+        int treeIndex = 0;
+        for(int i = 0; i < this.trees.size(); i++) {
+            List<TreeNode> list = this.trees.get(i);
+            for(int j = 0; j < list.size(); j++) {
+                Node node = list.get(j).getNode();
+                for(int k = 0; k < rows.length; k++) {
+                    outputs[k * outputCount + treeIndex] = compiled != null ? compiled.predict(treeIndex, rows[k])
+                            : predictNode(node, rows[k]);
+                }
+                treeIndex += 1;
+            }
+        }
+    }
+
+    private void computeRegressionScores(double[][] rows, double[] outputs) {
+        CompiledTreeEnsemble compiled = this.compiledTrees;
+        int bags = this.trees.size();
+        double[] bagPredicts = new double[rows.length];
+        Arrays.fill(outputs, 0, rows.length, 0d);
+        int treeIndex = 0;
+        for(int i = 0; i < bags; i++) {
+            List<TreeNode> list = this.trees.get(i);
+            List<Double> wgtList = this.weights.get(i);
+            Arrays.fill(bagPredicts, 0d);
+            double weightSum = 0d;
+            for(int j = 0; j < list.size(); j++) {
+                Node node = list.get(j).getNode();
+                double weight = wgtList.get(j);
+                weightSum += weight;
+                for(int k = 0; k < rows.length; k++) {
+                    double score = compiled != null ? compiled.predict(treeIndex, rows[k]) : predictNode(node,
+                            rows[k]);
+                    bagPredicts[k] += score * weight;
+                }
+                treeIndex += 1;
+            }
+
+            for(int k = 0; k < rows.length; k++) {
+                double predict = bagPredicts[k];
+                if(this.isGBDT) {
+                    if(this.isGBTOldSigmoidConvert) {
+                        predict = convertToSigmoid(predict);
+                    } else if(this.isGBTSigmoidConvert) {
+                        predict = convertToNewSigmoid(predict);
+                    } else if(this.isGBTCutoffConvert) {
+                        predict = cutoffPredict(predict);
+                    }
+                } else {
+                    // RF score is weighted average of trees
+                    predict = predict / weightSum;
+                }
+                outputs[k] += predict;
+            }
+        }
+
+        for(int k = 0; k < rows.length; k++) {
+            outputs[k] = outputs[k] / bags;
+        }
+    }
+
+    /**
+     * Classification in compiled mode, the same as {@link #computeClassificationScore(double[])}.
+     */
+    private double[] computeCompiledClassificationScore(double[] data) {
+        CompiledTreeEnsemble compiled = this.compiledTrees;
+        double[] scores = new double[compiled.getTreeSize()];
+        for(int i = 0; i < scores.length; i++) {
+            scores[i] = compiled.predict(i, data);
+        }
+        return scores;
+    }
+
+    /**
+     * Regression in compiled mode, the same as {@link #computeRegressionScore(double[])}, tree scores are accumulated
+     * in the same order to make sure final score is the same.
+     */
+    private double[] computeCompiledRegressionScore(double[] data) {
+        CompiledTreeEnsemble compiled = this.compiledTrees;
+        int bags = compiled.getBagSize();
+        double finalPredict = 0d;
+        for(int i = 0; i < bags; i++) {
+            int end = compiled.getBagEnd(i);
+            if(this.isGBDT) {
+                double predict = 0d;
+                for(int j = compiled.getBagStart(i); j < end; j++) {
+                    predict += compiled.predict(j, data) * compiled.getTreeWeight(j);
+                }
+
+                if(this.isGBTOldSigmoidConvert) {
+                    predict = convertToSigmoid(predict);
+                } else if(this.isGBTSigmoidConvert) {
+                    predict = convertToNewSigmoid(predict);
+                } else if(this.isGBTCutoffConvert) {
+                    predict = cutoffPredict(predict);
+                }
+                finalPredict += predict;
+            } else {
+                double predictSum = 0d, weightSum = 0d;
+                for(int j = compiled.getBagStart(i); j < end; j++) {
+                    double weight = compiled.getTreeWeight(j);
+                    weightSum += weight;
+                    predictSum += compiled.predict(j, data) * weight;
+                }
+                finalPredict += (predictSum / weightSum);
+            }
+        }
+        return new double[] { finalPredict / bags };
+    }
+
     /**
      * Given {@code dataMap} with format (columnName, value), compute score values of tree model.
      * 
@@ -559,71 +727,23 @@ public class IndependentTreeModel {
         }
     }
 
-    private int getColumnIndex(int columnNum) {
+    int getColumnIndex(int columnNum) {
         return (this.isOptimizeMode ? columnNum : this.columnNumIndexMapping.get(columnNum));
     }
 
-    private int getCategoricalSize(int columnNum) {
+    int getCategoricalSize(int columnNum) {
         return (this.isOptimizeMode ? this.categoricalValueSize[columnNum] : categoricalColumnNameNames.get(columnNum)
                 .size());
     }
 
     private double[] convertDataMapToDoubleArray(Map<String, Object> dataMap) {
-        double[] data = new double[this.columnNumIndexMapping.size()];
-        for(Entry<Integer, Integer> entry: this.columnNumIndexMapping.entrySet()) {
-            double value = 0d;
-            Integer columnNum = entry.getKey();
-            String columnName = this.numNameMapping.get(columnNum);
-            Object obj = dataMap.get(columnName);
-            if(this.categoricalColumnNameNames.containsKey(columnNum)) {
-                // categorical column
-                double indexValue = -1d;
-                int categoricalSize = categoricalColumnNameNames.get(columnNum).size();
-                if(obj == null) {
-                    // no matter set it to null or not set it in dataMap, it will be treated as missing value, last one
-                    // is missing value category
-                    indexValue = categoricalSize;
-                } else {
-                    Map<String, Integer> categoryIndexMap = columnCategoryIndexMapping.get(columnNum);
-                    Integer intIndex = categoryIndexMap.get(obj.toString());
-                    if(intIndex == null || intIndex < 0 || intIndex >= categoricalSize) {
-                        // cannot find category, set it to missing bin (last one)
-                        intIndex = categoricalSize;
-                    }
-                    indexValue = intIndex;
-                }
-                value = indexValue;
-            } else {
-                // numerical column
-                if(obj == null || ((obj instanceof String) && ((String) obj).length() == 0)) {
-                    // no matter set it to null or not set it in dataMap, it will be treated as missing value, last one
-                    // is missing value category
-                    value = this.numericalMeanMapping.get(columnNum) == null ? 0d : this.numericalMeanMapping
-                            .get(columnNum);
-                } else {
-                    if(obj instanceof Number) {
-                        value = ((Number) obj).doubleValue();
-                    } else {
-                        try {
-                            value = Double.parseDouble(obj.toString());
-                        } catch (NumberFormatException e) {
-                            // not valid double value for numerical feature, using default value
-                            value = this.numericalMeanMapping.get(columnNum) == null ? 0d : this.numericalMeanMapping
-                                    .get(columnNum);
-                        }
-                    }
-                }
-                if(Double.isNaN(value)) {
-                    value = this.numericalMeanMapping.get(columnNum) == null ? 0d : this.numericalMeanMapping
-                            .get(columnNum);
-                }
-            }
-            Integer index = entry.getValue();
-            if(index != null && index < data.length) {
-                data[index] = value;
-            }
+        TreeInputBinder binder = this.inputBinder;
+        if(binder == null) {
+            // binder is immutable, building it more than once in concurrent scoring is harmless
+            binder = TreeInputBinder.build(this);
+            this.inputBinder = binder;
         }
-        return data;
+        return binder.bind(dataMap);
     }
 
     /**
@@ -710,6 +830,7 @@ public class IndependentTreeModel {
      */
     public void setNumNameMapping(Map<Integer, String> numNameMapping) {
         this.numNameMapping = numNameMapping;
+        this.inputBinder = null;
     }
 
     /**
@@ -718,6 +839,8 @@ public class IndependentTreeModel {
      */
     public void setCategoricalColumnNameNames(Map<Integer, List<String>> categoricalColumnNameNames) {
         this.categoricalColumnNameNames = categoricalColumnNameNames;
+        recompile();
+        this.inputBinder = null;
     }
 
     /**
@@ -726,6 +849,7 @@ public class IndependentTreeModel {
      */
     public void setColumnCategoryIndexMapping(Map<Integer, Map<String, Integer>> columnCategoryIndexMapping) {
         this.columnCategoryIndexMapping = columnCategoryIndexMapping;
+        this.inputBinder = null;
     }
 
     /**
@@ -734,6 +858,8 @@ public class IndependentTreeModel {
      */
     public void setColumnNumIndexMapping(Map<Integer, Integer> columnNumIndexMapping) {
         this.columnNumIndexMapping = columnNumIndexMapping;
+        recompile();
+        this.inputBinder = null;
     }
 
     /**
@@ -742,6 +868,7 @@ public class IndependentTreeModel {
      */
     public void setTrees(List<List<TreeNode>> trees) {
         this.trees = trees;
+        recompile();
     }
 
     /**
@@ -750,6 +877,7 @@ public class IndependentTreeModel {
      */
     public void setWeights(List<List<Double>> weights) {
         this.weights = weights;
+        recompile();
     }
 
     /**
@@ -766,6 +894,7 @@ public class IndependentTreeModel {
      */
     public void setClassification(boolean isClassification) {
         this.isClassification = isClassification;
+        recompile();
     }
 
     /**
@@ -776,6 +905,33 @@ public class IndependentTreeModel {
         this.isConvertToProb = isConvertToProb;
     }
 
+    /**
+     * @return the isCompiledMode
+     */
+    public boolean isCompiledMode() {
+        return isCompiledMode;
+    }
+
+    /**
+     * Enable or disable compiled mode. In compiled mode, all trees are flattened into packed primitive arrays and
+     * scored iteratively without object allocation. Trees are re-flattened if trees or column mappings are changed by
+     * setters; if trees are changed in place by {@link #getTrees()}, this method should be called again.
+     * 
+     * @param isCompiledMode
+     *            the isCompiledMode to set
+     */
+    public void setCompiledMode(boolean isCompiledMode) {
+        this.isCompiledMode = isCompiledMode;
+        this.compiledTrees = null;
+        recompile();
+    }
+
+    private void recompile() {
+        if(this.isCompiledMode && this.trees != null && this.weights != null) {
+            this.compiledTrees = new CompiledTreeEnsemble(this, this.trees, this.weights, this.isClassification);
+        }
+    }
+
     /**
      * @return the algorithm
      */
@@ -1185,6 +1341,7 @@ public class IndependentTreeModel {
      */
     public void setNumericalMeanMapping(Map<Integer, Double> numericalMeanMapping) {
         this.numericalMeanMapping = numericalMeanMapping;
+        this.inputBinder = null;
     }
 
     public static int getVersion() {
@@ -0,0 +1,450 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.dt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Map;
+
+import ml.shifu.shifu.util.Constants;
+import ml.shifu.shifu.util.DoubleParser;
+
+/**
+ * {@link MappedTreeModel} scores tree model directly on flat model file written by {@link FlatDTSerializer}. File is
+ * memory mapped read-only and all packed arrays are buffer views on mapped memory, no tree node or category string is
+ * created on heap. Loading is nearly instant for large models and multiple scoring processes on one host share the same
+ * page cache memory.
+ *
+ * <p>
+ * Input binding and tree traversal are the same as {@link TreeInputBinder} and {@link CompiledTreeEnsemble}, so scores
+ * are the same as {@link IndependentTreeModel} in compiled mode.
+ *
+ * <p>
+ * Only absolute buffer reads are used in scoring, instance can be shared by multiple scoring threads.
+ */
+public class MappedTreeModel {
+
+    private static final int LEAF = -1;
+
+    private final String algorithm;
+
+    private final String lossStr;
+
+    private final boolean isClassification;
+
+    private final boolean isGBDT;
+
+    private final int inputNode;
+
+    private final boolean isGBTOldSigmoidConvert;
+
+    private final boolean isGBTSigmoidConvert;
+
+    private final boolean isGBTCutoffConvert;
+
+    // input binding
+    private final int inputSize;
+    private final String[] columnNames;
+    private final IntBuffer indexes;
+    private final IntBuffer slotTableIds;
+    private final DoubleBuffer missingValues;
+    private final IntBuffer tableBases;
+    private final IntBuffer tableMasks;
+    private final IntBuffer tableMissingIndexes;
+    private final IntBuffer tableKeys;
+    private final IntBuffer tableValues;
+    private final IntBuffer keyOffsets;
+    private final CharBuffer keyChars;
+
+    // packed trees
+    private final IntBuffer featureIndexes;
+    private final DoubleBuffer thresholds;
+    private final IntBuffer leftChildren;
+    private final IntBuffer rightChildren;
+    private final IntBuffer categorySizes;
+    private final IntBuffer maskOffsets;
+    private final LongBuffer categoryMasks;
+    private final DoubleBuffer leafValues;
+    private final IntBuffer treeRoots;
+    private final DoubleBuffer treeWeights;
+    private final IntBuffer bagOffsets;
+
+    private MappedTreeModel(FlatInput in, String gbtScoreConvertStrategy) throws IOException {
+        if(in.readInt() != FlatDTSerializer.FLAT_MAGIC) {
+            throw new IOException("Not a flat tree model.");
+        }
+        int flatVersion = in.readInt();
+        if(flatVersion != FlatDTSerializer.FLAT_FORMAT_VERSION) {
+            throw new IOException("Flat tree model version " + flatVersion + " is not supported.");
+        }
+        // tree format version is kept for compatibility check only
+        in.readInt();
+        this.algorithm = in.readString();
+        this.lossStr = in.readString();
+        String strategy = in.readString();
+        if(IndependentTreeModel.isValidGbtScoreConvertStrategy(gbtScoreConvertStrategy)) {
+            strategy = gbtScoreConvertStrategy;
+        }
+        this.isClassification = in.readBoolean();
+        this.isGBDT = in.readBoolean();
+        this.inputNode = in.readInt();
+        this.isGBTOldSigmoidConvert = Constants.GBT_SCORE_OLD_SIGMOID_CONVETER.equalsIgnoreCase(strategy);
+        this.isGBTSigmoidConvert = Constants.GBT_SCORE_SIGMOID_CONVETER.equalsIgnoreCase(strategy);
+        this.isGBTCutoffConvert = Constants.GBT_SCORE_CUTOFF_CONVETER.equalsIgnoreCase(strategy);
+
+        this.inputSize = in.readInt();
+        this.columnNames = new String[in.readInt()];
+        for(int i = 0; i < this.columnNames.length; i++) {
+            this.columnNames[i] = in.readString();
+        }
+        this.indexes = in.readInts();
+        this.slotTableIds = in.readInts();
+        this.missingValues = in.readDoubles();
+        this.tableBases = in.readInts();
+        this.tableMasks = in.readInts();
+        this.tableMissingIndexes = in.readInts();
+        this.tableKeys = in.readInts();
+        this.tableValues = in.readInts();
+        this.keyOffsets = in.readInts();
+        this.keyChars = in.readChars();
+
+        this.featureIndexes = in.readInts();
+        this.thresholds = in.readDoubles();
+        this.leftChildren = in.readInts();
+        this.rightChildren = in.readInts();
+        this.categorySizes = in.readInts();
+        this.maskOffsets = in.readInts();
+        this.categoryMasks = in.readLongs();
+        this.leafValues = in.readDoubles();
+        this.treeRoots = in.readInts();
+        this.treeWeights = in.readDoubles();
+        this.bagOffsets = in.readInts();
+    }
+
+    /**
+     * Memory map flat model file.
+     *
+     * @param file
+     *            flat model file
+     * @return the mapped model
+     * @throws IOException
+     *             if file cannot be mapped or is not a valid flat model
+     */
+    public static MappedTreeModel load(File file) throws IOException {
+        return load(file, null);
+    }
+
+    /**
+     * Memory map flat model file with specified gbt score convert strategy.
+     *
+     * @param file
+     *            flat model file
+     * @param gbtScoreConvertStrategy
+     *            how to convert gbt raw score, strategy saved in model is used if not valid
+     * @return the mapped model
+     * @throws IOException
+     *             if file cannot be mapped or is not a valid flat model
+     */
+    public static MappedTreeModel load(File file, String gbtScoreConvertStrategy) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if(channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Flat tree model " + file + " is larger than 2GB.");
+            }
+            // mapping is still valid after channel is closed
+            return load(channel.map(MapMode.READ_ONLY, 0, channel.size()), gbtScoreConvertStrategy);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Wrap flat model in buffer, buffer content should not be changed after loading.
+     *
+     * @param buffer
+     *            buffer with flat model from position 0
+     * @param gbtScoreConvertStrategy
+     *            how to convert gbt raw score, strategy saved in model is used if not valid
+     * @return the model
+     * @throws IOException
+     *             if buffer is not a valid flat model
+     */
+    public static MappedTreeModel load(ByteBuffer buffer, String gbtScoreConvertStrategy) throws IOException {
+        try {
+            return new MappedTreeModel(new FlatInput(buffer), gbtScoreConvertStrategy);
+        } catch (RuntimeException e) {
+            // buffer underflow or invalid limit of truncated file
+            throw new IOException("Invalid flat tree model.", e);
+        }
+    }
+
+    /**
+     * Given {@code dataMap} with format (columnName, value), compute score values of tree model, the same as
+     * {@link IndependentTreeModel#compute(Map)}.
+     *
+     * @param dataMap
+     *            {@code dataMap} for (columnName, value), missing or invalid value is treated as missing value
+     * @return all tree scores for classification, or one element array with model score for regression
+     */
+    public double[] compute(Map<String, Object> dataMap) {
+        return compute(bind(dataMap));
+    }
+
+    /**
+     * Compute score values of tree model, the same as {@link IndependentTreeModel#compute(double[])}.
+     *
+     * @param data
+     *            data array of effective columns, numeric value is real value, categorical feature value is index of
+     *            category
+     * @return all tree scores for classification, or one element array with model score for regression
+     */
+    public double[] compute(double[] data) {
+        if(this.isClassification) {
+            double[] scores = new double[this.treeRoots.limit()];
+            for(int i = 0; i < scores.length; i++) {
+                scores[i] = predict(i, data);
+            }
+            return scores;
+        }
+
+        int bags = this.bagOffsets.limit() - 1;
+        double finalPredict = 0d;
+        for(int i = 0; i < bags; i++) {
+            int end = this.bagOffsets.get(i + 1);
+            if(this.isGBDT) {
+                double predict = 0d;
+                for(int j = this.bagOffsets.get(i); j < end; j++) {
+                    predict += predict(j, data) * this.treeWeights.get(j);
+                }
+                if(this.isGBTOldSigmoidConvert) {
+                    predict = 1 / (1 + Math.min(1.0E19, Math.exp(-predict)));
+                } else if(this.isGBTSigmoidConvert) {
+                    predict = 1 / (1 + Math.min(1.0E19, Math.exp(-20 * predict)));
+                } else if(this.isGBTCutoffConvert) {
+                    predict = (predict < 0d ? 0d : (predict > 1d ? 1d : predict));
+                }
+                finalPredict += predict;
+            } else {
+                double predictSum = 0d, weightSum = 0d;
+                for(int j = this.bagOffsets.get(i); j < end; j++) {
+                    double weight = this.treeWeights.get(j);
+                    weightSum += weight;
+                    predictSum += predict(j, data) * weight;
+                }
+                finalPredict += (predictSum / weightSum);
+            }
+        }
+        return new double[] { finalPredict / bags };
+    }
+
+    private double[] bind(Map<String, Object> dataMap) {
+        double[] data = new double[this.inputSize];
+        for(int i = 0; i < this.columnNames.length; i++) {
+            Object obj = dataMap.get(this.columnNames[i]);
+            int table = this.slotTableIds.get(i);
+            double value;
+            if(table >= 0) {
+                value = (obj == null ? this.missingValues.get(i) : lookup(table, obj.toString()));
+            } else if(obj == null) {
+                value = this.missingValues.get(i);
+            } else if(obj instanceof Number) {
+                value = ((Number) obj).doubleValue();
+            } else {
+                value = DoubleParser.parse(obj instanceof CharSequence ? (CharSequence) obj : obj.toString(),
+                        this.missingValues.get(i));
+            }
+            if(table < 0 && Double.isNaN(value)) {
+                value = this.missingValues.get(i);
+            }
+            data[this.indexes.get(i)] = value;
+        }
+        return data;
+    }
+
+    /**
+     * Look up category index in mapped table, the same probing as {@link TreeInputBinder.CategoryTable}.
+     */
+    private int lookup(int table, String category) {
+        int base = this.tableBases.get(table);
+        int mask = this.tableMasks.get(table);
+        for(int slot = TreeInputBinder.CategoryTable.hash(category) & mask;; slot = (slot + 1) & mask) {
+            int key = this.tableKeys.get(base + slot);
+            if(key < 0) {
+                return this.tableMissingIndexes.get(table);
+            }
+            if(isKey(key, category)) {
+                return this.tableValues.get(base + slot);
+            }
+        }
+    }
+
+    private boolean isKey(int key, String category) {
+        int from = this.keyOffsets.get(key);
+        int length = this.keyOffsets.get(key + 1) - from;
+        if(length != category.length()) {
+            return false;
+        }
+        for(int i = 0; i < length; i++) {
+            if(this.keyChars.get(from + i) != category.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The same traversal as {@link CompiledTreeEnsemble#predict(int, double[])}.
+     */
+    private double predict(int tree, double[] data) {
+        int node = this.treeRoots.get(tree);
+        int featureIndex;
+        while((featureIndex = this.featureIndexes.get(node)) != LEAF) {
+            double value = data[featureIndex];
+            int maskOffset = this.maskOffsets.get(node);
+            if(maskOffset < 0) {
+                node = value < this.thresholds.get(node) ? this.leftChildren.get(node) : this.rightChildren.get(node);
+            } else {
+                int categorySize = this.categorySizes.get(node);
+                int indexValue;
+                if(Double.compare(value, 0d) < 0 || Double.compare(value, categorySize) >= 0) {
+                    indexValue = categorySize;
+                } else {
+                    indexValue = (short) (value + 0.1d);
+                }
+                long word = this.categoryMasks.get(maskOffset + (indexValue >>> 6));
+                node = (word & (1L << indexValue)) != 0L ? this.leftChildren.get(node) : this.rightChildren.get(node);
+            }
+        }
+        return this.leafValues.get(node);
+    }
+
+    /**
+     * @return output size per record of {@link #compute(double[])}, # of all trees for classification and 1 for
+     *         regression
+     */
+    public int getOutputCount() {
+        return this.isClassification ? this.treeRoots.limit() : 1;
+    }
+
+    /**
+     * @return the algorithm
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return the lossStr
+     */
+    public String getLossStr() {
+        return lossStr;
+    }
+
+    /**
+     * @return the isClassification
+     */
+    public boolean isClassification() {
+        return isClassification;
+    }
+
+    /**
+     * @return the isGBDT
+     */
+    public boolean isGBDT() {
+        return isGBDT;
+    }
+
+    /**
+     * @return the inputNode
+     */
+    public int getInputNode() {
+        return inputNode;
+    }
+
+    /**
+     * Sequential reader of flat model used only in loading, arrays are returned as views on the buffer.
+     */
+    private static final class FlatInput {
+
+        private final ByteBuffer buffer;
+
+        private int position;
+
+        FlatInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        int readInt() {
+            int value = this.buffer.getInt(this.position);
+            this.position += 4;
+            return value;
+        }
+
+        boolean readBoolean() {
+            return readInt() != 0;
+        }
+
+        String readString() {
+            char[] chars = new char[readInt()];
+            for(int i = 0; i < chars.length; i++) {
+                chars[i] = this.buffer.getChar(this.position + 2 * i);
+            }
+            this.position += 2 * chars.length;
+            return new String(chars);
+        }
+
+        IntBuffer readInts() {
+            int length = readInt();
+            return slice(length, 4).asIntBuffer();
+        }
+
+        LongBuffer readLongs() {
+            int length = readInt();
+            return slice(length, 8).asLongBuffer();
+        }
+
+        DoubleBuffer readDoubles() {
+            int length = readInt();
+            return slice(length, 8).asDoubleBuffer();
+        }
+
+        CharBuffer readChars() {
+            int length = readInt();
+            return slice(length, 2).asCharBuffer();
+        }
+
+        private ByteBuffer slice(int length, int elementBytes) {
+            this.position = (this.position + 7) & ~7;
+            ByteBuffer duplicate = this.buffer.duplicate();
+            // cast to Buffer to be compatible with covariant methods in newer JDKs
+            ((Buffer) duplicate).limit(this.position + length * elementBytes);
+            ((Buffer) duplicate).position(this.position);
+            this.position += length * elementBytes;
+            return duplicate.slice();
+        }
+    }
+
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.dt;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import ml.shifu.shifu.util.DoubleParser;
+
+/**
+ * {@link TreeInputBinder} is the pre-compiled input conversion of {@link IndependentTreeModel}, it binds raw data map
+ * to model input array. Column names, target indexes and missing values of all input slots are resolved into arrays
+ * when model is loaded. Category values of each categorical column are in one {@link CategoryTable}, an open
+ * addressing String to int table. Numerical values are parsed by {@link DoubleParser} without exceptions.
+ *
+ * <p>
+ * {@link #bind(Map)} is then a single loop over slot arrays without boxed index lookups. Values are exactly the same
+ * as converting them by model maps record by record.
+ *
+ * <p>
+ * Binder is immutable and can be shared by multiple scoring threads.
+ */
+final class TreeInputBinder {
+
+    /**
+     * Column name of each slot to get raw value from data map.
+     */
+    private final String[] columnNames;
+
+    /**
+     * Index in model input array of each slot.
+     */
+    private final int[] indexes;
+
+    /**
+     * Category table of each slot, null for numerical slot.
+     */
+    private final CategoryTable[] categoryTables;
+
+    /**
+     * Value of each slot for missing or invalid input: mean value for numerical slot and missing bin index (category
+     * size) for categorical slot.
+     */
+    private final double[] missingValues;
+
+    /**
+     * Size of model input array.
+     */
+    private final int inputSize;
+
+    private TreeInputBinder(String[] columnNames, int[] indexes, CategoryTable[] categoryTables,
+            double[] missingValues, int inputSize) {
+        this.columnNames = columnNames;
+        this.indexes = indexes;
+        this.categoryTables = categoryTables;
+        this.missingValues = missingValues;
+        this.inputSize = inputSize;
+    }
+
+    /**
+     * Build binder from mappings of tree model, slots are in iteration order of column num index mapping. Slots with
+     * index out of input array are ignored.
+     *
+     * @param model
+     *            the tree model
+     * @return the input binder
+     */
+    static TreeInputBinder build(IndependentTreeModel model) {
+        Map<Integer, Integer> columnNumIndexMapping = model.getColumnNumIndexMapping();
+        Map<Integer, List<String>> categoricalColumnNameNames = model.getCategoricalColumnNameNames();
+        Map<Integer, Double> numericalMeanMapping = model.getNumericalMeanMapping();
+        int inputSize = columnNumIndexMapping.size();
+
+        int slots = 0;
+        for(Integer index: columnNumIndexMapping.values()) {
+            if(index != null && index < inputSize) {
+                slots++;
+            }
+        }
+
+        String[] columnNames = new String[slots];
+        int[] indexes = new int[slots];
+        CategoryTable[] categoryTables = new CategoryTable[slots];
+        double[] missingValues = new double[slots];
+        int slot = 0;
+        for(Entry<Integer, Integer> entry: columnNumIndexMapping.entrySet()) {
+            Integer columnNum = entry.getKey();
+            Integer index = entry.getValue();
+            if(index == null || index >= inputSize) {
+                continue;
+            }
+            columnNames[slot] = model.getNumNameMapping().get(columnNum);
+            indexes[slot] = index;
+            if(categoricalColumnNameNames.containsKey(columnNum)) {
+                int categoricalSize = categoricalColumnNameNames.get(columnNum).size();
+                categoryTables[slot] = CategoryTable.build(model.getColumnCategoryIndexMapping().get(columnNum),
+                        categoricalSize);
+                missingValues[slot] = categoricalSize;
+            } else {
+                Double mean = numericalMeanMapping.get(columnNum);
+                missingValues[slot] = (mean == null ? 0d : mean);
+            }
+            slot++;
+        }
+        return new TreeInputBinder(columnNames, indexes, categoryTables, missingValues, inputSize);
+    }
+
+    /**
+     * Convert raw data map into model input array.
+     *
+     * @param dataMap
+     *            (columnName, value) raw data map, categorical value is category value, numerical value can be number
+     *            or String
+     * @return model input array
+     */
+    double[] bind(Map<String, Object> dataMap) {
+        double[] data = new double[this.inputSize];
+        for(int i = 0; i < this.indexes.length; i++) {
+            Object obj = dataMap.get(this.columnNames[i]);
+            CategoryTable table = this.categoryTables[i];
+            double value;
+            if(table != null) {
+                // category not found or missing value is in missing bin (the last one)
+                value = (obj == null ? this.missingValues[i] : table.get(obj.toString()));
+            } else if(obj == null) {
+                value = this.missingValues[i];
+            } else if(obj instanceof Number) {
+                value = ((Number) obj).doubleValue();
+            } else {
+                value = DoubleParser.parse(obj instanceof CharSequence ? (CharSequence) obj : obj.toString(),
+                        this.missingValues[i]);
+            }
+            if(table == null && Double.isNaN(value)) {
+                value = this.missingValues[i];
+            }
+            data[this.indexes[i]] = value;
+        }
+        return data;
+    }
+
+    /**
+     * Write binder into flat model, {@link MappedTreeModel} reads it in the same order. Tables of all categorical slots
+     * are concatenated: table t takes slots [tableBases[t], tableBases[t] + tableMasks[t] + 1) in table keys and
+     * values, key of each slot is the id of category value in key chars or -1 if empty.
+     *
+     * @param out
+     *            the flat model output
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    void write(FlatDTSerializer.FlatOutput out) throws IOException {
+        out.writeInt(this.inputSize);
+        out.writeInt(this.columnNames.length);
+        for(String columnName: this.columnNames) {
+            out.writeString(columnName);
+        }
+        out.writeInts(this.indexes);
+
+        int tables = 0, tableSlots = 0, keys = 0, keyChars = 0;
+        for(CategoryTable table: this.categoryTables) {
+            if(table != null) {
+                tables += 1;
+                tableSlots += table.keys.length;
+                for(String key: table.keys) {
+                    if(key != null) {
+                        keys += 1;
+                        keyChars += key.length();
+                    }
+                }
+            }
+        }
+
+        int[] slotTableIds = new int[this.categoryTables.length];
+        int[] tableBases = new int[tables];
+        int[] tableMasks = new int[tables];
+        int[] tableMissingIndexes = new int[tables];
+        int[] tableKeys = new int[tableSlots];
+        int[] tableValues = new int[tableSlots];
+        int[] keyOffsets = new int[keys + 1];
+        char[] chars = new char[keyChars];
+        int table = 0, base = 0, key = 0;
+        for(int i = 0; i < this.categoryTables.length; i++) {
+            CategoryTable categoryTable = this.categoryTables[i];
+            if(categoryTable == null) {
+                slotTableIds[i] = -1;
+                continue;
+            }
+            slotTableIds[i] = table;
+            tableBases[table] = base;
+            tableMasks[table] = categoryTable.mask;
+            tableMissingIndexes[table] = categoryTable.missingIndex;
+            for(int slot = 0; slot < categoryTable.keys.length; slot++) {
+                String category = categoryTable.keys[slot];
+                if(category == null) {
+                    tableKeys[base + slot] = -1;
+                    continue;
+                }
+                tableKeys[base + slot] = key;
+                tableValues[base + slot] = categoryTable.values[slot];
+                category.getChars(0, category.length(), chars, keyOffsets[key]);
+                keyOffsets[key + 1] = keyOffsets[key] + category.length();
+                key += 1;
+            }
+            base += categoryTable.keys.length;
+            table += 1;
+        }
+
+        out.writeInts(slotTableIds);
+        out.writeDoubles(this.missingValues);
+        out.writeInts(tableBases);
+        out.writeInts(tableMasks);
+        out.writeInts(tableMissingIndexes);
+        out.writeInts(tableKeys);
+        out.writeInts(tableValues);
+        out.writeInts(keyOffsets);
+        out.writeChars(chars);
+    }
+
+    /**
+     * Open addressing table from category value to category index of one column. Values not found are mapped to
+     * missing bin index which is category size.
+     */
+    static final class CategoryTable {
+
+        private final String[] keys;
+
+        private final int[] values;
+
+        private final int mask;
+
+        private final int missingIndex;
+
+        private CategoryTable(int capacity, int missingIndex) {
+            int length = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+            this.keys = new String[length];
+            this.values = new int[length];
+            this.mask = length - 1;
+            this.missingIndex = missingIndex;
+        }
+
+        static CategoryTable build(Map<String, Integer> categoryIndexMap, int categoricalSize) {
+            CategoryTable table = new CategoryTable(categoryIndexMap == null ? 0 : categoryIndexMap.size(),
+                    categoricalSize);
+            if(categoryIndexMap != null) {
+                for(Entry<String, Integer> entry: categoryIndexMap.entrySet()) {
+                    Integer index = entry.getValue();
+                    if(entry.getKey() != null && index != null && index >= 0 && index < categoricalSize) {
+                        table.put(entry.getKey(), index);
+                    }
+                }
+            }
+            return table;
+        }
+
+        /**
+         * Hash of category value, it only depends on {@link String#hashCode()} which is stable in all JVMs, so it is
+         * also used to look up tables in flat model.
+         */
+        static int hash(String key) {
+            int h = key.hashCode() * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        private void put(String key, int value) {
+            int slot = hash(key) & this.mask;
+            while(this.keys[slot] != null && !this.keys[slot].equals(key)) {
+                slot = (slot + 1) & this.mask;
+            }
+            this.keys[slot] = key;
+            this.values[slot] = value;
+        }
+
+        /**
+         * @param key
+         *            category value
+         * @return category index, or missing bin index if not found
+         */
+        int get(String key) {
+            for(int slot = hash(key) & this.mask;; slot = (slot + 1) & this.mask) {
+                String current = this.keys[slot];
+                if(current == null) {
+                    return this.missingIndex;
+                }
+                if(current.equals(key)) {
+                    return this.values[slot];
+                }
+            }
+        }
+    }
+
+}
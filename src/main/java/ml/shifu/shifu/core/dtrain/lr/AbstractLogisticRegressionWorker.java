@@ -0,0 +1,903 @@
+/*
+ * Copyright [2013-2014] eBay Software Foundation
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.lr;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.math3.distribution.PoissonDistribution;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Writable;
+import org.encog.mathutil.BoundMath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Splitter;
+
+import ml.shifu.guagua.GuaguaRuntimeException;
+import ml.shifu.guagua.hadoop.io.GuaguaWritableAdapter;
+import ml.shifu.guagua.worker.AbstractWorkerComputable;
+import ml.shifu.guagua.worker.WorkerContext;
+import ml.shifu.guagua.worker.WorkerContext.WorkerCompletionCallBack;
+import ml.shifu.shifu.container.obj.ColumnConfig;
+import ml.shifu.shifu.container.obj.ModelConfig;
+import ml.shifu.shifu.container.obj.RawSourceData.SourceType;
+import ml.shifu.shifu.core.dtrain.CommonConstants;
+import ml.shifu.shifu.core.dtrain.DTrainUtils;
+import ml.shifu.shifu.core.dtrain.IterationProfile;
+import ml.shifu.shifu.core.dtrain.IterationProfile.Phase;
+import ml.shifu.shifu.util.CommonUtils;
+import ml.shifu.shifu.util.Constants;
+import ml.shifu.shifu.util.MapReduceUtils;
+
+/**
+ * {@link AbstractLogisticRegressionWorker} defines logic to accumulate local <a
+ * href=http://en.wikipedia.org/wiki/Logistic_regression >logistic regression</a> gradients.
+ * 
+ * <p>
+ * At first iteration, wait for master to use the consistent initiating model.
+ * 
+ * <p>
+ * At other iterations, workers include:
+ * <ul>
+ * <li>1. Update local model by using global model from last step..</li>
+ * <li>2. Accumulate gradients by using local worker input data, records are partitioned into ranges and computed in
+ * {@link #threadPool}.</li>
+ * <li>3. Send new local gradients to master by returning parameters.</li>
+ * </ul>
+ * 
+ * <p>
+ * L1 and l2 regulations are supported by configuration: RegularizedConstant in model params of ModelConfig.json.
+ * 
+ * <p>
+ * {@link AbstractLogisticRegressionWorker} is a common class for different LR input format, records are parsed in
+ * {@link #load(GuaguaWritableAdapter, GuaguaWritableAdapter, WorkerContext)} of sub classes and added by
+ * {@link #addRecord(long, float[], float[], double, WorkerContext)}.
+ */
+public abstract class AbstractLogisticRegressionWorker<VALUE extends Writable> extends
+        AbstractWorkerComputable<LogisticRegressionParams, LogisticRegressionParams, GuaguaWritableAdapter<LongWritable>, GuaguaWritableAdapter<VALUE>> {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(AbstractLogisticRegressionWorker.class);
+
+    /**
+     * Flat spot value to smooth lr derived function: result * (1 - result): This value sometimes may be close to zero.
+     * Add flat sport to improve it: result * (1 - result) + 0.1d
+     */
+    private static final double FLAT_SPOT_VALUE = 0.1d;
+
+    /**
+     * Min elements of one slice in reducing gradients of threads, small arrays are reduced in caller thread.
+     */
+    private static final int MIN_REDUCE_SLICE_LENGTH = 4096;
+
+    /**
+     * Input column number
+     */
+    protected int inputNum;
+
+    /**
+     * Output column number
+     */
+    protected int outputNum;
+
+    /**
+     * Candidate column number
+     */
+    protected int candidateNum;
+
+    /**
+     * Record count
+     */
+    protected int count;
+
+    /**
+     * sampled input record size.
+     */
+    protected long sampleCount;
+
+    /**
+     * Testing data set.
+     */
+    private LRDataSet validationData;
+
+    /**
+     * Training data set.
+     */
+    private LRDataSet trainingData;
+
+    /**
+     * Local logistic regression model.
+     */
+    private double[] weights;
+
+    /**
+     * Model Config read from HDFS
+     */
+    protected ModelConfig modelConfig;
+
+    /**
+     * Column Config list read from HDFS
+     */
+    protected List<ColumnConfig> columnConfigList;
+
+    /**
+     * A splitter to split data with specified delimiter.
+     */
+    protected Splitter splitter;
+
+    /**
+     * PoissonDistribution which is used for poisson sampling for bagging with replacement.
+     */
+    protected PoissonDistribution rng = null;
+
+    /**
+     * PoissonDistribution which is used for up sampleing positive records.
+     */
+    protected PoissonDistribution upSampleRng = null;
+
+    /**
+     * Indicates if there are cross validation data sets.
+     */
+    protected boolean isSpecificValidation = false;
+
+    /**
+     * If stratified sampling or random sampling
+     */
+    protected boolean isStratifiedSampling = false;
+
+    /**
+     * Positive count in training data list, only be effective in 0-1 regression or onevsall classification
+     */
+    protected long positiveTrainCount;
+
+    /**
+     * Positive count in training data list and being selected in training, only be effective in 0-1 regression or
+     * onevsall classification
+     */
+    protected long positiveSelectedTrainCount;
+
+    /**
+     * Negative count in training data list , only be effective in 0-1 regression or onevsall classification
+     */
+    protected long negativeTrainCount;
+
+    /**
+     * Negative count in training data list and being selected, only be effective in 0-1 regression or onevsall
+     * classification
+     */
+    protected long negativeSelectedTrainCount;
+
+    /**
+     * Positive count in validation data list, only be effective in 0-1 regression or onevsall classification
+     */
+    protected long positiveValidationCount;
+
+    /**
+     * Negative count in validation data list, only be effective in 0-1 regression or onevsall classification
+     */
+    protected long negativeValidationCount;
+
+    /**
+     * PoissonDistribution which is used for poission sampling for bagging with replacement.
+     */
+
+    protected Map<Integer, PoissonDistribution> baggingRngMap = new HashMap<Integer, PoissonDistribution>();
+
+    /**
+     * Construct a bagging random map for different classes. For stratified sampling, this is useful for each class
+     * sampling.
+     */
+    protected Map<Integer, Random> baggingRandomMap = new HashMap<Integer, Random>();
+
+    /**
+     * Construct a validation random map for different classes. For stratified sampling, this is useful for each class
+     * sampling.
+     */
+    protected Map<Integer, Random> validationRandomMap = new HashMap<Integer, Random>();
+
+    /**
+     * Trainer id used to tag bagging training job, starting from 0, 1, 2 ...
+     */
+    protected Integer trainerId;
+
+    /**
+     * If k-fold cross validation
+     */
+    private boolean isKFoldCV;
+
+    /**
+     * The model set candidate variables or not
+     */
+    protected boolean hasCandidates = false;
+
+    /**
+     * Thread count to compute gradients and errors, set by ModelConfig#train#workerThreadCount.
+     */
+    private int workerThreadCount = 1;
+
+    /**
+     * Thread pool to compute gradients and errors of record ranges.
+     */
+    private ExecutorService threadPool;
+
+    /**
+     * Time by {@link System#nanoTime()} when last result is built, start of worker wait phase in next iteration.
+     */
+    private long lastResultNanos;
+
+    /**
+     * If serialized size of result is measured for training profile.
+     */
+    private boolean isProfileResultBytes;
+
+    protected boolean isUpSampleEnabled() {
+        return this.upSampleRng != null;
+    }
+
+    @Override
+    public void init(WorkerContext<LogisticRegressionParams, LogisticRegressionParams> context) {
+        loadConfigFiles(context.getProps());
+        int[] inputOutputIndex = DTrainUtils.getInputOutputCandidateCounts(modelConfig.getNormalizeType(),
+                this.columnConfigList);
+        this.inputNum = inputOutputIndex[0] == 0 ? inputOutputIndex[2] : inputOutputIndex[0];
+        this.outputNum = inputOutputIndex[1];
+        this.candidateNum = inputOutputIndex[2];
+        this.isSpecificValidation = (modelConfig.getValidationDataSetRawPath() != null
+                && !"".equals(modelConfig.getValidationDataSetRawPath()));
+        this.isStratifiedSampling = this.modelConfig.getTrain().getStratifiedSample();
+        this.trainerId = Integer.valueOf(context.getProps().getProperty(CommonConstants.SHIFU_TRAINER_ID, "0"));
+        this.isProfileResultBytes = Boolean.TRUE.toString()
+                .equalsIgnoreCase(context.getProps().getProperty(CommonConstants.SHIFU_PROFILE_RESULT_BYTES));
+        Integer kCrossValidation = this.modelConfig.getTrain().getNumKFold();
+        if(kCrossValidation != null && kCrossValidation > 0) {
+            isKFoldCV = true;
+        }
+
+        if(this.inputNum == 0) {
+            throw new IllegalStateException("No any variables are selected, please try variable select step firstly.");
+        }
+        this.rng = new PoissonDistribution(1.0d);
+        Double upSampleWeight = modelConfig.getTrain().getUpSampleWeight();
+        if(Double.compare(upSampleWeight, 1d) != 0) {
+            // set mean to upSampleWeight -1 and get sample + 1 to make sure no zero sample value
+            LOG.info("Enable up sampling with weight {}.", upSampleWeight);
+            this.upSampleRng = new PoissonDistribution(upSampleWeight - 1);
+        }
+        double memoryFraction = Double.valueOf(context.getProps().getProperty("guagua.data.memoryFraction", "0.6"));
+        LOG.info("Max heap memory: {}, fraction: {}", Runtime.getRuntime().maxMemory(), memoryFraction);
+        double crossValidationRate = this.modelConfig.getValidSetRate();
+        // records over memory limit are spilled to local files
+        String tmpFolder = context.getProps().getProperty("guagua.data.tmpfolder", "tmp");
+        File trainSpillFile = new File(tmpFolder, "train-" + System.currentTimeMillis());
+        File validationSpillFile = new File(tmpFolder, "test-" + System.currentTimeMillis());
+
+        if(StringUtils.isNotBlank(modelConfig.getValidationDataSetRawPath())) {
+            // fixed 0.6 and 0.4 of max memory for trainingData and validationData
+            this.trainingData = new LRDataSet((long) (Runtime.getRuntime().maxMemory() * memoryFraction * 0.6),
+                    this.inputNum, trainSpillFile);
+            this.validationData = new LRDataSet((long) (Runtime.getRuntime().maxMemory() * memoryFraction * 0.4),
+                    this.inputNum, validationSpillFile);
+        } else {
+            this.trainingData = new LRDataSet(
+                    (long) (Runtime.getRuntime().maxMemory() * memoryFraction * (1 - crossValidationRate)),
+                    this.inputNum, trainSpillFile);
+            this.validationData = new LRDataSet(
+                    (long) (Runtime.getRuntime().maxMemory() * memoryFraction * crossValidationRate), this.inputNum,
+                    validationSpillFile);
+        }
+
+        // create Splitter
+        String delimiter = context.getProps().getProperty(Constants.SHIFU_OUTPUT_DATA_DELIMITER);
+        this.splitter = MapReduceUtils.generateShifuOutputSplitter(delimiter);
+
+        Integer workerThreadCount = this.modelConfig.getTrain().getWorkerThreadCount();
+        this.workerThreadCount = (workerThreadCount == null || workerThreadCount <= 0) ? 1 : workerThreadCount;
+        this.threadPool = Executors.newFixedThreadPool(this.workerThreadCount);
+        LOG.info("Gradient computing thread count is {}.", this.workerThreadCount);
+        // enable shut down logic
+        context.addCompletionCallBack(
+                new WorkerCompletionCallBack<LogisticRegressionParams, LogisticRegressionParams>() {
+                    @Override
+                    public void callback(WorkerContext<LogisticRegressionParams, LogisticRegressionParams> context) {
+                        AbstractLogisticRegressionWorker.this.threadPool.shutdownNow();
+                        try {
+                            AbstractLogisticRegressionWorker.this.threadPool.awaitTermination(2, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        AbstractLogisticRegressionWorker.this.trainingData.close();
+                        AbstractLogisticRegressionWorker.this.validationData.close();
+                    }
+                });
+    }
+
+    @Override
+    public LogisticRegressionParams doCompute(
+            WorkerContext<LogisticRegressionParams, LogisticRegressionParams> context) {
+        if(context.isFirstIteration()) {
+            return new LogisticRegressionParams();
+        } else {
+            IterationProfile profile = new IterationProfile(1);
+            long phaseStart = System.nanoTime();
+            if(this.lastResultNanos > 0L) {
+                profile.set(Phase.WORKER_WAIT, phaseStart - this.lastResultNanos);
+            }
+            this.weights = context.getLastMasterResult().getParameters();
+            long trainingSize = this.trainingData.size();
+            long testingSize = this.validationData.size();
+
+            // each train task returns local gradients with local train error appended
+            final double[] weights = this.weights;
+            List<Callable<double[]>> trainTasks = new ArrayList<Callable<double[]>>();
+            for(final int[] range: getThreadRanges(this.trainingData.memorySize())) {
+                trainTasks.add(new Callable<double[]>() {
+                    @Override
+                    public double[] call() {
+                        return computeGradients(weights, range[0], range[1]);
+                    }
+                });
+            }
+            if(this.trainingData.spilledSize() > 0) {
+                // spilled records are scanned in order in one more task
+                trainTasks.add(new Callable<double[]>() {
+                    @Override
+                    public double[] call() throws IOException {
+                        return computeSpilledGradients(weights);
+                    }
+                });
+            }
+            List<Callable<double[]>> validationTasks = new ArrayList<Callable<double[]>>();
+            for(final int[] range: getThreadRanges(this.validationData.memorySize())) {
+                validationTasks.add(new Callable<double[]>() {
+                    @Override
+                    public double[] call() {
+                        return new double[] { computeValidationError(weights, range[0], range[1]) };
+                    }
+                });
+            }
+            if(this.validationData.spilledSize() > 0) {
+                validationTasks.add(new Callable<double[]>() {
+                    @Override
+                    public double[] call() throws IOException {
+                        return new double[] { computeSpilledValidationError(weights) };
+                    }
+                });
+            }
+
+            double[] gradients = reduce(invokeAll(trainTasks), this.inputNum + 2);
+            double trainingFinalError = gradients[this.inputNum + 1];
+            gradients = Arrays.copyOf(gradients, this.inputNum + 1);
+            phaseStart = profile.elapsed(Phase.WORKER_COMPUTE, phaseStart);
+            // TODO here we should use current weights+gradients to compute testing error, so far it is for last error
+            // computing.
+            double testingFinalError = reduce(invokeAll(validationTasks), 1)[0];
+            profile.elapsed(Phase.WORKER_SCAN, phaseStart);
+            LOG.info("Iteration {} training data with error {}", context.getCurrentIteration(),
+                    trainingFinalError / trainingSize);
+            LOG.info("Iteration {} testing data with error {}", context.getCurrentIteration(),
+                    testingFinalError / testingSize);
+            LogisticRegressionParams params = new LogisticRegressionParams(gradients, trainingFinalError,
+                    testingFinalError, trainingSize, testingSize);
+            if(this.isProfileResultBytes) {
+                profile.set(Phase.RESULT_BYTES, IterationProfile.sizeOf(params));
+            }
+            params.setProfile(profile);
+            this.lastResultNanos = System.nanoTime();
+            return params;
+        }
+    }
+
+    /**
+     * Accumulate gradients of training records in [from, to).
+     * 
+     * @return gradients of all weights including bias, with train error as the last element
+     */
+    private double[] computeGradients(double[] weights, int from, int to) {
+        double[] gradients = new double[this.inputNum + 2];
+        double error = 0d;
+        for(int i = from; i < to; i++) {
+            double result = sigmoid(this.trainingData.dot(i, weights));
+            double diff = this.trainingData.getLabel(i) - result;
+            error += caculateMSEError(diff);
+            // compute gradient for each weight, this is not like traditional LR (no derived function), with derived
+            // function, we see good convergence speed in our models. Factor is the same for all weights of one record.
+            // TODO extract function to provide traditional lr gradients and derived version for user to configure
+            double factor = diff * (derivedFunction(result) + FLAT_SPOT_VALUE) * this.trainingData.getSignificance(i);
+            this.trainingData.addGradients(i, factor, gradients);
+        }
+        gradients[this.inputNum + 1] = error;
+        return gradients;
+    }
+
+    /**
+     * Accumulate gradients of spilled training records, the same as {@link #computeGradients(double[], int, int)}.
+     */
+    private double[] computeSpilledGradients(final double[] weights) throws IOException {
+        final double[] gradients = new double[this.inputNum + 2];
+        final int inputCount = this.inputNum;
+        this.trainingData.scanSpilled(new LRDataSet.RecordVisitor() {
+            @Override
+            public void visit(float[] inputs, float label, double significance) {
+                double result = sigmoid(LRDataSet.dot(inputs, 0, inputCount, weights));
+                double diff = label - result;
+                gradients[inputCount + 1] += caculateMSEError(diff);
+                double factor = diff * (derivedFunction(result) + FLAT_SPOT_VALUE) * significance;
+                LRDataSet.addGradients(inputs, 0, inputCount, factor, gradients);
+            }
+        });
+        return gradients;
+    }
+
+    /**
+     * Sum of errors of spilled validation records.
+     */
+    private double computeSpilledValidationError(final double[] weights) throws IOException {
+        final double[] error = new double[1];
+        final int inputCount = this.inputNum;
+        this.validationData.scanSpilled(new LRDataSet.RecordVisitor() {
+            @Override
+            public void visit(float[] inputs, float label, double significance) {
+                double result = sigmoid(LRDataSet.dot(inputs, 0, inputCount, weights));
+                error[0] += caculateMSEError(result - label);
+            }
+        });
+        return error[0];
+    }
+
+    /**
+     * Sum of errors of validation records in [from, to).
+     */
+    private double computeValidationError(double[] weights, int from, int to) {
+        double error = 0d;
+        for(int i = from; i < to; i++) {
+            double result = sigmoid(this.validationData.dot(i, weights));
+            error += caculateMSEError(result - this.validationData.getLabel(i));
+        }
+        return error;
+    }
+
+    /**
+     * Split records into ranges [from, to) for worker threads, no range if no records.
+     */
+    private List<int[]> getThreadRanges(int records) {
+        int threads = Math.min(this.workerThreadCount, records);
+        List<int[]> ranges = new ArrayList<int[]>(threads);
+        for(int i = 0; i < threads; i++) {
+            ranges.add(new int[] { (int) ((long) records * i / threads), (int) ((long) records * (i + 1) / threads) });
+        }
+        return ranges;
+    }
+
+    /**
+     * Element-wise sum of arrays of all threads. Arrays are summed in slices of elements by {@link #threadPool} if
+     * there are many elements.
+     */
+    private double[] reduce(final List<double[]> locals, int length) {
+        if(locals.isEmpty()) {
+            return new double[length];
+        }
+        final double[] result = locals.get(0);
+        if(locals.size() == 1) {
+            return result;
+        }
+        int slices = length < MIN_REDUCE_SLICE_LENGTH * 2 ? 1
+                : Math.min(this.workerThreadCount, length / MIN_REDUCE_SLICE_LENGTH);
+        List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>(slices);
+        for(int i = 0; i < slices; i++) {
+            final int from = (int) ((long) length * i / slices), to = (int) ((long) length * (i + 1) / slices);
+            tasks.add(new Callable<double[]>() {
+                @Override
+                public double[] call() {
+                    for(int j = 1; j < locals.size(); j++) {
+                        double[] local = locals.get(j);
+                        for(int k = from; k < to; k++) {
+                            result[k] += local[k];
+                        }
+                    }
+                    return result;
+                }
+            });
+        }
+        if(slices == 1) {
+            try {
+                tasks.get(0).call();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        } else {
+            invokeAll(tasks);
+        }
+        return result;
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<T>(tasks.size());
+        try {
+            for(Future<T> future: this.threadPool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GuaguaRuntimeException(e);
+        }
+        return results;
+    }
+
+    /**
+     * MSE value computation. We can provide more for user to configure in the future.
+     */
+    private double caculateMSEError(double error) {
+        return error * error;
+    }
+
+    /**
+     * Derived function for sigmoid function.
+     */
+    private double derivedFunction(double result) {
+        return result * (1d - result);
+    }
+
+    /**
+     * Compute sigmoid value of dot product of inputs and weights with bias.
+     */
+    private double sigmoid(double value) {
+        return 1.0d / (1.0d + BoundMath.exp(-1 * value));
+    }
+
+    @SuppressWarnings("unused")
+    private double cost(double result, double output) {
+        if(output == 1.0d) {
+            return -Math.log(result);
+        } else {
+            return -Math.log(1 - result);
+        }
+    }
+
+    @Override
+    protected void postLoad(WorkerContext<LogisticRegressionParams, LogisticRegressionParams> context) {
+        this.trainingData.finishAppend();
+        this.validationData.finishAppend();
+        LOG.info("    - # Records of the Total Data Set: {}.", this.count);
+        LOG.info("    - Bagging Sample Rate: {}.", this.modelConfig.getBaggingSampleRate());
+        LOG.info("    - Bagging With Replacement: {}.", this.modelConfig.isBaggingWithReplacement());
+        if(this.isKFoldCV) {
+            LOG.info("        - Validation Rate(kFold): {}.", 1d / this.modelConfig.getTrain().getNumKFold());
+        } else {
+            LOG.info("        - Validation Rate: {}.", this.modelConfig.getValidSetRate());
+        }
+        LOG.info("        - # Records of the Training Set: {}.", this.trainingData.size());
+        if(this.trainingData.spilledSize() > 0 || this.validationData.spilledSize() > 0) {
+            LOG.warn("        - # Training and validation records spilled to disk: {}, {}.",
+                    this.trainingData.spilledSize(), this.validationData.spilledSize());
+        }
+        if(modelConfig.isRegression() || modelConfig.getTrain().isOneVsAll()) {
+            LOG.info("        - # Positive Bagging Selected Records of the Training Set: {}.",
+                    this.positiveSelectedTrainCount);
+            LOG.info("        - # Negative Bagging Selected Records of the Training Set: {}.",
+                    this.negativeSelectedTrainCount);
+            LOG.info("        - # Positive Raw Records of the Training Set: {}.", this.positiveTrainCount);
+            LOG.info("        - # Negative Raw Records of the Training Set: {}.", this.negativeTrainCount);
+        }
+
+        if(validationData != null) {
+            LOG.info("        - # Records of the Validation Set: {}.", this.validationData.size());
+            if(modelConfig.isRegression() || modelConfig.getTrain().isOneVsAll()) {
+                LOG.info("        - # Positive Records of the Validation Set: {}.", this.positiveValidationCount);
+                LOG.info("        - # Negative Records of the Validation Set: {}.", this.negativeValidationCount);
+            }
+        }
+    }
+
+    /**
+     * Add one parsed record to training or validation data set after negative only sampling and up sampling.
+     * 
+     * @param hashcode
+     *            the hash code of the record
+     * @param inputData
+     *            the input values
+     * @param outputData
+     *            the target values
+     * @param significance
+     *            the weight of the record
+     * @param context
+     *            the worker context
+     */
+    protected void addRecord(long hashcode, float[] inputData, float[] outputData, double significance,
+            WorkerContext<LogisticRegressionParams, LogisticRegressionParams> context) {
+        // sample negative only logic here
+        if(modelConfig.getTrain().getSampleNegOnly()) {
+            if(this.modelConfig.isFixInitialInput()) {
+                // if fixInitialInput, sample hashcode in 1-sampleRate range out if negative records
+                int startHashCode = (100 / this.modelConfig.getBaggingNum()) * this.trainerId;
+                // here BaggingSampleRate means how many data will be used in training and validation, if it is 0.8, we
+                // should take 1-0.8 to check endHashCode
+                int endHashCode = startHashCode
+                        + Double.valueOf((1d - this.modelConfig.getBaggingSampleRate()) * 100).intValue();
+                if((modelConfig.isRegression()
+                        || (modelConfig.isClassification() && modelConfig.getTrain().isOneVsAll())) // regression or
+                                                                                                    // onevsall
+                        && (int) (outputData[0] + 0.01d) == 0 // negative record
+                        && isInRange(hashcode, startHashCode, endHashCode)) {
+                    return;
+                }
+            } else {
+                // if not fixed initial input, and for regression or onevsall multiple classification (regression also).
+                // if negative record
+                if((modelConfig.isRegression()
+                        || (modelConfig.isClassification() && modelConfig.getTrain().isOneVsAll())) // regression or
+                                                                                                    // onevsall
+                        && (int) (outputData[0] + 0.01d) == 0 // negative record
+                        && Double.compare(Math.random(), this.modelConfig.getBaggingSampleRate()) >= 0) {
+                    return;
+                }
+            }
+        }
+
+        Data data = new Data(inputData, outputData, significance);
+
+        // up sampling logic, just add more weights while bagging sampling rate is still not changed
+        if(modelConfig.isRegression() && isUpSampleEnabled() && Double.compare(outputData[0], 1d) == 0) {
+            // Double.compare(ideal[0], 1d) == 0 means positive tags; sample + 1 to avoids sample count to 0
+            data.setSignificance(data.significance * (this.upSampleRng.sample() + 1));
+        }
+
+        boolean isValidation = false;
+        if(context.getAttachment() != null && context.getAttachment() instanceof Boolean) {
+            isValidation = (Boolean) context.getAttachment();
+        }
+
+        addDataPairToDataSet(hashcode, data, isValidation);
+    }
+
+    /**
+     * Append record to training data set with bagging sampling, sampled weight is multiplied into significance before
+     * appending as records cannot be changed in data set.
+     */
+    private void appendTrainingData(Data data) {
+        if(isPositive(data.outputs[0])) {
+            this.positiveTrainCount += 1L;
+        } else {
+            this.negativeTrainCount += 1L;
+        }
+        // do bagging sampling only for training data
+        float subsampleWeights = sampleWeights(data.outputs[0]);
+        if(isPositive(data.outputs[0])) {
+            this.positiveSelectedTrainCount += subsampleWeights * 1L;
+        } else {
+            this.negativeSelectedTrainCount += subsampleWeights * 1L;
+        }
+        // set weights to significance, if 0, significance will be 0, that is bagging sampling
+        this.trainingData.append(data.inputs, data.outputs[0], data.significance * subsampleWeights);
+    }
+
+    /**
+     * Append record to validation data set. For validation data, according bagging sampling logic, we may need to
+     * sampling validation data set, while validation data set are only used to compute validation error, not to do
+     * real sampling is ok.
+     */
+    private void appendValidationData(Data data) {
+        if(isPositive(data.outputs[0])) {
+            this.positiveValidationCount += 1L;
+        } else {
+            this.negativeValidationCount += 1L;
+        }
+        this.validationData.append(data.inputs, data.outputs[0], data.significance);
+    }
+
+    protected float sampleWeights(float label) {
+        float sampleWeights = 1f;
+        // sample negative or kFoldCV, sample rate is 1d
+        double sampleRate = (modelConfig.getTrain().getSampleNegOnly() || this.isKFoldCV) ? 1d
+                : modelConfig.getTrain().getBaggingSampleRate();
+        int classValue = (int) (label + 0.01f);
+        if(!modelConfig.isBaggingWithReplacement()) {
+            Random random = null;
+            if(this.isStratifiedSampling) {
+                random = baggingRandomMap.get(classValue);
+                if(random == null) {
+                    random = DTrainUtils.generateRandomBySampleSeed(modelConfig.getTrain().getBaggingSampleSeed(),
+                            CommonConstants.NOT_CONFIGURED_BAGGING_SEED);
+                    baggingRandomMap.put(classValue, random);
+                }
+            } else {
+                random = baggingRandomMap.get(0);
+                if(random == null) {
+                    random = DTrainUtils.generateRandomBySampleSeed(modelConfig.getTrain().getBaggingSampleSeed(),
+                            CommonConstants.NOT_CONFIGURED_BAGGING_SEED);
+                    baggingRandomMap.put(0, random);
+                }
+            }
+            if(random.nextDouble() <= sampleRate) {
+                sampleWeights = 1f;
+            } else {
+                sampleWeights = 0f;
+            }
+        } else {
+            // bagging with replacement sampling in training data set, take PoissonDistribution for sampling with
+            // replacement
+            if(this.isStratifiedSampling) {
+                PoissonDistribution rng = this.baggingRngMap.get(classValue);
+                if(rng == null) {
+                    rng = new PoissonDistribution(sampleRate);
+                    this.baggingRngMap.put(classValue, rng);
+                }
+                sampleWeights = rng.sample();
+            } else {
+                PoissonDistribution rng = this.baggingRngMap.get(0);
+                if(rng == null) {
+                    rng = new PoissonDistribution(sampleRate);
+                    this.baggingRngMap.put(0, rng);
+                }
+                sampleWeights = rng.sample();
+            }
+        }
+        return sampleWeights;
+    }
+
+    private void loadConfigFiles(final Properties props) {
+        try {
+            SourceType sourceType = SourceType
+                    .valueOf(props.getProperty(CommonConstants.MODELSET_SOURCE_TYPE, SourceType.HDFS.toString()));
+            this.modelConfig = CommonUtils.loadModelConfig(props.getProperty(CommonConstants.SHIFU_MODEL_CONFIG),
+                    sourceType);
+            this.columnConfigList = CommonUtils
+                    .loadColumnConfigList(props.getProperty(CommonConstants.SHIFU_COLUMN_CONFIG), sourceType);
+            this.hasCandidates = CommonUtils.hasCandidateColumns(this.columnConfigList);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    protected boolean isPositive(float value) {
+        return Float.compare(1f, value) == 0 ? true : false;
+    }
+
+    /**
+     * Add to training set or validation set according to validation rate.
+     * 
+     * @param hashcode
+     *            the hash code of the data
+     * @param data
+     *            data instance
+     * @param isValidation
+     *            if it is validation
+     * @return if in training, training is true, others are false.
+     */
+    protected boolean addDataPairToDataSet(long hashcode, Data data, boolean isValidation) {
+        if(this.isKFoldCV) {
+            int k = this.modelConfig.getTrain().getNumKFold();
+            if(hashcode % k == this.trainerId) {
+                appendValidationData(data);
+                return false;
+            } else {
+                appendTrainingData(data);
+                return true;
+            }
+        }
+
+        if(this.isSpecificValidation) {
+            if(isValidation) {
+                appendValidationData(data);
+                return false;
+            } else {
+                appendTrainingData(data);
+                return true;
+            }
+        } else {
+            if(Double.compare(this.modelConfig.getValidSetRate(), 0d) != 0) {
+                int classValue = (int) (data.outputs[0] + 0.01f);
+                Random random = null;
+                if(this.isStratifiedSampling) {
+                    // each class use one random instance
+                    random = validationRandomMap.get(classValue);
+                    if(random == null) {
+                        random = new Random();
+                        this.validationRandomMap.put(classValue, random);
+                    }
+                } else {
+                    // all data use one random instance
+                    random = validationRandomMap.get(0);
+                    if(random == null) {
+                        random = new Random();
+                        this.validationRandomMap.put(0, random);
+                    }
+                }
+
+                if(this.modelConfig.isFixInitialInput()) {
+                    // for fix initial input, if hashcode%100 is in [start-hashcode, end-hashcode), validation,
+                    // otherwise training. start hashcode in different job is different to make sure bagging jobs have
+                    // different data. if end-hashcode is over 100, then check if hashcode is in [start-hashcode, 100]
+                    // or [0, end-hashcode]
+                    int startHashCode = (100 / this.modelConfig.getBaggingNum()) * this.trainerId;
+                    int endHashCode = startHashCode
+                            + Double.valueOf(this.modelConfig.getValidSetRate() * 100).intValue();
+                    if(isInRange(hashcode, startHashCode, endHashCode)) {
+                        appendValidationData(data);
+                        return false;
+                    } else {
+                        appendTrainingData(data);
+                        return true;
+                    }
+                } else {
+                    // not fixed initial input, if random value >= validRate, training, otherwise validation.
+                    if(random.nextDouble() >= this.modelConfig.getValidSetRate()) {
+                        appendTrainingData(data);
+                        return true;
+                    } else {
+                        appendValidationData(data);
+                        return false;
+                    }
+                }
+            } else {
+                appendTrainingData(data);
+                return true;
+            }
+        }
+    }
+
+    private boolean isInRange(long hashcode, int startHashCode, int endHashCode) {
+        // check if in [start, end] or if in [start, 100) and [0, end-100)
+        int hashCodeIn100 = (int) hashcode % 100;
+        if(endHashCode <= 100) {
+            // in range [start, end)
+            return hashCodeIn100 >= startHashCode && hashCodeIn100 < endHashCode;
+        } else {
+            // in range [start, 100) or [0, endHashCode-100)
+            return hashCodeIn100 >= startHashCode || hashCodeIn100 < (endHashCode % 100);
+        }
+    }
+
+    /**
+     * Record parsed in loading, it is packed into {@link LRDataSet} and not kept.
+     */
+    private static class Data {
+
+        private double significance;
+        private float[] inputs;
+        private float[] outputs;
+
+        public Data(float[] inputs, float[] outputs, double significance) {
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.significance = significance;
+        }
+
+        /**
+         * @param significance
+         *            the significance to set
+         */
+        public void setSignificance(double significance) {
+            this.significance = significance;
+        }
+    }
+
+}
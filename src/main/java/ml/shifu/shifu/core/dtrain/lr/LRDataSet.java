@@ -0,0 +1,324 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.lr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link LRDataSet} is in-memory training or validation data set of {@link LogisticRegressionWorker}. Records are
+ * packed into large blocks: inputs of all records in one flat float array with inputs of one record adjacent, labels
+ * and significances in parallel arrays.
+ *
+ * <p>
+ * Records are only appended in data loading phase. After loading, records are read by index, data set can be read by
+ * multiple threads concurrently with disjoint or overlapped index ranges as nothing is changed in reading.
+ *
+ * <p>
+ * Row count in memory is limited by max bytes set in constructor. Records over the limit are spilled to a local file
+ * and can only be scanned in order by {@link #scanSpilled(RecordVisitor)}; without spill file such records are
+ * rejected.
+ */
+final class LRDataSet {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LRDataSet.class);
+
+    private static final int BLOCK_SHIFT = 16;
+
+    /**
+     * Max records in one block.
+     */
+    static final int BLOCK_ROWS = 1 << BLOCK_SHIFT;
+
+    private static final int BLOCK_MASK = BLOCK_ROWS - 1;
+
+    private final int inputCount;
+
+    /**
+     * Max records in data set according to memory limit.
+     */
+    private final int maxRows;
+
+    private final List<float[]> inputBlocks = new ArrayList<float[]>();
+
+    private final List<float[]> labelBlocks = new ArrayList<float[]>();
+
+    private final List<double[]> significanceBlocks = new ArrayList<double[]>();
+
+    private int size;
+
+    /**
+     * File of records over memory limit, null if spilling is disabled.
+     */
+    private final File spillFile;
+
+    private DataOutputStream spillOutput;
+
+    private int spilledSize;
+
+    /**
+     * Visitor of records in spill file.
+     */
+    interface RecordVisitor {
+
+        /**
+         * @param inputs
+         *            inputs of record, the array is reused for next record
+         * @param label
+         *            the label
+         * @param significance
+         *            the weight of record
+         */
+        void visit(float[] inputs, float label, double significance);
+    }
+
+    /**
+     * Constructor of data set without spill file, appending records over memory limit fails.
+     *
+     * @param maxByteSize
+     *            max bytes of memory used by data set
+     * @param inputCount
+     *            number of inputs of each record
+     */
+    LRDataSet(long maxByteSize, int inputCount) {
+        this(maxByteSize, inputCount, null);
+    }
+
+    /**
+     * Constructor of data set.
+     *
+     * @param maxByteSize
+     *            max bytes of memory used by data set
+     * @param inputCount
+     *            number of inputs of each record
+     * @param spillFile
+     *            local file to store records over memory limit, null to disable spilling
+     */
+    LRDataSet(long maxByteSize, int inputCount, File spillFile) {
+        this.inputCount = inputCount;
+        this.spillFile = spillFile;
+        long rowBytes = 4L * inputCount + 4L + 8L;
+        this.maxRows = (int) Math.min(Integer.MAX_VALUE, Math.max(0L, maxByteSize) / rowBytes);
+        LOG.info("LR data set with {} inputs, {} bytes per record, max records is {}.", inputCount, rowBytes,
+                this.maxRows);
+    }
+
+    /**
+     * Append one record, records over memory limit are appended to spill file.
+     *
+     * @param inputs
+     *            inputs of record, length should be input count of data set
+     * @param label
+     *            the label
+     * @param significance
+     *            the weight of record
+     * @throws IllegalStateException
+     *             if memory limit is reached and spilling is disabled
+     */
+    void append(float[] inputs, float label, double significance) {
+        if(this.size >= this.maxRows) {
+            spill(inputs, label, significance);
+            return;
+        }
+
+        int blockIndex = this.size >>> BLOCK_SHIFT;
+        if(blockIndex == this.inputBlocks.size()) {
+            int rows = Math.min(BLOCK_ROWS, this.maxRows - this.size);
+            this.inputBlocks.add(new float[rows * this.inputCount]);
+            this.labelBlocks.add(new float[rows]);
+            this.significanceBlocks.add(new double[rows]);
+        }
+        int row = this.size & BLOCK_MASK;
+        System.arraycopy(inputs, 0, this.inputBlocks.get(blockIndex), row * this.inputCount, this.inputCount);
+        this.labelBlocks.get(blockIndex)[row] = label;
+        this.significanceBlocks.get(blockIndex)[row] = significance;
+        this.size += 1;
+    }
+
+    private void spill(float[] inputs, float label, double significance) {
+        if(this.spillFile == null) {
+            throw new IllegalStateException("Memory limit of LR data set is reached with " + this.size
+                    + " records, please increase worker memory or number of workers.");
+        }
+        try {
+            if(this.spillOutput == null) {
+                LOG.warn("Memory limit of LR data set is reached with {} records, later records are spilled to {}.",
+                        this.size, this.spillFile);
+                this.spillFile.getAbsoluteFile().getParentFile().mkdirs();
+                this.spillOutput = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(this.spillFile)));
+            }
+            for(int i = 0; i < this.inputCount; i++) {
+                this.spillOutput.writeFloat(inputs[i]);
+            }
+            this.spillOutput.writeFloat(label);
+            this.spillOutput.writeDouble(significance);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.spilledSize += 1;
+    }
+
+    /**
+     * Flush spill file after all records are appended, should be called before {@link #scanSpilled(RecordVisitor)}.
+     */
+    void finishAppend() {
+        if(this.spillOutput != null) {
+            IOUtils.closeQuietly(this.spillOutput);
+            this.spillOutput = null;
+        }
+    }
+
+    /**
+     * Scan all records in spill file in appending order, the same spill file can be scanned by multiple threads.
+     *
+     * @param visitor
+     *            the visitor of each record
+     * @throws IOException
+     *             any io exception in reading spill file
+     */
+    void scanSpilled(RecordVisitor visitor) throws IOException {
+        if(this.spilledSize == 0) {
+            return;
+        }
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(this.spillFile)));
+        try {
+            float[] inputs = new float[this.inputCount];
+            for(int i = 0; i < this.spilledSize; i++) {
+                for(int j = 0; j < this.inputCount; j++) {
+                    inputs[j] = input.readFloat();
+                }
+                float label = input.readFloat();
+                visitor.visit(inputs, label, input.readDouble());
+            }
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Delete spill file.
+     */
+    void close() {
+        finishAppend();
+        if(this.spillFile != null && this.spillFile.exists() && !this.spillFile.delete()) {
+            LOG.warn("Failed to delete spill file {}.", this.spillFile);
+        }
+    }
+
+    /**
+     * @return number of records in data set, including spilled records
+     */
+    int size() {
+        return this.size + this.spilledSize;
+    }
+
+    /**
+     * @return number of records in memory, which can be read by index
+     */
+    int memorySize() {
+        return this.size;
+    }
+
+    /**
+     * @return number of records in spill file
+     */
+    int spilledSize() {
+        return this.spilledSize;
+    }
+
+    /**
+     * Dot product of inputs of one record and weights, the last weight is bias.
+     *
+     * @param index
+     *            the record index
+     * @param weights
+     *            weights with bias, length is input count + 1
+     * @return sum of weighted inputs and bias
+     */
+    double dot(int index, double[] weights) {
+        return dot(this.inputBlocks.get(index >>> BLOCK_SHIFT), (index & BLOCK_MASK) * this.inputCount,
+                this.inputCount, weights);
+    }
+
+    /**
+     * Dot product of inputs [offset, offset + inputCount) and weights, the last weight is bias.
+     */
+    static double dot(float[] inputs, int offset, int inputCount, double[] weights) {
+        double value = 0d;
+        for(int i = 0; i < inputCount; i++) {
+            value += weights[i] * inputs[offset + i];
+        }
+        return value + weights[inputCount];
+    }
+
+    /**
+     * Accumulate inputs of one record multiplied by factor into gradients, the last gradient is bias with input 1.
+     *
+     * @param index
+     *            the record index
+     * @param factor
+     *            factor of such record
+     * @param gradients
+     *            gradients with bias, length is input count + 1
+     */
+    void addGradients(int index, double factor, double[] gradients) {
+        addGradients(this.inputBlocks.get(index >>> BLOCK_SHIFT), (index & BLOCK_MASK) * this.inputCount,
+                this.inputCount, factor, gradients);
+    }
+
+    /**
+     * Accumulate inputs [offset, offset + inputCount) multiplied by factor into gradients, the last gradient is bias.
+     */
+    static void addGradients(float[] inputs, int offset, int inputCount, double factor, double[] gradients) {
+        for(int i = 0; i < inputCount; i++) {
+            gradients[i] += factor * inputs[offset + i];
+        }
+        gradients[inputCount] += factor;
+    }
+
+    /**
+     * @param index
+     *            the record index
+     * @return label of record
+     */
+    float getLabel(int index) {
+        return this.labelBlocks.get(index >>> BLOCK_SHIFT)[index & BLOCK_MASK];
+    }
+
+    /**
+     * @param index
+     *            the record index
+     * @return significance of record
+     */
+    double getSignificance(int index) {
+        return this.significanceBlocks.get(index >>> BLOCK_SHIFT)[index & BLOCK_MASK];
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.lr;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.io.LongWritable;
+
+import ml.shifu.guagua.ComputableMonitor;
+import ml.shifu.guagua.hadoop.io.GuaguaWritableAdapter;
+import ml.shifu.guagua.io.GuaguaFileSplit;
+import ml.shifu.guagua.worker.WorkerContext;
+import ml.shifu.shifu.container.obj.ColumnConfig;
+import ml.shifu.shifu.container.obj.ModelNormalizeConf;
+import ml.shifu.shifu.guagua.BinaryNormFormat;
+import ml.shifu.shifu.guagua.BinaryNormRow;
+import ml.shifu.shifu.guagua.GuaguaBinaryNormRecordReader;
+import ml.shifu.shifu.util.CommonUtils;
+
+/**
+ * {@link LogisticRegressionBinaryWorker} defines logic to accumulate local <a
+ * href=http://en.wikipedia.org/wiki/Logistic_regression >logistic regression</a> gradients.
+ *
+ * <p>
+ * {@link LogisticRegressionBinaryWorker} is to load data with {@link BinaryNormFormat}. Rows are in the same column
+ * layout as text norm output of {@link LogisticRegressionWorker} while values are read as floats without parsing; NaN
+ * values, stored for null norm values, are processed the same as empty text values.
+ */
+@ComputableMonitor(timeUnit = TimeUnit.SECONDS, duration = 3600)
+public class LogisticRegressionBinaryWorker extends AbstractLogisticRegressionWorker<BinaryNormRow> {
+
+    @Override
+    public void initRecordReader(GuaguaFileSplit fileSplit) throws IOException {
+        this.setRecordReader(new GuaguaBinaryNormRecordReader(fileSplit));
+    }
+
+    @Override
+    public void load(GuaguaWritableAdapter<LongWritable> currentKey, GuaguaWritableAdapter<BinaryNormRow> currentValue,
+            WorkerContext<LogisticRegressionParams, LogisticRegressionParams> context) {
+        ++this.count;
+        if((this.count) % 100000 == 0) {
+            LOG.info("Read {} records.", this.count);
+        }
+        float[] inputData = new float[inputNum];
+        float[] outputData = new float[outputNum];
+        int index = 0, inputIndex = 0, outputIndex = 0;
+        long hashcode = 0;
+        double significance = 1d;
+
+        float[] values = currentValue.getWritable().getValues();
+        int pos = 0;
+
+        for(pos = 0; pos < values.length;) {
+            float floatValue = getFloatValue(values, pos);
+
+            if(pos == values.length - 1) {
+                if(StringUtils.isBlank(modelConfig.getWeightColumnName())) {
+                    significance = 1d;
+                    // break here if we reach weight column which is last column
+                    break;
+                }
+
+                // NaN is stored for empty weight
+                significance = Float.isNaN(values[pos]) ? 1d : values[pos];
+                // if invalid weight, set it to 1f and warning in log
+                if(Double.compare(significance, 0d) < 0) {
+                    LOG.warn("The {} record in current worker weight {} is less than 0f, it is invalid, set it to 1.",
+                            count, significance);
+                    significance = 1d;
+                }
+                // the last field is significance, break here
+                break;
+            } else {
+                ColumnConfig columnConfig = this.columnConfigList.get(index);
+                if(columnConfig != null && columnConfig.isTarget()) {
+                    outputData[outputIndex++] = floatValue;
+                    pos++;
+                } else {
+                    if(this.inputNum == this.candidateNum) {
+                        // no variable selected, good candidate but not meta and not target choosed
+                        if(!columnConfig.isMeta() && !columnConfig.isTarget()
+                                && CommonUtils.isGoodCandidate(columnConfig, this.hasCandidates)) {
+                            inputData[inputIndex++] = floatValue;
+                            hashcode = hashcode * 31 + Float.valueOf(floatValue).hashCode();
+                        }
+                        pos++;
+                    } else {
+                        if(columnConfig.isFinalSelect()) {
+                            if(columnConfig.isNumerical()
+                                    && modelConfig.getNormalizeType().equals(ModelNormalizeConf.NormType.ONEHOT)) {
+                                for(int k = 0; k < columnConfig.getBinBoundary().size() + 1; k++) {
+                                    inputData[inputIndex++] = getFloatValue(values, pos);
+                                    pos++;
+                                }
+                            } else if(columnConfig.isCategorical() && (modelConfig.getNormalizeType()
+                                    .equals(ModelNormalizeConf.NormType.ZSCALE_ONEHOT)
+                                    || modelConfig.getNormalizeType().equals(ModelNormalizeConf.NormType.ONEHOT))) {
+                                for(int k = 0; k < columnConfig.getBinCategory().size() + 1; k++) {
+                                    inputData[inputIndex++] = getFloatValue(values, pos);
+                                    pos++;
+                                }
+                            } else {
+                                inputData[inputIndex++] = floatValue;
+                                pos++;
+                            }
+
+                            hashcode = hashcode * 31 + Double.valueOf(floatValue).hashCode();
+                        } else {
+                            if(!CommonUtils.isToNormVariable(columnConfig, this.hasCandidates,
+                                    modelConfig.isRegression())) {
+                                pos += 1;
+                            } else if(columnConfig.isNumerical()
+                                    && modelConfig.getNormalizeType().equals(ModelNormalizeConf.NormType.ONEHOT)
+                                    && columnConfig.getBinBoundary() != null
+                                    && columnConfig.getBinBoundary().size() > 0) {
+                                pos += (columnConfig.getBinBoundary().size() + 1);
+                            } else if(columnConfig.isCategorical() && (modelConfig.getNormalizeType()
+                                    .equals(ModelNormalizeConf.NormType.ZSCALE_ONEHOT)
+                                    || modelConfig.getNormalizeType().equals(ModelNormalizeConf.NormType.ONEHOT))
+                                    && columnConfig.getBinCategory().size() > 0) {
+                                pos += (columnConfig.getBinCategory().size() + 1);
+                            } else {
+                                pos += 1;
+                            }
+                        }
+                    }
+                }
+            }
+            index += 1;
+        }
+
+        if(index != this.columnConfigList.size() || pos != values.length - 1) {
+            throw new RuntimeException("Wrong data indexing. ColumnConfig index = " + index + ", while it should be "
+                    + columnConfigList.size() + ". Data Pos = " + pos + ", while it should be "
+                    + (values.length - 1));
+        }
+
+        if(inputIndex != inputData.length) {
+            throw new RuntimeException("Input length is inconsistent with parsing size. Input original size: "
+                    + inputData.length + ", parsing size:" + inputIndex + ".");
+        }
+
+        addRecord(hashcode, inputData, outputData, significance, context);
+    }
+
+    /*
+     * NaN in input data is processed as missing value 0f, the same as empty text value in {@link
+     * LogisticRegressionWorker}.
+     */
+    private static float getFloatValue(float[] values, int pos) {
+        return Float.isNaN(values[pos]) ? 0f : values[pos];
+    }
+
+}
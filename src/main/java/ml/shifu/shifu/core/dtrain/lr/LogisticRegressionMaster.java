@@ -35,6 +35,8 @@ import ml.shifu.shifu.container.obj.RawSourceData.SourceType;
 import ml.shifu.shifu.core.LR;
 import ml.shifu.shifu.core.dtrain.CommonConstants;
 import ml.shifu.shifu.core.dtrain.DTrainUtils;
+import ml.shifu.shifu.core.dtrain.IterationProfile;
+import ml.shifu.shifu.core.dtrain.IterationProfile.Phase;
 import ml.shifu.shifu.core.dtrain.RegulationLevel;
 import ml.shifu.shifu.core.dtrain.Weight;
 import ml.shifu.shifu.core.dtrain.earlystop.AbstractEarlyStopStrategy;
@@ -134,6 +136,11 @@ public class LogisticRegressionMaster extends
      */
     private AbstractEarlyStopStrategy earlyStopStrategy;
 
+    /**
+     * Time by {@link System#nanoTime()} when last master result is built, start of master wait phase.
+     */
+    private long lastResultNanos;
+
     @Override
     public void init(MasterContext<LogisticRegressionParams, LogisticRegressionParams> context) {
         loadConfigFiles(context.getProps());
@@ -248,6 +255,11 @@ public class LogisticRegressionMaster extends
                 return initWeights();
             }
         } else {
+            IterationProfile profile = new IterationProfile(0);
+            long phaseStart = System.nanoTime();
+            if(this.lastResultNanos > 0L) {
+                profile.set(Phase.MASTER_WAIT, phaseStart - this.lastResultNanos);
+            }
             // append bias
             double[] gradients = new double[this.inputNum + 1];
             double trainError = 0.0d, testError = 0d;
@@ -261,8 +273,10 @@ public class LogisticRegressionMaster extends
                     testError += param.getTestError();
                     trainSize += param.getTrainSize();
                     testSize += param.getTestSize();
+                    profile.merge(param.getProfile());
                 }
             }
+            phaseStart = profile.elapsed(Phase.MASTER_MERGE, phaseStart);
 
             if(this.weightCalculator == null) {
                 this.weightCalculator = new Weight(weights.length, trainSize, learningRate, this.propagation,
@@ -294,6 +308,9 @@ public class LogisticRegressionMaster extends
                 }
             }
 
+            profile.elapsed(Phase.MASTER_COMPUTE, phaseStart);
+            lrParams.setProfile(profile);
+            this.lastResultNanos = System.nanoTime();
             return lrParams;
         }
     }
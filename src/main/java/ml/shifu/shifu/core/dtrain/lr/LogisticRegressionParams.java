@@ -21,6 +21,8 @@ import java.io.IOException;
 
 import ml.shifu.guagua.io.Combinable;
 import ml.shifu.guagua.io.HaltBytable;
+import ml.shifu.shifu.core.dtrain.IterationProfile;
+import ml.shifu.shifu.core.dtrain.IterationProfiled;
 
 /**
  * A model class to store logistic regression weight on first iteration by using {@link #parameters}, while in other
@@ -34,7 +36,8 @@ import ml.shifu.guagua.io.HaltBytable;
  * Workers are responsible to compute local accumulated gradients and send to master while master accumulates all
  * gradients together to build a global model.
  */
-public class LogisticRegressionParams extends HaltBytable implements Combinable<LogisticRegressionParams>{
+public class LogisticRegressionParams extends HaltBytable implements Combinable<LogisticRegressionParams>,
+        IterationProfiled {
 
     /**
      * Model weights in the first iteration, gradients in other iterations.
@@ -61,6 +64,11 @@ public class LogisticRegressionParams extends HaltBytable implements Combinable<
      */
     private long testSize;
 
+    /**
+     * Phase profile of current iteration, merged from workers in master result
+     */
+    private IterationProfile profile;
+
     public LogisticRegressionParams() {
     }
 
@@ -111,6 +119,7 @@ public class LogisticRegressionParams extends HaltBytable implements Combinable<
         for(int i = 0; i < this.parameters.length; i++) {
             this.parameters[i] += from.parameters[i];
         }
+        this.profile = (this.profile == null ? from.profile : this.profile.merge(from.profile));
         return this;
     }
 
@@ -128,6 +137,7 @@ public class LogisticRegressionParams extends HaltBytable implements Combinable<
         out.writeDouble(this.testError);
         out.writeLong(this.trainSize);
         out.writeLong(this.testSize);
+        IterationProfile.write(out, this.profile);
     }
 
     @Override
@@ -141,6 +151,7 @@ public class LogisticRegressionParams extends HaltBytable implements Combinable<
         this.testError = in.readDouble();
         this.trainSize = in.readLong();
         this.testSize = in.readLong();
+        this.profile = IterationProfile.read(in);
     }
 
     /**
@@ -188,4 +199,14 @@ public class LogisticRegressionParams extends HaltBytable implements Combinable<
         this.testSize = testSize;
     }
 
+    @Override
+    public IterationProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public void setProfile(IterationProfile profile) {
+        this.profile = profile;
+    }
+
 }
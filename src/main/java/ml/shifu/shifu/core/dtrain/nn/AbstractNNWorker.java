@@ -52,13 +52,15 @@ import ml.shifu.shifu.container.obj.ModelConfig;
 import ml.shifu.shifu.container.obj.RawSourceData.SourceType;
 import ml.shifu.shifu.core.dtrain.CommonConstants;
 import ml.shifu.shifu.core.dtrain.DTrainUtils;
+import ml.shifu.shifu.core.dtrain.IterationProfile;
+import ml.shifu.shifu.core.dtrain.IterationProfile.Phase;
 import ml.shifu.shifu.core.dtrain.dataset.BasicFloatMLData;
 import ml.shifu.shifu.core.dtrain.dataset.BasicFloatMLDataPair;
 import ml.shifu.shifu.core.dtrain.dataset.BasicFloatMLDataSet;
-import ml.shifu.shifu.core.dtrain.dataset.BufferedFloatMLDataSet;
 import ml.shifu.shifu.core.dtrain.dataset.FloatFlatNetwork;
 import ml.shifu.shifu.core.dtrain.dataset.FloatMLDataPair;
 import ml.shifu.shifu.core.dtrain.dataset.FloatMLDataSet;
+import ml.shifu.shifu.core.dtrain.dataset.MappedFloatMLDataSet;
 import ml.shifu.shifu.core.dtrain.dataset.MemoryDiskFloatMLDataSet;
 import ml.shifu.shifu.core.dtrain.gs.GridSearch;
 import ml.shifu.shifu.util.CommonUtils;
@@ -294,6 +296,22 @@ public abstract class AbstractNNWorker<VALUE extends Writable> extends
      */
     protected boolean hasCandidates = false;
 
+    /**
+     * Non-zero id of this worker from its container id, master uses it to cache latest gradients of each worker in
+     * bounded staleness mode. Restarted worker keeps the same id so its stale gradients are replaced but not doubled.
+     */
+    private long workerId;
+
+    /**
+     * Time by {@link System#nanoTime()} when last result is built, start of worker wait phase in next iteration.
+     */
+    private long lastResultNanos;
+
+    /**
+     * If serialized size of result is measured for training profile.
+     */
+    private boolean isProfileResultBytes;
+
     protected boolean isUpSampleEnabled() {
         // only enabled in regression
         return this.upSampleRng != null && (modelConfig.isRegression()
@@ -344,11 +362,11 @@ public abstract class AbstractNNWorker<VALUE extends Writable> extends
         LOG.debug("Use disk to store training data and testing data. Training data file:{}; Testing data file:{} ",
                 trainingFile.toString(), testingFile.toString());
 
-        this.trainingData = new BufferedFloatMLDataSet(new File(trainingFile.toString()));
-        ((BufferedFloatMLDataSet) this.trainingData).beginLoad(this.featureInputsCnt, getOutputNodeCount());
+        this.trainingData = new MappedFloatMLDataSet(new File(trainingFile.toString()));
+        ((MappedFloatMLDataSet) this.trainingData).beginLoad(this.featureInputsCnt, getOutputNodeCount());
 
-        this.validationData = new BufferedFloatMLDataSet(new File(testingFile.toString()));
-        ((BufferedFloatMLDataSet) this.validationData).beginLoad(this.featureInputsCnt, getOutputNodeCount());
+        this.validationData = new MappedFloatMLDataSet(new File(testingFile.toString()));
+        ((MappedFloatMLDataSet) this.validationData).beginLoad(this.featureInputsCnt, getOutputNodeCount());
     }
 
     @Override
@@ -359,6 +377,9 @@ public abstract class AbstractNNWorker<VALUE extends Writable> extends
         loadConfigFiles(context.getProps());
 
         this.trainerId = Integer.valueOf(context.getProps().getProperty(CommonConstants.SHIFU_TRAINER_ID, "0"));
+        this.isProfileResultBytes = Boolean.TRUE.toString()
+                .equalsIgnoreCase(context.getProps().getProperty(CommonConstants.SHIFU_PROFILE_RESULT_BYTES));
+        this.workerId = StaleGradients.toWorkerId(context.getContainerId());
         GridSearch gs = new GridSearch(modelConfig.getTrain().getParams(),
                 modelConfig.getTrain().getGridConfigFileContent());
         this.validParams = this.modelConfig.getTrain().getParams();
@@ -470,8 +491,8 @@ public abstract class AbstractNNWorker<VALUE extends Writable> extends
             Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
                 @Override
                 public void run() {
-                    ((BufferedFloatMLDataSet) (AbstractNNWorker.this.trainingData)).close();
-                    ((BufferedFloatMLDataSet) (AbstractNNWorker.this.validationData)).close();
+                    ((MappedFloatMLDataSet) (AbstractNNWorker.this.trainingData)).close();
+                    ((MappedFloatMLDataSet) (AbstractNNWorker.this.validationData)).close();
                 }
             }));
         } else {
@@ -532,6 +553,11 @@ public abstract class AbstractNNWorker<VALUE extends Writable> extends
             return null;
         }
         LOG.debug("Set current model with params {}", context.getLastMasterResult());
+        IterationProfile profile = new IterationProfile(1);
+        long phaseStart = System.nanoTime();
+        if(this.lastResultNanos > 0L) {
+            profile.set(Phase.WORKER_WAIT, phaseStart - this.lastResultNanos);
+        }
 
         // initialize gradients if null
         double[] weights = context.getLastMasterResult().getWeights();
@@ -556,6 +582,7 @@ public abstract class AbstractNNWorker<VALUE extends Writable> extends
         Set<Integer> dropoutNodes = context.getLastMasterResult().getDropoutNodes();
 
         // using the weights from master to train model in current iteration
+        phaseStart = System.nanoTime();
         double[] gradients = null;
         for(int i = 0; i < epochsPerIteration; i++) {
             gradients = this.gradient.computeGradients(context.getCurrentIteration(), dropoutNodes);
@@ -563,12 +590,14 @@ public abstract class AbstractNNWorker<VALUE extends Writable> extends
                 this.gradient.resetNetworkWeights();
             }
         }
+        phaseStart = profile.elapsed(Phase.WORKER_COMPUTE, phaseStart);
         // get train errors and test errors
         double trainError = this.gradient.getTrainError();
 
         long start = System.currentTimeMillis();
         double testError = this.validationData.getRecordCount() > 0 ? (this.gradient.calculateError())
                 : this.gradient.getTrainError();
+        profile.elapsed(Phase.WORKER_SCAN, phaseStart);
         LOG.info("Computing test error time: {}ms", (System.currentTimeMillis() - start));
 
         // if the validation set is 0%, then the validation error should be "N/A"
@@ -584,6 +613,13 @@ public abstract class AbstractNNWorker<VALUE extends Writable> extends
         params.setWeights(new double[0]);
         params.setTrainSize(this.trainingData.getRecordCount());
         params.setCount(count);
+        params.setIteration(context.getLastMasterResult().getIteration());
+        params.setWorkerId(this.workerId);
+        if(this.isProfileResultBytes) {
+            profile.set(Phase.RESULT_BYTES, IterationProfile.sizeOf(params));
+        }
+        params.setProfile(profile);
+        this.lastResultNanos = System.nanoTime();
         return params;
     }
 
@@ -626,9 +662,9 @@ public abstract class AbstractNNWorker<VALUE extends Writable> extends
     @Override
     protected void postLoad(WorkerContext<NNParams, NNParams> workerContext) {
         if(isOnDisk()) {
-            ((BufferedFloatMLDataSet) this.trainingData).endLoad();
+            ((MappedFloatMLDataSet) this.trainingData).endLoad();
             if(validationData != null) {
-                ((BufferedFloatMLDataSet) this.validationData).endLoad();
+                ((MappedFloatMLDataSet) this.validationData).endLoad();
             }
         } else {
             ((MemoryDiskFloatMLDataSet) this.trainingData).endLoad();
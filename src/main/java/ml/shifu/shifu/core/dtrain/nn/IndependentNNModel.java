@@ -20,22 +20,20 @@ import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.zip.GZIPInputStream;
 
 import org.encog.ml.data.basic.BasicMLData;
 
 import ml.shifu.shifu.container.obj.ColumnType;
 import ml.shifu.shifu.container.obj.ModelNormalizeConf.NormType;
-import ml.shifu.shifu.core.Normalizer;
 import ml.shifu.shifu.core.dtrain.CommonConstants;
 import ml.shifu.shifu.core.dtrain.StringUtils;
 import ml.shifu.shifu.core.dtrain.dataset.BasicFloatNetwork;
 import ml.shifu.shifu.core.dtrain.dataset.PersistBasicFloatNetwork;
-import ml.shifu.shifu.util.BinUtils;
 import ml.shifu.shifu.util.Constants;
 
 /**
@@ -160,6 +158,12 @@ public class IndependentNNModel {
      */
     private Map<Integer, Double> wgtWoeStddevMap;
 
+    /**
+     * Pre-resolved normalization of all input slots, built from stats maps above on first {@link #compute(Map)} call,
+     * models only scored on normalized arrays never build it
+     */
+    private volatile InputTransformPlan transformPlan;
+
     /**
      * Model version
      */
@@ -231,6 +235,47 @@ public class IndependentNNModel {
         }
     }
 
+    /**
+     * Batch version of {@link #compute(double[])}, all rows are computed by each network in matrix-matrix way through
+     * {@link BasicFloatNetwork#compute(double[][], double[])}, outputs are the same as calling
+     * {@link #compute(double[])} row by row.
+     * 
+     * @param rows
+     *            data rows, each row includes only effective column data after normalization
+     * @param outputs
+     *            row-major output array with size at least rows.length * {@link #getOutputCount()}, outputs of row i
+     *            are in [i * outputCount, (i + 1) * outputCount)
+     */
+    public void compute(double[][] rows, double[] outputs) {
+        if(this.basicNetworks == null || this.basicNetworks.size() == 0) {
+            throw new IllegalStateException("no models inside");
+        }
+
+        if(this.basicNetworks.size() == 1) {
+            this.basicNetworks.get(0).compute(rows, outputs);
+        } else {
+            int outputSize = getOutputCount();
+            int modelSize = this.basicNetworks.size();
+            int length = rows.length * outputSize;
+            double[] currResults = new double[length];
+            Arrays.fill(outputs, 0, length, 0d);
+            for(BasicFloatNetwork network: this.basicNetworks) {
+                network.compute(rows, currResults);
+                for(int i = 0; i < length; i++) {
+                    // directly do averaging on each model output element
+                    outputs[i] += currResults[i] / modelSize;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return output size per record of {@link #compute(double[])}
+     */
+    public int getOutputCount() {
+        return this.basicNetworks.get(0).getOutputCount();
+    }
+
     /**
      * Given {@code dataMap} with format (columnName, value), compute score values of neural network model.
      * 
@@ -255,247 +300,20 @@ public class IndependentNNModel {
      * @return score output for neural network
      */
     public double[] compute(Map<String, Object> dataMap) {
-        return compute(convertDataMapToDoubleArray(dataMap));
-    }
-
-    private double[] convertDataMapToDoubleArray(Map<String, Object> dataMap) {
-        double[] data = new double[this.columnNumIndexMap.size()];
-        for(Entry<Integer, Integer> entry: this.columnNumIndexMap.entrySet()) {
-            double value = 0d;
-            Integer columnNum = entry.getKey();
-            String columnName = this.numNameMap.get(columnNum);
-            Object obj = dataMap.get(columnName);
-            ColumnType columnType = this.columnTypeMap.get(columnNum);
-            if(columnType == ColumnType.C) {
-                // categorical column
-                switch(this.normType) {
-                    case WOE:
-                    case HYBRID:
-                        value = getCategoricalWoeValue(columnNum, obj, false);
-                        break;
-                    case WEIGHT_WOE:
-                    case WEIGHT_HYBRID:
-                        value = getCategoricalWoeValue(columnNum, obj, true);
-                        break;
-                    case WOE_ZSCORE:
-                    case WOE_ZSCALE:
-                        value = getCategoricalWoeZScoreValue(columnNum, obj, false);
-                        break;
-                    case WEIGHT_WOE_ZSCORE:
-                    case WEIGHT_WOE_ZSCALE:
-                        value = getCategoricalWoeZScoreValue(columnNum, obj, true);
-                        break;
-                    case OLD_ZSCALE:
-                    case OLD_ZSCORE:
-                        value = getCategoricalPosRateZScoreValue(columnNum, obj, true);
-                        break;
-                    case ZSCALE:
-                    case ZSCORE:
-                    default:
-                        value = getCategoricalPosRateZScoreValue(columnNum, obj, false);
-                        break;
-                }
-            } else if(columnType == ColumnType.N) {
-                // numerical column
-                switch(this.normType) {
-                    case WOE:
-                        value = getNumericalWoeValue(columnNum, obj, false);
-                        break;
-                    case WEIGHT_WOE:
-                        value = getNumericalWoeValue(columnNum, obj, true);
-                        break;
-                    case WOE_ZSCORE:
-                    case WOE_ZSCALE:
-                        value = getNumericalWoeZScoreValue(columnNum, obj, false);
-                        break;
-                    case WEIGHT_WOE_ZSCORE:
-                    case WEIGHT_WOE_ZSCALE:
-                        value = getNumericalWoeZScoreValue(columnNum, obj, true);
-                        break;
-                    case OLD_ZSCALE:
-                    case OLD_ZSCORE:
-                    case ZSCALE:
-                    case ZSCORE:
-                    case HYBRID:
-                    case WEIGHT_HYBRID:
-                    default:
-                        value = getNumericalZScoreValue(columnNum, obj);
-                        break;
-                }
-            } else if(columnType == ColumnType.H) {
-                // hybrid column
-                switch(this.normType) {
-                    case WOE:
-                        value = getHybridWoeValue(columnNum, obj, false);
-                        break;
-                    case WEIGHT_WOE:
-                        value = getHybridWoeValue(columnNum, obj, true);
-                        break;
-                    case WOE_ZSCORE:
-                    case WOE_ZSCALE:
-                        value = getHybridWoeZScoreValue(columnNum, obj, false);
-                        break;
-                    case WEIGHT_WOE_ZSCORE:
-                    case WEIGHT_WOE_ZSCALE:
-                        value = getHybridWoeZScoreValue(columnNum, obj, true);
-                        break;
-                    case OLD_ZSCALE:
-                    case OLD_ZSCORE:
-                    case ZSCALE:
-                    case ZSCORE:
-                    case HYBRID:
-                    case WEIGHT_HYBRID:
-                    default:
-                        throw new IllegalStateException(
-                                "Column type of " + columnName + " is hybrid, but normType is not woe related.");
-                }
-            }
-
-            Integer index = entry.getValue();
-            if(index != null && index < data.length) {
-                data[index] = value;
-            }
-        }
-        return data;
+        return compute(getTransformPlan().transform(dataMap));
     }
 
-    private double getHybridWoeValue(Integer columnNum, Object obj, boolean isWeighted) {
-        // for hybrid categories, category bin merge is not supported, so we can use
-        List<String> binCategories = this.cateCateMap.get(columnNum);
-        Map<String, Integer> cateIndexes = this.cateIndexMap.get(columnNum);
-        Integer binIndex = -1;
-        if(obj == null || cateIndexes == null) {
-            binIndex = -1;
-        } else {
-            binIndex = cateIndexes.get(obj.toString());
-            if(binIndex == null || binIndex < 0) {
-                binIndex = -1;
-            }
-        }
-
-        List<Double> binBoundaries = this.numerBinBoundaries.get(columnNum);
-        if(binIndex != -1) {
-            binIndex = binIndex + binBoundaries.size(); // append the first numerical bins
-        } else {
-            double douVal = BinUtils.parseNumber(obj == null ? null : obj.toString());
-            if(Double.isNaN(douVal)) {
-                binIndex = binBoundaries.size() + binCategories.size();
-            } else {
-                binIndex = BinUtils.getBinIndex(binBoundaries, douVal);
-            }
-        }
-
-        List<Double> binWoes = isWeighted ? this.numerWgtWoes.get(columnNum) : this.numerWoes.get(columnNum);
-        double value = 0d;
-        if(binIndex == -1) {
-            // The last bin in woeBins is the miss value bin.
-            value = binWoes.get(binWoes.size() - 1);
-        } else {
-            value = binWoes.get(binIndex);
-        }
-        return value;
-    }
-
-    private double getNumericalWoeValue(Integer columnNum, Object obj, boolean isWeighted) {
-        int binIndex = -1;
-        if(obj != null) {
-            binIndex = BinUtils.getNumericalBinIndex(this.numerBinBoundaries.get(columnNum), obj.toString());
-        }
-        List<Double> binWoes = isWeighted ? this.numerWgtWoes.get(columnNum) : this.numerWoes.get(columnNum);
-
-        double value = 0d;
-        if(binIndex == -1) {
-            // The last bin in woeBins is the miss value bin.
-            value = binWoes.get(binWoes.size() - 1);
-        } else {
-            value = binWoes.get(binIndex);
-        }
-        return value;
-    }
-
-    private double getNumericalZScoreValue(Integer columnNum, Object obj) {
-        double mean = this.numerMeanMap.get(columnNum);
-        double stddev = this.numerStddevMap.get(columnNum);
-        double rawValue = 0d;
-        if(obj == null || obj.toString().length() == 0) {
-            rawValue = defaultMissingValue(mean);
-        } else {
-            try {
-                rawValue = Double.parseDouble(obj.toString());
-            } catch (Exception e) {
-                rawValue = defaultMissingValue(mean);
-            }
-        }
-        double cutoff = Normalizer.checkCutOff(this.cutOffMap.get(columnNum));
-        return Normalizer.computeZScore(rawValue, mean, stddev, cutoff)[0];
-    }
-
-    private double getCategoricalPosRateZScoreValue(Integer columnNum, Object obj, boolean isOld) {
-        double value = 0d;
-        Map<String, Double> posRateMapping = this.binPosRateMap.get(columnNum);
-        if(obj == null) {
-            value = posRateMapping.get(Constants.EMPTY_CATEGORY);
-        } else {
-            Double posRate = posRateMapping.get(obj.toString());
-            if(posRate == null) {
-                value = posRateMapping.get(Constants.EMPTY_CATEGORY);
-            } else {
-                value = posRate;
-            }
-        }
-
-        if(isOld) {
-            return value;
-        }
-
-        double mean = this.numerMeanMap.get(columnNum);
-        double stddev = this.numerStddevMap.get(columnNum);
-        double cutoff = Normalizer.checkCutOff(this.cutOffMap.get(columnNum));
-        return Normalizer.computeZScore(value, mean, stddev, cutoff)[0];
-    }
-
-    private double getHybridWoeZScoreValue(Integer columnNum, Object obj, boolean isWeighted) {
-        double woe = getHybridWoeValue(columnNum, obj, isWeighted);
-        Map<Integer, Double> woeMeans = isWeighted ? this.wgtWoeMeanMap : this.woeMeanMap;
-        Map<Integer, Double> woeStddevs = isWeighted ? this.wgtWoeStddevMap : this.woeStddevMap;
-        double mean = woeMeans.get(columnNum), stddev = woeStddevs.get(columnNum);
-        double cutoff = Normalizer.checkCutOff(this.cutOffMap.get(columnNum));
-        return Normalizer.computeZScore(woe, mean, stddev, cutoff)[0];
-    }
-
-    private double getNumericalWoeZScoreValue(Integer columnNum, Object obj, boolean isWeighted) {
-        double woe = getNumericalWoeValue(columnNum, obj, isWeighted);
-        Map<Integer, Double> woeMeans = isWeighted ? this.wgtWoeMeanMap : this.woeMeanMap;
-        Map<Integer, Double> woeStddevs = isWeighted ? this.wgtWoeStddevMap : this.woeStddevMap;
-        double mean = woeMeans.get(columnNum), stddev = woeStddevs.get(columnNum);
-        double cutoff = Normalizer.checkCutOff(this.cutOffMap.get(columnNum));
-        return Normalizer.computeZScore(woe, mean, stddev, cutoff)[0];
-    }
-
-    private double getCategoricalWoeZScoreValue(Integer columnNum, Object obj, boolean isWeighted) {
-        double woe = getCategoricalWoeValue(columnNum, obj, isWeighted);
-        Map<Integer, Double> woeMeans = isWeighted ? this.wgtWoeMeanMap : this.woeMeanMap;
-        Map<Integer, Double> woeStddevs = isWeighted ? this.wgtWoeStddevMap : this.woeStddevMap;
-        double mean = woeMeans.get(columnNum), stddev = woeStddevs.get(columnNum);
-        double cutoff = Normalizer.checkCutOff(cutOffMap.get(columnNum));
-        return Normalizer.computeZScore(woe, mean, stddev, cutoff)[0];
-    }
-
-    private double getCategoricalWoeValue(Integer columnNum, Object obj, boolean isWeighted) {
-        double value = 0d;
-        Map<Integer, Map<String, Double>> mappings = isWeighted ? this.cateWgtWoeMap : cateWoeMap;
-        Map<String, Double> woeMap = mappings.get(columnNum);
-        if(obj == null) {
-            value = woeMap.get(Constants.EMPTY_CATEGORY);
-        } else {
-            Double woe = woeMap.get(obj.toString());
-            if(woe == null) {
-                value = woeMap.get(Constants.EMPTY_CATEGORY);
-            } else {
-                value = woe;
-            }
+    /**
+     * Transform plan is built lazily on first use and rebuilt lazily after any stats is reset by setters. Concurrent
+     * first calls may build it more than once, which is harmless since plan is immutable.
+     */
+    private InputTransformPlan getTransformPlan() {
+        InputTransformPlan plan = this.transformPlan;
+        if(plan == null) {
+            plan = InputTransformPlan.build(this);
+            this.transformPlan = plan;
         }
-        return value;
+        return plan;
     }
 
     public static double defaultMissingValue(Double mean) {
@@ -730,6 +548,7 @@ public class IndependentNNModel {
      */
     public void setNormType(NormType normType) {
         this.normType = normType;
+        this.transformPlan = null;
     }
 
     /**
@@ -745,6 +564,7 @@ public class IndependentNNModel {
      */
     public void setNumNameMappings(Map<Integer, String> numNameMappings) {
         this.numNameMap = numNameMappings;
+        this.transformPlan = null;
     }
 
     /**
@@ -760,6 +580,7 @@ public class IndependentNNModel {
      */
     public void setCateColumnNameNames(Map<Integer, List<String>> cateColumnNameNames) {
         this.cateCateMap = cateColumnNameNames;
+        this.transformPlan = null;
     }
 
     /**
@@ -775,6 +596,7 @@ public class IndependentNNModel {
      */
     public void setColumnNumIndexMap(Map<Integer, Integer> columnNumIndexMap) {
         this.columnNumIndexMap = columnNumIndexMap;
+        this.transformPlan = null;
     }
 
     /**
@@ -790,6 +612,7 @@ public class IndependentNNModel {
      */
     public void setCateWoeMap(Map<Integer, Map<String, Double>> cateWoeMap) {
         this.cateWoeMap = cateWoeMap;
+        this.transformPlan = null;
     }
 
     /**
@@ -805,6 +628,7 @@ public class IndependentNNModel {
      */
     public void setWgtCateWoeMap(Map<Integer, Map<String, Double>> wgtCateWoeMap) {
         this.cateWgtWoeMap = wgtCateWoeMap;
+        this.transformPlan = null;
     }
 
     /**
@@ -820,6 +644,7 @@ public class IndependentNNModel {
      */
     public void setBinPosRateMap(Map<Integer, Map<String, Double>> binPosRateMap) {
         this.binPosRateMap = binPosRateMap;
+        this.transformPlan = null;
     }
 
     /**
@@ -835,6 +660,7 @@ public class IndependentNNModel {
      */
     public void setNumerBinBoundaries(Map<Integer, List<Double>> numerBinBoundaries) {
         this.numerBinBoundaries = numerBinBoundaries;
+        this.transformPlan = null;
     }
 
     /**
@@ -850,6 +676,7 @@ public class IndependentNNModel {
      */
     public void setNumerWgtWoes(Map<Integer, List<Double>> numerWgtWoes) {
         this.numerWgtWoes = numerWgtWoes;
+        this.transformPlan = null;
     }
 
     /**
@@ -865,6 +692,7 @@ public class IndependentNNModel {
      */
     public void setNumerWoes(Map<Integer, List<Double>> numerWoes) {
         this.numerWoes = numerWoes;
+        this.transformPlan = null;
     }
 
     /**
@@ -880,6 +708,7 @@ public class IndependentNNModel {
      */
     public void setNumerMeanMap(Map<Integer, Double> numerMeanMap) {
         this.numerMeanMap = numerMeanMap;
+        this.transformPlan = null;
     }
 
     /**
@@ -895,6 +724,7 @@ public class IndependentNNModel {
      */
     public void setNumerStddevMap(Map<Integer, Double> numerStddevMap) {
         this.numerStddevMap = numerStddevMap;
+        this.transformPlan = null;
     }
 
     /**
@@ -910,6 +740,7 @@ public class IndependentNNModel {
      */
     public void setWoeMeanMap(Map<Integer, Double> woeMeanMap) {
         this.woeMeanMap = woeMeanMap;
+        this.transformPlan = null;
     }
 
     /**
@@ -925,6 +756,7 @@ public class IndependentNNModel {
      */
     public void setWoeStddevMap(Map<Integer, Double> woeStddevMap) {
         this.woeStddevMap = woeStddevMap;
+        this.transformPlan = null;
     }
 
     /**
@@ -940,6 +772,7 @@ public class IndependentNNModel {
      */
     public void setWgtWoeMeanMap(Map<Integer, Double> wgtWoeMeanMap) {
         this.wgtWoeMeanMap = wgtWoeMeanMap;
+        this.transformPlan = null;
     }
 
     /**
@@ -955,6 +788,7 @@ public class IndependentNNModel {
      */
     public void setWgtWoeStddevMap(Map<Integer, Double> wgtWoeStddevMap) {
         this.wgtWoeStddevMap = wgtWoeStddevMap;
+        this.transformPlan = null;
     }
 
     /**
@@ -970,5 +804,20 @@ public class IndependentNNModel {
      */
     public void setCutOffMap(Map<Integer, Double> cutOffMap) {
         this.cutOffMap = cutOffMap;
+        this.transformPlan = null;
+    }
+
+    /**
+     * @return the columnTypeMap
+     */
+    Map<Integer, ColumnType> getColumnTypeMap() {
+        return columnTypeMap;
+    }
+
+    /**
+     * @return the cateIndexMap
+     */
+    Map<Integer, Map<String, Integer>> getCateIndexMap() {
+        return cateIndexMap;
     }
 }
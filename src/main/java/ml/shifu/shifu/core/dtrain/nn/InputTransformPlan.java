@@ -0,0 +1,479 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.nn;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import ml.shifu.shifu.container.obj.ColumnType;
+import ml.shifu.shifu.container.obj.ModelNormalizeConf.NormType;
+import ml.shifu.shifu.core.Normalizer;
+import ml.shifu.shifu.util.Constants;
+
+/**
+ * {@link InputTransformPlan} is the pre-resolved normalization of {@link IndependentNNModel}. For each input slot, one
+ * {@link SlotTransformer} is built according to column type and norm type; all stats like mean, stddev, cutoff and bin
+ * woes are resolved into primitive fields and arrays. Since bin values never change, zscore of woe or pos rate is also
+ * computed once per bin when plan is built.
+ *
+ * <p>
+ * {@link #transform(Map)} is then a single loop over slots, no norm type switch, no boxed stats lookup and no
+ * temporary array in normalization. Values are exactly the same as computing them from model stats maps record by
+ * record.
+ *
+ * <p>
+ * Plan is immutable and can be shared by multiple scoring threads.
+ */
+final class InputTransformPlan {
+
+    /**
+     * Transformers of all input slots.
+     */
+    private final SlotTransformer[] slots;
+
+    /**
+     * Size of normalized data array.
+     */
+    private final int inputSize;
+
+    private InputTransformPlan(SlotTransformer[] slots, int inputSize) {
+        this.slots = slots;
+        this.inputSize = inputSize;
+    }
+
+    /**
+     * Normalize raw data map into model input array.
+     *
+     * @param dataMap
+     *            (columnName, value) raw data map
+     * @return normalized input array
+     */
+    double[] transform(Map<String, Object> dataMap) {
+        double[] data = new double[this.inputSize];
+        for(SlotTransformer slot: this.slots) {
+            data[slot.index] = slot.transform(dataMap.get(slot.columnName));
+        }
+        return data;
+    }
+
+    /**
+     * Build transform plan from stats of {@link IndependentNNModel}. Slots are in iteration order of
+     * {@code columnNumIndexMap} which is the same as old per record normalization.
+     *
+     * @param model
+     *            the nn model with all stats maps
+     * @return the transform plan
+     */
+    static InputTransformPlan build(IndependentNNModel model) {
+        Map<Integer, Integer> columnNumIndexMap = model.getColumnNumIndexMap();
+        int inputSize = columnNumIndexMap.size();
+        List<SlotTransformer> slots = new ArrayList<SlotTransformer>(inputSize);
+        for(Entry<Integer, Integer> entry: columnNumIndexMap.entrySet()) {
+            Integer index = entry.getValue();
+            if(index == null || index >= inputSize) {
+                continue;
+            }
+            slots.add(newSlotTransformer(model, entry.getKey(), index));
+        }
+        return new InputTransformPlan(slots.toArray(new SlotTransformer[slots.size()]), inputSize);
+    }
+
+    private static SlotTransformer newSlotTransformer(IndependentNNModel model, Integer columnNum, int index) {
+        String columnName = model.getNumNameMappings().get(columnNum);
+        ColumnType columnType = model.getColumnTypeMap().get(columnNum);
+        NormType normType = model.getNormType();
+        if(columnType == ColumnType.C) {
+            switch(normType) {
+                case WOE:
+                case HYBRID:
+                    return newCategoricalTransformer(model, columnNum, columnName, index,
+                            model.getCateWoeMap().get(columnNum), null);
+                case WEIGHT_WOE:
+                case WEIGHT_HYBRID:
+                    return newCategoricalTransformer(model, columnNum, columnName, index,
+                            model.getWgtCateWoeMap().get(columnNum), null);
+                case WOE_ZSCORE:
+                case WOE_ZSCALE:
+                    return newCategoricalTransformer(model, columnNum, columnName, index,
+                            model.getCateWoeMap().get(columnNum), woeZScore(model, columnNum, false));
+                case WEIGHT_WOE_ZSCORE:
+                case WEIGHT_WOE_ZSCALE:
+                    return newCategoricalTransformer(model, columnNum, columnName, index,
+                            model.getWgtCateWoeMap().get(columnNum), woeZScore(model, columnNum, true));
+                case OLD_ZSCALE:
+                case OLD_ZSCORE:
+                    return newCategoricalTransformer(model, columnNum, columnName, index,
+                            model.getBinPosRateMap().get(columnNum), null);
+                case ZSCALE:
+                case ZSCORE:
+                default:
+                    return newCategoricalTransformer(model, columnNum, columnName, index,
+                            model.getBinPosRateMap().get(columnNum), zScore(model, columnNum));
+            }
+        } else if(columnType == ColumnType.N) {
+            switch(normType) {
+                case WOE:
+                    return newNumericalWoeTransformer(model, columnNum, columnName, index, false, null);
+                case WEIGHT_WOE:
+                    return newNumericalWoeTransformer(model, columnNum, columnName, index, true, null);
+                case WOE_ZSCORE:
+                case WOE_ZSCALE:
+                    return newNumericalWoeTransformer(model, columnNum, columnName, index, false,
+                            woeZScore(model, columnNum, false));
+                case WEIGHT_WOE_ZSCORE:
+                case WEIGHT_WOE_ZSCALE:
+                    return newNumericalWoeTransformer(model, columnNum, columnName, index, true,
+                            woeZScore(model, columnNum, true));
+                case OLD_ZSCALE:
+                case OLD_ZSCORE:
+                case ZSCALE:
+                case ZSCORE:
+                case HYBRID:
+                case WEIGHT_HYBRID:
+                default:
+                    return new NumericalZScoreTransformer(columnName, index, zScore(model, columnNum));
+            }
+        } else if(columnType == ColumnType.H) {
+            switch(normType) {
+                case WOE:
+                    return newHybridWoeTransformer(model, columnNum, columnName, index, false, null);
+                case WEIGHT_WOE:
+                    return newHybridWoeTransformer(model, columnNum, columnName, index, true, null);
+                case WOE_ZSCORE:
+                case WOE_ZSCALE:
+                    return newHybridWoeTransformer(model, columnNum, columnName, index, false,
+                            woeZScore(model, columnNum, false));
+                case WEIGHT_WOE_ZSCORE:
+                case WEIGHT_WOE_ZSCALE:
+                    return newHybridWoeTransformer(model, columnNum, columnName, index, true,
+                            woeZScore(model, columnNum, true));
+                case OLD_ZSCALE:
+                case OLD_ZSCORE:
+                case ZSCALE:
+                case ZSCORE:
+                case HYBRID:
+                case WEIGHT_HYBRID:
+                default:
+                    // keep failing at scoring time as before, model loading is still OK
+                    return new UnsupportedTransformer(columnName, index,
+                            "Column type of " + columnName + " is hybrid, but normType is not woe related.");
+            }
+        }
+        // unknown column type is set to 0
+        return new ConstantTransformer(columnName, index, 0d);
+    }
+
+    private static ZScore zScore(IndependentNNModel model, Integer columnNum) {
+        return new ZScore(model.getNumerMeanMap().get(columnNum), model.getNumerStddevMap().get(columnNum),
+                Normalizer.checkCutOff(model.getCutOffMap().get(columnNum)));
+    }
+
+    private static ZScore woeZScore(IndependentNNModel model, Integer columnNum, boolean isWeighted) {
+        Map<Integer, Double> woeMeans = isWeighted ? model.getWgtWoeMeanMap() : model.getWoeMeanMap();
+        Map<Integer, Double> woeStddevs = isWeighted ? model.getWgtWoeStddevMap() : model.getWoeStddevMap();
+        return new ZScore(woeMeans.get(columnNum), woeStddevs.get(columnNum),
+                Normalizer.checkCutOff(model.getCutOffMap().get(columnNum)));
+    }
+
+    /**
+     * Category values in {@code valueMap} are bin values of merged categories which are already flattened, together
+     * with the last missing bin value set to {@link Constants#EMPTY_CATEGORY}.
+     */
+    private static SlotTransformer newCategoricalTransformer(IndependentNNModel model, Integer columnNum,
+            String columnName, int index, Map<String, Double> valueMap, ZScore zscore) {
+        int binSize = model.getCateColumnNameNames().get(columnNum).size();
+        double[] binValues = new double[binSize + 1];
+        Map<String, Integer> categoryIndexes = new HashMap<String, Integer>();
+        for(Entry<String, Integer> entry: model.getCateIndexMap().get(columnNum).entrySet()) {
+            if(!Constants.EMPTY_CATEGORY.equals(entry.getKey())) {
+                categoryIndexes.put(entry.getKey(), entry.getValue());
+                binValues[entry.getValue()] = valueMap.get(entry.getKey());
+            }
+        }
+        binValues[binSize] = valueMap.get(Constants.EMPTY_CATEGORY);
+        if(zscore != null) {
+            zscore.apply(binValues);
+        }
+        return new CategoricalTransformer(columnName, index, categoryIndexes, binValues);
+    }
+
+    private static SlotTransformer newNumericalWoeTransformer(IndependentNNModel model, Integer columnNum,
+            String columnName, int index, boolean isWeighted, ZScore zscore) {
+        double[] binValues = toArray(isWeighted ? model.getNumerWgtWoes().get(columnNum) : model.getNumerWoes().get(
+                columnNum));
+        if(zscore != null) {
+            zscore.apply(binValues);
+        }
+        return new NumericalWoeTransformer(columnName, index, toArray(model.getNumerBinBoundaries().get(columnNum)),
+                binValues);
+    }
+
+    private static SlotTransformer newHybridWoeTransformer(IndependentNNModel model, Integer columnNum,
+            String columnName, int index, boolean isWeighted, ZScore zscore) {
+        double[] binValues = toArray(isWeighted ? model.getNumerWgtWoes().get(columnNum) : model.getNumerWoes().get(
+                columnNum));
+        if(zscore != null) {
+            zscore.apply(binValues);
+        }
+        Map<String, Integer> categoryIndexes = model.getCateIndexMap().get(columnNum);
+        return new HybridWoeTransformer(columnName, index, toArray(model.getNumerBinBoundaries().get(columnNum)),
+                categoryIndexes == null ? null : new HashMap<String, Integer>(categoryIndexes), model
+                        .getCateColumnNameNames().get(columnNum).size(), binValues);
+    }
+
+    private static double[] toArray(List<Double> list) {
+        double[] array = new double[list.size()];
+        for(int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Binary search bin index, the same as {@code BinUtils#getBinIndex} but on primitive boundaries.
+     */
+    private static int binIndex(double[] boundaries, double value) {
+        int low = 0;
+        int high = boundaries.length - 1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Double.compare(boundaries[mid], value);
+            if(cmp < 0) {
+                low = mid + 1;
+            } else if(cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return low == 0 ? 0 : low - 1;
+    }
+
+    /**
+     * Primitive zscore parameters of one column.
+     */
+    private static class ZScore {
+        final double mean;
+        final double stddev;
+        final double cutoff;
+
+        ZScore(double mean, double stddev, double cutoff) {
+            this.mean = mean;
+            this.stddev = stddev;
+            this.cutoff = cutoff;
+        }
+
+        double compute(double value) {
+            return Normalizer.computeZScoreValue(value, this.mean, this.stddev, this.cutoff);
+        }
+
+        void apply(double[] values) {
+            for(int i = 0; i < values.length; i++) {
+                values[i] = compute(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Normalization of one input slot.
+     */
+    abstract static class SlotTransformer {
+
+        /**
+         * Column name used to get raw value from data map.
+         */
+        final String columnName;
+
+        /**
+         * Index in normalized data array.
+         */
+        final int index;
+
+        SlotTransformer(String columnName, int index) {
+            this.columnName = columnName;
+            this.index = index;
+        }
+
+        /**
+         * @param obj
+         *            raw value, null is missing value
+         * @return normalized value
+         */
+        abstract double transform(Object obj);
+    }
+
+    /**
+     * Numerical column in zscore, missing or invalid value is set to mean.
+     */
+    private static class NumericalZScoreTransformer extends SlotTransformer {
+        private final ZScore zscore;
+
+        NumericalZScoreTransformer(String columnName, int index, ZScore zscore) {
+            super(columnName, index);
+            this.zscore = zscore;
+        }
+
+        @Override
+        double transform(Object obj) {
+            double rawValue = this.zscore.mean;
+            if(obj != null) {
+                String str = obj.toString();
+                if(str.length() > 0) {
+                    try {
+                        rawValue = Double.parseDouble(str);
+                    } catch (Exception e) {
+                        rawValue = this.zscore.mean;
+                    }
+                }
+            }
+            return this.zscore.compute(rawValue);
+        }
+    }
+
+    /**
+     * Categorical column, bin value can be woe, pos rate or zscore of them. Category not found is in missing bin.
+     */
+    private static class CategoricalTransformer extends SlotTransformer {
+        private final Map<String, Integer> categoryIndexes;
+        private final double[] binValues;
+
+        CategoricalTransformer(String columnName, int index, Map<String, Integer> categoryIndexes,
+                double[] binValues) {
+            super(columnName, index);
+            this.categoryIndexes = categoryIndexes;
+            this.binValues = binValues;
+        }
+
+        @Override
+        double transform(Object obj) {
+            if(obj != null) {
+                Integer binIndex = this.categoryIndexes.get(obj.toString());
+                if(binIndex != null) {
+                    return this.binValues[binIndex];
+                }
+            }
+            return this.binValues[this.binValues.length - 1];
+        }
+    }
+
+    /**
+     * Numerical column in woe or woe zscore, the last bin is missing value bin.
+     */
+    private static class NumericalWoeTransformer extends SlotTransformer {
+        private final double[] boundaries;
+        private final double[] binValues;
+
+        NumericalWoeTransformer(String columnName, int index, double[] boundaries, double[] binValues) {
+            super(columnName, index);
+            this.boundaries = boundaries;
+            this.binValues = binValues;
+        }
+
+        @Override
+        double transform(Object obj) {
+            if(obj != null) {
+                double value;
+                try {
+                    value = Double.parseDouble(obj.toString());
+                } catch (Exception e) {
+                    return this.binValues[this.binValues.length - 1];
+                }
+                return this.binValues[binIndex(this.boundaries, value)];
+            }
+            return this.binValues[this.binValues.length - 1];
+        }
+    }
+
+    /**
+     * Hybrid column in woe or woe zscore, bins are numerical bins, categorical bins and then missing value bin.
+     */
+    private static class HybridWoeTransformer extends SlotTransformer {
+        private final double[] boundaries;
+        private final Map<String, Integer> categoryIndexes;
+        private final int categorySize;
+        private final double[] binValues;
+
+        HybridWoeTransformer(String columnName, int index, double[] boundaries, Map<String, Integer> categoryIndexes,
+                int categorySize, double[] binValues) {
+            super(columnName, index);
+            this.boundaries = boundaries;
+            this.categoryIndexes = categoryIndexes;
+            this.categorySize = categorySize;
+            this.binValues = binValues;
+        }
+
+        @Override
+        double transform(Object obj) {
+            String str = obj == null ? null : obj.toString();
+            if(str != null && this.categoryIndexes != null) {
+                Integer cateIndex = this.categoryIndexes.get(str);
+                if(cateIndex != null && cateIndex >= 0) {
+                    return this.binValues[cateIndex + this.boundaries.length];
+                }
+            }
+
+            double value = Double.NaN;
+            if(str != null) {
+                try {
+                    value = Double.parseDouble(str);
+                } catch (NumberFormatException e) {
+                    value = Double.NaN;
+                }
+            }
+            int binIndex = Double.isNaN(value) ? this.boundaries.length + this.categorySize : binIndex(
+                    this.boundaries, value);
+            return this.binValues[binIndex];
+        }
+    }
+
+    /**
+     * Slot with fixed value.
+     */
+    private static class ConstantTransformer extends SlotTransformer {
+        private final double value;
+
+        ConstantTransformer(String columnName, int index, double value) {
+            super(columnName, index);
+            this.value = value;
+        }
+
+        @Override
+        double transform(Object obj) {
+            return this.value;
+        }
+    }
+
+    /**
+     * Slot which cannot be normalized in current norm type.
+     */
+    private static class UnsupportedTransformer extends SlotTransformer {
+        private final String message;
+
+        UnsupportedTransformer(String columnName, int index, String message) {
+            super(columnName, index);
+            this.message = message;
+        }
+
+        @Override
+        double transform(Object obj) {
+            throw new IllegalStateException(this.message);
+        }
+    }
+
+}
@@ -76,4 +76,14 @@ public class NNConstants {
     public static final int DEFAULT_JOIN_TIME = 3000;
     
     public static final double DEFAULT_SIGNIFICANCE_VALUE = 1.0;
+
+    /**
+     * In bounded staleness mode master waits for such ratio of workers, gradients of others are from cache.
+     */
+    public static final double STALENESS_MIN_WORKERS_RATIO = 0.8d;
+
+    /**
+     * In bounded staleness mode master waits such milliseconds at most for workers after min workers ratio reached.
+     */
+    public static final long STALENESS_MIN_WORKERS_TIMEOUT = 200L;
 }
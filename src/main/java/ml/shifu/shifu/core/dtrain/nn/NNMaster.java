@@ -43,6 +43,8 @@ import ml.shifu.shifu.container.obj.ModelConfig;
 import ml.shifu.shifu.container.obj.RawSourceData.SourceType;
 import ml.shifu.shifu.core.dtrain.CommonConstants;
 import ml.shifu.shifu.core.dtrain.DTrainUtils;
+import ml.shifu.shifu.core.dtrain.IterationProfile;
+import ml.shifu.shifu.core.dtrain.IterationProfile.Phase;
 import ml.shifu.shifu.core.dtrain.RegulationLevel;
 import ml.shifu.shifu.core.dtrain.Weight;
 import ml.shifu.shifu.core.dtrain.dataset.BasicFloatNetwork;
@@ -68,6 +70,11 @@ import ml.shifu.shifu.util.NormalUtils;
  *
  * <p>
  * Make sure workers and master use the same initialization weights.
+ *
+ * <p>
+ * If 'staleness' in train config is set to k &gt; 0, master runs in bounded staleness mode: it goes on without waiting
+ * for straggler workers and accumulates latest gradients of each worker which are at most k iterations stale, see
+ * {@link StaleGradients}.
  */
 public class NNMaster extends AbstractMasterComputable<NNParams, NNParams> {
 
@@ -203,6 +210,16 @@ public class NNMaster extends AbstractMasterComputable<NNParams, NNParams> {
      */
     private AbstractEarlyStopStrategy earlyStopStrategy;
 
+    /**
+     * Latest gradients of each worker in bounded staleness mode, null in synchronous mode.
+     */
+    private StaleGradients staleGradients;
+
+    /**
+     * Time by {@link System#nanoTime()} when last master result is built, start of master wait phase.
+     */
+    private long lastResultNanos;
+
     @Override
     public NNParams doCompute(MasterContext<NNParams, NNParams> context) {
         if(context.isFirstIteration()) {
@@ -219,8 +236,10 @@ public class NNMaster extends AbstractMasterComputable<NNParams, NNParams> {
 
             // should be set here to make sure master and workers use the same weights
             this.globalNNParams.setWeights(params.getWeights());
+            params.setIteration(context.getCurrentIteration());
             // for continuous model training, here can be optimized by return null and load model weights in worker by
             // reading HDFS.
+            this.lastResultNanos = System.nanoTime();
             return params;
         }
 
@@ -228,6 +247,12 @@ public class NNMaster extends AbstractMasterComputable<NNParams, NNParams> {
             throw new IllegalArgumentException("workers' results are null.");
         }
 
+        IterationProfile profile = new IterationProfile(0);
+        long phaseStart = System.nanoTime();
+        if(this.lastResultNanos > 0L) {
+            profile.set(Phase.MASTER_WAIT, phaseStart - this.lastResultNanos);
+        }
+
         double totalTestError = 0;
         double totalTrainError = 0;
         int size = 0;
@@ -238,16 +263,30 @@ public class NNMaster extends AbstractMasterComputable<NNParams, NNParams> {
         long totalCount = 0L;
         int totalWorkerCount = 0;
         for(NNParams nn : context.getWorkerResults()) {
+            if(this.staleGradients != null && !this.staleGradients.add(nn, context.getCurrentIteration())) {
+                LOG.warn("Worker result computed on weights of iteration {} is too stale in iteration {}, ignored.",
+                        nn.getIteration(), context.getCurrentIteration());
+                continue;
+            }
             totalTestError += nn.getTestError();
             totalTrainError += nn.getTrainError();
-            this.globalNNParams.accumulateGradients(nn.getGradients());
-            this.globalNNParams.accumulateTrainSize(nn.getTrainSize());
+            profile.merge(nn.getProfile());
+            if(this.staleGradients == null || nn.getWorkerId() == 0L) {
+                this.globalNNParams.accumulateGradients(nn.getGradients());
+                this.globalNNParams.accumulateTrainSize(nn.getTrainSize());
+            }
             totalCount += nn.getCount();
             // original worker count before combinable
             totalWorkerCount += nn.getWrCount();
             size++;
         }
 
+        int staleCount = 0;
+        if(this.staleGradients != null) {
+            staleCount = this.staleGradients.accumulate(this.globalNNParams, context.getCurrentIteration());
+        }
+        phaseStart = profile.elapsed(Phase.MASTER_MERGE, phaseStart);
+
         LOG.debug("ELM gradients debug for 0 gradient {}", this.globalNNParams.getGradients()[0]);
         LOG.debug("Total Count is {}. totalWorkerCount is {}", totalCount, totalWorkerCount);
 
@@ -293,10 +332,17 @@ public class NNMaster extends AbstractMasterComputable<NNParams, NNParams> {
             this.bestValidationError = currentTestError;
         }
 
-        LOG.info("NNMaster compute iteration {} ( avg train error {}, avg validation error {} )",
-                new Object[] { context.getCurrentIteration(), currentTrainError, currentTestError });
+        if(this.staleGradients == null) {
+            LOG.info("NNMaster compute iteration {} ( avg train error {}, avg validation error {} )",
+                    new Object[] { context.getCurrentIteration(), currentTrainError, currentTestError });
+        } else {
+            LOG.info("NNMaster compute iteration {} ( avg train error {}, avg validation error {}, {} fresh and {} "
+                    + "stale worker gradients )", new Object[] { context.getCurrentIteration(), currentTrainError,
+                    currentTestError, totalWorkerCount, staleCount });
+        }
 
         NNParams params = new NNParams();
+        params.setIteration(context.getCurrentIteration());
         params.setTrainError(currentTrainError);
         params.setTestError(currentTestError);
         // prevent null point
@@ -315,6 +361,9 @@ public class NNMaster extends AbstractMasterComputable<NNParams, NNParams> {
             }
         }
 
+        profile.elapsed(Phase.MASTER_COMPUTE, phaseStart);
+        params.setProfile(profile);
+        this.lastResultNanos = System.nanoTime();
         return params;
     }
 
@@ -438,6 +487,12 @@ public class NNMaster extends AbstractMasterComputable<NNParams, NNParams> {
             }
         }
 
+        Integer staleness = this.modelConfig.getTrain().getStaleness();
+        if(staleness != null && staleness > 0) {
+            this.staleGradients = new StaleGradients(staleness);
+            LOG.info("Bounded staleness mode is enabled in master with staleness {}.", staleness);
+        }
+
         Object pObject = validParams.get(CommonConstants.PROPAGATION);
         this.propagation = pObject == null ? "Q" : (String) pObject;
         this.rawLearningRate = Double.valueOf(validParams.get(CommonConstants.LEARNING_RATE).toString());
@@ -24,6 +24,8 @@ import java.util.Set;
 import ml.shifu.guagua.io.Combinable;
 import ml.shifu.guagua.io.HaltBytable;
 import ml.shifu.shifu.core.dtrain.DTrainUtils;
+import ml.shifu.shifu.core.dtrain.IterationProfile;
+import ml.shifu.shifu.core.dtrain.IterationProfiled;
 
 /**
  * NNParams are used to save NN model info which can also be stored into ZooKeeper.
@@ -35,7 +37,7 @@ import ml.shifu.shifu.core.dtrain.DTrainUtils;
  * {@link #gradients} is used to accumulate all workers' gradients together in master and then use the accumulated
  * gradients to update weights.
  */
-public class NNParams extends HaltBytable implements Combinable<NNParams> {
+public class NNParams extends HaltBytable implements Combinable<NNParams>, IterationProfiled {
 
     /**
      * Weights used for NN model
@@ -72,11 +74,27 @@ public class NNParams extends HaltBytable implements Combinable<NNParams> {
      */
     private int wrCount = 1;
 
+    /**
+     * In master result it is the iteration weights are computed in; in worker result it is the iteration of master
+     * weights which gradients are computed on.
+     */
+    private int iteration = 0;
+
+    /**
+     * Id generated by worker to identify its results over iterations, 0 if unknown or combined from different workers.
+     */
+    private long workerId = 0L;
+
     /** 
      * Dropout Node indices, generated by master, need to sync on every worker
      */
     private Set<Integer> dropoutNodes = null;
-    
+
+    /**
+     * Phase profile of current iteration, merged from workers in master result
+     */
+    private IterationProfile profile;
+
     public double[] getWeights() {
         return weights;
     }
@@ -170,6 +188,9 @@ public class NNParams extends HaltBytable implements Combinable<NNParams> {
 
         out.writeLong(count);
         out.writeInt(this.wrCount);
+        out.writeInt(this.iteration);
+        out.writeLong(this.workerId);
+        IterationProfile.write(out, this.profile);
     }
 
     @Override
@@ -194,6 +215,9 @@ public class NNParams extends HaltBytable implements Combinable<NNParams> {
 
         this.count = in.readLong();
         this.wrCount = in.readInt();
+        this.iteration = in.readInt();
+        this.workerId = in.readLong();
+        this.profile = IterationProfile.read(in);
     }
 
     /**
@@ -228,6 +252,11 @@ public class NNParams extends HaltBytable implements Combinable<NNParams> {
             this.gradients[i] += from.gradients[i];
         }
         this.setWrCount(this.getWrCount() + from.getWrCount());
+        this.iteration = Math.min(this.iteration, from.iteration);
+        if(this.workerId != from.workerId) {
+            this.workerId = 0L;
+        }
+        this.profile = (this.profile == null ? from.profile : this.profile.merge(from.profile));
         return this;
     }
 
@@ -246,6 +275,36 @@ public class NNParams extends HaltBytable implements Combinable<NNParams> {
         this.wrCount = wrCount;
     }
 
+    /**
+     * @return the iteration
+     */
+    public int getIteration() {
+        return iteration;
+    }
+
+    /**
+     * @param iteration
+     *            the iteration to set
+     */
+    public void setIteration(int iteration) {
+        this.iteration = iteration;
+    }
+
+    /**
+     * @return the workerId
+     */
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * @param workerId
+     *            the workerId to set
+     */
+    public void setWorkerId(long workerId) {
+        this.workerId = workerId;
+    }
+
     public Set<Integer> getDropoutNodes() {
         return dropoutNodes;
     }
@@ -254,6 +313,16 @@ public class NNParams extends HaltBytable implements Combinable<NNParams> {
         this.dropoutNodes = dropoutNodes;
     }
 
+    @Override
+    public IterationProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public void setProfile(IterationProfile profile) {
+        this.profile = profile;
+    }
+
     @Override
     public String toString() {
         return String.format("NNParams [testError=%s, trainError=%s, trainSize=%s, wrCount=%s, gSize=%s]",
@@ -0,0 +1,142 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.nn;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * {@link StaleGradients} keeps latest gradients of each worker for bounded staleness (SSP) training in
+ * {@link NNMaster}.
+ *
+ * <p>
+ * With staleness k, master doesn't wait for straggler workers. Gradients of one iteration are accumulated from the
+ * latest result of each worker: fresh results of current iteration and cached results received at most k iterations
+ * ago. Data of straggler workers still contributes to weight update and update is not biased to data of fast workers.
+ * Result computed on master weights which are over k iterations old is ignored.
+ *
+ * <p>
+ * One gradient array is cached for each worker. Results combined from different workers have no worker id, they are
+ * not cached and only used in current iteration.
+ */
+final class StaleGradients {
+
+    /**
+     * Max iterations a cached gradient can lag behind current iteration.
+     */
+    private final int staleness;
+
+    /**
+     * Worker id to latest gradients of such worker.
+     */
+    private final Map<Long, Entry> entries = new HashMap<Long, Entry>();
+
+    StaleGradients(int staleness) {
+        this.staleness = staleness;
+    }
+
+    /**
+     * Stable non-zero worker id from container id. Container id is the split index of worker which is not changed when
+     * worker is restarted, then gradients of a restarted worker replace its old cached gradients.
+     *
+     * @param containerId
+     *            container id of worker
+     * @return non-zero worker id
+     */
+    static long toWorkerId(String containerId) {
+        try {
+            return Long.parseLong(containerId.trim()) + 1L;
+        } catch (NumberFormatException e) {
+            // non numeric container id, high bit set to not conflict with numeric ids
+            return (containerId.hashCode() & 0xFFFFFFFFL) | (1L << 32);
+        }
+    }
+
+    /**
+     * Check and cache worker result of current iteration.
+     *
+     * @param result
+     *            worker result
+     * @param iteration
+     *            current master iteration
+     * @return false if result is computed on master weights over staleness and should be ignored
+     */
+    boolean add(NNParams result, int iteration) {
+        // weights of last iteration is the latest weights workers can use
+        if(iteration - 1 - result.getIteration() > this.staleness) {
+            return false;
+        }
+        if(result.getWorkerId() == 0L) {
+            return true;
+        }
+
+        Entry entry = this.entries.get(result.getWorkerId());
+        if(entry == null) {
+            entry = new Entry();
+            this.entries.put(result.getWorkerId(), entry);
+        }
+        entry.iteration = iteration;
+        entry.trainSize = result.getTrainSize();
+        double[] gradients = result.getGradients();
+        if(entry.gradients == null || entry.gradients.length != gradients.length) {
+            entry.gradients = new double[gradients.length];
+        }
+        System.arraycopy(gradients, 0, entry.gradients, 0, gradients.length);
+        return true;
+    }
+
+    /**
+     * Accumulate gradients and train size of all cached workers into global params. Workers without result in the
+     * last {@link #staleness} iterations are removed from cache.
+     *
+     * @param globalParams
+     *            global params of master
+     * @param iteration
+     *            current master iteration
+     * @return number of stale gradients which are not from current iteration
+     */
+    int accumulate(NNParams globalParams, int iteration) {
+        int staleCount = 0;
+        Iterator<Entry> iterator = this.entries.values().iterator();
+        while(iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if(iteration - entry.iteration > this.staleness) {
+                iterator.remove();
+                continue;
+            }
+            if(entry.iteration != iteration) {
+                staleCount += 1;
+            }
+            globalParams.accumulateGradients(entry.gradients);
+            globalParams.accumulateTrainSize(entry.trainSize);
+        }
+        return staleCount;
+    }
+
+    private static final class Entry {
+
+        /**
+         * Master iteration in which gradients are received.
+         */
+        private int iteration;
+
+        private long trainSize;
+
+        private double[] gradients;
+    }
+
+}
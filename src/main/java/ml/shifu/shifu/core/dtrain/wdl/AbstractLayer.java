@@ -92,7 +92,7 @@ enum SerializationType {
     /**
      * Serialize types, each of them including different serialize scope
      */
-    WEIGHTS(0), GRADIENTS(1), MODEL_SPEC(2), ERROR(-1);
+    WEIGHTS(0), GRADIENTS(1), MODEL_SPEC(2), SPARSE_WEIGHTS(3), ERROR(-1);
 
     int value;
 
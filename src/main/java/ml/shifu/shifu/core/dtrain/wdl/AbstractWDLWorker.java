@@ -0,0 +1,1066 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.wdl;
+
+import com.google.common.base.Splitter;
+import ml.shifu.guagua.GuaguaRuntimeException;
+import ml.shifu.guagua.hadoop.io.GuaguaWritableAdapter;
+import ml.shifu.guagua.util.MemoryLimitedList;
+import ml.shifu.guagua.worker.AbstractWorkerComputable;
+import ml.shifu.guagua.worker.WorkerContext;
+import ml.shifu.guagua.worker.WorkerContext.WorkerCompletionCallBack;
+import ml.shifu.shifu.container.obj.ColumnConfig;
+import ml.shifu.shifu.container.obj.ModelConfig;
+import ml.shifu.shifu.container.obj.RawSourceData.SourceType;
+import ml.shifu.shifu.core.dtrain.CommonConstants;
+import ml.shifu.shifu.core.dtrain.DTrainUtils;
+import ml.shifu.shifu.core.dtrain.IterationProfile;
+import ml.shifu.shifu.core.dtrain.IterationProfile.Phase;
+import ml.shifu.shifu.core.dtrain.nn.NNConstants;
+import ml.shifu.shifu.util.CommonUtils;
+import ml.shifu.shifu.util.Constants;
+import ml.shifu.shifu.util.MapReduceUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.math3.distribution.PoissonDistribution;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Writable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AbstractWDLWorker} is responsible for loading part of data into memory, do iteration gradients computation and send
+ * back to master for master aggregation. After master aggregation is done, received latest weights to do next
+ * iteration.
+ * 
+ * <p>
+ * Data loading into memory as memory list includes two parts: numerical float array and sparse input object array which
+ * is for categorical variables. To leverage sparse feature of categorical variables, sparse object is leveraged to
+ * save memory and matrix computation.
+ * 
+ * <p>
+ * First iteration, just return empty to master but wait for next iteration master models sync-up. Since at very first
+ * model training in all workers should be starting from the same model.
+ * 
+ * <p>
+ * After {@link #wnd} updating weights from master result each iteration. Then do forward-backward computation and in
+ * backward computation of each record to compute gradients. Such gradients arch as wide and deep graph needs to be
+ * aggregated and sent back to master.
+ * 
+ * <p>
+ * Records are split into ranges computed by {@link #threadPool}. As layers in {@link WideAndDeep} keep last inputs for
+ * backward computation, each thread has its own {@link WideAndDeep} replica sharing the same weights with {@link #wnd}
+ * but with its own gradients, gradients of replicas are combined into {@link #wnd} at the end of each iteration. If
+ * 'MiniBatchs' is set in train params, only one batch of training records is trained in one iteration.
+ * 
+ * <p>
+ * {@link AbstractWDLWorker} is a common class for different WDL input format, records are parsed in
+ * {@link #load(GuaguaWritableAdapter, GuaguaWritableAdapter, WorkerContext)} of sub classes and added by
+ * {@link #addRecord(long, float[], SparseInput[], float, float, WorkerContext)}.
+ * 
+ * <p>
+ * TODO matrix computation support
+ * TODO variable/field based optimization to compute gradients
+ * 
+ * @author Zhang David (pengzhang@paypal.com)
+ */
+public abstract class AbstractWDLWorker<VALUE extends Writable> extends
+        AbstractWorkerComputable<WDLParams, WDLParams, GuaguaWritableAdapter<LongWritable>, GuaguaWritableAdapter<VALUE>> {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(AbstractWDLWorker.class);
+
+    /**
+     * Model configuration loaded from configuration file.
+     */
+    protected ModelConfig modelConfig;
+
+    /**
+     * Column configuration loaded from configuration file.
+     */
+    protected List<ColumnConfig> columnConfigList;
+
+    /**
+     * Basic input count for final-select variables or good candidates(if no any variables are selected)
+     */
+    protected int inputCount;
+
+    /**
+     * Basic numerical input count for final-select variables or good candidates(if no any variables are selected)
+     */
+    protected int numInputs;
+
+    /**
+     * Basic categorical input count
+     */
+    protected int cateInputs;
+
+    /**
+     * Means if do variable selection, if done, many variables will be set to finalSelect = true; if not, no variables
+     * are selected and should be set to all good candidate variables.
+     */
+    private boolean isAfterVarSelect = true;
+
+    /**
+     * input record size, inc one by one.
+     */
+    protected long count;
+
+    /**
+     * sampled input record size.
+     */
+    protected long sampleCount;
+
+    /**
+     * Positive count in training data list, only be effective in 0-1 regression or onevsall classification
+     */
+    protected long positiveTrainCount;
+
+    /**
+     * Positive count in training data list and being selected in training, only be effective in 0-1 regression or
+     * onevsall classification
+     */
+    protected long positiveSelectedTrainCount;
+
+    /**
+     * Negative count in training data list , only be effective in 0-1 regression or onevsall classification
+     */
+    protected long negativeTrainCount;
+
+    /**
+     * Negative count in training data list and being selected, only be effective in 0-1 regression or onevsall
+     * classification
+     */
+    protected long negativeSelectedTrainCount;
+
+    /**
+     * Positive count in validation data list, only be effective in 0-1 regression or onevsall classification
+     */
+    protected long positiveValidationCount;
+
+    /**
+     * Negative count in validation data list, only be effective in 0-1 regression or onevsall classification
+     */
+    protected long negativeValidationCount;
+
+    /**
+     * Training data set with only in memory, in the future, MemoryDiskList can be leveraged.
+     */
+    private volatile MemoryLimitedList<Data> trainingData;
+
+    /**
+     * Validation data set with only in memory.
+     */
+    private volatile MemoryLimitedList<Data> validationData;
+
+    /**
+     * Mapping for (ColumnNum, Map(Category, CategoryIndex) for categorical feature
+     */
+    protected Map<Integer, Map<String, Integer>> columnCategoryIndexMapping;
+
+    /**
+     * A splitter to split data with specified delimiter.
+     */
+    protected Splitter splitter;
+
+    /**
+     * Trainer id used to tag bagging training job, starting from 0, 1, 2 ...
+     */
+    private int trainerId = 0;
+
+    /**
+     * If has candidate in column list.
+     */
+    private boolean hasCandidates;
+
+    /**
+     * Indicates if validation are set by users for validationDataPath, not random picking
+     */
+    protected boolean isManualValidation = false;
+
+    /**
+     * If stratified sampling or random sampling
+     */
+    private boolean isStratifiedSampling = false;
+
+    /**
+     * If k-fold cross validation
+     */
+    private boolean isKFoldCV;
+
+    /**
+     * Construct a validation random map for different classes. For stratified sampling, this is useful for class level
+     * sampling.
+     */
+    private Map<Integer, Random> validationRandomMap = new HashMap<Integer, Random>();
+
+    /**
+     * Random object to sample negative records
+     */
+    protected Random negOnlyRnd = new Random(System.currentTimeMillis() + 1000L);
+
+    /**
+     * Whether to enable poisson bagging with replacement.
+     */
+    protected boolean poissonSampler;
+
+    /**
+     * PoissonDistribution which is used for poisson sampling for bagging with replacement.
+     */
+    protected PoissonDistribution rng = null;
+
+    /**
+     * PoissonDistribution which is used for up sampling positive records.
+     */
+    protected PoissonDistribution upSampleRng = null;
+
+    /**
+     * Parameters defined in ModelConfig.json#train part
+     */
+    private Map<String, Object> validParams;
+
+    /**
+     * WideAndDeep graph definition network.
+     */
+    private WideAndDeep wnd;
+
+    /**
+     * Index in {@link Data#getCategoricalValues()} of each embed column, in the order of embed column ids of
+     * {@link #wnd}.
+     */
+    private int[] embedIndexes;
+
+    /**
+     * Index in {@link Data#getCategoricalValues()} of each wide column, in the order of wide column ids of
+     * {@link #wnd}.
+     */
+    private int[] wideIndexes;
+
+    /**
+     * Mini batch count, training records are split into such batches and one batch is trained in one iteration.
+     */
+    private int batchs = 1;
+
+    /**
+     * Trainers of threads, the first one is on {@link #wnd}, others on {@link WideAndDeep} replicas.
+     */
+    private List<Trainer> trainers;
+
+    /**
+     * Thread pool to compute gradients and errors of records in parallel.
+     */
+    private ExecutorService threadPool;
+
+    /**
+     * Time by {@link System#nanoTime()} when last result is built, start of worker wait phase in next iteration.
+     */
+    private long lastResultNanos;
+
+    /**
+     * If serialized size of result is measured for training profile.
+     */
+    private boolean isProfileResultBytes;
+
+    /**
+     * If all weights are received from master, before that sparse weights from master cannot be applied correctly.
+     */
+    private boolean isWeightsSynced = false;
+
+    /**
+     * Add one parsed record into memory list after negative only sampling and up sampling.
+     * 
+     * @param hashcode
+     *            the hash code of the record for fixed input split in train and validation
+     * @param inputs
+     *            the numerical values
+     * @param cateInputs
+     *            the categorical values
+     * @param ideal
+     *            the target value
+     * @param significance
+     *            the weight of the record
+     * @param context
+     *            the worker context
+     */
+    protected void addRecord(long hashcode, float[] inputs, SparseInput[] cateInputs, float ideal, float significance,
+            WorkerContext<WDLParams, WDLParams> context) {
+        // sample negative only logic here
+        if(sampleNegOnly(hashcode, ideal)) {
+            return;
+        }
+        // up sampling logic, just add more weights while bagging sampling rate is still not changed
+        if(modelConfig.isRegression() && isUpSampleEnabled() && Double.compare(ideal, 1d) == 0) {
+            // ideal == 1 means positive tags; sample + 1 to avoid sample count to 0
+            significance = significance * (this.upSampleRng.sample() + 1);
+        }
+
+        Data data = new Data(inputs, cateInputs, significance, ideal);
+        // split into validation and training data set according to validation rate
+        boolean isInTraining = this.addDataPairToDataSet(hashcode, data, context.getAttachment());
+        // update some positive or negative selected count in metrics
+        this.updateMetrics(data, isInTraining);
+    }
+
+    protected boolean isUpSampleEnabled() {
+        // only enabled in regression
+        return this.upSampleRng != null && (modelConfig.isRegression()
+                || (modelConfig.isClassification() && modelConfig.getTrain().isOneVsAll()));
+    }
+
+    private boolean sampleNegOnly(long hashcode, float ideal) {
+        boolean ret = false;
+        if(modelConfig.getTrain().getSampleNegOnly()) {
+            double bagSampleRate = this.modelConfig.getBaggingSampleRate();
+            if(this.modelConfig.isFixInitialInput()) {
+                // if fixInitialInput, sample hashcode in 1-sampleRate range out if negative records
+                int startHashCode = (100 / this.modelConfig.getBaggingNum()) * this.trainerId;
+                // here BaggingSampleRate means how many data will be used in training and validation, if it is 0.8, we
+                // should take 1-0.8 to check endHashCode
+                int endHashCode = startHashCode + Double.valueOf((1d - bagSampleRate) * 100).intValue();
+                if((modelConfig.isRegression()
+                        || (modelConfig.isClassification() && modelConfig.getTrain().isOneVsAll()))
+                        && (int) (ideal + 0.01d) == 0 && isInRange(hashcode, startHashCode, endHashCode)) {
+                    ret = true;
+                }
+            } else {
+                // if not fixed initial input, for regression or onevsall multiple classification, if negative record
+                if((modelConfig.isRegression()
+                        || (modelConfig.isClassification() && modelConfig.getTrain().isOneVsAll()))
+                        && (int) (ideal + 0.01d) == 0 && negOnlyRnd.nextDouble() > bagSampleRate) {
+                    ret = true;
+                }
+            }
+        }
+        return ret;
+    }
+
+    private void updateMetrics(Data data, boolean isInTraining) {
+        // do bagging sampling only for training data
+        if(isInTraining) {
+            // for training data, compute real selected training data according to baggingSampleRate
+            if(isPositive(data.label)) {
+                this.positiveSelectedTrainCount += 1L;
+            } else {
+                this.negativeSelectedTrainCount += 1L;
+            }
+        } else {
+            // for validation data, according bagging sampling logic, we may need to sampling validation data set, while
+            // validation data set are only used to compute validation error, not to do real sampling is ok.
+        }
+    }
+
+    /**
+     * Add to training set or validation set according to validation rate.
+     * 
+     * @param hashcode
+     *            the hash code of the data
+     * @param data
+     *            data instance
+     * @param attachment
+     *            if it is validation
+     * @return if in training, training is true, others are false.
+     */
+    protected boolean addDataPairToDataSet(long hashcode, Data data, Object attachment) {
+        // if validation data from configured validation data set
+        boolean isValidation = (attachment != null && attachment instanceof Boolean) ? (Boolean) attachment : false;
+
+        if(this.isKFoldCV) {
+            int k = this.modelConfig.getTrain().getNumKFold();
+            if(hashcode % k == this.trainerId) {
+                this.validationData.append(data);
+                if(isPositive(data.label)) {
+                    this.positiveValidationCount += 1L;
+                } else {
+                    this.negativeValidationCount += 1L;
+                }
+                return false;
+            } else {
+                this.trainingData.append(data);
+                if(isPositive(data.label)) {
+                    this.positiveTrainCount += 1L;
+                } else {
+                    this.negativeTrainCount += 1L;
+                }
+                return true;
+            }
+        }
+
+        if(this.isManualValidation) {
+            if(isValidation) {
+                this.validationData.append(data);
+                if(isPositive(data.label)) {
+                    this.positiveValidationCount += 1L;
+                } else {
+                    this.negativeValidationCount += 1L;
+                }
+                return false;
+            } else {
+                this.trainingData.append(data);
+                if(isPositive(data.label)) {
+                    this.positiveTrainCount += 1L;
+                } else {
+                    this.negativeTrainCount += 1L;
+                }
+                return true;
+            }
+        } else {
+            if(Double.compare(this.modelConfig.getValidSetRate(), 0d) != 0) {
+                int classValue = (int) (data.label + 0.01f);
+                Random random = null;
+                if(this.isStratifiedSampling) {
+                    // each class use one random instance
+                    random = validationRandomMap.get(classValue);
+                    if(random == null) {
+                        random = new Random();
+                        this.validationRandomMap.put(classValue, random);
+                    }
+                } else {
+                    // all data use one random instance
+                    random = validationRandomMap.get(0);
+                    if(random == null) {
+                        random = new Random();
+                        this.validationRandomMap.put(0, random);
+                    }
+                }
+
+                if(this.modelConfig.isFixInitialInput()) {
+                    // for fix initial input, if hashcode%100 is in [start-hashcode, end-hashcode), validation,
+                    // otherwise training. start hashcode in different job is different to make sure bagging jobs have
+                    // different data. if end-hashcode is over 100, then check if hashcode is in [start-hashcode, 100]
+                    // or [0, end-hashcode]
+                    int startHashCode = (100 / this.modelConfig.getBaggingNum()) * this.trainerId;
+                    int endHashCode = startHashCode
+                            + Double.valueOf(this.modelConfig.getValidSetRate() * 100).intValue();
+                    if(isInRange(hashcode, startHashCode, endHashCode)) {
+                        this.validationData.append(data);
+                        if(isPositive(data.label)) {
+                            this.positiveValidationCount += 1L;
+                        } else {
+                            this.negativeValidationCount += 1L;
+                        }
+                        return false;
+                    } else {
+                        this.trainingData.append(data);
+                        if(isPositive(data.label)) {
+                            this.positiveTrainCount += 1L;
+                        } else {
+                            this.negativeTrainCount += 1L;
+                        }
+                        return true;
+                    }
+                } else {
+                    // not fixed initial input, if random value >= validRate, training, otherwise validation.
+                    if(random.nextDouble() >= this.modelConfig.getValidSetRate()) {
+                        this.trainingData.append(data);
+                        if(isPositive(data.label)) {
+                            this.positiveTrainCount += 1L;
+                        } else {
+                            this.negativeTrainCount += 1L;
+                        }
+                        return true;
+                    } else {
+                        this.validationData.append(data);
+                        if(isPositive(data.label)) {
+                            this.positiveValidationCount += 1L;
+                        } else {
+                            this.negativeValidationCount += 1L;
+                        }
+                        return false;
+                    }
+                }
+            } else {
+                this.trainingData.append(data);
+                if(isPositive(data.label)) {
+                    this.positiveTrainCount += 1L;
+                } else {
+                    this.negativeTrainCount += 1L;
+                }
+                return true;
+            }
+        }
+    }
+
+    private boolean isPositive(float value) {
+        return Float.compare(1f, value) == 0;
+    }
+
+    private boolean isInRange(long hashcode, int startHashCode, int endHashCode) {
+        // check if in [start, end] or if in [start, 100) and [0, end-100)
+        int hashCodeIn100 = (int) hashcode % 100;
+        if(endHashCode <= 100) {
+            // in range [start, end)
+            return hashCodeIn100 >= startHashCode && hashCodeIn100 < endHashCode;
+        } else {
+            // in range [start, 100) or [0, endHashCode-100)
+            return hashCodeIn100 >= startHashCode || hashCodeIn100 < (endHashCode % 100);
+        }
+    }
+
+    /**
+     * If column is valid and be selected in model training
+     */
+    protected boolean validColumn(ColumnConfig columnConfig) {
+        if(isAfterVarSelect) {
+            return columnConfig != null && !columnConfig.isMeta() && !columnConfig.isTarget()
+                    && columnConfig.isFinalSelect();
+        } else {
+            return !columnConfig.isMeta() && !columnConfig.isTarget()
+                    && CommonUtils.isGoodCandidate(columnConfig, this.hasCandidates);
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "unused" })
+    @Override
+    public void init(WorkerContext<WDLParams, WDLParams> context) {
+        Properties props = context.getProps();
+        this.isProfileResultBytes = Boolean.TRUE.toString()
+                .equalsIgnoreCase(props.getProperty(CommonConstants.SHIFU_PROFILE_RESULT_BYTES));
+        try {
+            SourceType sourceType = SourceType
+                    .valueOf(props.getProperty(CommonConstants.MODELSET_SOURCE_TYPE, SourceType.HDFS.toString()));
+            this.modelConfig = CommonUtils.loadModelConfig(props.getProperty(CommonConstants.SHIFU_MODEL_CONFIG),
+                    sourceType);
+            this.columnConfigList = CommonUtils
+                    .loadColumnConfigList(props.getProperty(CommonConstants.SHIFU_COLUMN_CONFIG), sourceType);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        this.initCateIndexMap();
+        this.hasCandidates = CommonUtils.hasCandidateColumns(columnConfigList);
+
+        // create Splitter
+        String delimiter = context.getProps().getProperty(Constants.SHIFU_OUTPUT_DATA_DELIMITER);
+        this.splitter = MapReduceUtils.generateShifuOutputSplitter(delimiter);
+
+        Integer kCrossValidation = this.modelConfig.getTrain().getNumKFold();
+        if(kCrossValidation != null && kCrossValidation > 0) {
+            isKFoldCV = true;
+            LOG.info("Cross validation is enabled by kCrossValidation: {}.", kCrossValidation);
+        }
+
+        this.poissonSampler = Boolean.TRUE.toString()
+                .equalsIgnoreCase(context.getProps().getProperty(NNConstants.NN_POISON_SAMPLER));
+        this.rng = new PoissonDistribution(1d);
+        Double upSampleWeight = modelConfig.getTrain().getUpSampleWeight();
+        if(upSampleWeight != 1d && (modelConfig.isRegression()
+                || (modelConfig.isClassification() && modelConfig.getTrain().isOneVsAll()))) {
+            // set mean to upSampleWeight -1 and get sample + 1to make sure no zero sample value
+            LOG.info("Enable up sampling with weight {}.", upSampleWeight);
+            this.upSampleRng = new PoissonDistribution(upSampleWeight - 1);
+        }
+
+        this.trainerId = Integer.valueOf(context.getProps().getProperty(CommonConstants.SHIFU_TRAINER_ID, "0"));
+
+        double memoryFraction = Double.valueOf(context.getProps().getProperty("guagua.data.memoryFraction", "0.6"));
+        LOG.info("Max heap memory: {}, fraction: {}", Runtime.getRuntime().maxMemory(), memoryFraction);
+
+        double validationRate = this.modelConfig.getValidSetRate();
+        if(StringUtils.isNotBlank(modelConfig.getValidationDataSetRawPath())) {
+            // fixed 0.6 and 0.4 of max memory for trainingData and validationData
+            this.trainingData = new MemoryLimitedList<Data>(
+                    (long) (Runtime.getRuntime().maxMemory() * memoryFraction * 0.6), new ArrayList<Data>());
+            this.validationData = new MemoryLimitedList<Data>(
+                    (long) (Runtime.getRuntime().maxMemory() * memoryFraction * 0.4), new ArrayList<Data>());
+        } else {
+            if(validationRate != 0d) {
+                this.trainingData = new MemoryLimitedList<Data>(
+                        (long) (Runtime.getRuntime().maxMemory() * memoryFraction * (1 - validationRate)),
+                        new ArrayList<Data>());
+                this.validationData = new MemoryLimitedList<Data>(
+                        (long) (Runtime.getRuntime().maxMemory() * memoryFraction * validationRate),
+                        new ArrayList<Data>());
+            } else {
+                this.trainingData = new MemoryLimitedList<Data>(
+                        (long) (Runtime.getRuntime().maxMemory() * memoryFraction), new ArrayList<Data>());
+            }
+        }
+
+        int[] inputOutputIndex = DTrainUtils.getNumericAndCategoricalInputAndOutputCounts(this.columnConfigList);
+        // numerical + categorical = # of all input
+        this.numInputs = inputOutputIndex[0];
+        this.inputCount = inputOutputIndex[0] + inputOutputIndex[1];
+        // regression outputNodeCount is 1, binaryClassfication, it is 1, OneVsAll it is 1, Native classification it is
+        // 1, with index of 0,1,2,3 denotes different classes
+        this.isAfterVarSelect = (inputOutputIndex[3] == 1);
+        this.isManualValidation = (modelConfig.getValidationDataSetRawPath() != null
+                && !"".equals(modelConfig.getValidationDataSetRawPath()));
+
+        this.isStratifiedSampling = this.modelConfig.getTrain().getStratifiedSample();
+
+        this.validParams = this.modelConfig.getTrain().getParams();
+
+        // Build wide and deep graph
+        List<Integer> embedColumnIds = (List<Integer>) this.validParams.get(CommonConstants.NUM_EMBED_COLUMN_IDS);
+        Integer embedOutputs = (Integer) this.validParams.get(CommonConstants.NUM_EMBED_OUTPUTS);
+        List<Integer> embedOutputList = new ArrayList<Integer>();
+        for(Integer cId: embedColumnIds) {
+            embedOutputList.add(embedOutputs == null ? CommonConstants.DEFAULT_EMBEDING_OUTPUT : embedOutputs);
+        }
+        List<Integer> numericalIds = DTrainUtils.getNumericalIds(this.columnConfigList, isAfterVarSelect);
+        List<Integer> wideColumnIds = DTrainUtils.getCategoricalIds(columnConfigList, isAfterVarSelect);
+        Map<Integer, Integer> idBinCateSizeMap = DTrainUtils.getIdBinCategorySizeMap(columnConfigList);
+        int numLayers = (Integer) this.validParams.get(CommonConstants.NUM_HIDDEN_LAYERS);
+        List<String> actFunc = (List<String>) this.validParams.get(CommonConstants.ACTIVATION_FUNC);
+        List<Integer> hiddenNodes = (List<Integer>) this.validParams.get(CommonConstants.NUM_HIDDEN_NODES);
+        Float l2reg = ((Double) this.validParams.get(CommonConstants.WDL_L2_REG)).floatValue();
+        this.wnd = new WideAndDeep(idBinCateSizeMap, numInputs, numericalIds, embedColumnIds, embedOutputList,
+                wideColumnIds, hiddenNodes, actFunc, l2reg);
+
+        // categorical values are loaded in column order of valid categorical columns
+        Map<Integer, Integer> cateIndexMap = new HashMap<Integer, Integer>();
+        for(ColumnConfig config: this.columnConfigList) {
+            if(validColumn(config) && config.isCategorical()) {
+                cateIndexMap.put(config.getColumnNum(), cateIndexMap.size());
+            }
+        }
+        this.cateInputs = cateIndexMap.size();
+        this.embedIndexes = getCateIndexes(embedColumnIds, cateIndexMap);
+        this.wideIndexes = getCateIndexes(wideColumnIds, cateIndexMap);
+
+        Object miniBatchO = this.validParams.get(CommonConstants.MINI_BATCH);
+        if(miniBatchO != null) {
+            int miniBatchs;
+            try {
+                miniBatchs = Integer.parseInt(miniBatchO.toString());
+            } catch (Exception e) {
+                miniBatchs = 1;
+            }
+            this.batchs = Math.max(1, Math.min(1000, miniBatchs));
+            LOG.info("'miniBatchs' in worker is : {}, batchs is {} ", miniBatchs, this.batchs);
+        }
+
+        Integer workerThreadCount = this.modelConfig.getTrain().getWorkerThreadCount();
+        workerThreadCount = (workerThreadCount == null || workerThreadCount <= 0) ? 1 : workerThreadCount;
+        this.trainers = new ArrayList<Trainer>(workerThreadCount);
+        this.trainers.add(new Trainer(this.wnd));
+        for(int i = 1; i < workerThreadCount; i++) {
+            this.trainers.add(new Trainer(new WideAndDeep(idBinCateSizeMap, numInputs, numericalIds, embedColumnIds,
+                    embedOutputList, wideColumnIds, hiddenNodes, actFunc, l2reg)));
+        }
+        this.threadPool = Executors.newFixedThreadPool(workerThreadCount);
+        LOG.info("Gradient computing thread count is {}.", workerThreadCount);
+        // enable shut down logic
+        context.addCompletionCallBack(new WorkerCompletionCallBack<WDLParams, WDLParams>() {
+            @Override
+            public void callback(WorkerContext<WDLParams, WDLParams> context) {
+                AbstractWDLWorker.this.threadPool.shutdownNow();
+                try {
+                    AbstractWDLWorker.this.threadPool.awaitTermination(2, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    private int[] getCateIndexes(List<Integer> columnIds, Map<Integer, Integer> cateIndexMap) {
+        int[] indexes = new int[columnIds.size()];
+        for(int i = 0; i < indexes.length; i++) {
+            Integer index = cateIndexMap.get(columnIds.get(i));
+            if(index == null) {
+                throw new IllegalArgumentException("Column " + columnIds.get(i)
+                        + " in wide and deep graph is not a selected categorical column.");
+            }
+            indexes[i] = index;
+        }
+        return indexes;
+    }
+
+    private void initCateIndexMap() {
+        this.columnCategoryIndexMapping = new HashMap<Integer, Map<String, Integer>>();
+        for(ColumnConfig config: this.columnConfigList) {
+            if(config.isCategorical() && config.getBinCategory() != null) {
+                Map<String, Integer> tmpMap = new HashMap<String, Integer>();
+                for(int i = 0; i < config.getBinCategory().size(); i++) {
+                    List<String> catVals = CommonUtils.flattenCatValGrp(config.getBinCategory().get(i));
+                    for(String cval: catVals) {
+                        tmpMap.put(cval, i);
+                    }
+                }
+                this.columnCategoryIndexMapping.put(config.getColumnNum(), tmpMap);
+            }
+        }
+    }
+
+    @Override
+    public WDLParams doCompute(WorkerContext<WDLParams, WDLParams> context) {
+        if(context.isFirstIteration()) {
+            // return empty which has been ignored in master first iteration, worker needs sync with master at first.
+            return new WDLParams();
+        }
+
+        IterationProfile profile = new IterationProfile(1);
+        long phaseStart = System.nanoTime();
+        if(this.lastResultNanos > 0L) {
+            profile.set(Phase.WORKER_WAIT, phaseStart - this.lastResultNanos);
+        }
+
+        // update master global model into worker WideAndDeep graph, replicas share the same weights
+        if(!syncWeights(this.wnd, context.getLastMasterResult())) {
+            // gradients of local random weights shouldn't be aggregated, empty result is skipped by master and all
+            // weights are sent in next iteration
+            LOG.warn("Only updated weights received in iteration {} before all weights are synced from master, "
+                    + "skip training.", context.getCurrentIteration());
+            this.lastResultNanos = System.nanoTime();
+            return new WDLParams();
+        }
+        for(int i = 1; i < this.trainers.size(); i++) {
+            WideAndDeep replica = this.trainers.get(i).wnd;
+            replica.updateWeights(this.wnd);
+            replica.initGrads();
+        }
+
+        // only records in current mini batch are trained in this iteration
+        int trainSize = this.trainingData.size();
+        int trainStart = 0, trainEnd = trainSize;
+        if(this.batchs > 1) {
+            int currentBatch = (context.getCurrentIteration() - 2) % this.batchs;
+            int recordsInBatch = trainSize / this.batchs;
+            trainStart = recordsInBatch * currentBatch;
+            trainEnd = (currentBatch == this.batchs - 1) ? trainSize : trainStart + recordsInBatch;
+        }
+        int validSize = this.validationData == null ? 0 : this.validationData.size();
+
+        // forward and backward compute gradients in each thread, errors and validation time of thread are returned
+        int threads = this.trainers.size();
+        List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>(threads);
+        for(int i = 0; i < threads; i++) {
+            final Trainer trainer = this.trainers.get(i);
+            final int trainFrom = getRangeBound(trainStart, trainEnd, i, threads);
+            final int trainTo = getRangeBound(trainStart, trainEnd, i + 1, threads);
+            final int validFrom = getRangeBound(0, validSize, i, threads);
+            final int validTo = getRangeBound(0, validSize, i + 1, threads);
+            tasks.add(new Callable<double[]>() {
+                @Override
+                public double[] call() {
+                    double trainError = trainer.train(trainFrom, trainTo);
+                    long validStart = System.nanoTime();
+                    double validError = trainer.validate(validFrom, validTo);
+                    return new double[] { trainError, validError, System.nanoTime() - validStart };
+                }
+            });
+        }
+        double trainSumError = 0d, validSumError = 0d;
+        long validNanos = 0L;
+        for(double[] errors: invokeAll(tasks)) {
+            trainSumError += errors[0];
+            validSumError += errors[1];
+            validNanos = Math.max(validNanos, (long) errors[2]);
+        }
+
+        // combine gradients of replicas into wnd
+        for(int i = 1; i < threads; i++) {
+            this.wnd.combine(this.trainers.get(i).wnd);
+        }
+        // validation is done in the same threads, the slowest thread's validation time is counted as scan phase
+        profile.set(Phase.WORKER_COMPUTE, System.nanoTime() - phaseStart - validNanos);
+        profile.set(Phase.WORKER_SCAN, validNanos);
+
+        int trainCnt = trainEnd - trainStart, validCnt = validSize;
+        LOG.info("Iteration {} training error is {}, validation error is {}", context.getCurrentIteration(),
+                trainSumError, validSumError);
+        // set cnt, error to params and return to master
+        WDLParams params = new WDLParams();
+        params.setTrainCount(trainCnt);
+        params.setValidationCount(validCnt);
+        params.setTrainError(trainSumError);
+        params.setValidationError(validSumError);
+        params.setSerializationType(SerializationType.GRADIENTS);
+        params.setWnd(this.wnd);
+        if(this.isProfileResultBytes) {
+            profile.set(Phase.RESULT_BYTES, IterationProfile.sizeOf(params));
+        }
+        params.setProfile(profile);
+        this.lastResultNanos = System.nanoTime();
+        return params;
+    }
+
+    /**
+     * Update weights of master result into worker graph. Sparse weights only include rows updated in last iteration,
+     * they are applied only after all weights are synced from master, for example a restarted worker should wait for
+     * all weights.
+     * 
+     * @param wnd
+     *            the worker graph
+     * @param lastMasterResult
+     *            the master result of last iteration
+     * @return true if weights are updated, false if sparse weights are received before all weights are synced
+     */
+    boolean syncWeights(WideAndDeep wnd, WDLParams lastMasterResult) {
+        if(lastMasterResult.getSerializationType() != SerializationType.SPARSE_WEIGHTS) {
+            this.isWeightsSynced = true;
+        } else if(!this.isWeightsSynced) {
+            return false;
+        }
+        wnd.updateWeights(lastMasterResult);
+        return true;
+    }
+
+    public float sigmoid(float logit) {
+        return (float) (1 / (1 + Math.min(1.0E19, Math.exp(-logit))));
+    }
+
+    /**
+     * Bound of the index-th range when records in [from, to) are split into equal ranges.
+     */
+    private static int getRangeBound(int from, int to, int index, int ranges) {
+        return from + (int) ((long) (to - from) * index / ranges);
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<T>(tasks.size());
+        try {
+            for(Future<T> future: this.threadPool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GuaguaRuntimeException(e);
+        }
+        return results;
+    }
+
+    /**
+     * {@link Trainer} computes gradients and errors of records on its own {@link WideAndDeep} graph in one thread.
+     * Input lists and output arrays are reused for all records.
+     */
+    private final class Trainer {
+
+        private final WideAndDeep wnd;
+
+        private final SparseInput[] embedInputs;
+
+        private final SparseInput[] wideInputs;
+
+        private final List<SparseInput> embedInputList;
+
+        private final List<SparseInput> wideInputList;
+
+        private final float[] predicts = new float[1];
+
+        private final float[] actuals = new float[1];
+
+        Trainer(WideAndDeep wnd) {
+            this.wnd = wnd;
+            this.embedInputs = new SparseInput[AbstractWDLWorker.this.embedIndexes.length];
+            this.wideInputs = new SparseInput[AbstractWDLWorker.this.wideIndexes.length];
+            // fixed size lists backed by arrays above
+            this.embedInputList = Arrays.asList(this.embedInputs);
+            this.wideInputList = Arrays.asList(this.wideInputs);
+        }
+
+        /**
+         * Forward and backward computation of training records in [from, to) to accumulate gradients.
+         * 
+         * @return sum of weighted squared errors
+         */
+        double train(int from, int to) {
+            double sumError = 0d;
+            for(int i = from; i < to; i++) {
+                Data data = AbstractWDLWorker.this.trainingData.get(i);
+                float predict = predict(data);
+                float error = predict - data.label;
+                // TODO, logloss, squredloss, weighted error or not
+                sumError += data.weight * error * error;
+                this.predicts[0] = predict;
+                this.actuals[0] = data.label;
+                this.wnd.backward(this.predicts, this.actuals, data.weight);
+            }
+            return sumError;
+        }
+
+        /**
+         * Forward computation of validation records in [from, to).
+         * 
+         * @return sum of weighted squared errors
+         */
+        double validate(int from, int to) {
+            double sumError = 0d;
+            for(int i = from; i < to; i++) {
+                Data data = AbstractWDLWorker.this.validationData.get(i);
+                float error = predict(data) - data.label;
+                sumError += data.weight * error * error;
+            }
+            return sumError;
+        }
+
+        private float predict(Data data) {
+            SparseInput[] categoricalValues = data.getCategoricalValues();
+            for(int i = 0; i < this.embedInputs.length; i++) {
+                this.embedInputs[i] = categoricalValues[AbstractWDLWorker.this.embedIndexes[i]];
+            }
+            for(int i = 0; i < this.wideInputs.length; i++) {
+                this.wideInputs[i] = categoricalValues[AbstractWDLWorker.this.wideIndexes[i]];
+            }
+            float[] logits = this.wnd.forward(data.getNumericalValues(), this.embedInputList, this.wideInputList);
+            return sigmoid(logits[0]);
+        }
+    }
+
+    @Override
+    protected void postLoad(WorkerContext<WDLParams, WDLParams> context) {
+        this.trainingData.switchState();
+        if(validationData != null) {
+            this.validationData.switchState();
+        }
+        LOG.info("    - # Records of the Total Data Set: {}.", this.count);
+        LOG.info("    - Bagging Sample Rate: {}.", this.modelConfig.getBaggingSampleRate());
+        LOG.info("    - Bagging With Replacement: {}.", this.modelConfig.isBaggingWithReplacement());
+        if(this.isKFoldCV) {
+            LOG.info("        - Validation Rate(kFold): {}.", 1d / this.modelConfig.getTrain().getNumKFold());
+        } else {
+            LOG.info("        - Validation Rate: {}.", this.modelConfig.getValidSetRate());
+        }
+        LOG.info("        - # Records of the Training Set: {}.", this.trainingData.size());
+        if(modelConfig.isRegression() || modelConfig.getTrain().isOneVsAll()) {
+            LOG.info("        - # Positive Bagging Selected Records of the Training Set: {}.",
+                    this.positiveSelectedTrainCount);
+            LOG.info("        - # Negative Bagging Selected Records of the Training Set: {}.",
+                    this.negativeSelectedTrainCount);
+            LOG.info("        - # Positive Raw Records of the Training Set: {}.", this.positiveTrainCount);
+            LOG.info("        - # Negative Raw Records of the Training Set: {}.", this.negativeTrainCount);
+        }
+
+        if(validationData != null) {
+            LOG.info("        - # Records of the Validation Set: {}.", this.validationData.size());
+            if(modelConfig.isRegression() || modelConfig.getTrain().isOneVsAll()) {
+                LOG.info("        - # Positive Records of the Validation Set: {}.", this.positiveValidationCount);
+                LOG.info("        - # Negative Records of the Validation Set: {}.", this.negativeValidationCount);
+            }
+        }
+
+    }
+
+    /**
+     * {@link Data} denotes training record with a float array of dense (numerical) inputs and a list of sparse inputs
+     * of categorical input features.
+     * 
+     * @author Zhang David (pengzhang@paypal.com)
+     */
+    public static class Data {
+
+        /**
+         * Numerical values
+         */
+        private float[] numericalValues;
+
+        /**
+         * Categorical values in sparse object
+         */
+        private SparseInput[] categoricalValues;
+
+        /**
+         * The weight of one training record like dollar amount in one txn
+         */
+        private float weight;
+
+        /**
+         * Target value of one record
+         */
+        private float label;
+
+        /**
+         * Constructor for a unified data object which is for a line of training record.
+         * 
+         * @param numericalValues
+         *            numerical values
+         * @param categoricalValues
+         *            categorical values which stored into one {@link SparseInput} array.
+         * @param weight
+         *            the weight of one training record
+         * @param ideal
+         *            the label field, 0 or 1
+         */
+        public Data(float[] numericalValues, SparseInput[] categoricalValues, float weight, float ideal) {
+            this.numericalValues = numericalValues;
+            this.categoricalValues = categoricalValues;
+            this.weight = weight;
+            this.label = ideal;
+        }
+
+        /**
+         * @return the numericalValues
+         */
+        public float[] getNumericalValues() {
+            return numericalValues;
+        }
+
+        /**
+         * @param numericalValues
+         *            the numericalValues to set
+         */
+        public void setNumericalValues(float[] numericalValues) {
+            this.numericalValues = numericalValues;
+        }
+
+        /**
+         * @return the categoricalValues
+         */
+        public SparseInput[] getCategoricalValues() {
+            return categoricalValues;
+        }
+
+        /**
+         * @param categoricalValues
+         *            the categoricalValues to set
+         */
+        public void setCategoricalValues(SparseInput[] categoricalValues) {
+            this.categoricalValues = categoricalValues;
+        }
+
+        /**
+         * @return the weight
+         */
+        public float getWeight() {
+            return weight;
+        }
+
+        /**
+         * @param weight
+         *            the weight to set
+         */
+        public void setWeight(float weight) {
+            this.weight = weight;
+        }
+
+        /**
+         * @return the ideal
+         */
+        public float getLabel() {
+            return label;
+        }
+
+        /**
+         * @param ideal
+         *            the ideal to set
+         */
+        public void setLabel(float ideal) {
+            this.label = ideal;
+        }
+
+    }
+
+}
@@ -51,7 +51,7 @@ public class BiasLayer extends AbstractLayer<Float, Float, Float, Float, BiasLay
 
     @Override
     public Float backward(Float backInput) {
-        this.wGrad = backInput; // no need l2 reg in bias layer
+        this.wGrad += backInput; // no need l2 reg in bias layer
         // no need backward output computation as it is last layer.
         return backInput * weight;
     }
@@ -102,6 +102,7 @@ public class BiasLayer extends AbstractLayer<Float, Float, Float, Float, BiasLay
     public void write(DataOutput out) throws IOException {
         switch(this.serializationType) {
             case WEIGHTS:
+            case SPARSE_WEIGHTS:
             case MODEL_SPEC:
                 out.writeFloat(weight);
                 break;
@@ -122,6 +123,7 @@ public class BiasLayer extends AbstractLayer<Float, Float, Float, Float, BiasLay
     public void readFields(DataInput in) throws IOException {
         switch(this.serializationType) {
             case WEIGHTS:
+            case SPARSE_WEIGHTS:
             case MODEL_SPEC:
                 this.weight = in.readFloat();
                 break;
@@ -117,7 +117,8 @@ public class BinaryWDLSerializer {
                 cs.write(fos);
             }
 
-            // persist WideAndDeep Model
+            // persist WideAndDeep Model, model spec and all weights are needed no matter what is sent in training
+            wideAndDeep.setSerializationType(SerializationType.MODEL_SPEC);
             wideAndDeep.write(fos);
         } finally {
             IOUtils.closeStream(fos);
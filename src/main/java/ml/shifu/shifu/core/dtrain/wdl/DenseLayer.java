@@ -194,7 +194,7 @@ public class DenseLayer extends AbstractLayer<float[], float[], float[], float[]
             }
         }
         for(int j = 0; j < this.out; j++) {
-            this.bGrads[j] = (backInputs[j]); // no need l2 reg here as bias no need
+            this.bGrads[j] += (backInputs[j]); // no need l2 reg here as bias no need
         }
 
         // compute back inputs
@@ -263,6 +263,7 @@ public class DenseLayer extends AbstractLayer<float[], float[], float[], float[]
     @Override
     public void initWeight(DenseLayer updateModel) {
         this.weights = updateModel.getWeights();
+        this.bias = updateModel.getBias();
     }
 
     /*
@@ -278,6 +279,7 @@ public class DenseLayer extends AbstractLayer<float[], float[], float[], float[]
 
         switch(this.serializationType) {
             case WEIGHTS:
+            case SPARSE_WEIGHTS:
             case MODEL_SPEC:
                 SerializationUtil.write2DimFloatArray(out, this.weights, this.in, this.out);
                 SerializationUtil.writeFloatArray(out, this.bias, this.out);
@@ -304,6 +306,7 @@ public class DenseLayer extends AbstractLayer<float[], float[], float[], float[]
 
         switch(this.serializationType) {
             case WEIGHTS:
+            case SPARSE_WEIGHTS:
             case MODEL_SPEC:
                 this.weights = SerializationUtil.read2DimFloatArray(in, this.weights, this.in, this.out);
                 this.bias = SerializationUtil.readFloatArray(in, this.bias, this.out);
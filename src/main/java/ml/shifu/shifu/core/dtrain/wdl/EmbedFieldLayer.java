@@ -20,9 +20,6 @@ import ml.shifu.shifu.core.dtrain.wdl.optimization.Optimizer;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
 
 /**
  * {@link EmbedFieldLayer} is for each column like sparse categorical feature. The input of this layer is one-hot
@@ -35,6 +32,11 @@ import java.util.Map.Entry;
  * <p>
  * Bias is not supported as in embed with bias, sparse gradients will be missed.
  * 
+ * <p>
+ * Gradients are only kept for touched categories in {@link SparseFloatRows}. After {@link #update(EmbedFieldLayer,
+ * Optimizer)}, only updated rows are serialized in {@link SerializationType#SPARSE_WEIGHTS} and such rows are applied
+ * to existing weights in {@link #initWeight(EmbedFieldLayer)}.
+ * 
  * @author Zhang David (pengzhang@paypal.com)
  */
 public class EmbedFieldLayer extends AbstractLayer<SparseInput, float[], float[], float[], EmbedFieldLayer>
@@ -46,9 +48,19 @@ public class EmbedFieldLayer extends AbstractLayer<SparseInput, float[], float[]
     private float[][] weights;
 
     /**
-     * Weight gradients in back computation
+     * Weight gradients in back computation, only rows of touched categories
+     */
+    private SparseFloatRows wGrads;
+
+    /**
+     * Weight rows de-serialized from {@link SerializationType#SPARSE_WEIGHTS}, null if all weights are read.
      */
-    private Map<Integer, float[]> wGrads;
+    private SparseFloatRows weightRows;
+
+    /**
+     * Rows updated in last {@link #update(EmbedFieldLayer, Optimizer)}, in ascending order.
+     */
+    private int[] updatedRows;
 
     /**
      * The output dimension
@@ -106,10 +118,10 @@ public class EmbedFieldLayer extends AbstractLayer<SparseInput, float[], float[]
     @Override
     public float[] backward(float[] backInputs) {
         // gradients computation
-        int valueIndex = this.lastInput.getValueIndex();
-        this.wGrads.computeIfAbsent(valueIndex, k -> new float[this.out]);
+        int offset = this.wGrads.addRow(this.lastInput.getValueIndex());
+        float[] grads = this.wGrads.getValues();
         for(int j = 0; j < this.out; j++) {
-            this.wGrads.get(valueIndex)[j] += (this.lastInput.getValue() * backInputs[j]);
+            grads[offset + j] += (this.lastInput.getValue() * backInputs[j]);
         }
 
         // no need compute backward outputs as it is last layer
@@ -179,7 +191,7 @@ public class EmbedFieldLayer extends AbstractLayer<SparseInput, float[], float[]
     /**
      * @return the wGrads
      */
-    public Map<Integer, float[]> getwGrads() {
+    public SparseFloatRows getwGrads() {
         return wGrads;
     }
 
@@ -187,12 +199,23 @@ public class EmbedFieldLayer extends AbstractLayer<SparseInput, float[], float[]
      * @param wGrads
      *            the wGrads to set
      */
-    public void setwGrads(Map<Integer, float[]> wGrads) {
+    public void setwGrads(SparseFloatRows wGrads) {
         this.wGrads = wGrads;
     }
 
+    /**
+     * @return the weightRows
+     */
+    public SparseFloatRows getWeightRows() {
+        return weightRows;
+    }
+
     public void initGrads() {
-        this.wGrads = new HashMap<Integer, float[]>();
+        if(this.wGrads == null) { // reuse the same rows
+            this.wGrads = new SparseFloatRows(this.out);
+        } else {
+            this.wGrads.clear();
+        }
     }
 
     @Override
@@ -202,7 +225,16 @@ public class EmbedFieldLayer extends AbstractLayer<SparseInput, float[], float[]
 
     @Override
     public void initWeight(EmbedFieldLayer updateModel) {
-        this.weights = updateModel.getWeights();
+        SparseFloatRows rows = updateModel.getWeightRows();
+        if(rows == null) {
+            this.weights = updateModel.getWeights();
+            return;
+        }
+        // only updated rows are sent, apply them to current weights
+        float[] values = rows.getValues();
+        for(int i = 0; i < rows.size(); i++) {
+            System.arraycopy(values, rows.getOffset(i), this.weights[rows.getIndex(i)], 0, this.out);
+        }
     }
 
     /*
@@ -221,15 +253,15 @@ public class EmbedFieldLayer extends AbstractLayer<SparseInput, float[], float[]
             case MODEL_SPEC:
                 SerializationUtil.write2DimFloatArray(out, this.weights, this.in, this.out);
                 break;
+            case SPARSE_WEIGHTS:
+                SparseFloatRows.writeRows(out, this.updatedRows == null ? new int[0] : this.updatedRows,
+                        this.weights, this.out);
+                break;
             case GRADIENTS:
                 if(this.wGrads == null) {
-                    out.writeInt(0);
+                    new SparseFloatRows(this.out, 1).write(out);
                 } else {
-                    out.writeInt(this.wGrads.size());
-                    for(Entry<Integer, float[]> entry: this.wGrads.entrySet()) {
-                        out.writeInt(entry.getKey());
-                        SerializationUtil.writeFloatArray(out, entry.getValue(), this.out);
-                    }
+                    this.wGrads.write(out);
                 }
                 break;
             default:
@@ -252,19 +284,17 @@ public class EmbedFieldLayer extends AbstractLayer<SparseInput, float[], float[]
             case WEIGHTS:
             case MODEL_SPEC:
                 this.weights = SerializationUtil.read2DimFloatArray(in, this.weights, this.in, this.out);
+                this.weightRows = null;
+                break;
+            case SPARSE_WEIGHTS:
+                this.weightRows = new SparseFloatRows(this.out);
+                this.weightRows.readFields(in);
                 break;
             case GRADIENTS:
-                if(this.wGrads != null) {
-                    this.wGrads.clear();
-                } else {
-                    this.wGrads = new HashMap<Integer, float[]>();
-                }
-                int gradSize = in.readInt();
-                for(int i = 0; i < gradSize; i++) {
-                    int lineNumber = in.readInt();
-                    float[] grad = SerializationUtil.readFloatArray(in, null, this.out);
-                    this.wGrads.put(lineNumber, grad);
+                if(this.wGrads == null) {
+                    this.wGrads = new SparseFloatRows(this.out);
                 }
+                this.wGrads.readFields(in);
                 break;
             default:
                 break;
@@ -276,23 +306,14 @@ public class EmbedFieldLayer extends AbstractLayer<SparseInput, float[], float[]
         if(columnId != from.getColumnId()) {
             return this;
         }
-        Map<Integer, float[]> fromGrads = from.getwGrads();
-        for(Entry<Integer, float[]> entry: fromGrads.entrySet()) {
-            Integer index = entry.getKey();
-            float[] grad = entry.getValue();
-            if(wGrads.containsKey(index)) {
-                float[] thisGrad = wGrads.get(index);
-                for(int i = 0; i < this.out; i++) {
-                    grad[i] += thisGrad[i];
-                }
-            }
-            wGrads.put(index, grad);
-        }
+        this.wGrads.combine(from.getwGrads());
         return this;
     }
 
     @Override
     public void update(EmbedFieldLayer gradLayer, Optimizer optimizer) {
-        optimizer.batchUpdate(this.weights, gradLayer.getwGrads());
+        SparseFloatRows grads = gradLayer.getwGrads();
+        optimizer.batchUpdate(this.weights, grads);
+        this.updatedRows = grads == null ? null : grads.getSortedIndexes();
     }
 }
@@ -0,0 +1,381 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.wdl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * {@link SparseFloatRows} is a sparse set of float rows keyed by int row index, like gradients of touched categories in
+ * {@link EmbedFieldLayer} (row length is embedding output) or {@link WideFieldLayer} (row length is 1).
+ *
+ * <p>
+ * Row indexes are kept in a primitive int array and values of all rows are packed in one float array in the same
+ * order, row position is located by an open addressing hash table of int keys. No boxing object is created in
+ * accumulation and no memory is allocated after capacity is enough.
+ *
+ * <p>
+ * Serialized form is row length, row count, sorted row indexes and packed values in index order. Size of serialized
+ * form is only related to number of rows touched, not the vocabulary size of a categorical column.
+ */
+public class SparseFloatRows {
+
+    private static final int EMPTY = -1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Number of float values of each row.
+     */
+    private int rowLength;
+
+    /**
+     * Row indexes in position order.
+     */
+    private int[] indexes;
+
+    /**
+     * Packed row values, values of row in position p is in [p * rowLength, (p + 1) * rowLength).
+     */
+    private float[] values;
+
+    /**
+     * Hash slots with row position or {@link #EMPTY}, length is power of 2.
+     */
+    private int[] slots;
+
+    /**
+     * Number of rows.
+     */
+    private int size;
+
+    public SparseFloatRows() {
+        this(1);
+    }
+
+    public SparseFloatRows(int rowLength) {
+        this(rowLength, DEFAULT_CAPACITY);
+    }
+
+    public SparseFloatRows(int rowLength, int capacity) {
+        this.rowLength = rowLength;
+        this.indexes = new int[Math.max(1, capacity)];
+        this.values = new float[this.indexes.length * rowLength];
+        this.slots = newSlots(this.indexes.length);
+    }
+
+    private static int[] newSlots(int capacity) {
+        int length = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+        int[] slots = new int[length];
+        Arrays.fill(slots, EMPTY);
+        return slots;
+    }
+
+    private static int hash(int index) {
+        int h = index * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return number of float values of each row
+     */
+    public int getRowLength() {
+        return this.rowLength;
+    }
+
+    /**
+     * @return number of rows
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param position
+     *            row position in [0, size)
+     * @return row index in such position
+     */
+    public int getIndex(int position) {
+        return this.indexes[position];
+    }
+
+    /**
+     * Packed values of all rows, values of row in position p starts from {@link #getOffset(int)}. The array may be
+     * re-allocated when new row is added, so it should be got again after {@link #addRow(int)}.
+     *
+     * @return packed values
+     */
+    public float[] getValues() {
+        return this.values;
+    }
+
+    /**
+     * @param position
+     *            row position in [0, size)
+     * @return offset of row values in {@link #getValues()}
+     */
+    public int getOffset(int position) {
+        return position * this.rowLength;
+    }
+
+    /**
+     * Find position of row index.
+     *
+     * @param index
+     *            row index
+     * @return row position or -1 if not existing
+     */
+    public int find(int index) {
+        int mask = this.slots.length - 1;
+        for(int slot = hash(index) & mask;; slot = (slot + 1) & mask) {
+            int position = this.slots[slot];
+            if(position == EMPTY || this.indexes[position] == index) {
+                return position;
+            }
+        }
+    }
+
+    /**
+     * Get row of index, zero row is added if not existing.
+     *
+     * @param index
+     *            row index
+     * @return offset of row values in {@link #getValues()}
+     */
+    public int addRow(int index) {
+        int mask = this.slots.length - 1;
+        int slot = hash(index) & mask;
+        for(;; slot = (slot + 1) & mask) {
+            int position = this.slots[slot];
+            if(position == EMPTY) {
+                break;
+            }
+            if(this.indexes[position] == index) {
+                return position * this.rowLength;
+            }
+        }
+
+        if(this.size == this.indexes.length) {
+            grow();
+            return addRow(index);
+        }
+        int position = this.size++;
+        this.indexes[position] = index;
+        this.slots[slot] = position;
+        return position * this.rowLength;
+    }
+
+    /**
+     * Add value to row of index, only for rows with length 1.
+     *
+     * @param index
+     *            row index
+     * @param value
+     *            value to be added
+     */
+    public void add(int index, float value) {
+        int offset = addRow(index);
+        this.values[offset] += value;
+    }
+
+    private void grow() {
+        int capacity = this.indexes.length * 2;
+        this.indexes = Arrays.copyOf(this.indexes, capacity);
+        this.values = Arrays.copyOf(this.values, capacity * this.rowLength);
+        rehash();
+    }
+
+    private void rehash() {
+        this.slots = newSlots(this.indexes.length);
+        int mask = this.slots.length - 1;
+        for(int position = 0; position < this.size; position++) {
+            int slot = hash(this.indexes[position]) & mask;
+            while(this.slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            this.slots[slot] = position;
+        }
+    }
+
+    /**
+     * Add all rows of another instance with the same row length.
+     *
+     * @param from
+     *            rows to be added
+     * @return this instance
+     */
+    public SparseFloatRows combine(SparseFloatRows from) {
+        if(from == null) {
+            return this;
+        }
+        for(int position = 0; position < from.size; position++) {
+            int offset = addRow(from.indexes[position]);
+            int fromOffset = position * this.rowLength;
+            for(int i = 0; i < this.rowLength; i++) {
+                this.values[offset + i] += from.values[fromOffset + i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Remove all rows while keeping allocated memory.
+     */
+    public void clear() {
+        if(this.size > 0) {
+            Arrays.fill(this.slots, EMPTY);
+            Arrays.fill(this.values, 0, this.size * this.rowLength, 0f);
+            this.size = 0;
+        }
+    }
+
+    /**
+     * Sort rows by row index.
+     */
+    public void sort() {
+        long[] keys = new long[this.size];
+        boolean isSorted = true;
+        for(int position = 0; position < this.size; position++) {
+            keys[position] = ((long) this.indexes[position] << 32) | position;
+            isSorted &= (position == 0 || this.indexes[position - 1] < this.indexes[position]);
+        }
+        if(isSorted) {
+            return;
+        }
+        Arrays.sort(keys);
+        float[] sortedValues = new float[this.values.length];
+        for(int position = 0; position < this.size; position++) {
+            int from = (int) keys[position];
+            this.indexes[position] = (int) (keys[position] >> 32);
+            System.arraycopy(this.values, from * this.rowLength, sortedValues, position * this.rowLength,
+                    this.rowLength);
+        }
+        this.values = sortedValues;
+        rehash();
+    }
+
+    /**
+     * @return row indexes in ascending order
+     */
+    public int[] getSortedIndexes() {
+        int[] sorted = Arrays.copyOf(this.indexes, this.size);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Rows are sorted by row index before writing.
+     *
+     * @param out
+     *            the data output
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void write(DataOutput out) throws IOException {
+        sort();
+        out.writeInt(this.rowLength);
+        out.writeInt(this.size);
+        for(int position = 0; position < this.size; position++) {
+            out.writeInt(this.indexes[position]);
+        }
+        int length = this.size * this.rowLength;
+        for(int i = 0; i < length; i++) {
+            out.writeFloat(this.values[i]);
+        }
+    }
+
+    /**
+     * Read rows to replace all rows in this instance, allocated memory is reused if enough.
+     *
+     * @param in
+     *            the data input
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void readFields(DataInput in) throws IOException {
+        this.rowLength = in.readInt();
+        int rows = in.readInt();
+        if(this.indexes.length < rows || this.values.length < rows * this.rowLength) {
+            this.indexes = new int[Math.max(rows, DEFAULT_CAPACITY)];
+            this.values = new float[this.indexes.length * this.rowLength];
+        } else {
+            Arrays.fill(this.values, 0f);
+        }
+        for(int position = 0; position < rows; position++) {
+            this.indexes[position] = in.readInt();
+        }
+        int length = rows * this.rowLength;
+        for(int i = 0; i < length; i++) {
+            this.values[i] = in.readFloat();
+        }
+        this.size = rows;
+        rehash();
+    }
+
+    /**
+     * Write rows of a weight matrix in the same serialized form of {@link SparseFloatRows}.
+     *
+     * @param out
+     *            the data output
+     * @param sortedIndexes
+     *            row indexes in ascending order
+     * @param weights
+     *            [in][rowLength] weights
+     * @param rowLength
+     *            length of each row
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public static void writeRows(DataOutput out, int[] sortedIndexes, float[][] weights, int rowLength)
+            throws IOException {
+        out.writeInt(rowLength);
+        out.writeInt(sortedIndexes.length);
+        for(int index: sortedIndexes) {
+            out.writeInt(index);
+        }
+        for(int index: sortedIndexes) {
+            for(int i = 0; i < rowLength; i++) {
+                out.writeFloat(weights[index][i]);
+            }
+        }
+    }
+
+    /**
+     * Write elements of a weight vector as rows of length 1 in the same serialized form of {@link SparseFloatRows}.
+     *
+     * @param out
+     *            the data output
+     * @param sortedIndexes
+     *            element indexes in ascending order
+     * @param weights
+     *            the weights
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public static void writeRows(DataOutput out, int[] sortedIndexes, float[] weights) throws IOException {
+        out.writeInt(1);
+        out.writeInt(sortedIndexes.length);
+        for(int index: sortedIndexes) {
+            out.writeInt(index);
+        }
+        for(int index: sortedIndexes) {
+            out.writeFloat(weights[index]);
+        }
+    }
+
+}
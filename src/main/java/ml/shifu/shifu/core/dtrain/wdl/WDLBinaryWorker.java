@@ -0,0 +1,128 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.wdl;
+
+import ml.shifu.guagua.ComputableMonitor;
+import ml.shifu.guagua.hadoop.io.GuaguaWritableAdapter;
+import ml.shifu.guagua.io.GuaguaFileSplit;
+import ml.shifu.guagua.worker.WorkerContext;
+import ml.shifu.shifu.container.obj.ColumnConfig;
+import ml.shifu.shifu.guagua.BinaryNormFormat;
+import ml.shifu.shifu.guagua.BinaryNormRow;
+import ml.shifu.shifu.guagua.GuaguaBinaryNormRecordReader;
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.io.LongWritable;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WDLBinaryWorker} is responsible for loading part of data into memory, do iteration gradients computation and
+ * send back to master for master aggregation.
+ *
+ * <p>
+ * {@link WDLBinaryWorker} is to load data with {@link BinaryNormFormat}. Rows are in the same column layout as text
+ * norm output of {@link WDLWorker} while values are read as floats without parsing. Categorical values are category
+ * indexes normalized by index norm types like WOE_INDEX, NaN values stored for null norm values and indexes out of bin
+ * categories are mapped to the missing category index.
+ */
+@ComputableMonitor(timeUnit = TimeUnit.SECONDS, duration = 3600)
+public class WDLBinaryWorker extends AbstractWDLWorker<BinaryNormRow> {
+
+    /**
+     * Logic to load data into memory list which includes float array for numerical features and sparse object array for
+     * categorical features.
+     */
+    @Override
+    public void load(GuaguaWritableAdapter<LongWritable> currentKey, GuaguaWritableAdapter<BinaryNormRow> currentValue,
+            WorkerContext<WDLParams, WDLParams> context) {
+        if((++this.count) % 5000 == 0) {
+            LOG.info("Read {} records.", this.count);
+        }
+
+        // hashcode for fixed input split in train and validation
+        long hashcode = 0;
+        float[] inputs = new float[this.numInputs];
+        SparseInput[] cateInputs = new SparseInput[this.cateInputs];
+        float ideal = 0f, significance = 1f;
+        int numIndex = 0, cateIndex = 0;
+        float[] values = currentValue.getWritable().getValues();
+        for(int index = 0; index < values.length; index++) {
+            if(index == this.columnConfigList.size()) {
+                significance = getWeightValue(values[index]);
+                break; // the last field is significance, break here
+            } else {
+                ColumnConfig config = this.columnConfigList.get(index);
+                if(config != null && config.isTarget()) {
+                    ideal = getFloatValue(values[index]);
+                } else {
+                    // final select some variables but meta and target are not included
+                    if(validColumn(config)) {
+                        if(config.isNumerical()) {
+                            inputs[numIndex++] = getFloatValue(values[index]);
+                        } else if(config.isCategorical()) {
+                            cateInputs[cateIndex++] = new SparseInput(config.getColumnNum(),
+                                    getCateIndex(values[index], config));
+                        }
+                        hashcode = hashcode * 31 + Float.valueOf(values[index]).hashCode();
+                    }
+                }
+            }
+        }
+
+        if(numIndex != inputs.length) {
+            throw new RuntimeException("Input length is inconsistent with parsing size. Input original size: "
+                    + inputs.length + ", parsing size:" + numIndex + ".");
+        }
+        addRecord(hashcode, inputs, cateInputs, ideal, significance, context);
+    }
+
+    private int getCateIndex(float value, ColumnConfig columnConfig) {
+        int missingIndex = columnConfig.getBinCategory().size();
+        // NaN is stored for missing which is invalid category
+        if(Float.isNaN(value) || value < 0f || value > missingIndex) {
+            return missingIndex;
+        }
+        return (int) value;
+    }
+
+    private float getWeightValue(float value) {
+        float significance = 1f;
+        if(StringUtils.isNotBlank(modelConfig.getWeightColumnName())) {
+            // NaN is stored for empty weight
+            significance = Float.isNaN(value) ? 1f : value;
+            // if invalid weight, set it to 1f and warning in log
+            if(significance < 0f) {
+                LOG.warn("Record {} with weight {} is less than 0 and invalid, set it to 1.", count, significance);
+                significance = 1f;
+            }
+        }
+        return significance;
+    }
+
+    /*
+     * NaN in input data is processed as missing value 0f, the same as empty text value in {@link WDLWorker}.
+     */
+    private static float getFloatValue(float value) {
+        return Float.isNaN(value) ? 0f : value;
+    }
+
+    @Override
+    public void initRecordReader(GuaguaFileSplit fileSplit) throws IOException {
+        super.setRecordReader(new GuaguaBinaryNormRecordReader(fileSplit));
+    }
+
+}
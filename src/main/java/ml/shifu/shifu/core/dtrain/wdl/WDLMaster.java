@@ -22,6 +22,8 @@ import ml.shifu.shifu.container.obj.ModelConfig;
 import ml.shifu.shifu.container.obj.RawSourceData.SourceType;
 import ml.shifu.shifu.core.dtrain.CommonConstants;
 import ml.shifu.shifu.core.dtrain.DTrainUtils;
+import ml.shifu.shifu.core.dtrain.IterationProfile;
+import ml.shifu.shifu.core.dtrain.IterationProfile.Phase;
 import ml.shifu.shifu.core.dtrain.wdl.optimization.GradientDescent;
 import ml.shifu.shifu.core.dtrain.wdl.optimization.Optimizer;
 import ml.shifu.shifu.fs.ShifuFileUtils;
@@ -60,12 +62,19 @@ import java.util.Properties;
  * For fault tolerance, {@link #wnd} needs to be recovered from existing model hdfs folder if continuous model training
  * enabled.
  * 
+ * <p>
+ * To save network traffic of high-cardinality categorical columns, only embedding and wide weights of categories
+ * updated in current iteration are sent back to workers with dense weights by {@link SerializationType#SPARSE_WEIGHTS}.
+ * All weights are still sent every {@link #fullWeightsInterval} iterations in case of restarted workers.
+ * 
  * @author Zhang David (pengzhang@paypal.com)
  */
 public class WDLMaster extends AbstractMasterComputable<WDLParams, WDLParams> {
 
     protected static final Logger LOG = LoggerFactory.getLogger(WDLMaster.class);
 
+    private static final int DEFAULT_FULL_WEIGHTS_INTERVAL = 10;
+
     /**
      * Model configuration loaded from configuration file.
      */
@@ -111,6 +120,17 @@ public class WDLMaster extends AbstractMasterComputable<WDLParams, WDLParams> {
      */
     private Optimizer optimizer;
 
+    /**
+     * Interval of iterations to send all weights to workers, in other iterations only updated sparse weights are sent.
+     * If it is not larger than 1, all weights are sent in each iteration.
+     */
+    private int fullWeightsInterval = DEFAULT_FULL_WEIGHTS_INTERVAL;
+
+    /**
+     * Time by {@link System#nanoTime()} when last master result is built, start of master wait phase.
+     */
+    private long lastResultNanos;
+
     @SuppressWarnings({ "unchecked", "unused" })
     @Override
     public void init(MasterContext<WDLParams, WDLParams> context) {
@@ -135,7 +155,7 @@ public class WDLMaster extends AbstractMasterComputable<WDLParams, WDLParams> {
         this.isAfterVarSelect = (inputOutputIndex[3] == 1);
         this.validParams = this.modelConfig.getTrain().getParams();
         this.learningRate = Double.valueOf(validParams.get(CommonConstants.LEARNING_RATE).toString());
-        System.out.println("learning rate in master init" + this.learningRate);
+        LOG.info("Learning rate in master init is {}.", this.learningRate);
 
         this.isContinuousEnabled = Boolean.TRUE.toString()
                 .equalsIgnoreCase(context.getProps().getProperty(CommonConstants.CONTINUOUS_TRAINING));
@@ -158,6 +178,12 @@ public class WDLMaster extends AbstractMasterComputable<WDLParams, WDLParams> {
                 wideColumnIds, hiddenNodes, actFunc, l2reg);
         // TODO: make this configurable
         this.optimizer = new GradientDescent(this.learningRate);
+
+        Object fullWeightsInterval = this.validParams.get(CommonConstants.WDL_FULL_WEIGHTS_INTERVAL);
+        if(fullWeightsInterval != null) {
+            this.fullWeightsInterval = Integer.parseInt(fullWeightsInterval.toString());
+        }
+        LOG.info("All weights are sent to workers every {} iterations.", this.fullWeightsInterval);
     }
 
     @Override
@@ -168,33 +194,54 @@ public class WDLMaster extends AbstractMasterComputable<WDLParams, WDLParams> {
             return initOrRecoverModelWeights(context);
         }
 
-        // aggregate all worker gradients to one gradient object.
-        WDLParams aggregation = aggregateWorkerGradients(context);
+        IterationProfile profile = new IterationProfile(0);
+        long phaseStart = System.nanoTime();
+        if(this.lastResultNanos > 0L) {
+            profile.set(Phase.MASTER_WAIT, phaseStart - this.lastResultNanos);
+        }
+
+        // aggregate all worker gradients to one gradient object, worker profiles are merged in combine; workers not
+        // synced with all weights return results without gradients which are skipped
+        WDLParams aggregation = null;
+        boolean hasUnsyncedWorkers = false;
+        for(WDLParams workerResult: context.getWorkerResults()) {
+            if(workerResult.getWnd() == null) {
+                hasUnsyncedWorkers = true;
+            } else {
+                aggregation = (aggregation == null ? workerResult : aggregation.combine(workerResult));
+            }
+        }
+        if(aggregation != null) {
+            profile.merge(aggregation.getProfile());
+        }
+        phaseStart = profile.elapsed(Phase.MASTER_MERGE, phaseStart);
 
         // apply optimizer
-        this.wnd.update(aggregation.getWnd(), optimizer);
+        if(aggregation != null) {
+            this.wnd.update(aggregation.getWnd(), optimizer);
+        }
 
         // construct master result which contains WideAndDeep current model weights
         WDLParams params = new WDLParams();
-        params.setTrainCount(aggregation.getTrainCount());
-        params.setValidationCount(aggregation.getValidationCount());
-        params.setTrainError(aggregation.getTrainError());
-        params.setValidationError(aggregation.getValidationError());
-        params.setSerializationType(SerializationType.WEIGHTS);
+        if(aggregation != null) {
+            params.setTrainCount(aggregation.getTrainCount());
+            params.setValidationCount(aggregation.getValidationCount());
+            params.setTrainError(aggregation.getTrainError());
+            params.setValidationError(aggregation.getValidationError());
+        }
+        // all weights are sent if some workers are not synced like restarted workers, otherwise they wait until next
+        // full weights iteration
+        params.setSerializationType(isFullWeightsIteration(context.getCurrentIteration()) || hasUnsyncedWorkers
+                ? SerializationType.WEIGHTS : SerializationType.SPARSE_WEIGHTS);
         params.setWnd(this.wnd);
+        profile.elapsed(Phase.MASTER_COMPUTE, phaseStart);
+        params.setProfile(profile);
+        this.lastResultNanos = System.nanoTime();
         return params;
     }
 
-    private WDLParams aggregateWorkerGradients(MasterContext<WDLParams, WDLParams> context) {
-        WDLParams aggregation = null;
-        for(WDLParams params: context.getWorkerResults()) {
-            if(aggregation == null) {
-                aggregation = params;
-            } else {
-                aggregation.combine(params);
-            }
-        }
-        return aggregation;
+    private boolean isFullWeightsIteration(int iteration) {
+        return this.fullWeightsInterval <= 1 || iteration % this.fullWeightsInterval == 0;
     }
 
     private WDLParams initOrRecoverModelWeights(MasterContext<WDLParams, WDLParams> context) {
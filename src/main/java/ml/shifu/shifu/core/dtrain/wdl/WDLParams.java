@@ -17,6 +17,8 @@ package ml.shifu.shifu.core.dtrain.wdl;
 
 import ml.shifu.guagua.io.Combinable;
 import ml.shifu.guagua.io.HaltBytable;
+import ml.shifu.shifu.core.dtrain.IterationProfile;
+import ml.shifu.shifu.core.dtrain.IterationProfiled;
 
 import java.io.DataInput;
 import java.io.DataOutput;
@@ -35,7 +37,7 @@ import java.io.IOException;
  * 
  * @author Zhang David (pengzhang@paypal.com)
  */
-public class WDLParams extends HaltBytable implements Combinable<WDLParams> {
+public class WDLParams extends HaltBytable implements Combinable<WDLParams>, IterationProfiled {
 
     private static final boolean WDL_IS_NULL = true;
 
@@ -66,6 +68,11 @@ public class WDLParams extends HaltBytable implements Combinable<WDLParams> {
 
     private WideAndDeep wnd;
 
+    /**
+     * Phase profile of current iteration, merged from workers in master result.
+     */
+    private IterationProfile profile;
+
     // TODO: add wide. dnn, embedding weights/gradients here
 
     public void update(WideAndDeep wnd) {
@@ -154,6 +161,7 @@ public class WDLParams extends HaltBytable implements Combinable<WDLParams> {
         this.validationCount += from.validationCount;
         this.validationError += from.validationError;
         this.wnd = this.wnd.combine(from.getWnd());
+        this.profile = (this.profile == null ? from.profile : this.profile.merge(from.profile));
         return this;
     }
 
@@ -172,6 +180,7 @@ public class WDLParams extends HaltBytable implements Combinable<WDLParams> {
         out.writeDouble(this.trainError);
         out.writeDouble(this.validationError);
         out.writeInt(this.serializationType.getValue());
+        IterationProfile.write(out, this.profile);
     }
 
     @Override
@@ -188,6 +197,7 @@ public class WDLParams extends HaltBytable implements Combinable<WDLParams> {
         this.trainError = in.readDouble();
         this.validationError = in.readDouble();
         this.serializationType = SerializationType.getSerializationType(in.readInt());
+        this.profile = IterationProfile.read(in);
     }
 
     /**
@@ -205,4 +215,14 @@ public class WDLParams extends HaltBytable implements Combinable<WDLParams> {
         this.wnd = wnd;
     }
 
+    @Override
+    public IterationProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public void setProfile(IterationProfile profile) {
+        this.profile = profile;
+    }
+
 }
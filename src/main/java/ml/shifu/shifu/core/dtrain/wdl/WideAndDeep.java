@@ -162,15 +162,7 @@ public class WideAndDeep implements WeightInitializer<WideAndDeep>, Bytable, Com
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public float[] forward(float[] denseInputs, List<SparseInput> embedInputs, List<SparseInput> wideInputs) {
         // wide layer forward
-        LOG.error("Forward in WideAndDeep: denseInputs: " + denseInputs.length + " embedInputs: " + embedInputs.size() + " wideInputs:" + wideInputs.size());
-
         float[] wlLogits = this.wl.forward(new Tuple(wideInputs, denseInputs));
-        if(wlLogits.length > 0) {
-            LOG.error("wlLogits size is " + wlLogits.length + " the first value :" + wlLogits[0]);
-        } else {
-            LOG.error("wlLogits size is 0");
-        }
-
 
         // deep layer forward
         float[] dilOuts = this.dil.forward(denseInputs);
@@ -186,18 +178,12 @@ public class WideAndDeep implements WeightInitializer<WideAndDeep>, Bytable, Com
             }
         }
         float[] dnnLogits = this.finalLayer.forward(inputs);
-        if(dnnLogits.length > 0) {
-            LOG.error("dnnLogits length: " + dnnLogits.length + " first value is " + dnnLogits[0]);
-        } else {
-            LOG.error("dnnLogits length is 0");
-        }
 
         // merge wide and deep together
         AssertUtils.assertFloatArrayNotNullAndLengthEqual(wlLogits, dnnLogits);
         float[] logits = new float[dnnLogits.length];
         for(int i = 0; i < logits.length; i++) {
             logits[i] += wlLogits[i] + dnnLogits[i];
-            LOG.error("logits[" + i + "]:= " + logits[i] + "wlLogits="  + logits[i] + " dnnLogits=" + dnnLogits[i]);
         }
         return logits;
     }
@@ -518,7 +504,7 @@ public class WideAndDeep implements WeightInitializer<WideAndDeep>, Bytable, Com
     public void initWeights() {
         InitMethod defaultMode = InitMethod.ZERO_ONE_RANGE_RANDOM;
         initWeight(defaultMode);
-        LOG.error("Init weight be called with mode:" + defaultMode.name());
+        LOG.info("Init weight be called with mode:" + defaultMode.name());
     }
 
     @SuppressWarnings("rawtypes")
@@ -16,13 +16,10 @@
 package ml.shifu.shifu.core.dtrain.wdl;
 
 import ml.shifu.shifu.core.dtrain.wdl.optimization.Optimizer;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -32,7 +29,6 @@ import java.util.List;
  */
 public class WideDenseLayer extends AbstractLayer<float[], float[], float[], float[], WideDenseLayer>
         implements WeightInitializer<WideDenseLayer> {
-    private static final Logger LOG = LoggerFactory.getLogger(WideDenseLayer.class);
     /**
      * [in] float array of weights
      */
@@ -82,11 +78,9 @@ public class WideDenseLayer extends AbstractLayer<float[], float[], float[], flo
 
     @Override
     public float[] forward(float[] inputs) {
-        LOG.error("WideDenseLayer weights:" + Arrays.toString(this.weights));
         this.lastInput = inputs;
         float[] results = new float[1];
         for(int i = 0; i < inputs.length; i++) {
-            LOG.error("inputs[i]=" + inputs[i] + "this.weights[i]=" + this.weights[i]);
             results[0] += inputs[i] * this.weights[i];
         }
         return results;
@@ -199,6 +193,7 @@ public class WideDenseLayer extends AbstractLayer<float[], float[], float[], flo
 
         switch(this.serializationType) {
             case WEIGHTS:
+            case SPARSE_WEIGHTS:
             case MODEL_SPEC:
                 SerializationUtil.writeFloatArray(out, this.weights, this.in);
                 break;
@@ -222,6 +217,7 @@ public class WideDenseLayer extends AbstractLayer<float[], float[], float[], flo
 
         switch(this.serializationType) {
             case WEIGHTS:
+            case SPARSE_WEIGHTS:
             case MODEL_SPEC:
                 this.weights = SerializationUtil.readFloatArray(in, this.weights, this.in);
                 break;
@@ -16,36 +16,42 @@
 package ml.shifu.shifu.core.dtrain.wdl;
 
 import ml.shifu.shifu.core.dtrain.wdl.optimization.Optimizer;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
 
 /**
  * {@link WideFieldLayer} is wide part input of WideAndDeep architecture. Per each column a {@link WideFieldLayer}
  * instance and each instanced will be forwarded and backwarded accordingly.
  * 
+ * <p>
+ * Like {@link EmbedFieldLayer}, gradients are kept in {@link SparseFloatRows} with row length 1 and only weights
+ * updated in last iteration are serialized in {@link SerializationType#SPARSE_WEIGHTS}.
+ * 
  * @author Zhang David (pengzhang@paypal.com)
  */
 public class WideFieldLayer extends AbstractLayer<SparseInput, float[], float[], float[], WideFieldLayer>
         implements WeightInitializer<WideFieldLayer> {
-    private static final Logger LOG = LoggerFactory.getLogger(WideFieldLayer.class);
-
     /**
      * [in] float array of weights
      */
     private float[] weights;
 
     /**
-     * Gradients, using map for sparse updates
+     * Gradients, only touched categories for sparse updates
+     */
+    private SparseFloatRows wGrads;
+
+    /**
+     * Weights de-serialized from {@link SerializationType#SPARSE_WEIGHTS}, null if all weights are read.
      */
-    private Map<Integer, Float> wGrads;
+    private SparseFloatRows weightRows;
+
+    /**
+     * Weights updated in last {@link #update(WideFieldLayer, Optimizer)}, in ascending order.
+     */
+    private int[] updatedRows;
 
     /**
      * # of inputs
@@ -86,10 +92,8 @@ public class WideFieldLayer extends AbstractLayer<SparseInput, float[], float[],
 
     @Override
     public float[] forward(SparseInput si) {
-        LOG.error("WideFiledLayer weights:" + Arrays.toString(this.weights));
         this.lastInput = si;
         int valueIndex = si.getValueIndex();
-        LOG.error("si.getValue() = " + si.getValue() + "this.weights[valueIndex]=" + this.weights[valueIndex] );
         return new float[] { si.getValue() * this.weights[valueIndex] };
     }
 
@@ -98,11 +102,9 @@ public class WideFieldLayer extends AbstractLayer<SparseInput, float[], float[],
         assert backInputs.length == 1;
 
         int valueIndex = this.lastInput.getValueIndex();
-        Float grad = this.wGrads.get(valueIndex);
-        float tmpGrad = grad == null ? 0 : grad;
-        tmpGrad += (this.lastInput.getValue() * backInputs[0]); // category value here is 1f
+        float tmpGrad = (this.lastInput.getValue() * backInputs[0]); // category value here is 1f
         tmpGrad += (this.l2reg * this.weights[valueIndex]); // l2 loss
-        this.wGrads.put(valueIndex, tmpGrad);
+        this.wGrads.add(valueIndex, tmpGrad);
 
         // no need compute backward outputs as it is last layer
         return null;
@@ -161,7 +163,7 @@ public class WideFieldLayer extends AbstractLayer<SparseInput, float[], float[],
     /**
      * @return the wGrads
      */
-    public Map<Integer, Float> getwGrads() {
+    public SparseFloatRows getwGrads() {
         return wGrads;
     }
 
@@ -169,7 +171,7 @@ public class WideFieldLayer extends AbstractLayer<SparseInput, float[], float[],
      * @param wGrads
      *            the wGrads to set
      */
-    public void setwGrads(Map<Integer, Float> wGrads) {
+    public void setwGrads(SparseFloatRows wGrads) {
         this.wGrads = wGrads;
     }
 
@@ -188,8 +190,19 @@ public class WideFieldLayer extends AbstractLayer<SparseInput, float[], float[],
         this.l2reg = l2reg;
     }
 
+    /**
+     * @return the weightRows
+     */
+    public SparseFloatRows getWeightRows() {
+        return weightRows;
+    }
+
     public void initGrads() {
-        this.wGrads = new HashMap<Integer, Float>();
+        if(this.wGrads == null) { // reuse the same rows
+            this.wGrads = new SparseFloatRows(1);
+        } else {
+            this.wGrads.clear();
+        }
     }
 
     @Override
@@ -199,7 +212,16 @@ public class WideFieldLayer extends AbstractLayer<SparseInput, float[], float[],
 
     @Override
     public void initWeight(WideFieldLayer updateModel) {
-        this.weights = updateModel.getWeights();
+        SparseFloatRows rows = updateModel.getWeightRows();
+        if(rows == null) {
+            this.weights = updateModel.getWeights();
+            return;
+        }
+        // only updated weights are sent, apply them to current weights
+        float[] values = rows.getValues();
+        for(int i = 0; i < rows.size(); i++) {
+            this.weights[rows.getIndex(i)] = values[i];
+        }
     }
 
     /*
@@ -218,15 +240,15 @@ public class WideFieldLayer extends AbstractLayer<SparseInput, float[], float[],
             case MODEL_SPEC:
                 SerializationUtil.writeFloatArray(out, this.weights, this.in);
                 break;
+            case SPARSE_WEIGHTS:
+                SparseFloatRows.writeRows(out, this.updatedRows == null ? new int[0] : this.updatedRows,
+                        this.weights);
+                break;
             case GRADIENTS:
                 if(this.wGrads == null) {
-                    out.writeInt(0);
+                    new SparseFloatRows(1, 1).write(out);
                 } else {
-                    out.writeInt(this.wGrads.size());
-                    for(Entry<Integer, Float> entry: this.wGrads.entrySet()) {
-                        out.writeInt(entry.getKey());
-                        out.writeFloat(entry.getValue());
-                    }
+                    this.wGrads.write(out);
                 }
                 break;
             default:
@@ -249,17 +271,17 @@ public class WideFieldLayer extends AbstractLayer<SparseInput, float[], float[],
             case WEIGHTS:
             case MODEL_SPEC:
                 this.weights = SerializationUtil.readFloatArray(in, this.weights, this.in);
+                this.weightRows = null;
+                break;
+            case SPARSE_WEIGHTS:
+                this.weightRows = new SparseFloatRows(1);
+                this.weightRows.readFields(in);
                 break;
             case GRADIENTS:
-                if(this.wGrads != null) {
-                    this.wGrads.clear();
-                } else {
-                    this.wGrads = new HashMap<Integer, Float>();
-                }
-                int size = in.readInt();
-                for(int i = 0; i < size; i++) {
-                    this.wGrads.put(in.readInt(), in.readFloat());
+                if(this.wGrads == null) {
+                    this.wGrads = new SparseFloatRows(1);
                 }
+                this.wGrads.readFields(in);
                 break;
             default:
                 break;
@@ -271,17 +293,14 @@ public class WideFieldLayer extends AbstractLayer<SparseInput, float[], float[],
         if(columnId != from.getColumnId()) {
             return this;
         }
-        Map<Integer, Float> fromGrads = from.getwGrads();
-        for(Entry<Integer, Float> entry: fromGrads.entrySet()) {
-            Integer index = entry.getKey();
-            float grad = entry.getValue();
-            wGrads.put(index, grad + wGrads.getOrDefault(index, 0.0f));
-        }
+        this.wGrads.combine(from.getwGrads());
         return this;
     }
 
     @Override
     public void update(WideFieldLayer gradLayer, Optimizer optimizer) {
-        optimizer.update(this.weights, gradLayer.getwGrads());
+        SparseFloatRows grads = gradLayer.getwGrads();
+        optimizer.update(this.weights, grads);
+        this.updatedRows = grads == null ? null : grads.getSortedIndexes();
     }
 }
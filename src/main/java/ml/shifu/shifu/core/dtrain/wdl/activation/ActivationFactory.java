@@ -70,19 +70,35 @@ public class ActivationFactory {
     }
 
     /**
-     * Get Activation by the name.
+     * Get Activation by the name. Activation keeps last inputs for backward computation, so a new instance is returned
+     * in each call to make sure activations in different {@link ml.shifu.shifu.core.dtrain.wdl.WideAndDeep} graphs
+     * can be computed in different threads.
      *
      * @param name
      *            the activation name.
      * @return
-     *         Activation if matched, else {@link #DEFAULT_ACTIVATION}
+     *         new Activation instance if matched, else new instance of {@link #DEFAULT_ACTIVATION}
+     * @throws IllegalStateException
+     *             if activation class cannot be instantiated
      */
     public Activation getActivation(String name) {
         if(name == null) {
             LOG.error("Input activation name is null, return default activation " + DEFAULT_ACTIVATION);
-            return DEFAULT_ACTIVATION;
+            return newInstance(DEFAULT_ACTIVATION);
+        }
+        return newInstance(actionList.getOrDefault(name.trim().toLowerCase(), DEFAULT_ACTIVATION));
+    }
+
+    private Activation newInstance(Activation activation) {
+        try {
+            return activation.getClass().newInstance();
+        } catch (InstantiationException e) {
+            throw new IllegalStateException(
+                    "Don't have empty construction method for " + activation.getClass().getName(), e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(
+                    "Don't have public construction method for " + activation.getClass().getName(), e);
         }
-        return actionList.getOrDefault(name.trim().toLowerCase(), DEFAULT_ACTIVATION);
     }
 
 }
@@ -15,8 +15,7 @@
  */
 package ml.shifu.shifu.core.dtrain.wdl.optimization;
 
-import java.util.Map;
-import java.util.Map.Entry;
+import ml.shifu.shifu.core.dtrain.wdl.SparseFloatRows;
 
 /**
  * @author juguo
@@ -50,21 +49,22 @@ public class AdaGrad implements Optimizer {
     }
 
     @Override
-    public void update(float[] weight, Map<Integer, Float> grad) {
+    public void update(float[] weight, SparseFloatRows grad) {
         if(weight == null || weight.length == 0 || grad == null || grad.size() == 0) {
             return;
         }
 
+        float[] values = grad.getValues();
         double sumG2 = 0;
-        for(Entry<Integer, Float> entry: grad.entrySet()) {
-            sumG2 += entry.getValue() * entry.getValue();
+        for(int i = 0; i < grad.size(); i++) {
+            sumG2 += values[i] * values[i];
         }
         double sumG2Sqrt = Math.sqrt(sumG2) + 0.000001;
 
         int len = weight.length;
-        for(Entry<Integer, Float> entry: grad.entrySet()) {
-            int index = entry.getKey();
-            double delta = learningRate * entry.getValue() / sumG2Sqrt;
+        for(int i = 0; i < grad.size(); i++) {
+            int index = grad.getIndex(i);
+            double delta = learningRate * values[i] / sumG2Sqrt;
             if(index < len) {
                 weight[index] -= delta;
             }
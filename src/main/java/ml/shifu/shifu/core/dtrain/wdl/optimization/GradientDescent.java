@@ -15,8 +15,7 @@
  */
 package ml.shifu.shifu.core.dtrain.wdl.optimization;
 
-import java.util.Map;
-import java.util.Map.Entry;
+import ml.shifu.shifu.core.dtrain.wdl.SparseFloatRows;
 
 /**
  * @author juguo
@@ -52,15 +51,16 @@ public class GradientDescent implements Optimizer {
     }
 
     @Override
-    public void update(float[] weight, Map<Integer, Float> grad) {
+    public void update(float[] weight, SparseFloatRows grad) {
         if(weight == null || weight.length == 0 || grad == null || grad.size() == 0) {
             return;
         }
 
         int len = weight.length;
-        for(Entry<Integer, Float> entry: grad.entrySet()) {
-            int index = entry.getKey();
-            double delta = learningRate * entry.getValue();
+        float[] values = grad.getValues();
+        for(int i = 0; i < grad.size(); i++) {
+            int index = grad.getIndex(i);
+            double delta = learningRate * values[i];
             if(index < len) {
                 weight[index] -= delta;
             }
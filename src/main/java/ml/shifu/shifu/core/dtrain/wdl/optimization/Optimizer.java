@@ -15,8 +15,7 @@
  */
 package ml.shifu.shifu.core.dtrain.wdl.optimization;
 
-import java.util.Map;
-import java.util.Map.Entry;
+import ml.shifu.shifu.core.dtrain.wdl.SparseFloatRows;
 
 /**
  * @author juguo
@@ -52,9 +51,9 @@ public interface Optimizer {
      * @param weight
      *            weight to be updated
      * @param grad
-     *            sparse representation of gradients
+     *            sparse representation of gradients with row length 1
      */
-    void update(float[] weight, Map<Integer, Float> grad);
+    void update(float[] weight, SparseFloatRows grad);
 
     default void batchUpdate(float[][] weights, float[][] grads) {
         if(weights == null || weights.length == 0 || grads == null || weights.length != grads.length) {
@@ -66,15 +65,17 @@ public interface Optimizer {
         }
     }
 
-    default void batchUpdate(float[][] weights, Map<Integer, float[]> grads) {
+    default void batchUpdate(float[][] weights, SparseFloatRows grads) {
         if(weights == null || weights.length == 0 || grads == null || grads.size() == 0) {
             return;
         }
         int in = weights.length;
-        for(Entry<Integer, float[]> entry: grads.entrySet()) {
-            int index = entry.getKey();
+        float[] grad = new float[grads.getRowLength()];
+        for(int i = 0; i < grads.size(); i++) {
+            int index = grads.getIndex(i);
             if(index < in) {
-                update(weights[index], entry.getValue());
+                System.arraycopy(grads.getValues(), grads.getOffset(i), grad, 0, grad.length);
+                update(weights[index], grad);
             }
         }
     }
@@ -0,0 +1,423 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.eval;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ml.shifu.shifu.container.CaseScoreResult;
+import ml.shifu.shifu.container.obj.RawSourceData.SourceType;
+import ml.shifu.shifu.fs.ShifuFileUtils;
+
+/**
+ * {@link ScoreHistogram} is a mergeable histogram of eval scores. Scores are bucketed by fixed width, each bucket keeps
+ * positive and negative count, positive and negative weight and sum of scores.
+ *
+ * <p>
+ * In eval, each scoring mapper builds its own histogram and writes it to a side folder, then all histograms are merged
+ * to compute performance in descending score order. Global sort of eval scores and single thread scanning of all score
+ * lines are not needed any more, cost of merging only depends on number of non-empty buckets.
+ *
+ * <p>
+ * Buckets are sparse, so scores out of [0, scale] like raw GBT scores are supported. Score of a bucket is the mean of
+ * scores in it, which is the exact score if all records in the bucket have the same score.
+ *
+ * <p>
+ * Text format of a histogram is:
+ *
+ * <pre>
+ * #width,&lt;bucket width&gt;
+ * &lt;bucket index&gt;,&lt;pos count&gt;,&lt;neg count&gt;,&lt;pos weight&gt;,&lt;neg weight&gt;,&lt;score sum&gt;
+ * ...
+ * #end
+ * </pre>
+ *
+ * The last line is used to ignore files written partially by failed tasks.
+ */
+public class ScoreHistogram {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScoreHistogram.class);
+
+    /**
+     * Default number of buckets in [0, score scale].
+     */
+    public static final int DEFAULT_BUCKET_NUM = 100000;
+
+    private static final String WIDTH_PREFIX = "#width";
+
+    private static final String END_LINE = "#end";
+
+    private static final String DELIMITER = ",";
+
+    private static final String SCHEMA_PREFIX = "shifu::";
+
+    /**
+     * Width of each bucket, bucket i includes scores in [i * width, (i + 1) * width).
+     */
+    private final double bucketWidth;
+
+    private final Map<Long, Bucket> buckets = new HashMap<Long, Bucket>();
+
+    /**
+     * Stats of one bucket.
+     */
+    public static class Bucket {
+
+        private long posCount;
+
+        private long negCount;
+
+        private double posWeight;
+
+        private double negWeight;
+
+        private double scoreSum;
+
+        /**
+         * @return the positive record count
+         */
+        public long getPosCount() {
+            return posCount;
+        }
+
+        /**
+         * @return the negative record count
+         */
+        public long getNegCount() {
+            return negCount;
+        }
+
+        /**
+         * @return the weighted positive count
+         */
+        public double getPosWeight() {
+            return posWeight;
+        }
+
+        /**
+         * @return the weighted negative count
+         */
+        public double getNegWeight() {
+            return negWeight;
+        }
+
+        /**
+         * @return mean score of records in such bucket
+         */
+        public double getScore() {
+            return scoreSum / (posCount + negCount);
+        }
+
+        private void merge(Bucket other) {
+            this.posCount += other.posCount;
+            this.negCount += other.negCount;
+            this.posWeight += other.posWeight;
+            this.negWeight += other.negWeight;
+            this.scoreSum += other.scoreSum;
+        }
+    }
+
+    /**
+     * Constructor with bucket width.
+     *
+     * @param bucketWidth
+     *            the bucket width, should be positive
+     */
+    public ScoreHistogram(double bucketWidth) {
+        if(!(bucketWidth > 0d)) {
+            throw new IllegalArgumentException("Bucket width should be positive, but is " + bucketWidth);
+        }
+        this.bucketWidth = bucketWidth;
+    }
+
+    /**
+     * Add one record.
+     *
+     * @param score
+     *            the score, NaN and infinite scores are ignored
+     * @param isPositive
+     *            if record is positive
+     * @param weight
+     *            the weight of record
+     */
+    public void add(double score, boolean isPositive, double weight) {
+        if(Double.isNaN(score) || Double.isInfinite(score)) {
+            return;
+        }
+        long index = (long) Math.floor(score / this.bucketWidth);
+        Bucket bucket = this.buckets.get(index);
+        if(bucket == null) {
+            bucket = new Bucket();
+            this.buckets.put(index, bucket);
+        }
+        if(isPositive) {
+            bucket.posCount += 1L;
+            bucket.posWeight += weight;
+        } else {
+            bucket.negCount += 1L;
+            bucket.negWeight += weight;
+        }
+        bucket.scoreSum += score;
+    }
+
+    /**
+     * Merge other histogram with the same bucket width into current one.
+     *
+     * @param other
+     *            the other histogram
+     */
+    public void merge(ScoreHistogram other) {
+        if(Double.compare(this.bucketWidth, other.bucketWidth) != 0) {
+            throw new IllegalArgumentException("Cannot merge histograms with bucket width " + this.bucketWidth
+                    + " and " + other.bucketWidth);
+        }
+        for(Map.Entry<Long, Bucket> entry: other.buckets.entrySet()) {
+            Bucket bucket = this.buckets.get(entry.getKey());
+            if(bucket == null) {
+                bucket = new Bucket();
+                this.buckets.put(entry.getKey(), bucket);
+            }
+            bucket.merge(entry.getValue());
+        }
+    }
+
+    /**
+     * @return non-empty buckets in descending score order
+     */
+    public List<Bucket> getDescendingBuckets() {
+        Long[] indexes = this.buckets.keySet().toArray(new Long[0]);
+        Arrays.sort(indexes);
+        List<Bucket> list = new ArrayList<Bucket>(indexes.length);
+        for(int i = indexes.length - 1; i >= 0; i--) {
+            list.add(this.buckets.get(indexes[i]));
+        }
+        return list;
+    }
+
+    /**
+     * @return total record count
+     */
+    public long getCount() {
+        long count = 0L;
+        for(Bucket bucket: this.buckets.values()) {
+            count += bucket.posCount + bucket.negCount;
+        }
+        return count;
+    }
+
+    /**
+     * @return the bucket width
+     */
+    public double getBucketWidth() {
+        return bucketWidth;
+    }
+
+    /**
+     * Write histogram in text format.
+     *
+     * @param writer
+     *            the writer, not closed in this method
+     * @throws IOException
+     *             any io exception
+     */
+    public void write(Writer writer) throws IOException {
+        writer.write(WIDTH_PREFIX + DELIMITER + this.bucketWidth + "\n");
+        for(Map.Entry<Long, Bucket> entry: this.buckets.entrySet()) {
+            Bucket bucket = entry.getValue();
+            writer.write(entry.getKey() + DELIMITER + bucket.posCount + DELIMITER + bucket.negCount + DELIMITER
+                    + bucket.posWeight + DELIMITER + bucket.negWeight + DELIMITER + bucket.scoreSum + "\n");
+        }
+        writer.write(END_LINE + "\n");
+    }
+
+    /**
+     * Read histogram in text format.
+     *
+     * @param reader
+     *            the reader, not closed in this method
+     * @return the histogram, or null if content is not complete
+     * @throws IOException
+     *             any io exception
+     */
+    public static ScoreHistogram read(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if(line == null || !line.startsWith(WIDTH_PREFIX + DELIMITER)) {
+            return null;
+        }
+        ScoreHistogram histogram = new ScoreHistogram(
+                Double.parseDouble(line.substring(WIDTH_PREFIX.length() + DELIMITER.length())));
+        while((line = reader.readLine()) != null) {
+            if(END_LINE.equals(line)) {
+                return histogram;
+            }
+            String[] fields = line.split(DELIMITER);
+            if(fields.length != 6) {
+                return null;
+            }
+            Bucket bucket = new Bucket();
+            bucket.posCount = Long.parseLong(fields[1]);
+            bucket.negCount = Long.parseLong(fields[2]);
+            bucket.posWeight = Double.parseDouble(fields[3]);
+            bucket.negWeight = Double.parseDouble(fields[4]);
+            bucket.scoreSum = Double.parseDouble(fields[5]);
+            histogram.buckets.put(Long.parseLong(fields[0]), bucket);
+        }
+        return null;
+    }
+
+    /**
+     * Read and merge all histograms in the folder. Histogram file is named by task attempt id like
+     * 'part-attempt_xxx_m_000001_0', only one complete file is merged for each task to skip duplicated output of
+     * speculative or retried attempts.
+     *
+     * @param folder
+     *            the histogram folder
+     * @param sourceType
+     *            the source type of folder
+     * @return the merged histogram, or null if no histogram file
+     * @throws IOException
+     *             any io exception
+     */
+    public static ScoreHistogram mergeFrom(String folder, SourceType sourceType) throws IOException {
+        FileSystem fs = ShifuFileUtils.getFileSystemBySourceType(sourceType);
+        Path path = new Path(folder);
+        if(!fs.exists(path)) {
+            return null;
+        }
+        FileStatus[] statuses = fs.listStatus(path);
+        Set<String> mergedTasks = new HashSet<String>();
+        ScoreHistogram result = null;
+        for(FileStatus status: statuses) {
+            String taskId = getTaskId(status.getPath().getName());
+            if(mergedTasks.contains(taskId)) {
+                continue;
+            }
+            BufferedReader reader = null;
+            ScoreHistogram histogram = null;
+            try {
+                reader = new BufferedReader(new InputStreamReader(fs.open(status.getPath()), Charset.forName("UTF-8")));
+                histogram = read(reader);
+            } finally {
+                IOUtils.closeQuietly(reader);
+            }
+            if(histogram == null) {
+                LOG.warn("Histogram file {} is not complete, ignored.", status.getPath());
+                continue;
+            }
+            mergedTasks.add(taskId);
+            if(result == null) {
+                result = histogram;
+            } else {
+                result.merge(histogram);
+            }
+        }
+        LOG.info("{} score histograms are merged from {}.", mergedTasks.size(), folder);
+        return result;
+    }
+
+    /**
+     * Task id of file name 'part-attempt_xxx_m_000001_0' is 'xxx_m_000001', file name is returned if not in such
+     * format.
+     */
+    private static String getTaskId(String fileName) {
+        int start = fileName.indexOf("attempt_");
+        int end = fileName.lastIndexOf('_');
+        if(start < 0 || end <= start + "attempt_".length()) {
+            return fileName;
+        }
+        return fileName.substring(start + "attempt_".length(), end);
+    }
+
+    /**
+     * Check if score of performance score selector can be read from {@link CaseScoreResult} in scoring, which are
+     * 'mean', 'max', 'min', 'median' and 'model{i}' of the main models.
+     *
+     * @param selector
+     *            the performance score selector in eval config
+     * @return true if supported
+     */
+    public static boolean isSupportedScoreSelector(String selector) {
+        String name = normalizeSelector(selector);
+        if("mean".equals(name) || "max".equals(name) || "min".equals(name) || "median".equals(name)) {
+            return true;
+        }
+        return getModelIndex(name) >= 0;
+    }
+
+    /**
+     * Select score by performance score selector.
+     *
+     * @param cs
+     *            the score result of main models
+     * @param selector
+     *            the performance score selector in eval config
+     * @return the score, or NaN if not found
+     */
+    public static double selectScore(CaseScoreResult cs, String selector) {
+        String name = normalizeSelector(selector);
+        if("mean".equals(name)) {
+            return cs.getAvgScore();
+        } else if("max".equals(name)) {
+            return cs.getMaxScore();
+        } else if("min".equals(name)) {
+            return cs.getMinScore();
+        } else if("median".equals(name)) {
+            return cs.getMedianScore();
+        }
+        int index = getModelIndex(name);
+        if(index >= 0 && cs.getScores() != null && index < cs.getScores().size()) {
+            return cs.getScores().get(index);
+        }
+        return Double.NaN;
+    }
+
+    private static String normalizeSelector(String selector) {
+        String name = selector == null ? "" : selector.trim();
+        if(name.startsWith(SCHEMA_PREFIX)) {
+            name = name.substring(SCHEMA_PREFIX.length());
+        }
+        return name;
+    }
+
+    private static int getModelIndex(String name) {
+        if(!name.startsWith("model") || name.length() == "model".length()) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring("model".length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+}
@@ -42,6 +42,7 @@ import ml.shifu.shifu.container.obj.ModelConfig;
 import ml.shifu.shifu.container.obj.RawSourceData.SourceType;
 import ml.shifu.shifu.core.DataPurifier;
 import ml.shifu.shifu.core.ModelRunner;
+import ml.shifu.shifu.core.ScoreSchema;
 import ml.shifu.shifu.core.posttrain.FeatureStatsWritable.BinStats;
 import ml.shifu.shifu.util.BinUtils;
 import ml.shifu.shifu.util.CommonUtils;
@@ -94,6 +95,11 @@ public class PostTrainMapper extends Mapper<LongWritable, Text, IntWritable, Fea
 
     private ModelRunner modelRunner;
 
+    /**
+     * Headers bound to field indexes, units are scored without building raw data map
+     */
+    private ScoreSchema scoreSchema;
+
     private MultipleOutputs<NullWritable, Text> mos;
 
     /**
@@ -136,6 +142,7 @@ public class PostTrainMapper extends Mapper<LongWritable, Text, IntWritable, Fea
         this.headers = CommonUtils.getFinalHeaders(modelConfig);
         this.modelRunner = new ModelRunner(modelConfig, columnConfigList, this.headers,
                 modelConfig.getDataSetDelimiter(), models);
+        this.scoreSchema = ScoreSchema.bind(this.headers, 0);
 
         this.mos = new MultipleOutputs<NullWritable, Text>((TaskInputOutputContext) context);
 
@@ -204,8 +211,11 @@ public class PostTrainMapper extends Mapper<LongWritable, Text, IntWritable, Fea
             return;
         }
 
-        Map<String, String> rawDataMap = buildRawDataMap(units);
-        CaseScoreResult csr = this.modelRunner.compute(rawDataMap);
+        CaseScoreResult csr = this.modelRunner.compute(this.scoreSchema, units);
+        if(csr == null) {
+            context.getCounter(Constants.SHIFU_GROUP_COUNTER, "INVALID_SIZE").increment(1L);
+            return;
+        }
 
         // store score value
         StringBuilder sb = new StringBuilder(500);
@@ -216,7 +226,7 @@ public class PostTrainMapper extends Mapper<LongWritable, Text, IntWritable, Fea
         }
         List<String> metaList = modelConfig.getMetaColumnNames();
         for(String meta: metaList) {
-            sb.append(rawDataMap.get(meta)).append(Constants.DEFAULT_DELIMITER);
+            sb.append(this.scoreSchema.get(units, meta)).append(Constants.DEFAULT_DELIMITER);
         }
         sb.deleteCharAt(sb.length() - Constants.DEFAULT_DELIMITER.length());
         this.outputValue.set(sb.toString());
@@ -241,18 +251,6 @@ public class PostTrainMapper extends Mapper<LongWritable, Text, IntWritable, Fea
         }
     }
 
-    private Map<String, String> buildRawDataMap(String[] units) {
-        Map<String, String> rawDataMap = new HashMap<String, String>(headers.length, 1f);
-        for(int i = 0; i < headers.length; i++) {
-            if(units[i] == null) {
-                rawDataMap.put(headers[i], "");
-            } else {
-                rawDataMap.put(headers[i], units[i].toString());
-            }
-        }
-        return rawDataMap;
-    }
-
     @Override
     protected void cleanup(Context context) throws IOException, InterruptedException {
         for(Entry<Integer, List<BinStats>> entry: this.variableStatsMap.entrySet()) {
@@ -51,6 +51,7 @@ import ml.shifu.shifu.core.Scorer;
 import ml.shifu.shifu.core.dtrain.CommonConstants;
 import ml.shifu.shifu.core.dtrain.dt.IndependentTreeModel;
 import ml.shifu.shifu.core.eval.GainChart;
+import ml.shifu.shifu.core.eval.ScoreHistogram;
 import ml.shifu.shifu.core.model.ModelSpec;
 import ml.shifu.shifu.core.validator.ModelInspector.ModelStep;
 import ml.shifu.shifu.exception.ShifuErrorCode;
@@ -432,6 +433,18 @@ public class EvalModelProcessor extends BasicModelProcessor implements Processor
         if(modelConfig.isClassification() || (isNoSort() && EvalStep.SCORE.equals(this.evalStep))) {
             pigScript = "scripts/EvalScore.pig";
         }
+
+        // score histograms are merged to compute performance, no need to sort eval scores
+        String scoreHistogramFolder = null;
+        if(isScoreHistogramEnabled(evalConfig)) {
+            scoreHistogramFolder = ShifuFileUtils.getFileSystemBySourceType(sourceType).makeQualified(new Path(
+                    "tmp" + File.separator + "score_histogram_" + System.currentTimeMillis() + "_" + RANDOM.nextLong()))
+                    .toString();
+            confMap.put(Constants.SHIFU_EVAL_SCORE_HISTOGRAM_OUTPUT, scoreHistogramFolder);
+            confMap.put(Constants.SHIFU_EVAL_SCORE_HISTOGRAM_BUCKETS, Integer.toString(Environment
+                    .getInt(Constants.SHIFU_EVAL_SCORE_HISTOGRAM_BUCKETS, ScoreHistogram.DEFAULT_BUCKET_NUM)));
+            pigScript = "scripts/EvalScore.pig";
+        }
         try {
             PigExecutor.getExecutor().submitJob(modelConfig, pathFinder.getScriptPath(pigScript), paramsMap,
                     evalConfig.getDataSet().getSource(), confMap, super.pathFinder);
@@ -483,12 +496,31 @@ public class EvalModelProcessor extends BasicModelProcessor implements Processor
                 ShifuFileUtils.deleteFile(maxMinScoreFolder, sourceType);
             }
             // only one pig job with such counters, return
-            return new ScoreStatus(pigPosTags, pigNegTags, pigPosWeightTags, pigNegWeightTags, maxScore, minScore,
-                    evalRecords);
+            ScoreStatus ss = new ScoreStatus(pigPosTags, pigNegTags, pigPosWeightTags, pigNegWeightTags, maxScore,
+                    minScore, evalRecords);
+            ss.scoreHistogramPath = scoreHistogramFolder;
+            return ss;
         }
         return null;
     }
 
+    /**
+     * Score histogram mode only works in regression eval with performance computing, and the performance score
+     * selector should be one of main model scores.
+     */
+    private boolean isScoreHistogramEnabled(EvalConfig evalConfig) {
+        if(!modelConfig.isRegression() || !EvalStep.RUN.equals(this.evalStep)
+                || !Environment.getBoolean(Constants.SHIFU_EVAL_SCORE_HISTOGRAM, false)) {
+            return false;
+        }
+        if(!ScoreHistogram.isSupportedScoreSelector(evalConfig.getPerformanceScoreSelector())) {
+            LOG.warn("Performance score selector {} is not supported in score histogram mode, sorting scores instead.",
+                    evalConfig.getPerformanceScoreSelector());
+            return false;
+        }
+        return true;
+    }
+
     private double[] locateMaxMinScoreFromFile(SourceType sourceType, String maxMinScoreFolder) throws IOException {
         List<Scanner> scanners = null;
         double maxScore = Double.MIN_VALUE;
@@ -1170,7 +1202,10 @@ public class EvalModelProcessor extends BasicModelProcessor implements Processor
         switch(modelConfig.getBasic().getRunMode()) {
             case DIST:
             case MAPRED:
-                if(modelConfig.isRegression()) {
+                if(modelConfig.isRegression() && ss.scoreHistogramPath != null) {
+                    return computePerformanceFromHistogram(worker, config, ss, evalPerformancePath, isPrint,
+                            isGenerateChart, isUseMaxMinScore);
+                } else if(modelConfig.isRegression()) {
                     return worker.bufferedComputeConfusionMatrixAndPerformance(ss.pigPosTags, ss.pigNegTags,
                             ss.pigPosWeightTags, ss.pigNegWeightTags, ss.evalRecords, ss.maxScore, ss.minScore,
                             scoreDataPath, evalPerformancePath, isPrint, isGenerateChart, isUseMaxMinScore);
@@ -1207,6 +1242,25 @@ public class EvalModelProcessor extends BasicModelProcessor implements Processor
         }
     }
 
+    private PerformanceResult computePerformanceFromHistogram(ConfusionMatrix worker, EvalConfig config,
+            ScoreStatus ss, String evalPerformancePath, boolean isPrint, boolean isGenerateChart,
+            boolean isUseMaxMinScore) throws IOException {
+        SourceType sourceType = config.getDataSet().getSource();
+        ScoreHistogram histogram = ScoreHistogram.mergeFrom(ss.scoreHistogramPath, sourceType);
+        ShifuFileUtils.deleteFile(ss.scoreHistogramPath, sourceType);
+        if(histogram == null) {
+            throw new ShifuException(ShifuErrorCode.ERROR_EVALSCORE);
+        }
+        long histogramCount = histogram.getCount();
+        if(histogramCount != ss.pigPosTags + ss.pigNegTags) {
+            LOG.warn("Records in score histogram {} is not the same as tagged records {}, invalid scores are ignored.",
+                    histogramCount, ss.pigPosTags + ss.pigNegTags);
+        }
+        return worker.computeConfusionMatrixAndPerformance(histogram, ss.pigPosTags, ss.pigNegTags,
+                ss.pigPosWeightTags, ss.pigNegWeightTags, ss.maxScore, ss.minScore, evalPerformancePath, isPrint,
+                isGenerateChart, isUseMaxMinScore);
+    }
+
     /**
      * Run confusion matrix
      * 
@@ -1253,6 +1307,11 @@ public class EvalModelProcessor extends BasicModelProcessor implements Processor
 
         public long evalRecords = 0l;
 
+        /**
+         * Folder of score histograms written by scoring tasks, null if eval scores are sorted.
+         */
+        public String scoreHistogramPath;
+
         public ScoreStatus(long pigPosTags, long pigNegTags, double pigPosWeightTags, double pigNegWeightTags,
                 double maxScore, double minScore, long evalRecords) {
             this.pigPosTags = pigPosTags;
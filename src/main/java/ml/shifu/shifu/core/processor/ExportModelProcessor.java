@@ -29,6 +29,8 @@ import ml.shifu.shifu.core.binning.obj.CategoricalBinInfo;
 import ml.shifu.shifu.core.binning.obj.NumericalBinInfo;
 import ml.shifu.shifu.core.dtrain.DTrainUtils;
 import ml.shifu.shifu.core.dtrain.dt.BinaryDTSerializer;
+import ml.shifu.shifu.core.dtrain.dt.FlatDTSerializer;
+import ml.shifu.shifu.core.dtrain.dt.IndependentTreeModel;
 import ml.shifu.shifu.core.dtrain.dt.TreeNode;
 import ml.shifu.shifu.core.dtrain.nn.BinaryNNSerializer;
 import ml.shifu.shifu.core.pmml.PMMLTranslator;
@@ -60,6 +62,7 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 
 /**
@@ -151,6 +154,7 @@ public class ExportModelProcessor extends BasicModelProcessor implements Process
                         BinaryDTSerializer.save(modelConfig, columnConfigList, baggingTrees,
                                 modelConfig.getParams().get("Loss").toString(), inputCount, FileSystem.getLocal(conf),
                                 output);
+                        saveFlatTreeModel(FileSystem.getLocal(conf), output);
                     }
                     log.info("Please find one unified bagging model in local {}.", output);
                 }
@@ -260,6 +264,23 @@ public class ExportModelProcessor extends BasicModelProcessor implements Process
         return varWoeInfos;
     }
 
+    /**
+     * Write flat tree model alongside binary bagging model, flat model can be memory mapped by
+     * {@link ml.shifu.shifu.core.dtrain.dt.MappedTreeModel} in scoring.
+     */
+    private void saveFlatTreeModel(FileSystem fs, Path binaryModel) throws IOException {
+        IndependentTreeModel treeModel = null;
+        InputStream input = fs.open(binaryModel);
+        try {
+            treeModel = IndependentTreeModel.loadFromStream(input);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+        Path output = new Path(binaryModel.toString() + FlatDTSerializer.FLAT_MODEL_SUFFIX);
+        FlatDTSerializer.save(treeModel, fs, output);
+        log.info("Please find flat bagging model which can be memory mapped in local {}.", output);
+    }
+
     private String rebinAndExportWoeMapping(ColumnConfig columnConfig) throws IOException {
         int expectBinNum = getExpectBinNum();
         double ivKeepRatio = getIvKeepRatio();
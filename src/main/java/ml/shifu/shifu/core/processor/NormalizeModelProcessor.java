@@ -82,8 +82,9 @@ public class NormalizeModelProcessor extends BasicModelProcessor implements Proc
                         log.warn("warn: exception in auto check shuffle size, can be ignored as no big impact", e);
                     }
 
-                    if(this.isToShuffleData) {
-                        // shuffling normalized data, to make data random
+                    if(this.isToShuffleData && !modelConfig.getNormalize().getIsBinary()) {
+                        // shuffling normalized data, to make data random; binary norm output is shuffled in norm pig
+                        // job as the shuffle job is line based
                         MapReduceShuffle shuffler = new MapReduceShuffle(this.modelConfig);
                         shuffler.run(this.pathFinder.getNormalizedDataPath());
                     }
@@ -205,6 +206,14 @@ public class NormalizeModelProcessor extends BasicModelProcessor implements Proc
                     log.info("Post train is disabled by 'postTrainOn=false'.");
                     normPigPath = pathFinder.getScriptPath("scripts/NormalizeWithParquet.pig");
                 }
+            } else if(modelConfig.getNormalize().getIsBinary()) {
+                if(this.isToShuffleData) {
+                    normPigPath = pathFinder.getScriptPath("scripts/NormalizeWithBinaryAndShuffle.pig");
+                    paramsMap.put("shuffle_size",
+                            Environment.getInt(Constants.SHIFU_NORM_SHUFFLE_SIZE, 100).toString());
+                } else {
+                    normPigPath = pathFinder.getScriptPath("scripts/NormalizeWithBinary.pig");
+                }
             } else {
                 if(modelConfig.getBasic().getPostTrainOn()) {
                     // this condition is for comment, no matter post train enabled or not, only norm results will be
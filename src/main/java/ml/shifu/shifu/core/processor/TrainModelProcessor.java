@@ -25,6 +25,7 @@ import ml.shifu.guagua.mapreduce.GuaguaMapReduceClient;
 import ml.shifu.guagua.mapreduce.GuaguaMapReduceConstants;
 import ml.shifu.shifu.actor.AkkaSystemExecutor;
 import ml.shifu.shifu.container.obj.ColumnConfig;
+import ml.shifu.shifu.container.obj.ModelConfig;
 import ml.shifu.shifu.container.obj.ModelBasicConf.RunMode;
 import ml.shifu.shifu.container.obj.ModelNormalizeConf.NormType;
 import ml.shifu.shifu.container.obj.ModelTrainConf.MultipleClassification;
@@ -38,11 +39,13 @@ import ml.shifu.shifu.core.alg.TensorflowTrainer;
 import ml.shifu.shifu.core.dtrain.CommonConstants;
 import ml.shifu.shifu.core.dtrain.DTrainUtils;
 import ml.shifu.shifu.core.dtrain.FeatureSubsetStrategy;
+import ml.shifu.shifu.core.dtrain.IterationProfileOutput;
 import ml.shifu.shifu.core.dtrain.dataset.BasicFloatNetwork;
 import ml.shifu.shifu.core.dtrain.dt.*;
 import ml.shifu.shifu.core.dtrain.gs.GridSearch;
 import ml.shifu.shifu.core.dtrain.lr.*;
 import ml.shifu.shifu.core.dtrain.nn.*;
+import ml.shifu.shifu.core.dtrain.wdl.WDLBinaryWorker;
 import ml.shifu.shifu.core.dtrain.wdl.WDLMaster;
 import ml.shifu.shifu.core.dtrain.wdl.WDLOutput;
 import ml.shifu.shifu.core.dtrain.wdl.WDLParams;
@@ -376,6 +379,19 @@ public class TrainModelProcessor extends BasicModelProcessor implements Processo
                     + " is parquet format. Please keep isParquet and re-run norm again or change isParquet directly to true.");
         }
 
+        // tree models are trained on cleaned data which is not impacted by binary norm output, categorical values of
+        // WDL in binary norm output are floats which can only be read as category indexes
+        if(super.modelConfig.getNormalize().getIsBinary() && Constants.WDL_ALG_NAME.equalsIgnoreCase(alg)
+                && !isIndexNormType(super.modelConfig.getNormalizeType())) {
+            throw new IllegalArgumentException(
+                    "Binary norm output of WDL only supports index norm types like WOE_INDEX, please change normType "
+                            + "or change isBinary to false and re-run norm.");
+        }
+        if(super.modelConfig.getNormalize().getIsBinary() && super.modelConfig.getNormalize().getIsParquet()) {
+            throw new IllegalArgumentException(
+                    "isBinary and isParquet cannot be both true, please change one of them.");
+        }
+
         GridSearch gridSearch = new GridSearch(modelConfig.getTrain().getParams(),
                 modelConfig.getTrain().getGridConfigFileContent());
         if(!LogisticRegressionContants.LR_ALG_NAME.equalsIgnoreCase(alg)
@@ -394,6 +410,12 @@ public class TrainModelProcessor extends BasicModelProcessor implements Processo
 
     protected int runTensorflowDistributedTrain() throws Exception {
         LOG.info("Started {} tensorflow distributed training.", isDryTrain ? "dry " : "");
+        if(super.modelConfig.getNormalize().getIsBinary()) {
+            // tensorflow python scripts read norm output as text
+            throw new IllegalArgumentException(
+                    "Binary norm output is not supported by Tensorflow training, please change isBinary to false and "
+                            + "re-run norm.");
+        }
         globalDefaultConfFile = new Path(
                 super.pathFinder.getAbsolutePath(new Path("conf" + File.separator + "global-default.xml").toString()));
         LOG.info("Shifu tensorflow on yarn global default file is found in: {}.", globalDefaultConfFile);
@@ -944,6 +966,10 @@ public class TrainModelProcessor extends BasicModelProcessor implements Processo
             }
         }
 
+        if(!this.isDryTrain()) {
+            logTrainProfiles(conf, tmpModelsPath, baggingNum);
+        }
+
         if(isKFoldCV) {
             // k-fold we also copy model files at last, such models can be used for evaluation
             for(int i = 0; i < baggingNum; i++) {
@@ -1296,6 +1322,23 @@ public class TrainModelProcessor extends BasicModelProcessor implements Processo
         return thread;
     }
 
+    /**
+     * Log profile counters of each trainer written by {@link IterationProfileOutput} in master.
+     */
+    private void logTrainProfiles(Configuration conf, Path tmpModelsPath, int baggingNum) {
+        for(int i = 0; i < baggingNum; i++) {
+            try {
+                Map<String, Long> counters = IterationProfileOutput.readCounters(conf, tmpModelsPath.toString(),
+                        String.valueOf(i));
+                if(!counters.isEmpty()) {
+                    LOG.info("Training profile of model {}: {}", i, counters);
+                }
+            } catch (IOException e) {
+                LOG.warn("Error in reading training profile of model " + i, e);
+            }
+        }
+    }
+
     private void copyTmpModelsToLocal(final Path tmpModelsDir, final SourceType sourceType) throws IOException {
         // copy all tmp nn to local, these tmp nn are outputs from
         if(!this.isDryTrain()) {
@@ -1319,12 +1362,32 @@ public class TrainModelProcessor extends BasicModelProcessor implements Processo
         args.add("-wr");
         args.add(DTWorkerParams.class.getName());
         args.add(String.format(CommonConstants.MAPREDUCE_PARAM_FORMAT, GuaguaConstants.GUAGUA_MASTER_INTERCEPTERS,
-                DTOutput.class.getName()));
+                DTOutput.class.getName() + "," + IterationProfileOutput.class.getName()));
+    }
+
+    /**
+     * Check if feature voting of tree models is enabled, in grid search any positive candidate value enables it.
+     */
+    private boolean isVotingEnabled(Map<String, Object> params) {
+        Object votingTopKObj = params == null ? null : params.get(CommonConstants.DT_VOTING_TOP_K);
+        if(votingTopKObj instanceof List) {
+            for(Object value: (List<?>) votingTopKObj) {
+                if(Integer.valueOf(value.toString()) > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return votingTopKObj != null && Integer.valueOf(votingTopKObj.toString()) > 0;
     }
 
     private void prepareLRParams(final List<String> args, final SourceType sourceType) {
         args.add("-w");
-        args.add(LogisticRegressionWorker.class.getName());
+        if(modelConfig.getNormalize().getIsBinary()) {
+            args.add(LogisticRegressionBinaryWorker.class.getName());
+        } else {
+            args.add(LogisticRegressionWorker.class.getName());
+        }
         args.add("-m");
         args.add(LogisticRegressionMaster.class.getName());
         args.add("-mr");
@@ -1332,13 +1395,15 @@ public class TrainModelProcessor extends BasicModelProcessor implements Processo
         args.add("-wr");
         args.add(LogisticRegressionParams.class.getName());
         args.add(String.format(CommonConstants.MAPREDUCE_PARAM_FORMAT, GuaguaConstants.GUAGUA_MASTER_INTERCEPTERS,
-                LogisticRegressionOutput.class.getName()));
+                LogisticRegressionOutput.class.getName() + "," + IterationProfileOutput.class.getName()));
     }
 
     private void prepareNNParams(final List<String> args, final SourceType sourceType) {
         args.add("-w");
         if(modelConfig.getNormalize().getIsParquet()) {
             args.add(NNParquetWorker.class.getName());
+        } else if(modelConfig.getNormalize().getIsBinary()) {
+            args.add(NNBinaryWorker.class.getName());
         } else {
             args.add(NNWorker.class.getName());
         }
@@ -1352,7 +1417,7 @@ public class TrainModelProcessor extends BasicModelProcessor implements Processo
         args.add("-wr");
         args.add(NNParams.class.getName());
         args.add(String.format(CommonConstants.MAPREDUCE_PARAM_FORMAT, GuaguaConstants.GUAGUA_MASTER_INTERCEPTERS,
-                NNOutput.class.getName()));
+                NNOutput.class.getName() + "," + IterationProfileOutput.class.getName()));
     }
 
     private void prepareCommonParams(boolean isGsMode, final List<String> args, final SourceType sourceType)
@@ -1410,6 +1475,10 @@ public class TrainModelProcessor extends BasicModelProcessor implements Processo
         if(CommonUtils.isTreeModel(alg) && numTrainEpoches <= 50000) {
             numTrainEpoches = 50000;
         }
+        // with feature voting, each split takes two iterations: voting and computing stats of candidate features
+        if(CommonUtils.isTreeModel(alg) && isVotingEnabled(super.getModelConfig().getTrain().getParams())) {
+            numTrainEpoches = numTrainEpoches * 2;
+        }
         // the reason to add 1 is that the first iteration in implementation is used for training preparation.
         numTrainEpoches = numTrainEpoches + 1;
 
@@ -1473,7 +1542,11 @@ public class TrainModelProcessor extends BasicModelProcessor implements Processo
 
     private void prepareWDLParams(List<String> args, SourceType sourceType) {
         args.add("-w");
-        args.add(WDLWorker.class.getName());
+        if(modelConfig.getNormalize().getIsBinary()) {
+            args.add(WDLBinaryWorker.class.getName());
+        } else {
+            args.add(WDLWorker.class.getName());
+        }
 
         args.add("-m");
         args.add(WDLMaster.class.getName());
@@ -1486,7 +1559,7 @@ public class TrainModelProcessor extends BasicModelProcessor implements Processo
 
         // TODO, add WDLOutput here
         args.add(String.format(CommonConstants.MAPREDUCE_PARAM_FORMAT, GuaguaConstants.GUAGUA_MASTER_INTERCEPTERS,
-                WDLOutput.class.getName()));
+                WDLOutput.class.getName() + "," + IterationProfileOutput.class.getName()));
 
     }
 
@@ -1585,12 +1658,48 @@ public class TrainModelProcessor extends BasicModelProcessor implements Processo
                     GuaguaConstants.GUAGUA_SPLIT_MAX_COMBINED_SPLIT_SIZE, Environment
                             .getProperty(GuaguaConstants.GUAGUA_SPLIT_MAX_COMBINED_SPLIT_SIZE, maxCombineSize + "")));
         }
-        // special tuning parameters for shifu, 0.97 means each iteation master wait for 97% workers and then can go to
-        // next iteration.
-        args.add(String.format(CommonConstants.MAPREDUCE_PARAM_FORMAT, GuaguaConstants.GUAGUA_MIN_WORKERS_RATIO, 0.97));
-        // 2 seconds if waiting over 10, consider 99% workers; these two can be overrided in shifuconfig
+        args.add(String.format(CommonConstants.MAPREDUCE_PARAM_FORMAT, GuaguaConstants.GUAGUA_MIN_WORKERS_RATIO,
+                getMinWorkersRatio(super.modelConfig)));
         args.add(String.format(CommonConstants.MAPREDUCE_PARAM_FORMAT, GuaguaConstants.GUAGUA_MIN_WORKERS_TIMEOUT,
-                2 * 1000L));
+                getMinWorkersTimeout(super.modelConfig)));
+    }
+
+    private static boolean isIndexNormType(NormType normType) {
+        return normType == NormType.ZSCALE_INDEX || normType == NormType.ZSCORE_INDEX
+                || normType == NormType.WOE_INDEX || normType == NormType.WOE_ZSCALE_INDEX;
+    }
+
+    /**
+     * Bounded staleness training is only supported in NN master, other algorithms are trained synchronously.
+     */
+    static boolean isStalenessEnabled(ModelConfig modelConfig) {
+        Integer staleness = modelConfig.getTrain().getStaleness();
+        return NNConstants.NN_ALG_NAME.equalsIgnoreCase(modelConfig.getAlgorithm()) && staleness != null
+                && staleness > 0;
+    }
+
+    /**
+     * Ratio of workers master waits for in each iteration.
+     */
+    static double getMinWorkersRatio(ModelConfig modelConfig) {
+        if(isStalenessEnabled(modelConfig)) {
+            // bounded staleness NN training, master uses cached gradients of stragglers and doesn't wait for them
+            return NNConstants.STALENESS_MIN_WORKERS_RATIO;
+        }
+        // special tuning parameters for shifu, 0.97 means each iteation master wait for 97% workers and then can go
+        // to next iteration.
+        return 0.97d;
+    }
+
+    /**
+     * Milliseconds master waits at most for other workers after min workers ratio is reached.
+     */
+    static long getMinWorkersTimeout(ModelConfig modelConfig) {
+        if(isStalenessEnabled(modelConfig)) {
+            return NNConstants.STALENESS_MIN_WORKERS_TIMEOUT;
+        }
+        // 2 seconds if waiting over 10, consider 99% workers; these two can be overrided in shifuconfig
+        return 2 * 1000L;
     }
 
     private long computeDynamicCombineSize() throws IOException {
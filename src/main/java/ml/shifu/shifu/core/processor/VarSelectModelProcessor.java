@@ -63,7 +63,6 @@ import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
-import org.apache.hadoop.mapreduce.lib.map.MultithreadedMapper;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
@@ -398,6 +397,13 @@ public class VarSelectModelProcessor extends BasicModelProcessor implements Proc
             throw new IllegalArgumentException(
                     "Currently we only support distributed wrapper by on MAPRED or DIST mode.");
         }
+
+        // sensitivity job reads normalized data as delimited text lines
+        if(super.getModelConfig().getNormalize().getIsBinary()) {
+            throw new IllegalArgumentException(
+                    "Currently we only support sensitivity variable selection on text norm output, please change "
+                            + "isBinary to false and re-run norm.");
+        }
     }
 
     private void votedVariablesSelection() throws ClassNotFoundException, IOException, InterruptedException {
@@ -680,9 +686,9 @@ public class VarSelectModelProcessor extends BasicModelProcessor implements Proc
         job.setJarByClass(getClass());
         boolean isSEVarSelMulti = Boolean.TRUE.toString().equalsIgnoreCase(
                 Environment.getProperty(Constants.SHIFU_VARSEL_SE_MULTI, Constants.SHIFU_DEFAULT_VARSEL_SE_MULTI));
+        job.setMapperClass(VarSelectMapper.class);
         if(isSEVarSelMulti) {
-            job.setMapperClass(MultithreadedMapper.class);
-            MultithreadedMapper.setMapperClass(job, VarSelectMapper.class);
+            // records are scored in batches by threads inside VarSelectMapper, sharing one model in memory
             int threads;
             try {
                 threads = Integer.parseInt(Environment.getProperty(Constants.SHIFU_VARSEL_SE_MULTI_THREAD,
@@ -693,10 +699,10 @@ public class VarSelectModelProcessor extends BasicModelProcessor implements Proc
                 threads = Constants.SHIFU_DEFAULT_VARSEL_SE_MULTI_THREAD;
             }
             conf.setInt("mapreduce.map.cpu.vcores", threads);
-            MultithreadedMapper.setNumberOfThreads(job, threads);
-        } else {
-            job.setMapperClass(VarSelectMapper.class);
+            job.getConfiguration().setInt(Constants.SHIFU_VARSEL_SE_MAPPER_THREADS, threads);
         }
+        job.getConfiguration().setInt(Constants.SHIFU_VARSEL_SE_BATCH_SIZE, Environment.getInt(
+                Constants.SHIFU_VARSEL_SE_BATCH_SIZE, Constants.SHIFU_DEFAULT_VARSEL_SE_BATCH_SIZE));
         job.setMapOutputKeyClass(LongWritable.class);
         job.setMapOutputValueClass(ColumnInfo.class);
         job.setInputFormatClass(CombineInputFormat.class);
@@ -15,7 +15,9 @@
  */
 package ml.shifu.shifu.core.processor.stats;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -35,11 +37,14 @@ import ml.shifu.shifu.fs.SourceFile;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.Predicate;
+import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.jexl2.JexlException;
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.NullWritable;
@@ -69,6 +74,8 @@ import ml.shifu.shifu.container.obj.ColumnType;
 import ml.shifu.shifu.container.obj.ModelConfig;
 import ml.shifu.shifu.container.obj.RawSourceData;
 import ml.shifu.shifu.core.binning.BinningInfoWritable;
+import ml.shifu.shifu.core.binning.ColumnStatsWritable;
+import ml.shifu.shifu.core.binning.UpdateBinningInfoPartitioner;
 import ml.shifu.shifu.core.binning.UpdateBinningInfoMapper;
 import ml.shifu.shifu.core.binning.UpdateBinningInfoReducer;
 import ml.shifu.shifu.core.dtrain.CommonConstants;
@@ -278,6 +285,7 @@ public class MapReducerStatsWorker extends AbstractStatsExecutor {
                 .makeQualified(new Path(super.modelConfig.getDataSetRawPath())));
 
         job.setReducerClass(UpdateBinningInfoReducer.class);
+        job.setPartitionerClass(UpdateBinningInfoPartitioner.class);
 
         int mapperSize = new CombineInputFormat().getSplits(job).size();
         log.info("DEBUG: Test mapper size is {} ", mapperSize);
@@ -419,14 +427,22 @@ public class MapReducerStatsWorker extends AbstractStatsExecutor {
      *             in stats processing from hdfs files
      */
     public void updateColumnConfigWithPreTrainingStats() throws IOException {
-        List<Scanner> scanners = ShifuFileUtils.getDataScanners(pathFinder.getPreTrainingStatsPath(),
-                modelConfig.getDataSet().getSource());
         int initSize = columnConfigList.size();
-        for(Scanner scanner: scanners) {
-            scanStatsResult(scanner, initSize);
+        List<ColumnStatsWritable> binaryStats = loadBinaryStats(pathFinder.getPreTrainingStatsPath(),
+                modelConfig.getDataSet().getSource());
+        if(binaryStats != null) {
+            for(ColumnStatsWritable stats: binaryStats) {
+                updateColumnConfig(stats, initSize);
+            }
+        } else {
+            List<Scanner> scanners = ShifuFileUtils.getDataScanners(pathFinder.getPreTrainingStatsPath(),
+                    modelConfig.getDataSet().getSource());
+            for(Scanner scanner: scanners) {
+                scanStatsResult(scanner, initSize);
+            }
+            // release
+            processor.closeScanners(scanners);
         }
-        // release
-        processor.closeScanners(scanners);
 
         Collections.sort(this.columnConfigList, new Comparator<ColumnConfig>() {
             @Override
@@ -463,26 +479,7 @@ public class MapReducerStatsWorker extends AbstractStatsExecutor {
             }
 
             try {
-                ColumnConfig basicConfig = this.columnConfigList.get(corrColumnNum);
-                log.debug("basicConfig is - " + basicConfig.getColumnName() + " corrColumnNum:" + corrColumnNum);
-
-                ColumnConfig config = null;
-                if(columnNum >= ccInitSize) {
-                    config = new ColumnConfig();
-                    config.setColumnNum(columnNum);
-                    config.setColumnName(basicConfig.getColumnName() + "_" + (columnNum / ccInitSize));
-                    config.setVersion(basicConfig.getVersion());
-                    config.setColumnType(basicConfig.getColumnType());
-                    config.setColumnFlag(basicConfig.getColumnFlag() == ColumnFlag.Target ? ColumnFlag.Meta
-                            : basicConfig.getColumnFlag());
-
-                    log.debug("basicConfig is - " + basicConfig.getColumnName() + " corrColumnNum:" + corrColumnNum
-                            + ", currColumnName: " + columnNum + ", currColumnType:" + config.getColumnType());
-
-                    this.columnConfigList.add(config);
-                } else {
-                    config = basicConfig;
-                }
+                ColumnConfig config = getOrCreateColumnConfig(columnNum, ccInitSize);
 
                 if(config.isHybrid()) {
                     String[] splits = CommonUtils.split(raw[1], Constants.HYBRID_BIN_STR_DILIMETER);
@@ -561,6 +558,133 @@ public class MapReducerStatsWorker extends AbstractStatsExecutor {
         }
     }
 
+    /**
+     * Get column config of column num, new column config is created for segment expansion column whose column num is
+     * not less than init size of column config list.
+     */
+    private ColumnConfig getOrCreateColumnConfig(int columnNum, int ccInitSize) {
+        int corrColumnNum = columnNum;
+        if(columnNum >= ccInitSize) {
+            corrColumnNum = columnNum % ccInitSize;
+        }
+        ColumnConfig basicConfig = this.columnConfigList.get(corrColumnNum);
+        log.debug("basicConfig is - " + basicConfig.getColumnName() + " corrColumnNum:" + corrColumnNum);
+        if(columnNum < ccInitSize) {
+            return basicConfig;
+        }
+
+        ColumnConfig config = new ColumnConfig();
+        config.setColumnNum(columnNum);
+        config.setColumnName(basicConfig.getColumnName() + "_" + (columnNum / ccInitSize));
+        config.setVersion(basicConfig.getVersion());
+        config.setColumnType(basicConfig.getColumnType());
+        config.setColumnFlag(
+                basicConfig.getColumnFlag() == ColumnFlag.Target ? ColumnFlag.Meta : basicConfig.getColumnFlag());
+
+        log.debug("basicConfig is - " + basicConfig.getColumnName() + " corrColumnNum:" + corrColumnNum
+                + ", currColumnName: " + columnNum + ", currColumnType:" + config.getColumnType());
+
+        this.columnConfigList.add(config);
+        return config;
+    }
+
+    /**
+     * Load binary stats side files written by {@link UpdateBinningInfoReducer}.
+     * 
+     * @return all column stats, or null if binary stats files are not found or not complete, then text stats output
+     *         should be used
+     */
+    private List<ColumnStatsWritable> loadBinaryStats(String statsPath, RawSourceData.SourceType sourceType)
+            throws IOException {
+        FileSystem fs = ShifuFileUtils.getFileSystemBySourceType(sourceType);
+        Path path = new Path(statsPath);
+        if(!fs.exists(path)) {
+            return null;
+        }
+        List<Path> binaryFiles = new ArrayList<Path>();
+        int textFileCount = 0;
+        for(FileStatus status: fs.listStatus(path)) {
+            String name = status.getPath().getName();
+            if(name.startsWith(UpdateBinningInfoReducer.BINARY_STATS_PREFIX)) {
+                binaryFiles.add(status.getPath());
+            } else if(!status.isDir() && !name.startsWith(Constants.HIDDEN_FILES) && !name.startsWith("_")) {
+                textFileCount += 1;
+            }
+        }
+        if(binaryFiles.isEmpty() || binaryFiles.size() != textFileCount) {
+            log.info("Binary stats files ({}) are not consistent with text stats files ({}), use text stats.",
+                    binaryFiles.size(), textFileCount);
+            return null;
+        }
+
+        List<ColumnStatsWritable> statsList = new ArrayList<ColumnStatsWritable>();
+        for(Path binaryFile: binaryFiles) {
+            DataInputStream input = null;
+            try {
+                input = new DataInputStream(new BufferedInputStream(fs.open(binaryFile)));
+                List<ColumnStatsWritable> fileStats = UpdateBinningInfoReducer.readBinaryStats(input);
+                if(fileStats == null) {
+                    log.warn("Binary stats file {} is not complete, use text stats.", binaryFile);
+                    return null;
+                }
+                statsList.addAll(fileStats);
+            } finally {
+                IOUtils.closeQuietly(input);
+            }
+        }
+        log.info("Load {} column stats from {} binary stats files.", statsList.size(), binaryFiles.size());
+        return statsList;
+    }
+
+    /**
+     * Update column config by binary column stats, the same fields as {@link #scanStatsResult(Scanner, int)}.
+     */
+    private void updateColumnConfig(ColumnStatsWritable stats, int ccInitSize) {
+        ColumnConfig config = getOrCreateColumnConfig(stats.getColumnNum(), ccInitSize);
+        config.setBinBoundary(stats.getBinBoundaries());
+        config.setBinCategory(stats.getBinCategories());
+        config.setBinCountNeg(toIntegerList(stats.getBinCountNeg()));
+        config.setBinCountPos(toIntegerList(stats.getBinCountPos()));
+        config.setBinPosCaseRate(Arrays.asList(ArrayUtils.toObject(stats.getBinPosRate())));
+        config.setBinLength(config.getBinCountNeg().size());
+        config.setKs(stats.isHasMetrics() ? stats.getKs() : 0d);
+        config.setIv(stats.isHasMetrics() ? stats.getIv() : 0d);
+        config.setMax(stats.getMax());
+        config.setMin(stats.getMin());
+        config.setMean(stats.getMean());
+        config.setStdDev(stats.getStdDev());
+        config.setColumnType(ColumnType.of(stats.getColumnType()));
+        config.setMedian(stats.getMedian());
+        config.setMissingCnt(stats.getMissingCount());
+        config.setTotalCount(stats.getCount());
+        config.setMissingPercentage(stats.getMissingCount() * 1.0d / stats.getCount());
+        config.setBinWeightedNeg(Arrays.asList(ArrayUtils.toObject(stats.getBinWeightNeg())));
+        config.setBinWeightedPos(Arrays.asList(ArrayUtils.toObject(stats.getBinWeightPos())));
+        config.getColumnStats().setWoe(stats.isHasMetrics() ? stats.getWoe() : 0d);
+        config.getColumnStats().setWeightedWoe(stats.isHasMetrics() ? stats.getWeightedWoe() : 0d);
+        config.getColumnStats().setWeightedKs(stats.isHasMetrics() ? stats.getWeightedKs() : 0d);
+        config.getColumnStats().setWeightedIv(stats.isHasMetrics() ? stats.getWeightedIv() : 0d);
+        config.getColumnBinning().setBinCountWoe(stats.getBinCountWoe());
+        config.getColumnBinning().setBinWeightedWoe(stats.getBinWeightedWoe());
+        config.getColumnStats().setSkewness(stats.getSkewness());
+        config.getColumnStats().setKurtosis(stats.getKurtosis());
+        config.getColumnStats().setValidNumCount(stats.getValidNumCount());
+        config.getColumnStats().setDistinctCount(stats.getCardinality());
+        if(stats.getFrequentItems() != null) {
+            config.setSampleValues(Arrays.asList(stats.getFrequentItems().split(",")));
+        }
+        config.getColumnStats().set25th(stats.getP25th());
+        config.getColumnStats().set75th(stats.getP75th());
+    }
+
+    private static List<Integer> toIntegerList(long[] values) {
+        List<Integer> list = new ArrayList<Integer>(values.length);
+        for(long value: values) {
+            list.add((int) value);
+        }
+        return list;
+    }
+
     private static double parseDouble(String str) {
         return parseDouble(str, 0d);
     }
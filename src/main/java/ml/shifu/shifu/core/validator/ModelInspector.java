@@ -503,6 +503,21 @@ public class ModelInspector {
             result = ValidateResult.mergeResult(result, tmpResult);
         }
 
+        if(train.getMasterThreadCount() != null
+                && (train.getMasterThreadCount() <= 0 || train.getMasterThreadCount() > 32)) {
+            ValidateResult tmpResult = new ValidateResult(true);
+            tmpResult.setStatus(false);
+            tmpResult.getCauses().add("'masterThreadCount' should be in (0, 32] if set.");
+            result = ValidateResult.mergeResult(result, tmpResult);
+        }
+
+        if(train.getStaleness() != null && train.getStaleness() < 0) {
+            ValidateResult tmpResult = new ValidateResult(true);
+            tmpResult.setStatus(false);
+            tmpResult.getCauses().add("'staleness' should be >= 0 if set.");
+            result = ValidateResult.mergeResult(result, tmpResult);
+        }
+
         if(train.getConvergenceThreshold() != null && train.getConvergenceThreshold().compareTo(0.0) < 0) {
             ValidateResult tmpResult = new ValidateResult(true);
             tmpResult.setStatus(false);
@@ -807,6 +822,17 @@ public class ModelInspector {
                     }
                 }
 
+                Object votingTopKObj = params.get(CommonConstants.DT_VOTING_TOP_K);
+                if(votingTopKObj != null) {
+                    int votingTopK = Integer.valueOf(votingTopKObj.toString());
+                    if(votingTopK < 0) {
+                        ValidateResult tmpResult = new ValidateResult(true);
+                        tmpResult.setStatus(false);
+                        tmpResult.getCauses().add(CommonConstants.DT_VOTING_TOP_K + " should >= 0.");
+                        result = ValidateResult.mergeResult(result, tmpResult);
+                    }
+                }
+
                 Object dropoutObj = params.get(CommonConstants.DROPOUT_RATE);
                 if(dropoutObj != null) {
                     Double dropoutRate = Double.valueOf(dropoutObj.toString());
@@ -0,0 +1,248 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.varselect;
+
+import org.encog.engine.network.activation.ActivationFunction;
+import org.encog.neural.flat.FlatNetwork;
+
+import ml.shifu.shifu.core.dtrain.dataset.CacheFlatNetwork;
+
+/**
+ * {@link NetworkSensitivity} computes scores of one record with each input removed in one call, which is the same as
+ * calling {@link CacheFlatNetwork} once with cache and then once per input, but with all removed inputs in one pass.
+ *
+ * <p>
+ * Removing input i from first layer sums S is a rank-1 update: row i of first layer is S - x[i] * W[i], with W[i] the
+ * weights from input i to all first layer neurons. First layer weights are transposed to input-major order, so all
+ * rows are built by one contiguous multiply-subtract loop which can be vectorized by JIT. Rows of the following layers
+ * are computed from row buffers of all removed inputs, summation order is the same as {@link CacheFlatNetwork}, so
+ * scores are the same.
+ *
+ * <p>
+ * Weights and activation functions are shared by {@link #copy()}, row buffers are not, so each thread should use its
+ * own copy. Networks with context neurons are not supported.
+ */
+final class NetworkSensitivity {
+
+    private final int inputCount;
+
+    /**
+     * Count of layers including input layer, layers are in reverse order like {@link FlatNetwork}: 0 is the output
+     * layer and layerCount - 1 is the input layer.
+     */
+    private final int layerCount;
+
+    private final int[] layerCounts;
+
+    private final int[] layerFeedCounts;
+
+    private final int[] layerIndex;
+
+    private final int[] weightIndex;
+
+    private final double[] weights;
+
+    /**
+     * First layer weights in input-major order: weights from input i to first layer neuron h are in
+     * [i * firstLayerSize + h].
+     */
+    private final double[] firstWeights;
+
+    /**
+     * Count of first layer neurons without bias neuron.
+     */
+    private final int firstLayerSize;
+
+    private final ActivationFunction[] activationFunctions;
+
+    /**
+     * Outputs of all layers for the record with all inputs, bias neurons are kept from source network.
+     */
+    private final double[] layerOutput;
+
+    /**
+     * Row buffers of all removed inputs per layer, row i of layer l is [i * layerCounts[l], (i + 1) *
+     * layerCounts[l]). Bias neurons are kept from source network.
+     */
+    private final double[][] rows;
+
+    /**
+     * First layer sums of the record with all inputs.
+     */
+    private final double[] firstSums;
+
+    /**
+     * Constructor from flat network of a trained model.
+     *
+     * @param flat
+     *            the flat network
+     * @throws IllegalArgumentException
+     *             if network has context neurons
+     */
+    NetworkSensitivity(FlatNetwork flat) {
+        for(int size: flat.getContextTargetSize()) {
+            if(size != 0) {
+                throw new IllegalArgumentException("Network with context neurons is not supported.");
+            }
+        }
+        this.inputCount = flat.getInputCount();
+        this.layerCounts = flat.getLayerCounts();
+        this.layerFeedCounts = flat.getLayerFeedCounts();
+        this.layerIndex = flat.getLayerIndex();
+        this.weightIndex = flat.getWeightIndex();
+        this.weights = flat.getWeights();
+        this.layerCount = this.layerIndex.length;
+        this.firstLayerSize = this.layerFeedCounts[this.layerCount - 2];
+
+        int inputWidth = this.layerCounts[this.layerCount - 1];
+        int index = this.weightIndex[this.layerCount - 2];
+        this.firstWeights = new double[this.inputCount * this.firstLayerSize];
+        for(int h = 0; h < this.firstLayerSize; h++) {
+            for(int i = 0; i < this.inputCount; i++) {
+                this.firstWeights[i * this.firstLayerSize + h] = this.weights[index + h * inputWidth + i];
+            }
+        }
+
+        ActivationFunction[] functions = flat.getActivationFunctions();
+        this.activationFunctions = new ActivationFunction[functions.length];
+        for(int i = 0; i < functions.length; i++) {
+            this.activationFunctions[i] = functions[i].clone();
+        }
+        this.layerOutput = flat.getLayerOutput().clone();
+        this.rows = newRows(this.layerOutput, this.layerCounts, this.layerIndex, this.inputCount);
+        this.firstSums = new double[this.firstLayerSize];
+    }
+
+    private NetworkSensitivity(NetworkSensitivity source) {
+        this.inputCount = source.inputCount;
+        this.layerCount = source.layerCount;
+        this.layerCounts = source.layerCounts;
+        this.layerFeedCounts = source.layerFeedCounts;
+        this.layerIndex = source.layerIndex;
+        this.weightIndex = source.weightIndex;
+        this.weights = source.weights;
+        this.firstWeights = source.firstWeights;
+        this.firstLayerSize = source.firstLayerSize;
+        this.activationFunctions = new ActivationFunction[source.activationFunctions.length];
+        for(int i = 0; i < source.activationFunctions.length; i++) {
+            this.activationFunctions[i] = source.activationFunctions[i].clone();
+        }
+        this.layerOutput = source.layerOutput.clone();
+        this.rows = newRows(this.layerOutput, this.layerCounts, this.layerIndex, this.inputCount);
+        this.firstSums = new double[this.firstLayerSize];
+    }
+
+    /*
+     * Row buffers of hidden and output layers, each row is initialized by layer outputs to keep bias neurons.
+     */
+    private static double[][] newRows(double[] layerOutput, int[] layerCounts, int[] layerIndex, int rowCount) {
+        double[][] rows = new double[layerCounts.length - 1][];
+        for(int l = 0; l < rows.length; l++) {
+            rows[l] = new double[rowCount * layerCounts[l]];
+            for(int i = 0; i < rowCount; i++) {
+                System.arraycopy(layerOutput, layerIndex[l], rows[l], i * layerCounts[l], layerCounts[l]);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return a copy sharing weights with this instance but with its own buffers
+     */
+    NetworkSensitivity copy() {
+        return new NetworkSensitivity(this);
+    }
+
+    int getInputCount() {
+        return this.inputCount;
+    }
+
+    /**
+     * Compute score of record with all inputs and scores with each input removed.
+     *
+     * @param input
+     *            input values of one record
+     * @param removedScores
+     *            output array, removedScores[i] is the score with input i removed
+     * @return score with all inputs
+     */
+    double compute(double[] input, double[] removedScores) {
+        final int first = this.layerCount - 2;
+        final int inputIndex = this.layerIndex[this.layerCount - 1];
+        System.arraycopy(input, 0, this.layerOutput, inputIndex, this.inputCount);
+
+        // record with all inputs, first layer sums are kept for removed inputs
+        for(int l = this.layerCount - 1; l > 0; l--) {
+            computeLayer(this.layerOutput, this.layerIndex[l], this.layerOutput, this.layerIndex[l - 1], l);
+            if(l - 1 == first) {
+                System.arraycopy(this.layerOutput, this.layerIndex[first], this.firstSums, 0, this.firstLayerSize);
+            }
+            this.activationFunctions[l - 1].activationFunction(this.layerOutput, this.layerIndex[l - 1],
+                    this.layerFeedCounts[l - 1]);
+        }
+
+        // first layer of all removed inputs: rank-1 update of first layer sums
+        final double[] sums = this.firstSums;
+        final double[] firstRows = this.rows[first];
+        final int rowSize = this.layerCounts[first];
+        final int size = this.firstLayerSize;
+        for(int i = 0; i < this.inputCount; i++) {
+            final double value = this.layerOutput[inputIndex + i];
+            final int offset = i * rowSize;
+            final int weightOffset = i * size;
+            for(int h = 0; h < size; h++) {
+                firstRows[offset + h] = sums[h] - this.firstWeights[weightOffset + h] * value;
+            }
+        }
+        for(int i = 0; i < this.inputCount; i++) {
+            this.activationFunctions[first].activationFunction(firstRows, i * rowSize, size);
+        }
+
+        // following layers of all removed inputs
+        for(int l = first; l > 0; l--) {
+            double[] source = this.rows[l];
+            double[] target = this.rows[l - 1];
+            for(int i = 0; i < this.inputCount; i++) {
+                int targetIndex = i * this.layerCounts[l - 1];
+                computeLayer(source, i * this.layerCounts[l], target, targetIndex, l);
+                this.activationFunctions[l - 1].activationFunction(target, targetIndex, this.layerFeedCounts[l - 1]);
+            }
+        }
+
+        double[] outputs = this.rows[0];
+        for(int i = 0; i < this.inputCount; i++) {
+            removedScores[i] = outputs[i * this.layerCounts[0]];
+        }
+        return this.layerOutput[this.layerIndex[0]];
+    }
+
+    /*
+     * Weighted sums of layer l - 1 from outputs of layer l, without activation.
+     */
+    private void computeLayer(double[] source, int sourceIndex, double[] target, int targetIndex, int l) {
+        final int sourceSize = this.layerCounts[l];
+        final int targetSize = this.layerFeedCounts[l - 1];
+        int index = this.weightIndex[l - 1];
+        for(int x = 0; x < targetSize; x++) {
+            double sum = 0;
+            for(int y = 0; y < sourceSize; y++) {
+                sum += this.weights[index++] * source[sourceIndex + y];
+            }
+            target[targetIndex + x] = sum;
+        }
+    }
+
+}
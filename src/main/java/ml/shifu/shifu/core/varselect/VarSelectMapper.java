@@ -16,12 +16,15 @@
 package ml.shifu.shifu.core.varselect;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import ml.shifu.shifu.util.*;
 import org.apache.hadoop.fs.FileSystem;
@@ -30,7 +33,6 @@ import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.encog.ml.MLRegression;
-import org.encog.ml.data.basic.BasicMLData;
 import org.encog.persist.PersistorRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,7 +40,6 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Splitter;
 
 import ml.shifu.guagua.util.MemoryUtils;
-import ml.shifu.guagua.util.NumberFormatUtils;
 import ml.shifu.shifu.container.obj.ColumnConfig;
 import ml.shifu.shifu.container.obj.ModelConfig;
 import ml.shifu.shifu.container.obj.RawSourceData.SourceType;
@@ -54,8 +55,10 @@ import ml.shifu.shifu.fs.ShifuFileUtils;
  * Mapper implementation to accumulate MSE value when remove one column.
  * 
  * <p>
- * All the MSE values are accumulated in in-memory HashMap {@link #results}, which will also be write out in
- * {@link #cleanup(org.apache.hadoop.mapreduce.Mapper.Context)}.
+ * Records are parsed into a batch of {@link #batchInputs}, each full batch is split into ranges scored by
+ * {@link SensitivityTask}s in {@link #threadPool}. Each task has its own {@link NetworkSensitivity} copy sharing
+ * weights of the model, and accumulates sums of score diffs in primitive arrays indexed by input, which are merged and
+ * written out in {@link #cleanup(org.apache.hadoop.mapreduce.Mapper.Context)}.
  * 
  * <p>
  * Output of all the mappers will be read and accumulated in VarSelectReducer to get all global MSE values. In Reducer,
@@ -94,11 +97,6 @@ public class VarSelectMapper extends Mapper<LongWritable, Text, LongWritable, Co
      */
     private int inputNodeCount;
 
-    /**
-     * Final results map, this map is loaded in memory for sum, and will be written by context in cleanup.
-     */
-    private Map<Long, ColumnInfo> results = new HashMap<Long, ColumnInfo>();
-
     /**
      * Inputs columns for each record. To save new objects in
      * {@link #map(LongWritable, Text, org.apache.hadoop.mapreduce.Mapper.Context)}.
@@ -112,15 +110,24 @@ public class VarSelectMapper extends Mapper<LongWritable, Text, LongWritable, Co
     private double[] outputs;
 
     /**
-     * Column indexes for each record. To save new objects in
-     * {@link #map(LongWritable, Text, org.apache.hadoop.mapreduce.Mapper.Context)}.
+     * Column indexes of inputs, in the same order as {@link #inputs}.
      */
     private long[] columnIndexes;
 
     /**
-     * Input MLData instance to save new.
+     * Inputs of records in current batch.
      */
-    private BasicMLData inputsMLData;
+    private double[][] batchInputs;
+
+    /**
+     * Targets of records in current batch.
+     */
+    private double[] batchTargets;
+
+    /**
+     * Count of records in current batch.
+     */
+    private int batchCount;
 
     /**
      * Prevent too many new objects for output key.
@@ -143,14 +150,19 @@ public class VarSelectMapper extends Mapper<LongWritable, Text, LongWritable, Co
     private Set<Integer> featureSet;
 
     /**
-     * Network which will cache first layer outputs and later use minus to replace sum to save CPU time.
+     * Tasks to score ranges of one batch, one task per thread.
      */
-    private CacheBasicFloatNetwork cacheNetwork;
+    private SensitivityTask[] tasks;
 
     /**
-     * The splitter for normalization data set
+     * Thread pool to run {@link #tasks}, null if only one thread.
      */
-    private Splitter splitter;
+    private ExecutorService threadPool;
+
+    /**
+     * Reusable record view of normalization data set
+     */
+    private DelimitedRecord record;
 
     /**
      * Load all configurations for modelConfig and columnConfigList from source type.
@@ -235,9 +247,6 @@ public class VarSelectMapper extends Mapper<LongWritable, Text, LongWritable, Co
 
         loadModel();
 
-        // Copy mode to here
-        cacheNetwork = copy((BasicFloatNetwork) model);
-
         this.filterBy = context.getConfiguration().get(Constants.SHIFU_VARSELECT_FILTEROUT_TYPE,
                 Constants.FILTER_BY_SE);
         int[] inputOutputIndex = DTrainUtils.getInputOutputCandidateCounts(modelConfig.getNormalizeType(),
@@ -264,63 +273,59 @@ public class VarSelectMapper extends Mapper<LongWritable, Text, LongWritable, Co
 
         this.outputs = new double[inputOutputIndex[1]];
         this.columnIndexes = new long[this.inputs.length];
-        this.inputsMLData = new BasicMLData(this.inputs.length);
+        int inputsIndex = 0;
+        for(ColumnConfig columnConfig: columnConfigList) {
+            if(!columnConfig.isTarget() && this.featureSet.contains(columnConfig.getColumnNum())
+                    && inputsIndex < this.columnIndexes.length) {
+                this.columnIndexes[inputsIndex++] = columnConfig.getColumnNum();
+            }
+        }
         this.outputKey = new LongWritable();
         LOG.info("Filter by is {}", filterBy);
 
-        // create Splitter
+        int threads = Math.max(1, context.getConfiguration().getInt(Constants.SHIFU_VARSEL_SE_MAPPER_THREADS, 1));
+        int batchSize = Math.max(1, context.getConfiguration().getInt(Constants.SHIFU_VARSEL_SE_BATCH_SIZE,
+                Constants.SHIFU_DEFAULT_VARSEL_SE_BATCH_SIZE));
+        this.batchInputs = new double[batchSize][this.inputs.length];
+        this.batchTargets = new double[batchSize];
+        NetworkSensitivity network = new NetworkSensitivity(((BasicFloatNetwork) model).getFlat());
+        this.tasks = new SensitivityTask[threads];
+        for(int i = 0; i < threads; i++) {
+            this.tasks[i] = new SensitivityTask(i == 0 ? network : network.copy());
+        }
+        if(threads > 1) {
+            this.threadPool = Executors.newFixedThreadPool(threads);
+        }
+        LOG.info("Sensitivity is computed by {} threads with batch size {}.", threads, batchSize);
+
+        // create record view
         String delimiter = context.getConfiguration().get(Constants.SHIFU_OUTPUT_DATA_DELIMITER);
-        this.splitter = MapReduceUtils.generateShifuOutputSplitter(delimiter);
+        this.record = MapReduceUtils.generateShifuOutputRecord(delimiter);
     }
 
     @Override
     protected void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
         recordCount += 1L;
-        int index = 0, inputsIndex = 0, outputsIndex = 0;
-        for(String input: this.splitter.split(value.toString())) {
-            double doubleValue = NumberFormatUtils.getDouble(input.trim(), 0.0d);
-            if(index == columnConfigList.size()) {
-                break;
+        int inputsIndex = 0, outputsIndex = 0;
+        // fields are parsed from bytes of value, no String is created
+        this.record.reset(value);
+        int size = Math.min(this.record.size(), columnConfigList.size());
+        for(int index = 0; index < size; index++) {
+            ColumnConfig columnConfig = columnConfigList.get(index);
+            if(columnConfig != null && columnConfig.isTarget()) {
+                this.outputs[outputsIndex++] = this.record.getDouble(index, 0.0d);
             } else {
-                ColumnConfig columnConfig = columnConfigList.get(index);
-                if(columnConfig != null && columnConfig.isTarget()) {
-                    this.outputs[outputsIndex++] = doubleValue;
-                } else {
-                    if(this.featureSet != null && this.featureSet.contains(columnConfig.getColumnNum())) {
-                        inputs[inputsIndex] = doubleValue;
-                        columnIndexes[inputsIndex++] = columnConfig.getColumnNum();
-                    }
+                if(this.featureSet != null && this.featureSet.contains(columnConfig.getColumnNum())) {
+                    inputs[inputsIndex++] = this.record.getDouble(index, 0.0d);
                 }
             }
-            index++;
         }
 
-        this.inputsMLData.setData(this.inputs);
-        // compute candidate model score , cache first layer of sum values in such call method, cache flag here is true
-        double candidateModelScore = cacheNetwork.compute(inputsMLData, true, -1).getData()[0];
-
-        for(int i = 0; i < this.inputs.length; i++) {
-            // cache flag is false to reuse cache sum of first layer of values.
-            double currentModelScore = cacheNetwork.compute(inputsMLData, false, i).getData()[0];
-            double diff = 0d;
-            if(Constants.FILTER_BY_ST.equalsIgnoreCase(this.filterBy)) {
-                // ST
-                diff = this.outputs[0] - currentModelScore;
-            } else {
-                // SE
-                diff = candidateModelScore - currentModelScore;
-            }
-            ColumnInfo columnInfo = this.results.get(this.columnIndexes[i]);
-
-            if(columnInfo == null) {
-                columnInfo = new ColumnInfo();
-                columnInfo.setSumScoreDiff(Math.abs(diff));
-                columnInfo.setSumSquareScoreDiff(power2(diff));
-            } else {
-                columnInfo.setSumScoreDiff(columnInfo.getSumScoreDiff() + Math.abs(diff));
-                columnInfo.setSumSquareScoreDiff(columnInfo.getSumSquareScoreDiff() + power2(diff));
-            }
-            this.results.put(this.columnIndexes[i], columnInfo);
+        System.arraycopy(this.inputs, 0, this.batchInputs[this.batchCount], 0, this.inputs.length);
+        this.batchTargets[this.batchCount] = this.outputs[0];
+        this.batchCount += 1;
+        if(this.batchCount == this.batchInputs.length) {
+            computeBatch();
         }
 
         if(this.recordCount % 1000 == 0) {
@@ -328,23 +333,115 @@ public class VarSelectMapper extends Mapper<LongWritable, Text, LongWritable, Co
         }
     }
 
+    /**
+     * Score records of current batch, records are split into equal ranges of {@link #tasks}.
+     */
+    private void computeBatch() throws InterruptedException {
+        if(this.batchCount == 0) {
+            return;
+        }
+        if(this.threadPool == null) {
+            this.tasks[0].setRange(0, this.batchCount);
+            this.tasks[0].call();
+        } else {
+            List<Callable<Void>> calls = new ArrayList<Callable<Void>>(this.tasks.length);
+            for(int i = 0; i < this.tasks.length; i++) {
+                this.tasks[i].setRange((int) ((long) this.batchCount * i / this.tasks.length),
+                        (int) ((long) this.batchCount * (i + 1) / this.tasks.length));
+                calls.add(this.tasks[i]);
+            }
+            try {
+                for(Future<Void> future: this.threadPool.invokeAll(calls)) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        this.batchCount = 0;
+    }
+
     /**
      * Write all column-&gt;MSE pairs to output.
      */
     @Override
     protected void cleanup(Context context) throws IOException, InterruptedException {
-        for(Entry<Long, ColumnInfo> entry: results.entrySet()) {
-            this.outputKey.set(entry.getKey());
+        try {
+            computeBatch();
+        } finally {
+            if(this.threadPool != null) {
+                this.threadPool.shutdownNow();
+            }
+        }
+        if(this.recordCount == 0L) {
+            return;
+        }
+
+        double[] sumScoreDiffs = this.tasks[0].sumScoreDiffs;
+        double[] sumSquareScoreDiffs = this.tasks[0].sumSquareScoreDiffs;
+        for(int t = 1; t < this.tasks.length; t++) {
+            for(int i = 0; i < sumScoreDiffs.length; i++) {
+                sumScoreDiffs[i] += this.tasks[t].sumScoreDiffs[i];
+                sumSquareScoreDiffs[i] += this.tasks[t].sumSquareScoreDiffs[i];
+            }
+        }
+        ColumnInfo columnInfo = new ColumnInfo();
+        for(int i = 0; i < this.columnIndexes.length; i++) {
+            this.outputKey.set(this.columnIndexes[i]);
             // value is sumValue, not sumValue/(number of records)
-            ColumnInfo columnInfo = entry.getValue();
+            columnInfo.setSumScoreDiff(sumScoreDiffs[i]);
+            columnInfo.setSumSquareScoreDiff(sumSquareScoreDiffs[i]);
             columnInfo.setCount(this.recordCount);
             context.write(this.outputKey, columnInfo);
         }
-        LOG.debug("Final results: {}", results);
     }
 
-    private double power2(double data) {
-        return data * data;
+    /**
+     * {@link SensitivityTask} scores a range of records in current batch with its own {@link NetworkSensitivity}, and
+     * accumulates sum and square sum of score diffs of each removed input.
+     */
+    private class SensitivityTask implements Callable<Void> {
+
+        private final NetworkSensitivity network;
+
+        private final double[] removedScores;
+
+        private final double[] sumScoreDiffs;
+
+        private final double[] sumSquareScoreDiffs;
+
+        private int from;
+
+        private int to;
+
+        public SensitivityTask(NetworkSensitivity network) {
+            this.network = network;
+            this.removedScores = new double[network.getInputCount()];
+            this.sumScoreDiffs = new double[network.getInputCount()];
+            this.sumSquareScoreDiffs = new double[network.getInputCount()];
+        }
+
+        public void setRange(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Void call() {
+            boolean isST = Constants.FILTER_BY_ST.equalsIgnoreCase(VarSelectMapper.this.filterBy);
+            final double[] scores = this.removedScores;
+            for(int r = this.from; r < this.to; r++) {
+                double candidateModelScore = this.network.compute(VarSelectMapper.this.batchInputs[r], scores);
+                // ST uses diff to target, SE uses diff to score with all inputs
+                double base = isST ? VarSelectMapper.this.batchTargets[r] : candidateModelScore;
+                for(int i = 0; i < scores.length; i++) {
+                    double diff = base - scores[i];
+                    this.sumScoreDiffs[i] += Math.abs(diff);
+                    this.sumSquareScoreDiffs[i] += diff * diff;
+                }
+            }
+            return null;
+        }
     }
 
 }
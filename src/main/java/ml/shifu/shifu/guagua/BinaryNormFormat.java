@@ -0,0 +1,183 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.guagua;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link BinaryNormFormat} is the binary columnar layout of normalized data, written by {@link BinaryNormWriter} and
+ * read by {@link BinaryNormReader}.
+ *
+ * <p>
+ * Each file is a header followed by blocks:
+ * <ul>
+ * <li>header: magic 'SNB', version, column count, name and {@link ColumnType} of each column and a random sync marker
+ * of {@link #SYNC_SIZE} bytes.</li>
+ * <li>block: sync marker, row count, raw length, compressed length and deflated rows. Each row is fixed-width, values
+ * are in column order with {@link ColumnType#getWidth()} bytes each.</li>
+ * </ul>
+ *
+ * <p>
+ * As every block starts with the sync marker, files are splittable the same as sequence files: reader of one split
+ * seeks to split start, scans to the next sync marker and reads blocks starting before split end.
+ */
+public final class BinaryNormFormat {
+
+    static final byte[] MAGIC = { 'S', 'N', 'B' };
+
+    static final byte VERSION = 1;
+
+    /**
+     * Size of sync marker in bytes.
+     */
+    public static final int SYNC_SIZE = 16;
+
+    /**
+     * Default raw bytes of rows in one block before compression.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private BinaryNormFormat() {
+    }
+
+    /**
+     * Storage type of one column.
+     */
+    public static enum ColumnType {
+        /**
+         * 4 bytes float.
+         */
+        FLOAT(4),
+        /**
+         * Not stored and read as 0, for non-numeric columns like meta columns which are not used in training.
+         */
+        OMITTED(0);
+
+        private final int width;
+
+        private ColumnType(int width) {
+            this.width = width;
+        }
+
+        public int getWidth() {
+            return this.width;
+        }
+    }
+
+    /**
+     * Column names and types of one file.
+     */
+    public static final class Header {
+
+        private final String[] names;
+
+        private final ColumnType[] types;
+
+        private final int rowWidth;
+
+        public Header(List<String> names, List<ColumnType> types) {
+            this(names.toArray(new String[names.size()]), types.toArray(new ColumnType[types.size()]));
+        }
+
+        public Header(String[] names, ColumnType[] types) {
+            if(names.length != types.length) {
+                throw new IllegalArgumentException("Column names size " + names.length
+                        + " is not the same as column types size " + types.length);
+            }
+            this.names = names;
+            this.types = types;
+            int width = 0;
+            for(ColumnType type: types) {
+                width += type.getWidth();
+            }
+            this.rowWidth = width;
+        }
+
+        /**
+         * @return number of columns
+         */
+        public int size() {
+            return this.names.length;
+        }
+
+        public String getName(int index) {
+            return this.names[index];
+        }
+
+        public ColumnType getType(int index) {
+            return this.types[index];
+        }
+
+        /**
+         * @return bytes of one row
+         */
+        public int getRowWidth() {
+            return this.rowWidth;
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(this.names.length);
+            for(int i = 0; i < this.names.length; i++) {
+                out.writeUTF(this.names[i]);
+                out.writeByte(this.types[i].ordinal());
+            }
+        }
+
+        static Header read(DataInput in) throws IOException {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if(!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a binary norm file, magic is " + Arrays.toString(magic));
+            }
+            byte version = in.readByte();
+            if(version != VERSION) {
+                throw new IOException("Unsupported binary norm file version " + version);
+            }
+            int size = in.readInt();
+            String[] names = new String[size];
+            ColumnType[] types = new ColumnType[size];
+            ColumnType[] values = ColumnType.values();
+            for(int i = 0; i < size; i++) {
+                names[i] = in.readUTF();
+                int ordinal = in.readByte();
+                if(ordinal < 0 || ordinal >= values.length) {
+                    throw new IOException("Invalid type " + ordinal + " of column " + names[i]);
+                }
+                types[i] = values[ordinal];
+            }
+            return new Header(names, types);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for(int i = 0; i < this.names.length; i++) {
+                if(i > 0) {
+                    sb.append(',');
+                }
+                sb.append(this.names[i]).append(':').append(this.types[i]);
+            }
+            return sb.toString();
+        }
+    }
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.guagua;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import ml.shifu.shifu.guagua.BinaryNormFormat.Header;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+
+/**
+ * {@link BinaryNormReader} reads rows of one split of a {@link BinaryNormFormat} file into a reused float array.
+ *
+ * <p>
+ * Header is read from file start, then blocks whose sync marker starts in [start, end) are read, so splits of one
+ * file read each block exactly once. Short values are widened and omitted columns are read as 0.
+ */
+public final class BinaryNormReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FSDataInputStream stream;
+
+    private DataInputStream in;
+
+    private final Header header;
+
+    private final byte[] sync = new byte[BinaryNormFormat.SYNC_SIZE];
+
+    private final byte[] blockSync = new byte[BinaryNormFormat.SYNC_SIZE];
+
+    private final long end;
+
+    /**
+     * File position of next byte in {@link #in}.
+     */
+    private long position;
+
+    private final Inflater inflater = new Inflater();
+
+    private byte[] compressed = new byte[0];
+
+    private ByteBuffer block = ByteBuffer.allocate(0);
+
+    private int blockRows;
+
+    private int rowIndex;
+
+    private boolean isEnd;
+
+    private final float[] row;
+
+    /**
+     * @param stream
+     *            the file stream, closed by {@link #close()}
+     * @param start
+     *            split start
+     * @param end
+     *            split end, exclusive
+     * @throws IOException
+     *             if file is not in {@link BinaryNormFormat} or any IO exception
+     */
+    public BinaryNormReader(FSDataInputStream stream, long start, long end) throws IOException {
+        this.stream = stream;
+        this.end = end;
+        stream.seek(0L);
+        this.header = Header.read(stream);
+        stream.readFully(this.sync);
+        this.row = new float[this.header.size()];
+
+        long dataStart = stream.getPos();
+        if(start <= dataStart) {
+            seek(dataStart);
+        } else {
+            this.isEnd = !seekToSync(start);
+        }
+    }
+
+    private void seek(long offset) throws IOException {
+        this.stream.seek(offset);
+        this.in = new DataInputStream(new BufferedInputStream(this.stream, BUFFER_SIZE));
+        this.position = offset;
+    }
+
+    /*
+     * Scan from offset to first sync marker starting before split end, and seek to it.
+     */
+    private boolean seekToSync(long offset) throws IOException {
+        seek(offset);
+        int size = this.sync.length;
+        byte[] window = new byte[size];
+        long pos = offset;
+        while(true) {
+            int b = this.in.read();
+            if(b < 0) {
+                return false;
+            }
+            window[(int) (pos % size)] = (byte) b;
+            pos += 1;
+            if(pos - offset < size) {
+                continue;
+            }
+            long syncStart = pos - size;
+            if(syncStart >= this.end) {
+                return false;
+            }
+            boolean isSync = true;
+            for(int i = 0; i < size; i++) {
+                if(window[(int) ((syncStart + i) % size)] != this.sync[i]) {
+                    isSync = false;
+                    break;
+                }
+            }
+            if(isSync) {
+                seek(syncStart);
+                return true;
+            }
+        }
+    }
+
+    private boolean readBlock() throws IOException {
+        if(this.position >= this.end) {
+            // block starts in next split
+            return false;
+        }
+        int first = this.in.read();
+        if(first < 0) {
+            return false;
+        }
+        this.blockSync[0] = (byte) first;
+        this.in.readFully(this.blockSync, 1, this.blockSync.length - 1);
+        for(int i = 0; i < this.sync.length; i++) {
+            if(this.blockSync[i] != this.sync[i]) {
+                throw new IOException("Invalid sync marker of block at position " + this.position);
+            }
+        }
+        int rows = this.in.readInt();
+        int rawLength = this.in.readInt();
+        int length = this.in.readInt();
+        if(rows < 0 || rawLength != rows * this.header.getRowWidth() || length < 0) {
+            throw new IOException("Invalid block with " + rows + " rows, " + rawLength + " raw bytes and " + length
+                    + " compressed bytes at position " + this.position);
+        }
+        if(this.compressed.length < length) {
+            this.compressed = new byte[length];
+        }
+        this.in.readFully(this.compressed, 0, length);
+        this.position += this.sync.length + 12 + length;
+
+        if(this.block.capacity() < rawLength) {
+            this.block = ByteBuffer.allocate(rawLength);
+        }
+        this.inflater.reset();
+        this.inflater.setInput(this.compressed, 0, length);
+        try {
+            int inflated = 0;
+            while(inflated < rawLength && !this.inflater.finished()) {
+                int n = this.inflater.inflate(this.block.array(), inflated, rawLength - inflated);
+                if(n == 0 && (this.inflater.needsInput() || this.inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if(inflated != rawLength) {
+                throw new IOException("Block at position " + this.position + " is truncated, " + inflated + " of "
+                        + rawLength + " bytes are inflated.");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Block at position " + this.position + " is corrupted.", e);
+        }
+        this.block.clear();
+        this.blockRows = rows;
+        this.rowIndex = 0;
+        return true;
+    }
+
+    /**
+     * Read next row into {@link #getRow()}.
+     *
+     * @return false if no row left in this split
+     * @throws IOException
+     *             if file is corrupted or any IO exception
+     */
+    public boolean next() throws IOException {
+        while(this.rowIndex == this.blockRows) {
+            if(this.isEnd || !readBlock()) {
+                this.isEnd = true;
+                return false;
+            }
+        }
+        for(int i = 0; i < this.row.length; i++) {
+            switch(this.header.getType(i)) {
+                case FLOAT:
+                    this.row[i] = this.block.getFloat();
+                    break;
+                default:
+                    this.row[i] = 0f;
+                    break;
+            }
+        }
+        this.rowIndex += 1;
+        return true;
+    }
+
+    /**
+     * @return values of current row, reused by {@link #next()}
+     */
+    public float[] getRow() {
+        return this.row;
+    }
+
+    public Header getHeader() {
+        return this.header;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.inflater.end();
+        this.stream.close();
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.guagua;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+
+/**
+ * {@link BinaryNormRow} is one row of {@link BinaryNormFormat} data handed to workers, values are float primitives in
+ * column order of the norm output.
+ */
+public class BinaryNormRow implements Writable {
+
+    private float[] values;
+
+    public BinaryNormRow() {
+        this(new float[0]);
+    }
+
+    public BinaryNormRow(float[] values) {
+        this.values = values;
+    }
+
+    /**
+     * @return values of row, the array may be reused by record reader for next row
+     */
+    public float[] getValues() {
+        return this.values;
+    }
+
+    public void setValues(float[] values) {
+        this.values = values;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(this.values.length);
+        for(float value: this.values) {
+            out.writeFloat(value);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        int size = in.readInt();
+        if(this.values.length != size) {
+            this.values = new float[size];
+        }
+        for(int i = 0; i < size; i++) {
+            this.values[i] = in.readFloat();
+        }
+    }
+
+}
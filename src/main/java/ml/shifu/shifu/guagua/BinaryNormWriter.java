@@ -0,0 +1,147 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.guagua;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.zip.Deflater;
+
+import ml.shifu.shifu.guagua.BinaryNormFormat.ColumnType;
+import ml.shifu.shifu.guagua.BinaryNormFormat.Header;
+
+/**
+ * {@link BinaryNormWriter} writes rows of float values into {@link BinaryNormFormat}. Rows are buffered into a block
+ * of about block size raw bytes, then the block is deflated and written after a sync marker.
+ */
+public final class BinaryNormWriter implements Closeable {
+
+    private final DataOutputStream out;
+
+    private final Header header;
+
+    private final byte[] sync = new byte[BinaryNormFormat.SYNC_SIZE];
+
+    private final int rowsPerBlock;
+
+    private final ByteBuffer buffer;
+
+    private final Deflater deflater = new Deflater();
+
+    private byte[] compressed;
+
+    private int rows;
+
+    public BinaryNormWriter(OutputStream out, Header header) throws IOException {
+        this(out, header, BinaryNormFormat.DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param out
+     *            the output stream, closed by {@link #close()}
+     * @param header
+     *            columns of rows
+     * @param blockSize
+     *            raw bytes of rows in one block
+     * @throws IOException
+     *             any IO exception in writing header
+     */
+    public BinaryNormWriter(OutputStream out, Header header, int blockSize) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.header = header;
+        this.rowsPerBlock = Math.max(1, blockSize / Math.max(1, header.getRowWidth()));
+        this.buffer = ByteBuffer.allocate(this.rowsPerBlock * header.getRowWidth());
+        this.compressed = new byte[Math.max(64, this.buffer.capacity() / 2)];
+
+        UUID uuid = UUID.randomUUID();
+        ByteBuffer.wrap(this.sync).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+        header.write(this.out);
+        this.out.write(this.sync);
+    }
+
+    /**
+     * Append one row.
+     *
+     * @param values
+     *            values in column order, values of {@link ColumnType#OMITTED} columns are ignored
+     * @throws IOException
+     *             any IO exception in writing block
+     * @throws IllegalArgumentException
+     *             if size of values is not the same as header
+     */
+    public void write(float[] values) throws IOException {
+        if(values.length != this.header.size()) {
+            throw new IllegalArgumentException("Row size " + values.length + " is not the same as header size "
+                    + this.header.size());
+        }
+        for(int i = 0; i < values.length; i++) {
+            switch(this.header.getType(i)) {
+                case FLOAT:
+                    this.buffer.putFloat(values[i]);
+                    break;
+                default:
+                    break;
+            }
+        }
+        this.rows += 1;
+        if(this.rows == this.rowsPerBlock) {
+            writeBlock();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if(this.rows == 0) {
+            return;
+        }
+        int rawLength = this.buffer.position();
+        this.deflater.reset();
+        this.deflater.setInput(this.buffer.array(), 0, rawLength);
+        this.deflater.finish();
+        int length = 0;
+        while(!this.deflater.finished()) {
+            if(length == this.compressed.length) {
+                this.compressed = Arrays.copyOf(this.compressed, this.compressed.length * 2);
+            }
+            length += this.deflater.deflate(this.compressed, length, this.compressed.length - length);
+        }
+
+        this.out.write(this.sync);
+        this.out.writeInt(this.rows);
+        this.out.writeInt(rawLength);
+        this.out.writeInt(length);
+        this.out.write(this.compressed, 0, length);
+        this.buffer.clear();
+        this.rows = 0;
+    }
+
+    /**
+     * Write the last block and close output stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBlock();
+        } finally {
+            this.deflater.end();
+            this.out.close();
+        }
+    }
+
+}
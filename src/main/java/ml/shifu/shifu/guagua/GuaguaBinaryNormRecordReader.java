@@ -0,0 +1,113 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.guagua;
+
+import java.io.IOException;
+
+import ml.shifu.guagua.hadoop.io.GuaguaWritableAdapter;
+import ml.shifu.guagua.io.GuaguaFileSplit;
+import ml.shifu.guagua.io.GuaguaRecordReader;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+
+/**
+ * {@link GuaguaBinaryNormRecordReader} is a reader to read {@link BinaryNormFormat} data into {@link BinaryNormRow}
+ * values, so workers get float arrays without parsing text.
+ *
+ * <p>
+ * Value and its array are reused for each row, workers should copy values they keep.
+ */
+public class GuaguaBinaryNormRecordReader implements
+        GuaguaRecordReader<GuaguaWritableAdapter<LongWritable>, GuaguaWritableAdapter<BinaryNormRow>> {
+
+    private Configuration conf;
+
+    private BinaryNormReader reader;
+
+    private GuaguaWritableAdapter<BinaryNormRow> value;
+
+    public GuaguaBinaryNormRecordReader() {
+        this.conf = new Configuration();
+    }
+
+    public GuaguaBinaryNormRecordReader(GuaguaFileSplit split) throws IOException {
+        this(new Configuration(), split);
+    }
+
+    public GuaguaBinaryNormRecordReader(Configuration conf, GuaguaFileSplit split) throws IOException {
+        this.conf = conf;
+        initialize(split);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ml.shifu.guagua.io.GuaguaRecordReader#initialize(ml.shifu.guagua.io.GuaguaFileSplit)
+     */
+    @Override
+    public void initialize(GuaguaFileSplit split) throws IOException {
+        Path path = new Path(split.getPath());
+        FileSystem fs = path.getFileSystem(this.conf);
+        this.reader = new BinaryNormReader(fs.open(path), split.getOffset(), split.getOffset() + split.getLength());
+        this.value = new GuaguaWritableAdapter<BinaryNormRow>(new BinaryNormRow(this.reader.getRow()));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ml.shifu.guagua.io.GuaguaRecordReader#nextKeyValue()
+     */
+    @Override
+    public boolean nextKeyValue() throws IOException {
+        return this.reader.next();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ml.shifu.guagua.io.GuaguaRecordReader#getCurrentKey()
+     */
+    @Override
+    public GuaguaWritableAdapter<LongWritable> getCurrentKey() {
+        return null;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ml.shifu.guagua.io.GuaguaRecordReader#getCurrentValue()
+     */
+    @Override
+    public GuaguaWritableAdapter<BinaryNormRow> getCurrentValue() {
+        return this.value;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ml.shifu.guagua.io.GuaguaRecordReader#close()
+     */
+    @Override
+    public void close() throws IOException {
+        if(this.reader != null) {
+            this.reader.close();
+        }
+    }
+
+}
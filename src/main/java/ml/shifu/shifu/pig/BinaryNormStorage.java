@@ -0,0 +1,209 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.pig;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import ml.shifu.guagua.util.NumberFormatUtils;
+import ml.shifu.shifu.guagua.BinaryNormFormat;
+import ml.shifu.shifu.guagua.BinaryNormFormat.ColumnType;
+import ml.shifu.shifu.guagua.BinaryNormFormat.Header;
+import ml.shifu.shifu.guagua.BinaryNormWriter;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.pig.ResourceSchema;
+import org.apache.pig.ResourceSchema.ResourceFieldSchema;
+import org.apache.pig.StoreFunc;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.impl.util.ObjectSerializer;
+import org.apache.pig.impl.util.UDFContext;
+
+/**
+ * {@link BinaryNormStorage} stores normalized tuples in {@link BinaryNormFormat}. Column header is built from schema
+ * of stored relation: numeric fields are stored as float with NaN for null values, other fields like meta columns are
+ * omitted.
+ */
+public class BinaryNormStorage extends StoreFunc {
+
+    /**
+     * Key of serialized schema in UDF context and job configuration.
+     */
+    public static final String BINARY_NORM_SCHEMA = "shifu.binary.norm.schema";
+
+    private String signature;
+
+    private RecordWriter<NullWritable, Tuple> writer;
+
+    @Override
+    public OutputFormat<NullWritable, Tuple> getOutputFormat() throws IOException {
+        return new BinaryNormOutputFormat();
+    }
+
+    @Override
+    public void setStoreLocation(String location, Job job) throws IOException {
+        FileOutputFormat.setOutputPath(job, new Path(location));
+        String schema = getUDFProperties().getProperty(BINARY_NORM_SCHEMA);
+        if(schema != null) {
+            job.getConfiguration().set(BINARY_NORM_SCHEMA, schema);
+        }
+    }
+
+    @Override
+    public void checkSchema(ResourceSchema schema) throws IOException {
+        if(schema == null) {
+            throw new IOException("Schema is required to store binary norm data, please check output schema.");
+        }
+        getUDFProperties().setProperty(BINARY_NORM_SCHEMA, ObjectSerializer.serialize(schema));
+    }
+
+    @Override
+    public void setStoreFuncUDFContextSignature(String signature) {
+        this.signature = signature;
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Override
+    public void prepareToWrite(RecordWriter writer) throws IOException {
+        this.writer = writer;
+    }
+
+    @Override
+    public void putNext(Tuple tuple) throws IOException {
+        try {
+            this.writer.write(NullWritable.get(), tuple);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private Properties getUDFProperties() {
+        return UDFContext.getUDFContext().getUDFProperties(getClass(), new String[] { this.signature });
+    }
+
+    /**
+     * Build header from schema of stored relation.
+     *
+     * @param schema
+     *            the pig schema
+     * @return the header
+     */
+    public static Header toHeader(ResourceSchema schema) {
+        ResourceFieldSchema[] fields = schema.getFields();
+        String[] names = new String[fields.length];
+        ColumnType[] types = new ColumnType[fields.length];
+        for(int i = 0; i < fields.length; i++) {
+            String name = fields[i].getName();
+            // remove prefix like 'Normalized::' after flatten
+            int index = (name == null ? -1 : name.lastIndexOf("::"));
+            names[i] = (index < 0 ? name : name.substring(index + 2));
+            switch(fields[i].getType()) {
+                case DataType.BOOLEAN:
+                case DataType.BYTE:
+                case DataType.INTEGER:
+                case DataType.LONG:
+                case DataType.FLOAT:
+                case DataType.DOUBLE:
+                    types[i] = ColumnType.FLOAT;
+                    break;
+                default:
+                    types[i] = ColumnType.OMITTED;
+                    break;
+            }
+        }
+        return new Header(names, types);
+    }
+
+    /**
+     * Convert tuple to row values of header.
+     *
+     * @param header
+     *            the header built by {@link #toHeader(ResourceSchema)}
+     * @param tuple
+     *            the stored tuple
+     * @param values
+     *            row values to be filled
+     * @throws IOException
+     *             if tuple size is not the same as header or any exception in reading tuple
+     */
+    public static void toValues(Header header, Tuple tuple, float[] values) throws IOException {
+        if(tuple.size() != header.size()) {
+            throw new IOException("Tuple size " + tuple.size() + " is not the same as schema size " + header.size());
+        }
+        for(int i = 0; i < values.length; i++) {
+            values[i] = (header.getType(i) == ColumnType.OMITTED ? 0f : toFloat(tuple.get(i)));
+        }
+    }
+
+    /*
+     * Null or invalid value is stored as NaN which is processed as missing value in training.
+     */
+    private static float toFloat(Object value) {
+        if(value == null) {
+            return Float.NaN;
+        }
+        if(value instanceof Number) {
+            return ((Number) value).floatValue();
+        }
+        if(value instanceof Boolean) {
+            return ((Boolean) value) ? 1f : 0f;
+        }
+        return NumberFormatUtils.getFloat(value.toString(), Float.NaN);
+    }
+
+    /**
+     * Output format of {@link BinaryNormStorage}, header is read from {@link BinaryNormStorage#BINARY_NORM_SCHEMA} of
+     * job configuration.
+     */
+    public static class BinaryNormOutputFormat extends FileOutputFormat<NullWritable, Tuple> {
+
+        @Override
+        public RecordWriter<NullWritable, Tuple> getRecordWriter(TaskAttemptContext context) throws IOException {
+            Configuration conf = context.getConfiguration();
+            String schema = conf.get(BINARY_NORM_SCHEMA);
+            if(schema == null) {
+                throw new IOException("Schema is required to store binary norm data, please check output schema.");
+            }
+            final Header header = toHeader((ResourceSchema) ObjectSerializer.deserialize(schema));
+            Path file = getDefaultWorkFile(context, "");
+            final BinaryNormWriter writer = new BinaryNormWriter(file.getFileSystem(conf).create(file, false), header);
+            return new RecordWriter<NullWritable, Tuple>() {
+
+                private final float[] values = new float[header.size()];
+
+                @Override
+                public void write(NullWritable key, Tuple tuple) throws IOException {
+                    toValues(header, tuple, this.values);
+                    writer.write(this.values);
+                }
+
+                @Override
+                public void close(TaskAttemptContext context) throws IOException {
+                    writer.close();
+                }
+            };
+        }
+    }
+
+}
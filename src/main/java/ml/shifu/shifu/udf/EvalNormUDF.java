@@ -41,6 +41,7 @@ import ml.shifu.shifu.container.obj.ColumnConfig;
 import ml.shifu.shifu.core.ModelRunner;
 import ml.shifu.shifu.core.Normalizer;
 import ml.shifu.shifu.core.dtrain.DTrainUtils;
+import ml.shifu.shifu.udf.NormalizeUDF.CategoryMissingNormType;
 import ml.shifu.shifu.udf.NormalizeUDF.PrecisionType;
 import ml.shifu.shifu.util.CommonUtils;
 import ml.shifu.shifu.util.Constants;
@@ -96,6 +97,11 @@ public class EvalNormUDF extends AbstractEvalUDF<Tuple> {
 
     private PrecisionType precisionType;
 
+    /**
+     * Reused buffer of normalized values of one column.
+     */
+    private double[] normValues = new double[1];
+
     public EvalNormUDF(String source, String pathModelConfig, String pathColumnConfig, String evalSetName, String scale)
             throws IOException {
         super(source, pathModelConfig, pathColumnConfig, evalSetName);
@@ -283,13 +289,17 @@ public class EvalNormUDF extends AbstractEvalUDF<Tuple> {
                 tuple.append(raw);
             } else {
                 ColumnConfig columnConfig = this.columnConfigMap.get(name);
-                List<Double> normVals = Normalizer.normalize(columnConfig, raw,
-                        this.modelConfig.getNormalizeStdDevCutOff(), this.modelConfig.getNormalizeType());
+                int normSize = Normalizer.getNormalizedSize(columnConfig, this.modelConfig.getNormalizeType());
+                if(this.normValues.length < normSize) {
+                    this.normValues = new double[normSize];
+                }
+                Normalizer.normalize(columnConfig, raw, this.modelConfig.getNormalizeStdDevCutOff(),
+                        this.modelConfig.getNormalizeType(), CategoryMissingNormType.POSRATE, this.normValues, 0);
                 if(this.isOutputRaw) {
                     tuple.append(raw);
                 }
-                for(Double normVal: normVals) {
-                    tuple.append(getOutputValue(normVal, true));
+                for(int j = 0; j < normSize; j++) {
+                    tuple.append(getOutputValue(this.normValues[j], true));
                 }
             }
         }
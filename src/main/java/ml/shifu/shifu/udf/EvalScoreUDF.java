@@ -40,13 +40,14 @@ import org.apache.pig.impl.util.UDFContext;
 import org.apache.pig.tools.pigstats.PigStatusReporter;
 import org.encog.ml.BasicML;
 
-import ml.shifu.shifu.column.NSColumn;
 import ml.shifu.shifu.container.CaseScoreResult;
 import ml.shifu.shifu.container.obj.RawSourceData.SourceType;
 import ml.shifu.shifu.core.ModelRunner;
+import ml.shifu.shifu.core.ScoreSchema;
 import ml.shifu.shifu.core.Scorer;
 import ml.shifu.shifu.core.dtrain.CommonConstants;
 import ml.shifu.shifu.core.dtrain.gs.GridSearch;
+import ml.shifu.shifu.core.eval.ScoreHistogram;
 import ml.shifu.shifu.core.model.ModelSpec;
 import ml.shifu.shifu.fs.ShifuFileUtils;
 
@@ -98,6 +99,11 @@ public class EvalScoreUDF extends AbstractEvalUDF<Tuple> {
      */
     private int segFilterSize = 0;
 
+    /**
+     * Headers and segment expansions bound to field indexes once for scoring
+     */
+    private ScoreSchema scoreSchema;
+
     /**
      * If multi threading scoring for multiple models
      */
@@ -112,6 +118,16 @@ public class EvalScoreUDF extends AbstractEvalUDF<Tuple> {
 
     private MultiClsTagPredictor mcPredictor;
 
+    /**
+     * Score histogram of records in current task, only built in regression eval when histogram output folder is set.
+     */
+    private ScoreHistogram scoreHistogram;
+
+    /**
+     * Folder to write {@link #scoreHistogram} in {@link #finish()}.
+     */
+    private String scoreHistogramOutput;
+
     public EvalScoreUDF(String source, String pathModelConfig, String pathColumnConfig, String evalSetName)
             throws IOException {
         this(source, pathModelConfig, pathColumnConfig, evalSetName, Integer.toString(Scorer.DEFAULT_SCORE_SCALE));
@@ -220,6 +236,18 @@ public class EvalScoreUDF extends AbstractEvalUDF<Tuple> {
         }
 
         this.isLinearTarget = CommonUtils.isLinearTarget(modelConfig, columnConfigList);
+
+        if(modelConfig.isRegression() && UDFContext.getUDFContext() != null
+                && UDFContext.getUDFContext().getJobConf() != null) {
+            Configuration jobConf = UDFContext.getUDFContext().getJobConf();
+            this.scoreHistogramOutput = jobConf.get(Constants.SHIFU_EVAL_SCORE_HISTOGRAM_OUTPUT);
+            if(StringUtils.isNotBlank(this.scoreHistogramOutput)
+                    && ScoreHistogram.isSupportedScoreSelector(evalConfig.getPerformanceScoreSelector())) {
+                int buckets = jobConf.getInt(Constants.SHIFU_EVAL_SCORE_HISTOGRAM_BUCKETS,
+                        ScoreHistogram.DEFAULT_BUCKET_NUM);
+                this.scoreHistogram = new ScoreHistogram(Double.parseDouble(this.scale) / buckets);
+            }
+        }
     }
 
     @SuppressWarnings("deprecation")
@@ -284,12 +312,15 @@ public class EvalScoreUDF extends AbstractEvalUDF<Tuple> {
             log.info("DEBUG: model cnt " + this.modelCnt + " sub models cnt " + modelRunner.getSubModelsCnt());
         }
 
-        Map<NSColumn, String> rawDataNsMap = CommonUtils.convertDataIntoNsMap(input, this.headers, this.segFilterSize);
-        if(MapUtils.isEmpty(rawDataNsMap)) {
+        if(this.scoreSchema == null) {
+            this.scoreSchema = ScoreSchema.bind(this.headers, this.segFilterSize);
+        }
+        String[] fields = CommonUtils.convertDataIntoFields(input, this.headers);
+        if(fields == null) {
             return null;
         }
 
-        String tag = CommonUtils.trimTag(rawDataNsMap.get(new NSColumn(modelConfig.getTargetColumnName(evalConfig))));
+        String tag = CommonUtils.trimTag(this.scoreSchema.get(fields, modelConfig.getTargetColumnName(evalConfig)));
 
         // filter invalid tag record out
         // disable the tag check, since there is no bad tag in eval data set
@@ -308,7 +339,7 @@ public class EvalScoreUDF extends AbstractEvalUDF<Tuple> {
          */
 
         long startTime = System.nanoTime();
-        CaseScoreResult cs = modelRunner.computeNsData(rawDataNsMap);
+        CaseScoreResult cs = modelRunner.compute(this.scoreSchema, fields);
         long runInterval = (System.nanoTime() - startTime) / 1000L;
 
         if(cs == null) {
@@ -323,7 +354,7 @@ public class EvalScoreUDF extends AbstractEvalUDF<Tuple> {
 
         String weight = null;
         if(StringUtils.isNotBlank(evalConfig.getDataSet().getWeightColumnName())) {
-            weight = rawDataNsMap.get(new NSColumn(evalConfig.getDataSet().getWeightColumnName()));
+            weight = this.scoreSchema.get(fields, evalConfig.getDataSet().getWeightColumnName());
         } else {
             weight = "1.0";
         }
@@ -337,6 +368,9 @@ public class EvalScoreUDF extends AbstractEvalUDF<Tuple> {
         if(this.isLinearTarget || modelConfig.isRegression()) {
             if(CollectionUtils.isNotEmpty(cs.getScores())) {
                 appendModelScore(tuple, cs, true);
+                if(this.scoreHistogram != null) {
+                    addToScoreHistogram(tag, weight, cs);
+                }
                 if(this.outputHiddenLayerIndex != 0) {
                     appendFirstHiddenOutputScore(tuple, cs.getHiddenLayerScores(), true);
                 }
@@ -370,7 +404,7 @@ public class EvalScoreUDF extends AbstractEvalUDF<Tuple> {
         List<String> metaColumns = evalConfig.getAllMetaColumns(modelConfig);
         if(CollectionUtils.isNotEmpty(metaColumns)) {
             for(String meta: metaColumns) {
-                tuple.append(rawDataNsMap.get(new NSColumn(meta)));
+                tuple.append(this.scoreSchema.get(fields, meta));
             }
         }
 
@@ -418,6 +452,29 @@ public class EvalScoreUDF extends AbstractEvalUDF<Tuple> {
         }
     }
 
+    /**
+     * Add record into score histogram, tag, weight and score checking is the same as
+     * {@link ml.shifu.shifu.core.ConfusionMatrix} in reading eval score output.
+     */
+    private void addToScoreHistogram(String tag, String weight, CaseScoreResult cs) {
+        if(StringUtils.isBlank(tag) || (!posTagSet.contains(tag) && !negTagSet.contains(tag))) {
+            return;
+        }
+        double dWeight = 1d;
+        if(StringUtils.isNotBlank(evalConfig.getDataSet().getWeightColumnName())) {
+            try {
+                dWeight = Double.parseDouble(weight);
+            } catch (Exception e) {
+                dWeight = 1d;
+            }
+            if(dWeight < 0d) {
+                dWeight = 1d;
+            }
+        }
+        this.scoreHistogram.add(ScoreHistogram.selectScore(cs, evalConfig.getPerformanceScoreSelector()),
+                posTagSet.contains(tag), dWeight);
+    }
+
     /**
      * Append model scores into tuple
      * 
@@ -471,6 +528,36 @@ public class EvalScoreUDF extends AbstractEvalUDF<Tuple> {
                 }
             }
         }
+
+        if(this.scoreHistogram != null) {
+            writeScoreHistogram(jobConf);
+        }
+    }
+
+    /**
+     * Write score histogram of current task, file is named by attempt id and duplicated files of the same task are
+     * skipped in merging.
+     */
+    private void writeScoreHistogram(Configuration jobConf) {
+        BufferedWriter writer = null;
+        try {
+            FileSystem fileSystem = FileSystem.get(jobConf);
+            fileSystem.mkdirs(new Path(this.scoreHistogramOutput));
+            String taskHistogramFile = this.scoreHistogramOutput + File.separator + "part-"
+                    + jobConf.get("mapreduce.task.attempt.id");
+            writer = ShifuFileUtils.getWriter(taskHistogramFile, SourceType.HDFS);
+            this.scoreHistogram.write(writer);
+        } catch (IOException e) {
+            // performance is wrong if histogram of any task is missing, fail this task to be retried
+            throw new RuntimeException("Error in writing score histogram", e);
+        } finally {
+            if(writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
     }
 
     @SuppressWarnings("deprecation")
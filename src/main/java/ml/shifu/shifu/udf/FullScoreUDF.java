@@ -15,10 +15,10 @@
  */
 package ml.shifu.shifu.udf;
 
-import ml.shifu.shifu.column.NSColumn;
 import ml.shifu.shifu.container.CaseScoreResult;
 import ml.shifu.shifu.container.obj.RawSourceData.SourceType;
 import ml.shifu.shifu.core.ModelRunner;
+import ml.shifu.shifu.core.ScoreSchema;
 import ml.shifu.shifu.util.CommonUtils;
 import ml.shifu.shifu.util.ModelSpecLoaderUtils;
 import org.apache.pig.data.Tuple;
@@ -28,7 +28,6 @@ import org.encog.ml.BasicML;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.Map;
 
 /**
  * FullScoreUDF class it to calculate the full score of evaluation data
@@ -38,6 +37,7 @@ public class FullScoreUDF extends AbstractTrainerUDF<Tuple> {
 
     private String[] header;
     private ModelRunner modelRunner;
+    private ScoreSchema scoreSchema;
 
     public FullScoreUDF(String source, String pathModelConfig, String pathColumnConfig, String pathHeader,
             String delimiter) throws Exception {
@@ -47,12 +47,13 @@ public class FullScoreUDF extends AbstractTrainerUDF<Tuple> {
         this.header = CommonUtils.getHeaders(pathHeader, delimiter, SourceType.valueOf(source));
         modelRunner = new ModelRunner(modelConfig, columnConfigList, this.header, modelConfig.getDataSetDelimiter(),
                 models);
+        this.scoreSchema = ScoreSchema.bind(this.header, 0);
     }
 
     public Tuple exec(Tuple input) throws IOException {
-        Map<NSColumn, String> rawDataNsMap = CommonUtils.convertDataIntoNsMap(input, this.header, 0);
+        String[] fields = CommonUtils.convertDataIntoFields(input, this.header);
 
-        CaseScoreResult cs = modelRunner.computeNsData(rawDataNsMap);
+        CaseScoreResult cs = (fields == null ? null : modelRunner.compute(this.scoreSchema, fields));
         if(cs == null) {
             log.error("Get null result.");
             return null;
@@ -70,7 +71,7 @@ public class FullScoreUDF extends AbstractTrainerUDF<Tuple> {
 
         List<String> metaList = modelConfig.getMetaColumnNames();
         for(String meta: metaList) {
-            tuple.append(rawDataNsMap.get(new NSColumn(meta)));
+            tuple.append(this.scoreSchema.get(fields, meta));
         }
 
         return tuple;
@@ -125,6 +125,11 @@ public class NormalizeUDF extends AbstractTrainerUDF<Tuple> {
 
     private boolean isLinearTarget = false;
 
+    /**
+     * Reused buffer of normalized values of one column, to avoid boxed list in each column of each record.
+     */
+    private double[] normValues = new double[1];
+
     public NormalizeUDF(String source, String pathModelConfig, String pathColumnConfig) throws Exception {
         this(source, pathModelConfig, pathColumnConfig, "false");
     }
@@ -398,10 +403,9 @@ public class NormalizeUDF extends AbstractTrainerUDF<Tuple> {
                         if(!config.isMeta() && config.isFinalSelect()) {
                             // for multiple classification, binPosRate means rate of such category over all counts,
                             // reuse binPosRate for normalize
-                            List<Double> normVals = Normalizer.fullNormalize(config, val, cutoff, normType,
-                                    this.categoryMissingNormType, this.categoricalIndexMap.get(config.getColumnNum()));
-                            for(Double normVal: normVals) {
-                                String formatVal = getOutputValue(normVal, true);
+                            int normSize = normalize(config, val);
+                            for(int j = 0; j < normSize; j++) {
+                                String formatVal = getOutputValue(this.normValues[j], true);
                                 compactVarMap.put(CommonUtils.normColumnName(config.getColumnName()), formatVal);
                             }
                         } else if(config.isMeta()) {
@@ -420,11 +424,9 @@ public class NormalizeUDF extends AbstractTrainerUDF<Tuple> {
                             // for multiple classification, binPosRate means rate of such category over all counts,
                             // reuse binPosRate for normalize
 
-                            List<Double> normVals = Normalizer.fullNormalize(config, val, cutoff, normType,
-                                    this.categoryMissingNormType, this.categoricalIndexMap.get(config.getColumnNum()));
-
-                            for(Double normVal: normVals) {
-                                appendOutputValue(tuple, normVal, true);
+                            int normSize = normalize(config, val);
+                            for(int j = 0; j < normSize; j++) {
+                                appendOutputValue(tuple, this.normValues[j], true);
                             }
                         } else {
                             tuple.append(config.isMeta() ? val : null);
@@ -488,10 +490,9 @@ public class NormalizeUDF extends AbstractTrainerUDF<Tuple> {
                     if(!config.isMeta() && config.isFinalSelect()) {
                         // for multiple classification, binPosRate means rate of such category over all counts,
                         // reuse binPosRate for normalize
-                        List<Double> normVals = Normalizer.fullNormalize(config, val, cutoff, normType,
-                                this.categoryMissingNormType, this.categoricalIndexMap.get(config.getColumnNum()));
-                        for(Double normVal: normVals) {
-                            String formatVal = getOutputValue(normVal, true);
+                        int normSize = normalize(config, val);
+                        for(int j = 0; j < normSize; j++) {
+                            String formatVal = getOutputValue(this.normValues[j], true);
                             compactVarMap.put(CommonUtils.normColumnName(config.getColumnName()), formatVal);
                         }
                     } else if(config.isMeta()) {
@@ -504,10 +505,9 @@ public class NormalizeUDF extends AbstractTrainerUDF<Tuple> {
                 } else {
                     // for others
                     if(CommonUtils.isToNormVariable(config, super.hasCandidates, modelConfig.isRegression())) {
-                        List<Double> normVals = Normalizer.fullNormalize(config, val, cutoff, normType,
-                                this.categoryMissingNormType, this.categoricalIndexMap.get(config.getColumnNum()));
-                        for(Double normVal: normVals) {
-                            appendOutputValue(tuple, normVal, true);
+                        int normSize = normalize(config, val);
+                        for(int j = 0; j < normSize; j++) {
+                            appendOutputValue(tuple, this.normValues[j], true);
                         }
                     } else {
                         tuple.append(config.isMeta() ? val : null);
@@ -531,6 +531,20 @@ public class NormalizeUDF extends AbstractTrainerUDF<Tuple> {
         return tuple;
     }
 
+    /**
+     * Normalize column value into {@link #normValues}.
+     * 
+     * @return number of normalized values
+     */
+    private int normalize(ColumnConfig config, String val) {
+        int size = Normalizer.getNormalizedSize(config, this.normType);
+        if(this.normValues.length < size) {
+            this.normValues = new double[size];
+        }
+        return Normalizer.normalize(config, val, this.cutoff, this.normType, this.categoryMissingNormType,
+                this.categoricalIndexMap.get(config.getColumnNum()), this.normValues, 0);
+    }
+
     /**
      * FLOAT7 is old with DecimalFormat, new one with FLOAT16, FLOAT32, DOUBLE64
      */
@@ -1401,6 +1401,33 @@ public final class CommonUtils {
         return rawDataNsMap;
     }
 
+    /**
+     * Convert tuple record into fields bound to {@link ml.shifu.shifu.core.ScoreSchema} of @header, null value is
+     * converted to empty value. If @tuple size is not equal @header size, return null
+     *
+     * @param tuple
+     *            - Tuple of a record
+     * @param header
+     *            - the column names for all the input data
+     * @return fields of the record
+     * @throws ExecException
+     *             - throw exception when operating tuple
+     */
+    public static String[] convertDataIntoFields(Tuple tuple, String[] header) throws ExecException {
+        if(tuple == null || tuple.size() == 0 || tuple.size() != header.length) {
+            log.error("Invalid input, the tuple.size is = " + (tuple == null ? null : tuple.size())
+                    + ", header.length = " + header.length);
+            return null;
+        }
+
+        String[] fields = new String[header.length];
+        for(int i = 0; i < header.length; i++) {
+            Object value = tuple.get(i);
+            fields[i] = (value == null ? "" : value.toString());
+        }
+        return fields;
+    }
+
     /**
      * Check whether to normalize one variable or not
      *
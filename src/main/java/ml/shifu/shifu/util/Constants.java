@@ -207,6 +207,12 @@ public interface Constants {
 
     public static final int SHIFU_DEFAULT_VARSEL_SE_MULTI_THREAD = 6;
 
+    public static final String SHIFU_VARSEL_SE_MAPPER_THREADS = "shifu.varsel.se.mapper.threads";
+
+    public static final String SHIFU_VARSEL_SE_BATCH_SIZE = "shifu.varsel.se.batch.size";
+
+    public static final int SHIFU_DEFAULT_VARSEL_SE_BATCH_SIZE = 256;
+
     public static final String FILTER_BY_ST = "ST";
 
     public static final String FILTER_BY_SE = "SE";
@@ -259,6 +265,18 @@ public interface Constants {
 
     public static final String SHIFU_EVAL_MAXMIN_SCORE_OUTPUT = "shifu.eval.maxmin.score.output";
 
+    /**
+     * If compute eval performance from merged score histograms of scoring mappers instead of globally sorted scores.
+     */
+    public static final String SHIFU_EVAL_SCORE_HISTOGRAM = "shifu.eval.score.histogram";
+
+    public static final String SHIFU_EVAL_SCORE_HISTOGRAM_OUTPUT = "shifu.eval.score.histogram.output";
+
+    /**
+     * Number of score histogram buckets in [0, score scale].
+     */
+    public static final String SHIFU_EVAL_SCORE_HISTOGRAM_BUCKETS = "shifu.eval.score.histogram.buckets";
+
     public static final String SHIFU_DTRAIN_PARALLEL = "shifu.dtrain.parallel";
 
     public static final String SHIFU_TMPMODEL_COPYTOLOCAL = "shifu.tmpmodel.copytolocal";
@@ -0,0 +1,301 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.util;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * {@link DelimitedRecord} is a reusable view of one delimited record over UTF-8 bytes of {@link Text}. Field offsets
+ * are indexed in one scan in {@link #reset(Text)}, numbers are parsed directly from bytes and Strings are only
+ * created by {@link #getString(int)} for fields which need them, such as categorical values.
+ *
+ * <p>
+ * Fields are the same as {@code Splitter.on(delimiter).split(text.toString())}: empty fields are kept and delimiter
+ * is matched from left to right. As UTF-8 is self-synchronizing, matching delimiter bytes is the same as matching
+ * delimiter chars.
+ *
+ * <p>
+ * The view refers to bytes of the text without copying, it is valid until the text is changed, and one instance
+ * should not be shared by threads.
+ */
+public final class DelimitedRecord {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int MAX_EXACT_FLOAT_MANTISSA = 1 << 24;
+
+    private static final float[] FLOAT_POWERS_OF_TEN = { 1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f,
+            1e10f };
+
+    private final byte[] delimiter;
+
+    private byte[] bytes;
+
+    /**
+     * Start offset of each field, and end offset of last field at {@link #size}.
+     */
+    private int[] starts = new int[64];
+
+    private int size;
+
+    /**
+     * Reused char view of one field for parsing.
+     */
+    private final FieldChars chars = new FieldChars();
+
+    /**
+     * @param delimiter
+     *            the field delimiter, should not be empty
+     */
+    public DelimitedRecord(String delimiter) {
+        if(delimiter == null || delimiter.isEmpty()) {
+            throw new IllegalArgumentException("Delimiter should not be null or empty.");
+        }
+        this.delimiter = delimiter.getBytes(UTF8);
+    }
+
+    /**
+     * Index fields of text.
+     *
+     * @param text
+     *            the text of record
+     * @return this record
+     */
+    public DelimitedRecord reset(Text text) {
+        return reset(text.getBytes(), text.getLength());
+    }
+
+    /**
+     * Index fields of UTF-8 bytes.
+     *
+     * @param bytes
+     *            the bytes of record
+     * @param length
+     *            valid length of bytes
+     * @return this record
+     */
+    public DelimitedRecord reset(byte[] bytes, int length) {
+        this.bytes = bytes;
+        this.size = 0;
+        byte first = this.delimiter[0];
+        int dl = this.delimiter.length;
+        int start = 0;
+        for(int i = 0; i <= length - dl; i++) {
+            if(bytes[i] == first && isDelimiterAt(i)) {
+                addStart(start);
+                start = i + dl;
+                i += dl - 1;
+            }
+        }
+        addStart(start);
+        // end of last field
+        addStart(length + dl);
+        this.size -= 1;
+        return this;
+    }
+
+    private boolean isDelimiterAt(int offset) {
+        for(int j = 1; j < this.delimiter.length; j++) {
+            if(this.bytes[offset + j] != this.delimiter[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addStart(int start) {
+        if(this.size == this.starts.length) {
+            this.starts = Arrays.copyOf(this.starts, this.size * 2);
+        }
+        this.starts[this.size++] = start;
+    }
+
+    /**
+     * @return number of fields
+     */
+    public int size() {
+        return this.size;
+    }
+
+    private int start(int index) {
+        if(index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Field index " + index + " out of record size " + this.size);
+        }
+        return this.starts[index];
+    }
+
+    private int end(int index) {
+        return this.starts[index + 1] - this.delimiter.length;
+    }
+
+    /**
+     * @param index
+     *            the field index
+     * @return byte length of field
+     */
+    public int length(int index) {
+        return end(index) - start(index);
+    }
+
+    /**
+     * @param index
+     *            the field index
+     * @return if field is empty
+     */
+    public boolean isEmpty(int index) {
+        return length(index) == 0;
+    }
+
+    /**
+     * @param index
+     *            the field index
+     * @return the field as a new String
+     */
+    public String getString(int index) {
+        int start = start(index);
+        return new String(this.bytes, start, end(index) - start, UTF8);
+    }
+
+    /**
+     * Parse double value of field the same as {@link Double#parseDouble(String)}, without creating String.
+     *
+     * @param index
+     *            the field index
+     * @param defaultValue
+     *            value returned if field is empty or not a valid double
+     * @return double value of field or default value
+     */
+    public double getDouble(int index, double defaultValue) {
+        return DoubleParser.parse(this.chars.of(start(index), end(index)), defaultValue);
+    }
+
+    /**
+     * Parse float value of field the same as {@link Float#parseFloat(String)}. Plain decimals with mantissa less than
+     * 2^24 and at most 10 fraction digits are parsed from bytes which is exact as both mantissa and power of ten are
+     * exact floats, other fields are delegated to {@link Float#parseFloat(String)}.
+     *
+     * @param index
+     *            the field index
+     * @param defaultValue
+     *            value returned if field is empty or not a valid float
+     * @return float value of field or default value
+     */
+    public float getFloat(int index, float defaultValue) {
+        int start = start(index);
+        int end = end(index);
+        if(start == end) {
+            return defaultValue;
+        }
+        int i = start;
+        boolean isNegative = false;
+        if(this.bytes[i] == '-' || this.bytes[i] == '+') {
+            isNegative = (this.bytes[i] == '-');
+            i++;
+        }
+        int mantissa = 0;
+        int digits = 0;
+        int fractions = -1;
+        for(; i < end; i++) {
+            byte b = this.bytes[i];
+            if(b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits += 1;
+                if(mantissa > MAX_EXACT_FLOAT_MANTISSA) {
+                    return parseFloat(index, defaultValue);
+                }
+                if(fractions >= 0) {
+                    fractions += 1;
+                }
+            } else if(b == '.' && fractions < 0) {
+                fractions = 0;
+            } else {
+                return parseFloat(index, defaultValue);
+            }
+        }
+        if(digits == 0 || fractions >= FLOAT_POWERS_OF_TEN.length) {
+            return parseFloat(index, defaultValue);
+        }
+        float value = (fractions <= 0 ? mantissa : mantissa / FLOAT_POWERS_OF_TEN[fractions]);
+        return isNegative ? -value : value;
+    }
+
+    private float parseFloat(int index, float defaultValue) {
+        try {
+            return Float.parseFloat(getString(index));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @param index
+     *            the field index
+     * @return the same hash code as {@link String#hashCode()} of field
+     */
+    public int hashCode(int index) {
+        int start = start(index);
+        int end = end(index);
+        int hash = 0;
+        for(int i = start; i < end; i++) {
+            byte b = this.bytes[i];
+            if(b < 0) {
+                // non-ASCII chars are decoded from multiple bytes
+                return getString(index).hashCode();
+            }
+            hash = 31 * hash + b;
+        }
+        return hash;
+    }
+
+    /**
+     * Char view of ASCII field bytes for number parsing, non-ASCII bytes are mapped to non-digit chars so they are
+     * invalid numbers the same as decoded chars.
+     */
+    private final class FieldChars implements CharSequence {
+        private int start;
+        private int end;
+
+        FieldChars of(int start, int end) {
+            this.start = start;
+            this.end = end;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return this.end - this.start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (DelimitedRecord.this.bytes[this.start + index] & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(DelimitedRecord.this.bytes, this.start + start, end - start, UTF8);
+        }
+
+        @Override
+        public String toString() {
+            return new String(DelimitedRecord.this.bytes, this.start, length(), UTF8);
+        }
+    }
+
+}
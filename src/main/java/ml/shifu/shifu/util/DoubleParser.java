@@ -0,0 +1,207 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.util;
+
+/**
+ * {@link DoubleParser} parses double value from char sequence without throwing {@link NumberFormatException}, a
+ * default value is returned for invalid input. This is for per record parsing in scoring in which invalid numbers
+ * like 'N/A' are common and exceptions are much more expensive than parsing.
+ *
+ * <p>
+ * Result is the same as {@link Double#parseDouble(String)} for all decimal inputs. Decimals with at most 15
+ * significant digits and exponent in [-22, 22] are computed directly which is exact, other valid decimals are
+ * delegated to {@link Double#parseDouble(String)} after syntax checking.
+ */
+public final class DoubleParser {
+
+    private static final int MAX_FAST_DIGITS = 15;
+
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private DoubleParser() {
+    }
+
+    /**
+     * Parse double value.
+     *
+     * @param str
+     *            the char sequence, leading and trailing whitespaces are ignored like {@link Double#parseDouble(String)}
+     * @param defaultValue
+     *            value returned if str is null, empty or not a valid double
+     * @return double value or default value
+     */
+    public static double parse(CharSequence str, double defaultValue) {
+        if(str == null) {
+            return defaultValue;
+        }
+        int start = 0;
+        int end = str.length();
+        while(start < end && str.charAt(start) <= ' ') {
+            start++;
+        }
+        while(end > start && str.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if(start == end) {
+            return defaultValue;
+        }
+
+        int i = start;
+        boolean isNegative = false;
+        char c = str.charAt(i);
+        if(c == '-' || c == '+') {
+            isNegative = (c == '-');
+            i++;
+            if(i == end) {
+                return defaultValue;
+            }
+        }
+        c = str.charAt(i);
+        if(c == 'N' || c == 'I') {
+            return parseSpecial(str, i, end, isNegative, defaultValue);
+        }
+        // Java float type suffix like '1.5d' is valid
+        char last = str.charAt(end - 1);
+        if(last == 'd' || last == 'D' || last == 'f' || last == 'F') {
+            end--;
+        }
+
+        long mantissa = 0L;
+        int digits = 0;
+        int mantissaDigits = 0;
+        int scale = 0;
+        boolean isDot = false;
+        for(; i < end; i++) {
+            c = str.charAt(i);
+            if(c >= '0' && c <= '9') {
+                digits++;
+                if(mantissa == 0L && c == '0') {
+                    // leading zeros are not significant
+                    if(isDot) {
+                        scale--;
+                    }
+                    continue;
+                }
+                if(mantissaDigits < MAX_FAST_DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if(isDot) {
+                        scale--;
+                    }
+                } else if(!isDot) {
+                    scale++;
+                }
+                mantissaDigits++;
+            } else if(c == '.' && !isDot) {
+                isDot = true;
+            } else {
+                break;
+            }
+        }
+        if(digits == 0) {
+            return isHex(str, start, end) ? parseSlow(str, start, end, defaultValue) : defaultValue;
+        }
+
+        int exponent = 0;
+        if(i < end) {
+            c = str.charAt(i);
+            if(c != 'e' && c != 'E') {
+                return isHex(str, start, end) ? parseSlow(str, start, end, defaultValue) : defaultValue;
+            }
+            i++;
+            boolean isNegativeExponent = false;
+            if(i < end && (str.charAt(i) == '-' || str.charAt(i) == '+')) {
+                isNegativeExponent = (str.charAt(i) == '-');
+                i++;
+            }
+            if(i == end) {
+                return defaultValue;
+            }
+            for(; i < end; i++) {
+                c = str.charAt(i);
+                if(c < '0' || c > '9') {
+                    return defaultValue;
+                }
+                if(exponent < 100000) {
+                    exponent = exponent * 10 + (c - '0');
+                }
+            }
+            if(isNegativeExponent) {
+                exponent = -exponent;
+            }
+        }
+
+        if(mantissaDigits > MAX_FAST_DIGITS) {
+            return parseSlow(str, start, end, defaultValue);
+        }
+        double value = mantissa;
+        int power = scale + exponent;
+        if(mantissa != 0L && power != 0) {
+            if(power > 0 && power < POWERS_OF_TEN.length) {
+                value *= POWERS_OF_TEN[power];
+            } else if(power < 0 && -power < POWERS_OF_TEN.length) {
+                value /= POWERS_OF_TEN[-power];
+            } else {
+                return parseSlow(str, start, end, defaultValue);
+            }
+        }
+        return isNegative ? -value : value;
+    }
+
+    private static double parseSpecial(CharSequence str, int from, int end, boolean isNegative, double defaultValue) {
+        if(equals(str, from, end, "NaN")) {
+            return Double.NaN;
+        }
+        if(equals(str, from, end, "Infinity")) {
+            return isNegative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        return defaultValue;
+    }
+
+    private static boolean equals(CharSequence str, int from, int end, String expected) {
+        if(end - from != expected.length()) {
+            return false;
+        }
+        for(int i = 0; i < expected.length(); i++) {
+            if(str.charAt(from + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isHex(CharSequence str, int from, int end) {
+        for(int i = from; i < end; i++) {
+            char c = str.charAt(i);
+            if(c == 'x' || c == 'X') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Only called for rare inputs like too many significant digits or hex floats.
+     */
+    private static double parseSlow(CharSequence str, int start, int end, double defaultValue) {
+        try {
+            return Double.parseDouble(str.subSequence(start, end).toString());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+}
@@ -21,6 +21,20 @@ public class MapReduceUtils {
      * @return - Splitter for MR jobs.
      */
     public static Splitter generateShifuOutputSplitter(String delimiter) {
+        return Splitter.on(decodeShifuOutputDelimiter(delimiter));
+    }
+
+    /**
+     * Build reusable {@link DelimitedRecord} for MR jobs by base64-encoded delimiter, fields are the same as the
+     * Splitter built by {@link #generateShifuOutputSplitter(String)}.
+     * @param delimiter - delimiter in context or properties
+     * @return - DelimitedRecord for MR jobs.
+     */
+    public static DelimitedRecord generateShifuOutputRecord(String delimiter) {
+        return new DelimitedRecord(decodeShifuOutputDelimiter(delimiter));
+    }
+
+    private static String decodeShifuOutputDelimiter(String delimiter) {
         try {
             delimiter = (StringUtils.isNotBlank(delimiter)
                     ? Base64Utils.base64Decode(delimiter) : Constants.DEFAULT_DELIMITER);
@@ -28,6 +42,6 @@ public class MapReduceUtils {
             delimiter = Constants.DEFAULT_DELIMITER;
         }
         LOG.info("The delimiter of normalization data is - {}", delimiter);
-        return Splitter.on(delimiter);
+        return delimiter;
     }
 }
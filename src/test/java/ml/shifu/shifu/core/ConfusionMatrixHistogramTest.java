@@ -0,0 +1,176 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import ml.shifu.shifu.container.PerformanceObject;
+import ml.shifu.shifu.container.obj.EvalConfig;
+import ml.shifu.shifu.container.obj.ModelConfig;
+import ml.shifu.shifu.container.obj.ModelTrainConf.ALGORITHM;
+import ml.shifu.shifu.container.obj.PerformanceResult;
+import ml.shifu.shifu.core.eval.ScoreHistogram;
+import ml.shifu.shifu.util.Constants;
+
+/**
+ * Performance computed from {@link ScoreHistogram} should be the same as from sorted eval scores, differences are
+ * bounded by records and scores in one histogram bucket.
+ */
+public class ConfusionMatrixHistogramTest {
+
+    private static final String SCORE_PATH = "test" + File.separator + "HistogramEvalScore";
+
+    private static final int RECORD_COUNT = 5000;
+
+    private static final double BUCKET_WIDTH = 0.5d;
+
+    private ModelConfig modelConfig;
+
+    private EvalConfig evalConfig;
+
+    /**
+     * Each record is {score, isPositive (1 or 0), weight}.
+     */
+    private List<double[]> records;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        this.modelConfig = ModelConfig.createInitModelConfig("test", ALGORITHM.NN, null, false);
+        this.evalConfig = this.modelConfig.getEvalConfigByName("Eval1");
+        this.evalConfig.getDataSet().setTargetColumnName("diagnosis");
+        this.evalConfig.getDataSet().setWeightColumnName("weight");
+        this.evalConfig.setPerformanceScoreSelector("mean");
+        Map<String, String> customPaths = new HashMap<String, String>();
+        customPaths.put(Constants.KEY_SCORE_PATH, SCORE_PATH);
+        this.evalConfig.setCustomPaths(customPaths);
+        new File("./models").mkdir();
+
+        Random random = new Random(17L);
+        this.records = new ArrayList<double[]>(RECORD_COUNT);
+        for(int i = 0; i < RECORD_COUNT; i++) {
+            double score = random.nextDouble() * 1000d;
+            // higher score is more likely to be positive
+            boolean isPositive = random.nextDouble() * 1000d < score * 0.8d + 100d;
+            this.records.add(new double[] { score, isPositive ? 1d : 0d, 1d + random.nextInt(5) });
+        }
+        // eval scores are sorted in descending order before buffered computing
+        Collections.sort(this.records, new Comparator<double[]>() {
+            @Override
+            public int compare(double[] o1, double[] o2) {
+                return Double.compare(o2[0], o1[0]);
+            }
+        });
+
+        List<String> lines = new ArrayList<String>(RECORD_COUNT);
+        for(double[] record: this.records) {
+            lines.add((record[1] > 0d ? "M" : "B") + "|" + record[2] + "|" + record[0]);
+        }
+        FileUtils.writeStringToFile(new File(SCORE_PATH, Constants.PIG_HEADER), "diagnosis|weight|mean");
+        FileUtils.writeLines(new File(SCORE_PATH, "part-m-00000"), lines);
+    }
+
+    @Test
+    public void testHistogramPerformance() throws IOException {
+        long posCount = 0L, negCount = 0L;
+        double posWeight = 0d, negWeight = 0d;
+        ScoreHistogram histogram = new ScoreHistogram(BUCKET_WIDTH);
+        for(double[] record: this.records) {
+            boolean isPositive = record[1] > 0d;
+            if(isPositive) {
+                posCount += 1L;
+                posWeight += record[2];
+            } else {
+                negCount += 1L;
+                negWeight += record[2];
+            }
+            histogram.add(record[0], isPositive, record[2]);
+        }
+
+        ConfusionMatrix cm = new ConfusionMatrix(this.modelConfig, null, this.evalConfig, this);
+        PerformanceResult expected = cm.bufferedComputeConfusionMatrixAndPerformance(posCount, negCount, posWeight,
+                negWeight, RECORD_COUNT, 1000d, 0d, SCORE_PATH, SCORE_PATH + File.separator + "sorted.json", false,
+                false, false);
+        PerformanceResult actual = cm.computeConfusionMatrixAndPerformance(histogram, posCount, negCount, posWeight,
+                negWeight, 1000d, 0d, SCORE_PATH + File.separator + "histogram.json", false, false, false);
+
+        // max change of rates in one bucket
+        long maxBucketCount = 0L;
+        double maxBucketWeight = 0d;
+        for(ScoreHistogram.Bucket bucket: histogram.getDescendingBuckets()) {
+            maxBucketCount = Math.max(maxBucketCount, bucket.getPosCount() + bucket.getNegCount());
+            maxBucketWeight = Math.max(maxBucketWeight, bucket.getPosWeight() + bucket.getNegWeight());
+        }
+        double rateDelta = (double) maxBucketCount / Math.min(posCount, negCount);
+        double weightedRateDelta = maxBucketWeight / Math.min(posWeight, negWeight);
+        Assert.assertTrue(rateDelta < 0.01d, "too many records in one bucket: " + maxBucketCount);
+
+        assertPerformanceList(actual.roc, expected.roc, rateDelta, false);
+        assertPerformanceList(actual.pr, expected.pr, rateDelta, false);
+        assertPerformanceList(actual.gains, expected.gains, rateDelta, false);
+        assertPerformanceList(actual.weightedRoc, expected.weightedRoc, weightedRateDelta, true);
+        assertPerformanceList(actual.weightedPr, expected.weightedPr, weightedRateDelta, true);
+        assertPerformanceList(actual.weightedGains, expected.weightedGains, weightedRateDelta, true);
+        Assert.assertEquals(actual.modelScoreList.size(), expected.modelScoreList.size());
+
+        // both axes of curve points may be moved by one bucket
+        Assert.assertEquals(actual.areaUnderRoc, expected.areaUnderRoc, 2 * rateDelta);
+        Assert.assertEquals(actual.areaUnderPr, expected.areaUnderPr, 2 * rateDelta);
+        Assert.assertEquals(actual.weightedAreaUnderRoc, expected.weightedAreaUnderRoc, 2 * weightedRateDelta);
+        Assert.assertEquals(actual.weightedAreaUnderPr, expected.weightedAreaUnderPr, 2 * weightedRateDelta);
+    }
+
+    private static void assertPerformanceList(List<PerformanceObject> actual, List<PerformanceObject> expected,
+            double delta, boolean isWeighted) {
+        Assert.assertEquals(actual.size(), expected.size());
+        for(int i = 0; i < expected.size(); i++) {
+            PerformanceObject actualPo = actual.get(i);
+            PerformanceObject expectedPo = expected.get(i);
+            String message = "bin " + i;
+            if(isWeighted) {
+                Assert.assertEquals(actualPo.weightedFpr, expectedPo.weightedFpr, delta, message);
+                Assert.assertEquals(actualPo.weightedRecall, expectedPo.weightedRecall, delta, message);
+                Assert.assertEquals(actualPo.weightedActionRate, expectedPo.weightedActionRate, delta, message);
+            } else {
+                Assert.assertEquals(actualPo.fpr, expectedPo.fpr, delta, message);
+                Assert.assertEquals(actualPo.recall, expectedPo.recall, delta, message);
+                Assert.assertEquals(actualPo.actionRate, expectedPo.actionRate, delta, message);
+            }
+            // bucket score is mean of scores in it
+            Assert.assertEquals(actualPo.binLowestScore, expectedPo.binLowestScore, BUCKET_WIDTH + 0.01d, message);
+        }
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(new File("test"));
+        FileUtils.deleteDirectory(new File("./models"));
+    }
+
+}
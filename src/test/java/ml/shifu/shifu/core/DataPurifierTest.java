@@ -78,6 +78,31 @@ public class DataPurifierTest {
         Assert.assertTrue(dataPurifier.isFilter("B|17.99|10.38|122.8|1001|0.1184|0.2776|0.3001|0.1471|0.2419|0.07871|1.095|0.9053|8.589|153.4|0.006399|0.04904|0.05373|0.01587|0.03003|0.006193|25.38|17.33|184.6|2019|0.1622|0.6656|0.7119|0.2654|0.4601|0.1189"));
     }
 
+    @Test
+    public void testCompiledFilter() throws IOException {
+        String record = "M|17.99|10.38|122.8|1001|0.1184|0.2776|0.3001|0.1471|0.2419|0.07871|1.095|0.9053|8.589|153.4|0.006399|0.04904|0.05373|0.01587|0.03003|0.006193|25.38|17.33|184.6|2019|0.1622|0.6656|0.7119|0.2654|0.4601|0.1189";
+
+        modelConfig.getDataSet().setFilterExpressions("diagnosis == \"M\" && column_6 > 1000");
+        dataPurifier = new DataPurifier(modelConfig, false);
+        Assert.assertTrue(dataPurifier.isFilter(record));
+        Assert.assertFalse(dataPurifier.isFilter(record.replace("|1001|", "|999|")));
+        Assert.assertFalse(dataPurifier.isFilter(record + "|0.5"));
+
+        modelConfig.getDataSet().setFilterExpressions("column_6 >= 1002 || diagnosis eq 'B'");
+        dataPurifier = new DataPurifier(modelConfig, false);
+        Assert.assertFalse(dataPurifier.isFilter(record));
+
+        modelConfig.getDataSet().setFilterExpressions("!(column_3 < 18.5) or diagnosis != null");
+        dataPurifier = new DataPurifier(modelConfig, false);
+        Assert.assertTrue(dataPurifier.isFilter(record));
+
+        // not compiled, evaluated by jexl with only diagnosis bound
+        modelConfig.getDataSet().setFilterExpressions("diagnosis.equals('M')");
+        dataPurifier = new DataPurifier(modelConfig, false);
+        Assert.assertTrue(dataPurifier.isFilter(record));
+        Assert.assertFalse(dataPurifier.isFilter("B" + record.substring(1)));
+    }
+
     @Test
     public void testFilterNull() throws IOException {
         modelConfig.getDataSet().setFilterExpressions("diagnosis != \"null\"");
@@ -16,6 +16,8 @@
 package ml.shifu.shifu.core;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import ml.shifu.shifu.container.obj.ColumnBinning;
 import ml.shifu.shifu.container.obj.ColumnConfig;
@@ -227,4 +229,44 @@ public class NormalizerTest {
         Assert.assertEquals(Normalizer.normalize(config, "c", null , NormType.ASIS_WOE).get(0), -0.1);
     }
 
+    @Test
+    public void testPrimitiveNormalize() {
+        ColumnConfig config = new ColumnConfig();
+        config.setMean(0.2);
+        config.setStdDev(1.0);
+        config.setColumnType(ColumnType.C);
+        config.setBinCategory(Arrays.asList(new String[] { "a", "b", "c" }));
+        config.getColumnBinning().setBinPosRate(Arrays.asList(new Double[] { 0.1, 0.15, 0.4, 0.25 }));
+
+        // one-hot values are written from offset, last one for missing category
+        float[] floats = new float[6];
+        Arrays.fill(floats, -1f);
+        Assert.assertEquals(Normalizer.getNormalizedSize(config, NormType.ONEHOT), 4);
+        Assert.assertEquals(Normalizer.normalize(config, "b", null, NormType.ONEHOT, CategoryMissingNormType.POSRATE,
+                null, floats, 1), 4);
+        Assert.assertEquals(floats, new float[] { -1f, 0f, 1f, 0f, 0f, -1f });
+        Normalizer.normalize(config, "x", null, NormType.ZSCALE_ONEHOT, CategoryMissingNormType.POSRATE, null,
+                floats, 1);
+        Assert.assertEquals(floats, new float[] { -1f, 0f, 0f, 0f, 1f, -1f });
+
+        double[] doubles = new double[2];
+        for(NormType type: new NormType[] { NormType.ZSCALE, NormType.OLD_ZSCALE, NormType.ASIS_PR }) {
+            Assert.assertEquals(Normalizer.normalize(config, "c", 4.0, type, CategoryMissingNormType.POSRATE,
+                    doubles, 1), 1);
+            Assert.assertEquals(doubles[1], Normalizer.normalize(config, "c", 4.0, type).get(0));
+        }
+
+        // category index is only used with index map
+        Map<String, Integer> cateIndexMap = new HashMap<String, Integer>();
+        cateIndexMap.put("c", 2);
+        Normalizer.normalize(config, "c", 4.0, NormType.ZSCALE_INDEX, CategoryMissingNormType.POSRATE, cateIndexMap,
+                doubles, 0);
+        Assert.assertEquals(doubles[0], 2d);
+        Normalizer.normalize(config, "d", 4.0, NormType.ZSCALE_INDEX, CategoryMissingNormType.POSRATE, cateIndexMap,
+                doubles, 0);
+        Assert.assertEquals(doubles[0], 3d);
+        Normalizer.normalize(config, "c", 4.0, NormType.ZSCALE_INDEX, CategoryMissingNormType.POSRATE, doubles, 0);
+        Assert.assertEquals(doubles[0], 0.2);
+    }
+
 }
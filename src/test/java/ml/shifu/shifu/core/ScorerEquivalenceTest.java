@@ -0,0 +1,347 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import ml.shifu.shifu.column.NSColumn;
+import ml.shifu.shifu.container.CaseScoreResult;
+import ml.shifu.shifu.container.ScoreObject;
+import ml.shifu.shifu.container.obj.ColumnConfig;
+import ml.shifu.shifu.container.obj.ColumnType;
+import ml.shifu.shifu.container.obj.ModelConfig;
+import ml.shifu.shifu.container.obj.RawSourceData.SourceType;
+import ml.shifu.shifu.core.dtrain.CommonConstants;
+import ml.shifu.shifu.core.dtrain.DTrainUtils;
+import ml.shifu.shifu.core.dtrain.dataset.BasicFloatNetwork;
+import ml.shifu.shifu.core.dtrain.dt.IndependentTreeModel;
+import ml.shifu.shifu.core.dtrain.dt.Node;
+import ml.shifu.shifu.core.dtrain.dt.Predict;
+import ml.shifu.shifu.core.dtrain.dt.Split;
+import ml.shifu.shifu.core.dtrain.dt.TreeNode;
+import ml.shifu.shifu.util.CommonUtils;
+
+import org.apache.commons.io.FileUtils;
+import org.encog.ml.BasicML;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Scores of {@link Scorer} fast paths should be the same as scoring raw data maps one by one by
+ * {@link Scorer#scoreNsData(Map)}.
+ */
+public class ScorerEquivalenceTest {
+
+    private static final String MODEL_SET = "src/test/resources/example/cancer-judgement/ModelStore/ModelSet1/";
+
+    private static final String DATA_SET = "src/test/resources/example/cancer-judgement/DataStore/DataSet1/";
+
+    /**
+     * More than one batch block of {@link BasicFloatNetwork#compute(double[][], double[])}.
+     */
+    private static final int RECORD_COUNT = 150;
+
+    /**
+     * column_4 is changed to categorical column to cover category index and positive rate inputs.
+     */
+    private static final int CATEGORICAL_COLUMN_NUM = 2;
+
+    private static final List<String> CATEGORIES = Arrays.asList("low", "mid", "high");
+
+    private ModelConfig modelConfig;
+
+    private List<ColumnConfig> columnConfigList;
+
+    private String[] header;
+
+    private List<String[]> records;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        this.modelConfig = CommonUtils.loadModelConfig(MODEL_SET + "ModelConfig.json", SourceType.LOCAL);
+        this.columnConfigList = CommonUtils.loadColumnConfigList(MODEL_SET + "ColumnConfig.json", SourceType.LOCAL);
+
+        ColumnConfig cateConfig = this.columnConfigList.get(CATEGORICAL_COLUMN_NUM);
+        cateConfig.setColumnType(ColumnType.C);
+        cateConfig.setBinBoundary(null);
+        cateConfig.setBinCategory(CATEGORIES);
+        // last one is missing bin
+        cateConfig.setBinPosCaseRate(Arrays.asList(0.25d, 0.4d, 0.6d, 0.35d));
+        cateConfig.setBinCountNeg(Arrays.asList(60, 50, 40, 10));
+        cateConfig.setBinCountPos(Arrays.asList(20, 33, 60, 5));
+        cateConfig.setMean(0.4d);
+        cateConfig.setStdDev(0.15d);
+
+        this.header = FileUtils.readFileToString(new File(DATA_SET + ".pig_header")).trim().split("\\|");
+        List<String> lines = FileUtils.readLines(new File(DATA_SET + "part-00"));
+        this.records = new ArrayList<String[]>(RECORD_COUNT);
+        for(int i = 0; i < RECORD_COUNT; i++) {
+            String[] fields = lines.get(i).trim().split("\\|", -1);
+            double value = Double.parseDouble(fields[CATEGORICAL_COLUMN_NUM]);
+            if(i % 7 == 0) {
+                fields[CATEGORICAL_COLUMN_NUM] = "";
+            } else if(i % 11 == 0) {
+                fields[CATEGORICAL_COLUMN_NUM] = "other";
+            } else {
+                fields[CATEGORICAL_COLUMN_NUM] = CATEGORIES.get(value < 17d ? 0 : (value < 22d ? 1 : 2));
+            }
+            // missing and invalid numerical values
+            if(i % 13 == 0) {
+                fields[3] = "";
+            }
+            if(i % 17 == 0) {
+                fields[4] = "?";
+            }
+            this.records.add(fields);
+        }
+    }
+
+    @Test
+    public void testNNBatchScores() {
+        this.modelConfig.getTrain().setAlgorithm("NN");
+        List<BasicML> models = new ArrayList<BasicML>();
+        models.add(buildNetwork(null));
+        models.add(buildNetwork(null));
+        // network on sub feature set has its own inputs
+        Set<Integer> featureSet = new HashSet<Integer>();
+        for(int i = 1; i <= 10; i++) {
+            featureSet.add(i);
+        }
+        models.add(buildNetwork(featureSet));
+
+        assertBatchScores(new Scorer(models, this.columnConfigList, "NN", this.modelConfig));
+    }
+
+    @Test
+    public void testTreeBatchScores() {
+        this.modelConfig.getTrain().setAlgorithm("GBT");
+        List<BasicML> models = new ArrayList<BasicML>();
+        models.add(new TreeModel(buildTreeModel()));
+
+        assertBatchScores(new Scorer(models, this.columnConfigList, "GBT", this.modelConfig));
+    }
+
+    @Test
+    public void testMultiThreadBatchScores() {
+        this.modelConfig.getTrain().setAlgorithm("NN");
+        List<BasicML> models = new ArrayList<BasicML>();
+        models.add(buildNetwork(null));
+        models.add(buildNetwork(null));
+
+        Scorer scorer = new Scorer(models, this.columnConfigList, "NN", this.modelConfig, true);
+        try {
+            assertBatchScores(scorer);
+        } finally {
+            scorer.close();
+        }
+    }
+
+    @Test
+    public void testNNFieldScores() {
+        this.modelConfig.getTrain().setAlgorithm("NN");
+        List<BasicML> models = new ArrayList<BasicML>();
+        models.add(buildNetwork(null));
+        Set<Integer> featureSet = new HashSet<Integer>();
+        for(int i = 1; i <= 10; i++) {
+            featureSet.add(i);
+        }
+        models.add(buildNetwork(featureSet));
+
+        assertFieldScores(new Scorer(models, this.columnConfigList, "NN", this.modelConfig));
+    }
+
+    @Test
+    public void testLRFieldScores() {
+        this.modelConfig.getTrain().setAlgorithm("LR");
+        List<BasicML> models = new ArrayList<BasicML>();
+        models.add(buildLR(new Random(3L)));
+        models.add(buildLR(new Random(5L)));
+
+        assertFieldScores(new Scorer(models, this.columnConfigList, "LR", this.modelConfig));
+    }
+
+    @Test
+    public void testTreeFieldScores() {
+        this.modelConfig.getTrain().setAlgorithm("GBT");
+        List<BasicML> models = new ArrayList<BasicML>();
+        models.add(new TreeModel(buildTreeModel()));
+
+        assertFieldScores(new Scorer(models, this.columnConfigList, "GBT", this.modelConfig));
+    }
+
+    @Test
+    public void testHiddenLayerOutputsFallback() {
+        this.modelConfig.getTrain().setAlgorithm("NN");
+        List<BasicML> models = new ArrayList<BasicML>();
+        models.add(buildNetwork(null));
+        // hidden layer outputs are not supported by field scoring, ModelRunner falls back to raw data map
+        ModelRunner runner = new ModelRunner(this.modelConfig, this.columnConfigList, this.header, "|", models, 1);
+        ScoreSchema schema = ScoreSchema.bind(this.header, 0);
+        for(int i = 0; i < this.records.size(); i++) {
+            String[] fields = this.records.get(i);
+            CaseScoreResult expected = runner.computeNsData(toNsDataMap(fields));
+            CaseScoreResult actual = runner.compute(schema, fields);
+            Assert.assertEquals(actual.getScores(), expected.getScores(), "record " + i);
+            Assert.assertEquals(actual.getHiddenLayerScores(), expected.getHiddenLayerScores(), "record " + i);
+        }
+
+        try {
+            runner.score(schema, this.records.get(0));
+            Assert.fail("Field scoring should not be supported with hidden layer outputs.");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    private void assertFieldScores(Scorer scorer) {
+        Assert.assertTrue(scorer.isFieldScoringSupported());
+        ScoreSchema schema = ScoreSchema.bind(this.header, 0);
+        for(int i = 0; i < this.records.size(); i++) {
+            String[] fields = this.records.get(i);
+            ScoreObject expected = scorer.scoreNsData(toNsDataMap(fields));
+            ScoreObject actual = scorer.scoreFields(schema, fields);
+            Assert.assertEquals(actual.getScores(), expected.getScores(), "record " + i);
+        }
+    }
+
+    private void assertBatchScores(Scorer scorer) {
+        List<Map<NSColumn, String>> rawNsDataMaps = new ArrayList<Map<NSColumn, String>>(this.records.size());
+        for(String[] fields: this.records) {
+            rawNsDataMaps.add(toNsDataMap(fields));
+        }
+
+        List<ScoreObject> batchScores = scorer.scoreNsData(rawNsDataMaps);
+        Assert.assertEquals(batchScores.size(), rawNsDataMaps.size());
+        for(int i = 0; i < rawNsDataMaps.size(); i++) {
+            ScoreObject expected = scorer.scoreNsData(rawNsDataMaps.get(i));
+            Assert.assertEquals(batchScores.get(i).getScores(), expected.getScores(), "record " + i);
+        }
+    }
+
+    Map<NSColumn, String> toNsDataMap(String[] fields) {
+        Map<NSColumn, String> rawNsDataMap = new HashMap<NSColumn, String>();
+        for(int i = 0; i < this.header.length; i++) {
+            rawNsDataMap.put(new NSColumn(this.header[i]), fields[i]);
+        }
+        return rawNsDataMap;
+    }
+
+    /**
+     * Network on final selected columns, or on featureSet if it is not null.
+     */
+    BasicFloatNetwork buildNetwork(Set<Integer> featureSet) {
+        int inputCount = 0;
+        for(ColumnConfig config: this.columnConfigList) {
+            if(config.isFinalSelect() && (featureSet == null || featureSet.contains(config.getColumnNum()))) {
+                inputCount += 1;
+            }
+        }
+        BasicFloatNetwork network = (BasicFloatNetwork) DTrainUtils.generateNetwork(inputCount, 1, 2,
+                Arrays.asList("tanh", "sigmoid"), Arrays.asList(8, 4), true, 0d, DTrainUtils.WGT_INIT_DEFAULT,
+                false, null);
+        network.setFeatureSet(featureSet);
+        return network;
+    }
+
+    /**
+     * LR on final selected columns with random weights, last weight is bias.
+     */
+    LR buildLR(Random random) {
+        int inputCount = 0;
+        for(ColumnConfig config: this.columnConfigList) {
+            if(config.isFinalSelect()) {
+                inputCount += 1;
+            }
+        }
+        double[] weights = new double[inputCount + 1];
+        for(int i = 0; i < weights.length; i++) {
+            weights[i] = random.nextDouble() - 0.5d;
+        }
+        return new LR(weights);
+    }
+
+    /**
+     * GBT regression model splits on numerical, categorical and missing value columns.
+     */
+    IndependentTreeModel buildTreeModel() {
+        Map<Integer, Double> numericalMeanMapping = new HashMap<Integer, Double>();
+        Map<Integer, String> numNameMapping = new HashMap<Integer, String>();
+        Map<Integer, List<String>> categoricalColumnNameNames = new HashMap<Integer, List<String>>();
+        Map<Integer, Map<String, Integer>> columnCategoryIndexMapping = new HashMap<Integer, Map<String, Integer>>();
+        Map<Integer, Integer> columnNumIndexMapping = new HashMap<Integer, Integer>();
+        for(ColumnConfig config: this.columnConfigList) {
+            if(!config.isFinalSelect()) {
+                continue;
+            }
+            numNameMapping.put(config.getColumnNum(), config.getColumnName());
+            columnNumIndexMapping.put(config.getColumnNum(), columnNumIndexMapping.size());
+            if(config.isCategorical()) {
+                categoricalColumnNameNames.put(config.getColumnNum(), config.getBinCategory());
+                Map<String, Integer> categoryIndexes = new HashMap<String, Integer>();
+                for(int i = 0; i < config.getBinCategory().size(); i++) {
+                    categoryIndexes.put(config.getBinCategory().get(i), i);
+                }
+                columnCategoryIndexMapping.put(config.getColumnNum(), categoryIndexes);
+            } else {
+                numericalMeanMapping.put(config.getColumnNum(), config.getMean());
+            }
+        }
+
+        Set<Short> leftCategories = new HashSet<Short>();
+        leftCategories.add((short) 0);
+        Node root0 = split(1, new Split(1, Split.CONTINUOUS, 14d, false, null),
+                split(2, new Split(CATEGORICAL_COLUMN_NUM, Split.CATEGORICAL, 0d, true, leftCategories), leaf(4, 0.2d),
+                        leaf(5, 0.5d)), leaf(3, 0.8d));
+        Node root1 = split(1, new Split(3, Split.CONTINUOUS, 90d, false, null), leaf(2, -0.3d),
+                split(3, new Split(4, Split.CONTINUOUS, 700d, false, null), leaf(6, 0.1d), leaf(7, 0.4d)));
+        Node root2 = split(1, new Split(CATEGORICAL_COLUMN_NUM, Split.CATEGORICAL, 0d, false, leftCategories),
+                leaf(2, 0.05d), leaf(3, -0.05d));
+
+        List<TreeNode> trees = new ArrayList<TreeNode>();
+        trees.add(new TreeNode(0, root0, 1d));
+        trees.add(new TreeNode(1, root1, 0.1d));
+        trees.add(new TreeNode(2, root2, 0.1d));
+        List<List<TreeNode>> bagTrees = new ArrayList<List<TreeNode>>();
+        bagTrees.add(trees);
+        List<List<Double>> bagWeights = new ArrayList<List<Double>>();
+        bagWeights.add(Arrays.asList(1d, 0.1d, 0.1d));
+
+        return new IndependentTreeModel(numericalMeanMapping, numNameMapping, categoricalColumnNameNames,
+                columnCategoryIndexMapping, columnNumIndexMapping, false, bagTrees, bagWeights, true, false, false,
+                "squared", "GBT", columnNumIndexMapping.size(), CommonConstants.TREE_FORMAT_VERSION);
+    }
+
+    private static Node leaf(int id, double predict) {
+        return new Node(id, new Predict(predict), 0d, true);
+    }
+
+    private static Node split(int id, Split split, Node left, Node right) {
+        Node node = new Node(id, left, right);
+        node.setSplit(split);
+        return node;
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.binning;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class UpdateBinningInfoPartitionerTest {
+
+    @Test
+    public void testAssignByCost() {
+        Map<Integer, Long> costs = new HashMap<Integer, Long>();
+        costs.put(0, 1000L);
+        for(int i = 1; i <= 10; i++) {
+            costs.put(i, 100L);
+        }
+        Map<Integer, Integer> partitions = UpdateBinningInfoPartitioner.assign(costs, 2);
+
+        long[] loads = new long[2];
+        for(Map.Entry<Integer, Long> entry: costs.entrySet()) {
+            loads[partitions.get(entry.getKey())] += entry.getValue();
+        }
+        // the large column is alone in one partition, all small columns in the other
+        Assert.assertEquals(loads[0], 1000L);
+        Assert.assertEquals(loads[1], 1000L);
+        Assert.assertEquals(UpdateBinningInfoPartitioner.assign(costs, 2), partitions);
+    }
+
+    @Test
+    public void testColumnStatsWriteAndRead() throws IOException {
+        ColumnStatsWritable stats = new ColumnStatsWritable();
+        stats.setColumnNum(3);
+        stats.setColumnType("C");
+        stats.setBinCategories(Arrays.asList("a", "b"));
+        stats.setBinCountNeg(new long[] { 1L, 2L, 3L });
+        stats.setBinCountPos(new long[] { 4L, 5L, 6L });
+        stats.setBinPosRate(new double[] { 0.8d, 0.7d, 0.6d });
+        stats.setBinWeightNeg(new double[] { 1d, 2d, 3d });
+        stats.setBinWeightPos(new double[] { 4d, 5d, 6d });
+        stats.setHasMetrics(true);
+        stats.setKs(12.3456789d);
+        stats.setBinCountWoe(Arrays.asList(0.1d, 0.2d, 0.3d));
+        stats.setBinWeightedWoe(Arrays.asList(0.1d, 0.2d, 0.3d));
+        stats.setCount(21L);
+        stats.setFrequentItems("a,b");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        stats.write(new DataOutputStream(bytes));
+        ColumnStatsWritable read = new ColumnStatsWritable();
+        read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        Assert.assertEquals(read.getColumnNum(), 3);
+        Assert.assertNull(read.getBinBoundaries());
+        Assert.assertEquals(read.getBinCategories(), Arrays.asList("a", "b"));
+        Assert.assertEquals(read.getBinCountPos(), new long[] { 4L, 5L, 6L });
+        Assert.assertEquals(read.getBinWeightNeg(), new double[] { 1d, 2d, 3d });
+        Assert.assertEquals(read.getKs(), 12.3456789d);
+        Assert.assertEquals(read.getBinCountWoe(), Arrays.asList(0.1d, 0.2d, 0.3d));
+        Assert.assertEquals(read.getCount(), 21L);
+        Assert.assertEquals(read.getFrequentItems(), "a,b");
+    }
+
+}
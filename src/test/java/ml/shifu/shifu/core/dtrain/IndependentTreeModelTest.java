@@ -1,21 +1,57 @@
 package ml.shifu.shifu.core.dtrain;
 
 import ml.shifu.shifu.combo.CsvFile;
+import ml.shifu.shifu.core.dtrain.dt.FlatDTSerializer;
 import ml.shifu.shifu.core.dtrain.dt.IndependentTreeModel;
+import ml.shifu.shifu.core.dtrain.dt.MappedTreeModel;
+import ml.shifu.shifu.core.dtrain.dt.Node;
+import ml.shifu.shifu.core.dtrain.dt.Predict;
+import ml.shifu.shifu.core.dtrain.dt.Split;
+import ml.shifu.shifu.core.dtrain.dt.TreeNode;
 import ml.shifu.shifu.util.Constants;
 import org.junit.Assert;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 /**
  * Created by zhanhu on 5/31/17.
  */
 public class IndependentTreeModelTest {
 
+    /**
+     * Raw numerical values with missing, NaN, invalid values and numbers in different types and text formats.
+     */
+    private static final Object[] NUM_VALUES = new Object[] { null, "", " ", "N/A", "NaN", "-NaN", Double.NaN,
+            Float.NaN, "Infinity", "-Infinity", Double.NEGATIVE_INFINITY, 0, -0d, "-0", 1, 2L, 0.5f, " 0.3",
+            "0.30", "1e1", "1.5d", "-2.25", "0x1p3", "1.0.0", 100d, "100", "123456789.123456789" };
+
+    /**
+     * Raw categorical values with missing, unseen categories, categories mapped to invalid indexes and non-String
+     * values.
+     */
+    private static final Object[] CATE_VALUES = new Object[] { null, "", " ", "a", "b", "c", "d", "e", "f", " a",
+            "A", "z", "neg", "x", " x", "1", "1.0", 1, 1d, Double.NaN, "NaN" };
+
+    /**
+     * Thresholds of numerical splits, most of them are raw or mean values to check values exactly.
+     */
+    private static final double[] THRESHOLDS = new double[] { Double.NEGATIVE_INFINITY, -2.25d, -0d, 0.3d, 0.5d,
+            Math.nextUp(0.5d), 1d, 1.5d, 2d, 8d, 10d, 50d, 100d, Math.nextUp(100d), 1.23456789123456789e8d,
+            Double.POSITIVE_INFINITY };
+
     @Test
     public void testSplit() {
         Assert.assertEquals("aa", StringUtils.split("aa@^bb@cc", Constants.CATEGORICAL_GROUP_VAL_DELIMITER)[0]);
@@ -45,4 +81,406 @@ public class IndependentTreeModelTest {
             System.out.println(instanceCodes);
         }
     }
+
+    @Test
+    public void testCompiledModeGBT() throws IOException {
+        InputStream input = IndependentTreeModelTest.class
+                .getResourceAsStream("/example/readablespec/model0.gbt");
+        IndependentTreeModel treeModel = null;
+        try {
+            treeModel = IndependentTreeModel.loadFromStream(input);
+        } finally {
+            input.close();
+        }
+
+        Random random = new Random(7L);
+        int columns = treeModel.getColumnNumIndexMapping().size();
+        for(int i = 0; i < 1000; i++) {
+            double[] data = new double[columns];
+            for(int j = 0; j < columns; j++) {
+                data[j] = random.nextGaussian() * 100d;
+            }
+            treeModel.setCompiledMode(false);
+            double[] expected = treeModel.compute(data);
+            treeModel.setCompiledMode(true);
+            assertSameScores(expected, treeModel.compute(data));
+        }
+    }
+
+    @Test
+    public void testBatchCompute() throws IOException {
+        InputStream input = IndependentTreeModelTest.class
+                .getResourceAsStream("/example/readablespec/model0.gbt");
+        IndependentTreeModel treeModel = null;
+        try {
+            treeModel = IndependentTreeModel.loadFromStream(input);
+        } finally {
+            input.close();
+        }
+
+        Random random = new Random(11L);
+        int columns = treeModel.getColumnNumIndexMapping().size();
+        double[][] rows = new double[200][columns];
+        for(double[] row: rows) {
+            for(int j = 0; j < columns; j++) {
+                row[j] = random.nextGaussian() * 100d;
+            }
+        }
+
+        for(boolean isCompiled: new boolean[] { false, true }) {
+            treeModel.setCompiledMode(isCompiled);
+            int outputCount = treeModel.getOutputCount();
+            double[] outputs = new double[rows.length * outputCount];
+            treeModel.compute(rows, outputs);
+            for(int i = 0; i < rows.length; i++) {
+                assertSameScores(treeModel.compute(rows[i]),
+                        Arrays.copyOfRange(outputs, i * outputCount, (i + 1) * outputCount));
+            }
+        }
+    }
+
+    @Test
+    public void testCompiledModeCategorical() {
+        IndependentTreeModel treeModel = newCategoricalModel();
+        double[] numValues = new double[] { -1d, 0.3d, 0.5d, 2d, Double.NaN };
+        double[] cateValues = new double[] { -1d, -0d, 0d, 0.95d, 1d, 2d, 3d, 3.5d, 4d, 10d, Double.NaN };
+        for(double num: numValues) {
+            for(double cate: cateValues) {
+                double[] data = new double[] { num, cate };
+                treeModel.setCompiledMode(false);
+                double[] expected = treeModel.compute(data);
+                treeModel.setCompiledMode(true);
+                assertSameScores(expected, treeModel.compute(data));
+            }
+        }
+    }
+
+    @Test
+    public void testFlatModelCategorical() throws IOException {
+        IndependentTreeModel treeModel = newCategoricalModel();
+        MappedTreeModel mappedModel = toMappedModel(treeModel);
+
+        Object[] numValues = new Object[] { null, "", "-1", " 0.3", "0.5", 2d, "N/A", Double.NaN };
+        Object[] cateValues = new Object[] { null, "", "a", "b", "c", "d", "e", 1 };
+        for(Object num: numValues) {
+            for(Object cate: cateValues) {
+                Map<String, Object> dataMap = new HashMap<String, Object>();
+                dataMap.put("num", num);
+                dataMap.put("cate", cate);
+                assertSameScores(treeModel.compute(dataMap), mappedModel.compute(dataMap));
+            }
+        }
+    }
+
+    @Test
+    public void testFlatModelGBT() throws IOException {
+        InputStream input = IndependentTreeModelTest.class
+                .getResourceAsStream("/example/readablespec/model0.gbt");
+        IndependentTreeModel treeModel = null;
+        try {
+            treeModel = IndependentTreeModel.loadFromStream(input);
+        } finally {
+            input.close();
+        }
+        MappedTreeModel mappedModel = toMappedModel(treeModel);
+        Assert.assertEquals(treeModel.getOutputCount(), mappedModel.getOutputCount());
+
+        Random random = new Random(13L);
+        int columns = treeModel.getColumnNumIndexMapping().size();
+        for(int i = 0; i < 1000; i++) {
+            double[] data = new double[columns];
+            for(int j = 0; j < columns; j++) {
+                data[j] = random.nextGaussian() * 100d;
+            }
+            assertSameScores(treeModel.compute(data), mappedModel.compute(data));
+        }
+    }
+
+    @Test
+    public void testDataMapConversion() {
+        Random random = new Random(17L);
+        for(int i = 0; i < 20; i++) {
+            IndependentTreeModel treeModel = newRandomModel(random);
+            for(int j = 0; j < 200; j++) {
+                assertDataMapConversion(treeModel, randomDataMap(random, treeModel));
+            }
+        }
+    }
+
+    @Test
+    public void testDataMapConversionAfterMappingChanged() {
+        Random random = new Random(19L);
+        IndependentTreeModel treeModel = newRandomModel(random);
+        assertDataMapConversion(random, treeModel);
+
+        Map<Integer, Double> means = new HashMap<Integer, Double>(treeModel.getNumericalMeanMapping());
+        means.put(0, -means.get(0));
+        means.put(2, 50d);
+        treeModel.setNumericalMeanMapping(means);
+        assertDataMapConversion(random, treeModel);
+
+        Map<Integer, String> names = new HashMap<Integer, String>(treeModel.getNumNameMapping());
+        names.put(0, "n0_renamed");
+        names.put(3, "c3_renamed");
+        treeModel.setNumNameMapping(names);
+        assertDataMapConversion(random, treeModel);
+
+        // one more category in column 3
+        Map<Integer, List<String>> categories = new HashMap<Integer, List<String>>(
+                treeModel.getCategoricalColumnNameNames());
+        categories.put(3, Arrays.asList("a", "b", "c", "d", "e", "f"));
+        treeModel.setCategoricalColumnNameNames(categories);
+        assertDataMapConversion(random, treeModel);
+
+        // reversed category indexes in column 3 and 'f' is added
+        Map<Integer, Map<String, Integer>> categoryIndexes = new HashMap<Integer, Map<String, Integer>>(
+                treeModel.getColumnCategoryIndexMapping());
+        Map<String, Integer> indexes = new HashMap<String, Integer>();
+        for(int i = 0; i < categories.get(3).size(); i++) {
+            indexes.put(categories.get(3).get(i), categories.get(3).size() - 1 - i);
+        }
+        categoryIndexes.put(3, indexes);
+        treeModel.setColumnCategoryIndexMapping(categoryIndexes);
+        assertDataMapConversion(random, treeModel);
+
+        // swap input indexes of numerical column 0 and categorical column 4
+        Map<Integer, Integer> columnMapping = new HashMap<Integer, Integer>(treeModel.getColumnNumIndexMapping());
+        Integer index = columnMapping.get(0);
+        columnMapping.put(0, columnMapping.get(4));
+        columnMapping.put(4, index);
+        treeModel.setColumnNumIndexMapping(columnMapping);
+        assertDataMapConversion(random, treeModel);
+    }
+
+    private void assertDataMapConversion(Random random, IndependentTreeModel treeModel) {
+        for(int i = 0; i < 200; i++) {
+            assertDataMapConversion(treeModel, randomDataMap(random, treeModel));
+        }
+    }
+
+    private void assertDataMapConversion(IndependentTreeModel treeModel, Map<String, Object> dataMap) {
+        double[] data = convertDataMap(treeModel, dataMap);
+        treeModel.setCompiledMode(false);
+        assertSameScores(treeModel.compute(data), treeModel.compute(dataMap));
+        treeModel.setCompiledMode(true);
+        assertSameScores(treeModel.compute(data), treeModel.compute(dataMap));
+    }
+
+    /**
+     * Per record conversion by model maps before input binder, kept as reference of input binder.
+     */
+    private static double[] convertDataMap(IndependentTreeModel treeModel, Map<String, Object> dataMap) {
+        Map<Integer, Double> means = treeModel.getNumericalMeanMapping();
+        double[] data = new double[treeModel.getColumnNumIndexMapping().size()];
+        for(Map.Entry<Integer, Integer> entry: treeModel.getColumnNumIndexMapping().entrySet()) {
+            double value = 0d;
+            Integer columnNum = entry.getKey();
+            Object obj = dataMap.get(treeModel.getNumNameMapping().get(columnNum));
+            if(treeModel.getCategoricalColumnNameNames().containsKey(columnNum)) {
+                int categoricalSize = treeModel.getCategoricalColumnNameNames().get(columnNum).size();
+                if(obj == null) {
+                    value = categoricalSize;
+                } else {
+                    Integer intIndex = treeModel.getColumnCategoryIndexMapping().get(columnNum).get(obj.toString());
+                    if(intIndex == null || intIndex < 0 || intIndex >= categoricalSize) {
+                        intIndex = categoricalSize;
+                    }
+                    value = intIndex;
+                }
+            } else {
+                double mean = (means.get(columnNum) == null ? 0d : means.get(columnNum));
+                if(obj == null || ((obj instanceof String) && ((String) obj).length() == 0)) {
+                    value = mean;
+                } else if(obj instanceof Number) {
+                    value = ((Number) obj).doubleValue();
+                } else {
+                    try {
+                        value = Double.parseDouble(obj.toString());
+                    } catch (NumberFormatException e) {
+                        value = mean;
+                    }
+                }
+                if(Double.isNaN(value)) {
+                    value = mean;
+                }
+            }
+            Integer index = entry.getValue();
+            if(index != null && index < data.length) {
+                data[index] = value;
+            }
+        }
+        return data;
+    }
+
+    private Map<String, Object> randomDataMap(Random random, IndependentTreeModel treeModel) {
+        Map<String, Object> dataMap = new HashMap<String, Object>();
+        for(Map.Entry<Integer, String> entry: treeModel.getNumNameMapping().entrySet()) {
+            Object[] values = treeModel.getCategoricalColumnNameNames().containsKey(entry.getKey()) ? CATE_VALUES
+                    : NUM_VALUES;
+            int index = random.nextInt(values.length + 2);
+            if(index == values.length) {
+                // column not in data map is missing value
+                continue;
+            }
+            if(index == values.length + 1) {
+                double value = random.nextGaussian() * 10d;
+                dataMap.put(entry.getValue(), random.nextBoolean() ? Double.valueOf(value) : Double.toString(value));
+            } else {
+                dataMap.put(entry.getValue(), values[index]);
+            }
+        }
+        dataMap.put("unused", "1");
+        return dataMap;
+    }
+
+    /**
+     * Random classification model on numerical columns 0, 1, 2, categorical columns 3, 4 and numerical column 5 which
+     * is mapped out of input array. Class value of each leaf is its node id, so scores show the leaf of each tree.
+     */
+    private IndependentTreeModel newRandomModel(Random random) {
+        Map<Integer, String> numNameMapping = new HashMap<Integer, String>();
+        Map<Integer, Double> means = new HashMap<Integer, Double>();
+        for(int i = 0; i < 6; i++) {
+            numNameMapping.put(i, (i == 3 || i == 4 ? "c" : "n") + i);
+        }
+        means.put(0, THRESHOLDS[1 + random.nextInt(THRESHOLDS.length - 2)]);
+        means.put(1, random.nextGaussian());
+        // no mean of column 2, 0 is used for missing value
+
+        Map<Integer, List<String>> categories = new HashMap<Integer, List<String>>();
+        categories.put(3, Arrays.asList("a", "b", "c", "d", "e"));
+        categories.put(4, Arrays.asList("", "x", " x", "1", "1.0"));
+        Map<Integer, Map<String, Integer>> categoryIndexes = new HashMap<Integer, Map<String, Integer>>();
+        for(Map.Entry<Integer, List<String>> entry: categories.entrySet()) {
+            Map<String, Integer> indexes = new HashMap<String, Integer>();
+            List<String> values = new ArrayList<String>(entry.getValue());
+            Collections.shuffle(values, random);
+            for(int i = 0; i < values.size(); i++) {
+                indexes.put(values.get(i), i);
+            }
+            // invalid indexes are in missing bin
+            indexes.put("z", values.size() + 2);
+            indexes.put("neg", -1);
+            categoryIndexes.put(entry.getKey(), indexes);
+        }
+
+        List<Integer> inputIndexes = Arrays.asList(0, 1, 2, 3, 4);
+        Collections.shuffle(inputIndexes, random);
+        Map<Integer, Integer> columnMapping = new HashMap<Integer, Integer>();
+        for(int i = 0; i < inputIndexes.size(); i++) {
+            columnMapping.put(i, inputIndexes.get(i));
+        }
+        columnMapping.put(5, 9);
+
+        List<TreeNode> bag = new ArrayList<TreeNode>();
+        List<Double> weights = new ArrayList<Double>();
+        for(int i = 0; i < 50; i++) {
+            bag.add(new TreeNode(i, randomTree(random, Node.ROOT_INDEX, 3, categories), 1d));
+            weights.add(1d);
+        }
+        List<List<TreeNode>> trees = new ArrayList<List<TreeNode>>();
+        trees.add(bag);
+        List<List<Double>> bagWeights = new ArrayList<List<Double>>();
+        bagWeights.add(weights);
+
+        return new IndependentTreeModel(means, numNameMapping, categories, categoryIndexes, columnMapping, false,
+                trees, bagWeights, false, true, false, "squared", "RF", 5, 4);
+    }
+
+    private Node randomTree(Random random, int id, int depth, Map<Integer, List<String>> categories) {
+        if(depth == 0 || random.nextInt(5) == 0) {
+            return new Node(id, new Predict(0d, (byte) id), 0d, true);
+        }
+        Node node = new Node(id);
+        int columnNum = random.nextInt(5);
+        if(categories.containsKey(columnNum)) {
+            // categories of split are in [0, size], the last one is missing bin
+            Set<Short> cates = new HashSet<Short>();
+            for(short i = 0; i <= categories.get(columnNum).size(); i++) {
+                if(random.nextBoolean()) {
+                    cates.add(i);
+                }
+            }
+            node.setSplit(new Split(columnNum, Split.CATEGORICAL, 0d, random.nextBoolean(), cates));
+        } else {
+            node.setSplit(new Split(columnNum, Split.CONTINUOUS, THRESHOLDS[random.nextInt(THRESHOLDS.length)], true,
+                    null));
+        }
+        node.setLeft(randomTree(random, Node.leftIndex(id), depth - 1, categories));
+        node.setRight(randomTree(random, Node.rightIndex(id), depth - 1, categories));
+        return node;
+    }
+
+    private MappedTreeModel toMappedModel(IndependentTreeModel treeModel) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        FlatDTSerializer.save(treeModel, output);
+        return MappedTreeModel.load(ByteBuffer.wrap(output.toByteArray()), null);
+    }
+
+    private IndependentTreeModel newCategoricalModel() {
+        // column 0 is numerical, column 1 is categorical with 4 categories: a, b, c, d
+        Map<Integer, String> numNameMapping = new HashMap<Integer, String>();
+        numNameMapping.put(0, "num");
+        numNameMapping.put(1, "cate");
+        Map<Integer, List<String>> categories = new HashMap<Integer, List<String>>();
+        categories.put(1, Arrays.asList("a", "b", "c", "d"));
+        Map<Integer, Map<String, Integer>> categoryIndexes = new HashMap<Integer, Map<String, Integer>>();
+        Map<String, Integer> indexes = new HashMap<String, Integer>();
+        for(int i = 0; i < categories.get(1).size(); i++) {
+            indexes.put(categories.get(1).get(i), i);
+        }
+        categoryIndexes.put(1, indexes);
+        Map<Integer, Integer> columnMapping = new HashMap<Integer, Integer>();
+        columnMapping.put(0, 0);
+        columnMapping.put(1, 1);
+        Map<Integer, Double> means = new HashMap<Integer, Double>();
+        means.put(0, 0.5d);
+
+        List<TreeNode> bag = new ArrayList<TreeNode>();
+        List<Double> weights = new ArrayList<Double>();
+        // left categories with missing category
+        bag.add(new TreeNode(0, categoricalTree(true, (short) 0, (short) 4), 0.1d));
+        weights.add(0.1d);
+        // right categories
+        bag.add(new TreeNode(1, categoricalTree(false, (short) 1, (short) 3), 0.1d));
+        weights.add(0.1d);
+        List<List<TreeNode>> trees = new ArrayList<List<TreeNode>>();
+        trees.add(bag);
+        List<List<Double>> bagWeights = new ArrayList<List<Double>>();
+        bagWeights.add(weights);
+
+        return new IndependentTreeModel(means, numNameMapping, categories, categoryIndexes, columnMapping, false,
+                trees, bagWeights, true, false, false, "squared", "GBT", 2, 4);
+    }
+
+    private Node categoricalTree(boolean isLeft, short... cates) {
+        Node root = new Node(Node.ROOT_INDEX);
+        root.setSplit(new Split(0, Split.CONTINUOUS, 0.5d, true, null));
+        root.setLeft(leaf(Node.leftIndex(Node.ROOT_INDEX), 1d));
+        Node right = new Node(Node.rightIndex(Node.ROOT_INDEX));
+        right.setSplit(new Split(1, Split.CATEGORICAL, 0d, isLeft, new HashSet<Short>(Arrays.asList(toBoxed(cates)))));
+        right.setLeft(leaf(Node.leftIndex(right.getId()), 2d));
+        right.setRight(leaf(Node.rightIndex(right.getId()), 3d));
+        root.setRight(right);
+        return root;
+    }
+
+    private Short[] toBoxed(short[] values) {
+        Short[] boxed = new Short[values.length];
+        for(int i = 0; i < values.length; i++) {
+            boxed[i] = values[i];
+        }
+        return boxed;
+    }
+
+    private Node leaf(int id, double predict) {
+        return new Node(id, new Predict(predict), 0d, true);
+    }
+
+    private void assertSameScores(double[] expected, double[] actual) {
+        Assert.assertEquals(expected.length, actual.length);
+        for(int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(Double.doubleToLongBits(expected[i]), Double.doubleToLongBits(actual[i]));
+        }
+    }
 }
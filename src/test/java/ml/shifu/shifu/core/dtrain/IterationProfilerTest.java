@@ -0,0 +1,150 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import ml.shifu.shifu.core.dtrain.IterationProfile.Phase;
+import ml.shifu.shifu.util.JSONUtils;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+public class IterationProfilerTest {
+
+    private static final File TMP_DIR = new File("target/tmp/IterationProfilerTest");
+
+    @Test
+    public void testProfileMerge() throws IOException {
+        IterationProfile worker1 = new IterationProfile(1);
+        worker1.set(Phase.WORKER_COMPUTE, 100L);
+        worker1.add(Phase.WORKER_SCAN, 5L);
+        worker1.add(Phase.WORKER_SCAN, 5L);
+        IterationProfile worker2 = new IterationProfile(1);
+        worker2.set(Phase.WORKER_COMPUTE, 300L);
+        worker2.set(Phase.WORKER_SCAN, 20L);
+
+        IterationProfile master = new IterationProfile(0).merge(worker1).merge(worker2).merge(null);
+        master.set(Phase.MASTER_MERGE, 50L);
+        Assert.assertEquals(master.getWorkers(), 2);
+        Assert.assertEquals(master.getMax(Phase.WORKER_COMPUTE), 300L);
+        Assert.assertEquals(master.getSum(Phase.WORKER_COMPUTE), 400L);
+        Assert.assertEquals(master.getAverage(Phase.WORKER_COMPUTE), 200L);
+        Assert.assertEquals(master.getMax(Phase.WORKER_SCAN), 20L);
+        Assert.assertEquals(master.getAverage(Phase.WORKER_SCAN), 15L);
+        // master phases are measured once and not averaged over workers
+        Assert.assertEquals(master.getAverage(Phase.MASTER_MERGE), 50L);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        IterationProfile.write(out, master);
+        IterationProfile.write(out, null);
+        out.close();
+        Assert.assertEquals(IterationProfile.sizeOf(master), bytes.size() - 2L);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        IterationProfile copy = IterationProfile.read(in);
+        Assert.assertNull(IterationProfile.read(in));
+        Assert.assertEquals(copy.getWorkers(), master.getWorkers());
+        for(Phase phase: Phase.values()) {
+            Assert.assertEquals(copy.getMax(phase), master.getMax(phase));
+            Assert.assertEquals(copy.getSum(phase), master.getSum(phase));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTimelineJson() throws IOException {
+        IterationProfiler profiler = new IterationProfiler();
+        profiler.add(1, profile(3L, 0L, 100L, 2048L));
+        profiler.add(2, profile(5L, 9L, 100L, 0L));
+        // old master result without profile
+        profiler.add(3, null);
+        Assert.assertEquals(profiler.getIterations(), 2);
+
+        Map<String, Long> counters = profiler.getCounters();
+        Assert.assertEquals(counters.get("ITERATIONS"), Long.valueOf(2L));
+        Assert.assertEquals(counters.get("WORKER_COMPUTE_MS"), Long.valueOf(8L));
+        Assert.assertEquals(counters.get("WORKER_COMPUTE_MAX_MS"), Long.valueOf(5L));
+        Assert.assertEquals(counters.get("MASTER_COMPUTE_MS"), Long.valueOf(9L));
+        Assert.assertEquals(counters.get("RESULT_BYTES"), Long.valueOf(2048L));
+        Assert.assertEquals(counters.get("RESULT_BYTES_MAX"), Long.valueOf(2048L));
+        // wait phases are not bottleneck
+        Assert.assertEquals(profiler.getBottleneck(), Phase.MASTER_COMPUTE);
+
+        FileSystem fs = FileSystem.getLocal(new Configuration());
+        Path path = new Path(TMP_DIR.getPath(), "model0" + IterationProfiler.PROFILE_FILE_SUFFIX);
+        profiler.write(fs, path);
+
+        Map<String, Long> readCounters = IterationProfiler.readCounters(fs, path);
+        Assert.assertEquals(readCounters.remove("BOTTLENECK_MASTER_COMPUTE"), Long.valueOf(1L));
+        Assert.assertEquals(readCounters, counters);
+
+        Map<String, Object> json = JSONUtils.readValue(new File(path.toString()), Map.class);
+        Assert.assertEquals(json.get("counterGroup"), IterationProfiler.COUNTER_GROUP);
+        List<Map<String, Object>> iterations = (List<Map<String, Object>>) json.get("iterations");
+        Assert.assertEquals(iterations.size(), 2);
+        Assert.assertEquals(((Number) iterations.get(1).get("iteration")).intValue(), 2);
+        Map<String, Object> compute = (Map<String, Object>) iterations.get(0).get(Phase.WORKER_COMPUTE.name());
+        Assert.assertEquals(((Number) compute.get("max")).longValue(), 3L);
+
+        // 2KB in bucket [2, 4) and 0 in bucket 0
+        Map<String, Object> histogram = (Map<String, Object>) ((Map<String, Object>) json.get("histograms"))
+                .get(Phase.RESULT_BYTES.name());
+        Assert.assertEquals(histogram.get("unit"), "KB");
+        Assert.assertEquals(toLongs((List<Number>) histogram.get("counts")), Arrays.asList(1L, 0L, 1L));
+        Assert.assertEquals(toLongs((List<Number>) histogram.get("upperBounds")), Arrays.asList(1L, 2L, 4L));
+
+        Assert.assertTrue(IterationProfiler.readCounters(fs, new Path(TMP_DIR.getPath(), "notExisting")).isEmpty());
+    }
+
+    private static IterationProfile profile(long computeMillis, long masterMillis, long waitMillis, long bytes) {
+        IterationProfile profile = new IterationProfile(1);
+        profile.set(Phase.WORKER_COMPUTE, TimeUnit.MILLISECONDS.toNanos(computeMillis));
+        profile.set(Phase.MASTER_COMPUTE, TimeUnit.MILLISECONDS.toNanos(masterMillis));
+        profile.set(Phase.WORKER_WAIT, TimeUnit.MILLISECONDS.toNanos(waitMillis));
+        profile.set(Phase.RESULT_BYTES, bytes);
+        return profile;
+    }
+
+    private static List<Long> toLongs(List<Number> numbers) {
+        Long[] values = new Long[numbers.size()];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = numbers.get(i).longValue();
+        }
+        return Arrays.asList(values);
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(TMP_DIR);
+    }
+
+}
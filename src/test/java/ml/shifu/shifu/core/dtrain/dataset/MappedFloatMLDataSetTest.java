@@ -0,0 +1,82 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.dataset;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+public class MappedFloatMLDataSetTest {
+
+    private static final File FILE = new File("mapped_float_dataset.bin");
+
+    @Test
+    public void testMultipleSegments() {
+        // 3 input + 1 ideal + 1 significance is 20 bytes, 4 records in each segment
+        MappedFloatMLDataSet dataSet = new MappedFloatMLDataSet(FILE, 80L);
+        dataSet.beginLoad(3, 1);
+        for(int i = 0; i < 10; i++) {
+            FloatMLDataPair pair = new BasicFloatMLDataPair(new BasicFloatMLData(new float[] { i, i + 1, i + 2 }),
+                    new BasicFloatMLData(new float[] { i % 2 }));
+            pair.setSignificance(i * 0.5f);
+            dataSet.add(pair);
+        }
+        dataSet.endLoad();
+        Assert.assertEquals(dataSet.getRecordCount(), 10L);
+
+        FloatMLDataPair pair = BasicFloatMLDataPair.createPair(3, 1);
+        for(int i = 9; i >= 0; i--) {
+            dataSet.getRecord(i, pair);
+            Assert.assertEquals(pair.getInputArray(), new float[] { i, i + 1, i + 2 });
+            Assert.assertEquals(pair.getIdealArray()[0], (float) (i % 2));
+            Assert.assertEquals(pair.getSignificance(), i * 0.5f);
+        }
+
+        int count = 0;
+        for(FloatMLDataPair next: dataSet) {
+            Assert.assertEquals(next.getInputArray()[0], (float) count);
+            count += 1;
+        }
+        Assert.assertEquals(count, 10);
+        dataSet.close();
+    }
+
+    @Test
+    public void testMemoryDiskSpill() {
+        MemoryDiskFloatMLDataSet dataSet = new MemoryDiskFloatMLDataSet(1L, FILE.getPath(), 2, 1);
+        dataSet.beginLoad(2, 1);
+        for(int i = 0; i < 5; i++) {
+            dataSet.add(new BasicFloatMLData(new float[] { i, -i }), new BasicFloatMLData(new float[] { 1f }));
+        }
+        dataSet.endLoad();
+        Assert.assertEquals(dataSet.getDiskCount(), 5L);
+
+        FloatMLDataPair pair = BasicFloatMLDataPair.createPair(2, 1);
+        dataSet.getRecord(3, pair);
+        Assert.assertEquals(pair.getInputArray(), new float[] { 3f, -3f });
+        Assert.assertEquals(pair.getSignificance(), 1f);
+        dataSet.close();
+    }
+
+    @AfterClass
+    public void cleanup() {
+        FileUtils.deleteQuietly(FILE);
+    }
+
+}
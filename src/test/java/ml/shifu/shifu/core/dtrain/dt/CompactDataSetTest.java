@@ -0,0 +1,95 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.dt;
+
+import ml.shifu.shifu.core.dtrain.dt.DTWorker.Data;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CompactDataSetTest {
+
+    @Test
+    public void testByteAndShortInputs() {
+        for(boolean isByteInput: new boolean[] { true, false }) {
+            CompactDataSet dataSet = new CompactDataSet(Long.MAX_VALUE, 3, isByteInput, 4);
+            int size = CompactDataSet.BLOCK_ROWS + 10;
+            for(int i = 0; i < size; i++) {
+                short[] inputs = new short[] { (short) (i % 256), 255, 0 };
+                dataSet.append(new Data(inputs, i * 0.5f, i * 0.25f, i % 2, 1f + i, new float[] { i % 3, 1f }));
+            }
+            dataSet.switchState();
+            Assert.assertEquals(dataSet.size(), size);
+
+            Data data = null;
+            for(int i = 0; i < size; i++) {
+                data = dataSet.get(i, data);
+                Assert.assertEquals(data.getInput(0), (short) (i % 256));
+                Assert.assertEquals(data.getInput(1), (short) 255);
+                Assert.assertEquals(data.getInput(2), (short) 0);
+                Assert.assertEquals(data.getPredict(), i * 0.5f);
+                Assert.assertEquals(data.getOutput(), i * 0.25f);
+                Assert.assertEquals(data.getLabel(), (float) (i % 2));
+                Assert.assertEquals(data.getSignificance(), 1f + i);
+                // weights of length 2 are repeated in width 4, tree id is still mod of original length
+                for(int treeId = 0; treeId < 8; treeId++) {
+                    Assert.assertEquals(data.getSubsampleWeight(treeId), treeId % 2 == 0 ? (float) (i % 3) : 1f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testUpdateInPlace() {
+        CompactDataSet dataSet = new CompactDataSet(Long.MAX_VALUE, 2, true, 1);
+        for(int i = 0; i < 10; i++) {
+            dataSet.append(new Data(new short[] { 1, 2 }, 0f, 0f, 1f, 1f));
+        }
+        dataSet.switchState();
+
+        int index = 0;
+        for(Data data: dataSet) {
+            data.setPredict(index);
+            data.setOutput(-index);
+            data.setSubsampleWeight(index, 0f);
+            index += 1;
+        }
+
+        for(int i = 0; i < 10; i++) {
+            Data data = dataSet.get(i);
+            Assert.assertEquals(data.getPredict(), (float) i);
+            Assert.assertEquals(data.getOutput(), (float) -i);
+            Assert.assertEquals(data.getSubsampleWeight(0), 0f);
+        }
+    }
+
+    @Test
+    public void testMemoryLimit() {
+        // 2 byte inputs + 4 floats + 1 weight is 22 bytes per record
+        CompactDataSet dataSet = new CompactDataSet(22L * 5, 2, true, 1);
+        for(int i = 0; i < 10; i++) {
+            dataSet.append(new Data(new short[] { 1, 2 }, 0f, 0f, 1f, 1f));
+        }
+        Assert.assertEquals(dataSet.size(), 5);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidByteInput() {
+        CompactDataSet dataSet = new CompactDataSet(Long.MAX_VALUE, 1, true, 1);
+        dataSet.append(new Data(new short[] { 256 }, 0f, 0f, 1f, 1f));
+    }
+
+}
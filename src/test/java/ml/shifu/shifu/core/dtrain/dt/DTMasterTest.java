@@ -0,0 +1,189 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.dt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import ml.shifu.shifu.container.obj.ColumnConfig;
+import ml.shifu.shifu.container.obj.ColumnType;
+import ml.shifu.shifu.core.dtrain.dt.DTWorkerParams.NodeStats;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Parallel node stats merging and split search in {@link DTMaster} should be the same as serial computing.
+ */
+public class DTMasterTest {
+
+    private static final int THREAD_COUNT = 4;
+
+    private ForkJoinPool threadPool;
+
+    @BeforeClass
+    public void setUp() {
+        this.threadPool = new ForkJoinPool(THREAD_COUNT);
+    }
+
+    @Test
+    public void testMergeNodeStats() {
+        // stats are large enough to be cut into several shards
+        int[] features = new int[] { 0, 1, 2, 3 };
+        int[] statsSizes = new int[] { 3000, 30, 5000, 9000 };
+        Random random = new Random(3L);
+
+        Map<Integer, NodeStats> nodeStatsMap = newNodeStatsMap(features, statsSizes, random);
+        Map<Integer, NodeStats> expected = new HashMap<Integer, NodeStats>();
+        for(Map.Entry<Integer, NodeStats> entry: nodeStatsMap.entrySet()) {
+            expected.put(entry.getKey(), entry.getValue().copy());
+        }
+        List<Map<Integer, NodeStats>> otherNodeStatsMaps = new ArrayList<Map<Integer, NodeStats>>();
+        for(int i = 0; i < 3; i++) {
+            Map<Integer, NodeStats> other = newNodeStatsMap(features, statsSizes, random);
+            otherNodeStatsMaps.add(other);
+            for(Map.Entry<Integer, NodeStats> entry: other.entrySet()) {
+                expected.get(entry.getKey()).merge(entry.getValue());
+            }
+        }
+
+        DTMaster.mergeNodeStats(this.threadPool, THREAD_COUNT, nodeStatsMap, otherNodeStatsMaps);
+        Assert.assertEquals(nodeStatsMap.size(), expected.size());
+        for(Map.Entry<Integer, NodeStats> entry: expected.entrySet()) {
+            Assert.assertEquals(nodeStatsMap.get(entry.getKey()).getStatistics(), entry.getValue().getStatistics());
+        }
+
+        // no other worker, nothing changed
+        DTMaster.mergeNodeStats(this.threadPool, THREAD_COUNT, nodeStatsMap,
+                new ArrayList<Map<Integer, NodeStats>>());
+        Assert.assertEquals(nodeStatsMap.get(0).getStatistics(), expected.get(0).getStatistics());
+    }
+
+    @Test
+    public void testComputeMaxGainInfos() {
+        Impurity impurity = new Variance(1, 0d);
+        int binCount = 10;
+        List<ColumnConfig> columnConfigList = new ArrayList<ColumnConfig>();
+        for(int i = 0; i < 20; i++) {
+            ColumnConfig config = new ColumnConfig();
+            config.setColumnNum(i);
+            config.setColumnName("column_" + i);
+            if(i % 5 == 4) {
+                config.setColumnType(ColumnType.C);
+                config.setBinCategory(Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h", "i"));
+            } else {
+                config.setColumnType(ColumnType.N);
+                List<Double> binBoundary = new ArrayList<Double>();
+                binBoundary.add(Double.NEGATIVE_INFINITY);
+                for(int j = 1; j < binCount; j++) {
+                    binBoundary.add((double) j);
+                }
+                config.setBinBoundary(binBoundary);
+            }
+            columnConfigList.add(config);
+        }
+
+        // more features than one split task, some nodes only have part of features
+        int[] allFeatures = new int[columnConfigList.size()];
+        for(int i = 0; i < allFeatures.length; i++) {
+            allFeatures[i] = i;
+        }
+        Map<Integer, NodeStats> nodeStatsMap = new HashMap<Integer, NodeStats>();
+        Random random = new Random(5L);
+        for(int key = 0; key < 6; key++) {
+            int[] features = key % 2 == 0 ? allFeatures : new int[] { 13, 4, 7, 19, 0 };
+            int[] statsSizes = new int[features.length];
+            for(int i = 0; i < features.length; i++) {
+                statsSizes[i] = binCount * impurity.getStatsSize();
+            }
+            NodeStats nodeStats = new NodeStats(0, key + 1, features, statsSizes);
+            for(int r = 0; r < 2000; r++) {
+                int[] bins = new int[columnConfigList.size()];
+                for(int j = 0; j < bins.length; j++) {
+                    bins[j] = random.nextInt(binCount);
+                }
+                // label is related to column (key + 7) and a little to column 4
+                float label = bins[(key + 7) % bins.length] * 0.3f + (bins[4] > 5 ? 0.5f : 0f) + random.nextFloat();
+                for(int i = 0; i < features.length; i++) {
+                    impurity.featureUpdate(nodeStats.getStatistics(), nodeStats.getOffset(i), bins[features[i]], label,
+                            1f, 1f);
+                }
+            }
+            nodeStatsMap.put(key, nodeStats);
+        }
+        // node without valid split
+        nodeStatsMap.put(6, new NodeStats(0, 7, allFeatures, newStatsSizes(allFeatures.length,
+                binCount * impurity.getStatsSize())));
+
+        Map<Integer, GainInfo> maxGainInfos = DTMaster.computeMaxGainInfos(this.threadPool, impurity,
+                columnConfigList, nodeStatsMap);
+        Assert.assertEquals(maxGainInfos.size(), nodeStatsMap.size());
+        for(Map.Entry<Integer, NodeStats> entry: nodeStatsMap.entrySet()) {
+            NodeStats nodeStats = entry.getValue();
+            List<GainInfo> gainList = new ArrayList<GainInfo>();
+            for(int i = 0; i < nodeStats.getFeatureSize(); i++) {
+                GainInfo gainInfo = impurity.computeImpurity(nodeStats.getFeatureStatistics(i),
+                        columnConfigList.get(nodeStats.getFeatures()[i]));
+                if(gainInfo != null) {
+                    gainList.add(gainInfo);
+                }
+            }
+            GainInfo expected = GainInfo.getGainInfoByMaxGain(gainList);
+            GainInfo actual = maxGainInfos.get(entry.getKey());
+            if(expected == null) {
+                Assert.assertNull(actual, "node " + entry.getKey());
+                continue;
+            }
+            Assert.assertNotNull(actual, "node " + entry.getKey());
+            Assert.assertEquals(actual.getSplit().getColumnNum(), expected.getSplit().getColumnNum());
+            Assert.assertEquals(actual.getSplit().getThreshold(), expected.getSplit().getThreshold());
+            Assert.assertEquals(actual.getGain(), expected.getGain());
+        }
+        Assert.assertNull(maxGainInfos.get(6));
+    }
+
+    private static Map<Integer, NodeStats> newNodeStatsMap(int[] features, int[] statsSizes, Random random) {
+        Map<Integer, NodeStats> nodeStatsMap = new HashMap<Integer, NodeStats>();
+        for(int key = 0; key < 3; key++) {
+            NodeStats nodeStats = new NodeStats(0, key + 1, features, statsSizes);
+            double[] statistics = nodeStats.getStatistics();
+            for(int i = 0; i < statistics.length; i++) {
+                statistics[i] = random.nextDouble();
+            }
+            nodeStatsMap.put(key, nodeStats);
+        }
+        return nodeStatsMap;
+    }
+
+    private static int[] newStatsSizes(int featureSize, int statsSize) {
+        int[] statsSizes = new int[featureSize];
+        Arrays.fill(statsSizes, statsSize);
+        return statsSizes;
+    }
+
+    @AfterClass
+    public void tearDown() {
+        this.threadPool.shutdownNow();
+    }
+
+}
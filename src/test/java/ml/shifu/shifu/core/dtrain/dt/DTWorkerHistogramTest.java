@@ -0,0 +1,163 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.dt;
+
+import java.util.Random;
+
+import ml.shifu.shifu.core.dtrain.dt.DTWorkerParams.NodeStats;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Histogram subtraction and cached node ids of GBDT training in {@link DTWorker}.
+ */
+public class DTWorkerHistogramTest {
+
+    /**
+     * Bin count of column 0, 1, 2 and 3.
+     */
+    private static final int[] BIN_COUNTS = new int[] { 4, 3, 5, 2 };
+
+    private static final int RECORD_COUNT = 500;
+
+    private final Impurity impurity = new Variance();
+
+    @Test
+    public void testSubtractSameLayout() {
+        int[] features = new int[] { 0, 1, 2 };
+        assertSubtraction(features, features, features);
+    }
+
+    @Test
+    public void testSubtractDifferentLayout() {
+        // parent stats of last iteration are on more features and in different order, sibling is projected
+        assertSubtraction(new int[] { 2, 0, 3, 1 }, new int[] { 1, 2, 0 }, new int[] { 0, 1, 2 });
+    }
+
+    private void assertSubtraction(int[] parentFeatures, int[] siblingFeatures, int[] features) {
+        NodeStats parent = newNodeStats(2, parentFeatures);
+        NodeStats left = newNodeStats(4, siblingFeatures);
+        NodeStats right = newNodeStats(5, features);
+
+        Random random = new Random(7L);
+        for(int i = 0; i < RECORD_COUNT; i++) {
+            int[] bins = new int[BIN_COUNTS.length];
+            for(int j = 0; j < bins.length; j++) {
+                bins[j] = random.nextInt(BIN_COUNTS[j]);
+            }
+            // bin 0 of column 0 only has records in left node, it should be empty in right node
+            boolean isLeft = bins[0] == 0 || random.nextBoolean();
+            float label = random.nextFloat();
+            float significance = random.nextBoolean() ? 1f : 0.3f;
+            float weight = 1 + random.nextInt(3);
+            update(parent, bins, label, significance, weight);
+            update(isLeft ? left : right, bins, label, significance, weight);
+        }
+
+        NodeStats derived = newNodeStats(5, features);
+        DTWorker.subtractNodeStats(derived, parent, left);
+        for(int i = 0; i < features.length; i++) {
+            double[] expected = right.getFeatureStatistics(i);
+            double[] actual = derived.getFeatureStatistics(i);
+            Assert.assertEquals(actual.length, expected.length);
+            for(int j = 0; j < expected.length; j++) {
+                Assert.assertEquals(actual[j], expected[j], 1e-6d, "column " + features[i] + ", index " + j);
+            }
+        }
+
+        double[] emptyBin = derived.getFeatureStatistics(derived.indexOf(0));
+        for(int j = 0; j < this.impurity.getStatsSize(); j++) {
+            Assert.assertEquals(Double.compare(emptyBin[j], 0d), 0, "index " + j);
+        }
+    }
+
+    @Test
+    public void testCachedNodeIdsAfterSplit() {
+        Node root = new Node(Node.ROOT_INDEX, new Predict(0.5d), 0.1d, true);
+        Random random = new Random(11L);
+        double[] values = new double[RECORD_COUNT];
+        int[] nodeIds = new int[RECORD_COUNT];
+        for(int i = 0; i < RECORD_COUNT; i++) {
+            values[i] = random.nextDouble();
+            nodeIds[i] = Node.ROOT_INDEX;
+        }
+
+        Assert.assertSame(DTWorker.findNode(root, Node.ROOT_INDEX), root);
+        Assert.assertNull(DTWorker.findNode(root, 2));
+
+        grow(root, 0.5d);
+        assertCachedNodeIds(root, values, nodeIds);
+        Assert.assertNull(DTWorker.findNode(root, 6));
+
+        // split one leaf, records cached in the other leaf stay there
+        grow(DTWorker.findNode(root, 2), 0.25d);
+        assertCachedNodeIds(root, values, nodeIds);
+        Assert.assertEquals(DTWorker.findNode(root, 5).getId(), 5);
+
+        grow(DTWorker.findNode(root, 3), 0.75d);
+        grow(DTWorker.findNode(root, 5), 0.4d);
+        assertCachedNodeIds(root, values, nodeIds);
+        Assert.assertEquals(DTWorker.findNode(root, 11).getId(), 11);
+        Assert.assertNull(DTWorker.findNode(root, 12));
+    }
+
+    /**
+     * Walk each record from its cached node and compare with walking from ROOT, cached node ids are then updated like
+     * {@link DTWorker} does in each iteration.
+     */
+    private void assertCachedNodeIds(Node root, double[] values, int[] nodeIds) {
+        for(int i = 0; i < values.length; i++) {
+            Node startNode = DTWorker.findNode(root, nodeIds[i]);
+            Assert.assertNotNull(startNode);
+            Node leaf = walk(startNode, values[i]);
+            Assert.assertSame(leaf, walk(root, values[i]), "record " + i);
+            Assert.assertTrue(leaf.isRealLeaf());
+            nodeIds[i] = leaf.getId();
+        }
+    }
+
+    private static Node walk(Node node, double value) {
+        Node currNode = node;
+        while(!currNode.isRealLeaf()) {
+            currNode = value < currNode.getSplit().getThreshold() ? currNode.getLeft() : currNode.getRight();
+        }
+        return currNode;
+    }
+
+    private static void grow(Node leaf, double threshold) {
+        leaf.setSplit(new Split(0, Split.CONTINUOUS, threshold, false, null));
+        leaf.setLeft(new Node(Node.leftIndex(leaf.getId()), new Predict(0.2d), 0.1d, true));
+        leaf.setRight(new Node(Node.rightIndex(leaf.getId()), new Predict(0.8d), 0.1d, true));
+    }
+
+    private NodeStats newNodeStats(int nodeId, int[] features) {
+        int[] statsSizes = new int[features.length];
+        for(int i = 0; i < features.length; i++) {
+            statsSizes[i] = BIN_COUNTS[features[i]] * this.impurity.getStatsSize();
+        }
+        return new NodeStats(0, nodeId, features, statsSizes);
+    }
+
+    private void update(NodeStats nodeStats, int[] bins, float label, float significance, float weight) {
+        int[] features = nodeStats.getFeatures();
+        for(int i = 0; i < features.length; i++) {
+            this.impurity.featureUpdate(nodeStats.getStatistics(), nodeStats.getOffset(i), bins[features[i]], label,
+                    significance, weight);
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.dt;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import ml.shifu.shifu.core.dtrain.dt.DTWorkerParams.NodeStats;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class DTWorkerParamsTest {
+
+    @Test
+    public void testProjectNodeStats() {
+        NodeStats nodeStats = new NodeStats(1, 2, new int[] { 3, 5, 7 }, new int[] { 2, 3, 1 });
+        for(int i = 0; i < nodeStats.getStatistics().length; i++) {
+            nodeStats.getStatistics()[i] = i;
+        }
+
+        NodeStats projected = nodeStats.project(new int[] { 7, 3 });
+        Assert.assertEquals(projected.getTreeId(), 1);
+        Assert.assertEquals(projected.getNodeId(), 2);
+        Assert.assertEquals(projected.getFeatures(), new int[] { 7, 3 });
+        Assert.assertEquals(projected.getFeatureStatistics(0), new double[] { 5d });
+        Assert.assertEquals(projected.getFeatureStatistics(1), new double[] { 0d, 1d });
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testProjectMissingFeature() {
+        new NodeStats(0, 1, new int[] { 3 }, new int[] { 2 }).project(new int[] { 4 });
+    }
+
+    @Test
+    public void testVotesCombineAndSerialize() throws IOException {
+        DTWorkerParams params = newVotingParams(new int[] { 1, 2 });
+        params.combine(newVotingParams(new int[] { 2, 4 }));
+        Assert.assertEquals(params.getVotedFeaturesMap().get(0), new int[] { 1, 2, 2, 4 });
+        Assert.assertEquals(params.getTrainCount(), 2d);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        params.write(new DataOutputStream(bytes));
+        DTWorkerParams read = new DTWorkerParams();
+        read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        Assert.assertNull(read.getNodeStatsMap());
+        Assert.assertEquals(read.getVotedFeaturesMap().get(0), new int[] { 1, 2, 2, 4 });
+    }
+
+    @Test
+    public void testNodeStatsSerialize() throws IOException {
+        NodeStats nodeStats = newNodeStats(1d);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        nodeStats.write(new DataOutputStream(bytes));
+
+        // wire format is per feature column number, stats length and stats
+        ByteArrayOutputStream expectedBytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(expectedBytes);
+        out.writeInt(2);
+        out.writeInt(1);
+        out.writeInt(3);
+        for(int i = 0; i < 3; i++) {
+            double[] featureStats = nodeStats.getFeatureStatistics(i);
+            out.writeInt(nodeStats.getFeatures()[i]);
+            out.writeInt(featureStats.length);
+            for(double value: featureStats) {
+                out.writeDouble(value);
+            }
+        }
+        Assert.assertEquals(bytes.toByteArray(), expectedBytes.toByteArray());
+
+        NodeStats read = new NodeStats();
+        read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertNodeStats(read, nodeStats);
+
+        // layout of projected stats is kept in serialization
+        NodeStats projected = nodeStats.project(new int[] { 7, 3 });
+        bytes = new ByteArrayOutputStream();
+        projected.write(new DataOutputStream(bytes));
+        read = new NodeStats();
+        read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertNodeStats(read, projected);
+    }
+
+    @Test
+    public void testNodeStatsMerge() throws IOException {
+        // master receives serialized params of each worker and combines node stats of the same node key
+        DTWorkerParams params = readParams(newStatsParams(1d));
+        params.combine(readParams(newStatsParams(10d)));
+        params.combine(readParams(newStatsParams(100d)));
+        Assert.assertEquals(params.getTrainCount(), 3d);
+
+        NodeStats merged = params.getNodeStatsMap().get(0);
+        NodeStats expected = newNodeStats(111d);
+        assertNodeStats(merged, expected);
+
+        // merging disjoint ranges is the same as merging the whole buffer
+        NodeStats ranged = newNodeStats(1d);
+        NodeStats other = newNodeStats(110d);
+        ranged.merge(other, 0, ranged.getOffset(1));
+        ranged.merge(other, ranged.getOffset(1), ranged.getStatistics().length);
+        assertNodeStats(ranged, expected);
+
+        // empty copy shares layout with an empty buffer
+        NodeStats empty = expected.emptyCopy();
+        empty.merge(expected);
+        assertNodeStats(empty, expected);
+        Assert.assertEquals(expected.getStatistics()[1], 111d);
+    }
+
+    private static DTWorkerParams newStatsParams(double scale) {
+        Map<Integer, NodeStats> nodeStatsMap = new HashMap<Integer, NodeStats>();
+        nodeStatsMap.put(0, newNodeStats(scale));
+        return new DTWorkerParams(1d, 1d, 0.5d, 0.5d, nodeStatsMap);
+    }
+
+    private static NodeStats newNodeStats(double scale) {
+        NodeStats nodeStats = new NodeStats(1, 2, new int[] { 3, 5, 7 }, new int[] { 2, 3, 1 });
+        for(int i = 0; i < nodeStats.getStatistics().length; i++) {
+            nodeStats.getStatistics()[i] = i * scale;
+        }
+        return nodeStats;
+    }
+
+    private static DTWorkerParams readParams(DTWorkerParams params) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        params.write(new DataOutputStream(bytes));
+        DTWorkerParams read = new DTWorkerParams();
+        read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        return read;
+    }
+
+    private static void assertNodeStats(NodeStats actual, NodeStats expected) {
+        Assert.assertEquals(actual.getTreeId(), expected.getTreeId());
+        Assert.assertEquals(actual.getNodeId(), expected.getNodeId());
+        Assert.assertEquals(actual.getFeatures(), expected.getFeatures());
+        for(int i = 0; i < expected.getFeatureSize(); i++) {
+            Assert.assertEquals(actual.getOffset(i), expected.getOffset(i));
+            Assert.assertEquals(actual.getLength(i), expected.getLength(i));
+        }
+        Assert.assertEquals(actual.getStatistics(), expected.getStatistics());
+    }
+
+    private DTWorkerParams newVotingParams(int[] columnNums) {
+        DTWorkerParams params = new DTWorkerParams(1d, 1d, 0.5d, 0.5d, null);
+        Map<Integer, int[]> votedFeaturesMap = new HashMap<Integer, int[]>();
+        votedFeaturesMap.put(0, columnNums);
+        params.setVotedFeaturesMap(votedFeaturesMap);
+        return params;
+    }
+
+}
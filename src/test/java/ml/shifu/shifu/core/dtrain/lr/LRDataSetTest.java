@@ -0,0 +1,107 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.lr;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class LRDataSetTest {
+
+    @Test
+    public void testAcrossBlocks() {
+        LRDataSet dataSet = new LRDataSet(Long.MAX_VALUE, 2);
+        int size = LRDataSet.BLOCK_ROWS + 10;
+        for(int i = 0; i < size; i++) {
+            dataSet.append(new float[] { i, 1f }, i % 2, i * 0.5d);
+        }
+        Assert.assertEquals(dataSet.size(), size);
+
+        double[] weights = new double[] { 2d, 3d, 1d };
+        for(int i = size - 1; i >= 0; i -= 1000) {
+            Assert.assertEquals(dataSet.dot(i, weights), 2d * i + 3d + 1d);
+            Assert.assertEquals(dataSet.getLabel(i), (float) (i % 2));
+            Assert.assertEquals(dataSet.getSignificance(i), i * 0.5d);
+        }
+
+        double[] gradients = new double[3];
+        dataSet.addGradients(size - 1, 0.5d, gradients);
+        Assert.assertEquals(gradients, new double[] { 0.5d * (size - 1), 0.5d, 0.5d });
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testMemoryLimit() {
+        // 2 inputs, 1 label and 1 significance is 20 bytes
+        LRDataSet dataSet = new LRDataSet(60L, 2);
+        for(int i = 0; i < 3; i++) {
+            dataSet.append(new float[] { i, i }, 1f, 1d);
+        }
+        Assert.assertEquals(dataSet.size(), 3);
+        // no spill file, record over limit is not silently dropped
+        dataSet.append(new float[] { 3f, 3f }, 1f, 1d);
+    }
+
+    @Test
+    public void testSpill() throws IOException {
+        File spillFile = File.createTempFile("lr-spill", ".bin");
+        LRDataSet dataSet = new LRDataSet(60L, 2, spillFile);
+        try {
+            for(int i = 0; i < 10; i++) {
+                dataSet.append(new float[] { i, 2f * i }, i % 2, i + 0.5d);
+            }
+            dataSet.finishAppend();
+            Assert.assertEquals(dataSet.size(), 10);
+            Assert.assertEquals(dataSet.memorySize(), 3);
+            Assert.assertEquals(dataSet.spilledSize(), 7);
+            Assert.assertEquals(dataSet.getSignificance(2), 2.5d);
+
+            final List<float[]> records = new ArrayList<float[]>();
+            // spill file can be scanned in each iteration
+            for(int k = 0; k < 2; k++) {
+                records.clear();
+                dataSet.scanSpilled(new LRDataSet.RecordVisitor() {
+                    @Override
+                    public void visit(float[] inputs, float label, double significance) {
+                        records.add(new float[] { inputs[0], inputs[1], label, (float) significance });
+                    }
+                });
+                Assert.assertEquals(records.size(), 7);
+                for(int i = 0; i < records.size(); i++) {
+                    int row = i + 3;
+                    Assert.assertEquals(records.get(i), new float[] { row, 2f * row, row % 2, row + 0.5f });
+                }
+            }
+        } finally {
+            dataSet.close();
+        }
+        Assert.assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void testStaticDotAndGradients() {
+        float[] inputs = new float[] { 9f, 1f, 2f };
+        double[] weights = new double[] { 3d, 4d, 0.5d };
+        Assert.assertEquals(LRDataSet.dot(inputs, 1, 2, weights), 3d + 8d + 0.5d);
+        double[] gradients = new double[3];
+        LRDataSet.addGradients(inputs, 1, 2, 2d, gradients);
+        Assert.assertEquals(gradients, new double[] { 2d, 4d, 2d });
+    }
+
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.nn;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import ml.shifu.shifu.container.obj.ColumnType;
+import ml.shifu.shifu.container.obj.ModelNormalizeConf.NormType;
+import ml.shifu.shifu.core.Normalizer;
+import ml.shifu.shifu.core.dtrain.CommonConstants;
+import ml.shifu.shifu.core.dtrain.dataset.BasicFloatNetwork;
+import ml.shifu.shifu.core.dtrain.dataset.PersistBasicFloatNetwork;
+import ml.shifu.shifu.util.BinUtils;
+import ml.shifu.shifu.util.Constants;
+
+import org.encog.engine.network.activation.ActivationLinear;
+import org.encog.engine.network.activation.ActivationSigmoid;
+import org.encog.engine.network.activation.ActivationTANH;
+import org.encog.ml.data.basic.BasicMLData;
+import org.encog.neural.networks.layers.BasicLayer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * {@link IndependentNNModel} built from binary model stream of synthetic column stats and networks.
+ */
+public class IndependentNNModelComputeTest {
+
+    /**
+     * More than one batch block of {@link BasicFloatNetwork#compute(double[][], double[])}.
+     */
+    private static final int ROW_COUNT = 150;
+
+    @Test
+    public void testNetworkBatchCompute() {
+        BasicFloatNetwork network = buildNetwork(12, 3, 7);
+        for(int rowCount: new int[] { 1, 64, ROW_COUNT }) {
+            double[][] rows = randomRows(rowCount, 12, 11L);
+            double[] outputs = new double[rowCount * 3];
+            network.compute(rows, outputs);
+            for(int i = 0; i < rowCount; i++) {
+                double[] expected = network.compute(new BasicMLData(rows[i])).getData();
+                for(int j = 0; j < expected.length; j++) {
+                    Assert.assertEquals(outputs[i * 3 + j], expected[j], 0d);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBatchComputeSingleNetwork() throws IOException {
+        assertBatchCompute(loadModel(NormType.ZSCALE, buildColumnStats(false), 1));
+    }
+
+    @Test
+    public void testBatchComputeMultiNetworks() throws IOException {
+        assertBatchCompute(loadModel(NormType.ZSCALE, buildColumnStats(false), 3));
+    }
+
+    @Test
+    public void testTransformPlanSameAsPerColumnNormalization() throws IOException {
+        List<Map<String, Object>> dataMaps = buildDataMaps();
+        for(NormType normType: NormType.values()) {
+            IndependentNNModel model = loadModel(normType, buildColumnStats(false), 2);
+            InputTransformPlan plan = InputTransformPlan.build(model);
+            for(Map<String, Object> dataMap: dataMaps) {
+                double[] expected = legacyTransform(model, dataMap);
+                double[] actual = plan.transform(dataMap);
+                Assert.assertEquals(actual.length, expected.length);
+                for(int i = 0; i < expected.length; i++) {
+                    Assert.assertEquals(actual[i], expected[i], 0d, normType + " " + dataMap + " slot " + i);
+                }
+                double[] scores = model.compute(dataMap);
+                double[] expectedScores = model.compute(expected);
+                for(int i = 0; i < expectedScores.length; i++) {
+                    Assert.assertEquals(scores[i], expectedScores[i], 0d);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTransformPlanWithHybridColumn() throws IOException {
+        List<Map<String, Object>> dataMaps = buildDataMaps();
+        for(NormType normType: NormType.values()) {
+            IndependentNNModel model = loadModel(normType, buildColumnStats(true), 1);
+            // model loading is OK even if hybrid column is not supported by norm type
+            InputTransformPlan plan = InputTransformPlan.build(model);
+            for(Map<String, Object> dataMap: dataMaps) {
+                double[] expected = null;
+                try {
+                    expected = legacyTransform(model, dataMap);
+                } catch (IllegalStateException e) {
+                    try {
+                        plan.transform(dataMap);
+                        Assert.fail("hybrid column with " + normType + " should fail");
+                    } catch (IllegalStateException expectedException) {
+                        // expected the same as per column normalization
+                    }
+                    continue;
+                }
+                double[] actual = plan.transform(dataMap);
+                for(int i = 0; i < expected.length; i++) {
+                    Assert.assertEquals(actual[i], expected[i], 0d, normType + " " + dataMap + " slot " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTransformPlanRebuiltAfterStatsReset() throws IOException {
+        IndependentNNModel model = loadModel(NormType.ZSCALE, buildColumnStats(false), 1);
+        Map<String, Object> dataMap = buildDataMaps().get(1);
+        double[] before = model.compute(dataMap);
+
+        Map<Integer, Double> meanMap = new HashMap<Integer, Double>(model.getNumerMeanMap());
+        meanMap.put(1, 10d);
+        model.setNumerMeanMap(meanMap);
+        double[] after = model.compute(dataMap);
+        double[] expected = model.compute(legacyTransform(model, dataMap));
+        Assert.assertEquals(after[0], expected[0], 0d);
+        Assert.assertTrue(Double.compare(after[0], before[0]) != 0);
+    }
+
+    private void assertBatchCompute(IndependentNNModel model) {
+        int inputCount = model.getColumnNumIndexMap().size();
+        double[][] rows = randomRows(ROW_COUNT, inputCount, 13L);
+        int outputCount = model.getOutputCount();
+        double[] outputs = new double[ROW_COUNT * outputCount];
+        model.compute(rows, outputs);
+        for(int i = 0; i < ROW_COUNT; i++) {
+            double[] expected = model.compute(rows[i]);
+            Assert.assertEquals(expected.length, outputCount);
+            for(int j = 0; j < outputCount; j++) {
+                Assert.assertEquals(outputs[i * outputCount + j], expected[j], 0d);
+            }
+        }
+    }
+
+    /**
+     * Raw data maps with numerical values as string and double, categories in and out of merged category, missing
+     * (absent, null or empty) and invalid values.
+     */
+    private static List<Map<String, Object>> buildDataMaps() {
+        Object[] numA = { "0.5", 2d, "4.2", "7", "", null, "abc", "-3", 5d };
+        Object[] cateB = { "x", "y", "z", "w", "q", "", null, 1,
+                "z" + Constants.CATEGORICAL_GROUP_VAL_DELIMITER + "w" };
+        Object[] numC = { "55", 1000d, "-500", "", "abc", null, "10", "100" };
+        Object[] hybD = { "NA", "UNK", "5.5", "-2", "abc", "", null, 20d, "10" };
+        List<Map<String, Object>> dataMaps = new ArrayList<Map<String, Object>>();
+        for(int i = 0; i < 72; i++) {
+            Map<String, Object> dataMap = new HashMap<String, Object>();
+            dataMap.put("num_a", numA[i % numA.length]);
+            dataMap.put("cate_b", cateB[(i / 2) % cateB.length]);
+            dataMap.put("num_c", numC[(i / 3) % numC.length]);
+            dataMap.put("hyb_d", hybD[(i / 5) % hybD.length]);
+            dataMaps.add(dataMap);
+        }
+        // empty record, all values missing
+        dataMaps.add(new HashMap<String, Object>());
+        return dataMaps;
+    }
+
+    /**
+     * Per column normalization of {@link IndependentNNModel} before {@link InputTransformPlan}, kept here as reference
+     * of plan values.
+     */
+    private static double[] legacyTransform(IndependentNNModel model, Map<String, Object> dataMap) {
+        double[] data = new double[model.getColumnNumIndexMap().size()];
+        for(Entry<Integer, Integer> entry: model.getColumnNumIndexMap().entrySet()) {
+            double value = 0d;
+            Integer columnNum = entry.getKey();
+            String columnName = model.getNumNameMappings().get(columnNum);
+            Object obj = dataMap.get(columnName);
+            ColumnType columnType = model.getColumnTypeMap().get(columnNum);
+            if(columnType == ColumnType.C) {
+                switch(model.getNormType()) {
+                    case WOE:
+                    case HYBRID:
+                        value = getCategoricalValue(model.getCateWoeMap().get(columnNum), obj);
+                        break;
+                    case WEIGHT_WOE:
+                    case WEIGHT_HYBRID:
+                        value = getCategoricalValue(model.getWgtCateWoeMap().get(columnNum), obj);
+                        break;
+                    case WOE_ZSCORE:
+                    case WOE_ZSCALE:
+                        value = woeZScore(model, columnNum, getCategoricalValue(model.getCateWoeMap().get(columnNum),
+                                obj), false);
+                        break;
+                    case WEIGHT_WOE_ZSCORE:
+                    case WEIGHT_WOE_ZSCALE:
+                        value = woeZScore(model, columnNum,
+                                getCategoricalValue(model.getWgtCateWoeMap().get(columnNum), obj), true);
+                        break;
+                    case OLD_ZSCALE:
+                    case OLD_ZSCORE:
+                        value = getCategoricalValue(model.getBinPosRateMap().get(columnNum), obj);
+                        break;
+                    case ZSCALE:
+                    case ZSCORE:
+                    default:
+                        value = zScore(model, columnNum, getCategoricalValue(model.getBinPosRateMap().get(columnNum),
+                                obj), model.getNumerMeanMap().get(columnNum), model.getNumerStddevMap().get(columnNum));
+                        break;
+                }
+            } else if(columnType == ColumnType.N) {
+                switch(model.getNormType()) {
+                    case WOE:
+                        value = getNumericalWoeValue(model, columnNum, obj, false);
+                        break;
+                    case WEIGHT_WOE:
+                        value = getNumericalWoeValue(model, columnNum, obj, true);
+                        break;
+                    case WOE_ZSCORE:
+                    case WOE_ZSCALE:
+                        value = woeZScore(model, columnNum, getNumericalWoeValue(model, columnNum, obj, false), false);
+                        break;
+                    case WEIGHT_WOE_ZSCORE:
+                    case WEIGHT_WOE_ZSCALE:
+                        value = woeZScore(model, columnNum, getNumericalWoeValue(model, columnNum, obj, true), true);
+                        break;
+                    default:
+                        double mean = model.getNumerMeanMap().get(columnNum);
+                        double rawValue = IndependentNNModel.defaultMissingValue(mean);
+                        if(obj != null && obj.toString().length() > 0) {
+                            try {
+                                rawValue = Double.parseDouble(obj.toString());
+                            } catch (NumberFormatException e) {
+                                rawValue = IndependentNNModel.defaultMissingValue(mean);
+                            }
+                        }
+                        value = zScore(model, columnNum, rawValue, mean, model.getNumerStddevMap().get(columnNum));
+                        break;
+                }
+            } else if(columnType == ColumnType.H) {
+                switch(model.getNormType()) {
+                    case WOE:
+                        value = getHybridWoeValue(model, columnNum, obj, false);
+                        break;
+                    case WEIGHT_WOE:
+                        value = getHybridWoeValue(model, columnNum, obj, true);
+                        break;
+                    case WOE_ZSCORE:
+                    case WOE_ZSCALE:
+                        value = woeZScore(model, columnNum, getHybridWoeValue(model, columnNum, obj, false), false);
+                        break;
+                    case WEIGHT_WOE_ZSCORE:
+                    case WEIGHT_WOE_ZSCALE:
+                        value = woeZScore(model, columnNum, getHybridWoeValue(model, columnNum, obj, true), true);
+                        break;
+                    default:
+                        throw new IllegalStateException("Column type of " + columnName
+                                + " is hybrid, but normType is not woe related.");
+                }
+            }
+            data[entry.getValue()] = value;
+        }
+        return data;
+    }
+
+    private static double getCategoricalValue(Map<String, Double> valueMap, Object obj) {
+        Double value = (obj == null ? null : valueMap.get(obj.toString()));
+        return value == null ? valueMap.get(Constants.EMPTY_CATEGORY) : value;
+    }
+
+    private static double getNumericalWoeValue(IndependentNNModel model, Integer columnNum, Object obj,
+            boolean isWeighted) {
+        int binIndex = -1;
+        if(obj != null) {
+            binIndex = BinUtils.getNumericalBinIndex(model.getNumerBinBoundaries().get(columnNum), obj.toString());
+        }
+        List<Double> binWoes = isWeighted ? model.getNumerWgtWoes().get(columnNum) : model.getNumerWoes().get(
+                columnNum);
+        // the last bin in woes is the missing value bin
+        return binIndex == -1 ? binWoes.get(binWoes.size() - 1) : binWoes.get(binIndex);
+    }
+
+    private static double getHybridWoeValue(IndependentNNModel model, Integer columnNum, Object obj,
+            boolean isWeighted) {
+        List<String> binCategories = model.getCateColumnNameNames().get(columnNum);
+        Map<String, Integer> cateIndexes = model.getCateIndexMap().get(columnNum);
+        Integer binIndex = -1;
+        if(obj != null && cateIndexes != null) {
+            binIndex = cateIndexes.get(obj.toString());
+            if(binIndex == null || binIndex < 0) {
+                binIndex = -1;
+            }
+        }
+        List<Double> binBoundaries = model.getNumerBinBoundaries().get(columnNum);
+        if(binIndex != -1) {
+            binIndex = binIndex + binBoundaries.size();
+        } else {
+            double douVal = BinUtils.parseNumber(obj == null ? null : obj.toString());
+            if(Double.isNaN(douVal)) {
+                binIndex = binBoundaries.size() + binCategories.size();
+            } else {
+                binIndex = BinUtils.getBinIndex(binBoundaries, douVal);
+            }
+        }
+        List<Double> binWoes = isWeighted ? model.getNumerWgtWoes().get(columnNum) : model.getNumerWoes().get(
+                columnNum);
+        return binIndex == -1 ? binWoes.get(binWoes.size() - 1) : binWoes.get(binIndex);
+    }
+
+    private static double woeZScore(IndependentNNModel model, Integer columnNum, double woe, boolean isWeighted) {
+        Map<Integer, Double> woeMeans = isWeighted ? model.getWgtWoeMeanMap() : model.getWoeMeanMap();
+        Map<Integer, Double> woeStddevs = isWeighted ? model.getWgtWoeStddevMap() : model.getWoeStddevMap();
+        return zScore(model, columnNum, woe, woeMeans.get(columnNum), woeStddevs.get(columnNum));
+    }
+
+    private static double zScore(IndependentNNModel model, Integer columnNum, double value, double mean,
+            double stddev) {
+        double cutoff = Normalizer.checkCutOff(model.getCutOffMap().get(columnNum));
+        return Normalizer.computeZScore(value, mean, stddev, cutoff)[0];
+    }
+
+    private static double[][] randomRows(int rowCount, int inputCount, long seed) {
+        Random random = new Random(seed);
+        double[][] rows = new double[rowCount][inputCount];
+        for(int i = 0; i < rowCount; i++) {
+            for(int j = 0; j < inputCount; j++) {
+                rows[i][j] = random.nextGaussian();
+            }
+        }
+        return rows;
+    }
+
+    static BasicFloatNetwork buildNetwork(int inputCount, int outputCount, int seed) {
+        BasicFloatNetwork network = new BasicFloatNetwork();
+        network.addLayer(new BasicLayer(new ActivationLinear(), true, inputCount));
+        network.addLayer(new BasicLayer(new ActivationTANH(), true, 9));
+        network.addLayer(new BasicLayer(new ActivationSigmoid(), true, 5));
+        network.addLayer(new BasicLayer(new ActivationSigmoid(), false, outputCount));
+        network.getStructure().finalizeStructure();
+        network.reset(seed);
+        return network;
+    }
+
+    /**
+     * Numerical, categorical with merged category and (optionally) hybrid column stats. Last bin of woes and pos rates
+     * is missing value bin.
+     */
+    static List<NNColumnStats> buildColumnStats(boolean withHybrid) {
+        List<NNColumnStats> columnStats = new ArrayList<NNColumnStats>();
+        columnStats.add(columnStats(1, "num_a", ColumnType.N, 2.5d, 1.5d, 4d,
+                Arrays.asList(Double.NEGATIVE_INFINITY, 1d, 3d, 5d), null, Arrays.asList(0.1d, 0.2d, 0.3d, 0.5d, 0.25d),
+                Arrays.asList(-0.8d, -0.2d, 0.3d, 0.9d, 0.05d), Arrays.asList(-0.7d, -0.1d, 0.2d, 1.1d, 0.02d)));
+        columnStats.add(columnStats(2, "cate_b", ColumnType.C, 0.3d, 0.1d, 4d, null,
+                Arrays.asList("x", "y", "z" + Constants.CATEGORICAL_GROUP_VAL_DELIMITER + "w"),
+                Arrays.asList(0.15d, 0.35d, 0.45d, 0.3d), Arrays.asList(-0.6d, 0.1d, 0.7d, -0.05d),
+                Arrays.asList(-0.5d, 0.2d, 0.6d, -0.04d)));
+        // small cutoff to cover zscore cutoff
+        columnStats.add(columnStats(3, "num_c", ColumnType.N, 50d, 5d, 2d,
+                Arrays.asList(Double.NEGATIVE_INFINITY, 10d, 100d), null, Arrays.asList(0.2d, 0.3d, 0.4d, 0.3d),
+                Arrays.asList(-0.4d, 0.1d, 0.5d, 0d), Arrays.asList(-0.3d, 0.15d, 0.45d, 0.01d)));
+        if(withHybrid) {
+            // numerical bins first, then categorical bins and last missing bin
+            columnStats.add(columnStats(4, "hyb_d", ColumnType.H, 3d, 2d, 4d,
+                    Arrays.asList(Double.NEGATIVE_INFINITY, 0d, 10d), Arrays.asList("NA", "UNK"),
+                    Arrays.asList(0.1d, 0.2d, 0.3d, 0.4d, 0.5d, 0.6d), Arrays.asList(-0.9d, -0.3d, 0.2d, 0.6d, 0.8d,
+                            0.1d), Arrays.asList(-0.8d, -0.2d, 0.1d, 0.5d, 0.9d, 0.12d)));
+        }
+        return columnStats;
+    }
+
+    private static NNColumnStats columnStats(int columnNum, String columnName, ColumnType columnType, double mean,
+            double stddev, double cutoff, List<Double> binBoundaries, List<String> binCategories,
+            List<Double> binPosRates, List<Double> binCountWoes, List<Double> binWeightWoes) {
+        NNColumnStats cs = new NNColumnStats(columnNum, columnName, columnType, mean, stddev, 0.05d, 0.4d, 0.06d,
+                0.45d, binBoundaries, binCategories, binPosRates, binCountWoes, binWeightWoes);
+        cs.setCutoff(cutoff);
+        return cs;
+    }
+
+    /**
+     * Write model in the same binary format as {@link BinaryNNSerializer} and load it by
+     * {@link IndependentNNModel#loadFromStream(java.io.InputStream)}.
+     */
+    static IndependentNNModel loadModel(NormType normType, List<NNColumnStats> columnStats, int networkCount)
+            throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        dos.writeInt(CommonConstants.NN_FORMAT_VERSION);
+        ml.shifu.shifu.core.dtrain.StringUtils.writeString(dos, normType.toString());
+        dos.writeInt(columnStats.size());
+        for(NNColumnStats cs: columnStats) {
+            cs.write(dos);
+        }
+        dos.writeInt(columnStats.size());
+        for(int i = 0; i < columnStats.size(); i++) {
+            dos.writeInt(columnStats.get(i).getColumnNum());
+            dos.writeInt(i);
+        }
+        dos.writeInt(networkCount);
+        for(int i = 0; i < networkCount; i++) {
+            new PersistBasicFloatNetwork().saveNetwork(dos, buildNetwork(columnStats.size(), 2, 17 + i));
+        }
+        dos.close();
+        return IndependentNNModel.loadFromStream(new ByteArrayInputStream(bos.toByteArray()));
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.nn;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class StaleGradientsTest {
+
+    private static final double DELTA = 1e-9d;
+
+    @Test
+    public void testStaleGradientsEviction() {
+        StaleGradients staleGradients = new StaleGradients(2);
+
+        // both workers are fresh in iteration 3
+        Assert.assertTrue(staleGradients.add(result(1L, 2, 10L, 1d, 1d), 3));
+        Assert.assertTrue(staleGradients.add(result(2L, 2, 20L, 2d, 2d), 3));
+        assertAccumulated(staleGradients, 3, 0, 30L, 3d, 3d);
+
+        // worker 2 is straggler, its gradients of iteration 3 are used in the next 2 iterations
+        Assert.assertTrue(staleGradients.add(result(1L, 3, 10L, 1d, 0d), 4));
+        assertAccumulated(staleGradients, 4, 1, 30L, 3d, 2d);
+        Assert.assertTrue(staleGradients.add(result(1L, 4, 10L, 1d, 0d), 5));
+        assertAccumulated(staleGradients, 5, 1, 30L, 3d, 2d);
+
+        // over staleness, gradients of worker 2 are evicted
+        Assert.assertTrue(staleGradients.add(result(1L, 5, 10L, 1d, 0d), 6));
+        assertAccumulated(staleGradients, 6, 0, 10L, 1d, 0d);
+
+        // result computed on too old weights is ignored and not cached
+        Assert.assertFalse(staleGradients.add(result(2L, 3, 20L, 2d, 2d), 7));
+        Assert.assertTrue(staleGradients.add(result(2L, 4, 20L, 2d, 2d), 7));
+        assertAccumulated(staleGradients, 7, 1, 30L, 3d, 2d);
+    }
+
+    @Test
+    public void testRestartedAndCombinedWorkers() {
+        StaleGradients staleGradients = new StaleGradients(1);
+        long workerId = StaleGradients.toWorkerId("3");
+        Assert.assertTrue(staleGradients.add(result(workerId, 2, 10L, 1d, 1d), 3));
+        // restarted worker has the same container id, its new result replaces the cached one
+        Assert.assertTrue(staleGradients.add(result(StaleGradients.toWorkerId("3"), 2, 10L, 4d, 4d), 3));
+        // combined results have no worker id and are not cached
+        Assert.assertTrue(staleGradients.add(result(0L, 2, 10L, 8d, 8d), 3));
+        assertAccumulated(staleGradients, 3, 0, 10L, 4d, 4d);
+    }
+
+    @Test
+    public void testToWorkerId() {
+        Assert.assertEquals(StaleGradients.toWorkerId("0"), 1L);
+        Assert.assertEquals(StaleGradients.toWorkerId("12"), 13L);
+        long id = StaleGradients.toWorkerId("container_1_0001_01_000002");
+        Assert.assertTrue(id > 0xFFFFFFFFL);
+        Assert.assertEquals(StaleGradients.toWorkerId("container_1_0001_01_000002"), id);
+    }
+
+    private static NNParams result(long workerId, int iteration, long trainSize, double... gradients) {
+        NNParams params = new NNParams();
+        params.setWorkerId(workerId);
+        params.setIteration(iteration);
+        params.setTrainSize(trainSize);
+        params.setGradients(gradients);
+        return params;
+    }
+
+    private static void assertAccumulated(StaleGradients staleGradients, int iteration, int expectedStaleCount,
+            long expectedTrainSize, double... expectedGradients) {
+        NNParams global = new NNParams();
+        global.setGradients(new double[expectedGradients.length]);
+        Assert.assertEquals(staleGradients.accumulate(global, iteration), expectedStaleCount);
+        Assert.assertEquals(global.getTrainSize(), expectedTrainSize);
+        for(int i = 0; i < expectedGradients.length; i++) {
+            Assert.assertEquals(global.getGradients()[i], expectedGradients[i], DELTA);
+        }
+    }
+
+}
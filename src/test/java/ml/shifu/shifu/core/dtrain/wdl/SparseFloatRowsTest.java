@@ -0,0 +1,95 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.wdl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SparseFloatRowsTest {
+
+    @Test
+    public void testAccumulateAndCombine() {
+        // small capacity to make sure rows are kept after growing
+        SparseFloatRows rows = new SparseFloatRows(2, 1);
+        for(int i = 0; i < 100; i++) {
+            int offset = rows.addRow(i % 10 * 1000);
+            rows.getValues()[offset] += 1f;
+            rows.getValues()[offset + 1] += 2f;
+        }
+        Assert.assertEquals(rows.size(), 10);
+
+        SparseFloatRows other = new SparseFloatRows(2);
+        other.getValues()[other.addRow(5000) + 1] = 3f;
+        other.getValues()[other.addRow(7)] = 4f;
+        rows.combine(other);
+        Assert.assertEquals(rows.size(), 11);
+
+        int position = rows.find(5000);
+        Assert.assertEquals(rows.getValues()[rows.getOffset(position)], 10f);
+        Assert.assertEquals(rows.getValues()[rows.getOffset(position) + 1], 23f);
+        Assert.assertEquals(rows.getValues()[rows.getOffset(rows.find(7))], 4f);
+        Assert.assertEquals(rows.find(8), -1);
+
+        rows.clear();
+        Assert.assertEquals(rows.size(), 0);
+        Assert.assertEquals(rows.find(7), -1);
+        Assert.assertEquals(rows.getValues()[rows.addRow(7)], 0f);
+    }
+
+    @Test
+    public void testWriteSortedAndRead() throws IOException {
+        SparseFloatRows rows = new SparseFloatRows(1);
+        rows.add(30, 3f);
+        rows.add(10, 1f);
+        rows.add(20, 2f);
+        rows.add(10, 1f);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        rows.write(new DataOutputStream(bytes));
+        // row length, row count, 3 indexes and 3 values
+        Assert.assertEquals(bytes.size(), 32);
+
+        SparseFloatRows read = new SparseFloatRows();
+        read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        Assert.assertEquals(read.size(), 3);
+        Assert.assertEquals(read.getSortedIndexes(), new int[] { 10, 20, 30 });
+        for(int i = 0; i < read.size(); i++) {
+            Assert.assertEquals(read.getIndex(i), (i + 1) * 10);
+        }
+        Assert.assertEquals(read.getValues()[read.find(10)], 2f);
+        Assert.assertEquals(read.getValues()[read.find(30)], 3f);
+    }
+
+    @Test
+    public void testWriteWeightRows() throws IOException {
+        float[][] weights = new float[][] { { 1f, 2f }, { 3f, 4f }, { 5f, 6f } };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SparseFloatRows.writeRows(new DataOutputStream(bytes), new int[] { 0, 2 }, weights, 2);
+
+        SparseFloatRows read = new SparseFloatRows();
+        read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        Assert.assertEquals(read.getRowLength(), 2);
+        Assert.assertEquals(read.size(), 2);
+        Assert.assertEquals(read.getValues()[read.getOffset(read.find(2)) + 1], 6f);
+    }
+
+}
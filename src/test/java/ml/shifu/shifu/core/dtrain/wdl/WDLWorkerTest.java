@@ -0,0 +1,88 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.wdl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class WDLWorkerTest {
+
+    @Test
+    public void testSparseWeightsBeforeSync() {
+        WideAndDeep master = newGraph();
+        master.initWeights();
+        WideAndDeep local = newGraph();
+        local.initWeights();
+        float[][] localWeights = copy(local.getFinalLayer().getWeights());
+
+        // restarted worker receives sparse weights at first, local random weights shouldn't be updated or trained
+        WDLWorker worker = new WDLWorker();
+        Assert.assertFalse(worker.syncWeights(local, masterResult(master, SerializationType.SPARSE_WEIGHTS)));
+        assertWeights(local.getFinalLayer().getWeights(), localWeights);
+        Assert.assertFalse(worker.syncWeights(local, masterResult(master, SerializationType.SPARSE_WEIGHTS)));
+
+        Assert.assertTrue(worker.syncWeights(local, masterResult(master, SerializationType.WEIGHTS)));
+        assertWeights(local.getFinalLayer().getWeights(), master.getFinalLayer().getWeights());
+        // sparse weights are applied after all weights are synced
+        Assert.assertTrue(worker.syncWeights(local, masterResult(master, SerializationType.SPARSE_WEIGHTS)));
+    }
+
+    @Test
+    public void testModelSpecSync() {
+        WideAndDeep master = newGraph();
+        master.initWeights();
+        WideAndDeep local = newGraph();
+        // first master result is serialized as model spec
+        WDLWorker worker = new WDLWorker();
+        Assert.assertTrue(worker.syncWeights(local, masterResult(master, SerializationType.MODEL_SPEC)));
+        Assert.assertTrue(worker.syncWeights(local, masterResult(master, SerializationType.SPARSE_WEIGHTS)));
+        assertWeights(local.getFinalLayer().getWeights(), master.getFinalLayer().getWeights());
+    }
+
+    private static WDLParams masterResult(WideAndDeep wnd, SerializationType serializationType) {
+        WDLParams params = new WDLParams();
+        params.setWnd(wnd);
+        params.setSerializationType(serializationType);
+        return params;
+    }
+
+    private static WideAndDeep newGraph() {
+        Map<Integer, Integer> idBinCateSizeMap = new HashMap<Integer, Integer>();
+        idBinCateSizeMap.put(2, 4);
+        return new WideAndDeep(idBinCateSizeMap, 2, Arrays.asList(0, 1), Arrays.asList(2), Arrays.asList(3),
+                Arrays.asList(2), Arrays.asList(4), Arrays.asList("relu"), 0f);
+    }
+
+    private static float[][] copy(float[][] weights) {
+        float[][] copy = new float[weights.length][];
+        for(int i = 0; i < weights.length; i++) {
+            copy[i] = Arrays.copyOf(weights[i], weights[i].length);
+        }
+        return copy;
+    }
+
+    private static void assertWeights(float[][] actual, float[][] expected) {
+        Assert.assertEquals(actual.length, expected.length);
+        for(int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(actual[i], expected[i]);
+        }
+    }
+
+}
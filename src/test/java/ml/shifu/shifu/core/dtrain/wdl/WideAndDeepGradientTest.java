@@ -0,0 +1,222 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.dtrain.wdl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ml.shifu.shifu.core.dtrain.wdl.activation.Activation;
+import ml.shifu.shifu.core.dtrain.wdl.activation.ActivationFactory;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Gradients of {@link WideAndDeep} replicas computed on record ranges in different threads and combined like
+ * {@link WDLWorker} should be the same as gradients of one graph on all records.
+ */
+public class WideAndDeepGradientTest {
+
+    private static final int RECORD_COUNT = 200;
+
+    private static final int NUMERICAL_SIZE = 4;
+
+    private static final int THREADS = 4;
+
+    private static final float DELTA = 1e-3f;
+
+    private final Map<Integer, Integer> idBinCateSizeMap = new HashMap<Integer, Integer>();
+
+    private final List<Integer> denseColumnIds = Arrays.asList(0, 1, 2, 3);
+
+    private final List<Integer> embedColumnIds = Arrays.asList(4, 5);
+
+    private final List<Integer> wideColumnIds = Arrays.asList(4, 5, 6);
+
+    private float[][] numericals;
+
+    private List<List<SparseInput>> embedInputs;
+
+    private List<List<SparseInput>> wideInputs;
+
+    private float[] labels;
+
+    private float[] weights;
+
+    @Test
+    public void testThreadedGradients() throws Exception {
+        this.idBinCateSizeMap.put(4, 5);
+        this.idBinCateSizeMap.put(5, 8);
+        this.idBinCateSizeMap.put(6, 3);
+        generateRecords(new Random(7L));
+
+        WideAndDeep single = newGraph();
+        single.initWeights();
+        single.initGrads();
+        train(single, 0, RECORD_COUNT);
+
+        // replicas share weights of the first graph as in WDLWorker#doCompute
+        final List<WideAndDeep> replicas = new ArrayList<WideAndDeep>(THREADS);
+        replicas.add(newGraph());
+        replicas.get(0).updateWeights(single);
+        replicas.get(0).initGrads();
+        for(int i = 1; i < THREADS; i++) {
+            WideAndDeep replica = newGraph();
+            replica.updateWeights(replicas.get(0));
+            replica.initGrads();
+            replicas.add(replica);
+        }
+
+        ExecutorService threadPool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(THREADS);
+            for(int i = 0; i < THREADS; i++) {
+                final WideAndDeep replica = replicas.get(i);
+                final int from = RECORD_COUNT * i / THREADS;
+                final int to = RECORD_COUNT * (i + 1) / THREADS;
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        train(replica, from, to);
+                        return null;
+                    }
+                });
+            }
+            for(Future<Void> future: threadPool.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            threadPool.shutdownNow();
+        }
+
+        WideAndDeep combined = replicas.get(0);
+        for(int i = 1; i < THREADS; i++) {
+            combined.combine(replicas.get(i));
+        }
+        assertGradients(combined, single);
+    }
+
+    @Test
+    public void testActivationInstances() {
+        Activation first = ActivationFactory.getInstance().getActivation("relu");
+        Activation second = ActivationFactory.getInstance().getActivation("relu");
+        Assert.assertNotNull(first);
+        Assert.assertTrue(first != second);
+        Assert.assertEquals(second.getClass(), first.getClass());
+    }
+
+    private WideAndDeep newGraph() {
+        return new WideAndDeep(this.idBinCateSizeMap, NUMERICAL_SIZE, this.denseColumnIds, this.embedColumnIds,
+                Arrays.asList(3, 3), this.wideColumnIds, Arrays.asList(6, 4), Arrays.asList("relu", "relu"), 0f);
+    }
+
+    private void generateRecords(Random random) {
+        this.numericals = new float[RECORD_COUNT][NUMERICAL_SIZE];
+        this.embedInputs = new ArrayList<List<SparseInput>>(RECORD_COUNT);
+        this.wideInputs = new ArrayList<List<SparseInput>>(RECORD_COUNT);
+        this.labels = new float[RECORD_COUNT];
+        this.weights = new float[RECORD_COUNT];
+        for(int i = 0; i < RECORD_COUNT; i++) {
+            for(int j = 0; j < NUMERICAL_SIZE; j++) {
+                this.numericals[i][j] = random.nextFloat();
+            }
+            List<SparseInput> embeds = new ArrayList<SparseInput>();
+            for(Integer columnId: this.embedColumnIds) {
+                embeds.add(new SparseInput(columnId, random.nextInt(this.idBinCateSizeMap.get(columnId) + 1)));
+            }
+            this.embedInputs.add(embeds);
+            List<SparseInput> wides = new ArrayList<SparseInput>();
+            for(Integer columnId: this.wideColumnIds) {
+                wides.add(new SparseInput(columnId, random.nextInt(this.idBinCateSizeMap.get(columnId) + 1)));
+            }
+            this.wideInputs.add(wides);
+            this.labels[i] = random.nextBoolean() ? 1f : 0f;
+            this.weights[i] = 0.5f + random.nextFloat();
+        }
+    }
+
+    private void train(WideAndDeep wnd, int from, int to) {
+        for(int i = from; i < to; i++) {
+            float[] logits = wnd.forward(this.numericals[i], this.embedInputs.get(i), this.wideInputs.get(i));
+            float predict = (float) (1 / (1 + Math.exp(-logits[0])));
+            wnd.backward(new float[] { predict }, new float[] { this.labels[i] }, this.weights[i]);
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static void assertGradients(WideAndDeep actual, WideAndDeep expected) {
+        List<Layer> actualLayers = actual.getHiddenLayers();
+        List<Layer> expectedLayers = expected.getHiddenLayers();
+        Assert.assertEquals(actualLayers.size(), expectedLayers.size());
+        for(int i = 0; i < expectedLayers.size(); i++) {
+            if(expectedLayers.get(i) instanceof DenseLayer) {
+                assertDenseGradients((DenseLayer) actualLayers.get(i), (DenseLayer) expectedLayers.get(i));
+            }
+        }
+        assertDenseGradients(actual.getFinalLayer(), expected.getFinalLayer());
+
+        List<EmbedFieldLayer> actualEmbeds = actual.getEcl().getEmbedLayers();
+        List<EmbedFieldLayer> expectedEmbeds = expected.getEcl().getEmbedLayers();
+        for(int i = 0; i < expectedEmbeds.size(); i++) {
+            assertRows(actualEmbeds.get(i).getwGrads(), expectedEmbeds.get(i).getwGrads());
+        }
+        List<WideFieldLayer> actualWides = actual.getWl().getLayers();
+        List<WideFieldLayer> expectedWides = expected.getWl().getLayers();
+        for(int i = 0; i < expectedWides.size(); i++) {
+            assertRows(actualWides.get(i).getwGrads(), expectedWides.get(i).getwGrads());
+        }
+        assertArray(actual.getWl().getDenseLayer().getwGrads(), expected.getWl().getDenseLayer().getwGrads());
+        Assert.assertEquals(actual.getWl().getBias().getwGrad(), expected.getWl().getBias().getwGrad(), DELTA);
+    }
+
+    private static void assertDenseGradients(DenseLayer actual, DenseLayer expected) {
+        float[][] expectedGrads = expected.getwGrads();
+        Assert.assertEquals(actual.getwGrads().length, expectedGrads.length);
+        for(int i = 0; i < expectedGrads.length; i++) {
+            assertArray(actual.getwGrads()[i], expectedGrads[i]);
+        }
+        assertArray(actual.getbGrads(), expected.getbGrads());
+    }
+
+    private static void assertRows(SparseFloatRows actual, SparseFloatRows expected) {
+        Assert.assertEquals(actual.size(), expected.size());
+        Assert.assertEquals(actual.getRowLength(), expected.getRowLength());
+        for(int p = 0; p < expected.size(); p++) {
+            int q = actual.find(expected.getIndex(p));
+            Assert.assertTrue(q >= 0, "row " + expected.getIndex(p));
+            for(int j = 0; j < expected.getRowLength(); j++) {
+                Assert.assertEquals(actual.getValues()[actual.getOffset(q) + j],
+                        expected.getValues()[expected.getOffset(p) + j], DELTA);
+            }
+        }
+    }
+
+    private static void assertArray(float[] actual, float[] expected) {
+        Assert.assertEquals(actual.length, expected.length);
+        for(int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(actual[i], expected[i], DELTA);
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.eval;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ScoreHistogramTest {
+
+    @Test
+    public void testMergeAndDescendingOrder() {
+        ScoreHistogram h1 = new ScoreHistogram(10d);
+        h1.add(15d, true, 2d);
+        h1.add(995d, false, 1d);
+        h1.add(Double.NaN, true, 1d);
+
+        ScoreHistogram h2 = new ScoreHistogram(10d);
+        h2.add(11d, false, 3d);
+        h2.add(500d, true, 1d);
+        h1.merge(h2);
+
+        Assert.assertEquals(h1.getCount(), 4L);
+        List<ScoreHistogram.Bucket> buckets = h1.getDescendingBuckets();
+        Assert.assertEquals(buckets.size(), 3);
+        Assert.assertEquals(buckets.get(0).getScore(), 995d);
+        Assert.assertEquals(buckets.get(1).getScore(), 500d);
+        Assert.assertEquals(buckets.get(2).getScore(), 13d);
+        Assert.assertEquals(buckets.get(2).getPosCount(), 1L);
+        Assert.assertEquals(buckets.get(2).getNegCount(), 1L);
+        Assert.assertEquals(buckets.get(2).getPosWeight(), 2d);
+        Assert.assertEquals(buckets.get(2).getNegWeight(), 3d);
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        ScoreHistogram histogram = new ScoreHistogram(0.01d);
+        for(int i = 0; i < 100; i++) {
+            histogram.add(i * 10.01d, i % 3 == 0, 1d + i);
+        }
+        StringWriter writer = new StringWriter();
+        histogram.write(writer);
+
+        ScoreHistogram read = ScoreHistogram.read(new BufferedReader(new StringReader(writer.toString())));
+        Assert.assertNotNull(read);
+        Assert.assertEquals(read.getBucketWidth(), 0.01d);
+        Assert.assertEquals(read.getCount(), histogram.getCount());
+        List<ScoreHistogram.Bucket> expected = histogram.getDescendingBuckets();
+        List<ScoreHistogram.Bucket> actual = read.getDescendingBuckets();
+        Assert.assertEquals(actual.size(), expected.size());
+        for(int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(actual.get(i).getScore(), expected.get(i).getScore());
+            Assert.assertEquals(actual.get(i).getPosWeight(), expected.get(i).getPosWeight());
+        }
+
+        // file without end line is from a failed attempt
+        String partial = writer.toString().replace("#end\n", "");
+        Assert.assertNull(ScoreHistogram.read(new BufferedReader(new StringReader(partial))));
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.processor;
+
+import ml.shifu.shifu.container.obj.ModelConfig;
+import ml.shifu.shifu.core.dtrain.nn.NNConstants;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TrainModelProcessorTest {
+
+    @Test
+    public void testStalenessMinWorkers() {
+        ModelConfig modelConfig = new ModelConfig();
+        modelConfig.getTrain().setAlgorithm("NN");
+        modelConfig.getTrain().setStaleness(2);
+        Assert.assertTrue(TrainModelProcessor.isStalenessEnabled(modelConfig));
+        Assert.assertEquals(TrainModelProcessor.getMinWorkersRatio(modelConfig),
+                NNConstants.STALENESS_MIN_WORKERS_RATIO);
+        Assert.assertEquals(TrainModelProcessor.getMinWorkersTimeout(modelConfig),
+                NNConstants.STALENESS_MIN_WORKERS_TIMEOUT);
+    }
+
+    @Test
+    public void testSynchronousMinWorkers() {
+        ModelConfig modelConfig = new ModelConfig();
+        modelConfig.getTrain().setAlgorithm("NN");
+        modelConfig.getTrain().setStaleness(0);
+        Assert.assertFalse(TrainModelProcessor.isStalenessEnabled(modelConfig));
+        Assert.assertEquals(TrainModelProcessor.getMinWorkersRatio(modelConfig), 0.97d);
+        Assert.assertEquals(TrainModelProcessor.getMinWorkersTimeout(modelConfig), 2000L);
+
+        // staleness is only supported by NN master
+        modelConfig.getTrain().setAlgorithm("LR");
+        modelConfig.getTrain().setStaleness(2);
+        Assert.assertFalse(TrainModelProcessor.isStalenessEnabled(modelConfig));
+        Assert.assertEquals(TrainModelProcessor.getMinWorkersRatio(modelConfig), 0.97d);
+        Assert.assertEquals(TrainModelProcessor.getMinWorkersTimeout(modelConfig), 2000L);
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.core.varselect;
+
+import java.util.Random;
+
+import ml.shifu.shifu.core.dtrain.dataset.BasicFloatNetwork;
+import ml.shifu.shifu.core.dtrain.dataset.CacheBasicFloatNetwork;
+
+import org.encog.engine.network.activation.ActivationLinear;
+import org.encog.engine.network.activation.ActivationSigmoid;
+import org.encog.engine.network.activation.ActivationTANH;
+import org.encog.neural.networks.layers.BasicLayer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class NetworkSensitivityTest {
+
+    @Test
+    public void testSameAsCacheNetwork() {
+        Random random = new Random(7L);
+        BasicFloatNetwork network = new BasicFloatNetwork();
+        network.addLayer(new BasicLayer(new ActivationLinear(), true, 50));
+        network.addLayer(new BasicLayer(new ActivationTANH(), true, 12));
+        network.addLayer(new BasicLayer(new ActivationSigmoid(), true, 6));
+        network.addLayer(new BasicLayer(new ActivationSigmoid(), false, 1));
+        network.getStructure().finalizeStructure();
+        network.reset(7);
+
+        CacheBasicFloatNetwork cacheNetwork = VarSelectMapper.copy(network);
+        NetworkSensitivity sensitivity = new NetworkSensitivity(network.getFlat()).copy();
+        double[] input = new double[50];
+        double[] output = new double[1];
+        double[] removedScores = new double[50];
+        for(int r = 0; r < 100; r++) {
+            for(int i = 0; i < input.length; i++) {
+                input[i] = random.nextDouble();
+            }
+            double score = sensitivity.compute(input, removedScores);
+            cacheNetwork.compute(input, output, true, -1);
+            Assert.assertEquals(score, output[0], 0d);
+            for(int i = 0; i < input.length; i++) {
+                cacheNetwork.compute(input, output, false, i);
+                Assert.assertEquals(removedScores[i], output[0], 0d);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.guagua;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import ml.shifu.shifu.guagua.BinaryNormFormat.ColumnType;
+import ml.shifu.shifu.guagua.BinaryNormFormat.Header;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+public class BinaryNormReaderTest {
+
+    private static final File TMP_DIR = new File("target/tmp/BinaryNormReaderTest");
+
+    private final Header header = new Header(new String[] { "tag", "meta", "a", "b", "weight" }, new ColumnType[] {
+            ColumnType.FLOAT, ColumnType.OMITTED, ColumnType.FLOAT, ColumnType.FLOAT, ColumnType.FLOAT });
+
+    @Test
+    public void testReadAllSplits() throws IOException {
+        FileSystem fs = FileSystem.getLocal(new Configuration());
+        Path path = new Path(TMP_DIR.getPath(), "part-m-00000");
+        Random random = new Random(7L);
+        List<float[]> rows = new ArrayList<float[]>();
+        BinaryNormWriter writer = new BinaryNormWriter(fs.create(path, true), this.header, 1000);
+        for(int i = 0; i < 5000; i++) {
+            float[] row = new float[] { random.nextInt(2), 0f, random.nextFloat(), Float.NaN, 1f + i };
+            writer.write(row);
+            rows.add(row);
+        }
+        writer.close();
+
+        long length = fs.getFileStatus(path).getLen();
+        for(int splits: new int[] { 1, 2, 7, 100 }) {
+            List<float[]> result = new ArrayList<float[]>();
+            for(int i = 0; i < splits; i++) {
+                BinaryNormReader reader = new BinaryNormReader(fs.open(path), length * i / splits, length * (i + 1)
+                        / splits);
+                Assert.assertEquals(reader.getHeader().toString(), this.header.toString());
+                while(reader.next()) {
+                    result.add(reader.getRow().clone());
+                }
+                reader.close();
+            }
+            Assert.assertEquals(result.size(), rows.size());
+            for(int i = 0; i < rows.size(); i++) {
+                Assert.assertTrue(Arrays.equals(result.get(i), rows.get(i)), "Row " + i + " in " + splits + " splits");
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidRowSize() throws IOException {
+        BinaryNormWriter writer = new BinaryNormWriter(new ByteArrayOutputStream(), this.header);
+        writer.write(new float[] { 0f, 0f, 1f, 1f });
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(TMP_DIR);
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.pig;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import ml.shifu.shifu.guagua.BinaryNormFormat.ColumnType;
+import ml.shifu.shifu.guagua.BinaryNormFormat.Header;
+import ml.shifu.shifu.guagua.BinaryNormReader;
+import ml.shifu.shifu.guagua.BinaryNormWriter;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.pig.ResourceSchema;
+import org.apache.pig.ResourceSchema.ResourceFieldSchema;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+public class BinaryNormStorageTest {
+
+    private static final File TMP_DIR = new File("target/tmp/BinaryNormStorageTest");
+
+    @Test
+    public void testToHeader() {
+        Header header = BinaryNormStorage.toHeader(schema());
+        Assert.assertEquals(header.toString(), "id:OMITTED,tag:FLOAT,index:FLOAT,a:FLOAT,weight:FLOAT");
+    }
+
+    @Test
+    public void testNullValues() throws IOException {
+        Header header = BinaryNormStorage.toHeader(schema());
+        TupleFactory factory = TupleFactory.getInstance();
+        Tuple[] tuples = new Tuple[] {
+                factory.newTuple(Arrays.<Object> asList("1", 1, 3L, 0.5d, 2f)),
+                // nulls in integral and floating columns
+                factory.newTuple(Arrays.<Object> asList(null, null, null, null, null)),
+                factory.newTuple(Arrays.<Object> asList("3", 0, 70000L, Double.NaN, 1f)) };
+        float[][] expected = new float[][] { { 0f, 1f, 3f, 0.5f, 2f },
+                { 0f, Float.NaN, Float.NaN, Float.NaN, Float.NaN }, { 0f, 0f, 70000f, Float.NaN, 1f } };
+
+        FileSystem fs = FileSystem.getLocal(new Configuration());
+        Path path = new Path(TMP_DIR.getPath(), "part-m-00000");
+        BinaryNormWriter writer = new BinaryNormWriter(fs.create(path, true), header);
+        float[] values = new float[header.size()];
+        for(Tuple tuple: tuples) {
+            BinaryNormStorage.toValues(header, tuple, values);
+            writer.write(values);
+        }
+        writer.close();
+
+        BinaryNormReader reader = new BinaryNormReader(fs.open(path), 0L, fs.getFileStatus(path).getLen());
+        for(int i = 0; i < expected.length; i++) {
+            Assert.assertTrue(reader.next());
+            Assert.assertTrue(Arrays.equals(reader.getRow(), expected[i]), "Row " + i);
+        }
+        Assert.assertFalse(reader.next());
+        reader.close();
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testInvalidTupleSize() throws IOException {
+        Header header = BinaryNormStorage.toHeader(schema());
+        BinaryNormStorage.toValues(header, TupleFactory.getInstance().newTuple(1), new float[header.size()]);
+    }
+
+    private static ResourceSchema schema() {
+        ResourceSchema schema = new ResourceSchema();
+        schema.setFields(new ResourceFieldSchema[] { field("id", DataType.CHARARRAY),
+                field("Normalized::tag", DataType.INTEGER), field("index", DataType.LONG),
+                field("a", DataType.DOUBLE), field("weight", DataType.FLOAT) });
+        return schema;
+    }
+
+    private static ResourceFieldSchema field(String name, byte type) {
+        ResourceFieldSchema field = new ResourceFieldSchema();
+        field.setName(name);
+        field.setType(type);
+        return field;
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(TMP_DIR);
+    }
+
+}
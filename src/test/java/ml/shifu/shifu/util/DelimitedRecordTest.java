@@ -0,0 +1,98 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.util;
+
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.io.Text;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+
+public class DelimitedRecordTest {
+
+    private static final String[] VALUES = { "", "1.5", "-0", "0.07871", "16777217", "123456.789", "1e5", " 2.5",
+            "abc", "été", "NaN", ".5", "1.", "0.1234567891", "-2147483648", "9999999.5", "+3.25" };
+
+    @Test
+    public void testSameAsSplitter() {
+        Random random = new Random(7L);
+        for(String delimiter: new String[] { "|", "\u0007", "::", "é" }) {
+            DelimitedRecord record = new DelimitedRecord(delimiter);
+            for(int i = 0; i < 1000; i++) {
+                StringBuilder sb = new StringBuilder();
+                int size = 1 + random.nextInt(50);
+                for(int j = 0; j < size; j++) {
+                    if(j > 0) {
+                        sb.append(delimiter);
+                    }
+                    sb.append(VALUES[random.nextInt(VALUES.length)]);
+                }
+                String line = sb.toString();
+                List<String> fields = Lists.newArrayList(Splitter.on(delimiter).split(line));
+
+                record.reset(new Text(line));
+                Assert.assertEquals(record.size(), fields.size(), line);
+                for(int j = 0; j < fields.size(); j++) {
+                    String field = fields.get(j);
+                    Assert.assertEquals(record.getString(j), field);
+                    Assert.assertEquals(record.isEmpty(j), field.isEmpty());
+                    Assert.assertEquals(record.hashCode(j), field.hashCode(), field);
+                    Assert.assertEquals(record.getDouble(j, -1d), parseDouble(field), 0d, field);
+                    Assert.assertEquals(Float.floatToIntBits(record.getFloat(j, -1f)),
+                            Float.floatToIntBits(parseFloat(field)), field);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRandomFloatSameAsJdk() {
+        Random random = new Random(7L);
+        DelimitedRecord record = new DelimitedRecord("|");
+        for(int i = 0; i < 10000; i++) {
+            String value = String.format("%." + random.nextInt(8) + "f", (random.nextDouble() - 0.5d) * 100000);
+            record.reset(new Text(value));
+            Assert.assertEquals(Float.floatToIntBits(record.getFloat(0, -1f)),
+                    Float.floatToIntBits(Float.parseFloat(value)), value);
+        }
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testOutOfSize() {
+        new DelimitedRecord("|").reset(new Text("a|b")).getString(2);
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return -1d;
+        }
+    }
+
+    private static float parseFloat(String value) {
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            return -1f;
+        }
+    }
+
+}
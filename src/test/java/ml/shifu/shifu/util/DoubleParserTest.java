@@ -0,0 +1,57 @@
+/*
+ * Copyright [2013-2019] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.shifu.util;
+
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class DoubleParserTest {
+
+    @Test
+    public void testSameAsJdk() {
+        String[] values = { "0", "-0", "+1", "1.", ".5", "-.5", "007", "0.000123", "123.456", "1e5", "1.5E-3",
+                "2.5e+10", "1.5d", "3F", " 42 ", "NaN", "-Infinity", "Infinity", "123456789012345",
+                "1234567890123456789", "0.1234567890123456789", "1e22", "1e23", "1e-22", "1e-400", "1e400",
+                "4.9e-324", "1.7976931348623157E308", "0x1.8p1" };
+        for(String value: values) {
+            Assert.assertEquals(Double.doubleToLongBits(DoubleParser.parse(value, -1d)),
+                    Double.doubleToLongBits(Double.parseDouble(value)), value);
+        }
+    }
+
+    @Test
+    public void testRandomSameAsJdk() {
+        Random random = new Random(7L);
+        for(int i = 0; i < 10000; i++) {
+            String value = Double.toString(random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20));
+            Assert.assertEquals(DoubleParser.parse(value, -1d), Double.parseDouble(value), 0d, value);
+            value = String.format("%." + random.nextInt(10) + "f", random.nextDouble() * 1000);
+            Assert.assertEquals(DoubleParser.parse(value, -1d), Double.parseDouble(value), 0d, value);
+        }
+    }
+
+    @Test
+    public void testInvalid() {
+        String[] values = { null, "", " ", "-", ".", "e5", "1e", "1e+", "N/A", "abc", "1.2.3", "1,5", "--1", "Inf",
+                "d", "0x" };
+        for(String value: values) {
+            Assert.assertEquals(DoubleParser.parse(value, -1d), -1d, String.valueOf(value));
+        }
+    }
+
+}